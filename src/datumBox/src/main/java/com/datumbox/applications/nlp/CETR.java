@@ -177,7 +177,7 @@ public class CETR {
     }
 
     private void performClustering(Dataset dataset, int numberOfClusters) {
-        String dbName = new BigInteger(130, RandomValue.randomGenerator).toString(32);
+        String dbName = new BigInteger(130, RandomValue.getRandomGenerator()).toString(32);
         Kmeans instance = new Kmeans(dbName);
         
         Kmeans.TrainingParameters param = instance.getEmptyTrainingParametersObject();
@@ -27,7 +27,6 @@ import com.datumbox.framework.machinelearning.common.bases.wrappers.BaseWrapper;
 import com.datumbox.framework.machinelearning.common.bases.datatransformation.DataTransformer;
 import com.datumbox.framework.utilities.dataset.DatasetBuilder;
 import com.datumbox.framework.utilities.text.extractors.TextExtractor;
-import com.datumbox.framework.utilities.text.cleaners.StringCleaner;
 import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileInputStream;
@@ -330,7 +329,7 @@ public class TextClassifier extends BaseWrapper<TextClassifier.ModelParameters,
             Record r = new Record();
                         
             //extract features of the string and add every keyword combination in X map
-            r.getX().putAll(textExtractor.extract(StringCleaner.clear(line)));
+            r.getX().putAll(textExtractor.clearAndExtract(line));
 
             //add each example in the newData
             newData.add(r); 
@@ -0,0 +1,846 @@
+/*
+ * Copyright (C) 2014 Vasilis Vryniotis <bbriniotis at datumbox.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.datumbox.common.dataobjects;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Column oriented alternative of the Dataset. The features are dictionary
+ * encoded to dense integer column ids and the values are stored in primitive
+ * double[] chunks with bitmaps for the missing/null values. Columns which are
+ * rarely populated (typically the word columns of text datasets) are stored
+ * in a CSR (Compressed Sparse Row) layout instead of a dense column.
+ *
+ * The object exposes the same Iterable<Record>, extractColumnValues() and
+ * extractYValues() surface as the Dataset. Note that the Records returned by
+ * the iterator and get() are materialized on demand and thus any modification
+ * on them (for example setting the yPredicted) is NOT stored back. The toDataset()
+ * method should be used when the data must be passed to an algorithm that
+ * writes on the Records. The hot loops can avoid the materialization completely
+ * by using the primitive accessors such as getRow(), getDouble() and
+ * extractColumnDoubles().
+ *
+ * @author Vasilis Vryniotis <bbriniotis at datumbox.com>
+ */
+public final class ColumnarDataset implements Serializable, Iterable<Record> {
+
+    private static final long serialVersionUID = 1L;
+
+    /* Rows are stored in chunks of 2^CHUNK_BITS rows to avoid copying huge arrays when the dataset grows */
+    private static final int CHUNK_BITS = 12;
+    private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+    /* Columns which are populated in less than this ratio of the records are stored in CSR */
+    public static final double DEFAULT_DENSITY_THRESHOLD = 0.1;
+
+    /**
+     * The java type of the values of a column. It is used in order to convert
+     * the stored doubles back to the original Objects when a Record is materialized.
+     * Columns with mixed types or with non-numeric values are dictionary encoded.
+     */
+    private enum ValueType {
+        DOUBLE,
+        INTEGER,
+        FLOAT,
+        SHORT,
+        BOOLEAN,
+        OBJECT;
+
+        private static ValueType fromValue(Object o) {
+            if(o instanceof Double) {
+                return DOUBLE;
+            }
+            else if(o instanceof Integer) {
+                return INTEGER;
+            }
+            else if(o instanceof Float) {
+                return FLOAT;
+            }
+            else if(o instanceof Short) {
+                return SHORT;
+            }
+            else if(o instanceof Boolean) {
+                return BOOLEAN;
+            }
+            else { //strings, longs (not safe to store in double) and anything else
+                return OBJECT;
+            }
+        }
+    }
+
+    /**
+     * Stores the metadata and (if dense) the values of a single column.
+     */
+    private static final class Column implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        private final Object name;
+        private Dataset.ColumnType columnType;
+        private ValueType valueType;
+        private final boolean dense;
+
+        /* dictionary used by the OBJECT columns */
+        private List<Object> dictionary;
+        private Map<Object, Integer> dictionaryIndex;
+
+        /* dense storage */
+        private final List<double[]> valueChunks;
+        private final List<long[]> presentChunks;
+        private final List<long[]> nullChunks;
+
+        private Column(Object name, boolean dense) {
+            this.name = name;
+            this.dense = dense;
+            if(dense) {
+                valueChunks = new ArrayList<>();
+                presentChunks = new ArrayList<>();
+                nullChunks = new ArrayList<>();
+            }
+            else {
+                valueChunks = null;
+                presentChunks = null;
+                nullChunks = null;
+            }
+        }
+
+        private void ensureCapacity(int row) {
+            int chunkId = row >>> CHUNK_BITS;
+            while(valueChunks.size()<=chunkId) {
+                valueChunks.add(new double[CHUNK_SIZE]);
+                presentChunks.add(new long[CHUNK_SIZE/64]);
+                nullChunks.add(new long[CHUNK_SIZE/64]);
+            }
+        }
+
+        private boolean isPresent(int row) {
+            int chunkId = row >>> CHUNK_BITS;
+            if(chunkId>=presentChunks.size()) {
+                return false;
+            }
+            int offset = row & CHUNK_MASK;
+            return (presentChunks.get(chunkId)[offset >>> 6] & (1L << offset)) != 0L;
+        }
+
+        private boolean isNull(int row) {
+            int offset = row & CHUNK_MASK;
+            return (nullChunks.get(row >>> CHUNK_BITS)[offset >>> 6] & (1L << offset)) != 0L;
+        }
+
+        private double getRaw(int row) {
+            return valueChunks.get(row >>> CHUNK_BITS)[row & CHUNK_MASK];
+        }
+
+        private void setRaw(int row, double raw, boolean isNull) {
+            ensureCapacity(row);
+            int chunkId = row >>> CHUNK_BITS;
+            int offset = row & CHUNK_MASK;
+            valueChunks.get(chunkId)[offset] = raw;
+            presentChunks.get(chunkId)[offset >>> 6] |= (1L << offset);
+            if(isNull) {
+                nullChunks.get(chunkId)[offset >>> 6] |= (1L << offset);
+            }
+        }
+
+        private int getCode(Object value) {
+            Integer code = dictionaryIndex.get(value);
+            if(code==null) {
+                code = dictionary.size();
+                dictionary.add(value);
+                dictionaryIndex.put(value, code);
+            }
+            return code;
+        }
+
+        private double encode(Object value) {
+            if(valueType==ValueType.OBJECT) {
+                return getCode(value);
+            }
+            else if(valueType==ValueType.BOOLEAN) {
+                return ((Boolean)value)?1.0:0.0;
+            }
+            return ((Number)value).doubleValue();
+        }
+
+        private Object decode(double raw) {
+            if(valueType==ValueType.OBJECT) {
+                return dictionary.get((int)raw);
+            }
+            return ColumnarDataset.decode(valueType, raw);
+        }
+
+        private boolean accepts(Object value) {
+            return valueType==ValueType.OBJECT || valueType==ValueType.fromValue(value);
+        }
+    }
+
+    private int size = 0;
+
+    private boolean sparce = true;
+
+    /* Dictionary encoding of the features */
+    private final Map<Object, Integer> feature2ColumnId = new HashMap<>();
+    private final List<Column> columnList = new ArrayList<>();
+
+    /* Ids of the dense columns, kept separately so that row scans skip the CSR columns */
+    private int[] denseColumnIds = new int[16];
+    private int denseColumnSize = 0;
+
+    /* The response variable is stored as a dense column */
+    private final Column yColumn = new Column(Dataset.YColumnName, true);
+
+    /* CSR storage of the sparse columns. The entries of every row are sorted by column id. */
+    private int[] rowPointers = new int[16];
+    private int[] sparseColumnIds = new int[16];
+    private double[] sparseValues = new double[16];
+    private long[] sparseNulls = new long[1];
+    private int nnz = 0;
+
+    /**
+     * Converts a Dataset to ColumnarDataset. The columns which appear in at least
+     * densityThreshold ratio of the records are stored as dense columns while
+     * the rest are stored in CSR layout.
+     *
+     * @param dataset
+     * @param densityThreshold
+     * @return
+     */
+    public static ColumnarDataset newInstance(Dataset dataset, double densityThreshold) {
+        ColumnarDataset columnarDataset = new ColumnarDataset();
+
+        int n = dataset.size();
+        if(n==0) {
+            return columnarDataset;
+        }
+
+        //count the number of records that contain each column to decide the layout
+        Map<Object, Integer> populatedCounts = new HashMap<>();
+        for(Record r : dataset) {
+            for(Object column : r.getX().keySet()) {
+                Integer counter = populatedCounts.get(column);
+                populatedCounts.put(column, (counter==null)?1:counter+1);
+            }
+        }
+
+        for(Map.Entry<Object, Integer> entry : populatedCounts.entrySet()) {
+            boolean dense = entry.getValue() >= densityThreshold*n;
+            columnarDataset.addColumn(entry.getKey(), dense);
+        }
+        populatedCounts = null;
+
+        for(Record r : dataset) {
+            columnarDataset.add(r);
+        }
+
+        return columnarDataset;
+    }
+
+    /**
+     * Converts a Dataset to ColumnarDataset by using the default density threshold.
+     *
+     * @param dataset
+     * @return
+     */
+    public static ColumnarDataset newInstance(Dataset dataset) {
+        return newInstance(dataset, DEFAULT_DENSITY_THRESHOLD);
+    }
+
+    public ColumnarDataset() {
+        rowPointers[0] = 0;
+    }
+
+    /**
+     * Declares a new column and returns its id. Columns which are discovered
+     * by the add() method are stored in the CSR layout; use this method before
+     * adding records in order to store a column as dense.
+     *
+     * @param column
+     * @param dense
+     * @return
+     */
+    public int addColumn(Object column, boolean dense) {
+        Integer columnId = feature2ColumnId.get(column);
+        if(columnId!=null) {
+            return columnId;
+        }
+
+        columnId = columnList.size();
+        columnList.add(new Column(column, dense));
+        feature2ColumnId.put(column, columnId);
+
+        if(dense) {
+            if(denseColumnSize==denseColumnIds.length) {
+                denseColumnIds = Arrays.copyOf(denseColumnIds, 2*denseColumnIds.length);
+            }
+            denseColumnIds[denseColumnSize++] = columnId;
+        }
+
+        return columnId;
+    }
+
+    /**
+     * Appends the record in the dataset and returns its id. The record is copied
+     * in the columnar storage and thus no reference to it is kept.
+     *
+     * @param r
+     * @return
+     */
+    public Integer add(Record r) {
+        int row = size;
+
+        boolean foundNewColumn = false;
+        
+        //the sparse entries are buffered and sorted by column id. Each long holds the column id on the high bits and the buffer position on the low bits
+        int xSize = r.getX().size();
+        long[] sparseOrder = new long[xSize];
+        Object[] sparseEntryValues = new Object[xSize];
+        int sparseCount = 0;
+
+        for(Map.Entry<Object, Object> entry : r.getX().entrySet()) {
+            Object feature = entry.getKey();
+            Object value = entry.getValue();
+
+            Integer columnId = feature2ColumnId.get(feature);
+            if(columnId==null) {
+                columnId = addColumn(feature, false);
+            }
+            Column column = columnList.get(columnId);
+            if(column.columnType==null) {
+                //the type of the column is decided by the first value, exactly as in Dataset
+                column.columnType = Dataset.value2ColumnType(value);
+                foundNewColumn = true;
+            }
+
+            if(column.dense) {
+                setValue(column, row, value);
+            }
+            else {
+                sparseOrder[sparseCount] = ((long)columnId << 32) | sparseCount;
+                sparseEntryValues[sparseCount] = value;
+                ++sparseCount;
+            }
+        }
+
+        Arrays.sort(sparseOrder, 0, sparseCount);
+        for(int i=0;i<sparseCount;++i) {
+            appendSparseEntry((int)(sparseOrder[i] >>> 32), sparseEntryValues[(int)sparseOrder[i]]);
+        }
+        ensureRowPointerCapacity(row+2);
+        rowPointers[row+1] = nnz;
+
+        setValue(yColumn, row, r.getY());
+
+        ++size;
+
+        //same logic as in Dataset.updateMeta()
+        if(sparce == true && foundNewColumn==true && size>1) {
+            sparce = false;
+        }
+
+        return row;
+    }
+
+    private void setValue(Column column, int row, Object value) {
+        if(value==null) {
+            column.setRaw(row, 0.0, true);
+            return;
+        }
+
+        if(column.valueType==null) {
+            column.valueType = ValueType.fromValue(value);
+            if(column.valueType==ValueType.OBJECT) {
+                column.dictionary = new ArrayList<>();
+                column.dictionaryIndex = new HashMap<>();
+            }
+        }
+        else if(!column.accepts(value)) {
+            promoteToObject(column);
+        }
+
+        column.setRaw(row, column.encode(value), false);
+    }
+
+    private void appendSparseEntry(int columnId, Object value) {
+        Column column = columnList.get(columnId);
+
+        double raw = 0.0;
+        boolean isNull = (value==null);
+        if(!isNull) {
+            if(column.valueType==null) {
+                column.valueType = ValueType.fromValue(value);
+                if(column.valueType==ValueType.OBJECT) {
+                    column.dictionary = new ArrayList<>();
+                    column.dictionaryIndex = new HashMap<>();
+                }
+            }
+            else if(!column.accepts(value)) {
+                promoteToObject(column);
+            }
+            raw = column.encode(value);
+        }
+
+        if(nnz==sparseColumnIds.length) {
+            int newCapacity = sparseColumnIds.length*2;
+            sparseColumnIds = Arrays.copyOf(sparseColumnIds, newCapacity);
+            sparseValues = Arrays.copyOf(sparseValues, newCapacity);
+        }
+        if((nnz>>>6)>=sparseNulls.length) {
+            sparseNulls = Arrays.copyOf(sparseNulls, sparseNulls.length*2);
+        }
+
+        sparseColumnIds[nnz] = columnId;
+        sparseValues[nnz] = raw;
+        if(isNull) {
+            sparseNulls[nnz>>>6] |= (1L << nnz);
+        }
+        ++nnz;
+    }
+
+    private void ensureRowPointerCapacity(int capacity) {
+        if(capacity>rowPointers.length) {
+            rowPointers = Arrays.copyOf(rowPointers, Math.max(capacity, rowPointers.length*2));
+        }
+    }
+
+    /**
+     * When a value of a different type is added in a typed column, the column
+     * is converted to a dictionary encoded column so that the original Objects
+     * can be restored.
+     *
+     * @param column
+     */
+    private void promoteToObject(Column column) {
+        ValueType previousValueType = column.valueType;
+        
+        column.valueType = ValueType.OBJECT;
+        column.dictionary = new ArrayList<>();
+        column.dictionaryIndex = new HashMap<>();
+
+        if(column.dense) {
+            int rows = column.valueChunks.size()*CHUNK_SIZE;
+            for(int row=0;row<rows;++row) {
+                if(column.isPresent(row) && !column.isNull(row)) {
+                    Object value = decode(previousValueType, column.getRaw(row));
+                    column.valueChunks.get(row >>> CHUNK_BITS)[row & CHUNK_MASK] = column.getCode(value);
+                }
+            }
+        }
+        else {
+            int columnId = feature2ColumnId.get(column.name);
+            for(int i=0;i<nnz;++i) {
+                if(sparseColumnIds[i]==columnId && !isSparseNull(i)) {
+                    sparseValues[i] = column.getCode(decode(previousValueType, sparseValues[i]));
+                }
+            }
+        }
+    }
+
+    /**
+     * Converts the stored double back to the boxed value of a typed (non-dictionary) column.
+     * 
+     * @param valueType
+     * @param raw
+     * @return 
+     */
+    private static Object decode(ValueType valueType, double raw) {
+        switch(valueType) {
+            case DOUBLE:
+                return raw;
+            case INTEGER:
+                return (int)raw;
+            case FLOAT:
+                return (float)raw;
+            case SHORT:
+                return (short)raw;
+            case BOOLEAN:
+                return raw!=0.0;
+            default:
+                throw new IllegalArgumentException("Dictionary encoded values can't be decoded without the dictionary.");
+        }
+    }
+
+    private boolean isSparseNull(int entry) {
+        return (sparseNulls[entry>>>6] & (1L << entry)) != 0L;
+    }
+
+    /**
+     * Returns the number of Records in the dataset.
+     *
+     * @return
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Checks if the dataset is empty.
+     *
+     * @return
+     */
+    public boolean isEmpty() {
+        return size==0;
+    }
+
+    /**
+     * Returns true if all columns appear in all the records. Same semantics as
+     * in Dataset.
+     *
+     * @return
+     */
+    public boolean isSparce() {
+        return sparce;
+    }
+
+    /**
+     * Returns the number of columns of the dataset.
+     *
+     * @return
+     */
+    public int getColumnSize() {
+        return columnList.size();
+    }
+
+    /**
+     * Returns a Map with columns as keys and types are values. The map is a
+     * read-only copy.
+     *
+     * @return
+     */
+    public Map<Object, Dataset.ColumnType> getColumns() {
+        Map<Object, Dataset.ColumnType> columns = new LinkedHashMap<>();
+        for(Column column : columnList) {
+            if(column.columnType!=null) {
+                columns.put(column.name, column.columnType);
+            }
+        }
+        return Collections.unmodifiableMap(columns);
+    }
+
+    /**
+     * Returns the dense integer id of the column or null if the column does not exist.
+     *
+     * @param column
+     * @return
+     */
+    public Integer getColumnId(Object column) {
+        return feature2ColumnId.get(column);
+    }
+
+    /**
+     * Returns the column name of the column id.
+     *
+     * @param columnId
+     * @return
+     */
+    public Object getColumnName(int columnId) {
+        return columnList.get(columnId).name;
+    }
+
+    /**
+     * Returns whether the column is stored in a dense column or in CSR layout.
+     *
+     * @param columnId
+     * @return
+     */
+    public boolean isDenseColumn(int columnId) {
+        return columnList.get(columnId).dense;
+    }
+
+    /**
+     * Returns whether the values of the column are dictionary encoded, in which
+     * case the primitive accessors return the dictionary codes instead of the values.
+     *
+     * @param columnId
+     * @return
+     */
+    public boolean isDictionaryColumn(int columnId) {
+        return columnList.get(columnId).dictionary!=null;
+    }
+
+    /**
+     * Returns the numeric value of a particular cell. If the cell is missing or
+     * null, the defaultValue is returned. For dictionary encoded columns the
+     * dictionary code is returned.
+     *
+     * @param row
+     * @param columnId
+     * @param defaultValue
+     * @return
+     */
+    public double getDouble(int row, int columnId, double defaultValue) {
+        Column column = columnList.get(columnId);
+        if(column.dense) {
+            if(!column.isPresent(row) || column.isNull(row)) {
+                return defaultValue;
+            }
+            return column.getRaw(row);
+        }
+
+        int entry = Arrays.binarySearch(sparseColumnIds, rowPointers[row], rowPointers[row+1], columnId);
+        if(entry<0 || isSparseNull(entry)) {
+            return defaultValue;
+        }
+        return sparseValues[entry];
+    }
+
+    /**
+     * Returns the numeric value of the response variable of the row. Missing
+     * values are returned as NaN. For dictionary encoded responses (classes) the
+     * dictionary code is returned which can be decoded with getYDictionary().
+     *
+     * @param row
+     * @return
+     */
+    public double getYDouble(int row) {
+        if(!yColumn.isPresent(row) || yColumn.isNull(row)) {
+            return Double.NaN;
+        }
+        return yColumn.getRaw(row);
+    }
+
+    /**
+     * Returns the dictionary of the response variable or null if the response
+     * is numeric.
+     *
+     * @return
+     */
+    public List<Object> getYDictionary() {
+        if(yColumn.dictionary==null) {
+            return null;
+        }
+        return Collections.unmodifiableList(yColumn.dictionary);
+    }
+
+    /**
+     * Copies the non-null numeric values of the row in the provided buffers
+     * and returns the number of cells that were written. The buffers must have
+     * a length at least equal to getColumnSize(). It is the allocation free
+     * alternative of the iterator and it is used in the hot loops of the algorithms.
+     *
+     * @param row
+     * @param columnIds
+     * @param values
+     * @return
+     */
+    public int getRow(int row, int[] columnIds, double[] values) {
+        int length = 0;
+
+        for(int i=0;i<denseColumnSize;++i) {
+            int columnId = denseColumnIds[i];
+            Column column = columnList.get(columnId);
+            if(column.isPresent(row) && !column.isNull(row)) {
+                columnIds[length] = columnId;
+                values[length] = column.getRaw(row);
+                ++length;
+            }
+        }
+
+        for(int entry=rowPointers[row];entry<rowPointers[row+1];++entry) {
+            if(!isSparseNull(entry)) {
+                columnIds[length] = sparseColumnIds[entry];
+                values[length] = sparseValues[entry];
+                ++length;
+            }
+        }
+
+        return length;
+    }
+
+    /**
+     * Extracts the numeric values of a column in a double array. Missing and
+     * null values are replaced with the defaultValue.
+     *
+     * @param column
+     * @param defaultValue
+     * @return
+     */
+    public double[] extractColumnDoubles(Object column, double defaultValue) {
+        double[] values = new double[size];
+
+        Integer columnId = feature2ColumnId.get(column);
+        if(columnId==null) {
+            Arrays.fill(values, defaultValue);
+            return values;
+        }
+
+        for(int row=0;row<size;++row) {
+            values[row] = getDouble(row, columnId, defaultValue);
+        }
+
+        return values;
+    }
+
+    /**
+     * It extracts the values of a particular column from all observations and
+     * stores them into an array. Same as Dataset.extractColumnValues().
+     *
+     * @param column
+     * @return
+     */
+    public FlatDataList extractColumnValues(Object column) {
+        FlatDataList flatDataList = new FlatDataList(new ArrayList<>(size));
+
+        Integer columnId = feature2ColumnId.get(column);
+        for(int row=0;row<size;++row) {
+            flatDataList.add((columnId!=null)?getValue(row, columnId):null);
+        }
+
+        return flatDataList;
+    }
+
+    /**
+     * It extracts the Y values from all observations and stores them into an
+     * array. Same as Dataset.extractYValues().
+     *
+     * @return
+     */
+    public FlatDataList extractYValues() {
+        FlatDataList flatDataList = new FlatDataList(new ArrayList<>(size));
+
+        for(int row=0;row<size;++row) {
+            flatDataList.add(getY(row));
+        }
+
+        return flatDataList;
+    }
+
+    /**
+     * For each Response variable Y it extracts the values of the column. Same
+     * as Dataset.extractColumnValuesByY().
+     *
+     * @param column
+     * @return
+     */
+    public TransposeDataList extractColumnValuesByY(Object column) {
+        TransposeDataList transposeDataList = new TransposeDataList(new LinkedHashMap<>());
+
+        Integer columnId = feature2ColumnId.get(column);
+        for(int row=0;row<size;++row) {
+            Object y = getY(row);
+            if(!transposeDataList.containsKey(y)) {
+                transposeDataList.put(y, new FlatDataList(new ArrayList<>()) );
+            }
+
+            transposeDataList.get(y).add((columnId!=null)?getValue(row, columnId):null);
+        }
+
+        return transposeDataList;
+    }
+
+    private Object getValue(int row, int columnId) {
+        Column column = columnList.get(columnId);
+        if(column.dense) {
+            if(!column.isPresent(row) || column.isNull(row)) {
+                return null;
+            }
+            return column.decode(column.getRaw(row));
+        }
+
+        int entry = Arrays.binarySearch(sparseColumnIds, rowPointers[row], rowPointers[row+1], columnId);
+        if(entry<0 || isSparseNull(entry)) {
+            return null;
+        }
+        return column.decode(sparseValues[entry]);
+    }
+
+    private Object getY(int row) {
+        if(!yColumn.isPresent(row) || yColumn.isNull(row)) {
+            return null;
+        }
+        return yColumn.decode(yColumn.getRaw(row));
+    }
+
+    /**
+     * Materializes and returns the Record with the particular id. Modifications
+     * on the returned Record are not stored in the dataset.
+     *
+     * @param id
+     * @return
+     */
+    public Record get(Integer id) {
+        if(id==null || id<0 || id>=size) {
+            return null;
+        }
+        int row = id;
+
+        Record r = new Record();
+        r.setId(id);
+
+        AssociativeArray x = r.getX();
+        for(int i=0;i<denseColumnSize;++i) {
+            Column column = columnList.get(denseColumnIds[i]);
+            if(column.isPresent(row)) {
+                x.put(column.name, column.isNull(row)?null:column.decode(column.getRaw(row)));
+            }
+        }
+        for(int entry=rowPointers[row];entry<rowPointers[row+1];++entry) {
+            Column column = columnList.get(sparseColumnIds[entry]);
+            x.put(column.name, isSparseNull(entry)?null:column.decode(sparseValues[entry]));
+        }
+
+        r.setY(getY(row));
+
+        return r;
+    }
+
+    /**
+     * Converts the ColumnarDataset back to a Dataset.
+     *
+     * @return
+     */
+    public Dataset toDataset() {
+        Dataset dataset = new Dataset();
+        for(Record r : this) {
+            dataset.add(r);
+        }
+        return dataset;
+    }
+
+    /**
+     * Implementing read-only iterator which materializes the Records.
+     *
+     * @return
+     */
+    @Override
+    public Iterator<Record> iterator() {
+        return new Iterator<Record>() {
+            private int index=0;
+            @Override
+            public boolean hasNext() {
+                return index < size;
+            }
+
+            @Override
+            public Record next() {
+                return get(index++);
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+}
@@ -88,6 +88,29 @@ public final class Dataset implements Serializable, Iterable<Record> {
         return d;
     }
     
+    /**
+     * Returns a view of the Dataset which contains the Records of the provided
+     * ids, in the order of the idsCollection. Unlike generateNewSubset(), the 
+     * Records are not copied; they are shared with the original Dataset and 
+     * they keep their original ids, so an id can appear more than once (for 
+     * example when sampling with replacement). It is used to pass samples to 
+     * algorithms which only read the Records. The Records of the view should 
+     * not be modified and their ids should not be used to access the view.
+     * 
+     * @param idsCollection
+     * @return 
+     */
+    public Dataset generateNewSubsetView(Collection<Integer> idsCollection) {
+        Dataset d = new Dataset();
+        
+        for(Integer id : idsCollection) {
+            Record r = recordList.get(id);
+            d.recordList.put(d.recordList.size(), r);
+            d.updateMeta(r);
+        }        
+        return d;
+    }
+    
     //Retrieves from the Dataset a particular Record by its id.
     public Record get(Integer id) {
         return recordList.get(id);
@@ -484,7 +507,7 @@ public final class Dataset implements Serializable, Iterable<Record> {
      */
     public void shuffle() {
         List<Integer> idList = new ArrayList<>(recordList.keySet());
-        Collections.shuffle(idList, RandomValue.randomGenerator);
+        Collections.shuffle(idList, RandomValue.getRandomGenerator());
         
         Map<Integer, Record> newRecordList = new LinkedHashMap<>();
         for(Integer id : idList) {
@@ -0,0 +1,139 @@
+/*
+ * Copyright (C) 2014 Vasilis Vryniotis <bbriniotis at datumbox.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.datumbox.common.dataobjects;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * IntegerDictionary interns arbitrary objects (features, classes, words etc)
+ * into dense integer ids starting from 0. Two ids can be packed in a single long
+ * key by using the key() method. Such keys are much cheaper to hash and compare
+ * than List tuples and they are stored natively by all BigDataStructureFactory
+ * backends.
+ *
+ * The mapping is kept in the Map provided in the constructor. Typically this
+ * is a big data structure of the ModelParameters and thus it is persisted
+ * together with the parameters that use its ids.
+ *
+ * @author Vasilis Vryniotis <bbriniotis at datumbox.com>
+ */
+public class IntegerDictionary {
+
+    private final Map<Object, Integer> ids;
+
+    private int nextId;
+
+    /**
+     * Builds a dictionary which assigns the ids in the iteration order of the
+     * values. It is used for small collections such as the classes of a model,
+     * for which the order is stored already (LinkedHashSet) and no separate map
+     * needs to be persisted.
+     *
+     * @param values
+     * @return
+     */
+    public static IntegerDictionary newInstance(Collection<? extends Object> values) {
+        IntegerDictionary dictionary = new IntegerDictionary(new HashMap<>());
+        for(Object value : values) {
+            dictionary.intern(value);
+        }
+        return dictionary;
+    }
+
+    /**
+     * Wraps an existing (possibly already populated) id map.
+     *
+     * @param ids
+     */
+    public IntegerDictionary(Map<Object, Integer> ids) {
+        this.ids = ids;
+        nextId = ids.size();
+    }
+
+    /**
+     * Returns the id of the value or null if the value is unknown.
+     *
+     * @param value
+     * @return
+     */
+    public Integer getId(Object value) {
+        return ids.get(value);
+    }
+
+    /**
+     * Returns the id of the value, assigning a new one if the value is unknown.
+     *
+     * @param value
+     * @return
+     */
+    public int intern(Object value) {
+        Integer id = ids.get(value);
+        if(id==null) {
+            id = nextId++;
+            ids.put(value, id);
+        }
+        return id;
+    }
+
+    public int size() {
+        return nextId;
+    }
+
+    /**
+     * Returns the underlying map, which maps the values to their ids.
+     *
+     * @return
+     */
+    public Map<Object, Integer> getIds() {
+        return ids;
+    }
+
+    /**
+     * Packs two ids in a single long key. The first id is stored on the high
+     * 32 bits and the second on the low 32 bits.
+     *
+     * @param firstId
+     * @param secondId
+     * @return
+     */
+    public static long key(int firstId, int secondId) {
+        return ((long)firstId<<32) | (secondId & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Extracts the first id from a key produced by key().
+     *
+     * @param key
+     * @return
+     */
+    public static int firstId(long key) {
+        return (int)(key>>>32);
+    }
+
+    /**
+     * Extracts the second id from a key produced by key().
+     *
+     * @param key
+     * @return
+     */
+    public static int secondId(long key) {
+        return (int)key;
+    }
+
+}
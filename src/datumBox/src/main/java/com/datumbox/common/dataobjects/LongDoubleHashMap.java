@@ -0,0 +1,205 @@
+/*
+ * Copyright (C) 2014 Vasilis Vryniotis <bbriniotis at datumbox.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.datumbox.common.dataobjects;
+
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * Open addressing (linear probing) hash map from primitive long keys to
+ * primitive double values. It is the unboxed counterpart of the
+ * Map&lt;Long, Double&gt; parameters of the models, which are keyed by
+ * IntegerDictionary.key() pairs. The models keep those Maps as the persisted
+ * storage and they load them in this map to look up or accumulate the values
+ * without boxing. It can be read by many threads concurrently, but the writes
+ * are not synchronized.
+ *
+ * @author Vasilis Vryniotis <bbriniotis at datumbox.com>
+ */
+public class LongDoubleHashMap {
+    
+    private static final double MAX_LOAD_FACTOR = 0.5;
+    
+    private long[] keys;
+    private double[] values;
+    private boolean[] used;
+    
+    private int mask;
+    private int size = 0;
+    
+    /**
+     * Loads all the entries of the provided map.
+     * 
+     * @param map
+     * @return 
+     */
+    public static LongDoubleHashMap newInstance(Map<Long, Double> map) {
+        LongDoubleHashMap instance = new LongDoubleHashMap(map.size());
+        for(Map.Entry<Long, Double> entry : map.entrySet()) {
+            instance.put(entry.getKey(), entry.getValue());
+        }
+        return instance;
+    }
+    
+    /**
+     * Creates a map which can hold the expectedSize entries without resizing.
+     * 
+     * @param expectedSize 
+     */
+    public LongDoubleHashMap(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max((int)(expectedSize/MAX_LOAD_FACTOR), 2)-1)<<1;
+        allocate(capacity);
+    }
+    
+    /**
+     * Returns the value of the key or the missingValue if the key does not
+     * exist.
+     * 
+     * @param key
+     * @param missingValue
+     * @return 
+     */
+    public double get(long key, double missingValue) {
+        int slot = hash(key) & mask;
+        while(used[slot]) {
+            if(keys[slot]==key) {
+                return values[slot];
+            }
+            slot = (slot+1) & mask;
+        }
+        return missingValue;
+    }
+    
+    /**
+     * Associates the value with the key, replacing any previous value.
+     * 
+     * @param key
+     * @param value 
+     */
+    public void put(long key, double value) {
+        int slot = findSlot(key);
+        if(used[slot]) {
+            values[slot] = value;
+        }
+        else {
+            insert(slot, key, value);
+        }
+    }
+    
+    /**
+     * Adds the value to the one of the key. Missing keys are added with the
+     * provided value.
+     * 
+     * @param key
+     * @param value 
+     */
+    public void add(long key, double value) {
+        int slot = findSlot(key);
+        if(used[slot]) {
+            values[slot] += value;
+        }
+        else {
+            insert(slot, key, value);
+        }
+    }
+    
+    /**
+     * Adds the values of all the entries to the ones of the provided map.
+     * Every key is read and written once, so it is used to merge the values
+     * accumulated in this map into a persisted Map.
+     * 
+     * @param map 
+     */
+    public void addTo(Map<Long, Double> map) {
+        for(int i=0;i<keys.length;++i) {
+            if(used[i]) {
+                Double previousValue = map.get(keys[i]);
+                map.put(keys[i], (previousValue!=null)?previousValue+values[i]:values[i]);
+            }
+        }
+    }
+    
+    public int size() {
+        return size;
+    }
+    
+    /**
+     * Removes all the entries while keeping the allocated arrays.
+     */
+    public void clear() {
+        if(size>0) {
+            Arrays.fill(used, false);
+            size = 0;
+        }
+    }
+    
+    private int findSlot(long key) {
+        int slot = hash(key) & mask;
+        while(used[slot] && keys[slot]!=key) {
+            slot = (slot+1) & mask;
+        }
+        return slot;
+    }
+    
+    private void insert(int slot, long key, double value) {
+        used[slot] = true;
+        keys[slot] = key;
+        values[slot] = value;
+        ++size;
+        
+        if(size>MAX_LOAD_FACTOR*keys.length) {
+            rehash(keys.length<<1);
+        }
+    }
+    
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        values = new double[capacity];
+        used = new boolean[capacity];
+        mask = capacity-1;
+    }
+    
+    private void rehash(int capacity) {
+        long[] oldKeys = keys;
+        double[] oldValues = values;
+        boolean[] oldUsed = used;
+        
+        allocate(capacity);
+        for(int i=0;i<oldKeys.length;++i) {
+            if(oldUsed[i]) {
+                int slot = hash(oldKeys[i]) & mask;
+                while(used[slot]) {
+                    slot = (slot+1) & mask;
+                }
+                used[slot] = true;
+                keys[slot] = oldKeys[i];
+                values[slot] = oldValues[i];
+            }
+        }
+    }
+    
+    private static int hash(long key) {
+        //the finalizer of MurmurHash3, it spreads the ids packed in the high and low bits
+        key ^= key>>>33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key>>>33;
+        key *= 0xc4ceb9fe1a85ec53L;
+        key ^= key>>>33;
+        return (int)key;
+    }
+    
+}
@@ -0,0 +1,146 @@
+/*
+ * Copyright (C) 2014 Vasilis Vryniotis <bbriniotis at datumbox.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.datumbox.common.dataobjects;
+
+import java.util.Arrays;
+
+/**
+ * Open addressing (linear probing) hash map from primitive long keys to 
+ * primitive int values. It avoids the boxing and the entry objects of a 
+ * HashMap&lt;Long, Integer&gt; and it can be cleared and reused without 
+ * releasing its arrays. It is typically used with keys produced by 
+ * IntegerDictionary.key(). The class is not thread-safe.
+ *
+ * @author Vasilis Vryniotis <bbriniotis at datumbox.com>
+ */
+public class LongIntHashMap {
+    
+    private static final double MAX_LOAD_FACTOR = 0.5;
+    
+    private long[] keys;
+    private int[] values;
+    private boolean[] used;
+    
+    private int mask;
+    private int size = 0;
+    
+    /**
+     * Creates a map which can hold the expectedSize entries without resizing.
+     * 
+     * @param expectedSize 
+     */
+    public LongIntHashMap(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max((int)(expectedSize/MAX_LOAD_FACTOR), 2)-1)<<1;
+        allocate(capacity);
+    }
+    
+    /**
+     * Returns the value of the key or the missingValue if the key does not 
+     * exist.
+     * 
+     * @param key
+     * @param missingValue
+     * @return 
+     */
+    public int get(long key, int missingValue) {
+        int slot = hash(key) & mask;
+        while(used[slot]) {
+            if(keys[slot]==key) {
+                return values[slot];
+            }
+            slot = (slot+1) & mask;
+        }
+        return missingValue;
+    }
+    
+    /**
+     * Associates the value with the key, replacing any previous value.
+     * 
+     * @param key
+     * @param value 
+     */
+    public void put(long key, int value) {
+        int slot = hash(key) & mask;
+        while(used[slot]) {
+            if(keys[slot]==key) {
+                values[slot] = value;
+                return;
+            }
+            slot = (slot+1) & mask;
+        }
+        
+        used[slot] = true;
+        keys[slot] = key;
+        values[slot] = value;
+        ++size;
+        
+        if(size>MAX_LOAD_FACTOR*keys.length) {
+            rehash(keys.length<<1);
+        }
+    }
+    
+    public int size() {
+        return size;
+    }
+    
+    /**
+     * Removes all the entries while keeping the allocated arrays.
+     */
+    public void clear() {
+        if(size>0) {
+            Arrays.fill(used, false);
+            size = 0;
+        }
+    }
+    
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        values = new int[capacity];
+        used = new boolean[capacity];
+        mask = capacity-1;
+    }
+    
+    private void rehash(int capacity) {
+        long[] oldKeys = keys;
+        int[] oldValues = values;
+        boolean[] oldUsed = used;
+        
+        allocate(capacity);
+        for(int i=0;i<oldKeys.length;++i) {
+            if(oldUsed[i]) {
+                int slot = hash(oldKeys[i]) & mask;
+                while(used[slot]) {
+                    slot = (slot+1) & mask;
+                }
+                used[slot] = true;
+                keys[slot] = oldKeys[i];
+                values[slot] = oldValues[i];
+            }
+        }
+    }
+    
+    private static int hash(long key) {
+        //the finalizer of MurmurHash3, it spreads the ids packed in the high and low bits
+        key ^= key>>>33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key>>>33;
+        key *= 0xc4ceb9fe1a85ec53L;
+        key ^= key>>>33;
+        return (int)key;
+    }
+    
+}
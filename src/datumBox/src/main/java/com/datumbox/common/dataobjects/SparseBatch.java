@@ -0,0 +1,163 @@
+/* 
+ * Copyright (C) 2014 Vasilis Vryniotis <bbriniotis at datumbox.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.datumbox.common.dataobjects;
+
+/**
+ * A compact batch of sparse rows stored in Compressed Sparse Row (CSR) format.
+ * The feature ids and the values of row i are stored in the positions 
+ * [getRowStart(i), getRowEnd(i)) of the featureIds and values arrays. The 
+ * buffers grow as needed and are kept when the batch is cleared, so a single
+ * instance can be reused for many batches.
+ * 
+ * @author Vasilis Vryniotis <bbriniotis at datumbox.com>
+ */
+public class SparseBatch {
+    
+    private int size = 0;
+    
+    private int nnz = 0; //number of non zero values in the closed and the open rows
+    
+    private int[] rowOffsets;
+    
+    private int[] featureIds;
+    
+    private double[] values;
+    
+    public SparseBatch() {
+        this(16, 128);
+    }
+    
+    public SparseBatch(int rowCapacity, int valueCapacity) {
+        rowOffsets = new int[Math.max(rowCapacity, 1)+1];
+        featureIds = new int[Math.max(valueCapacity, 1)];
+        values = new double[featureIds.length];
+    }
+    
+    /**
+     * Wraps existing CSR arrays. The rowOffsets array must contain size+1 
+     * elements with rowOffsets[0]==0.
+     * 
+     * @param rowOffsets
+     * @param featureIds
+     * @param values 
+     */
+    public SparseBatch(int[] rowOffsets, int[] featureIds, double[] values) {
+        if(rowOffsets.length==0 || rowOffsets[0]!=0) {
+            throw new IllegalArgumentException("The rowOffsets must start with 0.");
+        }
+        size = rowOffsets.length-1;
+        nnz = rowOffsets[size];
+        if(featureIds.length<nnz || values.length<nnz) {
+            throw new IllegalArgumentException("The featureIds and values arrays are shorter than the rowOffsets indicate.");
+        }
+        this.rowOffsets = rowOffsets;
+        this.featureIds = featureIds;
+        this.values = values;
+    }
+    
+    /**
+     * Removes all the rows but keeps the allocated buffers.
+     */
+    public void clear() {
+        size = 0;
+        nnz = 0;
+    }
+    
+    /**
+     * Appends a value on the currently open row.
+     * 
+     * @param featureId
+     * @param value 
+     */
+    public void add(int featureId, double value) {
+        if(nnz==featureIds.length) {
+            int capacity = featureIds.length*2;
+            int[] newFeatureIds = new int[capacity];
+            double[] newValues = new double[capacity];
+            System.arraycopy(featureIds, 0, newFeatureIds, 0, nnz);
+            System.arraycopy(values, 0, newValues, 0, nnz);
+            featureIds = newFeatureIds;
+            values = newValues;
+        }
+        featureIds[nnz] = featureId;
+        values[nnz] = value;
+        ++nnz;
+    }
+    
+    /**
+     * Closes the currently open row and returns its index.
+     * 
+     * @return 
+     */
+    public int endRow() {
+        if(size+2>rowOffsets.length) {
+            int[] newRowOffsets = new int[rowOffsets.length*2];
+            System.arraycopy(rowOffsets, 0, newRowOffsets, 0, size+1);
+            rowOffsets = newRowOffsets;
+        }
+        ++size;
+        rowOffsets[size] = nnz;
+        return size-1;
+    }
+    
+    /**
+     * Returns the number of rows in the batch.
+     * 
+     * @return 
+     */
+    public int size() {
+        return size;
+    }
+    
+    public int getRowStart(int row) {
+        return rowOffsets[row];
+    }
+    
+    public int getRowEnd(int row) {
+        return rowOffsets[row+1];
+    }
+    
+    /**
+     * Returns the internal row offsets buffer. Only the first size()+1 
+     * elements are valid.
+     * 
+     * @return 
+     */
+    public int[] getRowOffsets() {
+        return rowOffsets;
+    }
+    
+    /**
+     * Returns the internal feature ids buffer. Only the elements up to 
+     * getRowEnd(size()-1) are valid.
+     * 
+     * @return 
+     */
+    public int[] getFeatureIds() {
+        return featureIds;
+    }
+    
+    /**
+     * Returns the internal values buffer. Only the elements up to 
+     * getRowEnd(size()-1) are valid.
+     * 
+     * @return 
+     */
+    public double[] getValues() {
+        return values;
+    }
+}
@@ -48,6 +48,19 @@ public interface BigDataStructureFactory {
         }
     }
         
+    /**
+     * Returns a copy of the container in which all the big data structures are
+     * replaced by unmodifiable in-memory copies. The copy can be read by many
+     * threads concurrently, independently from the storage of the original.
+     * 
+     * @param <C>
+     * @param container
+     * @return 
+     */
+    public static <C extends BigDataStructureContainer> C newReadOnlyCopy(C container) {
+        return BigDataStructureFields.readOnlyCopy(container);
+    }
+    
     /**
      * Basic supported DataStructureType interface
      */
@@ -92,9 +105,9 @@ public interface BigDataStructureFactory {
     
     public void cleanUp();
         
-    public <T extends Map> void dropTable(String collectionName, T map);
+    public <T extends Map<?, ?>> void dropTable(String collectionName, T map);
     
-    public <T extends Collection> void dropTable(String collectionName, T anyCollection);
+    public <T extends Collection<?>> void dropTable(String collectionName, T anyCollection);
     
     public <K,V,T extends BigDataStructureFactory.MapType> Map<K,V> getMap(String collectionName, T mapType, int LRUsize);
     
@@ -0,0 +1,206 @@
+/* 
+ * Copyright (C) 2014 Vasilis Vryniotis <bbriniotis at datumbox.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.datumbox.common.persistentstorage.factories;
+
+import com.datumbox.common.persistentstorage.interfaces.BigDataStructureContainer;
+import com.datumbox.common.persistentstorage.interfaces.BigDataStructureMarker;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import org.mongodb.morphia.annotations.Transient;
+
+/**
+ * Reflection helpers used by the file based factories to find the big data 
+ * structures of the objects they store.
+ * 
+ * @author Vasilis Vryniotis <bbriniotis at datumbox.com>
+ */
+class BigDataStructureFields {
+    
+    /**
+     * Returns the BigDataStructureContainers which are reachable from the object,
+     * including the object itself if it is a container. The order is deterministic
+     * for objects of the same classes.
+     * 
+     * @param root
+     * @return 
+     */
+    public static List<BigDataStructureContainer> getContainers(Object root) {
+        List<BigDataStructureContainer> containers = new ArrayList<>();
+        Set<Object> alreadyChecked = Collections.newSetFromMap(new IdentityHashMap<Object, Boolean>()); //compares memory addresses
+        Queue<Object> objects = new LinkedList<>();
+        objects.add(root);
+        
+        while(objects.size()>0) {
+            Object obj = objects.poll();
+            if(!alreadyChecked.add(obj)) {
+                continue;
+            }
+            if(obj instanceof BigDataStructureContainer) {
+                containers.add((BigDataStructureContainer)obj);
+            }
+            
+            for(Field field : getAllFields(new LinkedList<>(), obj.getClass())) {
+                if(Modifier.isStatic(field.getModifiers()) || field.getType().isPrimitive()) {
+                    continue;
+                }
+                Object fieldValue = get(field, obj);
+                if(fieldValue instanceof BigDataStructureContainer) {
+                    objects.add(fieldValue);
+                }
+            }
+        }
+        
+        return containers;
+    }
+    
+    /**
+     * Returns the fields of the container which are marked as BigDataStructureMarker
+     * and Transient.
+     * 
+     * @param container
+     * @return 
+     */
+    public static List<Field> getBigDataStructureFields(BigDataStructureContainer container) {
+        List<Field> fields = new ArrayList<>();
+        for(Field field : getAllFields(new LinkedList<>(), container.getClass())) {
+            if(field.getAnnotationsByType(BigDataStructureMarker.class).length>0 && field.getAnnotationsByType(Transient.class).length>0) {
+                field.setAccessible(true);
+                fields.add(field);
+            }
+        }
+        return fields;
+    }
+    
+    /**
+     * Returns a shallow copy of the container in which the big data structures,
+     * including those of the nested containers, are replaced by unmodifiable 
+     * in-memory copies. The copy does not depend on the storage of the original
+     * (caches, lazy loading, connections) and it can be read concurrently.
+     * 
+     * @param <C>
+     * @param container
+     * @return 
+     */
+    @SuppressWarnings("unchecked")
+    public static <C extends BigDataStructureContainer> C readOnlyCopy(C container) {
+        return (C) readOnlyCopy(container, new IdentityHashMap<>());
+    }
+    
+    private static Object readOnlyCopy(Object obj, Map<Object, Object> copies) {
+        Object copy = copies.get(obj);
+        if(copy!=null) {
+            return copy; //already copied, keep the references between the containers
+        }
+        
+        try {
+            Constructor<?> constructor = obj.getClass().getDeclaredConstructor();
+            constructor.setAccessible(true);
+            copy = constructor.newInstance();
+        } 
+        catch (NoSuchMethodException | InstantiationException | IllegalAccessException | IllegalArgumentException | InvocationTargetException ex) {
+            throw new RuntimeException(ex);
+        }
+        copies.put(obj, copy);
+        
+        Set<Field> bigDataStructureFields = new HashSet<>();
+        if(obj instanceof BigDataStructureContainer) {
+            bigDataStructureFields.addAll(getBigDataStructureFields((BigDataStructureContainer)obj));
+        }
+        
+        for(Field field : getAllFields(new LinkedList<>(), obj.getClass())) {
+            if(Modifier.isStatic(field.getModifiers())) {
+                continue;
+            }
+            Object fieldValue = get(field, obj);
+            if(fieldValue!=null) {
+                if(bigDataStructureFields.contains(field)) {
+                    fieldValue = readOnlyStructure(fieldValue);
+                }
+                else if(fieldValue instanceof BigDataStructureContainer) {
+                    fieldValue = readOnlyCopy(fieldValue, copies);
+                }
+            }
+            set(field, copy, fieldValue);
+        }
+        
+        return copy;
+    }
+    
+    @SuppressWarnings("unchecked")
+    private static Object readOnlyStructure(Object structure) {
+        //the iteration order of the original structure is preserved
+        if(structure instanceof SortedMap) {
+            return Collections.unmodifiableSortedMap(new TreeMap<>((SortedMap<Object, Object>)structure));
+        }
+        else if(structure instanceof Map) {
+            return Collections.unmodifiableMap(new LinkedHashMap<>((Map<Object, Object>)structure));
+        }
+        else if(structure instanceof Set) {
+            return Collections.unmodifiableSet(new LinkedHashSet<>((Set<Object>)structure));
+        }
+        else if(structure instanceof List) {
+            return Collections.unmodifiableList(new ArrayList<>((List<Object>)structure));
+        }
+        throw new IllegalArgumentException("Unsupported big data structure "+structure.getClass().getName());
+    }
+    
+    public static Object get(Field field, Object obj) {
+        field.setAccessible(true);
+        try {
+            return field.get(obj);
+        } 
+        catch (IllegalArgumentException | IllegalAccessException ex) {
+            throw new RuntimeException(ex);
+        }
+    }
+    
+    public static void set(Field field, Object obj, Object value) {
+        field.setAccessible(true);
+        try {
+            field.set(obj, value);
+        } 
+        catch (IllegalArgumentException | IllegalAccessException ex) {
+            throw new RuntimeException(ex);
+        }
+    }
+    
+    private static List<Field> getAllFields(List<Field> fields, Class<?> type) {
+        fields.addAll(Arrays.asList(type.getDeclaredFields()));
+
+        if (type.getSuperclass() != null) {
+            fields = getAllFields(fields, type.getSuperclass());
+        }
+
+        return fields;
+    }
+}
@@ -21,19 +21,25 @@ import com.datumbox.configuration.MemoryConfiguration;
 import com.datumbox.configuration.StorageConfiguration;
 import com.datumbox.common.persistentstorage.interfaces.BigDataStructureContainer;
 import com.datumbox.common.persistentstorage.interfaces.BigDataStructureContainerHolder;
+import com.datumbox.common.persistentstorage.serialization.ChunkedFileReader;
+import com.datumbox.common.persistentstorage.serialization.ChunkedFileWriter;
+import com.datumbox.common.persistentstorage.serialization.LazyLoadedMap;
 import java.io.File;
 import java.io.IOException;
+import java.lang.reflect.Field;
 import java.nio.file.FileSystems;
 import java.nio.file.Files;
 import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedList;
+import java.util.List;
 import java.util.Map;
 import java.util.Queue;
 import java.util.Set;
@@ -143,6 +149,10 @@ public class InMemoryStructureFactory implements BigDataStructureFactory {
     }
 
     
+    private static final String HOLDER_CHUNK = "holder";
+    
+    private static final String TMP_EXTENSION = ".tmp";
+    
     private final Path filepath;
     
     public InMemoryStructureFactory(String database) {       
@@ -156,8 +166,42 @@ public class InMemoryStructureFactory implements BigDataStructureFactory {
 
     @Override
     public <H extends BigDataStructureContainerHolder> void save(H holderObject) {
+        //The big data structures are streamed in separate chunks of the file,
+        //one entry at a time, instead of serializing the whole holder in a byte
+        //array. They are nulled temporarily while the rest of the holder is written.
+        Path tmpPath = Paths.get(filepath.toString()+TMP_EXTENSION);
+        List<Object[]> detachedFields = new ArrayList<>();
+        try(ChunkedFileWriter writer = new ChunkedFileWriter(tmpPath, StorageConfiguration.InMemory.COMPRESS_FILES)) {
+            List<BigDataStructureContainer> containers = BigDataStructureFields.getContainers(holderObject);
+            for(int i=0;i<containers.size();++i) {
+                BigDataStructureContainer obj = containers.get(i);
+                for(Field field : BigDataStructureFields.getBigDataStructureFields(obj)) {
+                    Object fieldValue = BigDataStructureFields.get(field, obj);
+                    if(fieldValue instanceof Map) {
+                        writer.writeMap(getChunkName(i, field), (Map<?, ?>)fieldValue);
+                    }
+                    else if(fieldValue instanceof Collection) {
+                        writer.writeCollection(getChunkName(i, field), (Collection<?>)fieldValue);
+                    }
+                    else {
+                        continue; //stored together with the holder
+                    }
+                    detachedFields.add(new Object[]{field, obj, fieldValue});
+                    BigDataStructureFields.set(field, obj, null);
+                }
+            }
+            
+            writer.writeObject(HOLDER_CHUNK, holderObject);
+        }
+        finally {
+            for(Object[] detachedField : detachedFields) {
+                BigDataStructureFields.set((Field)detachedField[0], detachedField[1], detachedField[2]);
+            }
+        }
+        
         try { 
-            Files.write(filepath, DeepCopy.serialize(holderObject));
+            //replace the previous file only after the new one is complete
+            Files.move(tmpPath, filepath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
         } 
         catch (IOException ex) {
             throw new RuntimeException(ex);
@@ -167,9 +211,61 @@ public class InMemoryStructureFactory implements BigDataStructureFactory {
     @Override
     @SuppressWarnings("unchecked")
     public <H extends BigDataStructureContainerHolder> H load(Class<H> klass) {
-        try { 
-            //read the stored serialized object
-            H holderObject = (H)DeepCopy.deserialize(Files.readAllBytes(filepath));
+        if(!Files.exists(filepath)) {
+            return null;
+        }
+        
+        if(!ChunkedFileReader.isChunkedFile(filepath)) {
+            //files stored with the older versions contain the whole serialized object
+            try { 
+                H holderObject = (H)DeepCopy.deserialize(Files.readAllBytes(filepath));
+                return holderObject;
+            } 
+            catch (NoSuchFileException ex) {
+                return null;
+            }
+            catch (IOException ex) {
+                throw new RuntimeException(ex);
+            }
+        }
+        
+        try(ChunkedFileReader reader = new ChunkedFileReader(filepath)) {
+            H holderObject = (H)reader.readObject(HOLDER_CHUNK);
+            
+            List<BigDataStructureContainer> containers = BigDataStructureFields.getContainers(holderObject);
+            for(int i=0;i<containers.size();++i) {
+                BigDataStructureContainer obj = containers.get(i);
+                for(Field field : BigDataStructureFields.getBigDataStructureFields(obj)) {
+                    String chunkName = getChunkName(i, field);
+                    if(!reader.containsChunk(chunkName)) {
+                        continue;
+                    }
+                    
+                    Object fieldValue;
+                    if(StorageConfiguration.InMemory.LAZY_LOADING && field.getType().isAssignableFrom(LazyLoadedMap.class)) {
+                        //the map is read from the disk the first time it is used
+                        fieldValue = new LazyLoadedMap<>(filepath, reader.getFileId(), chunkName);
+                    }
+                    else if(Map.class.isAssignableFrom(field.getType())) {
+                        fieldValue = reader.readMap(chunkName);
+                    }
+                    else {
+                        Collection<Object> collection = reader.readCollection(chunkName);
+                        if(!field.getType().isInstance(collection)) {
+                            //the stored class could not be constructed, use the default structures
+                            if(Set.class.isAssignableFrom(field.getType())) {
+                                collection = new HashSet<>(collection);
+                            }
+                            else {
+                                collection = new LinkedList<>(collection);
+                            }
+                        }
+                        fieldValue = collection;
+                    }
+                    BigDataStructureFields.set(field, obj, fieldValue);
+                }
+            }
+            
             return holderObject;
         } 
         catch (NoSuchFileException ex) {
@@ -180,6 +276,10 @@ public class InMemoryStructureFactory implements BigDataStructureFactory {
         }
     }
     
+    private static String getChunkName(int containerIndex, Field field) {
+        return containerIndex + ":" + field.getDeclaringClass().getName() + "." + field.getName();
+    }
+    
     @Override
     public boolean existsDatabase() {
         return Files.exists(filepath);
@@ -214,12 +314,12 @@ public class InMemoryStructureFactory implements BigDataStructureFactory {
     }
     
     @Override
-    public <T extends Map> void dropTable(String collectionName, T map) {
+    public <T extends Map<?, ?>> void dropTable(String collectionName, T map) {
         map.clear();
     }
     
     @Override
-    public <T extends Collection> void dropTable(String collectionName, T anyCollection) {
+    public <T extends Collection<?>> void dropTable(String collectionName, T anyCollection) {
         anyCollection.clear();
     }
     
@@ -0,0 +1,495 @@
+/* 
+ * Copyright (C) 2014 Vasilis Vryniotis <bbriniotis at datumbox.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.datumbox.common.persistentstorage.factories;
+
+import com.datumbox.common.persistentstorage.interfaces.BigDataStructureContainer;
+import com.datumbox.common.persistentstorage.interfaces.BigDataStructureContainerHolder;
+import com.datumbox.common.persistentstorage.mappedcollections.MappedCachingMap;
+import com.datumbox.common.persistentstorage.mappedcollections.MappedHashMap;
+import com.datumbox.common.persistentstorage.mappedcollections.MappedQueue;
+import com.datumbox.common.persistentstorage.serialization.BinaryCodec;
+import com.datumbox.configuration.MemoryConfiguration;
+import com.datumbox.configuration.StorageConfiguration;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+
+/**
+ * Stores the big data structures in memory mapped files on the local disk. The 
+ * contents of the structures live off-heap and are paged in and out by the OS, 
+ * so the models can be larger than the heap and they are loaded instantly 
+ * without requiring a database server. Every database is a folder which contains
+ * the serialized holder object and two files (index and data) per structure.
+ * 
+ * @author Vasilis Vryniotis <bbriniotis at datumbox.com>
+ */
+public class MemoryMappedStructureFactory implements BigDataStructureFactory {
+    
+    private static final String HOLDER_FILENAME = "holder.ser";
+    
+    public enum MapType implements BigDataStructureFactory.MapType {
+        MEMORY_MAPPED_CACHING_MAP(false,true),
+        MEMORY_MAPPED_MAP(false,true);
+
+        private final boolean inMemory;
+        private final boolean concurrent;
+        
+        private MapType(boolean inMemory, boolean concurrent) {
+            this.inMemory = inMemory;
+            this.concurrent = concurrent;
+        }
+
+        @Override
+        public boolean isInMemory() {
+            return inMemory;
+        }
+
+        @Override
+        public boolean isConcurrent() {
+            return concurrent;
+        }
+        
+    }
+    
+    public enum CollectionType implements BigDataStructureFactory.CollectionType {
+        MEMORY_MAPPED_COLLECTION(false,true);
+
+        private final boolean inMemory;
+        private final boolean concurrent;
+        
+        private CollectionType(boolean inMemory, boolean concurrent) {
+            this.inMemory = inMemory;
+            this.concurrent = concurrent;
+        }
+
+        @Override
+        public boolean isInMemory() {
+            return inMemory;
+        }
+
+        @Override
+        public boolean isConcurrent() {
+            return concurrent;
+        }
+    }
+    
+    public enum SetType implements BigDataStructureFactory.SetType {
+        MEMORY_MAPPED_SET(false,true);
+
+        private final boolean inMemory;
+        private final boolean concurrent;
+        
+        private SetType(boolean inMemory, boolean concurrent) {
+            this.inMemory = inMemory;
+            this.concurrent = concurrent;
+        }
+
+        @Override
+        public boolean isInMemory() {
+            return inMemory;
+        }
+
+        @Override
+        public boolean isConcurrent() {
+            return concurrent;
+        }
+    }
+    
+    public enum QueueType implements BigDataStructureFactory.QueueType {
+        MEMORY_MAPPED_QUEUE(false,true);
+
+        private final boolean inMemory;
+        private final boolean concurrent;
+        
+        private QueueType(boolean inMemory, boolean concurrent) {
+            this.inMemory = inMemory;
+            this.concurrent = concurrent;
+        }
+
+        @Override
+        public boolean isInMemory() {
+            return inMemory;
+        }
+
+        @Override
+        public boolean isConcurrent() {
+            return concurrent;
+        }
+    }
+    
+    
+    //The open structures are shared by all the factories of the JVM. Opening the same files twice would produce inconsistent indexes.
+    private static final Map<Path, MappedHashMap<?, ?>> openStructures = new HashMap<>();
+    
+    private final Path dbPath;
+    
+    public MemoryMappedStructureFactory(String database) {       
+        if(StorageConfiguration.MemoryMapped.DB_ROOT_FOLDER.isEmpty()) {
+            dbPath = Paths.get(database).toAbsolutePath(); //write them to the default accessible path
+        }
+        else {
+            dbPath = Paths.get(StorageConfiguration.MemoryMapped.DB_ROOT_FOLDER, database).toAbsolutePath();
+        }
+    }
+    
+    @Override
+    public <H extends BigDataStructureContainerHolder> void save(H holderObject) {
+        //The big data structures are already stored in their own files. We null 
+        //them temporarily so that only the rest of the holder is serialized.
+        List<Object[]> detachedFields = new ArrayList<>();
+        for(BigDataStructureContainer obj : BigDataStructureFields.getContainers(holderObject)) {
+            for(Field field : BigDataStructureFields.getBigDataStructureFields(obj)) {
+                detachedFields.add(new Object[]{field, obj, BigDataStructureFields.get(field, obj)});
+                BigDataStructureFields.set(field, obj, null);
+            }
+        }
+        
+        try { 
+            Files.createDirectories(dbPath);
+            Files.write(dbPath.resolve(HOLDER_FILENAME), BinaryCodec.serialize(holderObject));
+        } 
+        catch (IOException ex) {
+            throw new RuntimeException(ex);
+        }
+        finally {
+            for(Object[] detachedField : detachedFields) {
+                BigDataStructureFields.set((Field)detachedField[0], detachedField[1], detachedField[2]);
+            }
+        }
+        
+        synchronized(openStructures) {
+            for(Map.Entry<Path, MappedHashMap<?, ?>> entry : openStructures.entrySet()) {
+                if(entry.getKey().startsWith(dbPath)) {
+                    entry.getValue().force();
+                }
+            }
+        }
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <H extends BigDataStructureContainerHolder> H load(Class<H> klass) {
+        try { 
+            //read the stored serialized object. Its big data structures are null until postLoad() reopens them.
+            H holderObject = (H)BinaryCodec.deserialize(Files.readAllBytes(dbPath.resolve(HOLDER_FILENAME)));
+            return holderObject;
+        } 
+        catch (NoSuchFileException ex) {
+            return null;
+        }
+        catch (IOException ex) {
+            throw new RuntimeException(ex);
+        }
+    }
+    
+    @Override
+    public boolean existsDatabase() {
+        return Files.exists(dbPath);
+    }
+    
+    @Override
+    public void dropDatabase() {
+        if(!existsDatabase()) {
+            return;
+        }
+        
+        clearDatabase();
+        try {
+            Files.delete(dbPath);
+        } 
+        catch (IOException ex) {
+            throw new RuntimeException(ex);
+        }
+    }
+    
+    @Override
+    public void clearDatabase() {
+        if(!existsDatabase()) {
+            return;
+        }
+        
+        synchronized(openStructures) {
+            Iterator<Map.Entry<Path, MappedHashMap<?, ?>>> it = openStructures.entrySet().iterator();
+            while(it.hasNext()) {
+                Map.Entry<Path, MappedHashMap<?, ?>> entry = it.next();
+                if(entry.getKey().startsWith(dbPath)) {
+                    entry.getValue().close();
+                    it.remove();
+                }
+            }
+        }
+        
+        for(Path file : listFiles()) {
+            try {
+                Files.delete(file);
+            } 
+            catch (IOException ex) {
+                throw new RuntimeException(ex);
+            }
+        }
+    }
+    
+    @Override
+    public <T extends Map<?, ?>> void dropTable(String collectionName, T map) {
+        map.clear();
+        deleteStructure(collectionName);
+    }
+    
+    @Override
+    public <T extends Collection<?>> void dropTable(String collectionName, T anyCollection) {
+        anyCollection.clear();
+        deleteStructure(collectionName);
+    }
+    
+    private void deleteStructure(String collectionName) {
+        Path basePath = dbPath.resolve(collectionName);
+        synchronized(openStructures) {
+            MappedHashMap<?, ?> structure = openStructures.remove(basePath);
+            if(structure!=null) {
+                structure.close();
+            }
+        }
+        
+        MappedHashMap.deleteFiles(basePath);
+    }
+    
+    private List<Path> listFiles() {
+        List<Path> files = new ArrayList<>();
+        if(!existsDatabase()) {
+            return files;
+        }
+        try(DirectoryStream<Path> stream = Files.newDirectoryStream(dbPath)) {
+            for(Path file : stream) {
+                files.add(file);
+            }
+        }
+        catch (IOException ex) {
+            throw new RuntimeException(ex);
+        }
+        return files;
+    }
+    
+    @SuppressWarnings("unchecked")
+    private <K,V> MappedHashMap<K,V> getMappedHashMap(String collectionName) {
+        Path basePath = dbPath.resolve(collectionName);
+        synchronized(openStructures) {
+            MappedHashMap<?, ?> structure = openStructures.get(basePath);
+            if(structure==null) {
+                try {
+                    Files.createDirectories(dbPath);
+                } 
+                catch (IOException ex) {
+                    throw new RuntimeException(ex);
+                }
+                structure = new MappedHashMap<>(basePath, StorageConfiguration.MemoryMapped.SEGMENT_SIZE_BITS);
+                openStructures.put(basePath, structure);
+            }
+            return (MappedHashMap<K,V>)structure;
+        }
+    }
+    
+    
+    @Override
+    public <K,V,T extends BigDataStructureFactory.MapType> Map<K,V> getMap(String collectionName, T mapType, int LRUsize) {
+        Map<K,V> map;    
+        
+        if(mapType == MapType.MEMORY_MAPPED_CACHING_MAP) {
+            map = new MappedCachingMap<>(this.<K,V>getMappedHashMap(collectionName), LRUsize);
+        }
+        else if(mapType == MapType.MEMORY_MAPPED_MAP) {
+            map = this.<K,V>getMappedHashMap(collectionName);
+        }
+        else {
+            //fall back to the in-memory structures
+            map = new InMemoryStructureFactory(dbPath.getFileName().toString()).getMap(collectionName, mapType, LRUsize);
+        }    
+        
+        return map;
+    }
+    
+    @Override
+    public <E,T extends BigDataStructureFactory.CollectionType> Collection<E> getCollection(String collectionName, T collectionType) {
+        Collection<E> collection;
+        if(collectionType == CollectionType.MEMORY_MAPPED_COLLECTION) {
+            collection = new MappedQueue<>(this.<Long,Object>getMappedHashMap(collectionName));
+        }
+        else {
+            //fall back to the in-memory structures
+            collection = new InMemoryStructureFactory(dbPath.getFileName().toString()).getCollection(collectionName, collectionType);
+        } 
+        
+        return collection;
+    }
+    
+    @Override
+    public <E,T extends BigDataStructureFactory.SetType> Set<E> getSet(String collectionName, T setType) {
+        Set<E> set;
+        if(setType == SetType.MEMORY_MAPPED_SET) {
+            set = Collections.newSetFromMap(this.<E,Boolean>getMappedHashMap(collectionName));
+        }
+        else {
+            //fall back to the in-memory structures
+            set = new InMemoryStructureFactory(dbPath.getFileName().toString()).getSet(collectionName, setType);
+        } 
+        
+        return set;
+    }
+    
+    @Override
+    public <E,T extends BigDataStructureFactory.QueueType> Queue<E> getQueue(String collectionName, T queueType) {
+        Queue<E> queue;
+        if(queueType == QueueType.MEMORY_MAPPED_QUEUE) {
+            queue = new MappedQueue<>(this.<Long,Object>getMappedHashMap(collectionName));
+        }
+        else {
+            //fall back to the in-memory structures
+            queue = new InMemoryStructureFactory(dbPath.getFileName().toString()).getQueue(collectionName, queueType);
+        } 
+        
+        return queue;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public void preSave(BigDataStructureContainer learnedParameters, MemoryConfiguration memoryConfiguration) {
+        boolean usesInMemoryStructures=
+                memoryConfiguration.getMapType().isInMemory() ||
+                memoryConfiguration.getSetType().isInMemory() ||
+                memoryConfiguration.getQueueType().isInMemory() ||
+                memoryConfiguration.getCollectionType().isInMemory();
+        
+        if(!usesInMemoryStructures) {
+            return;
+        }
+        
+        //Same as in MongoDBStructureFactory: the contents of the in-memory fields
+        //marked as Transient and BigDataStructureMarker are copied in memory
+        //mapped structures named after the field.
+        for(BigDataStructureContainer obj : BigDataStructureFields.getContainers(learnedParameters)) {
+            for(Field field : BigDataStructureFields.getBigDataStructureFields(obj)) {
+                Object fieldValue = BigDataStructureFields.get(field, obj);
+                if(fieldValue==null || fieldValue instanceof MappedHashMap || fieldValue instanceof MappedCachingMap || fieldValue instanceof MappedQueue) {
+                    continue; //nothing to copy
+                }
+                
+                //WARNING! DO NOT CHANGE THE ORDER OF IFs
+                if(memoryConfiguration.getMapType().isInMemory() && Map.class.isAssignableFrom(field.getType())) {
+                    Map<Object, Object> map = getMap(field.getName(), MapType.MEMORY_MAPPED_MAP, 0); //the cache is not used during the copy
+                    map.clear();
+                    map.putAll((Map<Object, Object>) fieldValue);
+                }
+                else if(memoryConfiguration.getSetType().isInMemory() && Set.class.isAssignableFrom(field.getType())) {
+                    Set<Object> set = getSet(field.getName(), getDefaultSetType());
+                    set.clear();
+                    set.addAll((Set<Object>) fieldValue);
+                }
+                else if(memoryConfiguration.getQueueType().isInMemory() && Queue.class.isAssignableFrom(field.getType())) {
+                    Queue<Object> queue = getQueue(field.getName(), getDefaultQueueType());
+                    queue.clear();
+                    queue.addAll((Queue<Object>) fieldValue);
+                }
+                else if(memoryConfiguration.getCollectionType().isInMemory() && Collection.class.isAssignableFrom(field.getType())) {
+                    Collection<Object> collection = getCollection(field.getName(), getDefaultCollectionType());
+                    collection.clear();
+                    collection.addAll((Collection<Object>) fieldValue);
+                }
+                else {
+                    //no need to store it because it is not in memory or a type that can be handled
+                }
+            }
+        }
+    }
+
+    @Override
+    public void postLoad(BigDataStructureContainer learnedParameters, MemoryConfiguration memoryConfiguration) {
+        //Loading all the data in HashMaps during test() or predict() is slow and
+        //a waste of memory. As in MongoDBStructureFactory we switch the in-memory 
+        //types to the default memory mapped types which open the files lazily.
+        if(memoryConfiguration.getMapType().isInMemory()) {
+            memoryConfiguration.setMapType(getDefaultMapType());
+            memoryConfiguration.setLRUsize(getDefaultLRUsize());
+        }
+        if(memoryConfiguration.getCollectionType().isInMemory()) {
+            memoryConfiguration.setCollectionType(getDefaultCollectionType());
+        }
+        if(memoryConfiguration.getSetType().isInMemory()) {
+            memoryConfiguration.setSetType(getDefaultSetType());
+        }
+        if(memoryConfiguration.getQueueType().isInMemory()) {
+            memoryConfiguration.setQueueType(getDefaultQueueType());
+        }
+        
+        for(BigDataStructureContainer obj : BigDataStructureFields.getContainers(learnedParameters)) {
+            //reinitialize the big data structures to open the memory mapped files
+            obj.bigDataStructureInitializer(this, memoryConfiguration); 
+        }
+    }
+
+    @Override
+    public void cleanUp() {
+        String tmpPrefix=StorageConfiguration.getTmpPrefix();
+        //remove all the structures starting with TMP_ if we forgot to do it already
+        int remainingFiles = 0;
+        for(Path file : listFiles()) {
+            String filename = file.getFileName().toString();
+            if(filename.startsWith(tmpPrefix)) {
+                deleteStructure(filename.substring(0, filename.lastIndexOf('.')));
+            }
+            else {
+                ++remainingFiles;
+            }
+        }
+        
+        if(remainingFiles==0 && existsDatabase()) { //if the db is empty drop it
+            dropDatabase();
+        }
+    }
+    
+    public static BigDataStructureFactory.MapType getDefaultMapType() {
+        return MapType.MEMORY_MAPPED_CACHING_MAP;
+    }
+
+    public static BigDataStructureFactory.CollectionType getDefaultCollectionType() {
+        return CollectionType.MEMORY_MAPPED_COLLECTION;
+    }
+
+    public static BigDataStructureFactory.SetType getDefaultSetType() {
+        return SetType.MEMORY_MAPPED_SET;
+    }
+
+    public static BigDataStructureFactory.QueueType getDefaultQueueType() {
+        return QueueType.MEMORY_MAPPED_QUEUE;
+    }
+    
+    public static int getDefaultLRUsize() {
+        return 100000;
+    }
+
+}
@@ -166,8 +166,10 @@ public class MongoDBStructureFactory implements BigDataStructureFactory {
     public MongoDBStructureFactory(String database) {       
         dbName = database;
         
-        if(connection==null) {
-            connection = new MongoClient(StorageConfiguration.MongoDB.SERVER_LIST, StorageConfiguration.MongoDB.CREDENTIAL_LIST);
+        synchronized(MongoDBStructureFactory.class) { //the factories can be created concurrently (ex parallel k-fold cross validation)
+            if(connection==null) {
+                connection = new MongoClient(StorageConfiguration.MongoDB.SERVER_LIST, StorageConfiguration.MongoDB.CREDENTIAL_LIST);
+            }
         }
         db = connection.getDB(database);
     }
@@ -229,13 +231,13 @@ public class MongoDBStructureFactory implements BigDataStructureFactory {
     }
     
     @Override
-    public <T extends Map> void dropTable(String collectionName, T map) {
+    public <T extends Map<?, ?>> void dropTable(String collectionName, T map) {
         db.getCollection(collectionName).drop();
         map.clear();
     }
     
     @Override
-    public <T extends Collection> void dropTable(String collectionName, T anyCollection) {
+    public <T extends Collection<?>> void dropTable(String collectionName, T anyCollection) {
         db.getCollection(collectionName).drop();
         anyCollection.clear();
     }
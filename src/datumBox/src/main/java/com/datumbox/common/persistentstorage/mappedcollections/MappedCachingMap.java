@@ -0,0 +1,139 @@
+/* 
+ * Copyright (C) 2014 Vasilis Vryniotis <bbriniotis at datumbox.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.datumbox.common.persistentstorage.mappedcollections;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import org.apache.commons.collections4.map.LRUMap;
+
+/**
+ * Write-through LRU cache in front of a MappedHashMap. The most recently used 
+ * values are kept on the heap as objects and thus they are not decoded on 
+ * every access.
+ * 
+ * @author Vasilis Vryniotis <bbriniotis at datumbox.com>
+ * @param <K>
+ * @param <V> 
+ */
+public class MappedCachingMap<K, V> extends AbstractMap<K, V> {
+    
+    private final MappedHashMap<K, V> backingMap;
+    
+    private final Map<K, V> cache;
+    
+    public MappedCachingMap(MappedHashMap<K, V> backingMap, int LRUsize) {
+        this.backingMap = backingMap;
+        this.cache = new LRUMap<>(LRUsize);
+    }
+
+    @Override
+    public int size() {
+        return backingMap.size();
+    }
+
+    @Override
+    public synchronized boolean containsKey(Object key) {
+        return cache.containsKey(key) || backingMap.containsKey(key);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public synchronized V get(Object key) {
+        V value = cache.get(key);
+        if(value==null) {
+            value = backingMap.get(key);
+            if(value!=null) {
+                cache.put((K)key, value);
+            }
+        }
+        return value;
+    }
+
+    @Override
+    public synchronized V put(K key, V value) {
+        cache.put(key, value);
+        return backingMap.put(key, value);
+    }
+
+    @Override
+    public synchronized V remove(Object key) {
+        cache.remove(key);
+        return backingMap.remove(key);
+    }
+
+    @Override
+    public synchronized void clear() {
+        cache.clear();
+        backingMap.clear();
+    }
+
+    @Override
+    public Set<Map.Entry<K, V>> entrySet() {
+        return new AbstractSet<Map.Entry<K, V>>() {
+            @Override
+            public Iterator<Map.Entry<K, V>> iterator() {
+                final Iterator<Map.Entry<K, V>> it = backingMap.entrySet().iterator();
+                return new Iterator<Map.Entry<K, V>>() {
+                    
+                    private Map.Entry<K, V> current;
+                    
+                    @Override
+                    public boolean hasNext() {
+                        return it.hasNext();
+                    }
+
+                    @Override
+                    public Map.Entry<K, V> next() {
+                        current = it.next();
+                        final Map.Entry<K, V> entry = current;
+                        return new AbstractMap.SimpleEntry<K, V>(entry) {
+                            @Override
+                            public V setValue(V value) {
+                                synchronized(MappedCachingMap.this) {
+                                    cache.put(getKey(), value);
+                                    entry.setValue(value);
+                                }
+                                return super.setValue(value);
+                            }
+                        };
+                    }
+
+                    @Override
+                    public void remove() {
+                        synchronized(MappedCachingMap.this) {
+                            cache.remove(current.getKey());
+                            it.remove();
+                        }
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return MappedCachingMap.this.size();
+            }
+            
+            @Override
+            public void clear() {
+                MappedCachingMap.this.clear();
+            }
+        };
+    }
+}
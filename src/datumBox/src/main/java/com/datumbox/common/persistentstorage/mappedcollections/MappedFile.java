@@ -0,0 +1,132 @@
+/* 
+ * Copyright (C) 2014 Vasilis Vryniotis <bbriniotis at datumbox.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.datumbox.common.persistentstorage.mappedcollections;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A file which is mapped in memory in fixed size segments. The segments are 
+ * mapped lazily when a position is accessed for the first time, so the file can
+ * grow beyond the 2GB limit of a single MappedByteBuffer. The callers are 
+ * responsible for never writing a value that crosses the boundary of a segment.
+ * 
+ * The class is not thread-safe; the structures that use it synchronize the access.
+ * 
+ * @author Vasilis Vryniotis <bbriniotis at datumbox.com>
+ */
+class MappedFile implements Closeable {
+    
+    private final Path path;
+    
+    private final FileChannel channel;
+    
+    private final int segmentBits;
+    
+    private final long segmentMask;
+    
+    private final List<MappedByteBuffer> segments = new ArrayList<>();
+    
+    public MappedFile(Path path, int segmentBits) {
+        this.path = path;
+        this.segmentBits = segmentBits;
+        this.segmentMask = (1L<<segmentBits) - 1L;
+        try {
+            channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        } 
+        catch (IOException ex) {
+            throw new RuntimeException(ex);
+        }
+    }
+    
+    public Path getPath() {
+        return path;
+    }
+    
+    public long getSegmentSize() {
+        return 1L<<segmentBits;
+    }
+    
+    private MappedByteBuffer segment(long position) {
+        int index = (int)(position>>>segmentBits);
+        while(segments.size()<=index) {
+            try {
+                //mapping beyond the end of the file grows it; the new space is allocated sparsely by the OS
+                segments.add(channel.map(FileChannel.MapMode.READ_WRITE, ((long)segments.size())<<segmentBits, 1L<<segmentBits));
+            } 
+            catch (IOException ex) {
+                throw new RuntimeException(ex);
+            }
+        }
+        return segments.get(index);
+    }
+    
+    public int getInt(long position) {
+        return segment(position).getInt((int)(position & segmentMask));
+    }
+    
+    public void putInt(long position, int value) {
+        segment(position).putInt((int)(position & segmentMask), value);
+    }
+    
+    public long getLong(long position) {
+        return segment(position).getLong((int)(position & segmentMask));
+    }
+    
+    public void putLong(long position, long value) {
+        segment(position).putLong((int)(position & segmentMask), value);
+    }
+    
+    public void get(long position, byte[] dst) {
+        MappedByteBuffer buffer = segment(position);
+        buffer.position((int)(position & segmentMask));
+        buffer.get(dst);
+    }
+    
+    public void put(long position, byte[] src) {
+        MappedByteBuffer buffer = segment(position);
+        buffer.position((int)(position & segmentMask));
+        buffer.put(src);
+    }
+    
+    /**
+     * Writes the modified pages of all the mapped segments to the disk.
+     */
+    public void force() {
+        for(MappedByteBuffer buffer : segments) {
+            buffer.force();
+        }
+    }
+
+    @Override
+    public void close() {
+        //the buffers are unmapped by the GC once they become unreachable
+        segments.clear();
+        try {
+            channel.close();
+        } 
+        catch (IOException ex) {
+            throw new RuntimeException(ex);
+        }
+    }
+}
@@ -0,0 +1,497 @@
+/* 
+ * Copyright (C) 2014 Vasilis Vryniotis <bbriniotis at datumbox.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.datumbox.common.persistentstorage.mappedcollections;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * Hash table which is stored off-heap in memory mapped files. The key-value pairs
+ * are appended in a data file and an open addressing (linear probing) index file
+ * keeps the offsets of the records. Both files are mapped in segments and thus
+ * the contents of the map are paged in and out by the OS instead of occupying the 
+ * Java heap. Reopening an existing map is instant because nothing is read until
+ * it is accessed.
+ * 
+ * The keys must have a hashCode() which is stable across JVMs (Strings, Numbers,
+ * Lists of them etc) since the hashes are persisted in the index. Values of the
+ * same encoded size (ex. Double counts) are updated in place; other updates append
+ * a new record and the old one is never reclaimed until the map is cleared.
+ * 
+ * All the methods are synchronized and thus the map can be shared among threads.
+ * 
+ * The mapped buffers are released by the GC and not when the map is closed, 
+ * because Java provides no public method to unmap them. On the platforms which
+ * do not allow the deletion of mapped files (Windows) the files of a deleted
+ * map are removed when the JVM exits.
+ * 
+ * @author Vasilis Vryniotis <bbriniotis at datumbox.com>
+ * @param <K>
+ * @param <V> 
+ */
+public class MappedHashMap<K, V> extends AbstractMap<K, V> implements Closeable {
+    
+    private static final long MAGIC = 0x44424D4D41503031L; //DBMMAP01
+    
+    private static final int HEADER_SIZE = 64;
+    private static final int SLOT_SIZE = 16;
+    private static final int INITIAL_CAPACITY = 1024;
+    
+    private static final long EMPTY = 0L;
+    private static final long TOMBSTONE = -1L;
+    
+    private static final String INDEX_EXTENSION = ".idx";
+    private static final String DATA_EXTENSION = ".dat";
+    
+    private final Path basePath;
+    private final int segmentBits;
+    
+    private MappedFile index;
+    private MappedFile data;
+    
+    //copies of the header values of the index
+    private long size;
+    private long capacity;
+    private long dataEnd;
+    private long tombstones;
+    
+    /**
+     * Opens the map stored in the files with the given base path or creates
+     * a new one if they don't exist.
+     * 
+     * @param basePath
+     * @param segmentBits 
+     */
+    public MappedHashMap(Path basePath, int segmentBits) {
+        this.basePath = basePath;
+        this.segmentBits = segmentBits;
+        open();
+    }
+    
+    /**
+     * Returns the files in which a map with the given base path is stored.
+     * 
+     * @param basePath
+     * @return 
+     */
+    public static Path[] getFiles(Path basePath) {
+        return new Path[]{
+            Paths.get(basePath.toString()+INDEX_EXTENSION), 
+            Paths.get(basePath.toString()+DATA_EXTENSION)
+        };
+    }
+    
+    private void open() {
+        Path[] files = getFiles(basePath);
+        index = new MappedFile(files[0], segmentBits);
+        data = new MappedFile(files[1], segmentBits);
+        
+        if(index.getLong(0)==MAGIC) {
+            size = index.getLong(8);
+            capacity = index.getLong(16);
+            dataEnd = index.getLong(24);
+            tombstones = index.getLong(32);
+        }
+        else {
+            initialize();
+        }
+    }
+    
+    /**
+     * Writes the header of an empty map and empties the slots of its initial
+     * capacity. The records of the data file are overwritten by the new ones.
+     */
+    private void initialize() {
+        size = 0;
+        capacity = INITIAL_CAPACITY;
+        dataEnd = 0;
+        tombstones = 0;
+        for(long slot=0;slot<capacity;++slot) {
+            index.putLong(slotPosition(slot), EMPTY);
+        }
+        index.putLong(0, MAGIC);
+        writeHeader();
+    }
+    
+    private void writeHeader() {
+        index.putLong(8, size);
+        index.putLong(16, capacity);
+        index.putLong(24, dataEnd);
+        index.putLong(32, tombstones);
+    }
+    
+    private static int hash(Object key) {
+        long h;
+        if(key instanceof Long) {
+            h = (Long)key; //use all the bits of the packed ids instead of Long.hashCode()
+        }
+        else {
+            h = (key!=null)?key.hashCode():0;
+        }
+        
+        //MurmurHash3 finalizer
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return (int)h;
+    }
+    
+    private static long slotPosition(long slot) {
+        return HEADER_SIZE + slot*SLOT_SIZE;
+    }
+    
+    /**
+     * Searches the slot of the key. If found it returns its index, otherwise it
+     * returns -(insertionSlot+1) where the key should be placed.
+     */
+    private long lookup(Object key, byte[] encodedKey, int h) {
+        long mask = capacity - 1;
+        long slot = h & mask;
+        long firstFree = -1;
+        while(true) {
+            long position = slotPosition(slot);
+            long recordOffset = index.getLong(position);
+            if(recordOffset==EMPTY) {
+                if(firstFree==-1) {
+                    firstFree = slot;
+                }
+                return -(firstFree+1);
+            }
+            else if(recordOffset==TOMBSTONE) {
+                if(firstFree==-1) {
+                    firstFree = slot;
+                }
+            }
+            else if(index.getInt(position+8)==h && keyEquals(recordOffset-1, key, encodedKey)) {
+                return slot;
+            }
+            slot = (slot+1) & mask;
+        }
+    }
+    
+    private boolean keyEquals(long offset, Object key, byte[] encodedKey) {
+        byte[] storedKey = new byte[data.getInt(offset)];
+        data.get(offset+8, storedKey);
+        if(Arrays.equals(storedKey, encodedKey)) {
+            return true;
+        }
+        //serialized objects can be equal without having identical bytes
+        return ObjectCodec.isSerialized(encodedKey) && ObjectCodec.isSerialized(storedKey) && key.equals(ObjectCodec.decode(storedKey));
+    }
+    
+    private long recordOffset(long slot) {
+        return index.getLong(slotPosition(slot))-1;
+    }
+    
+    private byte[] readKey(long offset) {
+        byte[] key = new byte[data.getInt(offset)];
+        data.get(offset+8, key);
+        return key;
+    }
+    
+    private byte[] readValue(long offset) {
+        int keyLength = data.getInt(offset);
+        byte[] value = new byte[data.getInt(offset+4)];
+        data.get(offset+8+keyLength, value);
+        return value;
+    }
+    
+    private long append(byte[] key, byte[] value) {
+        long recordLength = 8L + key.length + value.length;
+        long segmentSize = data.getSegmentSize();
+        if(recordLength>segmentSize) {
+            throw new IllegalArgumentException("The key-value pair is larger than the segment size.");
+        }
+        
+        //records never cross the boundaries of the segments
+        long segmentOffset = dataEnd & (segmentSize-1);
+        if(segmentOffset+recordLength>segmentSize) {
+            dataEnd += segmentSize-segmentOffset;
+        }
+        
+        long offset = dataEnd;
+        data.putInt(offset, key.length);
+        data.putInt(offset+4, value.length);
+        data.put(offset+8, key);
+        data.put(offset+8+key.length, value);
+        dataEnd += recordLength;
+        
+        return offset;
+    }
+    
+    private void rehash(long newCapacity) {
+        Path indexPath = index.getPath();
+        Path tmpPath = Paths.get(indexPath.toString()+".tmp");
+        
+        MappedFile newIndex = new MappedFile(tmpPath, segmentBits);
+        long mask = newCapacity - 1;
+        for(long slot=0;slot<capacity;++slot) {
+            long position = slotPosition(slot);
+            long recordOffset = index.getLong(position);
+            if(recordOffset==EMPTY || recordOffset==TOMBSTONE) {
+                continue;
+            }
+            int h = index.getInt(position+8);
+            long newSlot = h & mask;
+            while(newIndex.getLong(slotPosition(newSlot))!=EMPTY) {
+                newSlot = (newSlot+1) & mask;
+            }
+            newIndex.putLong(slotPosition(newSlot), recordOffset);
+            newIndex.putInt(slotPosition(newSlot)+8, h);
+        }
+        newIndex.putLong(0, MAGIC);
+        newIndex.close();
+        index.close();
+        
+        try {
+            Files.move(tmpPath, indexPath, StandardCopyOption.REPLACE_EXISTING);
+        } 
+        catch (IOException ex) {
+            throw new RuntimeException(ex);
+        }
+        
+        index = new MappedFile(indexPath, segmentBits);
+        capacity = newCapacity;
+        tombstones = 0;
+        writeHeader();
+    }
+
+    @Override
+    public synchronized int size() {
+        return (int)Math.min(size, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public synchronized boolean containsKey(Object key) {
+        return lookup(key, ObjectCodec.encode(key), hash(key))>=0;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public synchronized V get(Object key) {
+        long slot = lookup(key, ObjectCodec.encode(key), hash(key));
+        if(slot<0) {
+            return null;
+        }
+        return (V)ObjectCodec.decode(readValue(recordOffset(slot)));
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public synchronized V put(K key, V value) {
+        byte[] encodedKey = ObjectCodec.encode(key);
+        byte[] encodedValue = ObjectCodec.encode(value);
+        int h = hash(key);
+        
+        long slot = lookup(key, encodedKey, h);
+        if(slot>=0) {
+            long offset = recordOffset(slot);
+            int keyLength = data.getInt(offset);
+            byte[] previous = readValue(offset);
+            if(previous.length==encodedValue.length) {
+                data.put(offset+8+keyLength, encodedValue); //update in place
+            }
+            else {
+                index.putLong(slotPosition(slot), append(readKey(offset), encodedValue)+1);
+                writeHeader();
+            }
+            return (V)ObjectCodec.decode(previous);
+        }
+        
+        if((size+tombstones+1)*2>capacity) {
+            rehash((size+1)*4>capacity?capacity*2:capacity);
+            slot = lookup(key, encodedKey, h);
+        }
+        
+        slot = -(slot+1);
+        long position = slotPosition(slot);
+        if(index.getLong(position)==TOMBSTONE) {
+            --tombstones;
+        }
+        index.putLong(position, append(encodedKey, encodedValue)+1);
+        index.putInt(position+8, h);
+        ++size;
+        writeHeader();
+        
+        return null;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public synchronized V remove(Object key) {
+        long slot = lookup(key, ObjectCodec.encode(key), hash(key));
+        if(slot<0) {
+            return null;
+        }
+        V previous = (V)ObjectCodec.decode(readValue(recordOffset(slot)));
+        removeSlot(slot);
+        return previous;
+    }
+    
+    private void removeSlot(long slot) {
+        index.putLong(slotPosition(slot), TOMBSTONE);
+        --size;
+        ++tombstones;
+        writeHeader();
+    }
+
+    @Override
+    public synchronized void clear() {
+        //the files are reused instead of being deleted and recreated, since their mapped buffers are not released
+        initialize();
+    }
+    
+    /**
+     * Writes the modified pages of the map to the disk.
+     */
+    public synchronized void force() {
+        index.force();
+        data.force();
+    }
+
+    @Override
+    public synchronized void close() {
+        index.close();
+        data.close();
+    }
+    
+    /**
+     * Closes the map and deletes its files.
+     */
+    public synchronized void delete() {
+        close();
+        deleteFiles(basePath);
+    }
+    
+    /**
+     * Deletes the files of the map with the given base path. The files which 
+     * can not be deleted because they are still mapped are deleted when the 
+     * JVM exits.
+     * 
+     * @param basePath 
+     */
+    public static void deleteFiles(Path basePath) {
+        for(Path file : getFiles(basePath)) {
+            try {
+                Files.deleteIfExists(file);
+            } 
+            catch (IOException ex) {
+                file.toFile().deleteOnExit();
+            }
+        }
+    }
+
+    @Override
+    public Set<Map.Entry<K, V>> entrySet() {
+        return new AbstractSet<Map.Entry<K, V>>() {
+            @Override
+            public Iterator<Map.Entry<K, V>> iterator() {
+                return new EntryIterator();
+            }
+
+            @Override
+            public int size() {
+                return MappedHashMap.this.size();
+            }
+            
+            @Override
+            public void clear() {
+                MappedHashMap.this.clear();
+            }
+        };
+    }
+    
+    /**
+     * Iterates through the slots of the index. Updating the values of existing
+     * keys is permitted during the iteration but adding new keys is not.
+     */
+    private class EntryIterator implements Iterator<Map.Entry<K, V>> {
+        
+        private long nextSlot = -1;
+        
+        private long currentSlot = -1;
+        
+        public EntryIterator() {
+            synchronized(MappedHashMap.this) {
+                nextSlot = findOccupied(0);
+            }
+        }
+        
+        private long findOccupied(long slot) {
+            while(slot<capacity) {
+                long recordOffset = index.getLong(slotPosition(slot));
+                if(recordOffset!=EMPTY && recordOffset!=TOMBSTONE) {
+                    return slot;
+                }
+                ++slot;
+            }
+            return -1;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return nextSlot>=0;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public Map.Entry<K, V> next() {
+            synchronized(MappedHashMap.this) {
+                if(nextSlot<0) {
+                    throw new NoSuchElementException();
+                }
+                currentSlot = nextSlot;
+                nextSlot = findOccupied(currentSlot+1);
+                
+                long offset = recordOffset(currentSlot);
+                K key = (K)ObjectCodec.decode(readKey(offset));
+                V value = (V)ObjectCodec.decode(readValue(offset));
+                return new AbstractMap.SimpleEntry<K, V>(key, value) {
+                    @Override
+                    public V setValue(V value) {
+                        MappedHashMap.this.put(getKey(), value);
+                        return super.setValue(value);
+                    }
+                };
+            }
+        }
+
+        @Override
+        public void remove() {
+            synchronized(MappedHashMap.this) {
+                if(currentSlot<0) {
+                    throw new IllegalStateException();
+                }
+                removeSlot(currentSlot);
+                currentSlot = -1;
+            }
+        }
+    }
+}
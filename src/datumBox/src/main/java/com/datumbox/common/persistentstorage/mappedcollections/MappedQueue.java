@@ -0,0 +1,158 @@
+/* 
+ * Copyright (C) 2014 Vasilis Vryniotis <bbriniotis at datumbox.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.datumbox.common.persistentstorage.mappedcollections;
+
+import java.util.AbstractQueue;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * FIFO queue stored in a MappedHashMap. The elements are kept under consecutive
+ * Long keys and the head and tail positions are stored in the map under 
+ * reserved negative keys so that the queue can be reopened. It is used both 
+ * for the Queue and the Collection types of the MemoryMappedStructureFactory.
+ * 
+ * @author Vasilis Vryniotis <bbriniotis at datumbox.com>
+ * @param <E> 
+ */
+public class MappedQueue<E> extends AbstractQueue<E> {
+    
+    private static final Long HEAD_KEY = -1L;
+    private static final Long TAIL_KEY = -2L;
+    
+    private final MappedHashMap<Long, Object> backingMap;
+    
+    private long head;
+    private long tail;
+    
+    public MappedQueue(MappedHashMap<Long, Object> backingMap) {
+        this.backingMap = backingMap;
+        initialize();
+    }
+    
+    private void initialize() {
+        Object storedHead = backingMap.get(HEAD_KEY);
+        if(storedHead==null) {
+            head = 0L;
+            tail = 0L;
+            backingMap.put(HEAD_KEY, head);
+            backingMap.put(TAIL_KEY, tail);
+        }
+        else {
+            head = (Long)storedHead;
+            tail = (Long)backingMap.get(TAIL_KEY);
+        }
+    }
+
+    @Override
+    public synchronized boolean offer(E e) {
+        if(e==null) {
+            throw new NullPointerException();
+        }
+        backingMap.put(tail, e);
+        ++tail;
+        backingMap.put(TAIL_KEY, tail);
+        return true;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public synchronized E poll() {
+        while(head<tail) {
+            E e = (E)backingMap.remove(head);
+            ++head;
+            backingMap.put(HEAD_KEY, head);
+            if(e!=null) { //null means that the element was removed by an iterator
+                return e;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public synchronized E peek() {
+        for(long i=head;i<tail;++i) {
+            E e = (E)backingMap.get(i);
+            if(e!=null) {
+                return e;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public int size() {
+        return backingMap.size()-2; //exclude the head and tail keys
+    }
+
+    @Override
+    public synchronized void clear() {
+        backingMap.clear();
+        initialize();
+    }
+
+    @Override
+    public Iterator<E> iterator() {
+        return new Iterator<E>() {
+            
+            private long nextPosition = findNext(head);
+            
+            private long currentPosition = -1;
+            
+            private long findNext(long position) {
+                synchronized(MappedQueue.this) {
+                    while(position<tail && !backingMap.containsKey(position)) {
+                        ++position;
+                    }
+                    return position;
+                }
+            }
+
+            @Override
+            public boolean hasNext() {
+                synchronized(MappedQueue.this) {
+                    return nextPosition<tail;
+                }
+            }
+
+            @Override
+            @SuppressWarnings("unchecked")
+            public E next() {
+                synchronized(MappedQueue.this) {
+                    if(nextPosition>=tail) {
+                        throw new NoSuchElementException();
+                    }
+                    currentPosition = nextPosition;
+                    nextPosition = findNext(currentPosition+1);
+                    return (E)backingMap.get(currentPosition);
+                }
+            }
+
+            @Override
+            public void remove() {
+                synchronized(MappedQueue.this) {
+                    if(currentPosition<0) {
+                        throw new IllegalStateException();
+                    }
+                    backingMap.remove(currentPosition);
+                    currentPosition = -1;
+                }
+            }
+        };
+    }
+}
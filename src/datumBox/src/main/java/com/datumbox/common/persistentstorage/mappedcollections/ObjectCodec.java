@@ -0,0 +1,101 @@
+/* 
+ * Copyright (C) 2014 Vasilis Vryniotis <bbriniotis at datumbox.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.datumbox.common.persistentstorage.mappedcollections;
+
+import com.datumbox.common.utilities.DeepCopy;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Converts keys and values to bytes for the memory mapped structures. The most
+ * common types of the framework (numbers, strings and booleans) are written in 
+ * a compact tagged form; all the other objects fall back to Java serialization.
+ * 
+ * @author Vasilis Vryniotis <bbriniotis at datumbox.com>
+ */
+class ObjectCodec {
+    
+    private static final byte NULL = 0;
+    private static final byte INTEGER = 1;
+    private static final byte LONG = 2;
+    private static final byte DOUBLE = 3;
+    private static final byte STRING = 4;
+    private static final byte BOOLEAN = 5;
+    private static final byte SERIALIZED = 6;
+    
+    public static byte[] encode(Object obj) {
+        if(obj==null) {
+            return new byte[]{NULL};
+        }
+        else if(obj instanceof Integer) {
+            return ByteBuffer.allocate(5).put(INTEGER).putInt((Integer)obj).array();
+        }
+        else if(obj instanceof Long) {
+            return ByteBuffer.allocate(9).put(LONG).putLong((Long)obj).array();
+        }
+        else if(obj instanceof Double) {
+            return ByteBuffer.allocate(9).put(DOUBLE).putDouble((Double)obj).array();
+        }
+        else if(obj instanceof String) {
+            byte[] str = ((String)obj).getBytes(StandardCharsets.UTF_8);
+            return ByteBuffer.allocate(str.length+1).put(STRING).put(str).array();
+        }
+        else if(obj instanceof Boolean) {
+            return new byte[]{BOOLEAN, (byte)(((Boolean)obj)?1:0)};
+        }
+        else {
+            byte[] serialized = DeepCopy.serialize(obj);
+            return ByteBuffer.allocate(serialized.length+1).put(SERIALIZED).put(serialized).array();
+        }
+    }
+    
+    /**
+     * Checks whether the bytes were produced by Java serialization. Equal objects
+     * of this type are not guaranteed to have identical encodings.
+     * 
+     * @param bytes
+     * @return 
+     */
+    public static boolean isSerialized(byte[] bytes) {
+        return bytes[0]==SERIALIZED;
+    }
+    
+    public static Object decode(byte[] bytes) {
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        byte tag = buffer.get();
+        switch(tag) {
+            case NULL:
+                return null;
+            case INTEGER:
+                return buffer.getInt();
+            case LONG:
+                return buffer.getLong();
+            case DOUBLE:
+                return buffer.getDouble();
+            case STRING:
+                return new String(bytes, 1, bytes.length-1, StandardCharsets.UTF_8);
+            case BOOLEAN:
+                return buffer.get()!=0;
+            case SERIALIZED:
+                byte[] serialized = new byte[bytes.length-1];
+                buffer.get(serialized);
+                return DeepCopy.deserialize(serialized);
+            default:
+                throw new IllegalArgumentException("Unknown type tag "+tag+".");
+        }
+    }
+}
@@ -0,0 +1,144 @@
+/* 
+ * Copyright (C) 2014 Vasilis Vryniotis <bbriniotis at datumbox.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.datumbox.common.persistentstorage.serialization;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Compact binary format for the objects of the framework. It builds on Java 
+ * serialization, so any Serializable object can be stored, but the maps and 
+ * collections of the object graph are replaced by a much more compact encoding:
+ * strings are dictionary encoded, integers and counts are stored as varints and
+ * maps with Long keys and numeric values (the parameters of most models) are 
+ * stored as sorted delta-encoded keys followed by primitive values.
+ * 
+ * The streams start with a version number, so future changes of the encoding
+ * can remain readable.
+ * 
+ * @author Vasilis Vryniotis <bbriniotis at datumbox.com>
+ */
+public class BinaryCodec {
+    
+    /**
+     * Identifies the compact streams. It is written right after the header of Java serialization.
+     */
+    static final int MAGIC = 0x44424331; //DBC1
+    
+    /**
+     * Version of the encoding.
+     */
+    public static final int VERSION = 1;
+    
+    //types of the values
+    static final byte NULL = 0;
+    static final byte TRUE = 1;
+    static final byte FALSE = 2;
+    static final byte INTEGER = 3;
+    static final byte LONG = 4;
+    static final byte DOUBLE = 5;
+    static final byte STRING = 6;
+    static final byte STRING_REFERENCE = 7;
+    static final byte OBJECT = 8;
+    
+    //kinds of structures
+    static final byte HASH_MAP = 0;
+    static final byte LINKED_HASH_MAP = 1;
+    static final byte CONCURRENT_HASH_MAP = 2;
+    static final byte TREE_MAP = 3;
+    static final byte OTHER_MAP = 4;
+    static final byte ARRAY_LIST = 10;
+    static final byte LINKED_LIST = 11;
+    static final byte HASH_SET = 12;
+    static final byte LINKED_HASH_SET = 13;
+    static final byte CONCURRENT_LINKED_QUEUE = 14;
+    static final byte OTHER_COLLECTION = 15;
+    
+    //layouts of the maps
+    static final byte GENERIC_LAYOUT = 0;
+    static final byte LONG_DOUBLE_LAYOUT = 1;
+    static final byte LONG_INTEGER_LAYOUT = 2;
+    
+    /**
+     * Serializes the object to a byte array.
+     * 
+     * @param obj
+     * @return 
+     */
+    public static byte[] serialize(Object obj) {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        serialize(obj, bos);
+        return bos.toByteArray();
+    }
+    
+    /**
+     * Serializes the object to the stream. The stream is not closed.
+     * 
+     * @param obj
+     * @param out 
+     */
+    public static void serialize(Object obj, OutputStream out) {
+        try {
+            CompactObjectOutputStream oos = new CompactObjectOutputStream(out);
+            oos.writeObject(obj);
+            oos.flush();
+        } 
+        catch (IOException ex) {
+            throw new RuntimeException(ex);
+        }
+    }
+    
+    /**
+     * Deserializes the byte array.
+     * 
+     * @param arr
+     * @return 
+     */
+    public static Object deserialize(byte[] arr) {
+        return deserialize(new ByteArrayInputStream(arr));
+    }
+    
+    /**
+     * Deserializes an object from the stream. The stream is not closed.
+     * 
+     * @param in
+     * @return 
+     */
+    public static Object deserialize(InputStream in) {
+        try {
+            return new CompactObjectInputStream(in).readObject();
+        } 
+        catch (IOException | ClassNotFoundException ex) {
+            throw new RuntimeException(ex);
+        }
+    }
+    
+    /**
+     * Checks whether the bytes were produced by the BinaryCodec.
+     * 
+     * @param arr
+     * @return 
+     */
+    public static boolean isCompact(byte[] arr) {
+        //the Java serialization header is 4 bytes long and it is followed by the magic number
+        return arr.length>=8 && 
+               ((arr[4]&0xFF)<<24 | (arr[5]&0xFF)<<16 | (arr[6]&0xFF)<<8 | (arr[7]&0xFF))==MAGIC;
+    }
+}
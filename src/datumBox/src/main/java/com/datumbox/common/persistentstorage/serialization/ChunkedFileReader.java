@@ -0,0 +1,193 @@
+/* 
+ * Copyright (C) 2014 Vasilis Vryniotis <bbriniotis at datumbox.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.datumbox.common.persistentstorage.serialization;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Reads the chunks of a file written by the ChunkedFileWriter. Only the header
+ * and the table of contents are read when the file is opened; each chunk is
+ * streamed from the disk when it is requested.
+ * 
+ * @author Vasilis Vryniotis <bbriniotis at datumbox.com>
+ */
+public class ChunkedFileReader implements Closeable {
+    
+    private static final int BUFFER_SIZE = 1<<16;
+    
+    private final FileChannel channel;
+    
+    private final boolean compressed;
+    
+    private final long fileId;
+    
+    private final Map<String, long[]> tableOfContents = new LinkedHashMap<>();
+    
+    /**
+     * Checks whether the file starts with the header of a chunked file.
+     * 
+     * @param path
+     * @return 
+     */
+    public static boolean isChunkedFile(Path path) {
+        try(FileChannel fc = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(8);
+            while(header.hasRemaining() && fc.read(header)>=0) {
+            }
+            return !header.hasRemaining() && header.getLong(0)==ChunkedFileWriter.MAGIC;
+        } 
+        catch (IOException ex) {
+            throw new RuntimeException(ex);
+        }
+    }
+    
+    public ChunkedFileReader(Path path) throws IOException {
+        channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            DataInputStream in = new DataInputStream(stream(0, channel.size()));
+            if(in.readLong()!=ChunkedFileWriter.MAGIC) {
+                throw new IllegalArgumentException("The file is not a chunked file.");
+            }
+            int version = in.readInt();
+            if(version!=ChunkedFileWriter.VERSION) {
+                throw new IllegalArgumentException("Unsupported chunked file version "+version+".");
+            }
+            compressed = in.readBoolean();
+            fileId = in.readLong();
+
+            in = new DataInputStream(stream(channel.size()-8, 8));
+            long tableOffset = in.readLong();
+            in = new DataInputStream(stream(tableOffset, channel.size()-8-tableOffset));
+            int n = in.readInt();
+            for(int i=0;i<n;++i) {
+                String name = in.readUTF();
+                tableOfContents.put(name, new long[]{in.readLong(), in.readLong()});
+            }
+        }
+        catch (IOException | RuntimeException ex) {
+            channel.close();
+            throw ex;
+        }
+    }
+    
+    private InputStream stream(long offset, long length) throws IOException {
+        channel.position(offset);
+        InputStream in = Channels.newInputStream(channel);
+        return new BufferedInputStream(in, (int)Math.max(1, Math.min(BUFFER_SIZE, length)));
+    }
+    
+    /**
+     * Returns a unique id which changes every time the file is rewritten.
+     * 
+     * @return 
+     */
+    public long getFileId() {
+        return fileId;
+    }
+    
+    public List<String> getChunkNames() {
+        return new ArrayList<>(tableOfContents.keySet());
+    }
+    
+    public boolean containsChunk(String name) {
+        return tableOfContents.containsKey(name);
+    }
+    
+    private interface ChunkContent<T> {
+        public T read(CompactObjectInputStream ois) throws IOException, ClassNotFoundException;
+    }
+    
+    private synchronized <T> T readChunk(String name, ChunkContent<T> content) {
+        long[] chunk = tableOfContents.get(name);
+        if(chunk==null) {
+            throw new IllegalArgumentException("The chunk "+name+" does not exist.");
+        }
+        
+        Inflater inflater = (compressed)?new Inflater():null;
+        try {
+            InputStream in = stream(chunk[0], chunk[1]);
+            if(compressed) {
+                in = new InflaterInputStream(in, inflater, BUFFER_SIZE);
+            }
+            //the stream is not closed because it would close the channel
+            return content.read(new CompactObjectInputStream(in));
+        } 
+        catch (IOException | ClassNotFoundException ex) {
+            throw new RuntimeException(ex);
+        }
+        finally {
+            if(inflater!=null) {
+                inflater.end();
+            }
+        }
+    }
+    
+    public Object readObject(String name) {
+        return readChunk(name, new ChunkContent<Object>() {
+            @Override
+            public Object read(CompactObjectInputStream ois) throws IOException, ClassNotFoundException {
+                return ois.readObject();
+            }
+        });
+    }
+    
+    @SuppressWarnings("unchecked")
+    public <K, V> Map<K, V> readMap(String name) {
+        return readChunk(name, new ChunkContent<Map<K, V>>() {
+            @Override
+            public Map<K, V> read(CompactObjectInputStream ois) throws IOException, ClassNotFoundException {
+                return (Map<K, V>)ois.readStructure();
+            }
+        });
+    }
+    
+    @SuppressWarnings("unchecked")
+    public <E> Collection<E> readCollection(String name) {
+        return readChunk(name, new ChunkContent<Collection<E>>() {
+            @Override
+            public Collection<E> read(CompactObjectInputStream ois) throws IOException, ClassNotFoundException {
+                return (Collection<E>)ois.readStructure();
+            }
+        });
+    }
+
+    @Override
+    public void close() {
+        try {
+            channel.close();
+        } 
+        catch (IOException ex) {
+            throw new RuntimeException(ex);
+        }
+    }
+}
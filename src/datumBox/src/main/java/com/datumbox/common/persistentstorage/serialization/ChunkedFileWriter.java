@@ -0,0 +1,205 @@
+/* 
+ * Copyright (C) 2014 Vasilis Vryniotis <bbriniotis at datumbox.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.datumbox.common.persistentstorage.serialization;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * Writes objects in a file as a sequence of independent named chunks. Maps and
+ * collections are streamed entry by entry with the compact encoding of the 
+ * BinaryCodec, so the file is written without materializing the serialized 
+ * form of the objects in memory. The chunks are
+ * optionally compressed and a table of contents at the end of the file allows
+ * the ChunkedFileReader to read any of them without touching the rest.
+ * 
+ * File layout: header (magic, version, compressed flag, file id), chunks, table
+ * of contents (name, offset, length for each chunk), offset of the table.
+ * 
+ * @author Vasilis Vryniotis <bbriniotis at datumbox.com>
+ */
+public class ChunkedFileWriter implements Closeable {
+    
+    static final long MAGIC = 0x4442584348554E4BL; //DBXCHUNK
+    static final int VERSION = 2;
+    
+    private static final int BUFFER_SIZE = 1<<16;
+    
+    private final FileChannel channel;
+    
+    private final DataOutputStream out;
+    
+    private final boolean compressed;
+    
+    private final Map<String, long[]> tableOfContents = new LinkedHashMap<>();
+    
+    /**
+     * Creates (or truncates) the file and writes its header.
+     * 
+     * @param path
+     * @param compressed 
+     */
+    public ChunkedFileWriter(Path path, boolean compressed) {
+        this.compressed = compressed;
+        try {
+            channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+            out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel), BUFFER_SIZE));
+            out.writeLong(MAGIC);
+            out.writeInt(VERSION);
+            out.writeBoolean(compressed);
+            out.writeLong(new Random().nextLong()); //identifies this version of the file
+        } 
+        catch (IOException ex) {
+            throw new RuntimeException(ex);
+        }
+    }
+    
+    private long position() throws IOException {
+        out.flush();
+        return channel.position();
+    }
+    
+    /**
+     * Opens a stream for a new chunk. Closing the stream does not close the file.
+     */
+    private CompactObjectOutputStream openChunk(final Deflater deflater) throws IOException {
+        OutputStream chunkStream = new FilterOutputStream(out) {
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                out.write(b, off, len);
+            }
+            
+            @Override
+            public void close() throws IOException {
+                flush();
+            }
+        };
+        if(compressed) {
+            chunkStream = new DeflaterOutputStream(chunkStream, deflater, BUFFER_SIZE);
+        }
+        return new CompactObjectOutputStream(chunkStream);
+    }
+    
+    private interface ChunkContent {
+        public void write(CompactObjectOutputStream oos) throws IOException;
+    }
+    
+    private void writeChunk(String name, ChunkContent content) {
+        if(tableOfContents.containsKey(name)) {
+            throw new IllegalArgumentException("A chunk with the same name already exists.");
+        }
+        
+        Deflater deflater = (compressed)?new Deflater(Deflater.BEST_SPEED):null;
+        try {
+            long offset = position();
+            try(CompactObjectOutputStream oos = openChunk(deflater)) {
+                content.write(oos);
+            }
+            tableOfContents.put(name, new long[]{offset, position()-offset});
+        } 
+        catch (IOException ex) {
+            throw new RuntimeException(ex);
+        }
+        finally {
+            if(deflater!=null) {
+                deflater.end();
+            }
+        }
+    }
+    
+    /**
+     * Writes the object in a chunk using the BinaryCodec.
+     * 
+     * @param name
+     * @param obj 
+     */
+    public void writeObject(String name, final Object obj) {
+        writeChunk(name, new ChunkContent() {
+            @Override
+            public void write(CompactObjectOutputStream oos) throws IOException {
+                oos.writeObject(obj);
+            }
+        });
+    }
+    
+    /**
+     * Writes the map in a chunk one entry at a time.
+     * 
+     * @param name
+     * @param map 
+     */
+    public void writeMap(String name, final Map<?, ?> map) {
+        writeChunk(name, new ChunkContent() {
+            @Override
+            public void write(CompactObjectOutputStream oos) throws IOException {
+                oos.writeStructure(map);
+            }
+        });
+    }
+    
+    /**
+     * Writes the collection in a chunk one element at a time.
+     * 
+     * @param name
+     * @param collection 
+     */
+    public void writeCollection(String name, final Collection<?> collection) {
+        writeChunk(name, new ChunkContent() {
+            @Override
+            public void write(CompactObjectOutputStream oos) throws IOException {
+                oos.writeStructure(collection);
+            }
+        });
+    }
+    
+    /**
+     * Writes the table of contents and closes the file.
+     */
+    @Override
+    public void close() {
+        try {
+            long tableOffset = position();
+            out.writeInt(tableOfContents.size());
+            for(Map.Entry<String, long[]> entry : tableOfContents.entrySet()) {
+                out.writeUTF(entry.getKey());
+                out.writeLong(entry.getValue()[0]);
+                out.writeLong(entry.getValue()[1]);
+            }
+            out.writeLong(tableOffset);
+            out.flush();
+            channel.force(true);
+            out.close();
+        } 
+        catch (IOException ex) {
+            throw new RuntimeException(ex);
+        }
+    }
+}
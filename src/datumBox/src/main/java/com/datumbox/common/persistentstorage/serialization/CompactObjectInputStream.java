@@ -0,0 +1,223 @@
+/* 
+ * Copyright (C) 2014 Vasilis Vryniotis <bbriniotis at datumbox.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.datumbox.common.persistentstorage.serialization;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.StreamCorruptedException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Reads the streams written by the CompactObjectOutputStream.
+ * 
+ * @author Vasilis Vryniotis <bbriniotis at datumbox.com>
+ */
+public class CompactObjectInputStream extends ObjectInputStream {
+    
+    private final List<String> stringDictionary = new ArrayList<>();
+    
+    public CompactObjectInputStream(InputStream in) throws IOException {
+        super(in);
+    }
+
+    @Override
+    protected void readStreamHeader() throws IOException {
+        super.readStreamHeader();
+        if(readInt()!=BinaryCodec.MAGIC) {
+            throw new StreamCorruptedException("The stream was not written by the BinaryCodec.");
+        }
+        int version = readInt();
+        if(version>BinaryCodec.VERSION) {
+            throw new StreamCorruptedException("Unsupported BinaryCodec version "+version+".");
+        }
+    }
+    
+    private static int capacity(int size) {
+        return Math.max(16, (int)(size/0.75f)+1);
+    }
+    
+    /**
+     * Reads a map or a collection written with writeStructure().
+     * 
+     * @return
+     * @throws IOException
+     * @throws ClassNotFoundException 
+     */
+    public Object readStructure() throws IOException, ClassNotFoundException {
+        byte kind = readByte();
+        switch(kind) {
+            case BinaryCodec.HASH_MAP:
+            case BinaryCodec.LINKED_HASH_MAP:
+            case BinaryCodec.CONCURRENT_HASH_MAP:
+            case BinaryCodec.TREE_MAP:
+            case BinaryCodec.OTHER_MAP:
+                return readMap(kind);
+            case BinaryCodec.ARRAY_LIST:
+            case BinaryCodec.LINKED_LIST:
+            case BinaryCodec.HASH_SET:
+            case BinaryCodec.LINKED_HASH_SET:
+            case BinaryCodec.CONCURRENT_LINKED_QUEUE:
+            case BinaryCodec.OTHER_COLLECTION:
+                return readCollection(kind);
+            default:
+                throw new StreamCorruptedException("Unknown structure kind "+kind+".");
+        }
+    }
+    
+    private Map<Object, Object> readMap(byte kind) throws IOException, ClassNotFoundException {
+        byte layout = readByte();
+        int size = (int)readVarLong();
+        
+        Map<Object, Object> map;
+        if(kind==BinaryCodec.LINKED_HASH_MAP) {
+            map = new LinkedHashMap<>(capacity(size));
+        }
+        else if(kind==BinaryCodec.CONCURRENT_HASH_MAP) {
+            map = new ConcurrentHashMap<>(capacity(size));
+        }
+        else if(kind==BinaryCodec.TREE_MAP) {
+            map = new TreeMap<>();
+        }
+        else {
+            map = new HashMap<>(capacity(size));
+        }
+        
+        if(layout==BinaryCodec.GENERIC_LAYOUT) {
+            for(int i=0;i<size;++i) {
+                Object key = readValue();
+                map.put(key, readValue());
+            }
+            return map;
+        }
+        
+        long[] keys = new long[size];
+        long previous = 0L;
+        for(int i=0;i<size;++i) {
+            previous += readVarLong();
+            keys[i] = previous;
+        }
+        
+        if(layout==BinaryCodec.LONG_DOUBLE_LAYOUT) {
+            for(int i=0;i<size;++i) {
+                map.put(keys[i], readDouble());
+            }
+        }
+        else if(layout==BinaryCodec.LONG_INTEGER_LAYOUT) {
+            for(int i=0;i<size;++i) {
+                map.put(keys[i], (int)unZigZag(readVarLong()));
+            }
+        }
+        else {
+            throw new StreamCorruptedException("Unknown map layout "+layout+".");
+        }
+        
+        return map;
+    }
+    
+    private Collection<Object> readCollection(byte kind) throws IOException, ClassNotFoundException {
+        int size = (int)readVarLong();
+        
+        Collection<Object> collection;
+        if(kind==BinaryCodec.LINKED_LIST) {
+            collection = new LinkedList<>();
+        }
+        else if(kind==BinaryCodec.HASH_SET) {
+            collection = new HashSet<>(capacity(size));
+        }
+        else if(kind==BinaryCodec.LINKED_HASH_SET) {
+            collection = new LinkedHashSet<>(capacity(size));
+        }
+        else if(kind==BinaryCodec.CONCURRENT_LINKED_QUEUE) {
+            collection = new ConcurrentLinkedQueue<>();
+        }
+        else {
+            collection = new ArrayList<>(size);
+        }
+        
+        for(int i=0;i<size;++i) {
+            collection.add(readValue());
+        }
+        
+        return collection;
+    }
+    
+    /**
+     * Reads a single value written with writeValue().
+     * 
+     * @return
+     * @throws IOException
+     * @throws ClassNotFoundException 
+     */
+    public Object readValue() throws IOException, ClassNotFoundException {
+        byte type = readByte();
+        switch(type) {
+            case BinaryCodec.NULL:
+                return null;
+            case BinaryCodec.TRUE:
+                return Boolean.TRUE;
+            case BinaryCodec.FALSE:
+                return Boolean.FALSE;
+            case BinaryCodec.INTEGER:
+                return (int)unZigZag(readVarLong());
+            case BinaryCodec.LONG:
+                return unZigZag(readVarLong());
+            case BinaryCodec.DOUBLE:
+                return readDouble();
+            case BinaryCodec.STRING:
+                byte[] bytes = new byte[(int)readVarLong()];
+                readFully(bytes);
+                String str = new String(bytes, StandardCharsets.UTF_8);
+                stringDictionary.add(str);
+                return str;
+            case BinaryCodec.STRING_REFERENCE:
+                return stringDictionary.get((int)readVarLong());
+            case BinaryCodec.OBJECT:
+                return readObject();
+            default:
+                throw new StreamCorruptedException("Unknown value type "+type+".");
+        }
+    }
+    
+    private static long unZigZag(long v) {
+        return (v >>> 1) ^ -(v & 1);
+    }
+    
+    private long readVarLong() throws IOException {
+        long v = 0L;
+        for(int shift=0;shift<64;shift+=7) {
+            byte b = readByte();
+            v |= (long)(b & 0x7F) << shift;
+            if((b & 0x80)==0) {
+                return v;
+            }
+        }
+        throw new StreamCorruptedException("Malformed varint.");
+    }
+}
@@ -0,0 +1,276 @@
+/* 
+ * Copyright (C) 2014 Vasilis Vryniotis <bbriniotis at datumbox.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.datumbox.common.persistentstorage.serialization;
+
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * ObjectOutputStream which writes the maps and the collections of the object 
+ * graph with the compact encoding of the BinaryCodec. All the other objects are
+ * written by the standard Java serialization.
+ * 
+ * @author Vasilis Vryniotis <bbriniotis at datumbox.com>
+ */
+public class CompactObjectOutputStream extends ObjectOutputStream {
+    
+    private final Map<String, Integer> stringDictionary = new HashMap<>();
+    
+    private final Map<Object, CompactStructure> replacements = new IdentityHashMap<>();
+    
+    public CompactObjectOutputStream(OutputStream out) throws IOException {
+        super(out);
+        enableReplaceObject(true);
+    }
+
+    @Override
+    protected void writeStreamHeader() throws IOException {
+        super.writeStreamHeader();
+        writeInt(BinaryCodec.MAGIC);
+        writeInt(BinaryCodec.VERSION);
+    }
+
+    @Override
+    protected Object replaceObject(Object obj) throws IOException {
+        if(obj==null) {
+            return null;
+        }
+        
+        //the same placeholder is used for every reference of a structure to preserve the shared references
+        CompactStructure replacement = replacements.get(obj);
+        if(replacement==null && CompactStructure.isSupported(obj)) {
+            replacement = new CompactStructure(obj);
+            replacements.put(obj, replacement);
+        }
+        
+        return (replacement!=null)?replacement:obj;
+    }
+    
+    /**
+     * Writes a map or a collection with the compact encoding.
+     * 
+     * @param structure
+     * @throws IOException 
+     */
+    public void writeStructure(Object structure) throws IOException {
+        if(structure instanceof LazyLoadedMap) {
+            structure = ((LazyLoadedMap<?, ?>)structure).getMap();
+        }
+        
+        if(structure instanceof Map) {
+            writeMap((Map<?, ?>)structure);
+        }
+        else if(structure instanceof Collection) {
+            writeCollection((Collection<?>)structure);
+        }
+        else {
+            throw new IllegalArgumentException("Only maps and collections can be written as structures.");
+        }
+    }
+    
+    private void writeMap(Map<?, ?> map) throws IOException {
+        Class<?> klass = map.getClass();
+        byte kind;
+        if(klass==HashMap.class) {
+            kind = BinaryCodec.HASH_MAP;
+        }
+        else if(klass==LinkedHashMap.class) {
+            kind = BinaryCodec.LINKED_HASH_MAP;
+        }
+        else if(klass==ConcurrentHashMap.class) {
+            kind = BinaryCodec.CONCURRENT_HASH_MAP;
+        }
+        else if(klass==TreeMap.class && ((TreeMap<?, ?>)map).comparator()==null) {
+            kind = BinaryCodec.TREE_MAP;
+        }
+        else {
+            kind = BinaryCodec.OTHER_MAP;
+        }
+        
+        byte layout = (kind!=BinaryCodec.LINKED_HASH_MAP)?detectLayout(map):BinaryCodec.GENERIC_LAYOUT; //sorting the keys would change the order of the linked maps
+        
+        writeByte(kind);
+        writeByte(layout);
+        
+        if(layout==BinaryCodec.GENERIC_LAYOUT) {
+            //copy the entries first so that the size is always consistent with the written entries
+            Object[] entries = map.entrySet().toArray();
+            writeVarLong(entries.length);
+            for(Object e : entries) {
+                Map.Entry<?, ?> entry = (Map.Entry<?, ?>)e;
+                writeValue(entry.getKey());
+                writeValue(entry.getValue());
+            }
+            return;
+        }
+        
+        //The keys are written sorted and delta encoded, followed by the values as primitives
+        long[] keys = new long[map.size()];
+        int n = 0;
+        for(Object key : map.keySet()) {
+            if(n==keys.length) {
+                keys = Arrays.copyOf(keys, 2*n+1);
+            }
+            keys[n++] = (Long)key;
+        }
+        Arrays.sort(keys, 0, n);
+        
+        writeVarLong(n);
+        long previous = 0L;
+        for(int i=0;i<n;++i) {
+            writeVarLong(keys[i]-previous); //the differences are non negative, except from the first key which is written as it is
+            previous = keys[i];
+        }
+        
+        if(layout==BinaryCodec.LONG_DOUBLE_LAYOUT) {
+            for(int i=0;i<n;++i) {
+                writeDouble((Double)map.get(keys[i]));
+            }
+        }
+        else {
+            for(int i=0;i<n;++i) {
+                writeVarLong(zigZag((Integer)map.get(keys[i])));
+            }
+        }
+    }
+    
+    private static byte detectLayout(Map<?, ?> map) {
+        if(map.isEmpty()) {
+            return BinaryCodec.GENERIC_LAYOUT;
+        }
+        
+        boolean doubles = true;
+        boolean integers = true;
+        for(Map.Entry<?, ?> entry : map.entrySet()) {
+            if(!(entry.getKey() instanceof Long)) {
+                return BinaryCodec.GENERIC_LAYOUT;
+            }
+            Object value = entry.getValue();
+            doubles &= (value instanceof Double);
+            integers &= (value instanceof Integer);
+            if(!doubles && !integers) {
+                return BinaryCodec.GENERIC_LAYOUT;
+            }
+        }
+        
+        return (doubles)?BinaryCodec.LONG_DOUBLE_LAYOUT:BinaryCodec.LONG_INTEGER_LAYOUT;
+    }
+    
+    private void writeCollection(Collection<?> collection) throws IOException {
+        Class<?> klass = collection.getClass();
+        byte kind;
+        if(klass==ArrayList.class) {
+            kind = BinaryCodec.ARRAY_LIST;
+        }
+        else if(klass==LinkedList.class) {
+            kind = BinaryCodec.LINKED_LIST;
+        }
+        else if(klass==HashSet.class) {
+            kind = BinaryCodec.HASH_SET;
+        }
+        else if(klass==LinkedHashSet.class) {
+            kind = BinaryCodec.LINKED_HASH_SET;
+        }
+        else if(klass==ConcurrentLinkedQueue.class) {
+            kind = BinaryCodec.CONCURRENT_LINKED_QUEUE;
+        }
+        else {
+            kind = BinaryCodec.OTHER_COLLECTION;
+        }
+        
+        writeByte(kind);
+        Object[] elements = collection.toArray();
+        writeVarLong(elements.length);
+        for(Object element : elements) {
+            writeValue(element);
+        }
+    }
+    
+    /**
+     * Writes a single value. Numbers, booleans and strings are encoded compactly;
+     * the rest of the objects are written with writeObject().
+     * 
+     * @param value
+     * @throws IOException 
+     */
+    public void writeValue(Object value) throws IOException {
+        if(value==null) {
+            writeByte(BinaryCodec.NULL);
+        }
+        else if(value instanceof Double) {
+            writeByte(BinaryCodec.DOUBLE);
+            writeDouble((Double)value);
+        }
+        else if(value instanceof Integer) {
+            writeByte(BinaryCodec.INTEGER);
+            writeVarLong(zigZag((Integer)value));
+        }
+        else if(value instanceof Long) {
+            writeByte(BinaryCodec.LONG);
+            writeVarLong(zigZag((Long)value));
+        }
+        else if(value instanceof String) {
+            String str = (String)value;
+            Integer id = stringDictionary.get(str);
+            if(id!=null) {
+                writeByte(BinaryCodec.STRING_REFERENCE);
+                writeVarLong(id);
+            }
+            else {
+                stringDictionary.put(str, stringDictionary.size());
+                byte[] bytes = str.getBytes(StandardCharsets.UTF_8);
+                writeByte(BinaryCodec.STRING);
+                writeVarLong(bytes.length);
+                write(bytes);
+            }
+        }
+        else if(value instanceof Boolean) {
+            writeByte(((Boolean)value)?BinaryCodec.TRUE:BinaryCodec.FALSE);
+        }
+        else {
+            writeByte(BinaryCodec.OBJECT);
+            writeObject(value);
+        }
+    }
+    
+    private static long zigZag(long v) {
+        return (v << 1) ^ (v >> 63);
+    }
+    
+    private void writeVarLong(long v) throws IOException {
+        while((v & ~0x7FL)!=0L) {
+            writeByte((int)((v & 0x7F) | 0x80));
+            v >>>= 7;
+        }
+        writeByte((int)v);
+    }
+}
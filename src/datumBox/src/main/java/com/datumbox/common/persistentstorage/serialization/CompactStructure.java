@@ -0,0 +1,87 @@
+/* 
+ * Copyright (C) 2014 Vasilis Vryniotis <bbriniotis at datumbox.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.datumbox.common.persistentstorage.serialization;
+
+import java.io.Externalizable;
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+import java.io.ObjectStreamException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Placeholder which is written by the CompactObjectOutputStream instead of the 
+ * maps and the collections of the object graph. It stores its structure with
+ * the compact encoding and it is replaced by the structure when it is read.
+ * 
+ * @author Vasilis Vryniotis <bbriniotis at datumbox.com>
+ */
+public class CompactStructure implements Externalizable {
+    
+    private static final long serialVersionUID = 1L;
+    
+    private Object structure;
+    
+    /**
+     * Constructor used only by the deserialization.
+     */
+    public CompactStructure() {
+    }
+    
+    CompactStructure(Object structure) {
+        this.structure = structure;
+    }
+    
+    /**
+     * Checks whether the object is a map or a collection of a class which can 
+     * be restored exactly by the compact encoding.
+     * 
+     * @param obj
+     * @return 
+     */
+    static boolean isSupported(Object obj) {
+        Class<?> klass = obj.getClass();
+        if(klass==TreeMap.class) {
+            return ((TreeMap<?, ?>)obj).comparator()==null;
+        }
+        return klass==HashMap.class || klass==LinkedHashMap.class || klass==ConcurrentHashMap.class ||
+               klass==ArrayList.class || klass==LinkedList.class || klass==HashSet.class || 
+               klass==LinkedHashSet.class || klass==ConcurrentLinkedQueue.class;
+    }
+
+    @Override
+    public void writeExternal(ObjectOutput out) throws IOException {
+        ((CompactObjectOutputStream)out).writeStructure(structure);
+    }
+
+    @Override
+    public void readExternal(ObjectInput in) throws IOException, ClassNotFoundException {
+        structure = ((CompactObjectInputStream)in).readStructure();
+    }
+    
+    protected Object readResolve() throws ObjectStreamException {
+        return structure;
+    }
+}
@@ -0,0 +1,160 @@
+/* 
+ * Copyright (C) 2014 Vasilis Vryniotis <bbriniotis at datumbox.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.datumbox.common.persistentstorage.serialization;
+
+import java.io.IOException;
+import java.io.ObjectStreamException;
+import java.io.Serializable;
+import java.nio.file.Path;
+import java.util.AbstractMap;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Map which reads its contents from a chunk of a ChunkedFileReader the first 
+ * time it is accessed. It allows loading a stored model without reading the 
+ * parameters that are never used (ex. when checking if the model exists).
+ * 
+ * @author Vasilis Vryniotis <bbriniotis at datumbox.com>
+ * @param <K>
+ * @param <V> 
+ */
+public class LazyLoadedMap<K, V> extends AbstractMap<K, V> implements Serializable {
+    
+    private static final long serialVersionUID = 1L;
+    
+    private final transient Path path;
+    
+    private final transient long fileId;
+    
+    private final transient String chunkName;
+    
+    private volatile Map<K, V> map;
+    
+    public LazyLoadedMap(Path path, long fileId, String chunkName) {
+        this.path = path;
+        this.fileId = fileId;
+        this.chunkName = chunkName;
+    }
+    
+    /**
+     * Checks whether the contents have been read from the disk.
+     * 
+     * @return 
+     */
+    public boolean isLoaded() {
+        return map!=null;
+    }
+    
+    /**
+     * Returns the underlying map, reading it from the disk if necessary.
+     * 
+     * @return 
+     */
+    public Map<K, V> getMap() {
+        Map<K, V> m = map;
+        if(m==null) {
+            synchronized(this) {
+                m = map;
+                if(m==null) {
+                    try(ChunkedFileReader reader = new ChunkedFileReader(path)) {
+                        if(reader.getFileId()!=fileId) {
+                            throw new IllegalStateException("The file was modified before the map was loaded.");
+                        }
+                        m = reader.readMap(chunkName);
+                    }
+                    catch (IOException ex) {
+                        throw new RuntimeException(ex);
+                    }
+                    map = m;
+                }
+            }
+        }
+        return m;
+    }
+    
+    @Override
+    public int size() {
+        return getMap().size();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return getMap().isEmpty();
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return getMap().containsKey(key);
+    }
+
+    @Override
+    public boolean containsValue(Object value) {
+        return getMap().containsValue(value);
+    }
+
+    @Override
+    public V get(Object key) {
+        return getMap().get(key);
+    }
+
+    @Override
+    public V put(K key, V value) {
+        return getMap().put(key, value);
+    }
+
+    @Override
+    public V remove(Object key) {
+        return getMap().remove(key);
+    }
+
+    @Override
+    public void putAll(Map<? extends K, ? extends V> m) {
+        getMap().putAll(m);
+    }
+
+    @Override
+    public void clear() {
+        getMap().clear();
+    }
+
+    @Override
+    public Set<K> keySet() {
+        return getMap().keySet();
+    }
+
+    @Override
+    public Collection<V> values() {
+        return getMap().values();
+    }
+
+    @Override
+    public Set<Map.Entry<K, V>> entrySet() {
+        return getMap().entrySet();
+    }
+    
+    /**
+     * The map is serialized as the underlying map.
+     * 
+     * @return
+     * @throws ObjectStreamException 
+     */
+    protected Object writeReplace() throws ObjectStreamException {
+        return getMap();
+    }
+}
@@ -16,6 +16,7 @@
  */
 package com.datumbox.common.utilities;
 
+import com.datumbox.common.persistentstorage.serialization.BinaryCodec;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
@@ -72,7 +73,9 @@ public class DeepCopy {
     }
     
     /**
-     * Deep clone Object by serialization and deserialization.
+     * Deep clone Object by serialization and deserialization. The compact 
+     * encoding of the BinaryCodec is used because it copies the maps and the
+     * collections much faster than the standard Java serialization.
      * 
      * @param <T>
      * @param obj
@@ -80,6 +83,6 @@ public class DeepCopy {
      */
     @SuppressWarnings("unchecked")
     public static <T> T cloneObject(T obj) {
-        return (T)deserialize(serialize((Object)obj));
+        return (T)BinaryCodec.deserialize(BinaryCodec.serialize((Object)obj));
     }
 }
@@ -0,0 +1,130 @@
+/* 
+ * Copyright (C) 2014 Vasilis Vryniotis <bbriniotis at datumbox.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.datumbox.common.utilities;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Helper methods for running independent tasks on an ExecutorService.
+ * 
+ * @author Vasilis Vryniotis <bbriniotis at datumbox.com>
+ */
+public class ParallelFunctions {
+    
+    /**
+     * Submits all the tasks to the executorService and returns their results in
+     * the order of the tasks. If any of the tasks fails, the remaining ones are
+     * cancelled and the exception is rethrown. If the executorService is null
+     * the tasks are executed in order on the calling thread.
+     * 
+     * @param <T>
+     * @param executorService
+     * @param tasks
+     * @return 
+     */
+    public static <T> List<T> invokeAll(ExecutorService executorService, List<Callable<T>> tasks) {
+        if(executorService==null) {
+            List<T> results = new ArrayList<>(tasks.size());
+            for(Callable<T> task : tasks) {
+                try {
+                    results.add(task.call());
+                }
+                catch (RuntimeException ex) {
+                    throw ex;
+                }
+                catch (Exception ex) {
+                    throw new RuntimeException(ex);
+                }
+            }
+            return results;
+        }
+        
+        List<Future<T>> futures = new ArrayList<>(tasks.size());
+        for(Callable<T> task : tasks) {
+            futures.add(executorService.submit(task));
+        }
+        
+        List<T> results = new ArrayList<>(tasks.size());
+        try {
+            for(Future<T> future : futures) {
+                results.add(future.get());
+            }
+        } 
+        catch (InterruptedException | ExecutionException ex) {
+            for(Future<T> future : futures) {
+                future.cancel(true);
+            }
+            
+            if(ex instanceof ExecutionException && ex.getCause() instanceof RuntimeException) {
+                throw (RuntimeException)ex.getCause();
+            }
+            throw new RuntimeException(ex);
+        }
+        
+        return results;
+    }
+    
+    /**
+     * Wraps the task so that it uses its own Random generator, initialized with
+     * the provided seed. The seeds should be drawn on the calling thread to make
+     * the results independent of the scheduling of the threads.
+     * 
+     * @param <T>
+     * @param task
+     * @param seed
+     * @return 
+     */
+    public static <T> Callable<T> seeded(final Callable<T> task, final long seed) {
+        return new Callable<T>() {
+            @Override
+            public T call() throws Exception {
+                //the tasks can be nested (ex the weak classifiers of an ensemble in a k-fold cross validation), so the previous generator of the thread is restored
+                Random previous = RandomValue.setThreadRandomGenerator(new Random(seed));
+                try {
+                    return task.call();
+                }
+                finally {
+                    RandomValue.setThreadRandomGenerator(previous);
+                }
+            }
+        };
+    }
+    
+    /**
+     * Splits the range [0, n) in at most partitions consecutive ranges of 
+     * almost equal size. The returned array contains the partitions+1 
+     * boundaries.
+     * 
+     * @param n
+     * @param partitions
+     * @return 
+     */
+    public static int[] partition(int n, int partitions) {
+        partitions = Math.max(1, Math.min(partitions, n));
+        int[] boundaries = new int[partitions+1];
+        for(int i=0;i<=partitions;++i) {
+            boundaries[i] = (int)((long)n*i/partitions);
+        }
+        return boundaries;
+    }
+}
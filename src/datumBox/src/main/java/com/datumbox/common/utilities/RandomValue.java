@@ -25,15 +25,51 @@ import java.util.Random;
 public class RandomValue {
     public static Random randomGenerator = new Random();
     
+    //Optional per thread generators. They are used by the tasks that run in parallel (ex k-fold cross validation) so that their results do not depend on the scheduling of the threads.
+    private static final ThreadLocal<Random> threadRandomGenerator = new ThreadLocal<>();
+    
+    /**
+     * Returns the Random generator of the current thread if one is set, 
+     * otherwise the global randomGenerator.
+     * 
+     * @return 
+     */
+    public static Random getRandomGenerator() {
+        Random rnd = threadRandomGenerator.get();
+        if(rnd==null) {
+            return randomGenerator;
+        }
+        return rnd;
+    }
+    
+    /**
+     * Sets the Random generator that will be used by the current thread and 
+     * returns the one that was set before, or null. Passing null restores the 
+     * use of the global randomGenerator.
+     * 
+     * @param rnd 
+     * @return 
+     */
+    public static Random setThreadRandomGenerator(Random rnd) {
+        Random previous = threadRandomGenerator.get();
+        if(rnd==null) {
+            threadRandomGenerator.remove();
+        }
+        else {
+            threadRandomGenerator.set(rnd);
+        }
+        return previous;
+    }
+    
     public static double doubleRand(double min, double max) {
-        return min + (randomGenerator.nextDouble() * (max - min));
+        return min + (getRandomGenerator().nextDouble() * (max - min));
     }
     
     public static long longRand(long min, long max) {
-        return min + (long)(randomGenerator.nextDouble() * ((max - min) + 1L));
+        return min + (long)(getRandomGenerator().nextDouble() * ((max - min) + 1L));
     }
     
     public static int intRand(int min, int max) {
-        return min + (int)(randomGenerator.nextDouble() * ((max - min) + 1));
+        return min + (int)(getRandomGenerator().nextDouble() * ((max - min) + 1));
     }
 }
@@ -0,0 +1,71 @@
+/* 
+ * Copyright (C) 2014 Vasilis Vryniotis <bbriniotis at datumbox.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.datumbox.configuration;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ *
+ * @author Vasilis Vryniotis <bbriniotis at datumbox.com>
+ */
+public class ConcurrencyConfiguration {
+    
+    //The number of threads used by the algorithms that can run in parallel (ex k-fold cross validation). If it is set to 1 everything runs on the calling thread.
+    private static volatile int maxNumberOfThreads = 1; //Runtime.getRuntime().availableProcessors();
+    
+    public static int getMaxNumberOfThreads() {
+        return maxNumberOfThreads;
+    }
+    
+    /**
+     * Sets the number of threads used by the algorithms that can run in 
+     * parallel. It affects only the analyses which start after the call.
+     * 
+     * @param maxNumberOfThreads 
+     */
+    public static void setMaxNumberOfThreads(int maxNumberOfThreads) {
+        if(maxNumberOfThreads<1) {
+            throw new IllegalArgumentException("The number of threads must be positive.");
+        }
+        ConcurrencyConfiguration.maxNumberOfThreads = maxNumberOfThreads;
+    }
+    
+    public static boolean isParallelized() {
+        return maxNumberOfThreads>1;
+    }
+    
+    /**
+     * Creates a new fixed size ExecutorService with maxNumberOfThreads daemon
+     * threads. The caller is responsible for shutting it down.
+     * 
+     * @return 
+     */
+    public static ExecutorService newExecutorService() {
+        return Executors.newFixedThreadPool(maxNumberOfThreads, new ThreadFactory() {
+            private final ThreadFactory defaultFactory = Executors.defaultThreadFactory();
+            
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = defaultFactory.newThread(r);
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+}
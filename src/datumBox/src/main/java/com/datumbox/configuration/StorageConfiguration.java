@@ -18,6 +18,7 @@ package com.datumbox.configuration;
 
 import com.datumbox.common.persistentstorage.factories.BigDataStructureFactory;
 import com.datumbox.common.persistentstorage.factories.InMemoryStructureFactory;
+import com.datumbox.common.persistentstorage.factories.MemoryMappedStructureFactory;
 import com.datumbox.common.persistentstorage.factories.MongoDBStructureFactory;
 import com.mongodb.MongoCredential;
 import com.mongodb.ServerAddress;
@@ -33,6 +34,7 @@ public class StorageConfiguration {
     
     //public static final Class PERMANENT_STORAGE = MongoDB.class;
     public static final Class PERMANENT_STORAGE = InMemory.class;   
+    //public static final Class PERMANENT_STORAGE = MemoryMapped.class;
     
     public static final boolean IN_MEMORY_TRAINING = true; //this causes the memoryconfiguration object to be initialized for in-memory storage but the user can override this
     
@@ -69,6 +71,19 @@ public class StorageConfiguration {
         
         //DB specific constants
         public static final String DB_ROOT_FOLDER = "";
+        public static final boolean COMPRESS_FILES = false; //compresses the stored files; they become smaller but slower to save and load
+        public static final boolean LAZY_LOADING = true; //the maps of the models are read from the disk the first time they are used
+    }
+    
+    public static class MemoryMapped {
+        //Mandatory constants
+        public static final Class<? extends BigDataStructureFactory> STRUCTURE_FRACTORY_CLASS = MemoryMappedStructureFactory.class;
+        public static final String DBNAME_SEPARATOR = "_"; //NOT permitted characters are: <>:"/\|?*
+        public static final String TMP_PREFIX = "TMP_";
+        
+        //DB specific constants
+        public static final String DB_ROOT_FOLDER = "";
+        public static final int SEGMENT_SIZE_BITS = 24; //the files are mapped in segments of 16MB which is also the max size of a single key-value pair
     }
     
     
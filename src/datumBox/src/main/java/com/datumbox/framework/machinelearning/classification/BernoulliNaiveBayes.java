@@ -19,17 +19,14 @@ package com.datumbox.framework.machinelearning.classification;
 import com.datumbox.framework.machinelearning.common.bases.basemodels.BaseNaiveBayes;
 import com.datumbox.common.dataobjects.AssociativeArray;
 import com.datumbox.common.dataobjects.Dataset;
+import com.datumbox.common.dataobjects.IntegerDictionary;
+import com.datumbox.common.dataobjects.LongDoubleHashMap;
 import com.datumbox.common.dataobjects.Record;
-import com.datumbox.common.persistentstorage.factories.BigDataStructureFactory;
-import com.datumbox.common.persistentstorage.interfaces.BigDataStructureMarker;
-import com.datumbox.configuration.MemoryConfiguration;
+import com.datumbox.framework.machinelearning.common.dataobjects.BatchPredictor;
+import com.datumbox.framework.machinelearning.common.dataobjects.LinearBatchPredictor;
 import com.datumbox.framework.statistics.descriptivestatistics.Descriptives;
-import java.util.Arrays;
 import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
-import java.util.Set;
-import org.mongodb.morphia.annotations.Transient;
 
 /**
  *
@@ -46,27 +43,7 @@ public class BernoulliNaiveBayes extends BaseNaiveBayes<BernoulliNaiveBayes.Mode
     public static final String SHORT_METHOD_NAME = "BerNB";
     
     public static class ModelParameters extends BaseNaiveBayes.ModelParameters {
-        @BigDataStructureMarker
-        @Transient
-        private Map<Object, Double> sumOfLog1minusProb; //the Sum Of Log(1-prob) for each class. This is used to optimize the speed of validation. Instead of looping through all the keywords by having this Sum we are able to loop only through the features of the observation
-        
-        @Override
-        public void bigDataStructureInitializer(BigDataStructureFactory bdsf, MemoryConfiguration memoryConfiguration) {
-            super.bigDataStructureInitializer(bdsf, memoryConfiguration);
-            
-            BigDataStructureFactory.MapType mapType = memoryConfiguration.getMapType();
-            int LRUsize = memoryConfiguration.getLRUsize();
-            
-            sumOfLog1minusProb = bdsf.getMap("sumOfLog1minusProb", mapType, LRUsize);
-        }
-        
-        public Map<Object, Double> getSumOfLog1minusProb() {
-            return sumOfLog1minusProb;
-        }
 
-        public void setSumOfLog1minusProb(Map<Object, Double> sumOfLog1minusProb) {
-            this.sumOfLog1minusProb = sumOfLog1minusProb;
-        }
     } 
     
     
@@ -81,6 +58,8 @@ public class BernoulliNaiveBayes extends BaseNaiveBayes<BernoulliNaiveBayes.Mode
 
     protected static final boolean IS_BINARIZED = true;
     
+    private transient double[] frozenSumOfLog1minusProb = null; //set only on the frozen copies of the model
+    
     public BernoulliNaiveBayes(String dbName) {
         super(dbName, BernoulliNaiveBayes.ModelParameters.class,
                 BernoulliNaiveBayes.TrainingParameters.class,
@@ -98,6 +77,24 @@ public class BernoulliNaiveBayes extends BaseNaiveBayes<BernoulliNaiveBayes.Mode
         super.train(trainingData, validationData);
     }
     
+    @Override
+    protected void freezeComponents() {
+        super.freezeComponents();
+        
+        //the frozen copies can not be updated, so the Sum of log(1-prob) is estimated once
+        Object[] classes = knowledgeBase.getModelParameters().getOrderedClasses().toArray();
+        frozenSumOfLog1minusProb = estimateSumOfLog1minusProb(classes, estimateDenominators(classes), loadFeatureClassCounts());
+    }
+    
+    /**
+     * Estimates the predictions from the counts of the model. The Sum of 
+     * log(1-prob) of the classes depends on all the features of the vocabulary, 
+     * so it is estimated on every call unless the model is frozen. Use the 
+     * BatchPredictor or a frozen copy of the model to avoid this cost when 
+     * predicting many small datasets.
+     * 
+     * @param newData 
+     */
     @Override
     protected void predictDataset(Dataset newData) { 
         if(newData.isEmpty()) {
@@ -106,70 +103,67 @@ public class BernoulliNaiveBayes extends BaseNaiveBayes<BernoulliNaiveBayes.Mode
         
         ModelParameters modelParameters = knowledgeBase.getModelParameters();
         
-        Map<List<Object>, Double> logLikelihoods = modelParameters.getLogLikelihoods();
-        Map<Object, Double> logPriors = modelParameters.getLogPriors();
-        Set<Object> classesSet = modelParameters.getClasses();
-        Map<Object, Double> sumOfLog1minusProb = modelParameters.getSumOfLog1minusProb();
+        LongDoubleHashMap counts = loadFeatureClassCounts();
+        IntegerDictionary featureDictionary = new IntegerDictionary(modelParameters.getFeatureIds());
         
-        Object someClass = classesSet.iterator().next();
+        Object[] classes = modelParameters.getOrderedClasses().toArray(); //the position of the class is its id
+        int c = classes.length;
         
+        //these are small. Size equal to class numbers.
+        // We cache them because we don't want to load them again and again from the DB
+        double[] logPriors = estimateLogPriors(classes);
+        double[] denominators = estimateDenominators(classes);
+        Map<Object, Double> cachedLogPriors = new HashMap<>();
+        for(int classId=0;classId<c;++classId) {
+            cachedLogPriors.put(classes[classId], logPriors[classId]);
+        }
         
-        Map<Object, Double> cachedLogPriors = new HashMap<>(logPriors);
-        //this is small. Size equal to class numbers.
-        // We cache it because we don't want to load it again and again from the DB
+        //in order to avoid looping throug all available features for each record,
+        // we calculate the Sum of log(1-prob) once.
+        double[] sumOfLog1minusProb = frozenSumOfLog1minusProb;
+        if(sumOfLog1minusProb==null) {
+            sumOfLog1minusProb = estimateSumOfLog1minusProb(classes, denominators, counts);
+        }
         
+        double[] featureClassCounts = new double[c];
         for(Record r : newData) {
             //Build new map here! reinitialize the prediction scores with the scores of the classes
             AssociativeArray predictionScores = new AssociativeArray(new HashMap<>(cachedLogPriors)); 
             
-            //in order to avoid looping throug all available features for each record,
-            // we have already calculated the Sum of log(1-prob).
             // So we know the score of a record that has no feature activated.
             // We add this score on the initial score below:
-            for(Map.Entry<Object, Double> entry : sumOfLog1minusProb.entrySet()) {
-                Object theClass = entry.getKey();
-                Double value = entry.getValue();
+            for(int classId=0;classId<c;++classId) {
+                Object theClass = classes[classId];
                 Double previousValue = predictionScores.getDouble(theClass);
-                predictionScores.put(theClass, previousValue+value);
+                predictionScores.put(theClass, previousValue+sumOfLog1minusProb[classId]);
             }
             
             
             //Then we loop through all the active features of the record, we add the log(prob) and we subtract the log(1-prob)
             for(Map.Entry<Object, Object> entry : r.getX().entrySet()) {
-                Object feature = entry.getKey();
-                
-                
                 //EVERY feature within our dictionary has a value for EVERY class
-                //So if the feature has no value for one random class (someClass has 
-                //no particular significance), then it will not have for any class
-                //and thus the feature is not in the dictionary and can be ignored.
-                if(!logLikelihoods.containsKey(Arrays.<Object>asList(feature, someClass))) {
+                //So if the feature is not in the dictionary it can be ignored.
+                Integer featureId = featureDictionary.getId(entry.getKey());
+                if(featureId==null) {
                     continue;
                 }
                 
-                //extract the feature scores for each class for the particular feature
-                AssociativeArray classLogScoresForThisFeature = new AssociativeArray(); 
-                for(Object theClass : classesSet) {
-                    Double logScore = logLikelihoods.get(Arrays.<Object>asList(feature, theClass));
-                    classLogScoresForThisFeature.put(theClass, logScore);
-                }
-                
-                
                 Double occurrences=Dataset.toDouble(entry.getValue());
                 if(occurrences==null || occurrences==0.0) { 
                     continue;
                 }
                 //no need to specifically binarize the occurrences. we will not multiply the score by it
                 
+                if(!loadFeatureClassCounts(featureClassCounts, counts, featureId, classes)) {
+                    continue; //the feature was never active in the training data, so it has no probability for any class
+                }
                 
-                
-                for(Map.Entry<Object, Object> entry2 : classLogScoresForThisFeature.entrySet()) {
-                    Object theClass = entry2.getKey();
-                    Double probability = Dataset.toDouble(entry2.getValue());
+                for(int classId=0;classId<c;++classId) {
+                    Object theClass = classes[classId];
+                    double probability = estimateLikelihood(featureClassCounts[classId], denominators[classId]);
                     Double previousValue = predictionScores.getDouble(theClass);
                     predictionScores.put(theClass, previousValue + Math.log(probability)-Math.log(1.0-probability));
                 }
-                classLogScoresForThisFeature=null;
             }
             
             Object theClass=getSelectedClassFromClassScores(predictionScores);
@@ -182,111 +176,106 @@ public class BernoulliNaiveBayes extends BaseNaiveBayes<BernoulliNaiveBayes.Mode
         
     }
     
+    /**
+     * Returns a BatchPredictor which uses the probabilities of all the features
+     * of the model. They are estimated once from the counts when the 
+     * BatchPredictor is built, so its cost is proportional to the size of the
+     * vocabulary.
+     * 
+     * @return 
+     */
     @Override
-    protected void estimateModelParameters(Dataset trainingData) {
-        ModelParameters modelParameters = knowledgeBase.getModelParameters();
+    public BatchPredictor getBatchPredictor() {
+        knowledgeBase.load();
         
-        Map<List<Object>, Double> likelihoods = modelParameters.getLogLikelihoods();
-        Map<Object, Double> logPriors = modelParameters.getLogPriors();
-        Set<Object> classesSet = modelParameters.getClasses();
-        Map<Object, Double> sumOfLog1minusProb = modelParameters.getSumOfLog1minusProb();
+        ModelParameters modelParameters = knowledgeBase.getModelParameters();
         
-        int n = trainingData.size();
-        int d = trainingData.getColumnSize();
+        LongDoubleHashMap counts = loadFeatureClassCounts();
+        Map<Object, Integer> featureIds = modelParameters.getFeatureIds();
         
-        //initialization
-        modelParameters.setN(n);
-        modelParameters.setD(d);
+        Object[] classes = modelParameters.getOrderedClasses().toArray(); //the position of the class is its id
+        int c = classes.length;
         
+        double[] denominators = estimateDenominators(classes);
         
-        //calculate first statistics about the classes
-        AssociativeArray totalFeatureOccurrencesForEachClass = new AssociativeArray(); 
-        for(Record r : trainingData) {
-            Object theClass=r.getY();
-            
-            Double classCount = logPriors.get(theClass);
-            if(classCount!=null) { //already exists? increase counter
-                logPriors.put(theClass,classCount+1.0);  
-            }
-            else { //is it new class? add it
-                classesSet.add(theClass);
-                logPriors.put(theClass, 1.0);  
-                totalFeatureOccurrencesForEachClass.put(theClass, 0.0);
-                
-                sumOfLog1minusProb.put(theClass, 0.0);
-            }
+        //the score of a record without active features is used as bias
+        double[] biases = estimateLogPriors(classes);
+        double[] sumOfLog1minusProb = estimateSumOfLog1minusProb(classes, denominators, counts);
+        for(int classId=0;classId<c;++classId) {
+            biases[classId] += sumOfLog1minusProb[classId];
         }
         
-        //now calculate the statistics of features
-        for(Record r : trainingData) {
-            
-            //store the occurrances of the features
-            for(Map.Entry<Object, Object> entry : r.getX().entrySet()) {
-                Object feature = entry.getKey();
-                Double occurrences=Dataset.toDouble(entry.getValue());
-                
-                if(occurrences==0.0) {
-                    continue;
-                }
-                else {
-                    occurrences=1.0; //clip occurrences to 1
-                }
-                
-                //loop through all the classes to ensure that the feature-class combination is initialized for ALL the classes
-                //in a previous implementation I did not loop through all the classes and used only the one of the record.
-                //THIS IS WRONG. By not assigning 0 scores to the rest of the classes for this feature, we don't penalties for the non occurrance. 
-                //The math REQUIRE us to have scores for all classes to make the probabilities comparable.
-                for(Object theClass : classesSet) {
-                    List<Object> featureClassTuple = Arrays.<Object>asList(feature, theClass);
-                    Double previousValue = likelihoods.get(featureClassTuple);
-                    if(previousValue==null) {
-                        previousValue=0.0;
-                        likelihoods.put(featureClassTuple, 0.0);
-                    }
-                    
-                    //find the class of this particular example
-                    if(theClass.equals(r.getY())) {
-                        //update the statistics of the feature
-                        likelihoods.put(featureClassTuple, previousValue+occurrences);
-                        totalFeatureOccurrencesForEachClass.put(theClass,totalFeatureOccurrencesForEachClass.getDouble(theClass)+occurrences);
-                    }
-                }                
+        //every active feature adds the log(prob) and subtracts the log(1-prob)
+        double[] weights = new double[featureIds.size()*c];
+        double[] featureClassCounts = new double[c];
+        for(Integer featureId : featureIds.values()) {
+            if(!loadFeatureClassCounts(featureClassCounts, counts, featureId, classes)) {
+                continue;
+            }
+            for(int classId=0;classId<c;++classId) {
+                double probability = estimateLikelihood(featureClassCounts[classId], denominators[classId]);
+                weights[featureId*c+classId] = Math.log(probability)-Math.log(1.0-probability);
             }
-            
         }
         
-        int c = classesSet.size();
-        modelParameters.setC(c);
-        
-        
-        //calculate prior log probabilities
-        for(Map.Entry<Object, Double> entry : logPriors.entrySet()) {
-            Object theClass = entry.getKey();
-            Double count = entry.getValue();
-            
-            //updated log priors
-            logPriors.put(theClass, Math.log(count/n));
+        return new LinearBatchPredictor(featureIds, classes, weights, biases, LinearBatchPredictor.ValueTransformation.BINARIZE_NONZERO);
+    }
+    
+    @Override
+    protected double featureCount(Double occurrences) {
+        if(occurrences==0.0) {
+            return 0.0;
         }
+        return 1.0; //clip occurrences to 1
+    }
+    
+    /**
+     * Estimates the Sum of log(1-prob) of each class over all the features 
+     * which are active in the data. This is the score of a record without 
+     * active features.
+     * 
+     * @param classes
+     * @param denominators
+     * @param counts
+     * @return 
+     */
+    private double[] estimateSumOfLog1minusProb(Object[] classes, double[] denominators, LongDoubleHashMap counts) {
+        int c = classes.length;
         
-        //update log likelihood
-        for(Map.Entry<List<Object>, Double> featureClassCounts : likelihoods.entrySet()) {
-            List<Object> tp = featureClassCounts.getKey();
-            //Object feature = tp.get(0);
-            Object theClass = tp.get(1);
-            Double occurrences = featureClassCounts.getValue();
-            if(occurrences==null) {
-                occurrences=0.0;
+        double[] sumOfLog1minusProb = new double[c];
+        double[] featureClassCounts = new double[c];
+        for(Integer featureId : knowledgeBase.getModelParameters().getFeatureIds().values()) {
+            //the features which are never active in the data have no likelihoods
+            if(!loadFeatureClassCounts(featureClassCounts, counts, featureId, classes)) {
+                continue;
             }
-
-            //We perform laplace smoothing (also known as add-1)
-            Double smoothedProbability = (occurrences+1.0)/(totalFeatureOccurrencesForEachClass.getDouble(theClass)+d); // the d is also known in NLP problems as the Vocabulary size. 
             
-            likelihoods.put(featureClassCounts.getKey(), smoothedProbability);
-            
-            //WARNING! We store real probabilities NOT logProbs here. This is because we will need to estimate the log(1-prob) during validation
-            sumOfLog1minusProb.put(theClass, sumOfLog1minusProb.get(theClass) + Math.log( 1.0-smoothedProbability )); 
+            //EVERY active feature has a probability for EVERY class
+            for(int classId=0;classId<c;++classId) {
+                sumOfLog1minusProb[classId] += Math.log( 1.0-estimateLikelihood(featureClassCounts[classId], denominators[classId]) ); 
+            }
         }
         
-        totalFeatureOccurrencesForEachClass=null;
+        return sumOfLog1minusProb;
+    }
+    
+    /**
+     * Loads the counts of the feature in each class in the provided array and 
+     * returns whether the feature was active in any class.
+     * 
+     * @param featureClassCounts
+     * @param counts
+     * @param featureId
+     * @param classes
+     * @return 
+     */
+    private static boolean loadFeatureClassCounts(double[] featureClassCounts, LongDoubleHashMap counts, Integer featureId, Object[] classes) {
+        boolean active = false;
+        for(int classId=0;classId<classes.length;++classId) {
+            double featureClassCount = counts.get(IntegerDictionary.key(featureId, classId), Double.NaN); //only the non zero counts are stored
+            active = active || !Double.isNaN(featureClassCount);
+            featureClassCounts[classId] = Double.isNaN(featureClassCount)?0.0:featureClassCount;
+        }
+        return active;
     }
 }
@@ -18,27 +18,35 @@ package com.datumbox.framework.machinelearning.classification;
 
 import com.datumbox.common.dataobjects.AssociativeArray;
 import com.datumbox.common.dataobjects.Dataset;
+import com.datumbox.common.dataobjects.IntegerDictionary;
+import com.datumbox.common.dataobjects.LongDoubleHashMap;
 import com.datumbox.common.dataobjects.Record;
 import com.datumbox.common.persistentstorage.factories.BigDataStructureFactory;
+import com.datumbox.common.utilities.ParallelFunctions;
+import com.datumbox.configuration.ConcurrencyConfiguration;
 import com.datumbox.configuration.MemoryConfiguration;
 import com.datumbox.framework.machinelearning.common.bases.mlmodels.BaseMLclassifier;
 import com.datumbox.common.persistentstorage.interfaces.BigDataStructureMarker;
+import com.datumbox.framework.machinelearning.common.dataobjects.BatchPredictor;
+import com.datumbox.framework.machinelearning.common.dataobjects.LinearBatchPredictor;
+import com.datumbox.framework.machinelearning.common.interfaces.BatchPredictable;
 import com.datumbox.configuration.GeneralConfiguration;
-import com.datumbox.configuration.StorageConfiguration;
+import com.datumbox.framework.mathematics.optimization.LBFGS;
 import com.datumbox.framework.statistics.descriptivestatistics.Descriptives;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
 import org.mongodb.morphia.annotations.Transient;
 
 /**
  *
  * @author Vasilis Vryniotis <bbriniotis at datumbox.com>
  */
-public class MaximumEntropy extends BaseMLclassifier<MaximumEntropy.ModelParameters, MaximumEntropy.TrainingParameters, MaximumEntropy.ValidationMetrics> {
+public class MaximumEntropy extends BaseMLclassifier<MaximumEntropy.ModelParameters, MaximumEntropy.TrainingParameters, MaximumEntropy.ValidationMetrics> implements BatchPredictable {
     //References: http://www.cs.cmu.edu/afs/cs/user/aberger/www/html/tutorial/node3.html http://acl.ldc.upenn.edu/P/P02/P02-1002.pdf
     /**
      * The internalDataCollections that are passed in this function are NOT modified after the analysis. 
@@ -48,6 +56,10 @@ public class MaximumEntropy extends BaseMLclassifier<MaximumEntropy.ModelParamet
     
     public static final String SHORT_METHOD_NAME = "MaxEn";
     
+    private static final int LBFGS_MEMORY = 10;
+    
+    private static final double LBFGS_TOLERANCE = 1e-8;
+    
     @Override
     public final String shortMethodName() {
         return SHORT_METHOD_NAME;
@@ -60,7 +72,14 @@ public class MaximumEntropy extends BaseMLclassifier<MaximumEntropy.ModelParamet
          */
         @BigDataStructureMarker
         @Transient
-        private Map<List<Object>, Double> lambdas; //the lambda parameters of the model
+        private Map<Long, Double> lambdas; //the lambda parameters of the model. The keys are packed (featureId, classId) pairs
+
+        /**
+         * The ids of the features used in the keys of the lambdas
+         */
+        @BigDataStructureMarker
+        @Transient
+        private Map<Object, Integer> featureIds; //dictionary of features
 
         
         @Override
@@ -71,20 +90,37 @@ public class MaximumEntropy extends BaseMLclassifier<MaximumEntropy.ModelParamet
             int LRUsize = memoryConfiguration.getLRUsize();
             
             lambdas = bdsf.getMap("lambdas", mapType, LRUsize);
+            featureIds = bdsf.getMap("featureIds", mapType, LRUsize);
         }
         
-        public Map<List<Object>, Double> getLambdas() {
+        public Map<Long, Double> getLambdas() {
             return lambdas;
         }
 
-        public void setLambdas(Map<List<Object>, Double> lambdas) {
+        public void setLambdas(Map<Long, Double> lambdas) {
             this.lambdas = lambdas;
         }
+
+        public Map<Object, Integer> getFeatureIds() {
+            return featureIds;
+        }
+
+        public void setFeatureIds(Map<Object, Integer> featureIds) {
+            this.featureIds = featureIds;
+        }
     } 
 
     
     public static class TrainingParameters extends BaseMLclassifier.TrainingParameters {         
+        
+        public enum Optimizer {
+            IIS, //Improved Iterative Scaling
+            LBFGS; //Limited memory BFGS on the conditional log-likelihood
+        }
+        
         private int totalIterations=100; 
+        
+        private Optimizer optimizer = Optimizer.IIS;
 
         public int getTotalIterations() {
             return totalIterations;
@@ -94,6 +130,14 @@ public class MaximumEntropy extends BaseMLclassifier<MaximumEntropy.ModelParamet
             this.totalIterations = totalIterations;
         }
 
+        public Optimizer getOptimizer() {
+            return optimizer;
+        }
+
+        public void setOptimizer(Optimizer optimizer) {
+            this.optimizer = optimizer;
+        }
+
     } 
     
     
@@ -102,19 +146,43 @@ public class MaximumEntropy extends BaseMLclassifier<MaximumEntropy.ModelParamet
     }
         
 
+    private transient LongDoubleHashMap frozenLambdas = null; //set only on the frozen copies of the model
     
     public MaximumEntropy(String dbName) {
         super(dbName, MaximumEntropy.ModelParameters.class, MaximumEntropy.TrainingParameters.class, MaximumEntropy.ValidationMetrics.class);
     }
     
+    @Override
+    protected void freezeComponents() {
+        //the frozen copies can not be trained, so the lambdas are loaded once
+        frozenLambdas = LongDoubleHashMap.newInstance(knowledgeBase.getModelParameters().getLambdas());
+    }
+    
+    /**
+     * Estimates the predictions from the lambdas of the model. The lambdas are
+     * loaded from the storage in a LongDoubleHashMap on every call unless the 
+     * model is frozen. Use the BatchPredictor or a frozen copy of the model to 
+     * avoid this cost when predicting many small datasets.
+     * 
+     * @param newData 
+     */
     @Override
     protected void predictDataset(Dataset newData) { 
-        Set<Object> classesSet = knowledgeBase.getModelParameters().getClasses();
-                
+        ModelParameters modelParameters = knowledgeBase.getModelParameters();
+        LongDoubleHashMap lambdas = loadLambdas();
+        IntegerDictionary featureDictionary = new IntegerDictionary(modelParameters.getFeatureIds());
+        Object[] classes = modelParameters.getOrderedClasses().toArray(); //the position of the class is its id
+        
+        int[] activeFeatureIds = new int[0];
         for(Record r : newData) {
+            if(activeFeatureIds.length<r.getX().size()) {
+                activeFeatureIds = new int[r.getX().size()];
+            }
+            int activeFeatures = findActiveFeatureIds(r.getX(), featureDictionary, activeFeatureIds);
+            
             AssociativeArray predictionScores = new AssociativeArray();
-            for(Object theClass : classesSet) {
-                predictionScores.put(theClass, calculateClassScore(r.getX(),theClass));
+            for(int classId=0;classId<classes.length;++classId) {
+                predictionScores.put(classes[classId], calculateClassScore(activeFeatureIds, activeFeatures, classId, lambdas));
             }
             
             Object theClass=getSelectedClassFromClassScores(predictionScores);
@@ -128,10 +196,28 @@ public class MaximumEntropy extends BaseMLclassifier<MaximumEntropy.ModelParamet
     }
     
     @Override
-    @SuppressWarnings("unchecked")
+    public BatchPredictor getBatchPredictor() {
+        knowledgeBase.load();
+        
+        ModelParameters modelParameters = knowledgeBase.getModelParameters();
+        Map<Object, Integer> featureIds = modelParameters.getFeatureIds();
+        Object[] classes = modelParameters.getOrderedClasses().toArray(); //the position of the class is its id
+        int c = classes.length;
+        
+        double[] weights = new double[featureIds.size()*c];
+        for(Map.Entry<Long, Double> entry : modelParameters.getLambdas().entrySet()) {
+            long featureClassKey = entry.getKey();
+            weights[IntegerDictionary.firstId(featureClassKey)*c+IntegerDictionary.secondId(featureClassKey)] = entry.getValue();
+        }
+        
+        //the classifier is binarized and it has no bias
+        return new LinearBatchPredictor(featureIds, classes, weights, new double[c], LinearBatchPredictor.ValueTransformation.BINARIZE_NONZERO);
+    }
+    
+    @Override
     protected void estimateModelParameters(Dataset trainingData) {
         ModelParameters modelParameters = knowledgeBase.getModelParameters();
-        String tmpPrefix=StorageConfiguration.getTmpPrefix();
+        TrainingParameters trainingParameters = knowledgeBase.getTrainingParameters();
         
         int n = trainingData.size();
         int d = trainingData.getColumnSize();
@@ -142,8 +228,9 @@ public class MaximumEntropy extends BaseMLclassifier<MaximumEntropy.ModelParamet
         modelParameters.setD(d);
         
         
-        Map<List<Object>, Double> lambdas = modelParameters.getLambdas();
+        Map<Long, Double> lambdas = modelParameters.getLambdas();
         Set<Object> classesSet = modelParameters.getClasses();
+        IntegerDictionary featureDictionary = new IntegerDictionary(modelParameters.getFeatureIds());
         
         //first we need to find all the classes
         for(Record r : trainingData) {
@@ -154,142 +241,113 @@ public class MaximumEntropy extends BaseMLclassifier<MaximumEntropy.ModelParamet
 
         int c = classesSet.size();
         modelParameters.setC(c);
+        IntegerDictionary classDictionary = IntegerDictionary.newInstance(modelParameters.getOrderedClasses());
         
         
-        //create a temporary map for the observed probabilities in training set
-        BigDataStructureFactory bdsf = knowledgeBase.getBdsf();
-        Map<List<Object>, Double> EpFj_observed = bdsf.getMap(tmpPrefix+"EpFj_observed", knowledgeBase.getMemoryConfiguration().getMapType(), knowledgeBase.getMemoryConfiguration().getLRUsize());
+        //the active features of the records are stored once in compressed rows and they are reused in every iteration
+        int[] rowOffsets = new int[n+1];
+        int[] rowFeatureIds = new int[Math.max(n, 16)];
+        int[] yClassIds = new int[n];
         
-        double Cmax = 0.0; //max number of activated features in the dataset. Required from the IIS algorithm
-        double increment = 1.0/n; //this is done for speed reasons. We don't want to repeat the same division over and over
+        int Cmax = 0; //max number of activated features in the dataset. Required from the IIS algorithm
         
-        //then we calculate the observed probabilities in training set
+        int row = 0;
         for(Record r : trainingData) {
             int activeFeatures=0; //counts the number of non-zero (active) features of the record
+            yClassIds[row] = classDictionary.getId(r.getY());
             
-            //store the occurrances of the features
             for(Map.Entry<Object, Object> entry : r.getX().entrySet()) {
                 Double occurrences=Dataset.toDouble(entry.getValue());
                 
                 if(occurrences==null || occurrences==0.0) {
                     continue;
                 }
-                Object feature = entry.getKey();
                 
-                //loop through all the classes to ensure that the feature-class combination is initialized for ALL the classes
-                //in a previous implementation I did not loop through all the classes and used only the one of the record.
-                //THIS IS WRONG. By not assigning 0 scores to the rest of the classes for this feature, we don't penalties for the non occurrance. 
-                //The math REQUIRE us to have scores for all classes to make the probabilities comparable.
-                for(Object theClass : classesSet) {
-                    List<Object> featureClassTuple = Arrays.<Object>asList(feature, theClass);
-                    Double previousValue = EpFj_observed.get(featureClassTuple);
-                    if(previousValue==null) {
-                        previousValue=0.0;
-                        EpFj_observed.put(featureClassTuple, 0.0);
-                        lambdas.put(featureClassTuple, 0.0); //initialize lambda
-                    }
-                    
-                    //find the class of this particular example
-                    if(theClass.equals(r.getY())) {
-                        //update the statistics of the feature
-                        EpFj_observed.put(featureClassTuple, previousValue + increment);
-                    }
-                } 
+                int position = rowOffsets[row]+activeFeatures;
+                if(position==rowFeatureIds.length) {
+                    rowFeatureIds = Arrays.copyOf(rowFeatureIds, 2*rowFeatureIds.length);
+                }
+                rowFeatureIds[position] = featureDictionary.intern(entry.getKey());
                 
                 ++activeFeatures;
             }
             
-
             //NOTE: we try to find the Cmax the maximum number of active featured in the training dataset. The total number of features in original IIS were required to be constant. NEVERTHELESS as it is mentioned here http://acl.ldc.upenn.edu/P/P02/P02-1002.pdf the Cmax only needs to constrain the number of features and not necessarily to be equal to them.
             //NOTE2: In this implementation the Cmax is equal to the maximum number of features that were found in the training dataset. We don't need to go through all the classes to find the Cmax. This is because of the way that the features are selected.
             if(activeFeatures>Cmax) {
                 Cmax=activeFeatures;
             }
             
+            ++row;
+            rowOffsets[row] = rowOffsets[row-1]+activeFeatures;
         }
         
         
-        //IIS algorithm
-        IIS(trainingData, EpFj_observed, Cmax);
+        //the observed probabilities in training set. The position of the (featureId, classId) pair is featureId*c+classId.
+        //Every feature-class combination is initialized for ALL the classes. By not assigning 0 scores to the rest of the classes 
+        //for a feature, we don't penalize its non occurrance. The math REQUIRE us to have scores for all classes to make the probabilities comparable.
+        int numberOfFeatures = featureDictionary.size();
+        double[] EpFj_observed = new double[numberOfFeatures*c];
+        double increment = 1.0/n; //this is done for speed reasons. We don't want to repeat the same division over and over
+        for(row=0;row<n;++row) {
+            for(int i=rowOffsets[row];i<rowOffsets[row+1];++i) {
+                EpFj_observed[rowFeatureIds[i]*c+yClassIds[row]] += increment;
+            }
+        }
+        
+        double[] weights = new double[numberOfFeatures*c];
         
+        ExecutorService executorService = null;
+        if(ConcurrencyConfiguration.isParallelized()) {
+            executorService = ConcurrencyConfiguration.newExecutorService();
+        }
+        try {
+            ExpectationsEstimator estimator = new ExpectationsEstimator(rowOffsets, rowFeatureIds, yClassIds, numberOfFeatures, c, executorService);
+            
+            if(trainingParameters.getOptimizer()==TrainingParameters.Optimizer.LBFGS) {
+                LBFGS(estimator, EpFj_observed, weights);
+            }
+            else {
+                IIS(estimator, EpFj_observed, weights, Cmax);
+            }
+        }
+        finally {
+            if(executorService!=null) {
+                executorService.shutdown();
+            }
+        }
         
-        //Drop the temporary Collection
-        bdsf.dropTable(tmpPrefix+"EpFj_observed", EpFj_observed);
+        //store the lambdas of all the feature-class combinations
+        for(int featureId=0;featureId<numberOfFeatures;++featureId) {
+            for(int classId=0;classId<c;++classId) {
+                lambdas.put(IntegerDictionary.key(featureId, classId), weights[featureId*c+classId]);
+            }
+        }
     }
     
 
-    private void IIS(Dataset trainingData, Map<List<Object>, Double> EpFj_observed, double Cmax) {
-        String tmpPrefix=StorageConfiguration.getTmpPrefix();
-        
-        ModelParameters modelParameters = knowledgeBase.getModelParameters();
-
+    private void IIS(ExpectationsEstimator estimator, double[] EpFj_observed, double[] lambdas, double Cmax) {
         int totalIterations = knowledgeBase.getTrainingParameters().getTotalIterations();
-        Set<Object> classesSet = modelParameters.getClasses();
-        Map<List<Object>, Double> lambdas = modelParameters.getLambdas();
         
-        int n = modelParameters.getN();
+        double[] EpFj_model = new double[lambdas.length];
+        int[] infiniteLambdaWeights = new int[lambdas.length];
         
-        BigDataStructureFactory bdsf = knowledgeBase.getBdsf();
         for(int iteration=0;iteration<totalIterations;++iteration) {
             
             if(GeneralConfiguration.DEBUG) {
                 System.out.println("Iteration "+iteration);
             }
             
-            Map<List<Object>, Double> EpFj_model = bdsf.getMap(tmpPrefix+"EpFj_model", knowledgeBase.getMemoryConfiguration().getMapType(), knowledgeBase.getMemoryConfiguration().getLRUsize());
-            Collection<List<Object>> infiniteLambdaWeights = new ArrayList<>();//bdsf.getCollection(tmpPrefix+"infiniteLambdaWeights", knowledgeBase.getMemoryConfiguration().getCollectionType());
-            
-            //initialize the model probabilities with 0. We will start estimating them piece by piece
-            for(Map.Entry<List<Object>, Double> featureClassCounts : EpFj_observed.entrySet()) {
-                List<Object> tp = featureClassCounts.getKey();
-                EpFj_model.put(tp, 0.0);
-            }
-            
             //calculate the model probabilities
-            for(Record r : trainingData) {
-                
-                AssociativeArray classScores = new AssociativeArray();
-                
-                for(Object theClass : classesSet) {
-                    double score = calculateClassScore(r.getX(), theClass);
-                    classScores.put(theClass, score);
-                }
-                
-                Descriptives.normalizeExp(classScores);
-                
-                //The below seems a bit strange but this is actually how the model probabilities are estimated. It is the average probability across all documents for a specific characteristic. The code is optimized for speed and this makes it less readable
-                for(Map.Entry<Object, Object> entry : classScores.entrySet()) {
-                    Object theClass = entry.getKey();
-                    Double score = Dataset.toDouble(entry.getValue());
-                    
-                    double probabilityFraction = score/n;
-                    
-                    for(Map.Entry<Object, Object> entry2 : r.getX().entrySet()) {
-                        Double occurrences=Dataset.toDouble(entry2.getValue());
-                        
-                        if(occurrences==null || occurrences==0.0) {
-                            continue;
-                        }
-                        Object feature = entry2.getKey();
-                        List<Object> featureClassTuple = Arrays.<Object>asList(feature, theClass);
-                        
-                        EpFj_model.put(featureClassTuple, EpFj_model.get(featureClassTuple) + probabilityFraction);
-                    }
-                }
-                
-                classScores=null;
-            }
+            estimator.estimate(lambdas, EpFj_model);
             
+            int totalInfiniteLambdaWeights = 0;
             Double minimumNonInfiniteLambdaWeight = null;
             Double maximumNonInfiniteLambdaWeight = null;
             //Now we have the model probabilities. We will use it to estimate the Deltas and finally update the lamdas
-            for(Map.Entry<List<Object>, Double> featureClassCounts : EpFj_model.entrySet()) {
-                List<Object> tp = featureClassCounts.getKey();
-                //Object feature = tp.getKey1();
-                //Object theClass = tp.getKey2();
-                
-                Double EpFj_observed_value = EpFj_observed.get(tp);
-                Double EpFj_model_value = featureClassCounts.getValue();    
+            for(int tp=0;tp<lambdas.length;++tp) {
+                double EpFj_observed_value = EpFj_observed[tp];
+                double EpFj_model_value = EpFj_model[tp];    
                 
                 
                 if(Math.abs(EpFj_observed_value-EpFj_model_value)<=1e-8) {
@@ -322,8 +380,8 @@ public class MaximumEntropy extends BaseMLclassifier<MaximumEntropy.ModelParamet
                     //non-negative infinite weight in the dataset. This is something
                     //similar to the plus1 smoothing.
                     
-                    lambdas.put(tp, Double.NEGATIVE_INFINITY); //this will be revised, see comment above
-                    infiniteLambdaWeights.add(tp);
+                    lambdas[tp] = Double.NEGATIVE_INFINITY; //this will be revised, see comment above
+                    infiniteLambdaWeights[totalInfiniteLambdaWeights++] = tp;
                 }
                 else if(EpFj_model_value==0.0) {
                     //the model did not assign any positive probability for this feature in this class
@@ -343,14 +401,14 @@ public class MaximumEntropy extends BaseMLclassifier<MaximumEntropy.ModelParamet
                     //weight.
                     
                     
-                    lambdas.put(tp, Double.POSITIVE_INFINITY); //this will be revised, see comment above
-                    infiniteLambdaWeights.add(tp);
+                    lambdas[tp] = Double.POSITIVE_INFINITY; //this will be revised, see comment above
+                    infiniteLambdaWeights[totalInfiniteLambdaWeights++] = tp;
                 }
                 else {
                     //the formula below can't produce a +inf or -inf value
                     double deltaJ = Math.log(EpFj_observed_value/EpFj_model_value)/Cmax;
-                    double newValue = lambdas.get(tp) + deltaJ;
-                    lambdas.put(tp, newValue); //update lamdas by delta
+                    double newValue = lambdas[tp] + deltaJ;
+                    lambdas[tp] = newValue; //update lamdas by delta
                     
                     if(minimumNonInfiniteLambdaWeight==null || newValue<minimumNonInfiniteLambdaWeight) {
                         minimumNonInfiniteLambdaWeight=newValue;
@@ -365,38 +423,183 @@ public class MaximumEntropy extends BaseMLclassifier<MaximumEntropy.ModelParamet
             
             
             
-            if(!infiniteLambdaWeights.isEmpty()) {
-                
-                for(List<Object> featureClass : infiniteLambdaWeights) {
-                    Double value = lambdas.get(featureClass);
-                    
-                    if(value==Double.NEGATIVE_INFINITY) {
-                        lambdas.put(featureClass, minimumNonInfiniteLambdaWeight);
-                    }
-                    else if(value==Double.POSITIVE_INFINITY) {
-                        lambdas.put(featureClass, maximumNonInfiniteLambdaWeight);
-                    }
-                    else { //this should never happen!
-                        lambdas.put(featureClass, 0.0);
-                    }
+            for(int i=0;i<totalInfiniteLambdaWeights;++i) {
+                int tp = infiniteLambdaWeights[i];
+                double value = lambdas[tp];
+
+                if(value==Double.NEGATIVE_INFINITY && minimumNonInfiniteLambdaWeight!=null) {
+                    lambdas[tp] = minimumNonInfiniteLambdaWeight;
+                }
+                else if(value==Double.POSITIVE_INFINITY && maximumNonInfiniteLambdaWeight!=null) {
+                    lambdas[tp] = maximumNonInfiniteLambdaWeight;
+                }
+                else { //this should never happen!
+                    lambdas[tp] = 0.0;
+                }
+            }
+        }
+        
+    }
+    
+    /**
+     * Maximizes the conditional log-likelihood of the training data with the 
+     * L-BFGS algorithm. The gradient of the average negative log-likelihood is 
+     * the difference between the model and the observed expectations of the 
+     * features.
+     * 
+     * @param estimator
+     * @param EpFj_observed
+     * @param lambdas 
+     */
+    private void LBFGS(final ExpectationsEstimator estimator, final double[] EpFj_observed, double[] lambdas) {
+        int totalIterations = knowledgeBase.getTrainingParameters().getTotalIterations();
+        
+        LBFGS optimizer = new LBFGS(LBFGS_MEMORY, totalIterations, LBFGS_TOLERANCE);
+        optimizer.minimize(new LBFGS.DifferentiableFunction() {
+            @Override
+            public double evaluate(double[] x, double[] gradient) {
+                double negativeLogLikelihood = estimator.estimate(x, gradient);
+                for(int tp=0;tp<gradient.length;++tp) {
+                    gradient[tp] -= EpFj_observed[tp];
                 }
+                return negativeLogLikelihood;
             }
+        }, lambdas);
+    }
+    
+    /**
+     * Estimates the model expectations of the features over the training 
+     * records. The records are split in consecutive ranges which are processed
+     * concurrently; every range accumulates the expectations in its own buffer
+     * and the buffers are summed in the order of the ranges, so the results do 
+     * not depend on the scheduling of the threads.
+     */
+    private static class ExpectationsEstimator {
+        private final int[] rowOffsets;
+        private final int[] rowFeatureIds;
+        private final int[] yClassIds;
+        private final int c;
+        private final ExecutorService executorService;
+        private final int[] boundaries;
+        private final double[][] buffers;
+        
+        public ExpectationsEstimator(int[] rowOffsets, int[] rowFeatureIds, int[] yClassIds, int numberOfFeatures, int c, ExecutorService executorService) {
+            this.rowOffsets = rowOffsets;
+            this.rowFeatureIds = rowFeatureIds;
+            this.yClassIds = yClassIds;
+            this.c = c;
+            this.executorService = executorService;
             
+            int partitions = (executorService==null)?1:ConcurrencyConfiguration.getMaxNumberOfThreads();
+            boundaries = ParallelFunctions.partition(yClassIds.length, partitions);
             
+            //the first range writes directly on the output array
+            buffers = new double[boundaries.length-1][];
+            for(int p=1;p<buffers.length;++p) {
+                buffers[p] = new double[numberOfFeatures*c];
+            }
+        }
+        
+        /**
+         * Stores in EpFj_model the model expectations of the features for the
+         * provided lambdas and returns the average negative log-likelihood of
+         * the records.
+         * 
+         * @param lambdas
+         * @param EpFj_model
+         * @return 
+         */
+        public double estimate(final double[] lambdas, double[] EpFj_model) {
+            buffers[0] = EpFj_model;
             
-            //Drop the temporary Collection
-            bdsf.dropTable(tmpPrefix+"EpFj_model", EpFj_model);
-            infiniteLambdaWeights = null; //bdsf.dropTable(tmpPrefix+"infiniteLambdaWeights", infiniteLambdaWeights);
+            if(buffers.length==1) {
+                return estimateRows(0, yClassIds.length, lambdas, EpFj_model)/yClassIds.length;
+            }
+            
+            List<Callable<Double>> tasks = new ArrayList<>(buffers.length);
+            for(int p=0;p<buffers.length;++p) {
+                final int from = boundaries[p];
+                final int to = boundaries[p+1];
+                final double[] buffer = buffers[p];
+                tasks.add(new Callable<Double>() {
+                    @Override
+                    public Double call() {
+                        return estimateRows(from, to, lambdas, buffer);
+                    }
+                });
+            }
+            
+            double negativeLogLikelihood = 0.0;
+            for(Double partialNegativeLogLikelihood : ParallelFunctions.invokeAll(executorService, tasks)) {
+                negativeLogLikelihood += partialNegativeLogLikelihood;
+            }
+            
+            //reduce the buffers of the ranges
+            for(int p=1;p<buffers.length;++p) {
+                double[] buffer = buffers[p];
+                for(int tp=0;tp<EpFj_model.length;++tp) {
+                    EpFj_model[tp] += buffer[tp];
+                }
+            }
+            
+            return negativeLogLikelihood/yClassIds.length;
         }
         
+        private double estimateRows(int from, int to, double[] lambdas, double[] buffer) {
+            Arrays.fill(buffer, 0.0);
+            
+            double n = yClassIds.length;
+            double[] classScores = new double[c];
+            double negativeLogLikelihood = 0.0;
+            for(int row=from;row<to;++row) {
+                int start = rowOffsets[row];
+                int end = rowOffsets[row+1];
+                
+                double max = Double.NEGATIVE_INFINITY;
+                for(int classId=0;classId<c;++classId) {
+                    double score = 0.0;
+                    for(int i=start;i<end;++i) {
+                        score += lambdas[rowFeatureIds[i]*c+classId];
+                    }
+                    classScores[classId] = score;
+                    if(score>max) {
+                        max = score;
+                    }
+                }
+                
+                //Prevents numeric underflow by subtracting the max
+                double sum = 0.0;
+                for(int classId=0;classId<c;++classId) {
+                    classScores[classId] = Math.exp(classScores[classId]-max);
+                    sum += classScores[classId];
+                }
+                negativeLogLikelihood -= Math.log(classScores[yClassIds[row]]/sum);
+                
+                //The below seems a bit strange but this is actually how the model probabilities are estimated. It is the average probability across all documents for a specific characteristic.
+                for(int classId=0;classId<c;++classId) {
+                    double probabilityFraction = classScores[classId]/sum/n;
+                    
+                    for(int i=start;i<end;++i) {
+                        buffer[rowFeatureIds[i]*c+classId] += probabilityFraction;
+                    }
+                }
+            }
+            return negativeLogLikelihood;
+        }
     }
     
 
-    private Double calculateClassScore(AssociativeArray x, Object theClass) {
-        double score = 0;
-        
-        Map<List<Object>, Double> lambdas = knowledgeBase.getModelParameters().getLambdas();
-        
+    /**
+     * Stores in activeFeatureIds the ids of the non-zero features of the record 
+     * which exist in the dictionary and returns their number.
+     * 
+     * @param x
+     * @param featureDictionary
+     * @param activeFeatureIds
+     * @return 
+     */
+    private int findActiveFeatureIds(AssociativeArray x, IntegerDictionary featureDictionary, int[] activeFeatureIds) {
+        int activeFeatures = 0;
         for(Map.Entry<Object, Object> entry : x.entrySet()) {
             Double value = Dataset.toDouble(entry.getValue());
             if(value==null || value==0.0) {
@@ -404,14 +607,33 @@ public class MaximumEntropy extends BaseMLclassifier<MaximumEntropy.ModelParamet
             }
             //note that we will not use the value any more. MaxEntropy classifier is binarized.
             
-            Object feature = entry.getKey();
-            List<Object> featureClassTuple = Arrays.<Object>asList(feature, theClass);
-            
-            Double lambdaWeight = lambdas.get(featureClassTuple);
-            if(lambdaWeight!=null) {//ensure that the feature is in the dictionary
-                score+=lambdaWeight;
+            Integer featureId = featureDictionary.getId(entry.getKey());
+            if(featureId!=null) {//ensure that the feature is in the dictionary
+                activeFeatureIds[activeFeatures++] = featureId;
             }
         }
+        return activeFeatures;
+    }
+    
+    /**
+     * Returns the lambdas of the model. The frozen copies load them once and 
+     * the rest of the models load them from the storage on every call.
+     * 
+     * @return 
+     */
+    private LongDoubleHashMap loadLambdas() {
+        if(frozenLambdas!=null) {
+            return frozenLambdas;
+        }
+        return LongDoubleHashMap.newInstance(knowledgeBase.getModelParameters().getLambdas());
+    }
+    
+    private double calculateClassScore(int[] activeFeatureIds, int activeFeatures, int classId, LongDoubleHashMap lambdas) {
+        double score = 0;
+        
+        for(int i=0;i<activeFeatures;++i) {
+            score+=lambdas.get(IntegerDictionary.key(activeFeatureIds[i], classId), 0.0);
+        }
         
         return score;
     }
@@ -18,13 +18,18 @@ package com.datumbox.framework.machinelearning.classification;
 
 import com.datumbox.common.dataobjects.AssociativeArray;
 import com.datumbox.common.dataobjects.Dataset;
+import com.datumbox.common.dataobjects.IntegerDictionary;
 import com.datumbox.common.dataobjects.Record;
+import com.datumbox.common.dataobjects.SparseBatch;
 import com.datumbox.common.persistentstorage.factories.BigDataStructureFactory;
 import com.datumbox.common.persistentstorage.interfaces.BigDataStructureMarker;
-import com.datumbox.configuration.GeneralConfiguration;
 import com.datumbox.configuration.MemoryConfiguration;
-import com.datumbox.configuration.StorageConfiguration;
 import com.datumbox.framework.machinelearning.common.bases.mlmodels.BaseMLclassifier;
+import com.datumbox.framework.machinelearning.common.dataobjects.BatchPredictions;
+import com.datumbox.framework.machinelearning.common.dataobjects.BatchPredictor;
+import com.datumbox.framework.machinelearning.common.dataobjects.MiniBatchTrainer;
+import com.datumbox.framework.machinelearning.common.interfaces.BatchPredictable;
+import com.datumbox.framework.machinelearning.common.interfaces.StreamTrainable;
 import com.datumbox.framework.machinelearning.common.validation.OrdinalRegressionValidation;
 import java.util.HashMap;
 import java.util.Map;
@@ -36,7 +41,7 @@ import org.mongodb.morphia.annotations.Transient;
  *
  * @author Vasilis Vryniotis <bbriniotis at datumbox.com>
  */
-public class OrdinalRegression extends BaseMLclassifier<OrdinalRegression.ModelParameters, OrdinalRegression.TrainingParameters, OrdinalRegression.ValidationMetrics> {
+public class OrdinalRegression extends BaseMLclassifier<OrdinalRegression.ModelParameters, OrdinalRegression.TrainingParameters, OrdinalRegression.ValidationMetrics> implements BatchPredictable, StreamTrainable {
     /*
     References: 
         - http://qwone.com/~jason/writing/olr.pdf
@@ -107,6 +112,9 @@ public class OrdinalRegression extends BaseMLclassifier<OrdinalRegression.ModelP
     public static class TrainingParameters extends BaseMLclassifier.TrainingParameters {         
         private int totalIterations=100; 
         private double learningRate=0.1;
+        private int batchSize=0; //0 for batch gradient descent, 1 for stochastic gradient descent
+        private MiniBatchTrainer.LearningRateSchedule learningRateSchedule=MiniBatchTrainer.LearningRateSchedule.BOLD_DRIVER;
+        private int patience=0; //the epochs without improvement on the held out data before stopping. 0 disables the early stopping
         
         public int getTotalIterations() {
             return totalIterations;
@@ -124,6 +132,30 @@ public class OrdinalRegression extends BaseMLclassifier<OrdinalRegression.ModelP
             this.learningRate = learningRate;
         }
 
+        public int getBatchSize() {
+            return batchSize;
+        }
+
+        public void setBatchSize(int batchSize) {
+            this.batchSize = batchSize;
+        }
+
+        public MiniBatchTrainer.LearningRateSchedule getLearningRateSchedule() {
+            return learningRateSchedule;
+        }
+
+        public void setLearningRateSchedule(MiniBatchTrainer.LearningRateSchedule learningRateSchedule) {
+            this.learningRateSchedule = learningRateSchedule;
+        }
+
+        public int getPatience() {
+            return patience;
+        }
+
+        public void setPatience(int patience) {
+            this.patience = patience;
+        }
+
     } 
     
     
@@ -149,6 +181,164 @@ public class OrdinalRegression extends BaseMLclassifier<OrdinalRegression.ModelP
         
     }
     
+    /**
+     * BatchPredictor of the OrdinalRegression. The probability of every class
+     * is the difference between the logistic functions of its right and left 
+     * thitas, so it can not be expressed as a LinearBatchPredictor.
+     */
+    private static class OrdinalBatchPredictor extends BatchPredictor {
+        
+        private static final long serialVersionUID = 1L;
+        
+        private final double[] weights;
+        
+        private final double[] thitas; //the thitas of the classes in ascending order
+        
+        private OrdinalBatchPredictor(Map<Object, Integer> featureIds, Object[] classes, double[] weights, double[] thitas) {
+            super(featureIds, classes);
+            this.weights = weights;
+            this.thitas = thitas;
+        }
+
+        @Override
+        protected void predictRows(SparseBatch batch, int from, int to, BatchPredictions predictions) {
+            int[] rowOffsets = batch.getRowOffsets();
+            int[] featureIds = batch.getFeatureIds();
+            double[] values = batch.getValues();
+            
+            int c = thitas.length;
+            double[] probabilities = predictions.getProbabilities();
+            int[] predictedClassIds = predictions.getPredictedClassIds();
+            
+            for(int row=from;row<to;++row) {
+                double xTw = 0.0;
+                for(int i=rowOffsets[row];i<rowOffsets[row+1];++i) {
+                    int featureId = featureIds[i];
+                    if(featureId<0 || featureId>=weights.length) {
+                        continue; //unsupported feature
+                    }
+                    xTw += values[i]*weights[featureId];
+                }
+                
+                int offset = row*c;
+                double gOfPrevious = 0.0; //the left bound thita0 is -inf
+                for(int k=0;k<c;++k) {
+                    double gOfCurrent = g(thitas[k]-xTw);
+                    probabilities[offset+k] = gOfCurrent - gOfPrevious;
+                    gOfPrevious = gOfCurrent;
+                }
+                
+                predictedClassIds[row] = selectMaxId(probabilities, offset, c);
+            }
+        }
+    }
+    
+    /**
+     * Ordinal logistic regression on the dense weights. The thitas of the 
+     * classes, in ascending order, are stored after the weights of the d 
+     * features.
+     */
+    private static class OrdinalTrainer extends MiniBatchTrainer {
+        
+        private final IntegerDictionary classDictionary;
+        
+        private final int d;
+        
+        private double[] gOfRows = new double[0]; //the g of the current and the previous thita of every row
+        
+        private OrdinalTrainer(Map<Object, Integer> featureIds, IntegerDictionary classDictionary, int n, TrainingParameters trainingParameters) {
+            super(featureIds, n, trainingParameters.getBatchSize(), trainingParameters.getLearningRate(), trainingParameters.getLearningRateSchedule(), trainingParameters.getTotalIterations(), trainingParameters.getPatience());
+            this.classDictionary = classDictionary;
+            d = featureIds.size();
+        }
+        
+        @Override
+        protected double getTarget(Object y) {
+            Integer classId = classDictionary.getId(y);
+            return (classId!=null)?classId:Double.NaN;
+        }
+        
+        @Override
+        protected double updateWeights(SparseBatch batch, double[] targets, double[] weights, double[] newWeights, double multiplier) {
+            int[] rowOffsets = batch.getRowOffsets();
+            int[] featureIds = batch.getFeatureIds();
+            double[] values = batch.getValues();
+            
+            int size = batch.size();
+            if(gOfRows.length<2*size) {
+                gOfRows = new double[2*size];
+            }
+            multiplier = -multiplier;
+            
+            //mind the fact that we use the previous weights and thitas to estimate the errors of all the rows! this is because they must be updated simultaniously
+            double error = 0.0;
+            for(int row=0;row<size;++row) {
+                int classId = (int)targets[row];
+                
+                //first calculate the commonly used dot product between weights and x
+                double xTw = xTw(rowOffsets[row], rowOffsets[row+1], featureIds, values, weights);
+                
+                double gOfCurrent = g(xTw-weights[d+classId]);
+                double gOfPrevious = 0.0;
+                if(classId>0) {
+                    gOfPrevious = g(weights[d+classId-1]-xTw);
+                    error += h(weights[d+classId-1]-xTw);
+                }
+                error += h(xTw-weights[d+classId]);
+                
+                gOfRows[2*row] = gOfCurrent;
+                gOfRows[2*row+1] = gOfPrevious;
+            }
+            
+            for(int row=0;row<size;++row) {
+                int classId = (int)targets[row];
+                double gOfCurrent = gOfRows[2*row];
+                double gOfPrevious = gOfRows[2*row+1];
+                
+                //update weights
+                for(int i=rowOffsets[row];i<rowOffsets[row+1];++i) {
+                    newWeights[featureIds[i]] += multiplier*values[i]*(gOfCurrent-gOfPrevious);
+                }
+                
+                //update thitas
+                newWeights[d+classId] += multiplier*(-gOfCurrent);
+                if(classId>0) {
+                    newWeights[d+classId-1] += multiplier*gOfPrevious;
+                }
+            }
+            
+            return error;
+        }
+        
+        @Override
+        protected double calculateError(SparseBatch batch, double[] targets, double[] weights) {
+            int[] rowOffsets = batch.getRowOffsets();
+            int[] featureIds = batch.getFeatureIds();
+            double[] values = batch.getValues();
+            
+            double error = 0.0;
+            for(int row=0;row<batch.size();++row) {
+                int classId = (int)targets[row];
+                double xTw = xTw(rowOffsets[row], rowOffsets[row+1], featureIds, values, weights);
+                
+                if(classId>0) {
+                    error += h(weights[d+classId-1]-xTw);
+                }
+                error += h(xTw-weights[d+classId]);
+            }
+            
+            return error;
+        }
+        
+        private static double xTw(int from, int to, int[] featureIds, double[] values, double[] weights) {
+            double xTw = 0.0;
+            for(int i=from;i<to;++i) {
+                xTw += values[i]*weights[featureIds[i]];
+            }
+            return xTw;
+        }
+    }
+    
     public OrdinalRegression(String dbName) {
         super(dbName, OrdinalRegression.ModelParameters.class, OrdinalRegression.TrainingParameters.class, OrdinalRegression.ValidationMetrics.class, new OrdinalRegressionValidation());
     }
@@ -180,95 +370,89 @@ public class OrdinalRegression extends BaseMLclassifier<OrdinalRegression.ModelP
     }
     
     @Override
-    @SuppressWarnings("unchecked")
-    protected void estimateModelParameters(Dataset trainingData) {
-        String tmpPrefix=StorageConfiguration.getTmpPrefix();
-        
-        int n = trainingData.size();
-        int d = trainingData.getColumnSize();//no constant, thresholds can be seen as constants
+    public BatchPredictor getBatchPredictor() {
+        knowledgeBase.load();
         
         ModelParameters modelParameters = knowledgeBase.getModelParameters();
-        TrainingParameters trainingParameters = knowledgeBase.getTrainingParameters();
-        
-        //initialization
-        modelParameters.setN(n);
-        modelParameters.setD(d);
-        
         Map<Object, Double> weights = modelParameters.getWeights();
         Map<Object, Double> thitas = modelParameters.getThitas();
         
-        //add classes in a sorted way (ordinal ascending order)
-        Set<Object> sortedClasses = new TreeSet<>();
-        for(Record r : trainingData) {
-            Object theClass=r.getY();
-            
-            sortedClasses.add(theClass); 
+        Map<Object, Integer> featureIds = new HashMap<>();
+        double[] weightsArray = new double[weights.size()];
+        for(Map.Entry<Object, Double> entry : weights.entrySet()) {
+            int featureId = featureIds.size();
+            featureIds.put(entry.getKey(), featureId);
+            weightsArray[featureId] = entry.getValue();
         }
-        Set<Object> classesSet = modelParameters.getClasses();
-        classesSet.addAll(sortedClasses);
         
-        int c = classesSet.size();
-        modelParameters.setC(c);
+        Object[] classes = modelParameters.getOrderedClasses().toArray(); //ascending order
+        double[] thitasArray = new double[classes.length];
+        for(int classId=0;classId<classes.length;++classId) {
+            thitasArray[classId] = thitas.get(classes[classId]);
+        }
         
-        //we initialize the weights and thitas to zero
-        for(Record r : trainingData) {
+        return new OrdinalBatchPredictor(featureIds, classes, weightsArray, thitasArray);
+    }
+    
+    @Override
+    public void train(Iterable<Record> trainingStream, Iterable<Record> heldOutStream) {
+        checkStreamTraining();
+        
+        //train the model to get the parameters
+        estimateModelParameters(trainingStream, heldOutStream);
+        
+        completeStreamTraining();
+    }
+    
+    @Override
+    protected void estimateModelParameters(Dataset trainingData) {
+        estimateModelParameters(trainingData, null);
+    }
+    
+    protected void estimateModelParameters(Iterable<Record> trainingStream, Iterable<Record> heldOutStream) {
+        ModelParameters modelParameters = knowledgeBase.getModelParameters();
+        TrainingParameters trainingParameters = knowledgeBase.getTrainingParameters();
+        
+        //add classes in a sorted way (ordinal ascending order) and find the features
+        Set<Object> sortedClasses = new TreeSet<>();
+        Map<Object, Integer> featureIds = new HashMap<>();
+        IntegerDictionary featureDictionary = new IntegerDictionary(featureIds);
+        int n = 0;
+        for(Record r : trainingStream) {
+            sortedClasses.add(r.getY()); 
             for(Object feature : r.getX().keySet()) {
-                weights.put(feature, 0.0);
+                featureDictionary.intern(feature);
             }
-            thitas.put(r.getY(), 0.0);
+            ++n;
         }
+        Set<Object> classesSet = modelParameters.getClasses();
+        classesSet.addAll(sortedClasses);
         
-        Object finalClass = null;
-        for(Object theClass : classesSet) {
-            finalClass=theClass;
-        }
-        thitas.put(finalClass, Double.POSITIVE_INFINITY);
+        int c = classesSet.size();
+        int d = featureDictionary.size(); //no constant, thresholds can be seen as constants
         
+        //initialization
+        modelParameters.setN(n);
+        modelParameters.setD(d);
+        modelParameters.setC(c);
         
-        //mapping between the thita and the exact previous thita value
-        Map<Object, Object> previousThitaMapping = getPreviousThitaMappings();
+        //we initialize the weights and thitas to zero. The thitas of the classes are stored after the weights of the features
+        double[] weights = new double[d+c];
+        weights[d+c-1] = Double.POSITIVE_INFINITY; //the right bound of the final class
         
-        double minError = Double.POSITIVE_INFINITY;
+        OrdinalTrainer trainer = new OrdinalTrainer(featureIds, IntegerDictionary.newInstance(modelParameters.getOrderedClasses()), n, trainingParameters);
+        weights = trainer.train(trainingStream, heldOutStream, weights);
         
-        double learningRate = trainingParameters.getLearningRate();
-        int totalIterations = trainingParameters.getTotalIterations();
-        BigDataStructureFactory bdsf = knowledgeBase.getBdsf();
-        for(int iteration=0;iteration<totalIterations;++iteration) {
-            
-            if(GeneralConfiguration.DEBUG) {
-                System.out.println("Iteration "+iteration);
-            }
-            
-            Map<Object, Double> newThitas = bdsf.getMap(tmpPrefix+"newThitas", knowledgeBase.getMemoryConfiguration().getMapType(), knowledgeBase.getMemoryConfiguration().getLRUsize());
-            
-            Map<Object, Double> newWeights = bdsf.getMap(tmpPrefix+"newWeights", knowledgeBase.getMemoryConfiguration().getMapType(), knowledgeBase.getMemoryConfiguration().getLRUsize());
-            
-            newThitas.putAll(thitas);
-            newWeights.putAll(weights);
-            batchGradientDescent(trainingData, previousThitaMapping, newWeights, newThitas, learningRate);
-            
-            double newError = calculateError(trainingData, previousThitaMapping, newWeights, newThitas);
-            
-            //bold driver
-            if(newError>minError) {
-                learningRate/=2.0;
-            }
-            else {
-                learningRate*=1.05;
-                minError=newError;
-                
-                //keep the new weights
-                weights.clear();
-                weights.putAll(newWeights);
-                
-                //keep the new thitas
-                thitas.clear();
-                thitas.putAll(newThitas);
-            }
-            
-            //Drop the temporary Collections
-            bdsf.dropTable(tmpPrefix+"newWeights", newWeights);
-            bdsf.dropTable(tmpPrefix+"newThitas", newThitas);
+        Map<Object, Double> weightsMap = modelParameters.getWeights();
+        for(Map.Entry<Object, Integer> entry : featureIds.entrySet()) {
+            weightsMap.put(entry.getKey(), weights[entry.getValue()]);
+        }
+        
+        Map<Object, Double> thitas = modelParameters.getThitas();
+        int classId = 0;
+        for(Object theClass : modelParameters.getOrderedClasses()) {
+            thitas.put(theClass, weights[d+classId]);
+            ++classId;
         }
     }
     
@@ -289,50 +473,6 @@ public class OrdinalRegression extends BaseMLclassifier<OrdinalRegression.ModelP
         return validationMetrics;
     }
 
-    private void batchGradientDescent(Dataset trainingData, Map<Object, Object> previousThitaMapping, Map<Object, Double> newWeights, Map<Object, Double> newThitas, double learningRate) {
-        //NOTE! This is not the stochastic gradient descent. It is the batch gradient descent optimized for speed (despite it looks more than the stochastic). 
-        //Despite the fact that the loops are inverse, the function still changes the values of Thitas at the end of the function. We use the previous thitas 
-        //to estimate the costs and only at the end we update the new thitas.
-        ModelParameters modelParameters = knowledgeBase.getModelParameters();
-
-        double multiplier = -learningRate/modelParameters.getN(); 
-        Map<Object, Double> weights = modelParameters.getWeights();
-        Map<Object, Double> thitas = modelParameters.getThitas();
-        
-        for(Record r : trainingData) {
-            Object rClass = r.getY();
-            Object rPreviousClass = previousThitaMapping.get(rClass);
-            
-            //mind the fact that we use the previous weights and thitas to estimate the new ones! this is because the thitas must be updated simultaniously
-            
-            //first calculate the commonly used dot product between weights and x
-            double xTw = xTw(r.getX(), weights);
-            
-            double gOfCurrent = g(xTw-thitas.get(rClass));
-            double gOfPrevious = 0.0;
-            if(rPreviousClass!=null) {
-                gOfPrevious = g(thitas.get(rPreviousClass)-xTw);
-            }
-                    
-            
-            
-            //update weights                
-            for(Map.Entry<Object, Object> entry : r.getX().entrySet()) {
-                Object column = entry.getKey();
-                Double xij = Dataset.toDouble(entry.getValue());
-                
-                newWeights.put(column, newWeights.get(column)+multiplier*xij*(gOfCurrent-gOfPrevious));
-            }
-            
-            
-            //update thitas
-            newThitas.put(rClass, newThitas.get(rClass)+multiplier*(-gOfCurrent));
-            if(rPreviousClass!=null) {
-                newThitas.put(rPreviousClass, newThitas.get(rPreviousClass)+multiplier*gOfPrevious);
-            }
-        }
-    }
-    
     private AssociativeArray hypothesisFunction(AssociativeArray x, Map<Object, Object> previousThitaMapping, Map<Object, Double> weights, Map<Object, Double> thitas) {
         AssociativeArray probabilities = new AssociativeArray();
     
@@ -378,7 +518,7 @@ public class OrdinalRegression extends BaseMLclassifier<OrdinalRegression.ModelP
         return error/knowledgeBase.getModelParameters().getN();
     }
     
-    private double h(double z) {
+    private static double h(double z) {
         if(z>30) {
             return z;
         }
@@ -388,7 +528,7 @@ public class OrdinalRegression extends BaseMLclassifier<OrdinalRegression.ModelP
         return Math.log(1.0+Math.exp(z));
     }
     
-    private double g(double z) {
+    private static double g(double z) {
         if(z>30) {
             return 1.0;
         }
@@ -419,7 +559,7 @@ public class OrdinalRegression extends BaseMLclassifier<OrdinalRegression.ModelP
     private Map<Object, Object> getPreviousThitaMappings() {
         Map<Object, Object> previousThitaMapping = new HashMap<>();
         Object previousThita = null; //null = the left bound thita0 which has thita equal to -inf
-        for(Object thita : knowledgeBase.getModelParameters().getClasses()) {
+        for(Object thita : knowledgeBase.getModelParameters().getOrderedClasses()) { //ascending order
             previousThitaMapping.put(thita, previousThita);
             previousThita = thita;
         }
@@ -18,17 +18,22 @@ package com.datumbox.framework.machinelearning.classification;
 
 import com.datumbox.common.dataobjects.AssociativeArray;
 import com.datumbox.common.dataobjects.Dataset;
+import com.datumbox.common.dataobjects.IntegerDictionary;
+import com.datumbox.common.dataobjects.LongDoubleHashMap;
 import com.datumbox.common.dataobjects.Record;
+import com.datumbox.common.dataobjects.SparseBatch;
 import com.datumbox.common.persistentstorage.factories.BigDataStructureFactory;
 import com.datumbox.configuration.MemoryConfiguration;
 import com.datumbox.framework.machinelearning.common.bases.mlmodels.BaseMLclassifier;
 import com.datumbox.common.persistentstorage.interfaces.BigDataStructureMarker;
-import com.datumbox.configuration.GeneralConfiguration;
-import com.datumbox.configuration.StorageConfiguration;
+import com.datumbox.framework.machinelearning.common.dataobjects.BatchPredictor;
+import com.datumbox.framework.machinelearning.common.dataobjects.LinearBatchPredictor;
+import com.datumbox.framework.machinelearning.common.dataobjects.MiniBatchTrainer;
+import com.datumbox.framework.machinelearning.common.interfaces.BatchPredictable;
+import com.datumbox.framework.machinelearning.common.interfaces.StreamTrainable;
 import com.datumbox.framework.machinelearning.common.validation.SoftMaxRegressionValidation;
 import com.datumbox.framework.statistics.descriptivestatistics.Descriptives;
-import java.util.Arrays;
-import java.util.List;
+import java.util.HashMap;
 import java.util.Map;
 import java.util.Set;
 import org.mongodb.morphia.annotations.Transient;
@@ -37,7 +42,7 @@ import org.mongodb.morphia.annotations.Transient;
  *
  * @author Vasilis Vryniotis <bbriniotis at datumbox.com>
  */
-public class SoftMaxRegression extends BaseMLclassifier<SoftMaxRegression.ModelParameters, SoftMaxRegression.TrainingParameters, SoftMaxRegression.ValidationMetrics> {
+public class SoftMaxRegression extends BaseMLclassifier<SoftMaxRegression.ModelParameters, SoftMaxRegression.TrainingParameters, SoftMaxRegression.ValidationMetrics> implements BatchPredictable, StreamTrainable {
     //References: http://www.cs.cmu.edu/afs/cs/user/aberger/www/html/tutorial/node3.html http://acl.ldc.upenn.edu/P/P02/P02-1002.pdf
     /**
      * The internalDataCollections that are passed in this function are NOT modified after the analysis. 
@@ -54,7 +59,14 @@ public class SoftMaxRegression extends BaseMLclassifier<SoftMaxRegression.ModelP
          */
         @BigDataStructureMarker
         @Transient
-        private Map<List<Object>, Double> thitas; //the thita parameters of the model
+        private Map<Long, Double> thitas; //the thita parameters of the model. The keys are packed (featureId, classId) pairs
+
+        /**
+         * The ids of the features used in the keys of the thitas
+         */
+        @BigDataStructureMarker
+        @Transient
+        private Map<Object, Integer> featureIds; //dictionary of features, including the constant
 
         
         @Override
@@ -65,21 +77,33 @@ public class SoftMaxRegression extends BaseMLclassifier<SoftMaxRegression.ModelP
             int LRUsize = memoryConfiguration.getLRUsize();
             
             thitas = bdsf.getMap("thitas", mapType, LRUsize);
+            featureIds = bdsf.getMap("featureIds", mapType, LRUsize);
         }
         
-        public Map<List<Object>, Double> getThitas() {
+        public Map<Long, Double> getThitas() {
             return thitas;
         }
 
-        public void setThitas(Map<List<Object>, Double> thitas) {
+        public void setThitas(Map<Long, Double> thitas) {
             this.thitas = thitas;
         }
+
+        public Map<Object, Integer> getFeatureIds() {
+            return featureIds;
+        }
+
+        public void setFeatureIds(Map<Object, Integer> featureIds) {
+            this.featureIds = featureIds;
+        }
     } 
 
     
     public static class TrainingParameters extends BaseMLclassifier.TrainingParameters {         
         private int totalIterations=100; 
         private double learningRate=0.1;
+        private int batchSize=0; //0 for batch gradient descent, 1 for stochastic gradient descent
+        private MiniBatchTrainer.LearningRateSchedule learningRateSchedule=MiniBatchTrainer.LearningRateSchedule.BOLD_DRIVER;
+        private int patience=0; //the epochs without improvement on the held out data before stopping. 0 disables the early stopping
         
         public int getTotalIterations() {
             return totalIterations;
@@ -97,6 +121,30 @@ public class SoftMaxRegression extends BaseMLclassifier<SoftMaxRegression.ModelP
             this.learningRate = learningRate;
         }
 
+        public int getBatchSize() {
+            return batchSize;
+        }
+
+        public void setBatchSize(int batchSize) {
+            this.batchSize = batchSize;
+        }
+
+        public MiniBatchTrainer.LearningRateSchedule getLearningRateSchedule() {
+            return learningRateSchedule;
+        }
+
+        public void setLearningRateSchedule(MiniBatchTrainer.LearningRateSchedule learningRateSchedule) {
+            this.learningRateSchedule = learningRateSchedule;
+        }
+
+        public int getPatience() {
+            return patience;
+        }
+
+        public void setPatience(int patience) {
+            this.patience = patience;
+        }
+
     } 
     
     
@@ -122,6 +170,8 @@ public class SoftMaxRegression extends BaseMLclassifier<SoftMaxRegression.ModelP
         
     }
     
+    private transient LongDoubleHashMap frozenThitas = null; //set only on the frozen copies of the model
+    
     public SoftMaxRegression(String dbName) {
         super(dbName, SoftMaxRegression.ModelParameters.class, SoftMaxRegression.TrainingParameters.class, SoftMaxRegression.ValidationMetrics.class, new SoftMaxRegressionValidation());
     }
@@ -131,17 +181,36 @@ public class SoftMaxRegression extends BaseMLclassifier<SoftMaxRegression.ModelP
         return SHORT_METHOD_NAME;
     }
     
+    @Override
+    protected void freezeComponents() {
+        //the frozen copies can not be trained, so the thitas are loaded once
+        frozenThitas = LongDoubleHashMap.newInstance(knowledgeBase.getModelParameters().getThitas());
+    }
+    
+    /**
+     * Estimates the predictions from the thitas of the model. The thitas are
+     * loaded from the storage in a LongDoubleHashMap on every call unless the 
+     * model is frozen. Use the BatchPredictor or a frozen copy of the model to 
+     * avoid this cost when predicting many small datasets.
+     * 
+     * @param newData 
+     */
     @Override
     protected void predictDataset(Dataset newData) { 
         ModelParameters modelParameters = knowledgeBase.getModelParameters();
         
-        Set<Object> classesSet = modelParameters.getClasses();
-        Map<List<Object>, Double> thitas = modelParameters.getThitas();
+        Object[] classes = modelParameters.getOrderedClasses().toArray(); //the position of the class is its id
+        LongDoubleHashMap thitas = loadThitas();
+        IntegerDictionary featureDictionary = new IntegerDictionary(modelParameters.getFeatureIds());
+        int constantId = featureDictionary.getId(Dataset.constantColumnName);
         
+        FeatureVector vector = new FeatureVector();
         for(Record r : newData) {
+            vector.set(r.getX(), featureDictionary);
+            
             AssociativeArray predictionScores = new AssociativeArray();
-            for(Object theClass : classesSet) {
-                predictionScores.put(theClass, calculateClassScore(r.getX(), theClass, thitas));
+            for(int classId=0;classId<classes.length;++classId) {
+                predictionScores.put(classes[classId], calculateClassScore(vector, constantId, classId, thitas));
             }
             
             Object theClass=getSelectedClassFromClassScores(predictionScores);
@@ -154,78 +223,84 @@ public class SoftMaxRegression extends BaseMLclassifier<SoftMaxRegression.ModelP
     }
     
     @Override
-    @SuppressWarnings("unchecked")
-    protected void estimateModelParameters(Dataset trainingData) {
-        String tmpPrefix=StorageConfiguration.getTmpPrefix();
-        
-        int n = trainingData.size();
-        int d = trainingData.getColumnSize()+1;//plus one for the constant
+    public BatchPredictor getBatchPredictor() {
+        knowledgeBase.load();
         
         ModelParameters modelParameters = knowledgeBase.getModelParameters();
-        TrainingParameters trainingParameters = knowledgeBase.getTrainingParameters();
+        Object[] classes = modelParameters.getOrderedClasses().toArray(); //the position of the class is its id
+        int c = classes.length;
         
-        //initialization
-        modelParameters.setN(n);
-        modelParameters.setD(d);
+        //the constant is used as bias and it is not part of the batches
+        Map<Object, Integer> featureIds = new HashMap<>(modelParameters.getFeatureIds());
+        int constantId = featureIds.remove(Dataset.constantColumnName);
         
+        double[] biases = new double[c];
+        double[] weights = new double[(featureIds.size()+1)*c];
+        for(Map.Entry<Long, Double> entry : modelParameters.getThitas().entrySet()) {
+            long featureClassKey = entry.getKey();
+            int featureId = IntegerDictionary.firstId(featureClassKey);
+            int classId = IntegerDictionary.secondId(featureClassKey);
+            if(featureId==constantId) {
+                biases[classId] = entry.getValue();
+            }
+            else {
+                weights[featureId*c+classId] = entry.getValue();
+            }
+        }
+        
+        return new LinearBatchPredictor(featureIds, classes, weights, biases, LinearBatchPredictor.ValueTransformation.NONE);
+    }
+    
+    @Override
+    public void train(Iterable<Record> trainingStream, Iterable<Record> heldOutStream) {
+        checkStreamTraining();
+        
+        //train the model to get the parameters
+        estimateModelParameters(trainingStream, heldOutStream);
+        
+        completeStreamTraining();
+    }
+    
+    @Override
+    protected void estimateModelParameters(Dataset trainingData) {
+        estimateModelParameters(trainingData, null);
+    }
+    
+    protected void estimateModelParameters(Iterable<Record> trainingStream, Iterable<Record> heldOutStream) {
+        ModelParameters modelParameters = knowledgeBase.getModelParameters();
+        TrainingParameters trainingParameters = knowledgeBase.getTrainingParameters();
         
-        Map<List<Object>, Double> thitas = modelParameters.getThitas();
         Set<Object> classesSet = modelParameters.getClasses();
+        IntegerDictionary featureDictionary = new IntegerDictionary(modelParameters.getFeatureIds());
         
-        //first we need to find all the classes
-        for(Record r : trainingData) {
-            Object theClass=r.getY();
-            
-            classesSet.add(theClass); 
+        //first we need to find all the classes and the features
+        int constantId = featureDictionary.intern(Dataset.constantColumnName);
+        int n = 0;
+        for(Record r : trainingStream) {
+            classesSet.add(r.getY()); 
+            for(Object feature : r.getX().keySet()) {
+                featureDictionary.intern(feature);
+            }
+            ++n;
         }
-
+        
         int c = classesSet.size();
-        modelParameters.setC(c);
+        int d = featureDictionary.size(); //plus one for the constant
         
-        //we initialize the thitas to zero for all features and all classes compinations
-        for(Object theClass : classesSet) {
-            thitas.put(Arrays.<Object>asList(Dataset.constantColumnName, theClass), 0.0);
-            
-            for(Record r : trainingData) {
-                for(Object feature : r.getX().keySet()) {
-                    thitas.put(Arrays.<Object>asList(feature, theClass), 0.0);
-                }
-            }
-        }
+        //initialization
+        modelParameters.setN(n);
+        modelParameters.setD(d);
+        modelParameters.setC(c);
         
-        double minError = Double.POSITIVE_INFINITY;
+        //we initialize the thitas to zero for all features and all classes combinations. The weight of the feature-class pair is stored in the position featureId*c+classId
+        SoftMaxTrainer trainer = new SoftMaxTrainer(modelParameters.getFeatureIds(), IntegerDictionary.newInstance(modelParameters.getOrderedClasses()), constantId, n, trainingParameters);
+        double[] weights = trainer.train(trainingStream, heldOutStream, new double[d*c]);
         
-        double learningRate = trainingParameters.getLearningRate();
-        int totalIterations = trainingParameters.getTotalIterations();
-        BigDataStructureFactory bdsf = knowledgeBase.getBdsf();
-        for(int iteration=0;iteration<totalIterations;++iteration) {
-            
-            if(GeneralConfiguration.DEBUG) {
-                System.out.println("Iteration "+iteration);
+        Map<Long, Double> thitas = modelParameters.getThitas();
+        for(int featureId=0;featureId<d;++featureId) {
+            for(int classId=0;classId<c;++classId) {
+                thitas.put(IntegerDictionary.key(featureId, classId), weights[featureId*c+classId]);
             }
-            
-            Map<List<Object>, Double> newThitas = bdsf.getMap(tmpPrefix+"newThitas", knowledgeBase.getMemoryConfiguration().getMapType(), knowledgeBase.getMemoryConfiguration().getLRUsize());
-            
-            newThitas.putAll(thitas);
-            batchGradientDescent(trainingData, newThitas, learningRate);
-            
-            double newError = calculateError(trainingData,newThitas);
-            
-            //bold driver
-            if(newError>minError) {
-                learningRate/=2.0;
-            }
-            else {
-                learningRate*=1.05;
-                minError=newError;
-                
-                //keep the new thitas
-                thitas.clear();
-                thitas.putAll(newThitas);
-            }
-            
-            //Drop the temporary Collection
-            bdsf.dropTable(tmpPrefix+"newThitas", newThitas);
         }
     }
     
@@ -236,108 +311,213 @@ public class SoftMaxRegression extends BaseMLclassifier<SoftMaxRegression.ModelP
         
         validationMetrics.setCountRSquare(validationMetrics.getAccuracy()); //CountRSquare is equal to Accuracy
         
-        double SSE = calculateError(validationData,knowledgeBase.getModelParameters().getThitas());
+        double SSE = calculateError(validationData, loadThitas());
         validationMetrics.setSSE(SSE);
         
         return validationMetrics;
     }
 
-    private void batchGradientDescent(Dataset trainingData, Map<List<Object>, Double> newThitas, double learningRate) {
-        //NOTE! This is not the stochastic gradient descent. It is the batch gradient descent optimized for speed (despite it looks more than the stochastic). 
-        //Despite the fact that the loops are inverse, the function still changes the values of Thitas at the end of the function. We use the previous thitas 
-        //to estimate the costs and only at the end we update the new thitas.
-        ModelParameters modelParameters = knowledgeBase.getModelParameters();
-
-        double multiplier = learningRate/modelParameters.getN();
-        Map<List<Object>, Double> thitas = modelParameters.getThitas();
-        Set<Object> classesSet = modelParameters.getClasses();
-        
-        for(Record r : trainingData) {
-            //mind the fact that we use the previous thitas to estimate the new ones! this is because the thitas must be updated simultaniously
-            AssociativeArray classProbabilities = hypothesisFunction(r.getX(), thitas);
-            for(Object theClass : classesSet) {
-                
-                double error;
-                double score = classProbabilities.getDouble(theClass);
-                if(r.getY().equals(theClass)) {
-                    error = 1 - score;
-                }
-                else {
-                    error = - score;
-                }
-                
-                double errorMultiplier = multiplier*error;
-                
-                
-                //update the weight of constant
-                List<Object> featureClassTuple = Arrays.<Object>asList(Dataset.constantColumnName, theClass);
-                newThitas.put(featureClassTuple, newThitas.get(featureClassTuple)+errorMultiplier);
-                
-                //update the rest of the weights
-                
-                for(Map.Entry<Object, Object> entry : r.getX().entrySet()) {
-                    Double value = Dataset.toDouble(entry.getValue());
-
-                    Object feature = entry.getKey();
-                    featureClassTuple = Arrays.<Object>asList(feature, theClass);
-
-                    Double thitaWeight = newThitas.get(featureClassTuple);
-                    if(thitaWeight!=null) {//ensure that the feature is in the dictionary
-                        newThitas.put(featureClassTuple, thitaWeight+errorMultiplier*value);
-                    }
-                }
-            }
+    /**
+     * Returns the thitas of the model. The frozen copies load them once and 
+     * the rest of the models load them from the storage on every call.
+     * 
+     * @return 
+     */
+    private LongDoubleHashMap loadThitas() {
+        if(frozenThitas!=null) {
+            return frozenThitas;
         }
-        
+        return LongDoubleHashMap.newInstance(knowledgeBase.getModelParameters().getThitas());
     }
     
-
-    private Double calculateClassScore(AssociativeArray x, Object theClass, Map<List<Object>, Double> thitas) {
-        double score = thitas.get(Arrays.<Object>asList(Dataset.constantColumnName, theClass));
+    private double calculateClassScore(FeatureVector vector, int constantId, int classId, LongDoubleHashMap thitas) {
+        //all the feature-class combinations have a thita
+        double score = thitas.get(IntegerDictionary.key(constantId, classId), 0.0);
         
-        for(Map.Entry<Object, Object> entry : x.entrySet()) {
-            Double value = Dataset.toDouble(entry.getValue());
-            
-            Object feature = entry.getKey();
-            List<Object> featureClassTuple = Arrays.<Object>asList(feature, theClass);
-            
-            Double thitaWeight = thitas.get(featureClassTuple);
-            if(thitaWeight!=null) {//ensure that the feature is in the dictionary
-                score+=thitaWeight*value;
-            }
+        for(int i=0;i<vector.size;++i) {
+            score+=thitas.get(IntegerDictionary.key(vector.featureIds[i], classId), 0.0)*vector.values[i];
         }
         
         return score;
     }
     
-    private double calculateError(Dataset trainingData, Map<List<Object>, Double> thitas) {
+    private double calculateError(Dataset trainingData, LongDoubleHashMap thitas) {
         //The cost function as described on http://ufldl.stanford.edu/wiki/index.php/Softmax_Regression
         //It is optimized for speed to reduce the amount of loops
         double error=0.0;
         
+        ModelParameters modelParameters = knowledgeBase.getModelParameters();
+        IntegerDictionary featureDictionary = new IntegerDictionary(modelParameters.getFeatureIds());
+        IntegerDictionary classDictionary = IntegerDictionary.newInstance(modelParameters.getOrderedClasses());
+        int constantId = featureDictionary.getId(Dataset.constantColumnName);
+        
+        FeatureVector vector = new FeatureVector();
         for(Record r : trainingData) {
-            AssociativeArray classProbabilities = hypothesisFunction(r.getX(), thitas);
-            Double score = classProbabilities.getDouble(r.getY());
+            vector.set(r.getX(), featureDictionary);
+            
+            double[] classProbabilities = hypothesisFunction(vector, constantId, classDictionary.size(), thitas);
+            Integer classId = classDictionary.getId(r.getY());
+            Double score = (classId!=null)?classProbabilities[classId]:0.0;
             error+=Math.log(score); //no need to loop through the categories. Just grab the one that we are interested in
         }
         
         return -error/knowledgeBase.getModelParameters().getN();
     }
     
-    private AssociativeArray hypothesisFunction(AssociativeArray x, Map<List<Object>, Double> thitas) {
-        Set<Object> classesSet = knowledgeBase.getModelParameters().getClasses();
-        AssociativeArray predictionProbabilities = new AssociativeArray(); 
+    private double[] hypothesisFunction(FeatureVector vector, int constantId, int c, LongDoubleHashMap thitas) {
+        double[] predictionProbabilities = new double[c];
         
-        for(Object theClass : classesSet) {
-            double score=calculateClassScore(x, theClass, thitas);
+        double sum = 0.0;
+        for(int classId=0;classId<c;++classId) {
+            double score=calculateClassScore(vector, constantId, classId, thitas);
             if(score<=0) {
                 score=1e-8;
             }
-            predictionProbabilities.put(theClass, score);
+            predictionProbabilities[classId] = score;
+            sum += score;
         }
         
-        Descriptives.normalize(predictionProbabilities);
+        for(int classId=0;classId<c;++classId) {
+            predictionProbabilities[classId]/=sum;
+        }
         
         return predictionProbabilities;
     }
+    
+    /**
+     * Softmax regression on the dense weights. The weight of the feature-class
+     * pair is stored in the position featureId*c+classId.
+     */
+    private static class SoftMaxTrainer extends MiniBatchTrainer {
+        
+        private final IntegerDictionary classDictionary;
+        
+        private final int constantId;
+        
+        private final int c;
+        
+        private double[] classProbabilities;
+        
+        private double[] errorMultipliers = new double[0];
+        
+        private SoftMaxTrainer(Map<Object, Integer> featureIds, IntegerDictionary classDictionary, int constantId, int n, TrainingParameters trainingParameters) {
+            super(featureIds, n, trainingParameters.getBatchSize(), trainingParameters.getLearningRate(), trainingParameters.getLearningRateSchedule(), trainingParameters.getTotalIterations(), trainingParameters.getPatience());
+            this.classDictionary = classDictionary;
+            this.constantId = constantId;
+            c = classDictionary.size();
+            classProbabilities = new double[c];
+        }
+        
+        @Override
+        protected double getTarget(Object y) {
+            Integer classId = classDictionary.getId(y);
+            return (classId!=null)?classId:Double.NaN;
+        }
+        
+        @Override
+        protected double updateWeights(SparseBatch batch, double[] targets, double[] weights, double[] newWeights, double multiplier) {
+            int[] rowOffsets = batch.getRowOffsets();
+            int[] featureIds = batch.getFeatureIds();
+            double[] values = batch.getValues();
+            
+            int size = batch.size();
+            if(errorMultipliers.length<size*c) {
+                errorMultipliers = new double[size*c];
+            }
+            
+            //mind the fact that we use the previous weights to estimate the errors of all the rows! this is because the weights must be updated simultaniously
+            double error = 0.0;
+            for(int row=0;row<size;++row) {
+                hypothesisFunction(rowOffsets[row], rowOffsets[row+1], featureIds, values, weights);
+                int yClassId = (int)targets[row];
+                error -= Math.log(classProbabilities[yClassId]);
+                
+                for(int classId=0;classId<c;++classId) {
+                    double score = classProbabilities[classId];
+                    double classError = (classId==yClassId)?1-score:-score;
+                    errorMultipliers[row*c+classId] = multiplier*classError;
+                }
+            }
+            
+            for(int row=0;row<size;++row) {
+                for(int classId=0;classId<c;++classId) {
+                    double errorMultiplier = errorMultipliers[row*c+classId];
+                    
+                    //update the weight of constant
+                    newWeights[constantId*c+classId] += errorMultiplier;
+                    
+                    //update the rest of the weights
+                    for(int i=rowOffsets[row];i<rowOffsets[row+1];++i) {
+                        newWeights[featureIds[i]*c+classId] += errorMultiplier*values[i];
+                    }
+                }
+            }
+            
+            return error;
+        }
+        
+        @Override
+        protected double calculateError(SparseBatch batch, double[] targets, double[] weights) {
+            //The cost function as described on http://ufldl.stanford.edu/wiki/index.php/Softmax_Regression
+            int[] rowOffsets = batch.getRowOffsets();
+            int[] featureIds = batch.getFeatureIds();
+            double[] values = batch.getValues();
+            
+            double error = 0.0;
+            for(int row=0;row<batch.size();++row) {
+                hypothesisFunction(rowOffsets[row], rowOffsets[row+1], featureIds, values, weights);
+                error -= Math.log(classProbabilities[(int)targets[row]]); //no need to loop through the categories. Just grab the one that we are interested in
+            }
+            
+            return error;
+        }
+        
+        private void hypothesisFunction(int from, int to, int[] featureIds, double[] values, double[] weights) {
+            double sum = 0.0;
+            for(int classId=0;classId<c;++classId) {
+                double score = weights[constantId*c+classId];
+                for(int i=from;i<to;++i) {
+                    score += weights[featureIds[i]*c+classId]*values[i];
+                }
+                
+                if(score<=0) {
+                    score=1e-8;
+                }
+                classProbabilities[classId] = score;
+                sum += score;
+            }
+            
+            for(int classId=0;classId<c;++classId) {
+                classProbabilities[classId]/=sum;
+            }
+        }
+    }
+    
+    /**
+     * Reusable buffer with the ids and the values of the known features of a 
+     * record. It allows us to look up the dictionary once per record instead
+     * of once per record and class.
+     */
+    private static class FeatureVector {
+        private int[] featureIds = new int[0];
+        private double[] values = new double[0];
+        private int size = 0;
+        
+        private void set(AssociativeArray x, IntegerDictionary featureDictionary) {
+            if(featureIds.length<x.size()) {
+                featureIds = new int[x.size()];
+                values = new double[x.size()];
+            }
+            
+            size = 0;
+            for(Map.Entry<Object, Object> entry : x.entrySet()) {
+                Integer featureId = featureDictionary.getId(entry.getKey());
+                if(featureId!=null) {//ensure that the feature is in the dictionary
+                    featureIds[size] = featureId;
+                    values[size] = Dataset.toDouble(entry.getValue());
+                    ++size;
+                }
+            }
+        }
+    }
 }
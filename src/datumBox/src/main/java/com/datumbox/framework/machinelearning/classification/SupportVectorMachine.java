@@ -255,9 +255,9 @@ public class SupportVectorMachine extends BaseMLclassifier<SupportVectorMachine.
         prob.y = new double[n];
         prob.x = new svm_node[n][sparseD];
         
-        //converting the dataset in the way that LibSVM can handle it
+        //converting the dataset in the way that LibSVM can handle it. The position of the record is used instead of its id, because the ids of the Records of a subset view are not their positions
+        int recordId = 0;
         for(Record r : trainingData) {
-            Integer recordId = r.getId();
             Object theClass=r.getY();
             
             int classId = classIds.get(theClass);
@@ -287,6 +287,7 @@ public class SupportVectorMachine extends BaseMLclassifier<SupportVectorMachine.
                     prob.x[recordId][featureId] = node;
                 }
             }
+            ++recordId;
         }
         
         //get the parameters for svm
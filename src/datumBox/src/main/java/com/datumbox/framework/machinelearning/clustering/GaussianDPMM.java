@@ -83,12 +83,12 @@ public class GaussianDPMM extends BaseDPMM<GaussianDPMM.Cluster, GaussianDPMM.Mo
         /**
          * Cached value of Covariance determinant used only for speed optimization
          */
-        private transient Double cache_covariance_determinant;
+        private transient volatile Double cache_covariance_determinant;
 
         /**
          * Cached value of Inverse Covariance used only for speed optimization
          */
-        private transient RealMatrix cache_covariance_inverse;
+        private transient volatile RealMatrix cache_covariance_inverse;
         
         
         
@@ -292,17 +292,19 @@ public class GaussianDPMM extends BaseDPMM<GaussianDPMM.Cluster, GaussianDPMM.Mo
 
             x_mu = x_mu.subtract(mean);
             
-            Double determinant;
-            RealMatrix invCovariance;
+            //the cached values are read once because the frozen models are used by many threads
+            Double determinant=cache_covariance_determinant;
+            RealMatrix invCovariance=cache_covariance_inverse;
 
-            if(cache_covariance_determinant==null || cache_covariance_inverse==null) {
+            if(determinant==null || invCovariance==null) {
                 LUDecomposition lud = new LUDecomposition(covariance);
-                cache_covariance_determinant = lud.getDeterminant();
-                cache_covariance_inverse = lud.getSolver().getInverse();
+                determinant = lud.getDeterminant();
+                invCovariance = lud.getSolver().getInverse();
                 lud =null;
+                
+                cache_covariance_determinant = determinant;
+                cache_covariance_inverse = invCovariance;
             }
-            determinant=cache_covariance_determinant;
-            invCovariance=cache_covariance_inverse;
 
             double x_muInvSx_muT = (invCovariance.preMultiply(x_mu)).dotProduct(x_mu);
 
@@ -19,20 +19,31 @@ package com.datumbox.framework.machinelearning.clustering;
 import com.datumbox.common.dataobjects.AssociativeArray;
 import com.datumbox.common.dataobjects.Dataset;
 import com.datumbox.common.dataobjects.Record;
-import com.datumbox.common.persistentstorage.factories.BigDataStructureFactory;
 import com.datumbox.common.utilities.MapFunctions;
+import com.datumbox.common.utilities.ParallelFunctions;
+import com.datumbox.configuration.ConcurrencyConfiguration;
 import com.datumbox.configuration.StorageConfiguration;
 import com.datumbox.framework.machinelearning.common.bases.mlmodels.BaseMLclusterer;
 import com.datumbox.framework.mathematics.distances.Distance;
 import com.datumbox.framework.statistics.descriptivestatistics.Descriptives;
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
-import java.util.Iterator;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
 
 /**
  *
@@ -48,6 +59,8 @@ public class HierarchicalAgglomerative extends BaseMLclusterer<HierarchicalAgglo
     
     public static final String SHORT_METHOD_NAME = "HiAgg";
     
+    private static final int BLOCKS_PER_THREAD = 4;
+    
     
     public static class Cluster extends BaseMLclusterer.Cluster {
         
@@ -301,194 +314,460 @@ public class HierarchicalAgglomerative extends BaseMLclusterer<HierarchicalAgglo
         ModelParameters modelParameters = knowledgeBase.getModelParameters();
         TrainingParameters trainingParameters = knowledgeBase.getTrainingParameters();
         Map<Integer, Cluster> clusterList = modelParameters.getClusterList();
-        
-        String tmpPrefix=StorageConfiguration.getTmpPrefix();
-        
-        BigDataStructureFactory bdsf = knowledgeBase.getBdsf();
 
-        BigDataStructureFactory.MapType mapType = knowledgeBase.getMemoryConfiguration().getMapType();
-        int LRUsize = knowledgeBase.getMemoryConfiguration().getLRUsize();
+        int n = trainingData.size();
 
-        Map<List<Object>, Double> distanceArray = bdsf.getMap(tmpPrefix+"distanceArray", mapType, LRUsize); //it holds the distances between clusters
-        Map<Integer, Integer> minClusterDistanceId = bdsf.getMap(tmpPrefix+"minClusterDistanceId", mapType, LRUsize); //it holds the ids of the min distances
-        
-        
-        //initialize clusters, foreach point create a cluster
-        Integer clusterId = 0;
+        //every record starts as a cluster and the id of a cluster is the smallest id of its records
+        int[] parents = new int[n];
+        for(int i=0;i<n;++i) {
+            parents[i] = i;
+        }
+
+        if(n>1) {
+            //the condensed matrix is kept in the heap only if the maps of the model are kept there too
+            boolean inMemory = knowledgeBase.getMemoryConfiguration().getMapType().isInMemory();
+
+            DistanceMatrix distanceMatrix = new DistanceMatrix(n, inMemory);
+            try {
+                calculateDistanceMatrix(trainingData, distanceMatrix);
+
+                Dendrogram dendrogram = Dendrogram.nearestNeighborChain(distanceMatrix, trainingParameters.getLinkageMethod());
+
+                //the merges are replayed in increasing distance until one of the thresholds is reached
+                int activeClusters = n;
+                for(int merge : dendrogram.getOrder()) {
+                    if(dendrogram.getDistance(merge)>=trainingParameters.getMaxDistanceThreshold()) {
+                        break;
+                    }
+
+                    int clusterId1 = findClusterId(parents, dendrogram.getClusterId1(merge));
+                    int clusterId2 = findClusterId(parents, dendrogram.getClusterId2(merge));
+                    parents[Math.max(clusterId1, clusterId2)] = Math.min(clusterId1, clusterId2);
+                    --activeClusters;
+
+                    if(activeClusters<=trainingParameters.getMinClustersThreshold()) {
+                        break;
+                    }
+                }
+            }
+            finally {
+                distanceMatrix.close();
+            }
+        }
+
+        //the clusters are created only for the groups that survived the merging
+        int row = 0;
         for(Record r : trainingData) {
-            Cluster c = new Cluster(clusterId);
-            
+            Integer clusterId = findClusterId(parents, row);
+
+            Cluster c = clusterList.get(clusterId);
+            if(c==null) {
+                c = new Cluster(clusterId);
+                clusterList.put(clusterId, c);
+            }
             c.add(r);
-            c.setActive(true);
+
+            ++row;
+        }
+
+        //update centroids. it does not update their IDs
+        for(Cluster c : clusterList.values()) {
             c.updateClusterParameters();
-            clusterList.put(clusterId, c);
-            
-            ++clusterId;
         }
-        
-        //calculate distance table and minimum distances
-        for(Map.Entry<Integer, Cluster> entry1 : clusterList.entrySet()) {
-            Integer clusterId1 = entry1.getKey();
-            Cluster c1 = entry1.getValue();
-            
-            for(Map.Entry<Integer, Cluster> entry2 : clusterList.entrySet()) {
-                Integer clusterId2 = entry2.getKey();
-                Cluster c2 = entry2.getValue();
-                
-                double distance = Double.MAX_VALUE;
-                if(!Objects.equals(clusterId1, clusterId2)) {
-                    distance = calculateDistance(c1.getCentroid(), c2.getCentroid());
-                }
-                
-                distanceArray.put(Arrays.<Object>asList(clusterId1, clusterId2), distance);
-                distanceArray.put(Arrays.<Object>asList(clusterId2, clusterId1), distance);
-                
-                Integer minDistanceId = minClusterDistanceId.get(clusterId1);
-                if(minDistanceId==null || distance < distanceArray.get(Arrays.<Object>asList(clusterId1, minDistanceId))) {
-                    minClusterDistanceId.put(clusterId1, clusterId2);
-                }
+    }
+
+    private static int findClusterId(int[] parents, int row) {
+        int root = row;
+        while(parents[root]!=root) {
+            root = parents[root];
+        }
+
+        //path compression
+        while(parents[row]!=root) {
+            int next = parents[row];
+            parents[row] = root;
+            row = next;
+        }
+        return root;
+    }
+
+    private void calculateDistanceMatrix(Dataset trainingData, final DistanceMatrix distanceMatrix) {
+        final int n = trainingData.size();
+
+        final double[][] points = toDensePoints(trainingData);
+        final Record[] records;
+        if(points==null) {
+            //the non numeric columns are compared with the generic distances of the records
+            records = new Record[n];
+            int row = 0;
+            for(Record r : trainingData) {
+                records[row++] = r;
             }
         }
-        
-        //merging process
-        boolean continueMerging = true;
-        while(continueMerging) {
-            continueMerging = mergeClosest(minClusterDistanceId, distanceArray);
-            
-            //count all the active clusters
-            int activeClusters = 0;
-            for(Cluster c : clusterList.values()) {
-                if(c.isActive()) {
-                    ++activeClusters;
+        else {
+            records = null;
+        }
+
+        ExecutorService executorService = null;
+        if(ConcurrencyConfiguration.isParallelized()) {
+            executorService = ConcurrencyConfiguration.newExecutorService();
+        }
+        try {
+            if(executorService!=null) {
+                int[] boundaries = ParallelFunctions.partition(n, BLOCKS_PER_THREAD*ConcurrencyConfiguration.getMaxNumberOfThreads());
+
+                List<Callable<Void>> tasks = new ArrayList<>(boundaries.length-1);
+                for(int p=0;p<boundaries.length-1;++p) {
+                    final int from = boundaries[p];
+                    final int to = boundaries[p+1];
+                    tasks.add(new Callable<Void>() {
+                        @Override
+                        public Void call() {
+                            calculateDistanceRows(from, to, points, records, distanceMatrix);
+                            return null;
+                        }
+                    });
                 }
+                ParallelFunctions.invokeAll(executorService, tasks);
             }
-            
-            if(activeClusters<=trainingParameters.getMinClustersThreshold()) {
-                continueMerging = false;
+            else {
+                calculateDistanceRows(0, n, points, records, distanceMatrix);
             }
         }
-        
-        //update centroids. it does not update their IDs
-        Iterator<Map.Entry<Integer, Cluster>> it = clusterList.entrySet().iterator();
-        while(it.hasNext()) {
-            Map.Entry<Integer, Cluster> entry = it.next();
-            Cluster cluster = entry.getValue();
-            if(cluster.isActive()) {
-                cluster.updateClusterParameters();
+        finally {
+            if(executorService!=null) {
+                executorService.shutdown();
             }
-            else {
-                it.remove(); //remove inactive clusters
+        }
+    }
+
+    private void calculateDistanceRows(int from, int to, double[][] points, Record[] records, DistanceMatrix distanceMatrix) {
+        TrainingParameters.Distance distanceMethod = knowledgeBase.getTrainingParameters().getDistanceMethod();
+
+        int n = distanceMatrix.size();
+        for(int i=from;i<to;++i) {
+            for(int j=i+1;j<n;++j) {
+                double distance;
+                if(points!=null) {
+                    distance = calculateDistance(points[i], points[j], distanceMethod);
+                }
+                else {
+                    distance = calculateDistance(records[i], records[j]);
+                }
+                distanceMatrix.set(i, j, (float)distance);
             }
         }
-        
-        //Drop the temporary Collection
-        bdsf.dropTable(tmpPrefix+"distanceArray", distanceArray);
-        bdsf.dropTable(tmpPrefix+"minClusterDistanceId", minClusterDistanceId);
     }
-    
-    private boolean mergeClosest(Map<Integer, Integer> minClusterDistanceId, Map<List<Object>, Double> distanceArray) {
-        ModelParameters modelParameters = knowledgeBase.getModelParameters();
-        TrainingParameters trainingParameters = knowledgeBase.getTrainingParameters();
-        Map<Integer, Cluster> clusterList = modelParameters.getClusterList();
-        
-        //find the two closest clusters 
-        Integer minClusterId = null;
-        double minDistance = Double.MAX_VALUE;
-        
-        
-        for(Map.Entry<Integer, Cluster> entry : clusterList.entrySet()) {
-            Integer clusterId = entry.getKey();
-            if(entry.getValue().isActive()==false) {
-                continue; //skip inactive clusters
+
+    private static double calculateDistance(double[] x1, double[] x2, TrainingParameters.Distance distanceMethod) {
+        double distance = 0.0;
+        if(distanceMethod==TrainingParameters.Distance.EUCLIDIAN) {
+            for(int f=0;f<x1.length;++f) {
+                double diff = x1[f]-x2[f];
+                distance += diff*diff;
             }
-            
-            double distance = distanceArray.get(Arrays.<Object>asList(clusterId, minClusterDistanceId.get(clusterId)));
-            if(distance<minDistance) {
-                minClusterId = clusterId;
-                minDistance = distance;
+            distance = Math.sqrt(distance);
+        }
+        else if(distanceMethod==TrainingParameters.Distance.MANHATTAN) {
+            for(int f=0;f<x1.length;++f) {
+                distance += Math.abs(x1[f]-x2[f]);
             }
         }
-        
-        if(minDistance>=trainingParameters.getMaxDistanceThreshold()) {
-            return false;
+        else if(distanceMethod==TrainingParameters.Distance.MAXIMUM) {
+            for(int f=0;f<x1.length;++f) {
+                distance = Math.max(distance, Math.abs(x1[f]-x2[f]));
+            }
         }
-        
-        Integer clusterToBeMergedId = minClusterDistanceId.get(minClusterId);        
-        Cluster c1 = clusterList.get(minClusterId);
-        Cluster c2 = clusterList.get(clusterToBeMergedId);
-        
-        double c1Size = c1.size();
-        double c2Size = c2.size();
-        
-        //merge together the two closest clusters
-        c1.merge(c2);
-        c2.setActive(false); //set the cluster that we just merged inactive
-        
-        
-        //update the distances with the merged cluster
-        TrainingParameters.Linkage linkageMethod = trainingParameters.getLinkageMethod();
-        for(Map.Entry<Integer, Cluster> entry : clusterList.entrySet()) {
-            //Integer clusterId = entry.getKey();
-            Cluster ci = entry.getValue();
-            if(ci.isActive()==false) {
-                continue; //skip inactive clusters
+        else {
+            throw new RuntimeException("Unsupported Distance method");
+        }
+
+        return distance;
+    }
+
+    /**
+     * Converts the records to dense arrays, in the order of the dataset. The
+     * missing values are set to zero, which is what the Distance methods assume
+     * for the numeric columns. If the dataset contains non numeric columns null
+     * is returned.
+     *
+     * @param trainingData
+     * @return
+     */
+    private static double[][] toDensePoints(Dataset trainingData) {
+        Map<Object, Integer> featureIds = new HashMap<>();
+        for(Map.Entry<Object, Dataset.ColumnType> entry : trainingData.getColumns().entrySet()) {
+            Dataset.ColumnType columnType = entry.getValue();
+            if(columnType!=Dataset.ColumnType.NUMERICAL && columnType!=Dataset.ColumnType.DUMMYVAR) {
+                return null;
             }
-            
-            double distance;
-            if(Objects.equals(c1.getClusterId(), ci.getClusterId())) {
-                distance = Double.MAX_VALUE;
+            featureIds.put(entry.getKey(), featureIds.size());
+        }
+
+        double[][] points = new double[trainingData.size()][featureIds.size()];
+        int row = 0;
+        for(Record r : trainingData) {
+            for(Map.Entry<Object, Object> entry : r.getX().entrySet()) {
+                Double value = Dataset.toDouble(entry.getValue());
+                if(value!=null) {
+                    points[row][featureIds.get(entry.getKey())] = value;
+                }
             }
-            else if(linkageMethod==TrainingParameters.Linkage.SINGLE) {
-                double c1ciDistance = distanceArray.get(Arrays.<Object>asList(c1.getClusterId(), ci.getClusterId()));
-                double c2ciDistance = distanceArray.get(Arrays.<Object>asList(c2.getClusterId(), ci.getClusterId()));
-                distance = Math.min(c1ciDistance, c2ciDistance);
+            ++row;
+        }
+        return points;
+    }
+
+    /**
+     * Condensed matrix of the pairwise distances between n clusters. Only the
+     * n(n-1)/2 cells above the diagonal are stored, as floats, in segments which
+     * are either arrays of the heap or regions of a temporary memory mapped file.
+     * Distinct cells can be written concurrently.
+     */
+    private static class DistanceMatrix {
+
+        private static final int SEGMENT_BITS = 24; //segments of 16M floats
+
+        private static final long SEGMENT_MASK = (1L<<SEGMENT_BITS) - 1L;
+
+        private final int n;
+
+        private final FloatBuffer[] segments;
+
+        private final Path path;
+
+        public DistanceMatrix(int n, boolean inMemory) {
+            this.n = n;
+
+            long cells = (long)n*(n-1)/2;
+            int numberOfSegments = (int)((cells+SEGMENT_MASK)>>>SEGMENT_BITS);
+            segments = new FloatBuffer[numberOfSegments];
+
+            if(inMemory) {
+                path = null;
+                for(int s=0;s<numberOfSegments;++s) {
+                    segments[s] = FloatBuffer.wrap(new float[segmentLength(s, cells)]);
+                }
             }
-            else if(linkageMethod==TrainingParameters.Linkage.COMPLETE) {
-                double c1ciDistance = distanceArray.get(Arrays.<Object>asList(c1.getClusterId(), ci.getClusterId()));
-                double c2ciDistance = distanceArray.get(Arrays.<Object>asList(c2.getClusterId(), ci.getClusterId()));
-                distance = Math.max(c1ciDistance, c2ciDistance);
+            else {
+                try {
+                    path = Files.createTempFile(StorageConfiguration.getTmpPrefix()+"distanceArray", null);
+                    try(FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                        for(int s=0;s<numberOfSegments;++s) {
+                            long position = ((long)s<<SEGMENT_BITS)*4L; //4 bytes per float
+                            segments[s] = channel.map(FileChannel.MapMode.READ_WRITE, position, segmentLength(s, cells)*4L).order(ByteOrder.nativeOrder()).asFloatBuffer();
+                        }
+                    }
+                }
+                catch (IOException ex) {
+                    throw new RuntimeException(ex);
+                }
             }
-            else if(linkageMethod==TrainingParameters.Linkage.AVERAGE) {
-                double c1ciDistance = distanceArray.get(Arrays.<Object>asList(c1.getClusterId(), ci.getClusterId()));
-                double c2ciDistance = distanceArray.get(Arrays.<Object>asList(c2.getClusterId(), ci.getClusterId()));
-                distance = (c1ciDistance*c1Size + c2ciDistance*c2Size)/(c1Size+c2Size);
+        }
+
+        private static int segmentLength(int s, long cells) {
+            return (int)Math.min(1L<<SEGMENT_BITS, cells-((long)s<<SEGMENT_BITS));
+        }
+
+        public int size() {
+            return n;
+        }
+
+        private long cell(int i, int j) {
+            if(i>j) {
+                int tmp = i;
+                i = j;
+                j = tmp;
             }
-            else {
-                distance = calculateDistance(c1.getCentroid(), ci.getCentroid());
+            return (long)i*(2L*n-i-1)/2 + (j-i-1);
+        }
+
+        public float get(int i, int j) {
+            long cell = cell(i, j);
+            return segments[(int)(cell>>>SEGMENT_BITS)].get((int)(cell&SEGMENT_MASK));
+        }
+
+        public void set(int i, int j, float distance) {
+            long cell = cell(i, j);
+            segments[(int)(cell>>>SEGMENT_BITS)].put((int)(cell&SEGMENT_MASK), distance);
+        }
+
+        public void close() {
+            if(path!=null) {
+                //the mappings are released by the GC; removing the file only unlinks it on most platforms
+                try {
+                    Files.deleteIfExists(path);
+                }
+                catch (IOException ex) {
+                    path.toFile().deleteOnExit();
+                }
             }
-            
-            distanceArray.put(Arrays.<Object>asList(c1.getClusterId(), ci.getClusterId()), distance);
-            distanceArray.put(Arrays.<Object>asList(ci.getClusterId(), c1.getClusterId()), distance);
         }
-        
-        //update minimum distance ids 
-        for(Map.Entry<Integer, Cluster> entry1 : clusterList.entrySet()) {
-            Integer id1 = entry1.getKey();
-            if(entry1.getValue().isActive()==false) {
-                continue; //skip inactive clusters
+    }
+
+    /**
+     * The n-1 merges of the agglomeration. Every merge joins the clusters with
+     * the given ids, which are the smallest record rows of each cluster, at the
+     * given linkage distance.
+     */
+    private static class Dendrogram {
+
+        private final int[] clusterIds1;
+
+        private final int[] clusterIds2;
+
+        private final double[] distances;
+
+        private Dendrogram(int n) {
+            clusterIds1 = new int[n-1];
+            clusterIds2 = new int[n-1];
+            distances = new double[n-1];
+        }
+
+        public int getClusterId1(int merge) {
+            return clusterIds1[merge];
+        }
+
+        public int getClusterId2(int merge) {
+            return clusterIds2[merge];
+        }
+
+        public double getDistance(int merge) {
+            return distances[merge];
+        }
+
+        /**
+         * Returns the merges sorted by distance. The sort is stable, so merges
+         * at equal distances keep the order in which they were found.
+         *
+         * @return
+         */
+        public Integer[] getOrder() {
+            Integer[] order = new Integer[distances.length];
+            for(int m=0;m<order.length;++m) {
+                order[m] = m;
             }
-            
-            Integer minDistanceId = minClusterDistanceId.get(id1);
-            
-            if(Objects.equals(minDistanceId, c1.getClusterId()) || Objects.equals(minDistanceId, c2.getClusterId())) {
-                Integer newMinDistanceId = id1;
-                
-                for(Map.Entry<Integer, Cluster> entry2 : clusterList.entrySet()) {
-                    Integer id2 = entry2.getKey();
-                    if(entry2.getValue().isActive()==false) {
-                        continue; //skip inactive clusters
+            Arrays.sort(order, new Comparator<Integer>() {
+                @Override
+                public int compare(Integer m1, Integer m2) {
+                    return Double.compare(distances[m1], distances[m2]);
+                }
+            });
+            return order;
+        }
+
+        /**
+         * Builds the dendrogram with the nearest-neighbor chain algorithm. It
+         * follows the chain of nearest neighbors until it finds two clusters
+         * which are reciprocal nearest neighbors and merges them. The result is
+         * the same as the one of the greedy agglomeration for all the linkages
+         * which satisfy the reducibility property (single, complete, average)
+         * but it requires O(n^2) time instead of O(n^3). The distances of the
+         * merged cluster are updated in place with the Lance-Williams formulas
+         * and they are stored in the cells of the cluster with the smaller id.
+         *
+         * @param distanceMatrix
+         * @param linkageMethod
+         * @return
+         */
+        public static Dendrogram nearestNeighborChain(DistanceMatrix distanceMatrix, TrainingParameters.Linkage linkageMethod) {
+            int n = distanceMatrix.size();
+            Dendrogram dendrogram = new Dendrogram(n);
+
+            int[] sizes = new int[n];
+            int[] activeIds = new int[n]; //sorted ids of the active clusters
+            for(int i=0;i<n;++i) {
+                sizes[i] = 1;
+                activeIds[i] = i;
+            }
+            int numberOfActive = n;
+
+            int[] chain = new int[n];
+            int chainLength = 0;
+
+            for(int merge=0;merge<n-1;++merge) {
+                if(chainLength==0) {
+                    chain[chainLength++] = activeIds[0];
+                }
+
+                int a;
+                int b;
+                double minDistance;
+                while(true) {
+                    a = chain[chainLength-1];
+
+                    //the previous cluster of the chain wins the ties, otherwise the chain could cycle
+                    b = -1;
+                    minDistance = Double.POSITIVE_INFINITY;
+                    if(chainLength>1) {
+                        b = chain[chainLength-2];
+                        minDistance = distanceMatrix.get(a, b);
                     }
-            
-                    if(distanceArray.get(Arrays.<Object>asList(id1, id2)) < distanceArray.get(Arrays.<Object>asList(id1, newMinDistanceId)) ){
-                        newMinDistanceId = id2;
+
+                    for(int k=0;k<numberOfActive;++k) {
+                        int c = activeIds[k];
+                        if(c==a) {
+                            continue;
+                        }
+                        double distance = distanceMatrix.get(a, c);
+                        if(distance<minDistance || b==-1) {
+                            minDistance = distance;
+                            b = c;
+                        }
                     }
+
+                    if(chainLength>1 && b==chain[chainLength-2]) {
+                        chainLength-=2; //a and b are reciprocal nearest neighbors
+                        break;
+                    }
+                    chain[chainLength++] = b;
                 }
-                
-                minClusterDistanceId.put(id1, newMinDistanceId);
+
+                int survivor = Math.min(a, b);
+                int removed = Math.max(a, b);
+
+                dendrogram.clusterIds1[merge] = survivor;
+                dendrogram.clusterIds2[merge] = removed;
+                dendrogram.distances[merge] = minDistance;
+
+                double sizeA = sizes[a];
+                double sizeB = sizes[b];
+
+                //remove the merged cluster while keeping the active ids sorted
+                int position = Arrays.binarySearch(activeIds, 0, numberOfActive, removed);
+                System.arraycopy(activeIds, position+1, activeIds, position, numberOfActive-position-1);
+                --numberOfActive;
+
+                //update the distances with the merged cluster
+                for(int k=0;k<numberOfActive;++k) {
+                    int c = activeIds[k];
+                    if(c==survivor) {
+                        continue;
+                    }
+
+                    double acDistance = distanceMatrix.get(a, c);
+                    double bcDistance = distanceMatrix.get(b, c);
+
+                    double distance;
+                    if(linkageMethod==TrainingParameters.Linkage.SINGLE) {
+                        distance = Math.min(acDistance, bcDistance);
+                    }
+                    else if(linkageMethod==TrainingParameters.Linkage.COMPLETE) {
+                        distance = Math.max(acDistance, bcDistance);
+                    }
+                    else if(linkageMethod==TrainingParameters.Linkage.AVERAGE) {
+                        distance = (acDistance*sizeA + bcDistance*sizeB)/(sizeA+sizeB);
+                    }
+                    else {
+                        throw new RuntimeException("Unsupported Linkage method");
+                    }
+                    distanceMatrix.set(survivor, c, (float)distance);
+                }
+
+                sizes[survivor] += sizes[removed];
             }
+
+            return dendrogram;
         }
-        
-        
-        return true;
     }
-}
\ No newline at end of file
+}
@@ -19,29 +19,42 @@ package com.datumbox.framework.machinelearning.clustering;
 import com.datumbox.common.dataobjects.AssociativeArray;
 import com.datumbox.common.dataobjects.Dataset;
 import com.datumbox.common.dataobjects.Record;
+import com.datumbox.common.dataobjects.SparseBatch;
 import com.datumbox.common.persistentstorage.factories.BigDataStructureFactory;
 import com.datumbox.common.persistentstorage.interfaces.BigDataStructureMarker;
 import com.datumbox.common.utilities.MapFunctions;
 import com.datumbox.common.utilities.PHPfunctions;
+import com.datumbox.common.utilities.ParallelFunctions;
+import com.datumbox.common.utilities.RandomValue;
+import com.datumbox.configuration.ConcurrencyConfiguration;
 import com.datumbox.configuration.GeneralConfiguration;
 import com.datumbox.configuration.MemoryConfiguration;
 import com.datumbox.configuration.StorageConfiguration;
 import com.datumbox.framework.machinelearning.common.bases.mlmodels.BaseMLclusterer;
+import com.datumbox.framework.machinelearning.common.interfaces.StreamTrainable;
 import com.datumbox.framework.mathematics.distances.Distance;
 import com.datumbox.framework.statistics.descriptivestatistics.Descriptives;
 import com.datumbox.framework.statistics.sampling.SRS;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Random;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
 import org.mongodb.morphia.annotations.Transient;
 
 /**
  *
  * @author Vasilis Vryniotis <bbriniotis at datumbox.com>
  */
-public class Kmeans extends BaseMLclusterer<Kmeans.Cluster, Kmeans.ModelParameters, Kmeans.TrainingParameters, Kmeans.ValidationMetrics> {
+public class Kmeans extends BaseMLclusterer<Kmeans.Cluster, Kmeans.ModelParameters, Kmeans.TrainingParameters, Kmeans.ValidationMetrics> implements StreamTrainable {
 
     /**
      * The internalDataCollections that are passed in this function are NOT modified after the analysis. 
@@ -51,10 +64,26 @@ public class Kmeans extends BaseMLclusterer<Kmeans.Cluster, Kmeans.ModelParamete
     
     public static final String SHORT_METHOD_NAME = "Kmean";
     
+    //the records are assigned in blocks which are many more than the threads, since the pruning makes their costs uneven
+    private static final int BLOCKS_PER_THREAD = 4;
+    
+    //the number of records per cluster which are sampled from the stream for the initialization
+    private static final int INITIALIZATION_SAMPLE_SIZE_PER_CLUSTER = 20;
+    
+    //number of records parsed at once when the centroids are updated once per iteration
+    private static final int FULL_BATCH_CHUNK_SIZE = 1024;
+    
+    //the dense centroids of update() are kept between its calls for the model parameters which they were built from
+    private transient ModelParameters updaterModelParameters = null;
+    private transient List<Cluster> updaterClusters = null;
+    private transient MiniBatchUpdater updater = null;
+    
     
     public static class Cluster extends BaseMLclusterer.Cluster {
         
         private final Record centroid;
+        
+        private double weight = 0.0; //the number of records averaged in the centroid. It is used as its weight when the model is updated
 
         public Cluster(int clusterId) {
             super(clusterId);
@@ -65,6 +94,14 @@ public class Kmeans extends BaseMLclusterer<Kmeans.Cluster, Kmeans.ModelParamete
             return centroid;
         }
 
+        public double getWeight() {
+            return weight;
+        }
+
+        protected void setWeight(double weight) {
+            this.weight = weight;
+        }
+
         @Override
         public boolean add(Record r) {
             boolean result = recordSet.add(r);
@@ -165,7 +202,8 @@ public class Kmeans extends BaseMLclusterer<Kmeans.Cluster, Kmeans.ModelParamete
             SET_FIRST_K, //Set First K points as Initial Centroid
             FURTHEST_FIRST, //Furthest First: http://www.cs.utexas.edu/users/inderjit/elkankmeans.ppt
             SUBSET_FURTHEST_FIRST, //Subset Furthest First: http://www.cs.utexas.edu/users/inderjit/elkankmeans.ppt
-            PLUS_PLUS; //Kmeans++: http://ilpubs.stanford.edu:8090/778/1/2006-13.pdf    http://www.ima.umn.edu/~iwen/REU/BATS-Means.pdf
+            PLUS_PLUS, //Kmeans++: http://ilpubs.stanford.edu:8090/778/1/2006-13.pdf    http://www.ima.umn.edu/~iwen/REU/BATS-Means.pdf
+            SCALABLE_PLUS_PLUS; //Kmeans||: http://theory.stanford.edu/~sergei/papers/vldb12-kmpar.pdf
         }
         
         public enum Distance {
@@ -185,10 +223,18 @@ public class Kmeans extends BaseMLclusterer<Kmeans.Cluster, Kmeans.ModelParamete
 
         private double subsetFurthestFirstcValue = 2;//c>1 This value is used for c*k*log k, Readmore: http://web.cs.swarthmore.edu/~turnbull/Papers/Turnbull_GenreRBF_KDE05.pdf
 
+        private double scalablePlusPlusOversampling = 2.0; //used by Kmeans||, the expected number of candidates selected per round is this value multiplied by k
+        
+        private int scalablePlusPlusRounds = 5; //used by Kmeans||, the number of rounds of sampling of candidates
+
         private double categoricalGamaMultiplier = 1.0;  //used by Kprototype algorithm, multiplies the the categorical distance with this weight
         
         private boolean weighted = false; //whether the weighted version of the algorithm will run. The weighted version estimates weights for every feature
         
+        private int batchSize = 0; //0 for the standard Kmeans which assigns all the records in every iteration, otherwise the number of records of the mini-batches
+        
+        private int patience = 0; //the number of iterations without improvement of the held out cost before stopping or 0 to disable the early stopping
+        
         //Getters Setters
         
         public int getK() {
@@ -231,6 +277,28 @@ public class Kmeans extends BaseMLclusterer<Kmeans.Cluster, Kmeans.ModelParamete
             this.subsetFurthestFirstcValue = subsetFurthestFirstcValue;
         }
 
+        public double getScalablePlusPlusOversampling() {
+            return scalablePlusPlusOversampling;
+        }
+
+        public void setScalablePlusPlusOversampling(double scalablePlusPlusOversampling) {
+            if(scalablePlusPlusOversampling<=0.0) {
+                throw new IllegalArgumentException("The scalablePlusPlusOversampling must be positive.");
+            }
+            this.scalablePlusPlusOversampling = scalablePlusPlusOversampling;
+        }
+
+        public int getScalablePlusPlusRounds() {
+            return scalablePlusPlusRounds;
+        }
+
+        public void setScalablePlusPlusRounds(int scalablePlusPlusRounds) {
+            if(scalablePlusPlusRounds<0) {
+                throw new IllegalArgumentException("The scalablePlusPlusRounds can not be negative.");
+            }
+            this.scalablePlusPlusRounds = scalablePlusPlusRounds;
+        }
+
         public double getCategoricalGamaMultiplier() {
             return categoricalGamaMultiplier;
         }
@@ -246,6 +314,28 @@ public class Kmeans extends BaseMLclusterer<Kmeans.Cluster, Kmeans.ModelParamete
         public void setWeighted(boolean weighted) {
             this.weighted = weighted;
         }
+
+        public int getBatchSize() {
+            return batchSize;
+        }
+
+        public void setBatchSize(int batchSize) {
+            if(batchSize<0) {
+                throw new IllegalArgumentException("The batchSize can not be negative.");
+            }
+            this.batchSize = batchSize;
+        }
+
+        public int getPatience() {
+            return patience;
+        }
+
+        public void setPatience(int patience) {
+            if(patience<0) {
+                throw new IllegalArgumentException("The patience can not be negative.");
+            }
+            this.patience = patience;
+        }
         
     } 
 
@@ -289,6 +379,100 @@ public class Kmeans extends BaseMLclusterer<Kmeans.Cluster, Kmeans.ModelParamete
         
     }
     
+    @Override
+    public void train(Iterable<Record> trainingStream, Iterable<Record> heldOutStream) {
+        checkStreamTraining();
+        
+        //train the model to get the parameters
+        estimateModelParameters(trainingStream, heldOutStream);
+        
+        completeStreamTraining();
+    }
+    
+    /**
+     * Updates the centroids of the trained model with the records of the 
+     * newData, without retraining it. The records are assigned to the closest
+     * centroids in mini-batches of batchSize records (or in a single batch if 
+     * it is 0) and every centroid moves towards the average of its records 
+     * with a learning rate equal to the inverse of its weight. The dense 
+     * centroids are kept between the calls and only the centroids which 
+     * received records are written back to the clusters, so the time of the 
+     * update is proportional to the size of the newData. The features which 
+     * are not known to the model are ignored and the validation metrics of the
+     * model are not modified.
+     * 
+     * @param newData 
+     */
+    public void update(Iterable<Record> newData) {
+        if(GeneralConfiguration.DEBUG) {
+            System.out.println("update()");
+        }
+        
+        knowledgeBase.load();
+        if(!knowledgeBase.isTrained()) {
+            throw new RuntimeException("The algorithm is not trained. Train it before updating it.");
+        }
+        
+        ModelParameters modelParameters = knowledgeBase.getModelParameters();
+        TrainingParameters trainingParameters = knowledgeBase.getTrainingParameters();
+        Map<Integer, Cluster> clusterList = modelParameters.getClusterList();
+        
+        if(updaterModelParameters!=modelParameters) { //the model was trained or loaded after the last update
+            List<Cluster> clusters = new ArrayList<>(clusterList.values());
+            double totalWeight = 0.0;
+            for(Cluster c : clusters) {
+                totalWeight += c.getWeight();
+            }
+            if(modelParameters.getN()>0 && totalWeight==0.0) {
+                throw new RuntimeException("The model does not store the weights of the centroids which are required to update it. Train it again.");
+            }
+            
+            FeatureSpace space = new FeatureSpace(modelParameters.getFeatureWeights(), trainingParameters.getDistanceMethod());
+            updater = new MiniBatchUpdater(space, clusters);
+            updaterClusters = clusters;
+            updaterModelParameters = modelParameters;
+        }
+        FeatureSpace space = updater.getSpace();
+        updater.resetIterationCounts();
+        
+        int batchSize = trainingParameters.getBatchSize();
+        SparseBatch batch = new SparseBatch();
+        int n = 0;
+        Iterator<Record> it = newData.iterator();
+        while(it.hasNext()) {
+            batch.clear();
+            while(it.hasNext() && (batchSize==0 || batch.size()<batchSize)) {
+                space.addRow(it.next(), batch);
+            }
+            
+            updater.assignBatch(batch);
+            updater.updateRunningAverages();
+            n += batch.size();
+        }
+        
+        if(n==0) {
+            return;
+        }
+        
+        //write back only the centroids which received records
+        double[] iterationCounts = updater.getIterationCounts();
+        for(int j=0;j<iterationCounts.length;++j) {
+            if(iterationCounts[j]>0.0) {
+                Cluster c = updaterClusters.get(j);
+                space.storeCentroid(c, updater.getCentroid(j), updater.getWeight(j));
+                clusterList.put(c.getClusterId(), c);
+            }
+        }
+        modelParameters.setN(modelParameters.getN()+n);
+        
+        if(isTemporary()==false) {
+            if(GeneralConfiguration.DEBUG) {
+                System.out.println("Saving model");
+            }
+            knowledgeBase.save(true);
+        }
+    }
+    
     @Override
     @SuppressWarnings("unchecked")
     protected void estimateModelParameters(Dataset trainingData) {
@@ -296,6 +480,7 @@ public class Kmeans extends BaseMLclusterer<Kmeans.Cluster, Kmeans.ModelParamete
         int d = trainingData.getColumnSize();
         
         ModelParameters modelParameters = knowledgeBase.getModelParameters();
+        TrainingParameters trainingParameters = knowledgeBase.getTrainingParameters();
         Map<Integer, Cluster> clusterList = modelParameters.getClusterList();
         
         //initialization
@@ -313,13 +498,18 @@ public class Kmeans extends BaseMLclusterer<Kmeans.Cluster, Kmeans.ModelParamete
         }
         
         //calculate the weights of the features
-        calculateFeatureWeights(trainingData);
+        calculateFeatureWeights(trainingData.getColumns(), trainingData);
         
         //initialize clusters
         initializeClusters(trainingData);
         
         //calculate clusters
-        calculateClusters(trainingData);
+        if(trainingParameters.getBatchSize()==0) {
+            calculateClusters(trainingData);
+        }
+        else {
+            calculateClustersMiniBatch(trainingData, null);
+        }
         
         
         //update the number of clusters
@@ -331,29 +521,91 @@ public class Kmeans extends BaseMLclusterer<Kmeans.Cluster, Kmeans.ModelParamete
         }
     }
     
+    protected void estimateModelParameters(Iterable<Record> trainingStream, Iterable<Record> heldOutStream) {
+        ModelParameters modelParameters = knowledgeBase.getModelParameters();
+        TrainingParameters trainingParameters = knowledgeBase.getTrainingParameters();
+        Map<Integer, Cluster> clusterList = modelParameters.getClusterList();
+        
+        //find the columns and the gold standard classes and keep a uniform sample of the records for the initialization
+        int sampleSize = Math.max(INITIALIZATION_SAMPLE_SIZE_PER_CLUSTER*trainingParameters.getK(), trainingParameters.getBatchSize());
+        List<Record> sample = new ArrayList<>(sampleSize);
+        Map<Object, Dataset.ColumnType> columnTypes = new HashMap<>();
+        Set<Object> goldStandardClasses = modelParameters.getGoldStandardClasses();
+        int n = 0;
+        for(Record r : trainingStream) {
+            for(Map.Entry<Object, Object> entry : r.getX().entrySet()) {
+                if(!columnTypes.containsKey(entry.getKey())) {
+                    columnTypes.put(entry.getKey(), Dataset.value2ColumnType(entry.getValue()));
+                }
+            }
+            
+            Object theClass=r.getY();
+            if(theClass!=null) {
+                goldStandardClasses.add(theClass); 
+            }
+            
+            //reservoir sampling
+            if(n<sampleSize) {
+                sample.add(r);
+            }
+            else {
+                int position = RandomValue.getRandomGenerator().nextInt(n+1);
+                if(position<sampleSize) {
+                    sample.set(position, r);
+                }
+            }
+            ++n;
+        }
+        
+        //initialization
+        modelParameters.setN(n);
+        modelParameters.setD(columnTypes.size());
+        
+        //calculate the weights of the features
+        calculateFeatureWeights(columnTypes, trainingStream);
+        
+        //initialize clusters on the sample
+        Dataset sampleData = new Dataset();
+        for(Record r : sample) {
+            sampleData.add(r);
+        }
+        sample = null;
+        initializeClusters(sampleData);
+        sampleData = null;
+        
+        //calculate clusters
+        calculateClustersMiniBatch(trainingStream, heldOutStream);
+        
+        //update the number of clusters
+        modelParameters.setC(clusterList.size());
+        
+        //clear dataclusters
+        for(Cluster c : clusterList.values()) {
+            c.clear();
+        }
+    }
+    
     /**
      * Estimate the weights of each feature.
      * 
+     * @param columnTypes
      * @param trainingData 
      */
-    private void calculateFeatureWeights(Dataset trainingData) {
+    private void calculateFeatureWeights(Map<Object, Dataset.ColumnType> columnTypes, Iterable<Record> trainingData) {
         ModelParameters modelParameters = knowledgeBase.getModelParameters();
         TrainingParameters trainingParameters = knowledgeBase.getTrainingParameters();
-        Map<Object, Dataset.ColumnType> columnTypes = trainingData.getColumns();
         
         Map<Object, Double> featureWeights = modelParameters.getFeatureWeights();
         
         if(trainingParameters.isWeighted()==false) {
             //the unweighted version of the algorithm
             double gammaWeight = trainingParameters.getCategoricalGamaMultiplier(); 
-            for(Record r : trainingData) {
-                for(Object feature : r.getX().keySet()) {
-                    //standard kmeans has equal weights in all numeric features
-                    //for categorical, dummy or ordinal feature, use the Gamma Multiplier of Kprototypes
-                    double weight = (columnTypes.get(feature)!=Dataset.ColumnType.NUMERICAL)?gammaWeight:1.0;
-                    
-                    featureWeights.put(feature, weight); 
-                }
+            for(Map.Entry<Object, Dataset.ColumnType> entry : columnTypes.entrySet()) {
+                //standard kmeans has equal weights in all numeric features
+                //for categorical, dummy or ordinal feature, use the Gamma Multiplier of Kprototypes
+                double weight = (entry.getValue()!=Dataset.ColumnType.NUMERICAL)?gammaWeight:1.0;
+                
+                featureWeights.put(entry.getKey(), weight); 
             }
         }
         else {
@@ -602,55 +854,1018 @@ public class Kmeans extends BaseMLclusterer<Kmeans.Cluster, Kmeans.ModelParamete
             }
             alreadyAddedPoints = null;
         }
+        else if(initMethod==TrainingParameters.Initialization.SCALABLE_PLUS_PLUS) {
+            for(Integer selectedRecordId : selectScalablePlusPlusRecords(trainingData)) {
+                Integer clusterId = clusterList.size();
+                Cluster c = new Cluster(clusterId);
+                c.add(trainingData.get(selectedRecordId));
+                c.updateClusterParameters();
+                
+                clusterList.put(clusterId, c);
+            }
+        }
+    }
+    
+    /**
+     * Selects the records of the initial centroids with the Kmeans|| of 
+     * Bahmani et al. In every round each record becomes a candidate 
+     * independently with probability proportional to its cost, so about
+     * oversampling*k candidates are added per round and only their distances
+     * from the records are calculated. The candidates are weighted by the 
+     * number of records which are closest to them and k of them are selected 
+     * with the weighted Kmeans++. All the random numbers are drawn on the 
+     * calling thread, so the selection does not depend on the threads.
+     * 
+     * @param trainingData
+     * @return 
+     */
+    private List<Integer> selectScalablePlusPlusRecords(Dataset trainingData) {
+        ModelParameters modelParameters = knowledgeBase.getModelParameters();
+        TrainingParameters trainingParameters = knowledgeBase.getTrainingParameters();
+        
+        int k = trainingParameters.getK();
+        double oversampling = trainingParameters.getScalablePlusPlusOversampling()*k;
+        int rounds = trainingParameters.getScalablePlusPlusRounds();
+        Random rnd = RandomValue.getRandomGenerator();
+        
+        int n = trainingData.size();
+        if(n==0) {
+            return new ArrayList<>();
+        }
+        
+        FeatureSpace space = new FeatureSpace(modelParameters.getFeatureWeights(), trainingParameters.getDistanceMethod());
+        SparseBatch points = new SparseBatch();
+        int[] recordIds = new int[n];
+        for(Record r : trainingData) {
+            recordIds[space.addRow(r, points)] = r.getId();
+        }
+        
+        final CandidateSet candidates = new CandidateSet(space, points);
+        
+        ExecutorService executorService = null;
+        if(ConcurrencyConfiguration.isParallelized()) {
+            executorService = ConcurrencyConfiguration.newExecutorService();
+        }
+        try {
+            int[] boundaries = ParallelFunctions.partition(n, BLOCKS_PER_THREAD*ConcurrencyConfiguration.getMaxNumberOfThreads());
+            
+            //the first candidate is selected uniformly
+            candidates.add(rnd.nextInt(n));
+            double totalCost = updateCandidateCosts(candidates, 0, boundaries, executorService);
+            
+            for(int round=0;round<rounds && totalCost>0.0;++round) {
+                if(GeneralConfiguration.DEBUG) {
+                    System.out.println("Round "+round);
+                }
+                
+                int firstNewCandidate = candidates.size();
+                double[] costs = candidates.getCosts();
+                for(int row=0;row<n;++row) {
+                    if(rnd.nextDouble()*totalCost<oversampling*costs[row]) {
+                        candidates.add(row);
+                    }
+                }
+                
+                if(candidates.size()>firstNewCandidate) {
+                    totalCost = updateCandidateCosts(candidates, firstNewCandidate, boundaries, executorService);
+                }
+            }
+        }
+        finally {
+            if(executorService!=null) {
+                executorService.shutdown();
+            }
+        }
+        
+        List<Integer> selectedRecordIds = new ArrayList<>(k);
+        for(int row : candidates.selectPlusPlus(k, rnd)) {
+            selectedRecordIds.add(recordIds[row]);
+        }
+        return selectedRecordIds;
+    }
+    
+    /**
+     * Updates the costs of the records with the candidates which were added 
+     * after the firstCandidate and returns the total cost. The blocks of 
+     * records are processed concurrently if an executorService is provided.
+     * 
+     * @param candidates
+     * @param firstCandidate
+     * @param boundaries
+     * @param executorService
+     * @return 
+     */
+    private static double updateCandidateCosts(final CandidateSet candidates, final int firstCandidate, int[] boundaries, ExecutorService executorService) {
+        if(executorService!=null) {
+            List<Callable<Void>> tasks = new ArrayList<>(boundaries.length-1);
+            for(int p=0;p<boundaries.length-1;++p) {
+                final int from = boundaries[p];
+                final int to = boundaries[p+1];
+                tasks.add(new Callable<Void>() {
+                    @Override
+                    public Void call() {
+                        candidates.updateCosts(from, to, firstCandidate);
+                        return null;
+                    }
+                });
+            }
+            ParallelFunctions.invokeAll(executorService, tasks);
+        }
+        else {
+            candidates.updateCosts(0, boundaries[boundaries.length-1], firstCandidate);
+        }
+        
+        //the total is summed in the order of the records, so it does not depend on the blocks
+        double totalCost = 0.0;
+        for(double cost : candidates.getCosts()) {
+            totalCost += cost;
+        }
+        return totalCost;
     }
 
     private void calculateClusters(Dataset trainingData) {
         ModelParameters modelParameters = knowledgeBase.getModelParameters();
         TrainingParameters trainingParameters = knowledgeBase.getTrainingParameters();
         Map<Integer, Cluster> clusterList = modelParameters.getClusterList();
+
+        int maxIterations = trainingParameters.getMaxIterations();
+        modelParameters.setTotalIterations(maxIterations);
+
+        //copy the records in a sparse batch over the ids of the features
+        FeatureSpace space = new FeatureSpace(modelParameters.getFeatureWeights(), trainingParameters.getDistanceMethod());
+        int n = trainingData.size();
+        int nonZeros = 0;
+        for(Record r : trainingData) {
+            nonZeros += r.getX().size();
+        }
+        SparseBatch points = new SparseBatch(n, nonZeros);
+        int[] recordIds = new int[n];
+        for(Record r : trainingData) {
+            recordIds[space.addRow(r, points)] = r.getId();
+        }
+
+        List<Cluster> clusters = new ArrayList<>(clusterList.values());
+        int k = clusters.size();
+        int d = space.getDimensions();
+
+        final double[][] centroids = new double[k][];
+        for(int j=0;j<k;++j) {
+            centroids[j] = space.toDense(clusters.get(j).getCentroid().getX());
+        }
+
+        final HamerlyAssigner assigner = new HamerlyAssigner(space, points, k);
+
+        //the running sums and sizes of the clusters, updated only with the records that change cluster
+        double[][] sums = new double[k][d];
+        int[] counts = new int[k];
+
+        ExecutorService executorService = null;
+        if(ConcurrencyConfiguration.isParallelized()) {
+            executorService = ConcurrencyConfiguration.newExecutorService();
+        }
+        try {
+            int[] boundaries = ParallelFunctions.partition(n, BLOCKS_PER_THREAD*ConcurrencyConfiguration.getMaxNumberOfThreads());
+            for(int iteration=0;iteration<maxIterations;++iteration) {
+                if(GeneralConfiguration.DEBUG) {
+                    System.out.println("Iteration "+iteration);
+                }
+
+                assigner.updateCentroids(centroids);
+
+                //assign records in clusters. Every block keeps the changes of the sums of the clusters separately
+                List<HamerlyAssigner.Changes> blockChanges;
+                if(executorService!=null) {
+                    List<Callable<HamerlyAssigner.Changes>> tasks = new ArrayList<>(boundaries.length-1);
+                    for(int p=0;p<boundaries.length-1;++p) {
+                        final int from = boundaries[p];
+                        final int to = boundaries[p+1];
+                        tasks.add(new Callable<HamerlyAssigner.Changes>() {
+                            @Override
+                            public HamerlyAssigner.Changes call() {
+                                return assigner.assignRows(from, to);
+                            }
+                        });
+                    }
+                    blockChanges = ParallelFunctions.invokeAll(executorService, tasks);
+                }
+                else {
+                    blockChanges = new ArrayList<>(1);
+                    blockChanges.add(assigner.assignRows(0, n));
+                }
+
+                //reduce the changes of the blocks in order
+                int moves = 0;
+                for(HamerlyAssigner.Changes changes : blockChanges) {
+                    moves += changes.reduce(sums, counts);
+                }
+                blockChanges = null;
+
+                //if none of the records changed cluster then the centroids remain the same
+                if(moves==0) {
+                    modelParameters.setTotalIterations(iteration);
+                    break;
+                }
+
+                //update clusters
+                for(int j=0;j<k;++j) {
+                    double[] centroid = new double[d];
+                    if(counts[j]>0) {
+                        for(int f=0;f<d;++f) {
+                            centroid[f] = sums[j][f]/counts[j];
+                        }
+                    }
+                    centroids[j] = centroid;
+                }
+            }
+        }
+        finally {
+            if(executorService!=null) {
+                executorService.shutdown();
+            }
+        }
+
+        //store the centroids and the records of the clusters
+        double[] clusterWeights = new double[k];
+        for(int j=0;j<k;++j) {
+            clusterWeights[j] = counts[j];
+            clusters.get(j).clear();
+        }
+        space.storeCentroids(clusters, centroids, clusterWeights);
+        int[] assignments = assigner.getAssignments();
+        for(int i=0;i<n;++i) {
+            clusters.get(assignments[i]).add(trainingData.get(recordIds[i]));
+        }
+    }
+    
+    /**
+     * Estimates the centroids with the mini-batch Kmeans of Sculley
+     * (http://www.eecs.tufts.edu/~dsculley/papers/fastkmeans.pdf). The records
+     * of every mini-batch are assigned to the closest centroids, which then 
+     * move towards the average of their records with per centroid learning 
+     * rates. If the batchSize is 0, the centroids are updated once per pass 
+     * over the stream, which is equivalent to the standard Kmeans. The 
+     * trainingStream is iterated once per iteration.
+     * 
+     * @param trainingStream
+     * @param heldOutStream 
+     */
+    private void calculateClustersMiniBatch(Iterable<Record> trainingStream, Iterable<Record> heldOutStream) {
+        ModelParameters modelParameters = knowledgeBase.getModelParameters();
+        TrainingParameters trainingParameters = knowledgeBase.getTrainingParameters();
+        Map<Integer, Cluster> clusterList = modelParameters.getClusterList();
         
         int maxIterations = trainingParameters.getMaxIterations();
         modelParameters.setTotalIterations(maxIterations);
         
-        AssociativeArray clusterDistances = new AssociativeArray();
+        int batchSize = trainingParameters.getBatchSize();
+        int patience = trainingParameters.getPatience();
+        boolean earlyStopping = heldOutStream!=null && patience>0;
+        
+        FeatureSpace space = new FeatureSpace(modelParameters.getFeatureWeights(), trainingParameters.getDistanceMethod());
+        List<Cluster> clusters = new ArrayList<>(clusterList.values());
+        
+        //the weights of the initial centroids are zero, so they are replaced by the averages of their first records
+        MiniBatchUpdater updater = new MiniBatchUpdater(space, clusters);
+        
+        double[][] bestCentroids = null;
+        double[] bestCounts = null;
+        double minHeldOutCost = Double.POSITIVE_INFINITY;
+        int iterationsWithoutImprovement = 0;
+        
+        SparseBatch batch = new SparseBatch();
+        int chunkSize = (batchSize==0)?FULL_BATCH_CHUNK_SIZE:batchSize;
         for(int iteration=0;iteration<maxIterations;++iteration) {
             if(GeneralConfiguration.DEBUG) {
                 System.out.println("Iteration "+iteration);
             }
             
-            //reset cluster points
-            for(Cluster c : clusterList.values()) {
-                c.clear();
+            updater.resetIterationCounts();
+            Iterator<Record> it = trainingStream.iterator();
+            while(it.hasNext()) {
+                batch.clear();
+                while(it.hasNext() && batch.size()<chunkSize) {
+                    space.addRow(it.next(), batch);
+                }
+                
+                updater.assignBatch(batch);
+                if(batchSize>0) {
+                    updater.updateRunningAverages();
+                }
             }
             
-            //assign records in clusters
-            for(Record r : trainingData) {
-                //we are storing cluster references not clusterIds
-                for(Cluster c : clusterList.values()) {
-                    clusterDistances.put(c, calculateDistance(r, c.getCentroid()));
+            boolean changed = true;
+            if(batchSize==0) {
+                changed = updater.updateAverages();
+            }
+            
+            if(earlyStopping) {
+                double heldOutCost = updater.calculateCost(heldOutStream, batch);
+                if(heldOutCost<minHeldOutCost) {
+                    minHeldOutCost = heldOutCost;
+                    bestCentroids = updater.getCentroids();
+                    bestCounts = updater.getIterationCounts();
+                    iterationsWithoutImprovement = 0;
+                }
+                else if(++iterationsWithoutImprovement>=patience) {
+                    modelParameters.setTotalIterations(iteration);
+                    break;
+                }
+            }
+            
+            //if none of the centroids changed then exit
+            if(changed==false) {
+                modelParameters.setTotalIterations(iteration);
+                break;
+            }
+        }
+        
+        if(bestCentroids!=null) {
+            space.storeCentroids(clusters, bestCentroids, bestCounts);
+        }
+        else {
+            space.storeCentroids(clusters, updater.getCentroids(), updater.getIterationCounts());
+        }
+    }
+
+    /**
+     * Maps the weighted features to consecutive ids, so that the records are
+     * stored in SparseBatches without their zero values and the centroids are
+     * dense arrays over the same ids. The distance of a record from a centroid
+     * costs proportionally to the non zero values of the record.
+     */
+    private static class FeatureSpace {
+        private final Map<Object, Integer> featureIds;
+        private final Object[] features;
+        private final double[] weights;
+        private final boolean euclidean;
+
+        public FeatureSpace(Map<Object, Double> featureWeights, TrainingParameters.Distance distanceMethod) {
+            if(distanceMethod!=TrainingParameters.Distance.EUCLIDIAN && distanceMethod!=TrainingParameters.Distance.MANHATTAN) {
+                throw new RuntimeException("Unsupported Distance method");
+            }
+            euclidean = (distanceMethod==TrainingParameters.Distance.EUCLIDIAN);
+
+            int d = featureWeights.size();
+            featureIds = new HashMap<>();
+            features = new Object[d];
+            weights = new double[d];
+            for(Map.Entry<Object, Double> entry : featureWeights.entrySet()) {
+                int featureId = featureIds.size();
+                featureIds.put(entry.getKey(), featureId);
+                features[featureId] = entry.getKey();
+                weights[featureId] = entry.getValue();
+            }
+        }
+
+        public int getDimensions() {
+            return weights.length;
+        }
+
+        /**
+         * Appends the record as a new row of the batch and returns its index.
+         * Only the features with weights are compared and the missing values
+         * are zeros, so the rest of the values are not stored.
+         *
+         * @param r
+         * @param batch
+         * @return
+         */
+        public int addRow(Record r, SparseBatch batch) {
+            for(Map.Entry<Object, Object> entry : r.getX().entrySet()) {
+                Integer featureId = featureIds.get(entry.getKey());
+                if(featureId==null) {
+                    continue;
+                }
+                Double value = Dataset.toDouble(entry.getValue());
+                if(value!=null && value!=0.0) {
+                    batch.add(featureId, value);
+                }
+            }
+            return batch.endRow();
+        }
+
+        public double[] toDense(AssociativeArray x) {
+            double[] dense = new double[weights.length];
+            for(Map.Entry<Object, Object> entry : x.entrySet()) {
+                Integer featureId = featureIds.get(entry.getKey());
+                Double value = Dataset.toDouble(entry.getValue());
+                if(featureId!=null && value!=null) {
+                    dense[featureId] = value;
+                }
+            }
+            return dense;
+        }
+
+        /**
+         * Stores the dense centroids and their weights on the clusters.
+         *
+         * @param clusters
+         * @param centroids
+         * @param clusterWeights
+         */
+        public void storeCentroids(List<Cluster> clusters, double[][] centroids, double[] clusterWeights) {
+            for(int j=0;j<clusters.size();++j) {
+                storeCentroid(clusters.get(j), centroids[j], clusterWeights[j]);
+            }
+        }
+
+        /**
+         * Stores the dense centroid and its weight on the cluster.
+         *
+         * @param c
+         * @param centroid
+         * @param clusterWeight
+         */
+        public void storeCentroid(Cluster c, double[] centroid, double clusterWeight) {
+            AssociativeArray centoidValues = new AssociativeArray(new LinkedHashMap<>());
+            for(int f=0;f<features.length;++f) {
+                centoidValues.put(features[f], centroid[f]);
+            }
+
+            c.getCentroid().setX(centoidValues);
+            c.setWeight(clusterWeight);
+        }
+
+        /**
+         * Returns the part of the distance which depends only on the centroid,
+         * which is the weighted squared L2 or the weighted L1 norm.
+         *
+         * @param centroid
+         * @return
+         */
+        public double norm(double[] centroid) {
+            double norm = 0.0;
+            for(int f=0;f<centroid.length;++f) {
+                norm += (euclidean)?weights[f]*centroid[f]*centroid[f]:weights[f]*Math.abs(centroid[f]);
+            }
+            return norm;
+        }
+
+        /**
+         * Estimates the distance of a row of the batch from the centroid by
+         * correcting the norm of the centroid on the non zero values of the row.
+         *
+         * @param batch
+         * @param row
+         * @param centroid
+         * @param centroidNorm
+         * @return
+         */
+        public double distance(SparseBatch batch, int row, double[] centroid, double centroidNorm) {
+            int[] rowFeatureIds = batch.getFeatureIds();
+            double[] values = batch.getValues();
+
+            double distance = centroidNorm;
+            for(int i=batch.getRowStart(row);i<batch.getRowEnd(row);++i) {
+                int f = rowFeatureIds[i];
+                double x = values[i];
+                double c = centroid[f];
+                distance += (euclidean)?weights[f]*x*(x-2.0*c):weights[f]*(Math.abs(x-c)-Math.abs(c));
+            }
+            distance = Math.max(distance, 0.0); //protect from rounding errors
+            return (euclidean)?Math.sqrt(distance):distance;
+        }
+
+        /**
+         * Returns the contribution of a record with the provided distance in 
+         * the cost of the clustering, which is the squared distance for the 
+         * Euclidean and the distance for the Manhattan.
+         * 
+         * @param distance
+         * @return 
+         */
+        public double cost(double distance) {
+            return (euclidean)?distance*distance:distance;
+        }
+
+        public double distance(double[] centroid1, double[] centroid2) {
+            double distance = 0.0;
+            for(int f=0;f<centroid1.length;++f) {
+                double diff = centroid1[f]-centroid2[f];
+                distance += (euclidean)?weights[f]*diff*diff:weights[f]*Math.abs(diff);
+            }
+            return (euclidean)?Math.sqrt(distance):distance;
+        }
+
+        public void add(SparseBatch batch, int row, double[] sums, double sign) {
+            int[] rowFeatureIds = batch.getFeatureIds();
+            double[] values = batch.getValues();
+            for(int i=batch.getRowStart(row);i<batch.getRowEnd(row);++i) {
+                sums[rowFeatureIds[i]] += sign*values[i];
+            }
+        }
+    }
+
+    /**
+     * Assigns the records to the closest centroids using the bounds of Hamerly
+     * (http://cs.baylor.edu/~hamerly/papers/sdm_2010.pdf). Every record keeps an
+     * upper bound of the distance from its centroid and a lower bound of the
+     * distance from the second closest one. Since both weighted distances are
+     * metrics, the distances from the centroids are calculated only when the
+     * bounds can't exclude a change of cluster.
+     */
+    private static class HamerlyAssigner {
+        private final FeatureSpace space;
+        private final SparseBatch points;
+        private final int k;
+
+        private final int[] assignments;
+        private final double[] upperBounds;
+        private final double[] lowerBounds;
+
+        private double[][] centroids;
+        private final double[] norms;
+        private final double[] halfMinSeparations;
+        private final double[] movements;
+        private int furthestMovingCentroid = -1;
+        private double maxMovement = 0.0;
+        private double secondMaxMovement = 0.0;
+
+        /**
+         * The changes of a block of records on the sums and the sizes of the
+         * clusters. Only the clusters which are affected get an array.
+         */
+        public static class Changes {
+            private final double[][] sums;
+            private final int[] counts;
+            private int moves = 0;
+
+            public Changes(int k) {
+                sums = new double[k][];
+                counts = new int[k];
+            }
+
+            private double[] getSums(int clusterId, int d) {
+                if(sums[clusterId]==null) {
+                    sums[clusterId] = new double[d];
+                }
+                return sums[clusterId];
+            }
+
+            /**
+             * Adds the changes to the totals and returns the number of records
+             * that changed cluster.
+             *
+             * @param totalSums
+             * @param totalCounts
+             * @return
+             */
+            public int reduce(double[][] totalSums, int[] totalCounts) {
+                for(int j=0;j<counts.length;++j) {
+                    totalCounts[j] += counts[j];
+                    if(sums[j]!=null) {
+                        for(int f=0;f<sums[j].length;++f) {
+                            totalSums[j][f] += sums[j][f];
+                        }
+                    }
+                }
+                return moves;
+            }
+        }
+
+        public HamerlyAssigner(FeatureSpace space, SparseBatch points, int k) {
+            this.space = space;
+            this.points = points;
+            this.k = k;
+
+            int n = points.size();
+            assignments = new int[n];
+            Arrays.fill(assignments, -1);
+            upperBounds = new double[n];
+            lowerBounds = new double[n];
+
+            norms = new double[k];
+            halfMinSeparations = new double[k];
+            movements = new double[k];
+        }
+
+        public int[] getAssignments() {
+            return assignments;
+        }
+
+        /**
+         * Sets the new centroids and estimates how much they moved and how far
+         * they are from each other. The bounds of the records are updated
+         * lazily during the next assignment.
+         *
+         * @param newCentroids
+         */
+        public void updateCentroids(double[][] newCentroids) {
+            furthestMovingCentroid = -1;
+            maxMovement = 0.0;
+            secondMaxMovement = 0.0;
+            for(int j=0;j<k;++j) {
+                movements[j] = (centroids!=null)?space.distance(centroids[j], newCentroids[j]):0.0;
+                if(movements[j]>maxMovement) {
+                    secondMaxMovement = maxMovement;
+                    maxMovement = movements[j];
+                    furthestMovingCentroid = j;
+                }
+                else if(movements[j]>secondMaxMovement) {
+                    secondMaxMovement = movements[j];
+                }
+            }
+
+            centroids = newCentroids.clone();
+            Arrays.fill(halfMinSeparations, Double.MAX_VALUE);
+            for(int j=0;j<k;++j) {
+                norms[j] = space.norm(centroids[j]);
+                for(int j2=j+1;j2<k;++j2) {
+                    double halfDistance = space.distance(centroids[j], centroids[j2])/2.0;
+                    halfMinSeparations[j] = Math.min(halfMinSeparations[j], halfDistance);
+                    halfMinSeparations[j2] = Math.min(halfMinSeparations[j2], halfDistance);
+                }
+            }
+        }
+
+        /**
+         * Assigns the records of the rows [from, to) to the closest centroids
+         * and returns the changes they cause on the sums of the clusters.
+         *
+         * @param from
+         * @param to
+         * @return
+         */
+        public Changes assignRows(int from, int to) {
+            Changes changes = new Changes(k);
+            int d = space.getDimensions();
+
+            for(int i=from;i<to;++i) {
+                int previousClusterId = assignments[i];
+                int clusterId = previousClusterId;
+
+                if(previousClusterId<0) {
+                    clusterId = scanCentroids(i);
+                }
+                else {
+                    upperBounds[i] += movements[previousClusterId];
+                    lowerBounds[i] -= (previousClusterId==furthestMovingCentroid)?secondMaxMovement:maxMovement;
+
+                    double bound = Math.max(halfMinSeparations[previousClusterId], lowerBounds[i]);
+                    if(upperBounds[i]>bound) {
+                        //tighten the upper bound and check again before visiting all the centroids
+                        upperBounds[i] = space.distance(points, i, centroids[previousClusterId], norms[previousClusterId]);
+                        if(upperBounds[i]>bound) {
+                            clusterId = scanCentroids(i);
+                        }
+                    }
+                }
+
+                if(clusterId!=previousClusterId) {
+                    if(previousClusterId>=0) {
+                        space.add(points, i, changes.getSums(previousClusterId, d), -1.0);
+                        --changes.counts[previousClusterId];
+                    }
+                    space.add(points, i, changes.getSums(clusterId, d), 1.0);
+                    ++changes.counts[clusterId];
+                    ++changes.moves;
+                }
+            }
+
+            return changes;
+        }
+
+        private int scanCentroids(int i) {
+            int clusterId = -1;
+            double minDistance = Double.POSITIVE_INFINITY;
+            double secondMinDistance = Double.POSITIVE_INFINITY;
+            for(int j=0;j<k;++j) {
+                double distance = space.distance(points, i, centroids[j], norms[j]);
+                if(distance<minDistance) {
+                    secondMinDistance = minDistance;
+                    minDistance = distance;
+                    clusterId = j;
+                }
+                else if(distance<secondMinDistance) {
+                    secondMinDistance = distance;
+                }
+            }
+
+            assignments[i] = clusterId;
+            upperBounds[i] = minDistance;
+            lowerBounds[i] = secondMinDistance;
+            return clusterId;
+        }
+    }
+
+    /**
+     * Keeps the dense centroids of the mini-batch Kmeans and the number of 
+     * records averaged in each of them. The sums of the records of a batch are
+     * kept per centroid and the centroids are updated only after all the 
+     * records of the batch are assigned.
+     */
+    private static class MiniBatchUpdater {
+        private final FeatureSpace space;
+        private final int k;
+        
+        private final double[][] centroids;
+        private final double[] norms;
+        private final double[] weights;
+        
+        private final double[][] sums;
+        private final int[] counts;
+        private final double[] iterationCounts;
+
+        public MiniBatchUpdater(FeatureSpace space, List<Cluster> clusters) {
+            this.space = space;
+            k = clusters.size();
+            
+            centroids = new double[k][];
+            norms = new double[k];
+            weights = new double[k];
+            for(int j=0;j<k;++j) {
+                Cluster c = clusters.get(j);
+                centroids[j] = space.toDense(c.getCentroid().getX());
+                norms[j] = space.norm(centroids[j]);
+                weights[j] = c.getWeight();
+            }
+            
+            sums = new double[k][];
+            counts = new int[k];
+            iterationCounts = new double[k];
+        }
+        
+        public FeatureSpace getSpace() {
+            return space;
+        }
+        
+        /**
+         * Returns the dense centroid of the cluster j. The array is not copied
+         * and it must not be modified.
+         * 
+         * @param j
+         * @return 
+         */
+        public double[] getCentroid(int j) {
+            return centroids[j];
+        }
+        
+        public double getWeight(int j) {
+            return weights[j];
+        }
+        
+        public double[][] getCentroids() {
+            double[][] copy = new double[k][];
+            for(int j=0;j<k;++j) {
+                copy[j] = Arrays.copyOf(centroids[j], centroids[j].length);
+            }
+            return copy;
+        }
+        
+        /**
+         * Returns the number of records assigned to every centroid since the
+         * last reset.
+         * 
+         * @return 
+         */
+        public double[] getIterationCounts() {
+            return Arrays.copyOf(iterationCounts, k);
+        }
+        
+        public void resetIterationCounts() {
+            Arrays.fill(iterationCounts, 0.0);
+        }
+        
+        /**
+         * Assigns the rows of the batch to the closest centroids and adds them
+         * to the sums of the centroids.
+         * 
+         * @param batch 
+         */
+        public void assignBatch(SparseBatch batch) {
+            for(int row=0;row<batch.size();++row) {
+                int clusterId = -1;
+                double minDistance = Double.POSITIVE_INFINITY;
+                for(int j=0;j<k;++j) {
+                    double distance = space.distance(batch, row, centroids[j], norms[j]);
+                    if(distance<minDistance) {
+                        minDistance = distance;
+                        clusterId = j;
+                    }
                 }
                 
-                //find the closest cluster
-                Cluster selectedCluster = (Cluster)getSelectedClusterFromDistances(clusterDistances);
+                if(sums[clusterId]==null) {
+                    sums[clusterId] = new double[space.getDimensions()];
+                }
+                space.add(batch, row, sums[clusterId], 1.0);
+                ++counts[clusterId];
+                ++iterationCounts[clusterId];
+            }
+        }
+        
+        /**
+         * Moves every centroid towards the average of its records of the batch
+         * with learning rate counts/(weight+counts). Since the weight is the 
+         * number of records averaged so far, the centroid is the running 
+         * average of all the records assigned to it.
+         */
+        public void updateRunningAverages() {
+            for(int j=0;j<k;++j) {
+                if(counts[j]==0) {
+                    continue;
+                }
                 
-                //add the record in the cluster
-                selectedCluster.add(r);
+                double newWeight = weights[j]+counts[j];
+                double[] centroid = centroids[j];
+                for(int f=0;f<centroid.length;++f) {
+                    centroid[f] = (centroid[f]*weights[j] + sums[j][f])/newWeight;
+                }
+                weights[j] = newWeight;
+                norms[j] = space.norm(centroid);
                 
-                //clear the distances
-                clusterDistances.clear();
+                Arrays.fill(sums[j], 0.0);
+                counts[j] = 0;
             }
+        }
+        
+        /**
+         * Replaces the centroids with the averages of their records and returns
+         * whether any of them changed.
+         * 
+         * @return 
+         */
+        public boolean updateAverages() {
+            boolean changed = false;
+            for(int j=0;j<k;++j) {
+                double[] centroid = new double[space.getDimensions()];
+                if(counts[j]>0) {
+                    for(int f=0;f<centroid.length;++f) {
+                        centroid[f] = sums[j][f]/counts[j];
+                    }
+                    Arrays.fill(sums[j], 0.0);
+                }
+                if(!Arrays.equals(centroids[j], centroid)) {
+                    changed = true;
+                    centroids[j] = centroid;
+                    norms[j] = space.norm(centroid);
+                }
+                weights[j] = counts[j];
+                counts[j] = 0;
+            }
+            return changed;
+        }
+        
+        /**
+         * Returns the sum of the distances of the records from their closest
+         * centroids.
+         * 
+         * @param records
+         * @param batch     A batch which is cleared and reused.
+         * @return 
+         */
+        public double calculateCost(Iterable<Record> records, SparseBatch batch) {
+            double cost = 0.0;
+            Iterator<Record> it = records.iterator();
+            while(it.hasNext()) {
+                batch.clear();
+                while(it.hasNext() && batch.size()<FULL_BATCH_CHUNK_SIZE) {
+                    space.addRow(it.next(), batch);
+                }
+                
+                for(int row=0;row<batch.size();++row) {
+                    double minDistance = Double.POSITIVE_INFINITY;
+                    for(int j=0;j<k;++j) {
+                        minDistance = Math.min(minDistance, space.distance(batch, row, centroids[j], norms[j]));
+                    }
+                    cost += minDistance;
+                }
+            }
+            return cost;
+        }
+    }
+
+    /**
+     * The candidate centroids of the Kmeans||. For every record it keeps the
+     * cost with respect to the closest candidate and its index.
+     */
+    private static class CandidateSet {
+        private final FeatureSpace space;
+        private final SparseBatch points;
+        
+        private final List<Integer> rows = new ArrayList<>();
+        private final List<double[]> centroids = new ArrayList<>();
+        private double[] norms = new double[16];
+        
+        private final double[] costs;
+        private final int[] closest;
+
+        public CandidateSet(FeatureSpace space, SparseBatch points) {
+            this.space = space;
+            this.points = points;
             
-            //update clusters
-            boolean changed=false;
-            for(Cluster c : clusterList.values()) {
-                changed|=c.updateClusterParameters();
+            costs = new double[points.size()];
+            Arrays.fill(costs, Double.POSITIVE_INFINITY);
+            closest = new int[points.size()];
+        }
+        
+        public int size() {
+            return rows.size();
+        }
+        
+        public double[] getCosts() {
+            return costs;
+        }
+        
+        public void add(int row) {
+            double[] centroid = new double[space.getDimensions()];
+            space.add(points, row, centroid, 1.0);
+            
+            if(norms.length==rows.size()) {
+                norms = Arrays.copyOf(norms, norms.length*2);
+            }
+            norms[rows.size()] = space.norm(centroid);
+            rows.add(row);
+            centroids.add(centroid);
+        }
+        
+        /**
+         * Updates the costs of the records of the rows [from, to) with the 
+         * candidates starting from the firstCandidate.
+         * 
+         * @param from
+         * @param to
+         * @param firstCandidate 
+         */
+        public void updateCosts(int from, int to, int firstCandidate) {
+            int m = rows.size();
+            for(int row=from;row<to;++row) {
+                for(int j=firstCandidate;j<m;++j) {
+                    double cost = space.cost(space.distance(points, row, centroids.get(j), norms[j]));
+                    if(cost<costs[row]) {
+                        costs[row] = cost;
+                        closest[row] = j;
+                    }
+                }
+            }
+        }
+        
+        /**
+         * Selects k of the candidates with the Kmeans++, weighting every 
+         * candidate with the number of records which are closest to it, and 
+         * returns their rows. If there are fewer than k distinct candidates, 
+         * the rest of the rows are selected uniformly from the records.
+         * 
+         * @param k
+         * @param rnd
+         * @return 
+         */
+        public List<Integer> selectPlusPlus(int k, Random rnd) {
+            int m = rows.size();
+            double[] weights = new double[m];
+            for(int row=0;row<closest.length;++row) {
+                ++weights[closest[row]];
             }
             
-            //if none of the clusters changed then exit
-            if(changed==false) {
-                modelParameters.setTotalIterations(iteration);
-                break;
+            List<Integer> selectedRows = new ArrayList<>(k);
+            double[] minCosts = new double[m];
+            Arrays.fill(minCosts, Double.POSITIVE_INFINITY);
+            double[] masses = Arrays.copyOf(weights, m); //the first one is selected proportionally to the weights
+            while(selectedRows.size()<k) {
+                double totalMass = 0.0;
+                for(double mass : masses) {
+                    totalMass += mass;
+                }
+                if(totalMass<=0.0) {
+                    break; //the rest of the candidates coincide with the selected ones
+                }
+                
+                int selected = sampleProportionally(masses, totalMass, rnd);
+                selectedRows.add(rows.get(selected));
+                
+                double[] selectedCentroid = centroids.get(selected);
+                for(int j=0;j<m;++j) {
+                    minCosts[j] = Math.min(minCosts[j], space.cost(space.distance(centroids.get(j), selectedCentroid)));
+                    masses[j] = weights[j]*minCosts[j];
+                }
+            }
+            
+            //fill the missing centroids with random records
+            int n = closest.length;
+            while(selectedRows.size()<Math.min(k, n)) {
+                Integer row = rnd.nextInt(n);
+                if(!selectedRows.contains(row)) {
+                    selectedRows.add(row);
+                }
+            }
+            
+            return selectedRows;
+        }
+        
+        private static int sampleProportionally(double[] masses, double totalMass, Random rnd) {
+            double threshold = rnd.nextDouble()*totalMass;
+            double cumulativeMass = 0.0;
+            int last = -1;
+            for(int j=0;j<masses.length;++j) {
+                if(masses[j]<=0.0) {
+                    continue;
+                }
+                cumulativeMass += masses[j];
+                last = j;
+                if(threshold<cumulativeMass) {
+                    return j;
+                }
             }
+            return last; //rounding errors
         }
     }
-}
\ No newline at end of file
+}
@@ -63,7 +63,7 @@ public class MultinomialDPMM extends BaseDPMM<MultinomialDPMM.Cluster, Multinomi
         /**
          * Cached value of WordCountsPlusAlpha used only for speed optimization
          */
-        private transient Double cache_wordcounts_plusalpha;
+        private transient volatile Double cache_wordcounts_plusalpha;
 
         
         
@@ -184,11 +184,12 @@ public class MultinomialDPMM extends BaseDPMM<MultinomialDPMM.Cluster, Multinomi
             RealVector aVector = new ArrayRealVector(dimensions, alphaWords);
             RealVector wordCountsPlusAlpha = wordCounts.add(aVector);
 
-            double cOfWordCountsPlusAlpha;
-            if(cache_wordcounts_plusalpha==null) {
-                cache_wordcounts_plusalpha=C(wordCountsPlusAlpha);
+            //the cached value is read once because the frozen models are used by many threads
+            Double cOfWordCountsPlusAlpha=cache_wordcounts_plusalpha;
+            if(cOfWordCountsPlusAlpha==null) {
+                cOfWordCountsPlusAlpha=C(wordCountsPlusAlpha);
+                cache_wordcounts_plusalpha=cOfWordCountsPlusAlpha;
             }
-            cOfWordCountsPlusAlpha=cache_wordcounts_plusalpha;
 
             //double pdf= C(wordCountsPlusAlpha.add(x_mu))/C(wordCountsPlusAlpha);
             double logPdf= C(wordCountsPlusAlpha.add(x_mu))-cOfWordCountsPlusAlpha;
@@ -24,9 +24,13 @@ import com.datumbox.common.dataobjects.Record;
 import com.datumbox.common.persistentstorage.factories.BigDataStructureFactory;
 import com.datumbox.common.utilities.DeepCopy;
 import com.datumbox.common.utilities.MapFunctions;
+import com.datumbox.common.utilities.ParallelFunctions;
+import com.datumbox.common.utilities.RandomValue;
+import com.datumbox.configuration.ConcurrencyConfiguration;
 import com.datumbox.configuration.StorageConfiguration;
 import com.datumbox.framework.machinelearning.common.bases.mlmodels.BaseMLmodel;
 import com.datumbox.framework.machinelearning.common.bases.mlmodels.BaseMLclassifier;
+import com.datumbox.framework.machinelearning.common.bases.mlmodels.FrozenMLmodel;
 import com.datumbox.framework.machinelearning.ensemblelearning.FixedCombinationRules;
 import com.datumbox.framework.statistics.descriptivestatistics.Descriptives;
 import com.datumbox.framework.statistics.sampling.SRS;
@@ -34,6 +38,8 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
 
 /**
  * Base class for Adaboost and BoostrapAgregating.
@@ -45,6 +51,8 @@ import java.util.Set;
 public abstract class BaseBoostingBagging<MP extends BaseBoostingBagging.ModelParameters, TP extends BaseBoostingBagging.TrainingParameters, VM extends BaseBoostingBagging.ValidationMetrics> extends BaseMLclassifier<MP, TP, VM> {
 
     public static final String DB_INDICATOR="Cmp";
+    
+    private transient List<FrozenMLmodel<?>> frozenWeakClassifiers = null; //set only on the frozen copies of the model
 
     public static abstract class ModelParameters extends BaseMLclassifier.ModelParameters {
         
@@ -110,9 +118,22 @@ public abstract class BaseBoostingBagging<MP extends BaseBoostingBagging.ModelPa
         super(dbName, mpClass, tpClass, vmClass);
     } 
     
+    @Override
+    protected void freezeComponents() {
+        //the weak classifiers are frozen once instead of being loaded on every prediction
+        int totalWeakClassifiers = knowledgeBase.getModelParameters().getWeakClassifierWeights().size();
+        
+        List<FrozenMLmodel<?>> weakClassifiers = new ArrayList<>(totalWeakClassifiers);
+        for(int t=0;t<totalWeakClassifiers;++t) {
+            BaseMLclassifier<?, ?, ?> mlclassifier = BaseMLmodel.newInstance(knowledgeBase.getTrainingParameters().getWeakClassifierClass(), getWeakClassifierDBname(t));
+            mlclassifier.setMemoryConfiguration(knowledgeBase.getMemoryConfiguration());
+            weakClassifiers.add(mlclassifier.freeze());
+        }
+        frozenWeakClassifiers = weakClassifiers;
+    }
+    
     @Override
     protected void predictDataset(Dataset newData) { 
-        Class<? extends BaseMLclassifier> weakClassifierClass = knowledgeBase.getTrainingParameters().getWeakClassifierClass();
         List<Double> weakClassifierWeights = knowledgeBase.getModelParameters().getWeakClassifierWeights();
         
         int n = newData.size();
@@ -126,20 +147,51 @@ public abstract class BaseBoostingBagging<MP extends BaseBoostingBagging.ModelPa
         //using the weak classifiers
         AssociativeArray classifierWeightsArray = new AssociativeArray();
         int totalWeakClassifiers = weakClassifierWeights.size();
-        for(int t=0;t<totalWeakClassifiers;++t) {
-            BaseMLclassifier mlclassifier = BaseMLmodel.newInstance(weakClassifierClass, dbName+StorageConfiguration.getDBnameSeparator()+DB_INDICATOR+String.valueOf(t));
-            mlclassifier.setMemoryConfiguration(knowledgeBase.getMemoryConfiguration());
-            mlclassifier.predict(newData);
-            mlclassifier = null;
-            
-            classifierWeightsArray.put(t, weakClassifierWeights.get(t));
-            
-            for(Record r : newData) {
-                AssociativeArray classProbabilities = r.getYPredictedProbabilities();
-                
-                DataTable2D currentRecordDecisions = recordDecisionsArray[r.getId()];
+        if(ConcurrencyConfiguration.isParallelized() && totalWeakClassifiers>1) {
+            ExecutorService executorService = ConcurrencyConfiguration.newExecutorService();
+            try {
+                //the weak classifiers are scored in batches, one per thread. Every thread stores its predictions on its own copies of the Records, which are created once and reused in every batch
+                int batchSize = Math.min(ConcurrencyConfiguration.getMaxNumberOfThreads(), totalWeakClassifiers);
+                List<Integer> ids = getIds(newData);
+                Dataset[] predictedDatasets = new Dataset[batchSize];
+                for(int i=0;i<batchSize;++i) {
+                    predictedDatasets[i] = newData.generateNewSubset(ids);
+                }
                 
-                currentRecordDecisions.put(t, classProbabilities);
+                for(int batchStart=0;batchStart<totalWeakClassifiers;batchStart+=batchSize) {
+                    int batchEnd = Math.min(batchStart+batchSize, totalWeakClassifiers);
+                    
+                    List<Callable<Void>> tasks = new ArrayList<>(batchEnd-batchStart);
+                    for(int t=batchStart;t<batchEnd;++t) {
+                        final int weakClassifierId = t;
+                        final Dataset predictedData = predictedDatasets[t-batchStart];
+                        tasks.add(new Callable<Void>() {
+                            @Override
+                            public Void call() {
+                                predictWeakClassifier(weakClassifierId, predictedData);
+                                return null;
+                            }
+                        });
+                    }
+                    
+                    ParallelFunctions.invokeAll(executorService, tasks);
+                    for(int t=batchStart;t<batchEnd;++t) {
+                        classifierWeightsArray.put(t, weakClassifierWeights.get(t));
+                        storeWeakClassifierDecisions(t, predictedDatasets[t-batchStart], recordDecisionsArray);
+                    }
+                }
+            }
+            finally {
+                executorService.shutdownNow();
+            }
+        }
+        else {
+            for(int t=0;t<totalWeakClassifiers;++t) {
+                predictWeakClassifier(t, newData);
+
+                classifierWeightsArray.put(t, weakClassifierWeights.get(t));
+
+                storeWeakClassifierDecisions(t, newData, recordDecisionsArray);
             }
         }
         
@@ -159,6 +211,27 @@ public abstract class BaseBoostingBagging<MP extends BaseBoostingBagging.ModelPa
         recordDecisionsArray = null;
     }
     
+    private void predictWeakClassifier(int t, Dataset newData) {
+        if(frozenWeakClassifiers!=null) {
+            frozenWeakClassifiers.get(t).predict(newData);
+            return;
+        }
+        
+        BaseMLclassifier<?, ?, ?> mlclassifier = BaseMLmodel.newInstance(knowledgeBase.getTrainingParameters().getWeakClassifierClass(), getWeakClassifierDBname(t));
+        mlclassifier.setMemoryConfiguration(knowledgeBase.getMemoryConfiguration());
+        mlclassifier.predict(newData);
+    }
+    
+    private void storeWeakClassifierDecisions(int t, Dataset predictedData, DataTable2D[] recordDecisionsArray) {
+        for(Record r : predictedData) {
+            AssociativeArray classProbabilities = r.getYPredictedProbabilities();
+
+            DataTable2D currentRecordDecisions = recordDecisionsArray[r.getId()];
+
+            currentRecordDecisions.put(t, classProbabilities);
+        }
+    }
+    
     @Override
     @SuppressWarnings("unchecked")
     protected void estimateModelParameters(Dataset trainingData) {
@@ -197,53 +270,162 @@ public abstract class BaseBoostingBagging<MP extends BaseBoostingBagging.ModelPa
             observationWeights.put(r.getId(), 1.0/n); //initialize observation weights
         }
         
-        Class<? extends BaseMLclassifier> weakClassifierClass = trainingParameters.getWeakClassifierClass();
-        BaseMLclassifier.TrainingParameters weakClassifierTrainingParameters = trainingParameters.getWeakClassifierTrainingParameters();
         int totalWeakClassifiers = trainingParameters.getMaxWeakClassifiers();
         
-        //training the weak classifiers
-        for(int t=0;t<totalWeakClassifiers;++t) {
-            FlatDataCollection sampledIDs = SRS.weightedProbabilitySampling(new AssociativeArray(observationWeights), n, true);
-            
-            Dataset sampledTrainingDataset = new Dataset();
-            for(Object id : sampledIDs) {
-                sampledTrainingDataset.add(trainingData.get((Integer)id));
+        ExecutorService executorService = null;
+        if(ConcurrencyConfiguration.isParallelized()) {
+            executorService = ConcurrencyConfiguration.newExecutorService();
+        }
+        
+        try {
+            if(executorService!=null && hasIndependentWeakClassifiers()) {
+                //the observation weights never change, so the weak classifiers are trained in rounds, one per thread. Every weak classifier is trained with its own seed so that the results do not depend on the number of threads
+                int roundSize = Math.min(ConcurrencyConfiguration.getMaxNumberOfThreads(), totalWeakClassifiers);
+                
+                //the samples share the X vectors of the training Records. When the weak classifiers run concurrently, every thread stores its validation predictions on its own copies of the Records, which are created once and reused in every round
+                Dataset[] validationDatasets = new Dataset[roundSize];
+                if(roundSize==1) {
+                    validationDatasets[0] = trainingData;
+                }
+                else {
+                    List<Integer> ids = getIds(trainingData);
+                    for(int i=0;i<roundSize;++i) {
+                        validationDatasets[i] = trainingData.generateNewSubset(ids);
+                    }
+                }
+                
+                boolean stop = false;
+                for(int roundStart=0;roundStart<totalWeakClassifiers && stop==false;roundStart+=roundSize) {
+                    int roundEnd = Math.min(roundStart+roundSize, totalWeakClassifiers);
+                    
+                    List<Callable<Dataset>> tasks = new ArrayList<>(roundEnd-roundStart);
+                    for(int t=roundStart;t<roundEnd;++t) {
+                        final int weakClassifierId = t;
+                        final Dataset sampledTrainingDataset = trainingData.generateNewSubsetView(getSampledIds(observationWeights, n));
+                        final Dataset validationDataset = validationDatasets[t-roundStart];
+
+                        //the seeds are drawn sequentially so that the results are reproducible
+                        long seed = RandomValue.getRandomGenerator().nextLong();
+
+                        tasks.add(ParallelFunctions.seeded(new Callable<Dataset>() {
+                            @Override
+                            public Dataset call() {
+                                return trainWeakClassifier(weakClassifierId, sampledTrainingDataset, validationDataset);
+                            }
+                        }, seed));
+                    }
+                    
+                    List<Dataset> predictedDatasets = ParallelFunctions.invokeAll(executorService, tasks);
+                    for(int t=roundStart;t<roundEnd;++t) {
+                        stop = updateObservationAndClassifierWeights(predictedDatasets.get(t-roundStart), observationWeights, executorService);
+                        
+                        if(stop==true) {
+                            //the classifiers of the round after the stopping point were trained in vain
+                            for(int i=t+1;i<roundEnd;++i) {
+                                eraseWeakClassifier(i, true);
+                            }
+                            break;
+                        }
+                    }
+                }
             }
-            
-            BaseMLclassifier mlclassifier = BaseMLmodel.newInstance(weakClassifierClass, dbName+StorageConfiguration.getDBnameSeparator()+DB_INDICATOR+String.valueOf(t));
-            mlclassifier.initializeTrainingConfiguration(knowledgeBase.getMemoryConfiguration(), weakClassifierTrainingParameters);
-            
-            Dataset validationDataset = trainingData;
-            if(mlclassifier.modifiesData()) {
-                sampledTrainingDataset = DeepCopy.<Dataset>cloneObject(sampledTrainingDataset);
-                validationDataset = DeepCopy.<Dataset>cloneObject(validationDataset);
+            else {
+                //training the weak classifiers sequentially. They use the Random generator of the calling thread in the order of the classifiers. The weighted samples are views of the training data, so the Records are not copied in every round
+                for(int t=0;t<totalWeakClassifiers;++t) {
+                    Dataset sampledTrainingDataset = trainingData.generateNewSubsetView(getSampledIds(observationWeights, n));
+
+                    Dataset validationDataset = trainWeakClassifier(t, sampledTrainingDataset, trainingData);
+
+                    boolean stop = updateObservationAndClassifierWeights(validationDataset, observationWeights, executorService);
+
+                    sampledTrainingDataset = null;
+                    validationDataset = null;
+
+                    if(stop==true) {
+                        break;
+                    }
+                }
             }
-            mlclassifier.train(sampledTrainingDataset, validationDataset); 
-            
-            
-            boolean stop = updateObservationAndClassifierWeights(validationDataset, observationWeights);
-            
-            mlclassifier = null;
-            sampledTrainingDataset = null;
-            validationDataset = null;
-            
-            if(stop==true) {
-                break;
+        }
+        finally {
+            if(executorService!=null) {
+                executorService.shutdownNow();
             }
         }
         
         //Drop the temporary Collection
         bdsf.dropTable(tmpPrefix+"observationWeights", observationWeights);
     }
+    
+    private List<Integer> getSampledIds(Map<Object, Object> observationWeights, int n) {
+        FlatDataCollection sampledIDs = SRS.weightedProbabilitySampling(new AssociativeArray(observationWeights), n, true);
+        
+        List<Integer> sampledIds = new ArrayList<>(n);
+        for(Object id : sampledIDs) {
+            sampledIds.add((Integer)id);
+        }
+        return sampledIds;
+    }
+    
+    private static List<Integer> getIds(Dataset data) {
+        List<Integer> ids = new ArrayList<>(data.size());
+        for(Record r : data) {
+            ids.add(r.getId());
+        }
+        return ids;
+    }
+    
+    /**
+     * Trains the t-th weak classifier and returns the dataset on which its 
+     * validation predictions are stored.
+     * 
+     * @param t
+     * @param sampledTrainingDataset
+     * @param validationDataset
+     * @return 
+     */
+    @SuppressWarnings("unchecked")
+    private Dataset trainWeakClassifier(int t, Dataset sampledTrainingDataset, Dataset validationDataset) {
+        TrainingParameters trainingParameters = knowledgeBase.getTrainingParameters();
+        
+        BaseMLclassifier mlclassifier = BaseMLmodel.newInstance(trainingParameters.getWeakClassifierClass(), getWeakClassifierDBname(t));
+        mlclassifier.initializeTrainingConfiguration(knowledgeBase.getMemoryConfiguration(), trainingParameters.getWeakClassifierTrainingParameters());
+
+        if(mlclassifier.modifiesData()) {
+            sampledTrainingDataset = DeepCopy.<Dataset>cloneObject(sampledTrainingDataset);
+            validationDataset = DeepCopy.<Dataset>cloneObject(validationDataset);
+        }
+        mlclassifier.train(sampledTrainingDataset, validationDataset); 
+        
+        return validationDataset;
+    }
+    
+    private String getWeakClassifierDBname(int t) {
+        return dbName+StorageConfiguration.getDBnameSeparator()+DB_INDICATOR+String.valueOf(t);
+    }
+    
+    /**
+     * Returns whether the weak classifiers can be trained independently from 
+     * each other. In that case the observation weights are never updated and 
+     * the weak classifiers are trained concurrently when the parallel execution 
+     * is enabled in ConcurrencyConfiguration.
+     * 
+     * @return 
+     */
+    protected boolean hasIndependentWeakClassifiers() {
+        return false;
+    }
 
     /**
      * Updates the weights of observations and the weights of the classifiers.
+     * The executorService is null when the analysis runs sequentially.
      * 
      * @param validationDataset
      * @param observationWeights
+     * @param executorService
      * @return 
      */
-    protected abstract boolean updateObservationAndClassifierWeights(Dataset validationDataset, Map<Object, Object> observationWeights);
+    protected abstract boolean updateObservationAndClassifierWeights(Dataset validationDataset, Map<Object, Object> observationWeights, ExecutorService executorService);
     
     @Override
     public void erase(boolean complete) {
@@ -256,14 +438,17 @@ public abstract class BaseBoostingBagging<MP extends BaseBoostingBagging.ModelPa
             ModelParameters modelParameters = knowledgeBase.getModelParameters();
             TrainingParameters trainingParameters = knowledgeBase.getTrainingParameters();
             
-            Class<? extends BaseMLclassifier> weakClassifierClass = trainingParameters.getWeakClassifierClass();
             //the number of weak classifiers is the minimum between the classifiers that were defined in training parameters AND the number of the weak classifiers that were kept +1 for the one that was abandoned due to high error
             int totalWeakClassifiers = Math.min(modelParameters.getWeakClassifierWeights().size()+1, trainingParameters.getMaxWeakClassifiers());
             for(int t=0;t<totalWeakClassifiers;++t) {
-                BaseMLclassifier mlclassifier = BaseMLmodel.newInstance(weakClassifierClass, dbName+StorageConfiguration.getDBnameSeparator()+DB_INDICATOR+String.valueOf(t));
-                //We can't use erase(false) here because it leaves undeleted databases of the Kcross validation
-                mlclassifier.erase(complete);
+                eraseWeakClassifier(t, complete);
             }
         }
     }
+    
+    private void eraseWeakClassifier(int t, boolean complete) {
+        BaseMLclassifier<?, ?, ?> mlclassifier = BaseMLmodel.newInstance(knowledgeBase.getTrainingParameters().getWeakClassifierClass(), getWeakClassifierDBname(t));
+        //We can't use erase(false) here because it leaves undeleted databases of the Kcross validation
+        mlclassifier.erase(complete);
+    }
 }
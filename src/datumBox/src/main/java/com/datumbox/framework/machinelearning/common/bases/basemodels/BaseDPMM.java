@@ -162,6 +162,12 @@ public abstract class BaseDPMM<CL extends BaseDPMM.Cluster, MP extends BaseDPMM.
         super(dbName, mpClass, tpClass, vmClass);
     } 
     
+    @Override
+    protected void freezeComponents() {
+        //resolves the lazily loaded featureIds of the clusters before the model is shared between threads
+        knowledgeBase.getModelParameters().getClusterList();
+    }
+    
 
     @Override
     @SuppressWarnings("unchecked")
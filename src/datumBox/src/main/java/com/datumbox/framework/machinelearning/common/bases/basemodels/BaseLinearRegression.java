@@ -22,12 +22,16 @@ import com.datumbox.common.dataobjects.Record;
 import com.datumbox.common.persistentstorage.factories.BigDataStructureFactory;
 import com.datumbox.configuration.MemoryConfiguration;
 import com.datumbox.framework.machinelearning.common.bases.mlmodels.BaseMLregressor;
+import com.datumbox.framework.machinelearning.common.dataobjects.BatchPredictor;
+import com.datumbox.framework.machinelearning.common.dataobjects.LinearBatchPredictor;
+import com.datumbox.framework.machinelearning.common.interfaces.BatchPredictable;
 import com.datumbox.common.persistentstorage.interfaces.BigDataStructureMarker;
 import com.datumbox.framework.machinelearning.common.validation.LinearRegressionValidation;
 import com.datumbox.framework.statistics.distributions.ContinuousDistributions;
 import com.datumbox.framework.statistics.nonparametrics.onesample.Lilliefors;
 import com.datumbox.framework.statistics.parametrics.onesample.DurbinWatson;
 import java.lang.reflect.InvocationTargetException;
+import java.util.HashMap;
 import java.util.Map;
 import org.mongodb.morphia.annotations.Transient;
 
@@ -38,7 +42,7 @@ import org.mongodb.morphia.annotations.Transient;
  * @param <TP>
  * @param <VM>
  */
-public abstract class BaseLinearRegression<MP extends BaseLinearRegression.ModelParameters, TP extends BaseLinearRegression.TrainingParameters, VM extends BaseLinearRegression.ValidationMetrics> extends BaseMLregressor<MP, TP, VM> {
+public abstract class BaseLinearRegression<MP extends BaseLinearRegression.ModelParameters, TP extends BaseLinearRegression.TrainingParameters, VM extends BaseLinearRegression.ValidationMetrics> extends BaseMLregressor<MP, TP, VM> implements BatchPredictable {
 
     
     public static abstract class ModelParameters extends BaseMLregressor.ModelParameters {
@@ -200,8 +204,33 @@ public abstract class BaseLinearRegression<MP extends BaseLinearRegression.Model
     
     protected BaseLinearRegression(String dbName, Class<MP> mpClass, Class<TP> tpClass, Class<VM> vmClass) {
         super(dbName, mpClass, tpClass, vmClass, new LinearRegressionValidation<>());
-    } 
-    
+    }
+
+    @Override
+    public BatchPredictor getBatchPredictor() {
+        knowledgeBase.load();
+
+        Map<Object, Double> thitas = knowledgeBase.getModelParameters().getThitas();
+
+        //the constant is used as bias and it is not part of the batches
+        double[] bias = new double[1];
+        Map<Object, Integer> featureIds = new HashMap<>();
+        double[] weights = new double[thitas.size()];
+        for(Map.Entry<Object, Double> entry : thitas.entrySet()) {
+            Object feature = entry.getKey();
+            if(Dataset.constantColumnName.equals(feature)) {
+                bias[0] = entry.getValue();
+            }
+            else {
+                int featureId = featureIds.size();
+                featureIds.put(feature, featureId);
+                weights[featureId] = entry.getValue();
+            }
+        }
+
+        return new LinearBatchPredictor(featureIds, null, weights, bias, LinearBatchPredictor.ValueTransformation.NONE);
+    }
+
 
     @Override
     protected VM validateModel(Dataset validationData) {
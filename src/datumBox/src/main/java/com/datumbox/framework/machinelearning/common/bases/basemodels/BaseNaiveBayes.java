@@ -19,12 +19,17 @@ package com.datumbox.framework.machinelearning.common.bases.basemodels;
 import com.datumbox.common.dataobjects.AssociativeArray;
 import com.datumbox.framework.machinelearning.common.bases.mlmodels.BaseMLclassifier;
 import com.datumbox.common.dataobjects.Dataset;
+import com.datumbox.common.dataobjects.IntegerDictionary;
+import com.datumbox.common.dataobjects.LongDoubleHashMap;
 import com.datumbox.common.dataobjects.Record;
 import com.datumbox.common.persistentstorage.factories.BigDataStructureFactory;
+import com.datumbox.configuration.GeneralConfiguration;
 import com.datumbox.configuration.MemoryConfiguration;
+import com.datumbox.framework.machinelearning.common.dataobjects.BatchPredictor;
+import com.datumbox.framework.machinelearning.common.dataobjects.LinearBatchPredictor;
+import com.datumbox.framework.machinelearning.common.interfaces.BatchPredictable;
 import com.datumbox.common.persistentstorage.interfaces.BigDataStructureMarker;
 import com.datumbox.framework.statistics.descriptivestatistics.Descriptives;
-import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -41,24 +46,29 @@ import org.mongodb.morphia.annotations.Transient;
 public abstract class BaseNaiveBayes<MP extends BaseNaiveBayes.ModelParameters,
         TP extends BaseNaiveBayes.TrainingParameters,
         VM extends BaseNaiveBayes.ValidationMetrics>
-        extends BaseMLclassifier<MP, TP, VM> {
+        extends BaseMLclassifier<MP, TP, VM> implements BatchPredictable {
     
     
     public static abstract class ModelParameters extends BaseMLclassifier.ModelParameters {
         /**
-         * log priors for log( P(c) )
+         * the ids of the features used in the keys of the featureClassCounts
          */
         @BigDataStructureMarker
         @Transient
-        private Map<Object, Double> logPriors; //prior log probabilities of the classes
-
+        private Map<Object, Integer> featureIds; //dictionary of features
+        
         /**
-         * log likelihood for log( P(x|c) ) 
+         * the counts of the features in each class
          */
         @BigDataStructureMarker
         @Transient
-        private Map<List<Object>, Double> logLikelihoods; //posterior log probabilities of features-classes combination
-
+        private Map<Long, Double> featureClassCounts; //sufficient statistics of the likelihoods. Only the non zero counts are stored and the keys are packed (featureId, classId) pairs
+        
+        //number of observations of each class
+        private Map<Object, Double> classCounts = new HashMap<>(); //this is small. Size equal to class numbers
+        
+        //total occurrences of the features in each class
+        private Map<Object, Double> totalFeatureOccurrences = new HashMap<>(); //this is small. Size equal to class numbers
         
         @Override
         public void bigDataStructureInitializer(BigDataStructureFactory bdsf, MemoryConfiguration memoryConfiguration) {
@@ -67,25 +77,41 @@ public abstract class BaseNaiveBayes<MP extends BaseNaiveBayes.ModelParameters,
             BigDataStructureFactory.MapType mapType = memoryConfiguration.getMapType();
             int LRUsize = memoryConfiguration.getLRUsize();
             
-            logPriors = bdsf.getMap("logPriors", mapType, LRUsize);
-            logLikelihoods = bdsf.getMap("logLikelihoods", mapType, LRUsize);
+            featureIds = bdsf.getMap("featureIds", mapType, LRUsize);
+            featureClassCounts = bdsf.getMap("featureClassCounts", mapType, LRUsize);
             
         }
         
-        public Map<Object, Double> getLogPriors() {
-            return logPriors;
+        public Map<Object, Integer> getFeatureIds() {
+            return featureIds;
+        }
+
+        public void setFeatureIds(Map<Object, Integer> featureIds) {
+            this.featureIds = featureIds;
+        }
+
+        public Map<Long, Double> getFeatureClassCounts() {
+            return featureClassCounts;
+        }
+
+        public void setFeatureClassCounts(Map<Long, Double> featureClassCounts) {
+            this.featureClassCounts = featureClassCounts;
+        }
+
+        public Map<Object, Double> getClassCounts() {
+            return classCounts;
         }
 
-        public void setLogPriors(Map<Object, Double> logPriors) {
-            this.logPriors = logPriors;
+        public void setClassCounts(Map<Object, Double> classCounts) {
+            this.classCounts = classCounts;
         }
 
-        public Map<List<Object>, Double> getLogLikelihoods() {
-            return logLikelihoods;
+        public Map<Object, Double> getTotalFeatureOccurrences() {
+            return totalFeatureOccurrences;
         }
 
-        public void setLogLikelihoods(Map<List<Object>, Double> logLikelihoods) {
-            this.logLikelihoods = logLikelihoods;
+        public void setTotalFeatureOccurrences(Map<Object, Double> totalFeatureOccurrences) {
+            this.totalFeatureOccurrences = totalFeatureOccurrences;
         }
     } 
 
@@ -109,12 +135,77 @@ public abstract class BaseNaiveBayes<MP extends BaseNaiveBayes.ModelParameters,
         
         
     protected static final boolean IS_BINARIZED = false;
+    
+    private transient LongDoubleHashMap frozenFeatureClassCounts = null; //set only on the frozen copies of the model
 
     
     protected BaseNaiveBayes(String dbName, Class<MP> mpClass, Class<TP> tpClass, Class<VM> vmClass) {
         super(dbName, mpClass, tpClass, vmClass);
     } 
     
+    @Override
+    protected void freezeComponents() {
+        //the frozen copies can not be updated, so the counts are loaded once
+        frozenFeatureClassCounts = LongDoubleHashMap.newInstance(knowledgeBase.getModelParameters().getFeatureClassCounts());
+    }
+    
+    /**
+     * Updates the trained model with the records of the newData, without 
+     * retraining it. The counts of the classes and of the features of the 
+     * newData are added to the ones stored in the model, so the data which 
+     * were used in the training are not processed again and the cost of the 
+     * update depends only on the size of the newData. The log priors and the 
+     * log likelihoods are estimated from the counts during the predictions, so
+     * they are identical to the ones of a model trained with all the data. The
+     * validation metrics of the model are not modified.
+     * 
+     * @param newData 
+     */
+    public void update(Dataset newData) {
+        if(GeneralConfiguration.DEBUG) {
+            System.out.println("update()");
+        }
+        
+        knowledgeBase.load();
+        if(!knowledgeBase.isTrained()) {
+            throw new RuntimeException("The algorithm is not trained. Train it before updating it.");
+        }
+        
+        ModelParameters modelParameters = knowledgeBase.getModelParameters();
+        if(modelParameters.getN()>0 && modelParameters.getClassCounts().isEmpty()) {
+            throw new RuntimeException("The model does not store the counts which are required to update it. Train it again.");
+        }
+        
+        if(newData.isEmpty()) {
+            return;
+        }
+        
+        if(GeneralConfiguration.DEBUG) {
+            System.out.println("updateCounts()");
+        }
+        
+        int previousFeatures = modelParameters.getFeatureIds().size();
+        updateCounts(newData);
+        
+        //the new features are added in the vocabulary
+        modelParameters.setD(modelParameters.getD()+modelParameters.getFeatureIds().size()-previousFeatures);
+        
+        if(isTemporary()==false) {
+            if(GeneralConfiguration.DEBUG) {
+                System.out.println("Saving model");
+            }
+            knowledgeBase.save(true);
+        }
+    }
+    
+    /**
+     * Estimates the predictions from the counts of the model. The counts are
+     * loaded from the storage in a LongDoubleHashMap on every call unless the 
+     * model is frozen. Use the BatchPredictor or a frozen copy of the model to 
+     * avoid this cost when predicting many small datasets.
+     * 
+     * @param newData 
+     */
     @Override
     protected void predictDataset(Dataset newData) { 
         if(newData.isEmpty()) {
@@ -123,52 +214,49 @@ public abstract class BaseNaiveBayes<MP extends BaseNaiveBayes.ModelParameters,
         
         ModelParameters modelParameters = knowledgeBase.getModelParameters();
         
-        Map<List<Object>, Double> logLikelihoods = modelParameters.getLogLikelihoods();
-        Map<Object, Double> logPriors = modelParameters.getLogPriors();
-        Set<Object> classesSet = modelParameters.getClasses();
-        
-        Object someClass = classesSet.iterator().next();
+        LongDoubleHashMap featureClassCounts = loadFeatureClassCounts();
+        IntegerDictionary featureDictionary = new IntegerDictionary(modelParameters.getFeatureIds());
         
+        Object[] classes = modelParameters.getOrderedClasses().toArray(); //the position of the class is its id
+        int c = classes.length;
         
-        Map<Object, Object> cachedLogPriors = new HashMap<>(logPriors); //this is small. Size equal to class numbers. We cache it because we don't want to load it again and again from the DB
+        //these are small. Size equal to class numbers. We cache them because we don't want to load them again and again from the DB
+        double[] cachedLogPriorsArray = estimateLogPriors(classes);
+        double[] denominators = estimateDenominators(classes);
+        Map<Object, Object> cachedLogPriors = new HashMap<>();
+        for(int classId=0;classId<c;++classId) {
+            cachedLogPriors.put(classes[classId], cachedLogPriorsArray[classId]);
+        }
         
+        double[] scores = new double[c];
         for(Record r : newData) {
-            //Build new map here! reinitialize the prediction scores with the scores of the classes
-            AssociativeArray predictionScores = new AssociativeArray(new HashMap<>(cachedLogPriors)); 
+            //reinitialize the prediction scores with the scores of the classes
+            System.arraycopy(cachedLogPriorsArray, 0, scores, 0, c);
             
             for(Map.Entry<Object, Object> entry : r.getX().entrySet()) {
-                Object feature = entry.getKey();
-                
-                
                 //EVERY feature within our dictionary has a value for EVERY class
-                //So if the feature has no value for one random class (someClass has 
-                //no particular significance), then it will not have for any class
-                //and thus the feature is not in the dictionary and can be ignored.
-                if(!logLikelihoods.containsKey(Arrays.<Object>asList(feature, someClass))) {
+                //So if the feature is not in the dictionary it can be ignored.
+                Integer featureId = featureDictionary.getId(entry.getKey());
+                if(featureId==null) {
                     continue;
                 }
                 
-                //extract the feature scores for each class for the particular feature
-                AssociativeArray classLogScoresForThisFeature = new AssociativeArray();
-                
-                for(Object theClass : classesSet) {
-                    Double logScore = logLikelihoods.get(Arrays.<Object>asList(feature, theClass));
-                    classLogScoresForThisFeature.put(theClass, logScore);
-                }
-                
-                
                 Double occurrences=Dataset.toDouble(entry.getValue());
                 if((!knowledgeBase.getTrainingParameters().isMultiProbabilityWeighted() || IS_BINARIZED) && occurrences>0) {
                     occurrences=1.0;
                 }
                 
-                for(Map.Entry<Object, Object> entry2 : classLogScoresForThisFeature.entrySet()) {
-                    Object theClass = entry2.getKey();
-                    Double logScore = Dataset.toDouble(entry2.getValue());
-                    Double previousValue = predictionScores.getDouble(theClass);
-                    predictionScores.put(theClass, previousValue+occurrences*logScore);
+                for(int classId=0;classId<c;++classId) {
+                    double featureClassCount = featureClassCounts.get(IntegerDictionary.key(featureId, classId), 0.0);
+                    double logScore = estimateLogLikelihood(featureClassCount, denominators[classId]);
+                    scores[classId] += occurrences*logScore;
                 }
-                classLogScoresForThisFeature=null;
+            }
+            
+            //Build new map here! The copy of the priors keeps the same iteration order as before
+            AssociativeArray predictionScores = new AssociativeArray(new HashMap<>(cachedLogPriors)); 
+            for(int classId=0;classId<c;++classId) {
+                predictionScores.put(classes[classId], scores[classId]);
             }
             
             Object theClass=getSelectedClassFromClassScores(predictionScores);
@@ -179,105 +267,200 @@ public abstract class BaseNaiveBayes<MP extends BaseNaiveBayes.ModelParameters,
         }
     }
     
+    /**
+     * Returns a BatchPredictor which uses the log likelihoods of all the 
+     * features of the model. They are estimated once from the counts when the
+     * BatchPredictor is built, so its cost is proportional to the size of the
+     * vocabulary.
+     * 
+     * @return 
+     */
     @Override
-    @SuppressWarnings("unchecked")
-    protected void estimateModelParameters(Dataset trainingData) {
-        int n = trainingData.size();
-        int d = trainingData.getColumnSize();
+    public BatchPredictor getBatchPredictor() {
+        knowledgeBase.load();
         
         ModelParameters modelParameters = knowledgeBase.getModelParameters();
         
-        //initialization
-        modelParameters.setN(n);
-        modelParameters.setD(d);
+        LongDoubleHashMap featureClassCounts = loadFeatureClassCounts();
+        Map<Object, Integer> featureIds = modelParameters.getFeatureIds();
+        
+        Object[] classes = modelParameters.getOrderedClasses().toArray(); //the position of the class is its id
+        int c = classes.length;
+        
+        double[] biases = estimateLogPriors(classes);
+        double[] denominators = estimateDenominators(classes);
+        
+        double[] weights = new double[featureIds.size()*c];
+        for(Integer featureId : featureIds.values()) {
+            for(int classId=0;classId<c;++classId) {
+                double featureClassCount = featureClassCounts.get(IntegerDictionary.key(featureId, classId), 0.0);
+                weights[featureId*c+classId] = estimateLogLikelihood(featureClassCount, denominators[classId]);
+            }
+        }
+        
+        LinearBatchPredictor.ValueTransformation valueTransformation = LinearBatchPredictor.ValueTransformation.NONE;
+        if(!knowledgeBase.getTrainingParameters().isMultiProbabilityWeighted() || IS_BINARIZED) {
+            valueTransformation = LinearBatchPredictor.ValueTransformation.BINARIZE_POSITIVE;
+        }
+        
+        return new LinearBatchPredictor(featureIds, classes, weights, biases, valueTransformation);
+    }
+    
+    @Override
+    protected void estimateModelParameters(Dataset trainingData) {
+        ModelParameters modelParameters = knowledgeBase.getModelParameters();
         
+        //only the counts are stored. The log priors and the log likelihoods are estimated from them during the predictions
+        updateCounts(trainingData);
+        modelParameters.setD(trainingData.getColumnSize());
+    }
+    
+    /**
+     * Returns the count that the value of an active feature adds to the
+     * statistics of the class of the record.
+     * 
+     * @param occurrences
+     * @return 
+     */
+    protected double featureCount(Double occurrences) {
+        if(IS_BINARIZED && occurrences>0) {
+            return 1.0;
+        }
+        return occurrences;
+    }
+    
+    /**
+     * Adds the counts of the classes and the features of the data to the 
+     * sufficient statistics of the model. All the features of the data are 
+     * added to the dictionary of features.
+     * 
+     * @param data 
+     */
+    protected void updateCounts(Dataset data) {
+        ModelParameters modelParameters = knowledgeBase.getModelParameters();
         
-        Map<List<Object>, Double> logLikelihoods = modelParameters.getLogLikelihoods();
-        Map<Object, Double> logPriors = modelParameters.getLogPriors();
+        Map<Long, Double> featureClassCounts = modelParameters.getFeatureClassCounts();
+        Map<Object, Double> classCounts = modelParameters.getClassCounts();
+        Map<Object, Double> totalFeatureOccurrences = modelParameters.getTotalFeatureOccurrences();
         Set<Object> classesSet = modelParameters.getClasses();
+        List<Object> orderedClasses = modelParameters.getOrderedClasses();
+        IntegerDictionary featureDictionary = new IntegerDictionary(modelParameters.getFeatureIds());
+        IntegerDictionary classDictionary = IntegerDictionary.newInstance(orderedClasses); //the position of the class is its id
         
-        //calculate first statistics about the classes
-        AssociativeArray totalFeatureOccurrencesForEachClass = new AssociativeArray();
-        for(Record r : trainingData) {
+        //the counts of the data are summed without boxing and they are added to the stored ones at the end
+        LongDoubleHashMap dataFeatureClassCounts = new LongDoubleHashMap(data.getColumnSize());
+        for(Record r : data) {
             Object theClass=r.getY();
             
-            Double classCount = logPriors.get(theClass);
-            if(classCount!=null) { //already exists? increase counter
-                logPriors.put(theClass,classCount+1.0);  
-            }
-            else { //is it new class? add it
+            Double classCount = classCounts.get(theClass);
+            if(classCount==null) { //is it new class? add it
                 classesSet.add(theClass);
-                logPriors.put(theClass, 1.0);  
-                totalFeatureOccurrencesForEachClass.put(theClass, 0.0);
+                orderedClasses.add(theClass);
+                classCount=0.0;
+                totalFeatureOccurrences.put(theClass, 0.0);
             }
-        }
-        
-        
-        //now calculate the statistics of features
-        for(Record r : trainingData) {
+            classCounts.put(theClass, classCount+1.0);
+            int yClassId = classDictionary.intern(theClass);
             
-            //store the occurrances of the features
+            //store the occurrances of the features. The missing counts are 0 for every class
+            double recordOccurrences = 0.0;
             for(Map.Entry<Object, Object> entry : r.getX().entrySet()) {
-                Object feature = entry.getKey();
-                Double occurrences=Dataset.toDouble(entry.getValue());
-                
-                if(IS_BINARIZED && occurrences>0) {
-                    occurrences=1.0;
+                int featureId = featureDictionary.intern(entry.getKey());
+                double occurrences = featureCount(Dataset.toDouble(entry.getValue()));
+                if(occurrences==0.0) {
+                    continue;
                 }
                 
-                //loop through all the classes to ensure that the feature-class combination is initialized for ALL the classes
-                //in a previous implementation I did not loop through all the classes and used only the one of the record.
-                //THIS IS WRONG. By not assigning 0 scores to the rest of the classes for this feature, we don't penalties for the non occurrance. 
-                //The math REQUIRE us to have scores for all classes to make the probabilities comparable.
-                for(Object theClass : classesSet) {
-                    List<Object> featureClassTuple = Arrays.<Object>asList(feature, theClass);
-                    Double previousValue = logLikelihoods.get(featureClassTuple);
-                    if(previousValue==null) {
-                        previousValue=0.0;
-                        logLikelihoods.put(featureClassTuple, 0.0);
-                    }
-                    
-                    //find the class of this particular example
-                    if(theClass.equals(r.getY())) {
-                        //update the statistics of the feature
-                        logLikelihoods.put(featureClassTuple, previousValue+occurrences);
-                        totalFeatureOccurrencesForEachClass.put(theClass,totalFeatureOccurrencesForEachClass.getDouble(theClass)+occurrences);
-                    }
-                }                
+                dataFeatureClassCounts.add(IntegerDictionary.key(featureId, yClassId), occurrences);
+                recordOccurrences+=occurrences;
             }
-            
+            totalFeatureOccurrences.put(theClass, totalFeatureOccurrences.get(theClass)+recordOccurrences);
         }
+        dataFeatureClassCounts.addTo(featureClassCounts);
         
-        int c = classesSet.size();
-        modelParameters.setC(c);
-        
-        //calculate prior log probabilities
-        for(Map.Entry<Object, Double> entry : logPriors.entrySet()) {
-            Object theClass = entry.getKey();
-            Double count = entry.getValue();
-            
-            //updated log priors
-            logPriors.put(theClass, Math.log(count/n));
+        modelParameters.setN(modelParameters.getN()+data.size());
+        modelParameters.setC(classesSet.size());
+    }
+    
+    /**
+     * Returns the counts of the features in each class. The frozen copies load
+     * them once and the rest of the models load them from the storage on 
+     * every call. The missing keys are the zero counts.
+     * 
+     * @return 
+     */
+    protected LongDoubleHashMap loadFeatureClassCounts() {
+        if(frozenFeatureClassCounts!=null) {
+            return frozenFeatureClassCounts;
         }
+        return LongDoubleHashMap.newInstance(knowledgeBase.getModelParameters().getFeatureClassCounts());
+    }
+    
+    /**
+     * Estimates the log priors of the classes from their counts. The position 
+     * of the class in the array is its id.
+     * 
+     * @param classes
+     * @return 
+     */
+    protected double[] estimateLogPriors(Object[] classes) {
+        ModelParameters modelParameters = knowledgeBase.getModelParameters();
         
+        Map<Object, Double> classCounts = modelParameters.getClassCounts();
+        int n = modelParameters.getN();
         
-        //update log likelihood
-        for(Map.Entry<List<Object>, Double> featureClassCounts : logLikelihoods.entrySet()) {
-            List<Object> tp = featureClassCounts.getKey();
-            //Object feature = tp.get(0);
-            Object theClass = tp.get(1);
-            Double occurrences = featureClassCounts.getValue();
-            if(occurrences==null) {
-                occurrences=0.0;
-            }
-
-            //We perform laplace smoothing (also known as add-1)
-            Double smoothedProbability = (occurrences+1.0)/(totalFeatureOccurrencesForEachClass.getDouble(theClass)+d); // the d is also known in NLP problems as the Vocabulary size. 
-            
-            logLikelihoods.put(featureClassCounts.getKey(), Math.log( smoothedProbability )); //calculate the logScore
+        double[] logPriors = new double[classes.length];
+        for(int classId=0;classId<classes.length;++classId) {
+            logPriors[classId] = Math.log(classCounts.get(classes[classId])/n);
         }
+        return logPriors;
+    }
+    
+    /**
+     * Estimates the denominators of the smoothed likelihoods of the classes,
+     * which are the total occurrences of the features in each class plus the 
+     * size of the vocabulary. The position of the class in the array is its id.
+     * 
+     * @param classes
+     * @return 
+     */
+    protected double[] estimateDenominators(Object[] classes) {
+        ModelParameters modelParameters = knowledgeBase.getModelParameters();
+        
+        Map<Object, Double> totalFeatureOccurrences = modelParameters.getTotalFeatureOccurrences();
+        int d = modelParameters.getD(); // the d is also known in NLP problems as the Vocabulary size. 
         
-        totalFeatureOccurrencesForEachClass=null;
+        double[] denominators = new double[classes.length];
+        for(int classId=0;classId<classes.length;++classId) {
+            denominators[classId] = totalFeatureOccurrences.get(classes[classId])+d;
+        }
+        return denominators;
     }
     
-}
\ No newline at end of file
+    /**
+     * Estimates the smoothed probability of a feature in a class from its 
+     * count. A zero count is a feature which never occurred in the class.
+     * 
+     * @param featureClassCount
+     * @param denominator
+     * @return 
+     */
+    protected static double estimateLikelihood(double featureClassCount, double denominator) {
+        //We perform laplace smoothing (also known as add-1)
+        return (featureClassCount+1.0)/denominator;
+    }
+    
+    /**
+     * Estimates the log of the smoothed probability of a feature in a class 
+     * from its count. 
+     * 
+     * @param featureClassCount
+     * @param denominator
+     * @return 
+     */
+    protected static double estimateLogLikelihood(double featureClassCount, double denominator) {
+        //EVERY feature must have a score for EVERY class. By not assigning scores to the rest of the classes for the feature, we don't penalties for the non occurrance. 
+        //The math REQUIRE us to have scores for all classes to make the probabilities comparable.
+        return Math.log(estimateLikelihood(featureClassCount, denominator));
+    }
+}
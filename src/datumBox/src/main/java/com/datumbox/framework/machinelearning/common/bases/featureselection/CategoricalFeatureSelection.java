@@ -17,14 +17,13 @@
 package com.datumbox.framework.machinelearning.common.bases.featureselection;
 
 import com.datumbox.common.dataobjects.Dataset;
+import com.datumbox.common.dataobjects.IntegerDictionary;
 import com.datumbox.common.dataobjects.Record;
 import com.datumbox.common.persistentstorage.factories.BigDataStructureFactory;
 import com.datumbox.common.persistentstorage.interfaces.BigDataStructureMarker;
 import com.datumbox.configuration.GeneralConfiguration;
 import com.datumbox.configuration.MemoryConfiguration;
-import java.util.Arrays;
 import java.util.Iterator;
-import java.util.List;
 import java.util.Map;
 import org.mongodb.morphia.annotations.Transient;
 
@@ -44,7 +43,15 @@ public abstract class CategoricalFeatureSelection<MP extends CategoricalFeatureS
         
         @BigDataStructureMarker
         @Transient
-        private Map<List<Object>, Integer> featureClassCounts; //set which stores the counts of feature-class combinations.
+        private Map<Long, Integer> featureClassCounts; //set which stores the counts of feature-class combinations. The keys are packed (featureId, classId) pairs
+        
+        @BigDataStructureMarker
+        @Transient
+        private Map<Object, Integer> featureIds; //dictionary of the features used in the featureClassCounts
+        
+        @BigDataStructureMarker
+        @Transient
+        private Map<Object, Integer> classIds; //dictionary of the classes used in the featureClassCounts
         
         
         @BigDataStructureMarker
@@ -70,14 +77,30 @@ public abstract class CategoricalFeatureSelection<MP extends CategoricalFeatureS
             this.N = N;
         }
 
-        public Map<List<Object>, Integer> getFeatureClassCounts() {
+        public Map<Long, Integer> getFeatureClassCounts() {
             return featureClassCounts;
         }
 
-        public void setFeatureClassCounts(Map<List<Object>, Integer> featureClassCounts) {
+        public void setFeatureClassCounts(Map<Long, Integer> featureClassCounts) {
             this.featureClassCounts = featureClassCounts;
         }
 
+        public Map<Object, Integer> getFeatureIds() {
+            return featureIds;
+        }
+
+        public void setFeatureIds(Map<Object, Integer> featureIds) {
+            this.featureIds = featureIds;
+        }
+
+        public Map<Object, Integer> getClassIds() {
+            return classIds;
+        }
+
+        public void setClassIds(Map<Object, Integer> classIds) {
+            this.classIds = classIds;
+        }
+
         public Map<Object, Integer> getClassCounts() {
             return classCounts;
         }
@@ -112,6 +135,8 @@ public abstract class CategoricalFeatureSelection<MP extends CategoricalFeatureS
             //String tmpPrefix=StorageConfiguration.getTmpPrefix(); //ensure that these are temporary and that will be dropped automatically
             classCounts = bdsf.getMap("classCounts", mapType, LRUsize);
             featureClassCounts = bdsf.getMap("featureClassCounts", mapType, LRUsize);
+            featureIds = bdsf.getMap("featureIds", mapType, LRUsize);
+            classIds = bdsf.getMap("classIds", mapType, LRUsize);
             featureCounts = bdsf.getMap("featureCounts", mapType, LRUsize);
             featureScores = bdsf.getMap("featureScores", mapType, LRUsize);
         }
@@ -123,6 +148,8 @@ public abstract class CategoricalFeatureSelection<MP extends CategoricalFeatureS
             //drop the unnecessary stastistics tables
             bdsf.dropTable("classCounts", classCounts);
             bdsf.dropTable("featureClassCounts", featureClassCounts);
+            bdsf.dropTable("featureIds", featureIds);
+            bdsf.dropTable("classIds", classIds);
             bdsf.dropTable("featureCounts", featureCounts);
         }
     }
@@ -303,7 +330,9 @@ public abstract class CategoricalFeatureSelection<MP extends CategoricalFeatureS
         
         Map<Object, Double> featureCounts = modelParameters.getFeatureCounts();
         Map<Object, Integer> classCounts = modelParameters.getClassCounts();
-        Map<List<Object>,Integer> featureClassCounts = modelParameters.getFeatureClassCounts();
+        Map<Long,Integer> featureClassCounts = modelParameters.getFeatureClassCounts();
+        IntegerDictionary featureDictionary = new IntegerDictionary(modelParameters.getFeatureIds());
+        IntegerDictionary classDictionary = new IntegerDictionary(modelParameters.getClassIds());
         
         //the method below does not only removes the rare features but also
         //first and formost calculates the contents of featureCounts map. 
@@ -320,6 +349,7 @@ public abstract class CategoricalFeatureSelection<MP extends CategoricalFeatureS
                 classCounter=0;
             }
             classCounts.put(theClass, ++classCounter);
+            int classId = classDictionary.intern(theClass);
 
 
             for(Map.Entry<Object, Object> entry : r.getX().entrySet()) {
@@ -339,7 +369,7 @@ public abstract class CategoricalFeatureSelection<MP extends CategoricalFeatureS
 
 
                 //featureClass counts
-                List<Object> featureClassTuple = Arrays.<Object>asList(feature, theClass);
+                Long featureClassTuple = IntegerDictionary.key(featureDictionary.intern(feature), classId);
                 Integer featureClassCounter = featureClassCounts.get(featureClassTuple);
                 if(featureClassCounter==null) {
                     featureClassCounter=0;
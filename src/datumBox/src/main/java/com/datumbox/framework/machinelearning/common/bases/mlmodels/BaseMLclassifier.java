@@ -23,6 +23,7 @@ import com.datumbox.common.dataobjects.Record;
 import com.datumbox.common.utilities.MapFunctions;
 import com.datumbox.framework.machinelearning.common.enums.SensitivityRates;
 import com.datumbox.framework.machinelearning.common.validation.ClassifierValidation;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -53,6 +54,9 @@ public abstract class BaseMLclassifier<MP extends BaseMLclassifier.ModelParamete
         //Set with all the supported classes. Use Linked Hash Set to ensure that the order of classes will be maintained. Some method requires that (ordinal regression)
         private Set<Object> classes = new LinkedHashSet<>(); //this is small. Size equal to class numbers;
         
+        //List with the classes in the order of their ids; the position of the class is its id. It is stored explicitly because the order of the Set is not maintained when the model is reloaded from the storage engine
+        private List<Object> orderedClasses = new ArrayList<>(); //this is small. Size equal to class numbers;
+        
         /*
         @Override
         public void bigDataStructureInitializer(BigDataStructureFactory bdsf, MemoryConfiguration memoryConfiguration) {
@@ -92,6 +96,29 @@ public abstract class BaseMLclassifier<MP extends BaseMLclassifier.ModelParamete
             this.classes = classes;
         }
         
+        /**
+         * Returns the classes in the order of their ids. The classes which were
+         * added in the Set after the last call get the next available ids, so
+         * the ids of the existing classes never change.
+         * 
+         * @return 
+         */
+        public List<Object> getOrderedClasses() {
+            if(orderedClasses.size()<classes.size()) {
+                Set<Object> existingClasses = new HashSet<>(orderedClasses);
+                for(Object theClass : classes) {
+                    if(!existingClasses.contains(theClass)) {
+                        orderedClasses.add(theClass);
+                    }
+                }
+            }
+            return orderedClasses;
+        }
+
+        public void setOrderedClasses(List<Object> orderedClasses) {
+            this.orderedClasses = orderedClasses;
+        }
+        
         
         
     } 
@@ -22,13 +22,16 @@ import com.datumbox.framework.machinelearning.common.bases.BaseTrainable;
 import com.datumbox.common.objecttypes.Learnable;
 import com.datumbox.common.objecttypes.Parameterizable;
 import com.datumbox.common.persistentstorage.factories.BigDataStructureFactory;
+import com.datumbox.common.persistentstorage.factories.InMemoryStructureFactory;
 import com.datumbox.common.persistentstorage.interfaces.BigDataStructureContainer;
+import com.datumbox.configuration.ConcurrencyConfiguration;
 import com.datumbox.configuration.GeneralConfiguration;
 import com.datumbox.configuration.MemoryConfiguration;
 import com.datumbox.configuration.StorageConfiguration;
 import com.datumbox.framework.machinelearning.common.dataobjects.MLmodelKnowledgeBase;
 import com.datumbox.framework.machinelearning.common.dataobjects.TrainableKnowledgeBase;
 import java.lang.reflect.InvocationTargetException;
+import java.util.concurrent.ExecutorService;
 
 /**
  * Abstract Class for a Machine Learning algorithm.
@@ -169,13 +172,40 @@ public abstract class BaseMLmodel<MP extends BaseMLmodel.ModelParameters, TP ext
      * @param k
      * @return  
      */
-    @SuppressWarnings("unchecked")
     public VM kFoldCrossValidation(Dataset trainingData, int k) {
+        if(!ConcurrencyConfiguration.isParallelized()) {
+            return kFoldCrossValidation(trainingData, k, null);
+        }
+        
+        ExecutorService executorService = ConcurrencyConfiguration.newExecutorService();
+        try {
+            return kFoldCrossValidation(trainingData, k, executorService);
+        }
+        finally {
+            executorService.shutdownNow();
+        }
+    }
+    
+    /**
+     * Performs k-fold cross validation on the dataset and returns the ValidationMetrics
+     * Object. The folds are trained concurrently on the provided executorService;
+     * if it is null they are trained sequentially on the calling thread.
+     * 
+     * @param trainingData
+     * @param k
+     * @param executorService
+     * @return  
+     */
+    @SuppressWarnings("unchecked")
+    public VM kFoldCrossValidation(Dataset trainingData, int k, ExecutorService executorService) {
         if(GeneralConfiguration.DEBUG) {
             System.out.println("kFoldCrossValidation()");
         }
         
-        return modelValidator.kFoldCrossValidation(trainingData, k, dbName, this.getClass(), knowledgeBase.getTrainingParameters(), knowledgeBase.getMemoryConfiguration());
+        //the folds are validated by models of the same class and parameters as the ones of this model
+        Class<? extends BaseMLmodel<MP, TP, VM>> modelClass = (Class<? extends BaseMLmodel<MP, TP, VM>>) this.getClass();
+        
+        return modelValidator.kFoldCrossValidation(trainingData, k, dbName, modelClass, knowledgeBase.getTrainingParameters(), knowledgeBase.getMemoryConfiguration(), executorService);
     }
      
     /**
@@ -230,6 +260,41 @@ public abstract class BaseMLmodel<MP extends BaseMLmodel.ModelParameters, TP ext
         knowledgeBase.setTrained(true);
     }
     
+    /**
+     * Checks that the model is configured and not trained before it is trained
+     * with a stream of records. It is used by the models which implement the 
+     * StreamTrainable interface, before estimating their parameters.
+     */
+    protected void checkStreamTraining() {
+        //Check if training can be performed
+        if(!knowledgeBase.isConfigured()) {
+            throw new RuntimeException("The training configuration is not set.");
+        }
+        else if(knowledgeBase.isTrained()) {
+            throw new RuntimeException("The algorithm is already trainned. Reinitialize it or erase it.");
+        }
+        
+        if(GeneralConfiguration.DEBUG) {
+            System.out.println("trainStream()");
+        }
+    }
+    
+    /**
+     * Stores the model which was trained with a stream of records. The model 
+     * is not validated. It is used by the models which implement the 
+     * StreamTrainable interface, after estimating their parameters.
+     */
+    protected void completeStreamTraining() {
+        //store database if not temporary model
+        if(isTemporary()==false) {
+            if(GeneralConfiguration.DEBUG) {
+                System.out.println("Saving model");
+            }
+            knowledgeBase.save(true);
+        }
+        knowledgeBase.setTrained(true);
+    }
+    
     /**
      * Calculates the predictions for the newData and stores the predictions
      * inside the object.
@@ -270,6 +335,47 @@ public abstract class BaseMLmodel<MP extends BaseMLmodel.ModelParameters, TP ext
     }
     
     
+    /**
+     * Returns an immutable snapshot of the trained model which can estimate 
+     * predictions from many threads concurrently without locking. The model 
+     * parameters are copied in memory, so the snapshot does not use the storage
+     * of the model and it is not affected by any later change of it.
+     * 
+     * @return 
+     */
+    @SuppressWarnings("unchecked")
+    public FrozenMLmodel<VM> freeze() {
+        
+        if(GeneralConfiguration.DEBUG) {
+            System.out.println("freeze()");
+        }
+        
+        knowledgeBase.load();
+        
+        BaseMLmodel<MP, TP, VM> frozenModel = newInstance(this.getClass(), dbName);
+        frozenModel.setTemporary(true);
+        
+        MLmodelKnowledgeBase<MP, TP, VM> frozenKnowledgeBase = frozenModel.knowledgeBase;
+        frozenKnowledgeBase.setMemoryConfiguration(knowledgeBase.getMemoryConfiguration());
+        frozenKnowledgeBase.setModelParameters(BigDataStructureFactory.newReadOnlyCopy(knowledgeBase.getModelParameters()));
+        frozenKnowledgeBase.setTrainingParameters(knowledgeBase.getTrainingParameters());
+        frozenKnowledgeBase.setValidationMetrics(knowledgeBase.getValidationMetrics());
+        frozenKnowledgeBase.setTrained(true);
+        
+        //the components are frozen with the memory configuration of their storage
+        frozenModel.freezeComponents();
+        
+        //any temporary structure created during the predictions is kept in memory and it is private to the calling thread
+        MemoryConfiguration memoryConfiguration = knowledgeBase.getMemoryConfiguration();
+        memoryConfiguration.setMapType(InMemoryStructureFactory.getDefaultMapType());
+        memoryConfiguration.setCollectionType(InMemoryStructureFactory.getDefaultCollectionType());
+        memoryConfiguration.setSetType(InMemoryStructureFactory.getDefaultSetType());
+        memoryConfiguration.setQueueType(InMemoryStructureFactory.getDefaultQueueType());
+        frozenKnowledgeBase.setMemoryConfiguration(memoryConfiguration);
+        
+        return new FrozenMLmodel<>(frozenModel);
+    }
+    
     /**
      * Updates the ValidationMetrics of the algorithm. Usually used to set the
      * metrics after running a test() or when doing K-fold cross validation.
@@ -315,6 +421,16 @@ public abstract class BaseMLmodel<MP extends BaseMLmodel.ModelParameters, TP ext
     protected abstract void estimateModelParameters(Dataset trainingData);
     
     protected abstract void predictDataset(Dataset newData);
+    
+    /**
+     * It is called on the frozen copy of the model, after its parameters are
+     * set. Models which estimate their predictions by using other models or 
+     * lazily initialized objects must prepare them here, so that predictDataset()
+     * does not modify any shared state.
+     */
+    protected void freezeComponents() {
+        
+    }
 
 
 }
@@ -0,0 +1,58 @@
+/* 
+ * Copyright (C) 2014 Vasilis Vryniotis <bbriniotis at datumbox.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.datumbox.framework.machinelearning.common.bases.mlmodels;
+
+import com.datumbox.common.dataobjects.Dataset;
+
+/**
+ * Immutable snapshot of a trained model, produced by BaseMLmodel.freeze(). It 
+ * keeps read-only in-memory copies of the model parameters and it never loads,
+ * saves or modifies the knowledge base, so a single instance can be used by 
+ * many threads concurrently. Each thread must predict its own Dataset since the
+ * predictions are stored in the Records.
+ * 
+ * @author Vasilis Vryniotis <bbriniotis at datumbox.com>
+ * @param <VM>
+ */
+public final class FrozenMLmodel<VM extends BaseMLmodel.ValidationMetrics> {
+    
+    private final BaseMLmodel<?, ?, VM> mlmodel;
+    
+    FrozenMLmodel(BaseMLmodel<?, ?, VM> mlmodel) {
+        this.mlmodel = mlmodel;
+    }
+    
+    /**
+     * Calculates the predictions for the newData and stores them inside the 
+     * object.
+     * 
+     * @param newData 
+     */
+    public void predict(Dataset newData) {
+        mlmodel.predictDataset(newData);
+    }
+    
+    /**
+     * Returns the ValidationMetrics of the model at the time it was frozen.
+     * 
+     * @return 
+     */
+    public VM getValidationMetrics() {
+        return mlmodel.getValidationMetrics();
+    }
+    
+}
@@ -20,13 +20,16 @@ import com.datumbox.common.dataobjects.Dataset;
 import com.datumbox.common.dataobjects.Record;
 import com.datumbox.common.utilities.DeepCopy;
 import com.datumbox.common.utilities.PHPfunctions;
+import com.datumbox.common.utilities.ParallelFunctions;
+import com.datumbox.common.utilities.RandomValue;
 import com.datumbox.configuration.GeneralConfiguration;
 import com.datumbox.configuration.MemoryConfiguration;
 import com.datumbox.configuration.StorageConfiguration;
 import com.datumbox.framework.machinelearning.common.bases.mlmodels.BaseMLmodel;
 import java.util.ArrayList;
-import java.util.LinkedList;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
 
 /**
  *
@@ -43,7 +46,31 @@ public abstract class ModelValidation<MP extends BaseMLmodel.ModelParameters, TP
         super();
     }
     
-    public VM kFoldCrossValidation(Dataset dataset, int k, String dbName, Class<? extends BaseMLmodel> aClass, TP trainingParameters, MemoryConfiguration memoryConfiguration) {
+    public VM kFoldCrossValidation(Dataset dataset, int k, String dbName, Class<? extends BaseMLmodel<MP, TP, VM>> aClass, TP trainingParameters, MemoryConfiguration memoryConfiguration) {
+        return kFoldCrossValidation(dataset, k, dbName, aClass, trainingParameters, memoryConfiguration, null);
+    }
+    
+    /**
+     * Performs k-fold cross validation. If an executorService is provided the
+     * folds are trained and validated concurrently, each on its own temporary
+     * database. In that case every fold uses its own Random generator, seeded 
+     * from RandomValue before the folds are submitted, so the results are 
+     * reproducible and do not depend on the number or the scheduling of the 
+     * threads. Without executorService the folds run sequentially on the 
+     * calling thread and they consume the Random generator of RandomValue in
+     * the order of the folds, as they always did. The executorService is not 
+     * shut down by this method.
+     * 
+     * @param dataset
+     * @param k
+     * @param dbName
+     * @param aClass
+     * @param trainingParameters
+     * @param memoryConfiguration
+     * @param executorService
+     * @return 
+     */
+    public VM kFoldCrossValidation(final Dataset dataset, int k, String dbName, final Class<? extends BaseMLmodel<MP, TP, VM>> aClass, final TP trainingParameters, final MemoryConfiguration memoryConfiguration, ExecutorService executorService) {
         int n = dataset.size();
         if(k<=0 || n<=k) {
             throw new IllegalArgumentException("Invalid number of folds");
@@ -61,97 +88,53 @@ public abstract class ModelValidation<MP extends BaseMLmodel.ModelParameters, TP
         }
         PHPfunctions.shuffle(ids);
         
-        BaseMLmodel<MP, TP, VM> mlmodel = null;
-        
         String foldDBname=dbName+StorageConfiguration.getDBnameSeparator()+DB_INDICATOR;
         
-        List<VM> validationMetricsList = new LinkedList<>();
-        for(int fold=0;fold<k;++fold) {
-            
-            if(GeneralConfiguration.DEBUG) {
-                System.out.println("Kfold "+(fold+1));
-            }
-            
-            //as fold window we consider the part of the ids that are used for validation
-            List<Integer> foldTrainingIds = new ArrayList<>(n-foldSize);
-            List<Integer> foldValidationIds = new ArrayList<>(foldSize);
-            
-            for(int i=0;i<n;++i) {
-                boolean isInValidationFoldRange = false;
+        List<VM> validationMetricsList;
+        if(executorService==null) {
+            validationMetricsList = new ArrayList<>(k);
+            for(int fold=0;fold<k;++fold) {
                 
-                //determine if the current i value is in the validation fold range
-                if(fold*foldSize<=i && i<(fold+1)*foldSize) {
-                    isInValidationFoldRange = true;
+                if(GeneralConfiguration.DEBUG) {
+                    System.out.println("Kfold "+(fold+1));
                 }
                 
-                if(isInValidationFoldRange) {
-                    foldValidationIds.add(ids[i]);
-                }
-                else {
-                    foldTrainingIds.add(ids[i]);
-                }
-            }
-            
-            if(k==1) {
-                //if the number of k folds is 1 then the trainindIds are empty
-                //and the all the data are on validation fold. In this case
-                //we should set the training and validation sets equal
-                foldTrainingIds = foldValidationIds;
+                //perform complete erase ONLY if it is the last fold. 
+                boolean isLast=(fold==k-1);
+                
+                VM entrySample = validateFold(dataset, getFoldTrainingIds(ids, fold, foldSize, k), getFoldValidationIds(ids, fold, foldSize), foldDBname, aClass, trainingParameters, memoryConfiguration, isLast);
+                
+                //add the validationMetrics in the list
+                validationMetricsList.add(entrySample);
             }
-            
-            
-            //initialize mlmodel
-            mlmodel = BaseMLmodel.newInstance(aClass, foldDBname);
-            
-            //set the temporary flag on
-            mlmodel.setTemporary(true);
-            
-            //set training configuration
-            mlmodel.initializeTrainingConfiguration(memoryConfiguration, trainingParameters);
+        }
+        else {
+            List<Callable<VM>> tasks = new ArrayList<>(k);
+            for(int fold=0;fold<k;++fold) {
+                final int foldNumber = fold;
+                final List<Integer> foldTrainingIds = getFoldTrainingIds(ids, fold, foldSize, k);
+                final List<Integer> foldValidationIds = getFoldValidationIds(ids, fold, foldSize);
+                
+                //every fold works on its own temporary database
+                final String parallelFoldDBname = foldDBname+String.valueOf(fold);
+                
+                //the seeds are drawn sequentially so that the results are reproducible
+                long seed = RandomValue.getRandomGenerator().nextLong();
+                
+                tasks.add(ParallelFunctions.seeded(new Callable<VM>() {
+                    @Override
+                    public VM call() {
+                        if(GeneralConfiguration.DEBUG) {
+                            System.out.println("Kfold "+(foldNumber+1));
+                        }
                         
-            //shallow copy for the trainingData and the validaitonData. 
-            Dataset trainingData = dataset.generateNewSubset(foldTrainingIds);
-            Dataset validationData = dataset.generateNewSubset(foldValidationIds);
-            
-            //if the data are modified produce a deep copy
-            boolean algorithmModifiesDataset = mlmodel.modifiesData();
-            if(algorithmModifiesDataset) {
-                trainingData = DeepCopy.<Dataset>cloneObject(trainingData);
-                validationData = DeepCopy.<Dataset>cloneObject(validationData);
+                        return validateFold(dataset, foldTrainingIds, foldValidationIds, parallelFoldDBname, aClass, trainingParameters, memoryConfiguration, true);
+                    }
+                }, seed));
             }
             
-            
-            //train it
-            mlmodel.train(trainingData, validationData);
-            
-            
-            
-            //fetch validation metrics
-            VM entrySample = mlmodel.getValidationMetrics();
-            
-            //perform complete erase ONLY if it is the last fold. 
-            //There is unnecessary code here which is written for clarification purposes.
-            boolean isLast=(fold==k-1);
-            boolean complete=(isLast)?true:false; 
-            
-            //delete algorithm
-            mlmodel.erase(complete);
-            mlmodel = null;
-            
-            //add the validationMetrics in the list
-            validationMetricsList.add(entrySample);
-            
-            /*
-            //if we used the original data then reset all predictions. this is unnecessary. we never use the predictions, we always overwrite them
-            if(!algorithmModifiesDataset) {
-                for(Record r : trainingData) {
-                    r.setYPredicted(null);
-                }
-                for(Record r : validationData) {
-                    r.setYPredicted(null);
-                }
-            }
-            */
+            //the results are returned in the order of the folds
+            validationMetricsList = ParallelFunctions.invokeAll(executorService, tasks);
         }
         
         
@@ -160,6 +143,73 @@ public abstract class ModelValidation<MP extends BaseMLmodel.ModelParameters, TP
         return avgValidationMetrics;
     }
     
+    private List<Integer> getFoldValidationIds(Integer[] ids, int fold, int foldSize) {
+        //as fold window we consider the part of the ids that are used for validation
+        List<Integer> foldValidationIds = new ArrayList<>(foldSize);
+        for(int i=fold*foldSize;i<(fold+1)*foldSize;++i) {
+            foldValidationIds.add(ids[i]);
+        }
+        return foldValidationIds;
+    }
+    
+    private List<Integer> getFoldTrainingIds(Integer[] ids, int fold, int foldSize, int k) {
+        if(k==1) {
+            //if the number of k folds is 1 then the trainindIds are empty
+            //and the all the data are on validation fold. In this case
+            //we should set the training and validation sets equal
+            return getFoldValidationIds(ids, fold, foldSize);
+        }
+        
+        int n = ids.length;
+        List<Integer> foldTrainingIds = new ArrayList<>(n-foldSize);
+        for(int i=0;i<n;++i) {
+            //skip the ids of the validation fold range
+            if(fold*foldSize<=i && i<(fold+1)*foldSize) {
+                continue;
+            }
+            foldTrainingIds.add(ids[i]);
+        }
+        return foldTrainingIds;
+    }
+    
+    private VM validateFold(Dataset dataset, List<Integer> foldTrainingIds, List<Integer> foldValidationIds, String foldDBname, Class<? extends BaseMLmodel<MP, TP, VM>> modelClass, TP trainingParameters, MemoryConfiguration memoryConfiguration, boolean complete) {
+        //initialize mlmodel
+        BaseMLmodel<MP, TP, VM> mlmodel = BaseMLmodel.newInstance(modelClass, foldDBname);
+
+        //set the temporary flag on
+        mlmodel.setTemporary(true);
+
+        //set training configuration
+        mlmodel.initializeTrainingConfiguration(memoryConfiguration, trainingParameters);
+
+        //shallow copy for the trainingData and the validaitonData. The records
+        //are copied by generateNewSubset, so the predictions are stored on
+        //different objects for every fold and only the X vectors are shared.
+        Dataset trainingData = dataset.generateNewSubset(foldTrainingIds);
+        Dataset validationData = dataset.generateNewSubset(foldValidationIds);
+
+        //if the data are modified produce a deep copy
+        boolean algorithmModifiesDataset = mlmodel.modifiesData();
+        if(algorithmModifiesDataset) {
+            trainingData = DeepCopy.<Dataset>cloneObject(trainingData);
+            validationData = DeepCopy.<Dataset>cloneObject(validationData);
+        }
+
+
+        //train it
+        mlmodel.train(trainingData, validationData);
+
+
+
+        //fetch validation metrics
+        VM entrySample = mlmodel.getValidationMetrics();
+
+        //delete algorithm
+        mlmodel.erase(complete);
+        
+        return entrySample;
+    }
+    
     public abstract VM calculateAverageValidationMetrics(List<VM> validationMetricsList);
     
 
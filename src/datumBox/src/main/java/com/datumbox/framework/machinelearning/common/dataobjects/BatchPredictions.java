@@ -0,0 +1,110 @@
+/* 
+ * Copyright (C) 2014 Vasilis Vryniotis <bbriniotis at datumbox.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.datumbox.framework.machinelearning.common.dataobjects;
+
+/**
+ * Holds the predictions of a BatchPredictor in primitive arrays. For 
+ * classifiers the predicted class ids (positions in BatchPredictor.getClasses())
+ * and the row-major class probabilities are filled; for regressors the 
+ * predicted values. The arrays grow as needed and are reused between calls,
+ * so they can be longer than size().
+ * 
+ * @author Vasilis Vryniotis <bbriniotis at datumbox.com>
+ */
+public class BatchPredictions {
+    
+    private int size = 0;
+    
+    private int c = 0;
+    
+    private int[] predictedClassIds = new int[0];
+    
+    private double[] probabilities = new double[0];
+    
+    private double[] predictedValues = new double[0];
+    
+    /**
+     * Prepares the buffers for a batch of the given size. Classifiers pass the
+     * number of classes and regressors pass 0.
+     * 
+     * @param size
+     * @param c 
+     */
+    void resize(int size, int c) {
+        this.size = size;
+        this.c = c;
+        if(c>0) {
+            if(predictedClassIds.length<size) {
+                predictedClassIds = new int[size];
+            }
+            if(probabilities.length<size*c) {
+                probabilities = new double[size*c];
+            }
+        }
+        else if(predictedValues.length<size) {
+            predictedValues = new double[size];
+        }
+    }
+    
+    /**
+     * Returns the number of predicted rows.
+     * 
+     * @return 
+     */
+    public int size() {
+        return size;
+    }
+    
+    /**
+     * Returns the number of classes or 0 for regressors.
+     * 
+     * @return 
+     */
+    public int getNumberOfClasses() {
+        return c;
+    }
+    
+    public int getPredictedClassId(int row) {
+        return predictedClassIds[row];
+    }
+    
+    public double getProbability(int row, int classId) {
+        return probabilities[row*c+classId];
+    }
+    
+    public double getPredictedValue(int row) {
+        return predictedValues[row];
+    }
+    
+    public int[] getPredictedClassIds() {
+        return predictedClassIds;
+    }
+    
+    /**
+     * Returns the probabilities of the classes. The probability of the class 
+     * k for the row i is stored in the position i*getNumberOfClasses()+k.
+     * 
+     * @return 
+     */
+    public double[] getProbabilities() {
+        return probabilities;
+    }
+    
+    public double[] getPredictedValues() {
+        return predictedValues;
+    }
+}
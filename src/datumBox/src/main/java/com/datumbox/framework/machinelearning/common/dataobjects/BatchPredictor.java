@@ -0,0 +1,216 @@
+/* 
+ * Copyright (C) 2014 Vasilis Vryniotis <bbriniotis at datumbox.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.datumbox.framework.machinelearning.common.dataobjects;
+
+import com.datumbox.common.dataobjects.Dataset;
+import com.datumbox.common.dataobjects.Record;
+import com.datumbox.common.dataobjects.SparseBatch;
+import com.datumbox.common.utilities.ParallelFunctions;
+import com.datumbox.configuration.ConcurrencyConfiguration;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * A snapshot of the parameters of a trained model, compiled in primitive arrays,
+ * which scores SparseBatches without touching the knowledge base. The features 
+ * of the batches are identified by the ids returned by getFeatureId(). The 
+ * predictor does not change after its construction, so it can be shared by 
+ * many threads as long as every thread uses its own BatchPredictions.
+ * 
+ * @author Vasilis Vryniotis <bbriniotis at datumbox.com>
+ */
+public abstract class BatchPredictor implements Serializable {
+    
+    private static final long serialVersionUID = 1L;
+    
+    //the minimum number of rows scored by every task when a batch is split across threads
+    private static final int MIN_ROWS_PER_TASK = 512;
+    
+    private final Map<Object, Integer> featureIds;
+    
+    private final Object[] classes;
+    
+    /**
+     * 
+     * @param featureIds    The ids of the features used in the batches.
+     * @param classes       The classes of a classifier, in the order of their ids, or null for regressors.
+     */
+    protected BatchPredictor(Map<Object, Integer> featureIds, Object[] classes) {
+        this.featureIds = Collections.unmodifiableMap(new HashMap<>(featureIds));
+        this.classes = classes;
+    }
+    
+    /**
+     * Returns the id of the feature or null if the feature is unknown to the model.
+     * 
+     * @param feature
+     * @return 
+     */
+    public Integer getFeatureId(Object feature) {
+        return featureIds.get(feature);
+    }
+    
+    public Map<Object, Integer> getFeatureIds() {
+        return featureIds;
+    }
+    
+    /**
+     * Returns the number of classes or 0 for regressors.
+     * 
+     * @return 
+     */
+    public int getNumberOfClasses() {
+        return (classes!=null)?classes.length:0;
+    }
+    
+    /**
+     * Returns the class which corresponds to the class id.
+     * 
+     * @param classId
+     * @return 
+     */
+    public Object getClassValue(int classId) {
+        return classes[classId];
+    }
+    
+    /**
+     * Converts the Records of the Dataset, in the order of their ids, to rows 
+     * of the batch. Unknown features and null values are skipped.
+     * 
+     * @param dataset
+     * @param batch     The batch that will be cleared and filled.
+     * @return 
+     */
+    public SparseBatch parseDataset(Dataset dataset, SparseBatch batch) {
+        batch.clear();
+        for(Record r : dataset) {
+            for(Map.Entry<Object, Object> entry : r.getX().entrySet()) {
+                Integer featureId = featureIds.get(entry.getKey());
+                if(featureId==null) {
+                    continue;
+                }
+                Double value = Dataset.toDouble(entry.getValue());
+                if(value!=null) {
+                    batch.add(featureId, value);
+                }
+            }
+            batch.endRow();
+        }
+        return batch;
+    }
+    
+    /**
+     * Scores the batch and stores the results in the predictions. Large batches
+     * are scored on a pool of ConcurrencyConfiguration.getMaxNumberOfThreads()
+     * threads which is shut down before returning; the rest run on the 
+     * calling thread.
+     * 
+     * @param batch
+     * @param predictions 
+     */
+    public void predict(SparseBatch batch, BatchPredictions predictions) {
+        if(getPartitions(batch)<=1) {
+            predict(batch, predictions, null);
+            return;
+        }
+        
+        ExecutorService executorService = ConcurrencyConfiguration.newExecutorService();
+        try {
+            predict(batch, predictions, executorService);
+        }
+        finally {
+            executorService.shutdown();
+        }
+    }
+    
+    /**
+     * Scores the batch and stores the results in the predictions. Large batches
+     * are split in up to ConcurrencyConfiguration.getMaxNumberOfThreads() 
+     * ranges of rows which are scored concurrently on the executorService; if
+     * it is null everything runs on the calling thread.
+     * 
+     * @param batch
+     * @param predictions
+     * @param executorService 
+     */
+    public void predict(final SparseBatch batch, final BatchPredictions predictions, ExecutorService executorService) {
+        int n = batch.size();
+        predictions.resize(n, getNumberOfClasses());
+        
+        int partitions = getPartitions(batch);
+        if(executorService==null || partitions<=1) {
+            predictRows(batch, 0, n, predictions);
+            return;
+        }
+        
+        int[] boundaries = ParallelFunctions.partition(n, partitions);
+        List<Callable<Void>> tasks = new ArrayList<>(partitions);
+        for(int p=0;p<partitions;++p) {
+            final int from = boundaries[p];
+            final int to = boundaries[p+1];
+            tasks.add(new Callable<Void>() {
+                @Override
+                public Void call() {
+                    predictRows(batch, from, to, predictions);
+                    return null;
+                }
+            });
+        }
+        ParallelFunctions.invokeAll(executorService, tasks);
+    }
+    
+    private static int getPartitions(SparseBatch batch) {
+        return Math.min(batch.size()/MIN_ROWS_PER_TASK, ConcurrencyConfiguration.getMaxNumberOfThreads());
+    }
+    
+    /**
+     * Scores the rows [from, to) of the batch. The buffers of the predictions
+     * are already resized. Implementations must write only the positions of 
+     * these rows because different ranges are scored concurrently.
+     * 
+     * @param batch
+     * @param from
+     * @param to
+     * @param predictions 
+     */
+    protected abstract void predictRows(SparseBatch batch, int from, int to, BatchPredictions predictions);
+    
+    /**
+     * Returns the position of the first maximum value in array[offset, offset+length)
+     * relative to the offset.
+     * 
+     * @param array
+     * @param offset
+     * @param length
+     * @return 
+     */
+    protected static int selectMaxId(double[] array, int offset, int length) {
+        int maxId = 0;
+        for(int i=1;i<length;++i) {
+            if(array[offset+i]>array[offset+maxId]) {
+                maxId = i;
+            }
+        }
+        return maxId;
+    }
+}
@@ -0,0 +1,132 @@
+/* 
+ * Copyright (C) 2014 Vasilis Vryniotis <bbriniotis at datumbox.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.datumbox.framework.machinelearning.common.dataobjects;
+
+import com.datumbox.common.dataobjects.SparseBatch;
+import java.util.Map;
+
+/**
+ * BatchPredictor for the models which score every output as a linear function
+ * of the features: score(k) = bias(k) + sum( weight(feature, k) * value(feature) ).
+ * Classifiers convert the scores to probabilities with the softmax function 
+ * (same as Descriptives.normalizeExp) while regressors have a single output
+ * which is the predicted value.
+ * 
+ * @author Vasilis Vryniotis <bbriniotis at datumbox.com>
+ */
+public class LinearBatchPredictor extends BatchPredictor {
+    
+    private static final long serialVersionUID = 1L;
+    
+    /**
+     * The transformation applied on the values before they are multiplied 
+     * with the weights.
+     */
+    public enum ValueTransformation {
+        NONE, //the values are used as they are
+        BINARIZE_POSITIVE, //positive values are replaced by 1 (Naive Bayes without weighted probabilities)
+        BINARIZE_NONZERO; //non zero values are replaced by 1 (Maximum Entropy, Bernoulli Naive Bayes)
+    }
+    
+    private final int c; //number of outputs
+    
+    private final int d; //number of feature ids
+    
+    private final double[] weights; //feature-major: the weight of the output k for the feature j is stored in j*c+k
+    
+    private final double[] biases;
+    
+    private final ValueTransformation valueTransformation;
+    
+    /**
+     * 
+     * @param featureIds            The ids of the features used in the batches. They must be smaller than weights.length/biases.length.
+     * @param classes               The classes of a classifier or null for regressors.
+     * @param weights               The feature-major weights; the weight of the output k for the feature j is stored in j*c+k.
+     * @param biases                The biases of the outputs (one for regressors).
+     * @param valueTransformation 
+     */
+    public LinearBatchPredictor(Map<Object, Integer> featureIds, Object[] classes, double[] weights, double[] biases, ValueTransformation valueTransformation) {
+        super(featureIds, classes);
+        
+        c = biases.length;
+        if(c==0 || (classes!=null && classes.length!=c) || (classes==null && c!=1) || weights.length%c!=0) {
+            throw new IllegalArgumentException("The sizes of the weights and the biases do not match the number of outputs.");
+        }
+        d = weights.length/c;
+        
+        this.weights = weights;
+        this.biases = biases;
+        this.valueTransformation = valueTransformation;
+    }
+
+    @Override
+    protected void predictRows(SparseBatch batch, int from, int to, BatchPredictions predictions) {
+        int[] rowOffsets = batch.getRowOffsets();
+        int[] featureIds = batch.getFeatureIds();
+        double[] values = batch.getValues();
+        
+        boolean isClassifier = getNumberOfClasses()>0;
+        
+        //the scores of the classifiers are calculated directly in the probabilities buffer
+        double[] scores = (isClassifier)?predictions.getProbabilities():new double[1];
+        int[] predictedClassIds = predictions.getPredictedClassIds();
+        double[] predictedValues = predictions.getPredictedValues();
+        
+        for(int row=from;row<to;++row) {
+            int offset = (isClassifier)?row*c:0;
+            System.arraycopy(biases, 0, scores, offset, c);
+            
+            for(int i=rowOffsets[row];i<rowOffsets[row+1];++i) {
+                int featureId = featureIds[i];
+                double value = values[i];
+                if(value==0.0 || featureId<0 || featureId>=d) {
+                    continue;
+                }
+                
+                if(valueTransformation==ValueTransformation.BINARIZE_NONZERO || (valueTransformation==ValueTransformation.BINARIZE_POSITIVE && value>0.0)) {
+                    value = 1.0;
+                }
+                
+                int weightOffset = featureId*c;
+                for(int k=0;k<c;++k) {
+                    scores[offset+k] += value*weights[weightOffset+k];
+                }
+            }
+            
+            if(isClassifier) {
+                int maxId = selectMaxId(scores, offset, c);
+                predictedClassIds[row] = maxId;
+                
+                //Prevents numeric underflow by subtracting the max
+                double max = scores[offset+maxId];
+                double sum = 0.0;
+                for(int k=0;k<c;++k) {
+                    double value = Math.exp(scores[offset+k]-max);
+                    scores[offset+k] = value;
+                    sum += value;
+                }
+                for(int k=0;k<c;++k) {
+                    scores[offset+k] /= sum;
+                }
+            }
+            else {
+                predictedValues[row] = scores[0];
+            }
+        }
+    }
+}
@@ -0,0 +1,436 @@
+/*
+ * Copyright (C) 2014 Vasilis Vryniotis <bbriniotis at datumbox.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.datumbox.framework.machinelearning.common.dataobjects;
+
+import com.datumbox.common.dataobjects.ColumnarDataset;
+import com.datumbox.common.dataobjects.Dataset;
+import com.datumbox.common.dataobjects.Record;
+import com.datumbox.common.dataobjects.SparseBatch;
+import com.datumbox.configuration.GeneralConfiguration;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * Gradient descent on dense weight arrays, which streams the training records
+ * in SparseBatches instead of keeping them in memory. The subclasses define the
+ * layout of the weights, the loss and its gradient; the trainer handles the
+ * iteration over the stream, the learning rate and the early stopping.
+ * <p>
+ * With a batchSize of 0 every epoch performs a full batch gradient descent 
+ * step: the update is estimated on all the records with the weights of the 
+ * previous epoch. Otherwise the weights are updated after every mini-batch 
+ * (batchSize 1 is the stochastic gradient descent), which usually converges 
+ * in far fewer epochs on large datasets.
+ * <p>
+ * When a stream is a Dataset, it is converted once to a ColumnarDataset and 
+ * the batches of every epoch are read with its primitive accessors instead of
+ * hashing and unboxing the features of the Records.
+ * 
+ * @author Vasilis Vryniotis <bbriniotis at datumbox.com>
+ */
+public abstract class MiniBatchTrainer {
+    
+    //number of records parsed at once in the full batch mode
+    private static final int FULL_BATCH_CHUNK_SIZE = 1024;
+    
+    /**
+     * The adaptation of the learning rate between the epochs.
+     */
+    public enum LearningRateSchedule {
+        /**
+         * The learning rate does not change.
+         */
+        CONSTANT,
+        
+        /**
+         * The learning rate of the epoch t (starting from 0) is 
+         * learningRate/sqrt(t+1).
+         */
+        INVERSE_SQRT,
+        
+        /**
+         * The learning rate increases by 5% when the loss of the epoch 
+         * decreases and it is halved when the loss increases. In the full batch
+         * mode the steps which increase the loss are also rejected.
+         */
+        BOLD_DRIVER;
+    }
+    
+    private final Map<Object, Integer> featureIds;
+    
+    private final int n;
+    
+    private final int batchSize;
+    
+    private final double learningRate;
+    
+    private final LearningRateSchedule learningRateSchedule;
+    
+    private final int totalIterations;
+    
+    private final int patience;
+    
+    private final SparseBatch batch = new SparseBatch();
+    
+    private double[] targets = new double[16];
+    
+    /**
+     * 
+     * @param featureIds            The ids of the features; the unknown features are ignored.
+     * @param n                     The number of records of the training stream.
+     * @param batchSize             The number of records of the mini-batches or 0 for the full batch gradient descent.
+     * @param learningRate          The initial learning rate.
+     * @param learningRateSchedule  The adaptation of the learning rate between the epochs.
+     * @param totalIterations       The maximum number of epochs.
+     * @param patience              The number of epochs without improvement of the held out loss before stopping or 0 to disable the early stopping.
+     */
+    protected MiniBatchTrainer(Map<Object, Integer> featureIds, int n, int batchSize, double learningRate, LearningRateSchedule learningRateSchedule, int totalIterations, int patience) {
+        if(batchSize<0) {
+            throw new IllegalArgumentException("The batchSize can not be negative.");
+        }
+        else if(patience<0) {
+            throw new IllegalArgumentException("The patience can not be negative.");
+        }
+        this.featureIds = featureIds;
+        this.n = n;
+        this.batchSize = batchSize;
+        this.learningRate = learningRate;
+        this.learningRateSchedule = learningRateSchedule;
+        this.totalIterations = totalIterations;
+        this.patience = patience;
+    }
+    
+    /**
+     * Trains the weights with the records of the trainingStream, which is 
+     * iterated once per epoch. If the heldOutStream is not null and the 
+     * patience is positive, the training stops when the loss on the held out 
+     * records does not improve for patience epochs and the weights of the best
+     * epoch are returned.
+     * 
+     * @param trainingStream
+     * @param heldOutStream
+     * @param weights           The initial weights. The array may be modified.
+     * @return 
+     */
+    public double[] train(Iterable<Record> trainingStream, Iterable<Record> heldOutStream, double[] weights) {
+        boolean earlyStopping = heldOutStream!=null && patience>0;
+        double[] bestWeights = null;
+        double minHeldOutError = Double.POSITIVE_INFINITY;
+        int epochsWithoutImprovement = 0;
+        
+        ColumnarBatchReader trainingReader = newColumnarBatchReader(trainingStream);
+        ColumnarBatchReader heldOutReader = (earlyStopping)?newColumnarBatchReader(heldOutStream):null;
+        
+        double[] newWeights = (batchSize==0)?new double[weights.length]:weights;
+        double currentLearningRate = learningRate;
+        double minError = Double.POSITIVE_INFINITY;
+        for(int iteration=0;iteration<totalIterations;++iteration) {
+            
+            if(GeneralConfiguration.DEBUG) {
+                System.out.println("Iteration "+iteration);
+            }
+            
+            if(learningRateSchedule==LearningRateSchedule.INVERSE_SQRT) {
+                currentLearningRate = learningRate/Math.sqrt(iteration+1.0);
+            }
+            
+            double newError;
+            if(batchSize==0) {
+                //the update is estimated with the weights of the previous epoch
+                System.arraycopy(weights, 0, newWeights, 0, weights.length);
+                
+                double multiplier = currentLearningRate/n;
+                BatchReader reader = newBatchReader(trainingStream, trainingReader);
+                while(reader.nextBatch(FULL_BATCH_CHUNK_SIZE)) {
+                    updateWeights(batch, targets, weights, newWeights, multiplier);
+                }
+                
+                newError = (learningRateSchedule==LearningRateSchedule.BOLD_DRIVER)?calculateError(newBatchReader(trainingStream, trainingReader), newWeights):0.0;
+            }
+            else {
+                //the loss of every mini-batch is estimated before its update, so the error of the epoch comes for free
+                newError = 0.0;
+                BatchReader reader = newBatchReader(trainingStream, trainingReader);
+                while(reader.nextBatch(batchSize)) {
+                    newError += updateWeights(batch, targets, weights, weights, currentLearningRate/batch.size());
+                }
+            }
+            
+            if(learningRateSchedule==LearningRateSchedule.BOLD_DRIVER) {
+                if(newError>minError) {
+                    currentLearningRate/=2.0;
+                }
+                else {
+                    currentLearningRate*=1.05;
+                }
+                
+                if(batchSize>0) {
+                    minError = newError; //the step is already applied; compare with the previous epoch
+                }
+                else if(newError<=minError) {
+                    minError = newError;
+                    
+                    //keep the new weights
+                    double[] tmp = weights;
+                    weights = newWeights;
+                    newWeights = tmp;
+                }
+            }
+            else if(batchSize==0) {
+                double[] tmp = weights;
+                weights = newWeights;
+                newWeights = tmp;
+            }
+            
+            if(earlyStopping) {
+                double heldOutError = calculateError(newBatchReader(heldOutStream, heldOutReader), weights);
+                if(heldOutError<minHeldOutError) {
+                    minHeldOutError = heldOutError;
+                    epochsWithoutImprovement = 0;
+                    
+                    if(bestWeights==null) {
+                        bestWeights = new double[weights.length];
+                    }
+                    System.arraycopy(weights, 0, bestWeights, 0, weights.length);
+                }
+                else if(++epochsWithoutImprovement>=patience) {
+                    if(GeneralConfiguration.DEBUG) {
+                        System.out.println("Early stopping");
+                    }
+                    break;
+                }
+            }
+        }
+        
+        return (bestWeights!=null)?bestWeights:weights;
+    }
+    
+    /**
+     * Estimates the average loss of the weights on the records of the stream.
+     * 
+     * @param stream
+     * @param weights
+     * @return 
+     */
+    public double calculateError(Iterable<Record> stream, double[] weights) {
+        return calculateError(new RecordBatchReader(stream.iterator()), weights);
+    }
+    
+    private double calculateError(BatchReader reader, double[] weights) {
+        double error = 0.0;
+        int rows = 0;
+        while(reader.nextBatch(FULL_BATCH_CHUNK_SIZE)) {
+            error += calculateError(batch, targets, weights);
+            rows += batch.size();
+        }
+        return (rows>0)?error/rows:0.0;
+    }
+    
+    /**
+     * Returns the target of the record which is passed to the subclasses: its
+     * value for regressors and the id of its class for classifiers. If it 
+     * returns NaN the record is skipped.
+     * 
+     * @param y
+     * @return 
+     */
+    protected abstract double getTarget(Object y);
+    
+    /**
+     * Estimates the gradient descent update on the rows of the batch by using 
+     * the weights and adds it, multiplied by the multiplier, to the newWeights. 
+     * The weights and the newWeights can be the same array; all the rows must 
+     * be evaluated before applying their updates. Returns the sum of the losses
+     * of the rows, estimated with the weights.
+     * 
+     * @param batch
+     * @param targets
+     * @param weights
+     * @param newWeights
+     * @param multiplier
+     * @return 
+     */
+    protected abstract double updateWeights(SparseBatch batch, double[] targets, double[] weights, double[] newWeights, double multiplier);
+    
+    /**
+     * Returns the sum of the losses of the rows of the batch.
+     * 
+     * @param batch
+     * @param targets
+     * @param weights
+     * @return 
+     */
+    protected abstract double calculateError(SparseBatch batch, double[] targets, double[] weights);
+    
+    private BatchReader newBatchReader(Iterable<Record> stream, ColumnarBatchReader columnarReader) {
+        if(columnarReader!=null) {
+            columnarReader.reset();
+            return columnarReader;
+        }
+        return new RecordBatchReader(stream.iterator());
+    }
+    
+    /**
+     * Converts the stream to a ColumnarBatchReader if it is a Dataset. Returns
+     * null if it is not or if any of the features is dictionary encoded, in 
+     * which case the Records are used.
+     * 
+     * @param stream
+     * @return 
+     */
+    private ColumnarBatchReader newColumnarBatchReader(Iterable<Record> stream) {
+        if(!(stream instanceof Dataset)) {
+            return null;
+        }
+        Dataset dataset = (Dataset)stream;
+        ColumnarDataset columnarDataset = ColumnarDataset.newInstance(dataset);
+        
+        int columnSize = columnarDataset.getColumnSize();
+        int[] columnFeatureIds = new int[columnSize];
+        for(int columnId=0;columnId<columnSize;++columnId) {
+            Integer featureId = featureIds.get(columnarDataset.getColumnName(columnId));
+            if(featureId==null) {
+                columnFeatureIds[columnId] = -1;
+            }
+            else if(columnarDataset.isDictionaryColumn(columnId)) {
+                return null; //the codes are not the values of the feature
+            }
+            else {
+                columnFeatureIds[columnId] = featureId;
+            }
+        }
+        
+        //the targets do not change between the epochs
+        double[] rowTargets = new double[columnarDataset.size()];
+        int row = 0;
+        for(Record r : dataset) {
+            rowTargets[row++] = getTarget(r.getY());
+        }
+        
+        return new ColumnarBatchReader(columnarDataset, columnFeatureIds, rowTargets);
+    }
+    
+    private void endRow(double target) {
+        int row = batch.endRow();
+        
+        if(row==targets.length) {
+            double[] newTargets = new double[targets.length*2];
+            System.arraycopy(targets, 0, newTargets, 0, row);
+            targets = newTargets;
+        }
+        targets[row] = target;
+    }
+    
+    /**
+     * Fills the batch of the trainer with the next records of a stream.
+     */
+    private abstract class BatchReader {
+        
+        /**
+         * Fills the batch with up to maxRows rows and returns false if the 
+         * stream is exhausted.
+         * 
+         * @param maxRows
+         * @return 
+         */
+        protected abstract boolean nextBatch(int maxRows);
+    }
+    
+    private final class RecordBatchReader extends BatchReader {
+        
+        private final Iterator<Record> it;
+        
+        private RecordBatchReader(Iterator<Record> it) {
+            this.it = it;
+        }
+        
+        @Override
+        protected boolean nextBatch(int maxRows) {
+            batch.clear();
+            while(batch.size()<maxRows && it.hasNext()) {
+                Record r = it.next();
+                double target = getTarget(r.getY());
+                if(Double.isNaN(target)) {
+                    continue;
+                }
+                
+                //the inactive features do not contribute to the scores or the gradients
+                for(Map.Entry<Object, Object> entry : r.getX().entrySet()) {
+                    Integer featureId = featureIds.get(entry.getKey());
+                    if(featureId==null) {
+                        continue;
+                    }
+                    Double value = Dataset.toDouble(entry.getValue());
+                    if(value!=null && value!=0.0) {
+                        batch.add(featureId, value);
+                    }
+                }
+                endRow(target);
+            }
+            return batch.size()>0;
+        }
+    }
+    
+    private final class ColumnarBatchReader extends BatchReader {
+        
+        private final ColumnarDataset columnarDataset;
+        
+        private final int[] columnFeatureIds;
+        
+        private final double[] rowTargets;
+        
+        private final int[] columnIds;
+        
+        private final double[] values;
+        
+        private int row = 0;
+        
+        private ColumnarBatchReader(ColumnarDataset columnarDataset, int[] columnFeatureIds, double[] rowTargets) {
+            this.columnarDataset = columnarDataset;
+            this.columnFeatureIds = columnFeatureIds;
+            this.rowTargets = rowTargets;
+            columnIds = new int[columnFeatureIds.length];
+            values = new double[columnFeatureIds.length];
+        }
+        
+        private void reset() {
+            row = 0;
+        }
+        
+        @Override
+        protected boolean nextBatch(int maxRows) {
+            batch.clear();
+            while(batch.size()<maxRows && row<rowTargets.length) {
+                double target = rowTargets[row];
+                if(Double.isNaN(target)) {
+                    ++row;
+                    continue;
+                }
+                
+                int length = columnarDataset.getRow(row++, columnIds, values);
+                for(int i=0;i<length;++i) {
+                    int featureId = columnFeatureIds[columnIds[i]];
+                    if(featureId>=0 && values[i]!=0.0) {
+                        batch.add(featureId, values[i]);
+                    }
+                }
+                endRow(target);
+            }
+            return batch.size()>0;
+        }
+    }
+}
@@ -0,0 +1,37 @@
+/* 
+ * Copyright (C) 2014 Vasilis Vryniotis <bbriniotis at datumbox.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.datumbox.framework.machinelearning.common.interfaces;
+
+import com.datumbox.framework.machinelearning.common.dataobjects.BatchPredictor;
+
+/**
+ * Implemented by the models that can score compact sparse batches natively,
+ * without building Records and writing the predictions back to them.
+ * 
+ * @author Vasilis Vryniotis <bbriniotis at datumbox.com>
+ */
+public interface BatchPredictable {
+    
+    /**
+     * Loads the trained model and compiles its parameters into a BatchPredictor.
+     * The predictor is a snapshot; it is not affected if the model is retrained
+     * or erased later.
+     * 
+     * @return 
+     */
+    public BatchPredictor getBatchPredictor();
+}
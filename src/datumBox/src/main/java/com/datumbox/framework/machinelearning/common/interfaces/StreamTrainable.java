@@ -0,0 +1,40 @@
+/*
+ * Copyright (C) 2014 Vasilis Vryniotis <bbriniotis at datumbox.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.datumbox.framework.machinelearning.common.interfaces;
+
+import com.datumbox.common.dataobjects.Record;
+
+/**
+ * Implemented by the models that can be trained from a stream of records, 
+ * without loading the training data in a Dataset.
+ * 
+ * @author Vasilis Vryniotis <bbriniotis at datumbox.com>
+ */
+public interface StreamTrainable {
+    
+    /**
+     * Trains the model with the records of the trainingStream. The stream is 
+     * iterated once to find the features and the classes and then once per 
+     * epoch, so it must return a new iterator every time. The heldOutStream is
+     * optional; if it is not null it is used for the early stopping. The 
+     * model is not validated.
+     * 
+     * @param trainingStream
+     * @param heldOutStream 
+     */
+    public void train(Iterable<Record> trainingStream, Iterable<Record> heldOutStream);
+}
@@ -20,9 +20,14 @@ import com.datumbox.framework.machinelearning.common.bases.basemodels.BaseBoosti
 import com.datumbox.common.dataobjects.Dataset;
 import com.datumbox.common.dataobjects.FlatDataCollection;
 import com.datumbox.common.dataobjects.Record;
+import com.datumbox.common.utilities.ParallelFunctions;
+import com.datumbox.configuration.ConcurrencyConfiguration;
 import com.datumbox.framework.statistics.descriptivestatistics.Descriptives;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
 
 /**
  *
@@ -70,15 +75,19 @@ public class Adaboost extends BaseBoostingBagging<Adaboost.ModelParameters, Adab
 
 
     @Override
-    protected boolean updateObservationAndClassifierWeights(Dataset validationDataset, Map<Object, Object> observationWeights) { 
-        //calculate prediction error for this classifier
-        double error = 0.0;
-        for(Record r : validationDataset) {
-            if(!r.getY().equals(r.getYPredicted())) {
-                error+= Dataset.toDouble(observationWeights.get(r.getId()));
-            }
+    protected boolean updateObservationAndClassifierWeights(Dataset validationDataset, Map<Object, Object> observationWeights, ExecutorService executorService) { 
+        int n = validationDataset.size();
+        
+        //the weights are read once on this thread because the big data structures are not thread safe
+        double[] weights = new double[n];
+        for(Map.Entry<Object, Object> entry : observationWeights.entrySet()) {
+            weights[Dataset.toInteger(entry.getKey())] = Dataset.toDouble(entry.getValue());
         }
         
+        //calculate prediction error for this classifier
+        boolean[] misclassified = new boolean[n];
+        double error = estimateWeightedError(validationDataset, weights, misclassified, executorService);
+        
         ModelParameters modelParameters = knowledgeBase.getModelParameters();
 
         boolean stop;
@@ -105,8 +114,7 @@ public class Adaboost extends BaseBoostingBagging<Adaboost.ModelParameters, Adab
                 Integer recordId = Dataset.toInteger(entry.getKey());
                 Double value = Dataset.toDouble(entry.getValue());
 
-                Record r = validationDataset.get(recordId);
-                if(!r.getY().equals(r.getYPredicted())) {
+                if(misclassified[recordId]) {
                     observationWeights.put(entry.getKey(), value*Math.exp(weight)); //increase the weight for misclassified observations
                 }
             }
@@ -124,4 +132,50 @@ public class Adaboost extends BaseBoostingBagging<Adaboost.ModelParameters, Adab
         
         return stop; 
     }
+    
+    /**
+     * Marks the observations which were misclassified by the last weak 
+     * classifier and returns the sum of their weights. The records are split 
+     * in consecutive ranges which are checked in parallel when an 
+     * executorService is available. Every range estimates its own partial sum 
+     * and the partial sums are added in the order of the ranges, so the error
+     * does not depend on the scheduling of the threads. 
+     * 
+     * @param validationDataset
+     * @param weights
+     * @param misclassified
+     * @param executorService
+     * @return 
+     */
+    private double estimateWeightedError(final Dataset validationDataset, final double[] weights, final boolean[] misclassified, ExecutorService executorService) {
+        int partitions = (executorService!=null)?ConcurrencyConfiguration.getMaxNumberOfThreads():1;
+        int[] boundaries = ParallelFunctions.partition(misclassified.length, partitions);
+        
+        List<Callable<Double>> tasks = new ArrayList<>(boundaries.length-1);
+        for(int p=0;p<boundaries.length-1;++p) {
+            final int from = boundaries[p];
+            final int to = boundaries[p+1];
+            tasks.add(new Callable<Double>() {
+                @Override
+                public Double call() {
+                    double partialError = 0.0;
+                    for(int id=from;id<to;++id) {
+                        Record r = validationDataset.get(id);
+                        misclassified[id] = !r.getY().equals(r.getYPredicted());
+                        if(misclassified[id]) {
+                            partialError += weights[id];
+                        }
+                    }
+                    return partialError;
+                }
+            });
+        }
+        
+        double error = 0.0;
+        for(Double partialError : ParallelFunctions.invokeAll(executorService, tasks)) {
+            error += partialError;
+        }
+        
+        return error;
+    }
 }
@@ -20,6 +20,7 @@ import com.datumbox.framework.machinelearning.common.bases.basemodels.BaseBoosti
 import com.datumbox.common.dataobjects.Dataset;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
 
 /**
  *
@@ -71,7 +72,12 @@ public class BootstrapAggregating extends BaseBoostingBagging<BootstrapAggregati
 
 
     @Override
-    protected boolean updateObservationAndClassifierWeights(Dataset validationDataset, Map<Object, Object> observationWeights) {
+    protected boolean hasIndependentWeakClassifiers() {
+        return true; //the observation weights are never updated
+    }
+    
+    @Override
+    protected boolean updateObservationAndClassifierWeights(Dataset validationDataset, Map<Object, Object> observationWeights, ExecutorService executorService) {
         //no update on the observationWeights, all observations have equal probability 1/n
         
         //update classifier weights with equal weights
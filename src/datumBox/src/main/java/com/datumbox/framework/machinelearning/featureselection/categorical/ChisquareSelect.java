@@ -18,11 +18,12 @@ package com.datumbox.framework.machinelearning.featureselection.categorical;
 
 import com.datumbox.framework.machinelearning.common.bases.featureselection.CategoricalFeatureSelection;
 import com.datumbox.common.dataobjects.AssociativeArray;
+import com.datumbox.common.dataobjects.IntegerDictionary;
 import com.datumbox.common.dataobjects.DataTable2D;
 import com.datumbox.framework.machinelearning.common.bases.featureselection.ScoreBasedFeatureSelection;
 import com.datumbox.framework.statistics.distributions.ContinuousDistributions;
 import com.datumbox.framework.statistics.nonparametrics.independentsamples.Chisquare;
-import java.util.Arrays;
+import java.util.HashMap;
 import java.util.Map;
 
 /**
@@ -77,16 +78,21 @@ public class ChisquareSelect extends CategoricalFeatureSelection<ChisquareSelect
         double criticalValue = ContinuousDistributions.ChisquareInverseCdf(trainingParameters.getALevel(), 1); //one degree of freedom because the tables below are 2x2
         
         
+        Map<Long, Integer> featureClassCounts = modelParameters.getFeatureClassCounts();
+        IntegerDictionary featureDictionary = new IntegerDictionary(modelParameters.getFeatureIds());
+        Map<Object, Integer> classIds = new HashMap<>(modelParameters.getClassIds()); //this is small. Size equal to class numbers
+        
         double N = modelParameters.getN();
         for(Map.Entry<Object, Double> featureCount : modelParameters.getFeatureCounts().entrySet()) {
             Object feature = featureCount.getKey();
+            Integer featureId = featureDictionary.getId(feature); //null if the feature never had a non-zero value
             double N1_ = featureCount.getValue(); //calculate the N1. (number of records that has the feature)
             double N0_ = N - N1_; //also the N0. (number of records that DONT have the feature)
             
             for(Map.Entry<Object, Integer> classCount : modelParameters.getClassCounts().entrySet()) {
                 Object theClass = classCount.getKey();
                 
-                Integer featureClassC = modelParameters.getFeatureClassCounts().get(Arrays.<Object>asList(feature, theClass));                
+                Integer featureClassC = (featureId!=null)?featureClassCounts.get(IntegerDictionary.key(featureId, classIds.get(theClass))):null;
                 double N11 = (featureClassC!=null)?featureClassC:0.0; //N11 is the number of records that have the feature and belong on the specific class
                 double N01 = classCount.getValue() - N11; //N01 is the total number of records that do not have the particular feature BUT they belong to the specific class
                 
@@ -17,9 +17,10 @@
 package com.datumbox.framework.machinelearning.featureselection.categorical;
 
 import com.datumbox.framework.machinelearning.common.bases.featureselection.CategoricalFeatureSelection;
+import com.datumbox.common.dataobjects.IntegerDictionary;
 import com.datumbox.common.utilities.PHPfunctions;
 import com.datumbox.framework.machinelearning.common.bases.featureselection.ScoreBasedFeatureSelection;
-import java.util.Arrays;
+import java.util.HashMap;
 import java.util.Map;
 
 /**
@@ -56,9 +57,14 @@ public class MutualInformation extends CategoricalFeatureSelection<MutualInforma
         
         Map<Object, Double> featureScores = modelParameters.getFeatureScores();
         
+        Map<Long, Integer> featureClassCounts = modelParameters.getFeatureClassCounts();
+        IntegerDictionary featureDictionary = new IntegerDictionary(modelParameters.getFeatureIds());
+        Map<Object, Integer> classIds = new HashMap<>(modelParameters.getClassIds()); //this is small. Size equal to class numbers
+        
         double N = modelParameters.getN();
         for(Map.Entry<Object, Double> featureCount : modelParameters.getFeatureCounts().entrySet()) {
             Object feature = featureCount.getKey();
+            Integer featureId = featureDictionary.getId(feature); //null if the feature never had a non-zero value
             double N1_ = featureCount.getValue(); //calculate the N1. (number of records that has the feature)
             double N0_ = N - N1_; //also the N0. (number of records that DONT have the feature)
             
@@ -67,7 +73,7 @@ public class MutualInformation extends CategoricalFeatureSelection<MutualInforma
                 
                 double N_1 = classCount.getValue();
                 double N_0 = N - N_1;
-                Integer featureClassC = modelParameters.getFeatureClassCounts().get(Arrays.<Object>asList(feature, theClass));                
+                Integer featureClassC = (featureId!=null)?featureClassCounts.get(IntegerDictionary.key(featureId, classIds.get(theClass))):null;
                 double N11 = (featureClassC!=null)?featureClassC:0.0; //N11 is the number of records that have the feature and belong on the specific class
                 
                 double N01 = N_1 - N11; //N01 is the total number of records that do not have the particular feature BUT they belong to the specific class
@@ -18,23 +18,22 @@ package com.datumbox.framework.machinelearning.recommendersystem;
 
 import com.datumbox.common.dataobjects.AssociativeArray;
 import com.datumbox.common.dataobjects.Dataset;
-import com.datumbox.common.dataobjects.FlatDataList;
+import com.datumbox.common.dataobjects.IntegerDictionary;
 import com.datumbox.common.dataobjects.Record;
-import com.datumbox.common.dataobjects.TransposeDataList;
 import com.datumbox.common.persistentstorage.factories.BigDataStructureFactory;
 import com.datumbox.common.persistentstorage.interfaces.BigDataStructureMarker;
 import com.datumbox.common.utilities.MapFunctions;
+import com.datumbox.common.utilities.ParallelFunctions;
+import com.datumbox.configuration.ConcurrencyConfiguration;
 import com.datumbox.configuration.MemoryConfiguration;
 import com.datumbox.framework.machinelearning.common.bases.mlmodels.BaseMLrecommender;
-import com.datumbox.framework.mathematics.distances.Distance;
-import com.datumbox.framework.statistics.parametrics.relatedsamples.PearsonCorrelation;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.Objects;
-import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
 import org.mongodb.morphia.annotations.Transient;
 
 /**
@@ -50,6 +49,8 @@ public class CollaborativeFiltering extends BaseMLrecommender<CollaborativeFilte
     public static final boolean DATA_SAFE_CALL_BY_REFERENCE = true;
     
     public static final String SHORT_METHOD_NAME = "CoFlt";
+    
+    private static final int BLOCKS_PER_THREAD = 8;
 
    
     public static class ModelParameters extends BaseMLrecommender.ModelParameters {
@@ -63,7 +64,15 @@ public class CollaborativeFiltering extends BaseMLrecommender<CollaborativeFilte
         
         @BigDataStructureMarker
         @Transient
-        private Map<List<Object>, Double> similarities; //the similarity map among observations
+        private Map<Integer, Object> items; //the items of the training data. The position of the record is the id of its item
+        
+        @BigDataStructureMarker
+        @Transient
+        private Map<Object, int[]> neighbourIds; //the ids of the neighbours of every item sorted by descending similarity
+        
+        @BigDataStructureMarker
+        @Transient
+        private Map<Object, double[]> neighbourSimilarities; //the similarities of the neighbours of every item, in the order of the neighbourIds
 
         
         @Override
@@ -73,7 +82,9 @@ public class CollaborativeFiltering extends BaseMLrecommender<CollaborativeFilte
             BigDataStructureFactory.MapType mapType = memoryConfiguration.getMapType();
             int LRUsize = memoryConfiguration.getLRUsize();
             
-            similarities = bdsf.getMap("similarities", mapType, LRUsize);
+            items = bdsf.getMap("items", mapType, LRUsize);
+            neighbourIds = bdsf.getMap("neighbourIds", mapType, LRUsize);
+            neighbourSimilarities = bdsf.getMap("neighbourSimilarities", mapType, LRUsize);
         }
         
         
@@ -95,12 +106,28 @@ public class CollaborativeFiltering extends BaseMLrecommender<CollaborativeFilte
             this.d = d;
         }
 
-        public Map<List<Object>, Double> getSimilarities() {
-            return similarities;
+        public Map<Integer, Object> getItems() {
+            return items;
+        }
+
+        public void setItems(Map<Integer, Object> items) {
+            this.items = items;
+        }
+
+        public Map<Object, int[]> getNeighbourIds() {
+            return neighbourIds;
+        }
+
+        public void setNeighbourIds(Map<Object, int[]> neighbourIds) {
+            this.neighbourIds = neighbourIds;
+        }
+
+        public Map<Object, double[]> getNeighbourSimilarities() {
+            return neighbourSimilarities;
         }
 
-        public void setSimilarities(Map<List<Object>, Double> similarities) {
-            this.similarities = similarities;
+        public void setNeighbourSimilarities(Map<Object, double[]> neighbourSimilarities) {
+            this.neighbourSimilarities = neighbourSimilarities;
         }
 
         
@@ -115,6 +142,10 @@ public class CollaborativeFiltering extends BaseMLrecommender<CollaborativeFilte
         }
         
         private SimilarityMeasure similarityMethod = SimilarityMeasure.EUCLIDIAN;
+        
+        private int maxNeighbours = 0; //the number of most similar items kept for every item. 0 keeps all of them
+        
+        private double similarityThreshold = 0.0; //only the items with larger similarity are kept as neighbours
 
         public SimilarityMeasure getSimilarityMethod() {
             return similarityMethod;
@@ -124,6 +155,26 @@ public class CollaborativeFiltering extends BaseMLrecommender<CollaborativeFilte
             this.similarityMethod = similarityMethod;
         }
 
+        public int getMaxNeighbours() {
+            return maxNeighbours;
+        }
+
+        public void setMaxNeighbours(int maxNeighbours) {
+            if(maxNeighbours<0) {
+                throw new IllegalArgumentException("The number of neighbours can not be negative.");
+            }
+            this.maxNeighbours = maxNeighbours;
+        }
+
+
+        public double getSimilarityThreshold() {
+            return similarityThreshold;
+        }
+
+        public void setSimilarityThreshold(double similarityThreshold) {
+            this.similarityThreshold = similarityThreshold;
+        }
+
     }
     
 
@@ -143,39 +194,101 @@ public class CollaborativeFiltering extends BaseMLrecommender<CollaborativeFilte
         int d = trainingData.getColumnSize();
         
         ModelParameters modelParameters = knowledgeBase.getModelParameters();
+        TrainingParameters trainingParameters = knowledgeBase.getTrainingParameters();
         
         //initialization
         modelParameters.setN(n);
         modelParameters.setD(d);
         
-        //calculate similarity matrix
-        Map<List<Object>, Double> similarities = modelParameters.getSimilarities();
-        for(Record r1 : trainingData) {
-            for(Record r2: trainingData) {
-                Object y1 = r1.getY();
-                Object y2 = r2.getY();
-                
-                if(Objects.equals(y1, y2)) {
+        Map<Integer, Object> items = modelParameters.getItems();
+        
+        //the ratings of every item are stored in compressed rows with the ids of their users
+        IntegerDictionary userDictionary = new IntegerDictionary(new HashMap<Object, Integer>());
+        int[] itemOffsets = new int[n+1];
+        int[] itemUserIds = new int[Math.max(d, 16)];
+        double[] itemRatings = new double[itemUserIds.length];
+        for(Record r : trainingData) {
+            int itemId = r.getId();
+            items.put(itemId, r.getY());
+            
+            int position = itemOffsets[itemId];
+            for(Map.Entry<Object, Object> entry : r.getX().entrySet()) {
+                Double rating = Dataset.toDouble(entry.getValue());
+                if(rating==null) {
                     continue;
                 }
                 
-                List<Object> tkp = Arrays.asList(y1, y2);
-                if(similarities.containsKey(tkp)) {
-                    continue;
+                if(position==itemUserIds.length) {
+                    itemUserIds = Arrays.copyOf(itemUserIds, 2*position);
+                    itemRatings = Arrays.copyOf(itemRatings, 2*position);
                 }
-                
-                double similarity = calculateSimilarity(r1, r2);
-                if(similarity>0) {
-                    similarities.put(tkp, similarity);
-                    similarities.put(Arrays.asList(y2, y1), similarity); //add also for the reverse key because similarity is symmetric
+                itemUserIds[position] = userDictionary.intern(entry.getKey());
+                itemRatings[position] = rating;
+                ++position;
+            }
+            itemOffsets[itemId+1] = position;
+        }
+        
+        final PairwiseSimilarities pairwiseSimilarities = new PairwiseSimilarities(itemOffsets, itemUserIds, itemRatings, userDictionary.size(), trainingParameters.getSimilarityMethod(), trainingParameters.getSimilarityThreshold());
+        itemUserIds = null;
+        itemRatings = null;
+        
+        final TopNeighbours[] topNeighbours = new TopNeighbours[n];
+        for(int itemId=0;itemId<n;++itemId) {
+            topNeighbours[itemId] = new TopNeighbours(trainingParameters.getMaxNeighbours());
+        }
+        
+        //calculate the upper triangle of the similarity matrix. The rows are split in blocks which are processed concurrently
+        if(ConcurrencyConfiguration.isParallelized() && n>1) {
+            ExecutorService executorService = ConcurrencyConfiguration.newExecutorService();
+            try {
+                //the rows have decreasing costs, so the blocks are many more than the threads to balance the load
+                int[] boundaries = ParallelFunctions.partition(n, BLOCKS_PER_THREAD*ConcurrencyConfiguration.getMaxNumberOfThreads());
+                List<Callable<Void>> tasks = new ArrayList<>(boundaries.length-1);
+                for(int p=0;p<boundaries.length-1;++p) {
+                    final int from = boundaries[p];
+                    final int to = boundaries[p+1];
+                    tasks.add(new Callable<Void>() {
+                        @Override
+                        public Void call() {
+                            pairwiseSimilarities.calculateRows(from, to, topNeighbours);
+                            return null;
+                        }
+                    });
                 }
+                ParallelFunctions.invokeAll(executorService, tasks);
+            }
+            finally {
+                executorService.shutdown();
+            }
+        }
+        else {
+            pairwiseSimilarities.calculateRows(0, n, topNeighbours);
+        }
+        
+        //store the neighbours of every item sorted by similarity
+        Map<Object, int[]> neighbourIds = modelParameters.getNeighbourIds();
+        Map<Object, double[]> neighbourSimilarities = modelParameters.getNeighbourSimilarities();
+        for(int itemId=0;itemId<n;++itemId) {
+            TopNeighbours neighbours = topNeighbours[itemId];
+            topNeighbours[itemId] = null;
+            if(neighbours.size()==0) {
+                continue;
             }
+            
+            neighbours.sort();
+            Object item = items.get(itemId);
+            neighbourIds.put(item, neighbours.getIds());
+            neighbourSimilarities.put(item, neighbours.getSimilarities());
         }
     }
 
     @Override
     protected void predictDataset(Dataset newData) {
-        Map<List<Object>, Double> similarities = knowledgeBase.getModelParameters().getSimilarities();
+        ModelParameters modelParameters = knowledgeBase.getModelParameters();
+        Map<Integer, Object> items = modelParameters.getItems();
+        Map<Object, int[]> neighbourIds = modelParameters.getNeighbourIds();
+        Map<Object, double[]> neighbourSimilarities = modelParameters.getNeighbourSimilarities();
         
         //generate recommendation for each record in the list
         for(Record r : newData) {
@@ -186,15 +299,15 @@ public class CollaborativeFiltering extends BaseMLrecommender<CollaborativeFilte
                 Object row = entry.getKey();
                 Double score = Dataset.toDouble(entry.getValue());
                 
-                //Since we can't use 2D Maps due to mongo, we are forced to loop
-                //the whole similarities map which is very inefficient.
-                for(Map.Entry<List<Object>, Double> entry2 : similarities.entrySet()) {
-                    List<Object> tpk = entry2.getKey();
-                    if(!tpk.get(0).equals(row)) {
-                        continue; //filter the irrelevant two pair key combinations that do not include the row
-                    }
-                    
-                    Object column = tpk.get(1);
+                //only the neighbours of the rated items are visited
+                int[] ids = neighbourIds.get(row);
+                if(ids==null) {
+                    continue;
+                }
+                double[] similarities = neighbourSimilarities.get(row);
+                
+                for(int i=0;i<ids.length;++i) {
+                    Object column = items.get(ids[i]);
                     if(r.getX().containsKey(column)) {
                         continue; // they already rated this
                     }
@@ -206,7 +319,7 @@ public class CollaborativeFiltering extends BaseMLrecommender<CollaborativeFilte
                         previousSimsumValue=0.0;
                     }
                     
-                    Double similarity = entry2.getValue();
+                    double similarity = similarities[i];
                     
                     recommendations.put(column, previousRecValue+similarity*score);
                     simSums.put(column, previousSimsumValue+similarity);
@@ -230,48 +343,285 @@ public class CollaborativeFiltering extends BaseMLrecommender<CollaborativeFilte
         }
     }
 
-    private double calculateSimilarity(Record r1, Record r2) {        
-        TrainingParameters trainingParameters = knowledgeBase.getTrainingParameters();
+    /**
+     * Calculates the similarities between the items which have common users. 
+     * An inverted index over the users provides the co-rated items of every 
+     * item, so the pairs without common users are never visited. The 
+     * sufficient statistics of the pairs of a row are accumulated in primitive
+     * arrays indexed by the id of the other item.
+     */
+    private static class PairwiseSimilarities {
+        private final int[] itemOffsets;
+        private final int[] itemUserIds;
+        private final double[] itemRatings;
+        
+        private final int[] userOffsets;
+        private final int[] userItemIds;
+        private final double[] userRatings;
+        
+        private final double[] itemNorms; //the L1 or the squared L2 norms of the items, depending on the similarity
         
-        double similarity = 0.0;
-        TrainingParameters.SimilarityMeasure similarityMethod = trainingParameters.getSimilarityMethod();
-        if(similarityMethod==TrainingParameters.SimilarityMeasure.EUCLIDIAN) {
-            similarity = Distance.euclidean(r1.getX(), r2.getX());
+        private final TrainingParameters.SimilarityMeasure similarityMethod;
+        private final double similarityThreshold;
+        
+        public PairwiseSimilarities(int[] itemOffsets, int[] itemUserIds, double[] itemRatings, int numberOfUsers, TrainingParameters.SimilarityMeasure similarityMethod, double similarityThreshold) {
+            this.itemOffsets = itemOffsets;
+            this.itemUserIds = itemUserIds;
+            this.itemRatings = itemRatings;
+            this.similarityMethod = similarityMethod;
+            this.similarityThreshold = similarityThreshold;
             
-            similarity = 1.0/(1.0+similarity); //convert distance into a similarity measure
-        }
-        else if(similarityMethod==TrainingParameters.SimilarityMeasure.MANHATTAN) {
-            similarity = Distance.manhattan(r1.getX(), r2.getX());
+            int n = itemOffsets.length-1;
             
-            similarity = 1.0/(1.0+similarity); //convert distance into a similarity measure
+            //build the inverted index. The items of every user are in ascending order of id
+            userOffsets = new int[numberOfUsers+1];
+            for(int i=0;i<itemOffsets[n];++i) {
+                ++userOffsets[itemUserIds[i]+1];
+            }
+            for(int userId=0;userId<numberOfUsers;++userId) {
+                userOffsets[userId+1] += userOffsets[userId];
+            }
+            userItemIds = new int[itemOffsets[n]];
+            userRatings = new double[itemOffsets[n]];
+            int[] positions = Arrays.copyOf(userOffsets, numberOfUsers);
+            for(int itemId=0;itemId<n;++itemId) {
+                for(int i=itemOffsets[itemId];i<itemOffsets[itemId+1];++i) {
+                    int position = positions[itemUserIds[i]]++;
+                    userItemIds[position] = itemId;
+                    userRatings[position] = itemRatings[i];
+                }
+            }
+            
+            itemNorms = new double[n];
+            for(int itemId=0;itemId<n;++itemId) {
+                double norm = 0.0;
+                for(int i=itemOffsets[itemId];i<itemOffsets[itemId+1];++i) {
+                    double rating = itemRatings[i];
+                    norm += (similarityMethod==TrainingParameters.SimilarityMeasure.MANHATTAN)?Math.abs(rating):rating*rating;
+                }
+                itemNorms[itemId] = norm;
+            }
         }
-        else if(similarityMethod==TrainingParameters.SimilarityMeasure.PEARSONS_CORRELATION) {
+        
+        /**
+         * Calculates the similarities of the items of the rows [from, to) with 
+         * all the items of larger id and offers them to the neighbours of both
+         * items.
+         * 
+         * @param from
+         * @param to
+         * @param topNeighbours 
+         */
+        public void calculateRows(int from, int to, TopNeighbours[] topNeighbours) {
+            int n = itemOffsets.length-1;
             
+            int[] commonUsers = new int[n];
+            double[] sumX = new double[n];
+            double[] sumY = new double[n];
+            double[] sumXX = new double[n];
+            double[] sumYY = new double[n];
+            double[] sumXY = new double[n];
+            int[] coRatedItemIds = new int[n];
             
-            //extract the commonColumns to ensure that the order of the data will be the same for both records
-            Set<Object> commonColumns = new HashSet<>(r1.getX().keySet());
-            commonColumns.addAll(r2.getX().keySet());
+            for(int itemId=from;itemId<to;++itemId) {
+                int coRatedItems = 0;
+                
+                //accumulate the statistics of the pairs through the users of the item
+                for(int i=itemOffsets[itemId];i<itemOffsets[itemId+1];++i) {
+                    int userId = itemUserIds[i];
+                    double x = itemRatings[i];
+                    
+                    for(int j=userOffsets[userId+1]-1;j>=userOffsets[userId];--j) {
+                        int otherItemId = userItemIds[j];
+                        if(otherItemId<=itemId) {
+                            break; //the items of the user are sorted and only the upper triangle is calculated
+                        }
+                        double y = userRatings[j];
+                        
+                        if(commonUsers[otherItemId]==0) {
+                            coRatedItemIds[coRatedItems++] = otherItemId;
+                        }
+                        ++commonUsers[otherItemId];
+                        
+                        if(similarityMethod==TrainingParameters.SimilarityMeasure.MANHATTAN) {
+                            //the distance of the co-rated ratings replaces their contribution to the norms
+                            sumXY[otherItemId] += Math.abs(x-y)-Math.abs(x)-Math.abs(y);
+                        }
+                        else {
+                            sumX[otherItemId] += x;
+                            sumY[otherItemId] += y;
+                            sumXX[otherItemId] += x*x;
+                            sumYY[otherItemId] += y*y;
+                            sumXY[otherItemId] += x*y;
+                        }
+                    }
+                }
+                
+                for(int k=0;k<coRatedItems;++k) {
+                    int otherItemId = coRatedItemIds[k];
+                    
+                    double similarity = calculateSimilarity(itemId, otherItemId, commonUsers[otherItemId], sumX[otherItemId], sumY[otherItemId], sumXX[otherItemId], sumYY[otherItemId], sumXY[otherItemId]);
+                    if(similarity>similarityThreshold) { //this is also false for NaN
+                        topNeighbours[itemId].offer(otherItemId, similarity);
+                        topNeighbours[otherItemId].offer(itemId, similarity);
+                    }
+                    
+                    commonUsers[otherItemId] = 0;
+                    sumX[otherItemId] = 0.0;
+                    sumY[otherItemId] = 0.0;
+                    sumXX[otherItemId] = 0.0;
+                    sumYY[otherItemId] = 0.0;
+                    sumXY[otherItemId] = 0.0;
+                }
+            }
+        }
+        
+        private double calculateSimilarity(int itemId, int otherItemId, int m, double sumX, double sumY, double sumXX, double sumYY, double sumXY) {
+            double similarity;
+            if(similarityMethod==TrainingParameters.SimilarityMeasure.EUCLIDIAN) {
+                //the missing ratings are zeros, so the distance is estimated from the norms and the dot product of the co-rated ratings
+                double distance = Math.sqrt(Math.max(itemNorms[itemId]+itemNorms[otherItemId]-2.0*sumXY, 0.0));
+                
+                similarity = 1.0/(1.0+distance); //convert distance into a similarity measure
+            }
+            else if(similarityMethod==TrainingParameters.SimilarityMeasure.MANHATTAN) {
+                double distance = Math.max(itemNorms[itemId]+itemNorms[otherItemId]+sumXY, 0.0);
+                
+                similarity = 1.0/(1.0+distance); //convert distance into a similarity measure
+            }
+            else if(similarityMethod==TrainingParameters.SimilarityMeasure.PEARSONS_CORRELATION) {
+                if(m<=2) {
+                    return 0.0; //the correlation is not defined for less than 3 common users
+                }
+                
+                //estimate the pearson's correlation on the co-rated ratings
+                double covariance = sumXY-sumX*sumY/m;
+                double varianceX = sumXX-sumX*sumX/m;
+                double varianceY = sumYY-sumY*sumY/m;
+                
+                similarity = covariance/Math.sqrt(varianceX*varianceY);
+            }
+            else { 
+                throw new RuntimeException("Unsupported Distance method");
+            }
             
-            //create the FlatDataLists with the data of each record
-            FlatDataList flatDataList1 = new FlatDataList();
-            FlatDataList flatDataList2 = new FlatDataList();
-            for(Object column : commonColumns) {
-                flatDataList1.add(Dataset.toDouble(r1.getX().get(column)));
-                flatDataList2.add(Dataset.toDouble(r2.getX().get(column)));
+            return similarity;
+        }
+    }
+    
+    /**
+     * Keeps the most similar neighbours of an item in a min-heap of primitive 
+     * arrays. If the capacity is 0 all the offered neighbours are kept. Ties 
+     * are broken in favour of the smaller ids, so the kept neighbours do not 
+     * depend on the order of the offers. The offers can be made concurrently.
+     */
+    private static class TopNeighbours {
+        private final int capacity;
+        private int[] ids;
+        private double[] similarities;
+        private int size = 0;
+        
+        public TopNeighbours(int capacity) {
+            this.capacity = capacity;
+            int initialSize = (capacity>0)?Math.min(capacity, 16):16;
+            ids = new int[initialSize];
+            similarities = new double[initialSize];
+        }
+        
+        public int size() {
+            return size;
+        }
+        
+        public synchronized void offer(int id, double similarity) {
+            if(capacity>0 && size==capacity) {
+                if(isLess(id, similarity, 0)) {
+                    return; //less similar than all the kept neighbours
+                }
+                ids[0] = id;
+                similarities[0] = similarity;
+                siftDown(0, size);
+                return;
             }
             
-            TransposeDataList transposeDataList = new TransposeDataList();
-            transposeDataList.put(1, flatDataList1);
-            transposeDataList.put(2, flatDataList2);
+            if(size==ids.length) {
+                ids = Arrays.copyOf(ids, 2*size);
+                similarities = Arrays.copyOf(similarities, 2*size);
+            }
             
-            //estimate the pearson's correlation
-            similarity = PearsonCorrelation.calculateCorrelation(transposeDataList);
+            //sift up
+            int position = size++;
+            while(position>0) {
+                int parent = (position-1)/2;
+                if(!isLess(id, similarity, parent)) {
+                    break;
+                }
+                ids[position] = ids[parent];
+                similarities[position] = similarities[parent];
+                position = parent;
+            }
+            ids[position] = id;
+            similarities[position] = similarity;
+        }
+        
+        /**
+         * Sorts the neighbours by descending similarity. The heap can not be 
+         * used after this call.
+         */
+        public void sort() {
+            for(int end=size-1;end>0;--end) {
+                swap(0, end);
+                siftDown(0, end);
+            }
         }
-        else { 
-            throw new RuntimeException("Unsupported Distance method");
+        
+        public int[] getIds() {
+            return Arrays.copyOf(ids, size);
         }
         
-        return similarity;
-    } 
+        public double[] getSimilarities() {
+            return Arrays.copyOf(similarities, size);
+        }
+        
+        private void siftDown(int position, int end) {
+            while(true) {
+                int smallest = position;
+                int left = 2*position+1;
+                int right = left+1;
+                if(left<end && isLess(ids[left], similarities[left], smallest)) {
+                    smallest = left;
+                }
+                if(right<end && isLess(ids[right], similarities[right], smallest)) {
+                    smallest = right;
+                }
+                if(smallest==position) {
+                    return;
+                }
+                swap(position, smallest);
+                position = smallest;
+            }
+        }
+        
+        /**
+         * Checks whether the neighbour (id, similarity) is less similar than
+         * the neighbour at the position of the heap.
+         * 
+         * @param id
+         * @param similarity
+         * @param position
+         * @return 
+         */
+        private boolean isLess(int id, double similarity, int position) {
+            return similarity<similarities[position] || (similarity==similarities[position] && id>ids[position]);
+        }
+        
+        private void swap(int i, int j) {
+            int id = ids[i];
+            ids[i] = ids[j];
+            ids[j] = id;
+            double similarity = similarities[i];
+            similarities[i] = similarities[j];
+            similarities[j] = similarity;
+        }
+    }
     
 }
@@ -0,0 +1,469 @@
+/*
+ * Copyright (C) 2014 Vasilis Vryniotis <bbriniotis at datumbox.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.datumbox.framework.machinelearning.recommendersystem;
+
+import com.datumbox.common.dataobjects.AssociativeArray;
+import com.datumbox.common.dataobjects.Dataset;
+import com.datumbox.common.dataobjects.IntegerDictionary;
+import com.datumbox.common.dataobjects.Record;
+import com.datumbox.common.persistentstorage.factories.BigDataStructureFactory;
+import com.datumbox.common.persistentstorage.interfaces.BigDataStructureMarker;
+import com.datumbox.common.utilities.MapFunctions;
+import com.datumbox.common.utilities.ParallelFunctions;
+import com.datumbox.common.utilities.RandomValue;
+import com.datumbox.configuration.ConcurrencyConfiguration;
+import com.datumbox.configuration.GeneralConfiguration;
+import com.datumbox.configuration.MemoryConfiguration;
+import com.datumbox.framework.machinelearning.common.bases.mlmodels.BaseMLrecommender;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import org.apache.commons.math3.linear.Array2DRowRealMatrix;
+import org.apache.commons.math3.linear.ArrayRealVector;
+import org.apache.commons.math3.linear.CholeskyDecomposition;
+import org.mongodb.morphia.annotations.Transient;
+
+/**
+ * Latent factor recommender which factorizes the rating matrix with 
+ * Alternating Least Squares and weighted-lambda regularization. As in the
+ * CollaborativeFiltering, every training record is an item with the ratings of
+ * the users and every record of the predicted data is a profile with the 
+ * ratings of a user on items. The profile is folded into the model by solving
+ * for its factors, and all the items which are not rated are scored with the 
+ * dot products of the factors.
+ * 
+ * References: Zhou Y., Wilkinson D., Schreiber R., Pan R. Large-scale Parallel
+ * Collaborative Filtering for the Netflix Prize http://www.grappa.univ-lille3.fr/~mary/cours/stats/centrale/reco/paper/MatrixFactorizationALS.pdf
+ * 
+ * @author Vasilis Vryniotis <bbriniotis at datumbox.com>
+ */
+public class MatrixFactorization extends BaseMLrecommender<MatrixFactorization.ModelParameters, MatrixFactorization.TrainingParameters> {
+
+    /**
+     * The internalDataCollections that are passed in this function are NOT modified after the analysis. 
+     * You can safely pass directly the internalDataCollection without worrying about having them modified.
+     */
+    public static final boolean DATA_SAFE_CALL_BY_REFERENCE = true;
+    
+    public static final String SHORT_METHOD_NAME = "MxFct";
+
+   
+    public static class ModelParameters extends BaseMLrecommender.ModelParameters {
+        
+        private static final long serialVersionUID = 1L;
+        
+        //number of observations used for training
+        private Integer n =0 ;
+        
+        //number of features in data. IN DATA not in the algorithm.
+        private Integer d =0 ;
+        
+        //the average of all the ratings
+        private double globalMean = 0.0;
+        
+        @BigDataStructureMarker
+        @Transient
+        private Map<Object, double[]> itemFactors; //the latent factors of every item
+
+        
+        @Override
+        public void bigDataStructureInitializer(BigDataStructureFactory bdsf, MemoryConfiguration memoryConfiguration) {
+            super.bigDataStructureInitializer(bdsf, memoryConfiguration);
+            
+            BigDataStructureFactory.MapType mapType = memoryConfiguration.getMapType();
+            int LRUsize = memoryConfiguration.getLRUsize();
+            
+            itemFactors = bdsf.getMap("itemFactors", mapType, LRUsize);
+        }
+        
+        
+        //Getters / Setters
+        
+        public Integer getN() {
+            return n;
+        }
+
+        public void setN(Integer n) {
+            this.n = n;
+        }
+
+        public Integer getD() {
+            return d;
+        }
+
+        public void setD(Integer d) {
+            this.d = d;
+        }
+
+        public double getGlobalMean() {
+            return globalMean;
+        }
+
+        public void setGlobalMean(double globalMean) {
+            this.globalMean = globalMean;
+        }
+
+        public Map<Object, double[]> getItemFactors() {
+            return itemFactors;
+        }
+
+        public void setItemFactors(Map<Object, double[]> itemFactors) {
+            this.itemFactors = itemFactors;
+        }
+        
+    }
+    
+    public static class TrainingParameters extends BaseMLrecommender.TrainingParameters {
+        
+        private static final long serialVersionUID = 1L;
+        
+        private int numberOfFactors = 10;
+        
+        private int maxIterations = 10;
+        
+        private double regularization = 0.05; //multiplied by the number of ratings of every user and item
+
+        public int getNumberOfFactors() {
+            return numberOfFactors;
+        }
+
+        public void setNumberOfFactors(int numberOfFactors) {
+            if(numberOfFactors<=0) {
+                throw new IllegalArgumentException("The number of factors must be positive.");
+            }
+            this.numberOfFactors = numberOfFactors;
+        }
+
+        public int getMaxIterations() {
+            return maxIterations;
+        }
+
+        public void setMaxIterations(int maxIterations) {
+            this.maxIterations = maxIterations;
+        }
+
+        public double getRegularization() {
+            return regularization;
+        }
+
+        public void setRegularization(double regularization) {
+            if(regularization<=0.0) {
+                throw new IllegalArgumentException("The regularization must be positive.");
+            }
+            this.regularization = regularization;
+        }
+
+    }
+    
+
+    public MatrixFactorization(String dbName) {
+        super(dbName, MatrixFactorization.ModelParameters.class, MatrixFactorization.TrainingParameters.class);
+    } 
+
+    @Override
+    public final String shortMethodName() {
+        return SHORT_METHOD_NAME;
+    } 
+    
+
+    @Override
+    protected void estimateModelParameters(Dataset trainingData) {
+        int n = trainingData.size();
+        int d = trainingData.getColumnSize();
+        
+        ModelParameters modelParameters = knowledgeBase.getModelParameters();
+        TrainingParameters trainingParameters = knowledgeBase.getTrainingParameters();
+        
+        //initialization
+        modelParameters.setN(n);
+        modelParameters.setD(d);
+        
+        int k = trainingParameters.getNumberOfFactors();
+        double regularization = trainingParameters.getRegularization();
+        
+        //the ratings are stored in compressed rows both per item and per user
+        IntegerDictionary userDictionary = new IntegerDictionary(new HashMap<Object, Integer>());
+        Object[] items = new Object[n];
+        int[] itemOffsets = new int[n+1];
+        int[] itemUserIds = new int[Math.max(d, 16)];
+        double[] itemRatings = new double[itemUserIds.length];
+        double globalMean = 0.0;
+        for(Record r : trainingData) {
+            int itemId = r.getId();
+            items[itemId] = r.getY();
+            
+            int position = itemOffsets[itemId];
+            for(Map.Entry<Object, Object> entry : r.getX().entrySet()) {
+                Double rating = Dataset.toDouble(entry.getValue());
+                if(rating==null) {
+                    continue;
+                }
+                
+                if(position==itemUserIds.length) {
+                    itemUserIds = Arrays.copyOf(itemUserIds, 2*position);
+                    itemRatings = Arrays.copyOf(itemRatings, 2*position);
+                }
+                itemUserIds[position] = userDictionary.intern(entry.getKey());
+                itemRatings[position] = rating;
+                globalMean += rating;
+                ++position;
+            }
+            itemOffsets[itemId+1] = position;
+        }
+        
+        int totalRatings = itemOffsets[n];
+        if(totalRatings>0) {
+            globalMean /= totalRatings;
+        }
+        modelParameters.setGlobalMean(globalMean);
+        
+        //the factors are fitted on the deviations from the global mean
+        for(int i=0;i<totalRatings;++i) {
+            itemRatings[i] -= globalMean;
+        }
+        
+        int numberOfUsers = userDictionary.size();
+        int[] userOffsets = new int[numberOfUsers+1];
+        for(int i=0;i<totalRatings;++i) {
+            ++userOffsets[itemUserIds[i]+1];
+        }
+        for(int userId=0;userId<numberOfUsers;++userId) {
+            userOffsets[userId+1] += userOffsets[userId];
+        }
+        int[] userItemIds = new int[totalRatings];
+        double[] userRatings = new double[totalRatings];
+        int[] positions = Arrays.copyOf(userOffsets, numberOfUsers);
+        for(int itemId=0;itemId<n;++itemId) {
+            for(int i=itemOffsets[itemId];i<itemOffsets[itemId+1];++i) {
+                int position = positions[itemUserIds[i]]++;
+                userItemIds[position] = itemId;
+                userRatings[position] = itemRatings[i];
+            }
+        }
+        positions = null;
+        
+        //the factors of the row r are stored in [r*k, (r+1)*k)
+        double[] P = new double[numberOfUsers*k];
+        double[] Q = new double[n*k];
+        Random rnd = RandomValue.getRandomGenerator();
+        for(int i=0;i<Q.length;++i) {
+            Q[i] = 0.1*rnd.nextGaussian();
+        }
+        
+        ExecutorService executorService = null;
+        if(ConcurrencyConfiguration.isParallelized()) {
+            executorService = ConcurrencyConfiguration.newExecutorService();
+        }
+        try {
+            int maxIterations = trainingParameters.getMaxIterations();
+            for(int iteration=0;iteration<maxIterations;++iteration) {
+                if(GeneralConfiguration.DEBUG) {
+                    System.out.println("Iteration "+iteration);
+                }
+                
+                //fix the item factors and solve for the users, then the opposite
+                solveRows(userOffsets, userItemIds, userRatings, Q, P, k, regularization, executorService);
+                solveRows(itemOffsets, itemUserIds, itemRatings, P, Q, k, regularization, executorService);
+            }
+        }
+        finally {
+            if(executorService!=null) {
+                executorService.shutdown();
+            }
+        }
+        
+        //only the item factors are stored. The users are folded in during the prediction
+        Map<Object, double[]> itemFactors = modelParameters.getItemFactors();
+        for(int itemId=0;itemId<n;++itemId) {
+            itemFactors.put(items[itemId], Arrays.copyOfRange(Q, itemId*k, (itemId+1)*k));
+        }
+    }
+
+    @Override
+    protected void predictDataset(Dataset newData) {
+        ModelParameters modelParameters = knowledgeBase.getModelParameters();
+        double globalMean = modelParameters.getGlobalMean();
+        double regularization = knowledgeBase.getTrainingParameters().getRegularization();
+        int k = knowledgeBase.getTrainingParameters().getNumberOfFactors();
+        
+        //the factors of all the items are read once and they are scored for every profile
+        Map<Object, double[]> itemFactors = modelParameters.getItemFactors();
+        Object[] items = new Object[itemFactors.size()];
+        double[] Q = new double[itemFactors.size()*k];
+        int itemId = 0;
+        for(Map.Entry<Object, double[]> entry : itemFactors.entrySet()) {
+            items[itemId] = entry.getKey();
+            System.arraycopy(entry.getValue(), 0, Q, itemId*k, k);
+            ++itemId;
+        }
+        
+        double[] A = new double[k*k];
+        double[] b = new double[k];
+        double[] p = new double[k];
+        for(Record r : newData) {
+            //fold in the profile by solving for its factors
+            Arrays.fill(A, 0.0);
+            Arrays.fill(b, 0.0);
+            int ratedItems = 0;
+            for(Map.Entry<Object, Object> entry : r.getX().entrySet()) {
+                double[] q = itemFactors.get(entry.getKey());
+                Double rating = Dataset.toDouble(entry.getValue());
+                if(q==null || rating==null) {
+                    continue;
+                }
+                
+                addToNormalEquations(q, 0, rating-globalMean, k, A, b);
+                ++ratedItems;
+            }
+            
+            if(ratedItems==0) {
+                continue; //none of the rated items is known
+            }
+            solve(A, b, regularization*ratedItems, k, p, 0);
+            
+            Map<Object, Object> recommendations = new HashMap<>();
+            for(itemId=0;itemId<items.length;++itemId) {
+                Object column = items[itemId];
+                if(r.getX().containsKey(column)) {
+                    continue; // they already rated this
+                }
+                
+                double score = globalMean;
+                for(int f=0;f<k;++f) {
+                    score += p[f]*Q[itemId*k+f];
+                }
+                recommendations.put(column, score);
+            }
+            
+            if(!recommendations.isEmpty()) {
+                //sort recommendation by popularity
+                recommendations = MapFunctions.sortNumberMapByValueDescending(recommendations);
+                r.setY(recommendations.keySet().iterator().next());
+                r.setYPredictedProbabilities(new AssociativeArray(recommendations));
+            }
+        }
+    }
+    
+    /**
+     * Solves the regularized least squares problems of all the rows of the 
+     * compressed matrix, keeping the factors of the columns fixed. The rows 
+     * are split in ranges which are solved concurrently if the executorService
+     * is not null.
+     * 
+     * @param offsets
+     * @param columnIds
+     * @param ratings
+     * @param columnFactors
+     * @param rowFactors
+     * @param k
+     * @param regularization
+     * @param executorService 
+     */
+    private static void solveRows(final int[] offsets, final int[] columnIds, final double[] ratings, final double[] columnFactors, final double[] rowFactors, final int k, final double regularization, ExecutorService executorService) {
+        int rows = offsets.length-1;
+        if(executorService==null) {
+            solveRows(offsets, columnIds, ratings, columnFactors, rowFactors, k, regularization, 0, rows);
+            return;
+        }
+        
+        int[] boundaries = ParallelFunctions.partition(rows, ConcurrencyConfiguration.getMaxNumberOfThreads());
+        List<Callable<Void>> tasks = new ArrayList<>(boundaries.length-1);
+        for(int p=0;p<boundaries.length-1;++p) {
+            final int from = boundaries[p];
+            final int to = boundaries[p+1];
+            tasks.add(new Callable<Void>() {
+                @Override
+                public Void call() {
+                    solveRows(offsets, columnIds, ratings, columnFactors, rowFactors, k, regularization, from, to);
+                    return null;
+                }
+            });
+        }
+        ParallelFunctions.invokeAll(executorService, tasks);
+    }
+    
+    private static void solveRows(int[] offsets, int[] columnIds, double[] ratings, double[] columnFactors, double[] rowFactors, int k, double regularization, int from, int to) {
+        double[] A = new double[k*k];
+        double[] b = new double[k];
+        for(int row=from;row<to;++row) {
+            int start = offsets[row];
+            int end = offsets[row+1];
+            if(start==end) {
+                Arrays.fill(rowFactors, row*k, (row+1)*k, 0.0);
+                continue;
+            }
+            
+            Arrays.fill(A, 0.0);
+            Arrays.fill(b, 0.0);
+            for(int i=start;i<end;++i) {
+                addToNormalEquations(columnFactors, columnIds[i]*k, ratings[i], k, A, b);
+            }
+            solve(A, b, regularization*(end-start), k, rowFactors, row*k);
+        }
+    }
+    
+    /**
+     * Adds the contribution of a rating to the normal equations A*x=b.
+     * 
+     * @param factors
+     * @param offset
+     * @param rating
+     * @param k
+     * @param A
+     * @param b 
+     */
+    private static void addToNormalEquations(double[] factors, int offset, double rating, int k, double[] A, double[] b) {
+        for(int f1=0;f1<k;++f1) {
+            double q1 = factors[offset+f1];
+            b[f1] += rating*q1;
+            for(int f2=0;f2<=f1;++f2) {
+                A[f1*k+f2] += q1*factors[offset+f2];
+            }
+        }
+    }
+    
+    /**
+     * Solves the system (A+lambda*I)*x=b, where only the lower triangle of A is
+     * filled, and stores the solution in x[offset, offset+k).
+     * 
+     * @param A
+     * @param b
+     * @param lambda
+     * @param k
+     * @param x
+     * @param offset 
+     */
+    private static void solve(double[] A, double[] b, double lambda, int k, double[] x, int offset) {
+        double[][] matrix = new double[k][k];
+        for(int f1=0;f1<k;++f1) {
+            for(int f2=0;f2<f1;++f2) {
+                matrix[f1][f2] = A[f1*k+f2];
+                matrix[f2][f1] = A[f1*k+f2];
+            }
+            matrix[f1][f1] = A[f1*k+f1]+lambda;
+        }
+        
+        double[] solution = new CholeskyDecomposition(new Array2DRowRealMatrix(matrix, false)).getSolver().solve(new ArrayRealVector(b, false)).toArray();
+        System.arraycopy(solution, 0, x, offset, k);
+    }
+    
+}
@@ -19,17 +19,19 @@ package com.datumbox.framework.machinelearning.regression;
 import com.datumbox.framework.machinelearning.common.bases.basemodels.BaseLinearRegression;
 import com.datumbox.common.dataobjects.AssociativeArray;
 import com.datumbox.common.dataobjects.Dataset;
+import com.datumbox.common.dataobjects.IntegerDictionary;
 import com.datumbox.common.dataobjects.Record;
-import com.datumbox.common.persistentstorage.factories.BigDataStructureFactory;
-import com.datumbox.configuration.GeneralConfiguration;
-import com.datumbox.configuration.StorageConfiguration;
+import com.datumbox.common.dataobjects.SparseBatch;
+import com.datumbox.framework.machinelearning.common.dataobjects.MiniBatchTrainer;
+import com.datumbox.framework.machinelearning.common.interfaces.StreamTrainable;
+import java.util.HashMap;
 import java.util.Map;
 
 /**
  *
  * @author Vasilis Vryniotis <bbriniotis at datumbox.com>
  */
-public class NLMS extends BaseLinearRegression<NLMS.ModelParameters, NLMS.TrainingParameters, NLMS.ValidationMetrics> {
+public class NLMS extends BaseLinearRegression<NLMS.ModelParameters, NLMS.TrainingParameters, NLMS.ValidationMetrics> implements StreamTrainable {
     /*
     * Normalised Least Mean Squares Algorithm
     * References:
@@ -53,6 +55,9 @@ public class NLMS extends BaseLinearRegression<NLMS.ModelParameters, NLMS.Traini
     public static class TrainingParameters extends BaseLinearRegression.TrainingParameters {         
         private int totalIterations=1000; 
         private double learningRate=0.1;
+        private int batchSize=0; //0 for batch gradient descent, 1 for stochastic gradient descent
+        private MiniBatchTrainer.LearningRateSchedule learningRateSchedule=MiniBatchTrainer.LearningRateSchedule.BOLD_DRIVER;
+        private int patience=0; //the epochs without improvement on the held out data before stopping. 0 disables the early stopping
 
         public int getTotalIterations() {
             return totalIterations;
@@ -70,6 +75,30 @@ public class NLMS extends BaseLinearRegression<NLMS.ModelParameters, NLMS.Traini
             this.learningRate = learningRate;
         }
 
+        public int getBatchSize() {
+            return batchSize;
+        }
+
+        public void setBatchSize(int batchSize) {
+            this.batchSize = batchSize;
+        }
+
+        public MiniBatchTrainer.LearningRateSchedule getLearningRateSchedule() {
+            return learningRateSchedule;
+        }
+
+        public void setLearningRateSchedule(MiniBatchTrainer.LearningRateSchedule learningRateSchedule) {
+            this.learningRateSchedule = learningRateSchedule;
+        }
+
+        public int getPatience() {
+            return patience;
+        }
+
+        public void setPatience(int patience) {
+            this.patience = patience;
+        }
+
     } 
     
     
@@ -88,64 +117,48 @@ public class NLMS extends BaseLinearRegression<NLMS.ModelParameters, NLMS.Traini
     }
 
     @Override
-    protected void estimateModelParameters(Dataset trainingData) {
-        String tmpPrefix=StorageConfiguration.getTmpPrefix();
+    public void train(Iterable<Record> trainingStream, Iterable<Record> heldOutStream) {
+        checkStreamTraining();
         
-        int n = trainingData.size();
-        int d = trainingData.getColumnSize()+1;//plus one for the constant
+        //train the model to get the parameters
+        estimateModelParameters(trainingStream, heldOutStream);
         
+        completeStreamTraining();
+    }
+
+    @Override
+    protected void estimateModelParameters(Dataset trainingData) {
+        estimateModelParameters(trainingData, null);
+    }
+    
+    protected void estimateModelParameters(Iterable<Record> trainingStream, Iterable<Record> heldOutStream) {
         ModelParameters modelParameters = knowledgeBase.getModelParameters();
+        TrainingParameters trainingParameters = knowledgeBase.getTrainingParameters();
+        
+        //find the features. The constant has the id 0
+        Map<Object, Integer> featureIds = new HashMap<>();
+        IntegerDictionary featureDictionary = new IntegerDictionary(featureIds);
+        featureDictionary.intern(Dataset.constantColumnName);
+        int n = 0;
+        for(Record r : trainingStream) {
+            for(Object feature : r.getX().keySet()) {
+                featureDictionary.intern(feature);
+            }
+            ++n;
+        }
+        int d = featureDictionary.size(); //including the constant
         
         //initialization
         modelParameters.setN(n);
         modelParameters.setD(d);
         
-        
-        Map<Object, Double> thitas = modelParameters.getThitas();
-        
         //we initialize the thitas to zero for all features
-        thitas.put(Dataset.constantColumnName, 0.0);
-        for(Object feature : trainingData.getColumns().keySet()) {
-            thitas.put(feature, 0.0);
-        }
-        
-        TrainingParameters trainingParameters = knowledgeBase.getTrainingParameters();
-
-        double minError = Double.POSITIVE_INFINITY;
+        NLMSTrainer trainer = new NLMSTrainer(featureIds, n, trainingParameters);
+        double[] weights = trainer.train(trainingStream, heldOutStream, new double[d]);
         
-        double learningRate = trainingParameters.getLearningRate();
-        int totalIterations = trainingParameters.getTotalIterations();
-        BigDataStructureFactory bdsf = knowledgeBase.getBdsf();
-        for(int iteration=0;iteration<totalIterations;++iteration) {
-            
-            if(GeneralConfiguration.DEBUG) {
-                System.out.println("Iteration "+iteration);
-            }
-            
-            Map<Object, Double> newThitas = bdsf.getMap(tmpPrefix+"newThitas", knowledgeBase.getMemoryConfiguration().getMapType(), knowledgeBase.getMemoryConfiguration().getLRUsize());
-            
-            newThitas.putAll(thitas);
-            
-            batchGradientDescent(trainingData, newThitas, learningRate);
-            //stochasticGradientDescent(trainingData, newThitas, learningRate);
-            
-            double newError = calculateError(trainingData,newThitas);
-            
-            //bold driver
-            if(newError>minError) {
-                learningRate/=2.0;
-            }
-            else {
-                learningRate*=1.05;
-                minError=newError;
-                
-                //keep the new thitas
-                thitas.clear();
-                thitas.putAll(newThitas);
-            }
-            
-            //Drop the temporary Collection
-            bdsf.dropTable(tmpPrefix+"newThitas", newThitas);
+        Map<Object, Double> thitas = modelParameters.getThitas();
+        for(Map.Entry<Object, Integer> entry : featureIds.entrySet()) {
+            thitas.put(entry.getKey(), weights[entry.getValue()]);
         }
     }
 
@@ -159,91 +172,94 @@ public class NLMS extends BaseLinearRegression<NLMS.ModelParameters, NLMS.Traini
         }
     }
     
-    private void batchGradientDescent(Dataset trainingData, Map<Object, Double> newThitas, double learningRate) {
-        //NOTE! This is not the stochastic gradient descent. It is the batch gradient descent optimized for speed (despite it looks more than the stochastic). 
-        //Despite the fact that the loops are inverse, the function still changes the values of Thitas at the end of the function. We use the previous thitas 
-        //to estimate the costs and only at the end we update the new thitas.
-        ModelParameters modelParameters = knowledgeBase.getModelParameters();
-        
-        double multiplier = learningRate/modelParameters.getN();
-        Map<Object, Double> thitas = modelParameters.getThitas();
+    private double hypothesisFunction(AssociativeArray x, Map<Object, Double> thitas) {
+        double sum = thitas.get(Dataset.constantColumnName);
         
-        for(Record r : trainingData) {
-            //mind the fact that we use the previous thitas to estimate the new ones! this is because the thitas must be updated simultaniously
-            double error = Dataset.toDouble(r.getY()) - hypothesisFunction(r.getX(), thitas);
-            
-            double errorMultiplier = multiplier*error;
-            
+        for(Map.Entry<Object, Object> entry : x.entrySet()) {
+            Object feature = entry.getKey();
             
-            //update the weight of constant
-            newThitas.put(Dataset.constantColumnName, newThitas.get(Dataset.constantColumnName)+errorMultiplier);
-
-            //update the rest of the weights
-            for(Map.Entry<Object, Object> entry : r.getX().entrySet()) {
-                Object feature = entry.getKey();
-                
-                Double thitaWeight = newThitas.get(feature);
-                if(thitaWeight!=null) {//ensure that the feature is in the supported features
-                    Double value = Dataset.toDouble(entry.getValue());
-                    newThitas.put(feature, thitaWeight+errorMultiplier*value);
-                }
+            Double thitaWeight = thitas.get(feature);
+            if(thitaWeight!=null) {//ensure that the feature is in the supported features
+                Double xj = Dataset.toDouble(entry.getValue());
+                sum+=thitaWeight*xj;
             }
         }
+        
+        return sum;
     }
     
-    private void stochasticGradientDescent(Dataset trainingData, Map<Object, Double> newThitas, double learningRate) {
-        double multiplier = learningRate/knowledgeBase.getModelParameters().getN();
+    /**
+     * Least mean squares on the dense weights. The constant has the id 0.
+     */
+    private static class NLMSTrainer extends MiniBatchTrainer {
+        
+        private double[] errorMultipliers = new double[0];
+        
+        private NLMSTrainer(Map<Object, Integer> featureIds, int n, TrainingParameters trainingParameters) {
+            super(featureIds, n, trainingParameters.getBatchSize(), trainingParameters.getLearningRate(), trainingParameters.getLearningRateSchedule(), trainingParameters.getTotalIterations(), trainingParameters.getPatience());
+        }
         
-        for(Record r : trainingData) {
-            //mind the fact that we use the new thitas to estimate the cost! 
-            double error = Dataset.toDouble(r.getY()) - hypothesisFunction(r.getX(), newThitas);
+        @Override
+        protected double getTarget(Object y) {
+            Double value = Dataset.toDouble(y);
+            return (value!=null)?value:Double.NaN;
+        }
+        
+        @Override
+        protected double updateWeights(SparseBatch batch, double[] targets, double[] weights, double[] newWeights, double multiplier) {
+            int[] rowOffsets = batch.getRowOffsets();
+            int[] featureIds = batch.getFeatureIds();
+            double[] values = batch.getValues();
             
-            double errorMultiplier = multiplier*error;
+            int size = batch.size();
+            if(errorMultipliers.length<size) {
+                errorMultipliers = new double[size];
+            }
             
+            //mind the fact that we use the previous weights to estimate the errors of all the rows! this is because the weights must be updated simultaniously
+            double error = 0.0;
+            for(int row=0;row<size;++row) {
+                double rowError = targets[row] - hypothesisFunction(rowOffsets[row], rowOffsets[row+1], featureIds, values, weights);
+                error += rowError*rowError;
+                errorMultipliers[row] = multiplier*rowError;
+            }
             
-            //update the weight of constant
-            newThitas.put(Dataset.constantColumnName, newThitas.get(Dataset.constantColumnName)+errorMultiplier);
-
-            //update the rest of the weights
-            for(Map.Entry<Object, Object> entry : r.getX().entrySet()) {
-                Object feature = entry.getKey();
+            for(int row=0;row<size;++row) {
+                double errorMultiplier = errorMultipliers[row];
                 
-                Double thitaWeight = newThitas.get(feature);
-                if(thitaWeight!=null) {//ensure that the feature is in the supported features
-                    Double value = Dataset.toDouble(entry.getValue());
-                    newThitas.put(feature, thitaWeight+errorMultiplier*value);
+                //update the weight of constant
+                newWeights[0] += errorMultiplier;
+                
+                //update the rest of the weights
+                for(int i=rowOffsets[row];i<rowOffsets[row+1];++i) {
+                    newWeights[featureIds[i]] += errorMultiplier*values[i];
                 }
             }
-        }
-    }
-    
-    private double calculateError(Dataset trainingData, Map<Object, Double> thitas) {
-        //The cost function as described on http://ufldl.stanford.edu/wiki/index.php/Softmax_Regression
-        //It is optimized for speed to reduce the amount of loops
-        double error=0.0;
-        
-        for(Record r : trainingData) {
-            double yPredicted = hypothesisFunction(r.getX(), thitas);
-            r.setYPredicted(yPredicted);
-            error+=Math.pow(Dataset.toDouble(r.getY()) -yPredicted, 2);
+            
+            return error;
         }
         
-        return error;
-    }
-    
-    private double hypothesisFunction(AssociativeArray x, Map<Object, Double> thitas) {
-        double sum = thitas.get(Dataset.constantColumnName);
-        
-        for(Map.Entry<Object, Object> entry : x.entrySet()) {
-            Object feature = entry.getKey();
+        @Override
+        protected double calculateError(SparseBatch batch, double[] targets, double[] weights) {
+            int[] rowOffsets = batch.getRowOffsets();
+            int[] featureIds = batch.getFeatureIds();
+            double[] values = batch.getValues();
             
-            Double thitaWeight = thitas.get(feature);
-            if(thitaWeight!=null) {//ensure that the feature is in the supported features
-                Double xj = Dataset.toDouble(entry.getValue());
-                sum+=thitaWeight*xj;
+            double error = 0.0;
+            for(int row=0;row<batch.size();++row) {
+                double rowError = targets[row] - hypothesisFunction(rowOffsets[row], rowOffsets[row+1], featureIds, values, weights);
+                error += rowError*rowError;
             }
+            
+            return error;
         }
         
-        return sum;
+        private static double hypothesisFunction(int from, int to, int[] featureIds, double[] values, double[] weights) {
+            double sum = weights[0];
+            for(int i=from;i<to;++i) {
+                sum += weights[featureIds[i]]*values[i];
+            }
+            return sum;
+        }
     }
 }
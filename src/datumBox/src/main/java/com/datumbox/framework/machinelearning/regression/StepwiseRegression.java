@@ -22,6 +22,7 @@ import com.datumbox.common.utilities.DeepCopy;
 import com.datumbox.common.utilities.MapFunctions;
 import com.datumbox.framework.machinelearning.common.bases.mlmodels.BaseMLmodel;
 import com.datumbox.framework.machinelearning.common.bases.mlmodels.BaseMLregressor;
+import com.datumbox.framework.machinelearning.common.bases.mlmodels.FrozenMLmodel;
 import java.util.Map;
 import org.mongodb.morphia.annotations.Transient;
 
@@ -36,6 +37,8 @@ public class StepwiseRegression extends BaseMLregressor<StepwiseRegression.Model
     @Transient
     private transient BaseMLregressor mlregressor = null;
     
+    private transient FrozenMLmodel<?> frozenRegressor = null; //set only on the frozen copies of the model
+    
     
     public static class ModelParameters extends BaseMLregressor.ModelParameters {
         //EMPTY Model parameters. It relies on the mlregressor DB instead        
@@ -227,11 +230,22 @@ public class StepwiseRegression extends BaseMLregressor<StepwiseRegression.Model
 
     @Override
     protected void predictDataset(Dataset newData) {
+        if(frozenRegressor!=null) {
+            frozenRegressor.predict(newData);
+            return;
+        }
+        
         loadRegressor();
         
         mlregressor.predict(newData);
     }
     
+    @Override
+    protected void freezeComponents() {
+        loadRegressor();
+        frozenRegressor = mlregressor.freeze();
+    }
+    
     @Override
     public void erase(boolean complete) {
         loadRegressor();
@@ -19,11 +19,15 @@ package com.datumbox.framework.machinelearning.topicmodeling;
 import com.datumbox.common.dataobjects.AssociativeArray;
 import com.datumbox.common.dataobjects.AssociativeArray2D;
 import com.datumbox.common.dataobjects.Dataset;
+import com.datumbox.common.dataobjects.IntegerDictionary;
 import com.datumbox.common.dataobjects.Record;
 import com.datumbox.common.persistentstorage.factories.BigDataStructureFactory;
 import com.datumbox.common.persistentstorage.interfaces.BigDataStructureMarker;
 import com.datumbox.common.utilities.MapFunctions;
 import com.datumbox.common.utilities.PHPfunctions;
+import com.datumbox.common.utilities.ParallelFunctions;
+import com.datumbox.common.utilities.RandomValue;
+import com.datumbox.configuration.ConcurrencyConfiguration;
 import com.datumbox.configuration.GeneralConfiguration;
 import com.datumbox.configuration.MemoryConfiguration;
 import com.datumbox.configuration.StorageConfiguration;
@@ -31,9 +35,13 @@ import com.datumbox.framework.machinelearning.common.bases.mlmodels.BaseMLtopicm
 import com.datumbox.framework.machinelearning.common.validation.LatentDirichletAllocationValidation;
 import com.datumbox.framework.statistics.descriptivestatistics.Descriptives;
 import com.datumbox.framework.statistics.sampling.SRS;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
 import org.mongodb.morphia.annotations.Transient;
 
 /**
@@ -74,40 +82,26 @@ public class LatentDirichletAllocation extends BaseMLtopicmodeler<LatentDirichle
         private Integer d =0; //the vocabulary size
         
         /**
-         * The topic assignments of a particular word in a particular document.
-         * It is a key-value of <Integer, Object> => Integer 
-         * The key is a combination of Record.id and Word Position number (also 
-         * an Integer but stored as object because the Record stores columns as Objects).
-         * The value is the Id of the topic to which the word is assigned.
-         */
-        @BigDataStructureMarker
-        @Transient
-        private Map<List<Object>, Integer> topicAssignmentOfDocumentWord; //the Z in the graphical model
-
-        /**
-         * Counts the number of occurrences of topics in a particular document
-         * (in other words the number of times that a word from the particular
-         * document has been assigned to a particular topic).
+         * Counts the number of times a particular word is assigned to a particular
+         * topic.
          * It is a key value of <Integer, Integer> => Integer
-         * The key is a combination of Record.id and Topic id.
+         * The key is a combination of Topic id and Word id packed in a Long.
+         * The Word id is assigned by the wordIds dictionary to the Record Value,
+         * which should normally be a String (the word) but is stored in the 
+         * associative array of the record as an Object.
          * The value is the number of counts of the pair.
          */
         @BigDataStructureMarker
         @Transient
-        private Map<List<Integer>, Integer> documentTopicCounts; //the nj(d) in the papers
-
+        private Map<Long, Integer> topicWordCounts; //the nj(w) in the papers
+        
         /**
-         * Counts the number of times a particular word is assigned to a particular
-         * topic.
-         * It is a key value of <Integer, Object> => Integer
-         * The key is a combination of Topic id and Record Value which should normally
-         * be a String (the word) but is stored in the associative array of the
-         * record as an Object.
-         * The value is the number of counts of the pair.
+         * Maps the words to the ids used in the keys of topicWordCounts.
+         * It is a key value of Object => Integer
          */
         @BigDataStructureMarker
         @Transient
-        private Map<List<Object>, Integer> topicWordCounts; //the nj(w) in the papers
+        private Map<Object, Integer> wordIds; //dictionary of words
         
         /**
          * Counts the number of words in a document. Even though this information
@@ -140,9 +134,8 @@ public class LatentDirichletAllocation extends BaseMLtopicmodeler<LatentDirichle
             BigDataStructureFactory.MapType mapType = memoryConfiguration.getMapType();
             int LRUsize = memoryConfiguration.getLRUsize();
             
-            topicAssignmentOfDocumentWord = bdsf.getMap("topicAssignmentOfDocumentWord", mapType, LRUsize);
-            documentTopicCounts = bdsf.getMap("documentTopicCounts", mapType, LRUsize);
             topicWordCounts = bdsf.getMap("topicWordCounts", mapType, LRUsize);
+            wordIds = bdsf.getMap("wordIds", mapType, LRUsize);
             documentWordCounts = bdsf.getMap("documentWordCounts", mapType, LRUsize);
             topicCounts = bdsf.getMap("topicCounts", mapType, LRUsize);
         }
@@ -171,28 +164,20 @@ public class LatentDirichletAllocation extends BaseMLtopicmodeler<LatentDirichle
             this.d = d;
         }
 
-        public Map<List<Object>, Integer> getTopicAssignmentOfDocumentWord() {
-            return topicAssignmentOfDocumentWord;
-        }
-
-        public void setTopicAssignmentOfDocumentWord(Map<List<Object>, Integer> topicAssignmentOfDocumentWord) {
-            this.topicAssignmentOfDocumentWord = topicAssignmentOfDocumentWord;
-        }
-
-        public Map<List<Integer>, Integer> getDocumentTopicCounts() {
-            return documentTopicCounts;
+        public Map<Long, Integer> getTopicWordCounts() {
+            return topicWordCounts;
         }
 
-        public void setDocumentTopicCounts(Map<List<Integer>, Integer> documentTopicCounts) {
-            this.documentTopicCounts = documentTopicCounts;
+        public void setTopicWordCounts(Map<Long, Integer> topicWordCounts) {
+            this.topicWordCounts = topicWordCounts;
         }
 
-        public Map<List<Object>, Integer> getTopicWordCounts() {
-            return topicWordCounts;
+        public Map<Object, Integer> getWordIds() {
+            return wordIds;
         }
 
-        public void setTopicWordCounts(Map<List<Object>, Integer> topicWordCounts) {
-            this.topicWordCounts = topicWordCounts;
+        public void setWordIds(Map<Object, Integer> wordIds) {
+            this.wordIds = wordIds;
         }
 
         public Map<Integer, Integer> getDocumentWordCounts() {
@@ -292,137 +277,165 @@ public class LatentDirichletAllocation extends BaseMLtopicmodeler<LatentDirichle
         
         //get model parameters
         int k = trainingParameters.getK(); //number of topics
-        Map<List<Object>, Integer> topicAssignmentOfDocumentWord = modelParameters.getTopicAssignmentOfDocumentWord();
-        Map<List<Integer>, Integer> documentTopicCounts = modelParameters.getDocumentTopicCounts();
-        Map<List<Object>, Integer> topicWordCounts = modelParameters.getTopicWordCounts();
-        Map<Integer, Integer> documentWordCounts = modelParameters.getDocumentWordCounts();
-        Map<Integer, Integer> topicCounts = modelParameters.getTopicCounts();
+        IntegerDictionary wordDictionary = new IntegerDictionary(modelParameters.getWordIds());
         
-        //initialize topic assignments of each word randomly and update the counters
+        //the corpus is flattened in primitive arrays; the words of document i are stored in [documentStarts[i], documentStarts[i+1])
+        int[] documentIds = new int[n];
+        int[] documentStarts = new int[n+1];
+        int documentId = 0;
+        for(Record r : trainingData) {
+            documentIds[documentId] = r.getId();
+            documentStarts[documentId+1] = documentStarts[documentId] + r.getX().size();
+            ++documentId;
+        }
+        
+        //initialize topic assignments of each word randomly
+        int[] words = new int[documentStarts[n]];
+        int[] topicAssignments = new int[documentStarts[n]]; //the Z in the graphical model
+        int position = 0;
         for(Record r : trainingData) {
-            Integer documentId = r.getId();
-            
-            documentWordCounts.put(documentId, r.getX().size());
-            
             for(Map.Entry<Object, Object> entry : r.getX().entrySet()) {
-                Object wordPosition = entry.getKey();
-                Object word = entry.getValue();
+                words[position] = wordDictionary.intern(entry.getValue());
                 
                 //sample a topic
-                Integer topic = PHPfunctions.mt_rand(0,k-1);
-                
-                increase(topicCounts, topic);
-                topicAssignmentOfDocumentWord.put(Arrays.asList(documentId, wordPosition), topic);
-                increase(documentTopicCounts, Arrays.asList(documentId, topic));
-                increase(topicWordCounts, Arrays.asList(topic, word));
+                topicAssignments[position] = PHPfunctions.mt_rand(0,k-1);
+                ++position;
             }
         }
         
+        //update the counters
+        TopicCounts counts = new TopicCounts(k, modelParameters.getWordIds().size());
+        for(int i=0;i<words.length;++i) {
+            counts.increase(words[i], topicAssignments[i]);
+        }
         
         double alpha = trainingParameters.getAlpha();
         double beta = trainingParameters.getBeta();
         
         int maxIterations = trainingParameters.getMaxIterations();
         
+        int[] mainTopics = new int[n];
+        Arrays.fill(mainTopics, -1);
+        
+        ExecutorService executorService = null;
+        if(ConcurrencyConfiguration.isParallelized()) {
+            executorService = ConcurrencyConfiguration.newExecutorService();
+        }
         int iteration=0;
-        while(iteration<maxIterations) {
+        try {
+            //every shard of documents is sampled by its own sampler. When there are many shards, each sampler works on a local copy of the counts which are synchronized at the end of every iteration (AD-LDA)
+            int[] boundaries = ParallelFunctions.partition(n, (executorService!=null)?ConcurrencyConfiguration.getMaxNumberOfThreads():1);
+            int numberOfShards = boundaries.length-1;
             
-            if(GeneralConfiguration.DEBUG) {
-                System.out.println("Iteration "+iteration);
+            final GibbsSampler[] samplers = new GibbsSampler[numberOfShards];
+            TopicCounts[] shardCounts = new TopicCounts[numberOfShards];
+            for(int p=0;p<numberOfShards;++p) {
+                if(numberOfShards==1) {
+                    shardCounts[p] = counts;
+                }
+                else {
+                    //the local copies are initialized once and then they receive only the cells that the other shards changed
+                    shardCounts[p] = new TopicCounts(k, counts.getNumberOfWords(), true);
+                    shardCounts[p].copy(counts);
+                }
+                samplers[p] = new GibbsSampler(documentStarts, words, topicAssignments, mainTopics, shardCounts[p], alpha, beta, d);
             }
             
-            int changedCounter = 0;
-            //collapsed gibbs sampler
-            for(Record r : trainingData) {
-                Integer documentId = r.getId();
+            while(iteration<maxIterations) {
                 
-                AssociativeArray topicAssignments = new AssociativeArray();
-                for(int j=0;j<k;++j) {
-                    topicAssignments.put(j, 0.0);
+                if(GeneralConfiguration.DEBUG) {
+                    System.out.println("Iteration "+iteration);
                 }
                 
-                int totalWords = r.getX().size();
-                
-                for(Map.Entry<Object, Object> entry : r.getX().entrySet()) {
-                    Object wordPosition = entry.getKey();
-                    Object word = entry.getValue();
-            
-                    
-                    //remove the word from the dataset
-                    Integer topic = topicAssignmentOfDocumentWord.get(Arrays.asList(documentId, wordPosition));
-                    //decrease(documentWordCounts, documentId); //slow
-                    decrease(topicCounts, topic);
-                    decrease(documentTopicCounts, Arrays.asList(documentId, topic));
-                    decrease(topicWordCounts, Arrays.asList(topic, word));
-                    
-                    //int numberOfDocumentWords = r.getX().size()-1; //fast - decreased by 1
-                    
-                    //compute the posteriors of the topics and sample from it
-                    AssociativeArray topicProbabilities = new AssociativeArray();
-                    for(int j=0;j<k;++j) {
-                        double enumerator = 0.0;
-                        Integer njw = topicWordCounts.get(Arrays.asList(j,word));
-                        if(njw !=null) {
-                            enumerator = njw + beta;
-                        }
-                        else {
-                            enumerator = beta;
-                        }
-                        
-                        Integer njd = documentTopicCounts.get(Arrays.asList(documentId, j));
-                        if(njd != null) {
-                            enumerator *= (njd + alpha);
-                        }
-                        else {
-                            enumerator *= alpha;
-                        }
-                        
-                        double denominator = topicCounts.get((Integer)j)+beta*d;
-                        //denominator *= numberOfDocumentWords+alpha*k; //this is not necessary because it is the same for all categories, so it can be omited
+                int changedCounter = 0;
+                if(numberOfShards==1) {
+                    changedCounter = samplers[0].sample(0, n, RandomValue.getRandomGenerator());
+                }
+                else {
+                    List<Callable<Integer>> tasks = new ArrayList<>(numberOfShards);
+                    for(int p=0;p<numberOfShards;++p) {
+                        final GibbsSampler sampler = samplers[p];
+                        final int from = boundaries[p];
+                        final int to = boundaries[p+1];
                         
-                        topicProbabilities.put(j, enumerator/denominator);
+                        //the seeds are drawn on this thread so that the results do not depend on the scheduling of the threads
+                        tasks.add(ParallelFunctions.seeded(new Callable<Integer>() {
+                            @Override
+                            public Integer call() {
+                                return sampler.sample(from, to, RandomValue.getRandomGenerator());
+                            }
+                        }, RandomValue.getRandomGenerator().nextLong()));
                     }
-
-                    //normalize probabilities
-                    Descriptives.normalize(topicProbabilities);
                     
-                    //sample from these probabilieis
-                    Integer newTopic = (Integer)SRS.weightedProbabilitySampling(topicProbabilities, 1, true).iterator().next();
-                    topic = newTopic; //new topic assigment
-                    
-                    //add back the word in the dataset
-                    topicAssignmentOfDocumentWord.put(Arrays.asList(documentId, wordPosition), topic);
-                    //increase(documentWordCounts, documentId); //slow
-                    increase(topicCounts, topic);
-                    increase(documentTopicCounts, Arrays.asList(documentId, topic));
-                    increase(topicWordCounts, Arrays.asList(topic, word));
+                    for(Integer shardChangedCounter : ParallelFunctions.invokeAll(executorService, tasks)) {
+                        changedCounter += shardChangedCounter;
+                    }
                     
-                    topicAssignments.put(topic, Dataset.toDouble(topicAssignments.get(topic))+1.0/totalWords);
+                    //synchronize the counts
+                    counts.synchronize(shardCounts);
                 }
+                ++iteration;
                 
-                Object mainTopic=MapFunctions.selectMaxKeyValue(topicAssignments).getKey();
+                if(GeneralConfiguration.DEBUG) {
+                    System.out.println("Reassigned Records "+ changedCounter);
+                }
                 
-                if(!mainTopic.equals(r.getYPredicted())) {
-                    ++changedCounter;
+                if(changedCounter==0) {
+                    break;
                 }
-                r.setYPredicted(mainTopic);
-                r.setYPredictedProbabilities(topicAssignments);
-            }
-            ++iteration;
-            
-            if(GeneralConfiguration.DEBUG) {
-                System.out.println("Reassigned Records "+ changedCounter);
             }
-            
-            if(changedCounter==0) {
-                break;
+        }
+        finally {
+            if(executorService!=null) {
+                executorService.shutdown();
             }
         }
         
         modelParameters.setTotalIterations(iteration);
         
+        //store the counts in the model parameters. The topic assignments of the words are used only during training, so they are not stored
+        Map<Long, Integer> topicWordCounts = modelParameters.getTopicWordCounts();
+        Map<Integer, Integer> documentWordCounts = modelParameters.getDocumentWordCounts();
+        Map<Integer, Integer> topicCounts = modelParameters.getTopicCounts();
+        
+        for(int topic=0;topic<k;++topic) {
+            topicCounts.put(topic, counts.getTopicCount(topic));
+        }
+        for(int wordId=0;wordId<counts.getNumberOfWords();++wordId) {
+            for(int topic=0;topic<k;++topic) {
+                int njw = counts.getCount(wordId, topic);
+                if(njw!=0) {
+                    topicWordCounts.put(IntegerDictionary.key(topic, wordId), njw);
+                }
+            }
+        }
+        
+        int[] documentTopics = new int[k];
+        documentId = 0;
+        for(Record r : trainingData) {
+            int start = documentStarts[documentId];
+            int totalWords = documentStarts[documentId+1]-start;
+            
+            Arrays.fill(documentTopics, 0);
+            for(int wordPosition=0;wordPosition<totalWords;++wordPosition) {
+                ++documentTopics[topicAssignments[start+wordPosition]];
+            }
+            documentWordCounts.put(documentIds[documentId], totalWords);
+            
+            AssociativeArray topicProbabilities = new AssociativeArray();
+            for(int topic=0;topic<k;++topic) {
+                topicProbabilities.put(topic, (totalWords>0)?(double)documentTopics[topic]/totalWords:0.0);
+            }
+            
+            if(mainTopics[documentId]>=0) {
+                r.setYPredicted(mainTopics[documentId]);
+                r.setYPredictedProbabilities(topicProbabilities);
+            }
+            
+            ++documentId;
+        }
     }
-
+    
     @Override
     protected void predictDataset(Dataset newData) {
         predictAndValidate(newData);
@@ -448,12 +461,20 @@ public class LatentDirichletAllocation extends BaseMLtopicmodeler<LatentDirichle
         int d = modelParameters.getD();
         double beta = trainingParameters.getBeta();
         
-        Map<List<Object>, Integer> topicWordCounts = modelParameters.getTopicWordCounts();
+        Map<Long, Integer> topicWordCounts = modelParameters.getTopicWordCounts();
         Map<Integer, Integer> topicCounts = modelParameters.getTopicCounts();
-        for(Map.Entry<List<Object>, Integer> entry : topicWordCounts.entrySet()) {
-            List<Object> tpk = entry.getKey();
-            Integer topicId = (Integer)tpk.get(0);
-            Object word = tpk.get(1);
+        
+        //reverse the dictionary to find the words from their ids
+        Map<Object, Integer> wordIds = modelParameters.getWordIds();
+        Object[] words = new Object[wordIds.size()];
+        for(Map.Entry<Object, Integer> entry : wordIds.entrySet()) {
+            words[entry.getValue()] = entry.getKey();
+        }
+        
+        for(Map.Entry<Long, Integer> entry : topicWordCounts.entrySet()) {
+            Long tpk = entry.getKey();
+            Integer topicId = IntegerDictionary.firstId(tpk);
+            Object word = words[IntegerDictionary.secondId(tpk)];
             Integer njw = entry.getValue();
             
             Integer nj = topicCounts.get(topicId);
@@ -520,8 +541,9 @@ public class LatentDirichletAllocation extends BaseMLtopicmodeler<LatentDirichle
         int k = trainingParameters.getK(); //number of topics
         
         
-        Map<List<Object>, Integer> topicWordCounts = modelParameters.getTopicWordCounts();
+        Map<Long, Integer> topicWordCounts = modelParameters.getTopicWordCounts();
         Map<Integer, Integer> topicCounts = modelParameters.getTopicCounts();
+        IntegerDictionary wordDictionary = new IntegerDictionary(modelParameters.getWordIds());
         
         
         BigDataStructureFactory.MapType mapType = knowledgeBase.getMemoryConfiguration().getMapType();
@@ -529,26 +551,28 @@ public class LatentDirichletAllocation extends BaseMLtopicmodeler<LatentDirichle
         BigDataStructureFactory bdsf = knowledgeBase.getBdsf();
         
         //we create temporary maps for the prediction sets to avoid modifing the maps that we already learned
-        Map<List<Object>, Integer> tmp_topicAssignmentOfDocumentWord = bdsf.getMap(tmpPrefix+"topicAssignmentOfDocumentWord", mapType, LRUsize);
-        Map<List<Integer>, Integer> tmp_documentTopicCounts = bdsf.getMap(tmpPrefix+"documentTopicCounts", mapType, LRUsize);
-        Map<List<Object>, Integer> tmp_topicWordCounts = bdsf.getMap(tmpPrefix+"topicWordCounts", mapType, LRUsize);
+        Map<Long, Integer> tmp_topicAssignmentOfDocumentWord = bdsf.getMap(tmpPrefix+"topicAssignmentOfDocumentWord", mapType, LRUsize);
+        Map<Long, Integer> tmp_documentTopicCounts = bdsf.getMap(tmpPrefix+"documentTopicCounts", mapType, LRUsize);
+        Map<Long, Integer> tmp_topicWordCounts = bdsf.getMap(tmpPrefix+"topicWordCounts", mapType, LRUsize);
         Map<Integer, Integer> tmp_topicCounts = bdsf.getMap(tmpPrefix+"topicCounts", mapType, LRUsize);
+        Map<Object, Integer> tmp_wordIds = bdsf.getMap(tmpPrefix+"wordIds", mapType, LRUsize); //the testing data may contain words that are not in the learned dictionary
+        IntegerDictionary tmp_wordDictionary = new IntegerDictionary(tmp_wordIds);
         
         //initialize topic assignments of each word randomly and update the counters
         for(Record r : newData) {
             Integer documentId = r.getId();
             
+            int wordPosition = 0;
             for(Map.Entry<Object, Object> entry : r.getX().entrySet()) {
-                Object wordPosition = entry.getKey();
-                Object word = entry.getValue();
+                int tmp_wordId = tmp_wordDictionary.intern(entry.getValue());
                 
                 //sample a topic
                 Integer topic = PHPfunctions.mt_rand(0,k-1);
                 
                 increase(tmp_topicCounts, topic);
-                tmp_topicAssignmentOfDocumentWord.put(Arrays.asList(documentId, wordPosition), topic);
-                increase(tmp_documentTopicCounts, Arrays.asList(documentId, topic));
-                increase(tmp_topicWordCounts, Arrays.asList(topic, word));
+                tmp_topicAssignmentOfDocumentWord.put(IntegerDictionary.key(documentId, wordPosition++), topic);
+                increase(tmp_documentTopicCounts, IntegerDictionary.key(documentId, topic));
+                increase(tmp_topicWordCounts, IntegerDictionary.key(topic, tmp_wordId));
             }
         }
         
@@ -581,16 +605,18 @@ public class LatentDirichletAllocation extends BaseMLtopicmodeler<LatentDirichle
                 
                 int totalDocumentWords = r.getX().size();
                 totalDatasetWords+=totalDocumentWords;
+                int wordPosition = 0;
                 for(Map.Entry<Object, Object> entry : r.getX().entrySet()) {
-                    Object wordPosition = entry.getKey();
                     Object word = entry.getValue();
-            
+                    int tmp_wordId = tmp_wordDictionary.getId(word);
+                    Integer wordId = wordDictionary.getId(word); //null if the word was not seen during training
+                    Long documentWordKey = IntegerDictionary.key(documentId, wordPosition++);
                     
                     //remove the word from the dataset
-                    Integer topic = tmp_topicAssignmentOfDocumentWord.get(Arrays.asList(documentId, wordPosition));
+                    Integer topic = tmp_topicAssignmentOfDocumentWord.get(documentWordKey);
                     decrease(tmp_topicCounts, topic);
-                    decrease(tmp_documentTopicCounts, Arrays.asList(documentId, topic));
-                    decrease(tmp_topicWordCounts, Arrays.asList(topic, word));
+                    decrease(tmp_documentTopicCounts, IntegerDictionary.key(documentId, topic));
+                    decrease(tmp_topicWordCounts, IntegerDictionary.key(topic, tmp_wordId));
                         
                     int numberOfDocumentWords = r.getX().size()-1;
                     
@@ -600,8 +626,7 @@ public class LatentDirichletAllocation extends BaseMLtopicmodeler<LatentDirichle
                         double enumerator = 0.0;
                         
                         //get the counts from the current testing data
-                        List<Object> topicWordKey = Arrays.asList(j,word);
-                        Integer njw = tmp_topicWordCounts.get(topicWordKey);
+                        Integer njw = tmp_topicWordCounts.get(IntegerDictionary.key(j, tmp_wordId));
                         if(njw !=null) {
                             enumerator = njw + beta;
                         }
@@ -610,12 +635,12 @@ public class LatentDirichletAllocation extends BaseMLtopicmodeler<LatentDirichle
                         }
                         
                         //get also the counts from the training data
-                        Integer njw_original = topicWordCounts.get(topicWordKey);
+                        Integer njw_original = (wordId!=null)?topicWordCounts.get(IntegerDictionary.key(j, wordId)):null;
                         if(njw_original!=null) {
                             enumerator+=njw_original;
                         }
                         
-                        Integer njd = tmp_documentTopicCounts.get(Arrays.asList(documentId, j));
+                        Integer njd = tmp_documentTopicCounts.get(IntegerDictionary.key(documentId, j));
                         if(njd != null) {
                             enumerator *= (njd + alpha);
                         }
@@ -643,10 +668,10 @@ public class LatentDirichletAllocation extends BaseMLtopicmodeler<LatentDirichle
                     
                     
                     //add back the word in the dataset
-                    tmp_topicAssignmentOfDocumentWord.put(Arrays.asList(documentId, wordPosition), topic);
+                    tmp_topicAssignmentOfDocumentWord.put(documentWordKey, topic);
                     increase(tmp_topicCounts, topic);
-                    increase(tmp_documentTopicCounts, Arrays.asList(documentId, topic));
-                    increase(tmp_topicWordCounts, Arrays.asList(topic, word));
+                    increase(tmp_documentTopicCounts, IntegerDictionary.key(documentId, topic));
+                    increase(tmp_topicWordCounts, IntegerDictionary.key(topic, tmp_wordId));
                     
                     topicAssignments.put(topic, Dataset.toDouble(topicAssignments.get(topic))+1.0/totalDocumentWords);
                 }
@@ -676,10 +701,446 @@ public class LatentDirichletAllocation extends BaseMLtopicmodeler<LatentDirichle
         bdsf.dropTable(tmpPrefix+"documentTopicCounts", tmp_documentTopicCounts);
         bdsf.dropTable(tmpPrefix+"topicWordCounts", tmp_topicWordCounts);
         bdsf.dropTable(tmpPrefix+"topicCounts", tmp_topicCounts);
+        bdsf.dropTable(tmpPrefix+"wordIds", tmp_wordIds);
         
         
         validationMetrics.setPerplexity(perplexity);
         
         return validationMetrics;
     }
+    
+    /**
+     * The topic counts of the words in dense primitive tables. Next to the dense
+     * word x topic table, every word keeps the list of topics in which it has a
+     * non zero count, so that the sampler can iterate over them without
+     * scanning all the topics. The local copies of the shards also keep the 
+     * cells that they changed since the last synchronization, so that only 
+     * these cells are exchanged.
+     */
+    private static class TopicCounts {
+        
+        private final int k;
+        
+        private final int numberOfWords;
+        
+        private final int[] topicCounts; //the nj(.) in the papers
+        
+        private final int[] wordTopicCounts; //the nj(w) in the papers; the count of the word w in topic j is stored at w*k+j
+        
+        private final int[][] wordTopics; //the topics with non zero counts of every word
+        
+        private final int[] wordTopicsSize;
+        
+        private final boolean[] touched; //whether the cell changed since the last synchronization; null if the changes are not tracked
+        
+        private int[] touchedCells; //the cells that changed since the last synchronization
+        
+        private int[] touchedCounts; //the counts of the touched cells at the last synchronization
+        
+        private int touchedSize = 0;
+        
+        public TopicCounts(int k, int numberOfWords) {
+            this(k, numberOfWords, false);
+        }
+        
+        public TopicCounts(int k, int numberOfWords, boolean trackChanges) {
+            if((long)k*numberOfWords>Integer.MAX_VALUE) {
+                throw new IllegalArgumentException("The number of topics multiplied by the size of the vocabulary is too large.");
+            }
+            
+            this.k = k;
+            this.numberOfWords = numberOfWords;
+            topicCounts = new int[k];
+            wordTopicCounts = new int[k*numberOfWords];
+            wordTopics = new int[numberOfWords][];
+            wordTopicsSize = new int[numberOfWords];
+            
+            if(trackChanges) {
+                touched = new boolean[k*numberOfWords];
+                touchedCells = new int[16];
+                touchedCounts = new int[16];
+            }
+            else {
+                touched = null;
+            }
+        }
+        
+        public int getNumberOfWords() {
+            return numberOfWords;
+        }
+        
+        public int getTopicCount(int topic) {
+            return topicCounts[topic];
+        }
+        
+        public int getCount(int wordId, int topic) {
+            return wordTopicCounts[wordId*k+topic];
+        }
+        
+        public int[] getWordTopics(int wordId) {
+            return wordTopics[wordId];
+        }
+        
+        public int getWordTopicsSize(int wordId) {
+            return wordTopicsSize[wordId];
+        }
+        
+        public void increase(int wordId, int topic) {
+            ++topicCounts[topic];
+            int cell = wordId*k+topic;
+            touch(cell);
+            if(wordTopicCounts[cell]++==0) {
+                addWordTopic(wordId, topic);
+            }
+        }
+        
+        public void decrease(int wordId, int topic) {
+            --topicCounts[topic];
+            int cell = wordId*k+topic;
+            touch(cell);
+            if(--wordTopicCounts[cell]==0) {
+                removeWordTopic(wordId, topic);
+            }
+        }
+        
+        private void touch(int cell) {
+            if(touched==null || touched[cell]) {
+                return;
+            }
+            touched[cell] = true;
+            if(touchedSize==touchedCells.length) {
+                touchedCells = Arrays.copyOf(touchedCells, 2*touchedSize);
+                touchedCounts = Arrays.copyOf(touchedCounts, 2*touchedSize);
+            }
+            touchedCells[touchedSize] = cell;
+            touchedCounts[touchedSize] = wordTopicCounts[cell];
+            ++touchedSize;
+        }
+        
+        private void set(int cell, int count) {
+            int previousCount = wordTopicCounts[cell];
+            if(previousCount==count) {
+                return;
+            }
+            wordTopicCounts[cell] = count;
+            if(previousCount==0) {
+                addWordTopic(cell/k, cell%k);
+            }
+            else if(count==0) {
+                removeWordTopic(cell/k, cell%k);
+            }
+        }
+        
+        private void addWordTopic(int wordId, int topic) {
+            int[] topics = wordTopics[wordId];
+            int size = wordTopicsSize[wordId];
+            if(topics==null) {
+                topics = new int[Math.min(4, k)];
+                wordTopics[wordId] = topics;
+            }
+            else if(topics.length==size) {
+                topics = Arrays.copyOf(topics, Math.min(2*size, k));
+                wordTopics[wordId] = topics;
+            }
+            topics[size] = topic;
+            wordTopicsSize[wordId] = size+1;
+        }
+        
+        private void removeWordTopic(int wordId, int topic) {
+            int[] topics = wordTopics[wordId];
+            int last = --wordTopicsSize[wordId];
+            for(int i=0;i<last;++i) {
+                if(topics[i]==topic) {
+                    topics[i] = topics[last];
+                    break;
+                }
+            }
+        }
+        
+        /**
+         * Replaces the counts with the ones of the provided object. It costs 
+         * time proportional to the size of the tables, so it is used only to
+         * initialize the local copies of the shards.
+         *
+         * @param other
+         */
+        public void copy(TopicCounts other) {
+            System.arraycopy(other.topicCounts, 0, topicCounts, 0, k);
+            System.arraycopy(other.wordTopicCounts, 0, wordTopicCounts, 0, wordTopicCounts.length);
+            for(int wordId=0;wordId<numberOfWords;++wordId) {
+                int size = other.wordTopicsSize[wordId];
+                if(wordTopics[wordId]==null || wordTopics[wordId].length<size) {
+                    wordTopics[wordId] = (size>0)?new int[other.wordTopics[wordId].length]:null;
+                }
+                if(size>0) {
+                    System.arraycopy(other.wordTopics[wordId], 0, wordTopics[wordId], 0, size);
+                }
+                wordTopicsSize[wordId] = size;
+            }
+        }
+        
+        /**
+         * Adds to the counts the changes that every shard made on its local
+         * copy and then updates the local copies with the changes of all the 
+         * shards. Only the cells which were touched by the shards since the 
+         * last synchronization are visited, so the cost is proportional to the 
+         * number of words that were sampled instead of the size of the tables.
+         * The local copies must be equal to these counts after the last 
+         * synchronization.
+         *
+         * @param shardCounts
+         */
+        public void synchronize(TopicCounts[] shardCounts) {
+            for(int topic=0;topic<k;++topic) {
+                int count = topicCounts[topic];
+                for(TopicCounts shard : shardCounts) {
+                    topicCounts[topic] += shard.topicCounts[topic]-count;
+                }
+            }
+            
+            //add the changes of the shards in a fixed order
+            for(TopicCounts shard : shardCounts) {
+                for(int i=0;i<shard.touchedSize;++i) {
+                    int cell = shard.touchedCells[i];
+                    int delta = shard.wordTopicCounts[cell]-shard.touchedCounts[i];
+                    if(delta!=0) {
+                        set(cell, wordTopicCounts[cell]+delta);
+                    }
+                }
+            }
+            
+            //every local copy receives the new values of the cells that any shard touched
+            for(TopicCounts shard : shardCounts) {
+                System.arraycopy(topicCounts, 0, shard.topicCounts, 0, k);
+                for(TopicCounts other : shardCounts) {
+                    for(int i=0;i<other.touchedSize;++i) {
+                        int cell = other.touchedCells[i];
+                        shard.set(cell, wordTopicCounts[cell]);
+                    }
+                }
+            }
+            
+            for(TopicCounts shard : shardCounts) {
+                for(int i=0;i<shard.touchedSize;++i) {
+                    shard.touched[shard.touchedCells[i]] = false;
+                }
+                shard.touchedSize = 0;
+            }
+        }
+    }
+    
+    /**
+     * Collapsed Gibbs sampler which uses the bucket decomposition of SparseLDA.
+     * The unnormalized probability of topic j for word w of document d is split
+     * in three parts:
+     * alpha*beta/(nj+beta*D) which depends only on the topic counts,
+     * njd*beta/(nj+beta*D) which is non zero only for the topics of the document and
+     * njw*(njd+alpha)/(nj+beta*D) which is non zero only for the topics of the word.
+     * The first two masses are updated incrementally, so sampling a word costs
+     * time proportional to the number of topics of the word and of the document
+     * instead of the total number of topics.
+     */
+    private static class GibbsSampler {
+        
+        private final int[] documentStarts;
+        
+        private final int[] words;
+        
+        private final int[] topicAssignments;
+        
+        private final int[] mainTopics;
+        
+        private final TopicCounts counts;
+        
+        private final int k;
+        
+        private final double alpha;
+        
+        private final double beta;
+        
+        private final double betaSum;
+        
+        private final int[] documentTopicCounts; //the nj(d) of the current document
+        
+        private final int[] documentTopics; //the topics with non zero counts in the current document
+        
+        private int documentTopicsSize = 0;
+        
+        private final double[] coefficients; //the (njd+alpha)/(nj+beta*D) of every topic
+        
+        private final double[] wordMasses;
+        
+        private double smoothingMass;
+        
+        private double documentMass;
+        
+        public GibbsSampler(int[] documentStarts, int[] words, int[] topicAssignments, int[] mainTopics, TopicCounts counts, double alpha, double beta, int d) {
+            this.documentStarts = documentStarts;
+            this.words = words;
+            this.topicAssignments = topicAssignments;
+            this.mainTopics = mainTopics;
+            this.counts = counts;
+            this.alpha = alpha;
+            this.beta = beta;
+            
+            k = counts.topicCounts.length;
+            betaSum = beta*d;
+            documentTopicCounts = new int[k];
+            documentTopics = new int[k];
+            coefficients = new double[k];
+            wordMasses = new double[k];
+        }
+        
+        /**
+         * Samples again the topics of the words of the documents in the range
+         * [from, to) and returns the number of documents whose main topic changed.
+         *
+         * @param from
+         * @param to
+         * @param rnd
+         * @return
+         */
+        public int sample(int from, int to, Random rnd) {
+            smoothingMass = 0.0;
+            for(int topic=0;topic<k;++topic) {
+                double denominator = counts.getTopicCount(topic)+betaSum;
+                smoothingMass += alpha*beta/denominator;
+                coefficients[topic] = alpha/denominator;
+            }
+            
+            int changedCounter = 0;
+            for(int document=from;document<to;++document) {
+                int start = documentStarts[document];
+                int end = documentStarts[document+1];
+                
+                //load the counts of the document
+                for(int i=start;i<end;++i) {
+                    int topic = topicAssignments[i];
+                    if(documentTopicCounts[topic]++==0) {
+                        documentTopics[documentTopicsSize++] = topic;
+                    }
+                }
+                documentMass = 0.0;
+                for(int j=0;j<documentTopicsSize;++j) {
+                    int topic = documentTopics[j];
+                    double denominator = counts.getTopicCount(topic)+betaSum;
+                    documentMass += documentTopicCounts[topic]*beta/denominator;
+                    coefficients[topic] = (documentTopicCounts[topic]+alpha)/denominator;
+                }
+                
+                for(int i=start;i<end;++i) {
+                    int wordId = words[i];
+                    
+                    //remove the word from the dataset
+                    int topic = topicAssignments[i];
+                    removeTopicMasses(topic);
+                    counts.decrease(wordId, topic);
+                    if(--documentTopicCounts[topic]==0) {
+                        removeDocumentTopic(topic);
+                    }
+                    addTopicMasses(topic);
+                    
+                    //compute the mass of the topics of the word and sample from the three buckets
+                    int[] wordTopics = counts.getWordTopics(wordId);
+                    int wordTopicsSize = counts.getWordTopicsSize(wordId);
+                    double wordMass = 0.0;
+                    for(int j=0;j<wordTopicsSize;++j) {
+                        int wordTopic = wordTopics[j];
+                        wordMasses[j] = counts.getCount(wordId, wordTopic)*coefficients[wordTopic];
+                        wordMass += wordMasses[j];
+                    }
+                    
+                    double u = rnd.nextDouble()*(smoothingMass+documentMass+wordMass);
+                    if(u<wordMass) {
+                        topic = wordTopics[wordTopicsSize-1];
+                        for(int j=0;j<wordTopicsSize;++j) {
+                            u -= wordMasses[j];
+                            if(u<0.0) {
+                                topic = wordTopics[j];
+                                break;
+                            }
+                        }
+                    }
+                    else if(documentTopicsSize>0 && u<wordMass+documentMass) {
+                        u -= wordMass;
+                        topic = documentTopics[documentTopicsSize-1];
+                        for(int j=0;j<documentTopicsSize;++j) {
+                            int documentTopic = documentTopics[j];
+                            u -= documentTopicCounts[documentTopic]*beta/(counts.getTopicCount(documentTopic)+betaSum);
+                            if(u<0.0) {
+                                topic = documentTopic;
+                                break;
+                            }
+                        }
+                    }
+                    else {
+                        u -= wordMass+documentMass;
+                        topic = k-1;
+                        for(int j=0;j<k;++j) {
+                            u -= alpha*beta/(counts.getTopicCount(j)+betaSum);
+                            if(u<0.0) {
+                                topic = j;
+                                break;
+                            }
+                        }
+                    }
+                    
+                    //add back the word in the dataset
+                    topicAssignments[i] = topic;
+                    removeTopicMasses(topic);
+                    counts.increase(wordId, topic);
+                    if(documentTopicCounts[topic]++==0) {
+                        documentTopics[documentTopicsSize++] = topic;
+                    }
+                    addTopicMasses(topic);
+                }
+                
+                //the main topic is the one with most words; ties are resolved in favour of the smaller id
+                int mainTopic = 0;
+                for(int j=0;j<documentTopicsSize;++j) {
+                    int topic = documentTopics[j];
+                    if(documentTopicCounts[topic]>documentTopicCounts[mainTopic] || documentTopicCounts[topic]==documentTopicCounts[mainTopic] && topic<mainTopic) {
+                        mainTopic = topic;
+                    }
+                }
+                if(mainTopic!=mainTopics[document]) {
+                    ++changedCounter;
+                }
+                mainTopics[document] = mainTopic;
+                
+                //unload the counts of the document
+                for(int j=0;j<documentTopicsSize;++j) {
+                    int topic = documentTopics[j];
+                    documentTopicCounts[topic] = 0;
+                    coefficients[topic] = alpha/(counts.getTopicCount(topic)+betaSum);
+                }
+                documentTopicsSize = 0;
+            }
+            
+            return changedCounter;
+        }
+        
+        private void removeTopicMasses(int topic) {
+            double denominator = counts.getTopicCount(topic)+betaSum;
+            smoothingMass -= alpha*beta/denominator;
+            documentMass -= documentTopicCounts[topic]*beta/denominator;
+        }
+        
+        private void addTopicMasses(int topic) {
+            double denominator = counts.getTopicCount(topic)+betaSum;
+            smoothingMass += alpha*beta/denominator;
+            documentMass += documentTopicCounts[topic]*beta/denominator;
+            coefficients[topic] = (documentTopicCounts[topic]+alpha)/denominator;
+        }
+        
+        private void removeDocumentTopic(int topic) {
+            int last = --documentTopicsSize;
+            for(int j=0;j<last;++j) {
+                if(documentTopics[j]==topic) {
+                    documentTopics[j] = documentTopics[last];
+                    break;
+                }
+            }
+        }
+    }
 }
@@ -0,0 +1,200 @@
+/*
+ * Copyright (C) 2014 Vasilis Vryniotis <bbriniotis at datumbox.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.datumbox.framework.mathematics.optimization;
+
+import com.datumbox.configuration.GeneralConfiguration;
+
+/**
+ * Limited memory BFGS minimizer with backtracking line search. The inverse 
+ * Hessian is approximated from the last m corrections using the two-loop 
+ * recursion.
+ * 
+ * References: Nocedal J., Wright S.J. Numerical Optimization, Algorithm 7.4 
+ * http://www.ece.northwestern.edu/~nocedal/lbfgs.html
+ * 
+ * @author Vasilis Vryniotis <bbriniotis at datumbox.com>
+ */
+public class LBFGS {
+    
+    /**
+     * A differentiable function of a vector.
+     */
+    public interface DifferentiableFunction {
+        
+        /**
+         * Evaluates the function at x, stores its gradient in the gradient 
+         * array and returns its value.
+         * 
+         * @param x
+         * @param gradient
+         * @return 
+         */
+        public double evaluate(double[] x, double[] gradient);
+    }
+    
+    private static final double ARMIJO_CONSTANT = 1e-4;
+    
+    private static final int MAX_LINE_SEARCH_STEPS = 50;
+    
+    private final int memory;
+    
+    private final int maxIterations;
+    
+    private final double tolerance;
+    
+    /**
+     * @param memory the number of corrections kept for the Hessian approximation
+     * @param maxIterations
+     * @param tolerance the minimization stops when the relative improvement of the function or the norm of the gradient falls below it
+     */
+    public LBFGS(int memory, int maxIterations, double tolerance) {
+        if(memory<=0 || maxIterations<0 || tolerance<0.0) {
+            throw new IllegalArgumentException();
+        }
+        this.memory = memory;
+        this.maxIterations = maxIterations;
+        this.tolerance = tolerance;
+    }
+    
+    /**
+     * Minimizes the function starting from x. The minimizer is stored in x
+     * and the function value at the minimizer is returned.
+     * 
+     * @param function
+     * @param x
+     * @return 
+     */
+    public double minimize(DifferentiableFunction function, double[] x) {
+        int d = x.length;
+        
+        double[][] s = new double[memory][d]; //the last changes of x
+        double[][] y = new double[memory][d]; //the last changes of the gradient
+        double[] rho = new double[memory];
+        int corrections = 0;
+        int newest = -1; //position of the newest correction in the circular buffers
+        
+        double[] gradient = new double[d];
+        double[] newGradient = new double[d];
+        double[] newX = new double[d];
+        double[] direction = new double[d];
+        double[] alpha = new double[memory];
+        
+        double value = function.evaluate(x, gradient);
+        
+        for(int iteration=0;iteration<maxIterations;++iteration) {
+            if(GeneralConfiguration.DEBUG) {
+                System.out.println("Iteration "+iteration);
+            }
+            
+            double gradientNorm = Math.sqrt(dot(gradient, gradient));
+            if(gradientNorm<=tolerance*Math.max(1.0, Math.sqrt(dot(x, x)))) {
+                break;
+            }
+            
+            //two-loop recursion: direction = -H*gradient
+            for(int j=0;j<d;++j) {
+                direction[j] = -gradient[j];
+            }
+            for(int k=0;k<corrections;++k) {
+                int i = (newest-k+memory)%memory;
+                alpha[i] = rho[i]*dot(s[i], direction);
+                axpy(-alpha[i], y[i], direction);
+            }
+            if(corrections>0) {
+                //scale with the estimate of the Hessian along the newest correction
+                double gamma = dot(s[newest], y[newest])/dot(y[newest], y[newest]);
+                for(int j=0;j<d;++j) {
+                    direction[j] *= gamma;
+                }
+            }
+            for(int k=corrections-1;k>=0;--k) {
+                int i = (newest-k+memory)%memory;
+                double beta = rho[i]*dot(y[i], direction);
+                axpy(alpha[i]-beta, s[i], direction);
+            }
+            
+            double slope = dot(gradient, direction);
+            if(slope>=0.0) {
+                //not a descent direction; restart from the steepest descent
+                corrections = 0;
+                for(int j=0;j<d;++j) {
+                    direction[j] = -gradient[j];
+                }
+                slope = -gradientNorm*gradientNorm;
+            }
+            
+            //backtracking line search which satisfies the Armijo condition
+            double step = (corrections==0)?1.0/gradientNorm:1.0;
+            double newValue = Double.NaN;
+            boolean accepted = false;
+            for(int t=0;t<MAX_LINE_SEARCH_STEPS;++t) {
+                for(int j=0;j<d;++j) {
+                    newX[j] = x[j] + step*direction[j];
+                }
+                newValue = function.evaluate(newX, newGradient);
+                if(newValue<=value+ARMIJO_CONSTANT*step*slope) {
+                    accepted = true;
+                    break;
+                }
+                step/=2.0;
+            }
+            if(!accepted) {
+                break; //no progress can be made along the direction
+            }
+            
+            //store the new correction if it satisfies the curvature condition
+            double sy = 0.0;
+            for(int j=0;j<d;++j) {
+                sy += (newX[j]-x[j])*(newGradient[j]-gradient[j]);
+            }
+            if(sy>1e-10) {
+                newest = (newest+1)%memory;
+                for(int j=0;j<d;++j) {
+                    s[newest][j] = newX[j]-x[j];
+                    y[newest][j] = newGradient[j]-gradient[j];
+                }
+                rho[newest] = 1.0/sy;
+                corrections = Math.min(corrections+1, memory);
+            }
+            
+            double previousValue = value;
+            System.arraycopy(newX, 0, x, 0, d);
+            System.arraycopy(newGradient, 0, gradient, 0, d);
+            value = newValue;
+            
+            if(previousValue-value<=tolerance*Math.max(1.0, Math.abs(value))) {
+                break;
+            }
+        }
+        
+        return value;
+    }
+    
+    private static double dot(double[] a, double[] b) {
+        double sum = 0.0;
+        for(int j=0;j<a.length;++j) {
+            sum += a[j]*b[j];
+        }
+        return sum;
+    }
+    
+    private static void axpy(double a, double[] x, double[] y) {
+        for(int j=0;j<x.length;++j) {
+            y[j] += a*x[j];
+        }
+    }
+}
@@ -18,8 +18,8 @@ package com.datumbox.framework.utilities.dataset;
 
 import com.datumbox.common.dataobjects.Dataset;
 import com.datumbox.common.dataobjects.Record;
+import com.datumbox.configuration.ConcurrencyConfiguration;
 import com.datumbox.configuration.GeneralConfiguration;
-import com.datumbox.framework.utilities.text.cleaners.StringCleaner;
 import com.datumbox.framework.utilities.text.extractors.TextExtractor;
 import java.io.BufferedReader;
 import java.io.File;
@@ -27,10 +27,18 @@ import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.net.URI;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Deque;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 /**
  *
@@ -38,6 +46,254 @@ import java.util.Map;
  */
 public class DatasetBuilder {
     
+    private static final int READ_BUFFER_SIZE = 1<<20; //size in chars of the buffer of the readers; large sequential reads
+    
+    private static final int BATCH_SIZE = 256; //number of documents processed by a single task
+    
+    /**
+     * Extracts the features of the documents and appends the records directly
+     * in the target Dataset, in the order that the documents were added. When
+     * the parallelization is enabled in ConcurrencyConfiguration, the documents
+     * are grouped in batches which are processed by a worker pool, each thread
+     * using its own TextExtractor instance. The number of batches in flight is
+     * bounded, so the reader blocks on the oldest batch instead of loading the
+     * whole corpus in memory.
+     */
+    private static class Ingestion {
+        private final Dataset data;
+        private final TextExtractor<?, ?, ?> textExtractor;
+        
+        private final ExecutorService executorService;
+        private final ThreadLocal<TextExtractor<?, ?, ?>> threadExtractors;
+        private final Deque<Future<List<Record>>> pendingBatches = new ArrayDeque<>();
+        private final int maxPendingBatches;
+        
+        private Object theClass;
+        private List<String> batch = new ArrayList<>(BATCH_SIZE);
+        
+        private Ingestion(Dataset data, final TextExtractor<?, ?, ?> textExtractor) {
+            this.data = data;
+            this.textExtractor = textExtractor;
+            
+            if(ConcurrencyConfiguration.isParallelized()) {
+                executorService = ConcurrencyConfiguration.newExecutorService();
+                threadExtractors = new ThreadLocal<TextExtractor<?, ?, ?>>() {
+                    @Override
+                    protected TextExtractor<?, ?, ?> initialValue() {
+                        return copyOf(textExtractor);
+                    }
+                };
+                maxPendingBatches = 2*ConcurrencyConfiguration.getMaxNumberOfThreads();
+            }
+            else {
+                executorService = null;
+                threadExtractors = null;
+                maxPendingBatches = 0;
+            }
+        }
+        
+        /**
+         * Creates a new TextExtractor of the same type and with the same 
+         * parameters as the provided one.
+         * 
+         * @param <TP>
+         * @param <K>
+         * @param <V>
+         * @param textExtractor
+         * @return 
+         */
+        private static <TP extends TextExtractor.Parameters, K, V> TextExtractor<TP, K, V> copyOf(TextExtractor<TP, K, V> textExtractor) {
+            @SuppressWarnings("unchecked")
+            TextExtractor<TP, K, V> copy = TextExtractor.newInstance(textExtractor.getClass());
+            copy.setParameters(textExtractor.getParameters());
+            return copy;
+        }
+        
+        private static Record newRecord(TextExtractor<?, ?, ?> textExtractor, String text, Object theClass) {
+            Record r = new Record();
+            r.setY(theClass);
+            
+            //extract features of the string and add every keyword combination in X map
+            r.getX().putAll(textExtractor.clearAndExtract(text));
+            
+            return r;
+        }
+        
+        private void setClass(Object theClass) {
+            if(!batch.isEmpty()) {
+                submitBatch();
+            }
+            this.theClass = theClass;
+        }
+        
+        private void add(String text) {
+            if(executorService==null) {
+                data.add(newRecord(textExtractor, text, theClass));
+                return;
+            }
+            
+            batch.add(text);
+            if(batch.size()==BATCH_SIZE) {
+                submitBatch();
+            }
+        }
+        
+        private void submitBatch() {
+            if(pendingBatches.size()==maxPendingBatches) {
+                appendOldestBatch();
+            }
+            
+            final List<String> texts = batch;
+            final Object batchClass = theClass;
+            pendingBatches.add(executorService.submit(new Callable<List<Record>>() {
+                @Override
+                public List<Record> call() {
+                    TextExtractor<?, ?, ?> threadExtractor = threadExtractors.get();
+                    List<Record> records = new ArrayList<>(texts.size());
+                    for(String text : texts) {
+                        records.add(newRecord(threadExtractor, text, batchClass));
+                    }
+                    return records;
+                }
+            }));
+            batch = new ArrayList<>(BATCH_SIZE);
+        }
+        
+        private void appendOldestBatch() {
+            List<Record> records;
+            try {
+                records = pendingBatches.poll().get();
+            } 
+            catch (InterruptedException | ExecutionException ex) {
+                if(ex instanceof ExecutionException && ex.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException)ex.getCause();
+                }
+                throw new RuntimeException(ex);
+            }
+            
+            for(Record r : records) {
+                data.add(r);
+            }
+        }
+        
+        private void finish() {
+            if(executorService==null) {
+                return;
+            }
+            
+            if(!batch.isEmpty()) {
+                submitBatch();
+            }
+            while(!pendingBatches.isEmpty()) {
+                appendOldestBatch();
+            }
+        }
+        
+        private void close() {
+            if(executorService!=null) {
+                for(Future<List<Record>> future : pendingBatches) {
+                    future.cancel(true);
+                }
+                executorService.shutdownNow();
+            }
+        }
+    }
+    
+    /**
+     * Iterates through the documents of the text files, a single document per
+     * row, and extracts their features lazily. The rows of the files are 
+     * interleaved, so that the consecutive records belong to different classes,
+     * and every file is closed when it is exhausted.
+     */
+    private static class TextFilesIterator implements Iterator<Record> {
+        private final TextExtractor<?, ?, ?> textExtractor;
+        
+        private final List<Object> classes = new ArrayList<>();
+        private final List<BufferedReader> readers = new ArrayList<>();
+        private int current = 0;
+        
+        private String nextLine;
+        private Object nextClass;
+        
+        private TextFilesIterator(Map<Object, URI> dataset, TextExtractor<?, ?, ?> textExtractor) {
+            this.textExtractor = textExtractor;
+            
+            try {
+                for(Map.Entry<Object, URI> entry : dataset.entrySet()) {
+                    //the default buffer; many files are open at the same time
+                    readers.add(new BufferedReader(new InputStreamReader(new FileInputStream(new File(entry.getValue())), "UTF8")));
+                    classes.add(entry.getKey());
+                }
+                advance();
+            }
+            catch (IOException ex) {
+                close();
+                throw new RuntimeException(ex);
+            }
+        }
+        
+        private void advance() throws IOException {
+            nextLine = null;
+            while(!readers.isEmpty()) {
+                if(current>=readers.size()) {
+                    current = 0;
+                }
+                
+                String line = readers.get(current).readLine();
+                if(line==null) { //the file is exhausted
+                    readers.remove(current).close();
+                    classes.remove(current);
+                    continue;
+                }
+                
+                nextLine = line;
+                nextClass = classes.get(current);
+                ++current;
+                return;
+            }
+        }
+        
+        private void close() {
+            for(BufferedReader br : readers) {
+                try {
+                    br.close();
+                } 
+                catch (IOException ex) {
+                    //ignore, we are already closing the files
+                }
+            }
+            readers.clear();
+            classes.clear();
+        }
+        
+        @Override
+        public boolean hasNext() {
+            return nextLine!=null;
+        }
+        
+        @Override
+        public Record next() {
+            if(nextLine==null) {
+                throw new NoSuchElementException();
+            }
+            
+            Record r = Ingestion.newRecord(textExtractor, nextLine, nextClass);
+            try {
+                advance();
+            } 
+            catch (IOException ex) {
+                close();
+                throw new RuntimeException(ex);
+            }
+            return r;
+        }
+        
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+    }
+    
     public static Map<Object, List<String>> stringListsFromTextFiles(Map<Object, URI> dataset) {
         Map<Object, List<String>> listsMap = new HashMap<>();
         for(Map.Entry<Object, URI> entry : dataset.entrySet()) {
@@ -45,7 +301,7 @@ public class DatasetBuilder {
             URI datasetURI = entry.getValue();
             
             List<String> stringList = new ArrayList<>();
-            try(BufferedReader br = new BufferedReader(new InputStreamReader(new FileInputStream(new File(datasetURI)), "UTF8"))) {
+            try(BufferedReader br = new BufferedReader(new InputStreamReader(new FileInputStream(new File(datasetURI)), "UTF8"), READ_BUFFER_SIZE)) {
                 //read strings one by one
                 for(String line; (line = br.readLine()) != null; ) {
                     stringList.add(line);
@@ -60,74 +316,85 @@ public class DatasetBuilder {
         return listsMap;
     }
     
-    public static Dataset parseFromTextLists(Map<Object, List<String>> dataset, TextExtractor textExtractor) {
+    /**
+     * Returns a stream of the documents of the text files (one per row) which 
+     * does not load them in memory. Every iteration reads the files again and 
+     * extracts the features of the documents with the textExtractor, 
+     * interleaving the rows of the different classes. It can be used to train
+     * the StreamTrainable models on corpora which do not fit in a Dataset.
+     * 
+     * @param dataset
+     * @param textExtractor
+     * @return 
+     */
+    public static Iterable<Record> streamFromTextFiles(final Map<Object, URI> dataset, final TextExtractor<?, ?, ?> textExtractor) {
+        return new Iterable<Record>() {
+            @Override
+            public Iterator<Record> iterator() {
+                return new TextFilesIterator(dataset, textExtractor);
+            }
+        };
+    }
+    
+    public static Dataset parseFromTextLists(Map<Object, List<String>> dataset, TextExtractor<?, ?, ?> textExtractor) {
         Dataset data = new Dataset();
         
-        //loop throw the map and process each category file
-        for(Map.Entry<Object, List<String>> entry : dataset.entrySet()) {
-            Object theClass = entry.getKey();
-            List<String> textList = entry.getValue();
-            
-            if(GeneralConfiguration.DEBUG) {
-                System.out.println("Dataset Parsing "+theClass);
-            }
-            
-            Dataset classDataset = new Dataset();
-            for(String text : textList) {
-                Record r = new Record();
-                r.setY(theClass);
+        Ingestion ingestion = new Ingestion(data, textExtractor);
+        try {
+            //loop throw the map and process each category file
+            for(Map.Entry<Object, List<String>> entry : dataset.entrySet()) {
+                Object theClass = entry.getKey();
+                List<String> textList = entry.getValue();
 
-                //extract features of the string and add every keyword combination in X map
-                r.getX().putAll(textExtractor.extract(StringCleaner.clear(text)));
-                
-                //add each example in the classDataset
-                classDataset.add(r); 
+                if(GeneralConfiguration.DEBUG) {
+                    System.out.println("Dataset Parsing "+theClass);
+                }
+
+                ingestion.setClass(theClass);
+                for(String text : textList) {
+                    ingestion.add(text);
+                }
             }
-            
-            
-            //merge it with the training dataset
-            data.merge(classDataset);
-            classDataset = null;
-        }    
+            ingestion.finish();
+        }
+        finally {
+            ingestion.close();
+        }
 
         return data;
     }
     
-    public static Dataset parseFromTextFiles(Map<Object, URI> dataset, TextExtractor textExtractor) {
+    public static Dataset parseFromTextFiles(Map<Object, URI> dataset, TextExtractor<?, ?, ?> textExtractor) {
         Dataset data = new Dataset();
         
-        //loop throw the map and process each category file
-        for(Map.Entry<Object, URI> entry : dataset.entrySet()) {
-            Object theClass = entry.getKey();
-            URI datasetURI = entry.getValue();
-            
-            if(GeneralConfiguration.DEBUG) {
-                System.out.println("Dataset Parsing "+theClass);
-            }
-            
-            //process the files line-by-line, assuming there is a single document/case per row
-            Dataset classDataset = new Dataset();
-            try(BufferedReader br = new BufferedReader(new InputStreamReader(new FileInputStream(new File(datasetURI)), "UTF8"))) {
-                //read strings one by one
-                for(String line; (line = br.readLine()) != null; ) {
-                    Record r = new Record();
-                    r.setY(theClass);
-                    
-                    //extract features of the string and add every keyword combination in X map
-                    r.getX().putAll(textExtractor.extract(StringCleaner.clear(line)));
-                    
-                    //add each example in the classDataset
-                    classDataset.add(r); 
+        Ingestion ingestion = new Ingestion(data, textExtractor);
+        try {
+            //loop throw the map and process each category file
+            for(Map.Entry<Object, URI> entry : dataset.entrySet()) {
+                Object theClass = entry.getKey();
+                URI datasetURI = entry.getValue();
+
+                if(GeneralConfiguration.DEBUG) {
+                    System.out.println("Dataset Parsing "+theClass);
                 }
-            } 
-            catch (IOException ex) {
-                throw new RuntimeException(ex);
-            } 
-            
-            //merge it with the training dataset
-            data.merge(classDataset);
-            classDataset = null;
-        }    
+
+                //process the files line-by-line, assuming there is a single document/case per row
+                ingestion.setClass(theClass);
+                try(BufferedReader br = new BufferedReader(new InputStreamReader(new FileInputStream(new File(datasetURI)), "UTF8"), READ_BUFFER_SIZE)) {
+                    //read strings one by one
+                    for(String line; (line = br.readLine()) != null; ) {
+                        ingestion.add(line);
+                    }
+                } 
+                catch (IOException ex) {
+                    throw new RuntimeException(ex);
+                } 
+            }
+            ingestion.finish();
+        }
+        finally {
+            ingestion.close();
+        }
 
         return data;
     }
@@ -49,6 +49,13 @@ public class StringCleaner {
         smileys.put("=\\(", " PREPROCESSDOC_EM14 ");
     }
     
+    private static final ThreadLocal<TextNormalizer> threadNormalizer = new ThreadLocal<TextNormalizer>() {
+        @Override
+        protected TextNormalizer initialValue() {
+            return new TextNormalizer();
+        }
+    };
+    
     public static String tokenizeURLs(String text) {
         /*
         Matcher m = URL_PATTERN.matcher(text);
@@ -95,13 +102,18 @@ public class StringCleaner {
     }
     
     
+    /**
+     * Tokenizes the URLs and the smileys, removes the accents, the symbols and
+     * the extra spaces and converts the text to lowercase. The result is the 
+     * same as calling the above methods one after the other, but the text is
+     * processed in a single pass by the TextNormalizer.
+     * 
+     * @param text
+     * @return 
+     */
     public static String clear(String text) {
-        text = StringCleaner.tokenizeURLs(text);
-        text = StringCleaner.tokenizeSmileys(text);
-        text = StringCleaner.removeAccents(text);
-        text = StringCleaner.removeSymbols(text);
-        text = StringCleaner.removeExtraSpaces(text);
-        
-        return text.toLowerCase();
+        TextNormalizer normalizer = threadNormalizer.get();
+        normalizer.normalize(text);
+        return normalizer.getText();
     }
 }
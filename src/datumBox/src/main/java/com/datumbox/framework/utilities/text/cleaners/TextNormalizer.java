@@ -0,0 +1,505 @@
+/*
+ * Copyright (C) 2014 Vasilis Vryniotis <bbriniotis at datumbox.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.datumbox.framework.utilities.text.cleaners;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Single pass implementation of StringCleaner.clear() followed by the 
+ * WhitespaceTokenizer. Instead of running a separate regex pass for every 
+ * cleaning step, the text is scanned once: URLs are recognized by a hand 
+ * written matcher which is equivalent to the URL regex of the StringCleaner, 
+ * smileys by a trie, and every other character is decomposed (NFD), filtered, 
+ * lowercased and written directly in a reusable buffer together with the 
+ * boundaries of its tokens. The produced text and tokens are identical to the
+ * ones of the original chain of String operations.
+ * 
+ * The smileys are read from StringCleaner.smileys when the object is 
+ * constructed. Instances are not thread-safe; use one per thread.
+ * 
+ * @author Vasilis Vryniotis <bbriniotis at datumbox.com>
+ */
+public class TextNormalizer {
+    
+    /**
+     * Cache of the letters, separators and underscores in the canonical 
+     * decomposition of every BMP character. It is filled lazily and it is 
+     * shared by all the threads; Strings are immutable and thus safe to publish.
+     */
+    private static final String[] BMP_DECOMPOSITIONS = new String[Character.MAX_VALUE+1];
+    
+    private static final String URL_SYMBOLS = "-+&@#/%=~_|"; //allowed everywhere in the URL
+    private static final String URL_MIDDLE_SYMBOLS = "?!:,.;"; //not allowed as the last character
+    
+    private static final class SmileyNode {
+        private char[] labels = new char[0];
+        private SmileyNode[] children = new SmileyNode[0];
+        private String replacement = null;
+        
+        private SmileyNode getChild(char c) {
+            for(int i=0;i<labels.length;++i) {
+                if(labels[i]==c) {
+                    return children[i];
+                }
+            }
+            return null;
+        }
+        
+        private SmileyNode addChild(char c) {
+            SmileyNode child = getChild(c);
+            if(child==null) {
+                child = new SmileyNode();
+                labels = Arrays.copyOf(labels, labels.length+1);
+                children = Arrays.copyOf(children, children.length+1);
+                labels[labels.length-1] = c;
+                children[children.length-1] = child;
+            }
+            return child;
+        }
+    }
+    
+    private final SmileyNode smileys;
+    
+    private char[] buffer = new char[1024];
+    private int length;
+    
+    private int[] tokenStarts = new int[128];
+    private int[] tokenEnds = new int[128];
+    private int numberOfTokens;
+    
+    private boolean startsWithSeparator;
+    private boolean pendingSpace;
+    private int currentTokenStart;
+    private boolean specialCasing;
+    private int pendingHighSurrogate;
+    
+    public TextNormalizer() {
+        smileys = new SmileyNode();
+        for(Map.Entry<String, String> smiley : StringCleaner.smileys.entrySet()) {
+            //the keys are regexes of literals with escaped special characters
+            String literal = smiley.getKey().replace("\\", "");
+            SmileyNode node = smileys;
+            for(int i=0;i<literal.length();++i) {
+                node = node.addChild(literal.charAt(i));
+            }
+            node.replacement = smiley.getValue();
+        }
+    }
+    
+    /**
+     * Cleans and tokenizes the text. The results are available through the
+     * getters until the next call.
+     * 
+     * @param text 
+     */
+    public void normalize(String text) {
+        length = 0;
+        numberOfTokens = 0;
+        startsWithSeparator = false;
+        pendingSpace = false;
+        currentTokenStart = -1;
+        pendingHighSurrogate = -1;
+        
+        //String.toLowerCase() applies locale specific rules for these languages
+        String language = Locale.getDefault().getLanguage();
+        specialCasing = "tr".equals(language) || "az".equals(language) || "lt".equals(language);
+        
+        int n = text.length();
+        int i = 0;
+        while(i<n) {
+            int end = matchURL(text, i);
+            if(end!=-1) {
+                processReplacement(StringCleaner.TOKENIZED_URL);
+                i = end;
+                continue;
+            }
+            
+            SmileyNode node = smileys;
+            SmileyNode match = null;
+            for(int j=i;j<n && (node=node.getChild(text.charAt(j)))!=null;++j) {
+                if(node.replacement!=null) {
+                    match = node;
+                    end = j+1;
+                }
+            }
+            if(match!=null) {
+                processReplacement(match.replacement);
+                i = end;
+                continue;
+            }
+            
+            int cp = text.codePointAt(i);
+            processCodePoint(cp);
+            i += Character.charCount(cp);
+        }
+        
+        finish();
+    }
+    
+    /**
+     * Returns the clean text, which is equal to StringCleaner.clear(text).
+     * 
+     * @return 
+     */
+    public String getText() {
+        return new String(buffer, 0, length);
+    }
+    
+    /**
+     * Returns the internal buffer which stores the clean text. The tokens are
+     * ranges of this buffer.
+     * 
+     * @return 
+     */
+    public char[] getBuffer() {
+        return buffer;
+    }
+    
+    public int getLength() {
+        return length;
+    }
+    
+    /**
+     * Returns the number of tokens, which is equal to the size of the list of
+     * the WhitespaceTokenizer on the clean text.
+     * 
+     * @return 
+     */
+    public int getNumberOfTokens() {
+        return numberOfTokens;
+    }
+    
+    public int getTokenStart(int token) {
+        return tokenStarts[token];
+    }
+    
+    public int getTokenEnd(int token) {
+        return tokenEnds[token];
+    }
+    
+    public String getToken(int token) {
+        return new String(buffer, tokenStarts[token], tokenEnds[token]-tokenStarts[token]);
+    }
+    
+    /**
+     * Returns the tokens as Strings.
+     * 
+     * @return 
+     */
+    public List<String> getTokens() {
+        List<String> tokens = new ArrayList<>(numberOfTokens);
+        for(int i=0;i<numberOfTokens;++i) {
+            tokens.add(getToken(i));
+        }
+        return tokens;
+    }
+    
+    private void processReplacement(String replacement) {
+        int n = replacement.length();
+        for(int i=0;i<n;) {
+            int cp = replacement.codePointAt(i);
+            processCodePoint(cp);
+            i += Character.charCount(cp);
+        }
+    }
+    
+    private void processCodePoint(int cp) {
+        if(pendingHighSurrogate!=-1) {
+            //the removal of the accents can join two unpaired surrogates to a code point which is not decomposed
+            if(Character.isLowSurrogate((char)cp) && cp<=Character.MAX_VALUE) {
+                int joined = Character.toCodePoint((char)pendingHighSurrogate, (char)cp);
+                pendingHighSurrogate = -1;
+                if(Character.isLetter(joined)) {
+                    emit(joined);
+                }
+                return;
+            }
+            else if(isCombiningDiacriticalMark(cp)) {
+                return;
+            }
+            pendingHighSurrogate = -1;
+        }
+        
+        if(cp<128) {
+            if((cp>='a' && cp<='z') || (cp>='A' && cp<='Z') || cp=='_' || cp==' ') {
+                emit(cp);
+            }
+            return;
+        }
+        
+        if(Character.isHighSurrogate((char)cp) && cp<=Character.MAX_VALUE) {
+            pendingHighSurrogate = cp;
+            return;
+        }
+        
+        String decomposition = decomposition(cp);
+        int n = decomposition.length();
+        for(int i=0;i<n;) {
+            int dcp = decomposition.codePointAt(i);
+            emit(dcp);
+            i += Character.charCount(dcp);
+        }
+    }
+    
+    private void emit(int cp) {
+        if(cp==' ') {
+            //leading spaces are trimmed and sequences of spaces are collapsed
+            if(length>0) {
+                pendingSpace = true;
+            }
+            return;
+        }
+        
+        if(pendingSpace) {
+            closeToken();
+            append(' ');
+            pendingSpace = false;
+        }
+        
+        if(isSeparator(cp)) {
+            closeToken();
+            if(length==0) {
+                startsWithSeparator = true;
+            }
+            append(cp);
+        }
+        else {
+            if(currentTokenStart==-1) {
+                currentTokenStart = length;
+            }
+            if(cp=='Σ' || cp=='İ') { //final sigma and dotted capital I have context dependent lowercase
+                specialCasing = true;
+            }
+            append(cp);
+        }
+    }
+    
+    private void closeToken() {
+        if(currentTokenStart==-1) {
+            return;
+        }
+        
+        if(!specialCasing) {
+            //Character.toLowerCase() never changes the number of chars of a code point
+            for(int i=currentTokenStart;i<length;) {
+                int cp = Character.codePointAt(buffer, i, length);
+                i += Character.toChars(Character.toLowerCase(cp), buffer, i);
+            }
+        }
+        
+        addToken(currentTokenStart, length);
+        currentTokenStart = -1;
+    }
+    
+    private void addToken(int start, int end) {
+        if(numberOfTokens==tokenStarts.length) {
+            tokenStarts = Arrays.copyOf(tokenStarts, numberOfTokens<<1);
+            tokenEnds = Arrays.copyOf(tokenEnds, numberOfTokens<<1);
+        }
+        tokenStarts[numberOfTokens] = start;
+        tokenEnds[numberOfTokens] = end;
+        ++numberOfTokens;
+    }
+    
+    private void finish() {
+        closeToken(); //any pending space is dropped, since trailing spaces are trimmed
+        
+        if(specialCasing) {
+            //the context of the special casing rules is not limited to the token, so the whole text is lowercased and the lengths of the tokens may change
+            String lowercase = getText().toLowerCase();
+            length = 0;
+            numberOfTokens = 0;
+            int tokenStart = -1;
+            for(int i=0;i<lowercase.length();) {
+                int cp = lowercase.codePointAt(i);
+                if(isSeparator(cp)) {
+                    if(tokenStart!=-1) {
+                        addToken(tokenStart, length);
+                        tokenStart = -1;
+                    }
+                }
+                else if(tokenStart==-1) {
+                    tokenStart = length;
+                }
+                append(cp);
+                i += Character.charCount(cp);
+            }
+            if(tokenStart!=-1) {
+                addToken(tokenStart, length);
+            }
+        }
+        
+        //reproduce String.split(): no match returns the text and trailing empty strings are removed
+        if(length==0) {
+            addLeadingEmptyToken();
+        }
+        else if(startsWithSeparator && numberOfTokens>0) {
+            addLeadingEmptyToken();
+        }
+    }
+    
+    private void addLeadingEmptyToken() {
+        if(numberOfTokens==tokenStarts.length) {
+            tokenStarts = Arrays.copyOf(tokenStarts, numberOfTokens<<1);
+            tokenEnds = Arrays.copyOf(tokenEnds, numberOfTokens<<1);
+        }
+        System.arraycopy(tokenStarts, 0, tokenStarts, 1, numberOfTokens);
+        System.arraycopy(tokenEnds, 0, tokenEnds, 1, numberOfTokens);
+        tokenStarts[0] = 0;
+        tokenEnds[0] = 0;
+        ++numberOfTokens;
+    }
+    
+    private void append(int cp) {
+        if(length+2>buffer.length) {
+            buffer = Arrays.copyOf(buffer, buffer.length<<1);
+        }
+        length += Character.toChars(cp, buffer, length);
+    }
+    
+    private static boolean isCombiningDiacriticalMark(int cp) {
+        String decomposition = Normalizer.normalize(new String(Character.toChars(cp)), Normalizer.Form.NFD);
+        for(int i=0;i<decomposition.length();++i) {
+            if(Character.UnicodeBlock.of(decomposition.charAt(i))!=Character.UnicodeBlock.COMBINING_DIACRITICAL_MARKS) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    private static boolean isSeparator(int cp) {
+        int type = Character.getType(cp);
+        return type==Character.SPACE_SEPARATOR || type==Character.LINE_SEPARATOR || type==Character.PARAGRAPH_SEPARATOR;
+    }
+    
+    /**
+     * Returns the characters of the canonical decomposition (NFD) of the code 
+     * point which survive the removal of the symbols. Those are always starters
+     * and thus decomposing the code points one by one is equivalent to 
+     * normalizing the whole text.
+     * 
+     * @param cp
+     * @return 
+     */
+    private static String decomposition(int cp) {
+        if(cp<=Character.MAX_VALUE) {
+            String decomposition = BMP_DECOMPOSITIONS[cp];
+            if(decomposition==null) {
+                decomposition = keepLettersAndSeparators(Normalizer.normalize(String.valueOf((char)cp), Normalizer.Form.NFD));
+                BMP_DECOMPOSITIONS[cp] = decomposition;
+            }
+            return decomposition;
+        }
+        return keepLettersAndSeparators(Normalizer.normalize(new String(Character.toChars(cp)), Normalizer.Form.NFD));
+    }
+    
+    private static String keepLettersAndSeparators(String text) {
+        StringBuilder sb = new StringBuilder(text.length());
+        for(int i=0;i<text.length();) {
+            int cp = text.codePointAt(i);
+            if(Character.isLetter(cp) || isSeparator(cp) || cp=='_') {
+                sb.appendCodePoint(cp);
+            }
+            i += Character.charCount(cp);
+        }
+        return sb.toString();
+    }
+    
+    /**
+     * Equivalent to a find() of the URL pattern of the StringCleaner at the 
+     * specific position: (https?|ftp|file)://[-a-zA-Z0-9+&@#/%?=~_|!:,.;]*[-a-zA-Z0-9+&@#/%=~_|]
+     * with the CASE_INSENSITIVE and UNICODE_CASE flags. Returns the end of the
+     * URL or -1 if there is no match.
+     * 
+     * @param text
+     * @param start
+     * @return 
+     */
+    private static int matchURL(String text, int start) {
+        int afterScheme = -1;
+        int i = matchIgnoreCase(text, start, "http");
+        if(i!=-1) {
+            int withS = matchIgnoreCase(text, i, "s");
+            if(withS!=-1) {
+                afterScheme = matchIgnoreCase(text, withS, "://");
+            }
+            if(afterScheme==-1) {
+                afterScheme = matchIgnoreCase(text, i, "://");
+            }
+        }
+        else if((i = matchIgnoreCase(text, start, "ftp"))!=-1 || (i = matchIgnoreCase(text, start, "file"))!=-1) {
+            afterScheme = matchIgnoreCase(text, i, "://");
+        }
+        if(afterScheme==-1) {
+            return -1;
+        }
+        
+        //the greedy part is backtracked up to its last valid ending character
+        int end = -1;
+        int n = text.length();
+        for(i=afterScheme;i<n;) {
+            int cp = text.codePointAt(i);
+            boolean validEnding = isURLAlphanumeric(cp) || (cp<128 && URL_SYMBOLS.indexOf(cp)!=-1);
+            if(!validEnding && !(cp<128 && URL_MIDDLE_SYMBOLS.indexOf(cp)!=-1)) {
+                break;
+            }
+            i += Character.charCount(cp);
+            if(validEnding) {
+                end = i;
+            }
+        }
+        return end;
+    }
+    
+    private static int matchIgnoreCase(String text, int start, String lowercaseLiteral) {
+        int n = text.length();
+        int i = start;
+        for(int j=0;j<lowercaseLiteral.length();++j) {
+            if(i>=n) {
+                return -1;
+            }
+            int cp = text.codePointAt(i);
+            if(cp!=lowercaseLiteral.charAt(j) && Character.toLowerCase(Character.toUpperCase(cp))!=lowercaseLiteral.charAt(j)) {
+                return -1;
+            }
+            i += Character.charCount(cp);
+        }
+        return i;
+    }
+    
+    private static boolean isURLAlphanumeric(int cp) {
+        return inRangeIgnoreCase(cp, 'a', 'z') || inRangeIgnoreCase(cp, 'A', 'Z') || inRangeIgnoreCase(cp, '0', '9');
+    }
+    
+    private static boolean inRangeIgnoreCase(int cp, int lower, int upper) {
+        if(cp>=lower && cp<=upper) {
+            return true;
+        }
+        int up = Character.toUpperCase(cp);
+        if(up>=lower && up<=upper) {
+            return true;
+        }
+        int low = Character.toLowerCase(up);
+        return low>=lower && low<=upper;
+    }
+    
+}
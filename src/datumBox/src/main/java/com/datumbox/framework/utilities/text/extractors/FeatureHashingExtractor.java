@@ -0,0 +1,210 @@
+/*
+ * Copyright (C) 2014 Vasilis Vryniotis <bbriniotis at datumbox.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.datumbox.framework.utilities.text.extractors;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Feature hashing (hashing trick) wrapper of the other TextExtractors. The 
+ * features of the wrapped extractor are replaced by integer ids in the range
+ * [0, 2^numberOfBits), so the number of features and the memory of all the
+ * downstream models are bounded, and no vocabulary needs to be stored.
+ * 
+ * For the extractors which return feature scores (NgramsExtractor) the keys
+ * are hashed and the scores of the colliding features are added up. With 
+ * signed hashing every feature is multiplied by +1 or -1, chosen by a different
+ * bit of its hash, so that the collisions cancel out on average instead of 
+ * inflating the values; this is suited to linear models, while count based 
+ * models such as the MultinomialNaiveBayes need the unsigned variant. For the
+ * extractors which return word sequences (WordSequenceExtractor, 
+ * UniqueWordSequenceExtractor) the positions are kept and the words are 
+ * replaced by their ids.
+ * 
+ * The NgramsExtractor calculates the ids directly from its internal word ids, 
+ * without building the Strings of the keywords.
+ * 
+ * @author Vasilis Vryniotis <bbriniotis at datumbox.com>
+ */
+public class FeatureHashingExtractor extends TextExtractor<FeatureHashingExtractor.Parameters, Object, Object> {
+    
+    public static class Parameters extends TextExtractor.Parameters {
+        
+        private static final long serialVersionUID = 1L;
+        
+        private Class<? extends TextExtractor<?, ?, ?>> textExtractorClass = NgramsExtractor.class;
+        
+        private TextExtractor.Parameters textExtractorParameters = new NgramsExtractor.Parameters();
+        
+        private int numberOfBits = 18; //2^18 features
+        
+        private boolean signed = true;
+
+        public Class<? extends TextExtractor<?, ?, ?>> getTextExtractorClass() {
+            return textExtractorClass;
+        }
+
+        public void setTextExtractorClass(Class<? extends TextExtractor<?, ?, ?>> textExtractorClass) {
+            this.textExtractorClass = textExtractorClass;
+        }
+
+        public TextExtractor.Parameters getTextExtractorParameters() {
+            return textExtractorParameters;
+        }
+
+        public void setTextExtractorParameters(TextExtractor.Parameters textExtractorParameters) {
+            this.textExtractorParameters = textExtractorParameters;
+        }
+
+        public int getNumberOfBits() {
+            return numberOfBits;
+        }
+
+        public void setNumberOfBits(int numberOfBits) {
+            if(numberOfBits<1 || numberOfBits>30) {
+                throw new IllegalArgumentException("The number of bits must be between 1 and 30.");
+            }
+            this.numberOfBits = numberOfBits;
+        }
+
+        public boolean isSigned() {
+            return signed;
+        }
+
+        public void setSigned(boolean signed) {
+            this.signed = signed;
+        }
+    }
+    
+    private TextExtractor<?, ?, ?> textExtractor;
+    
+    @Override
+    public Map<Object, Object> extract(final String text) {
+        TextExtractor<?, ?, ?> extractor = getTextExtractor();
+        if(extractor instanceof NgramsExtractor) {
+            return ((NgramsExtractor)extractor).extractHashed(text, parameters.getNumberOfBits(), parameters.isSigned());
+        }
+        return hashFeatures(extractor.extract(text));
+    }
+    
+    @Override
+    public Map<Object, Object> clearAndExtract(final String text) {
+        TextExtractor<?, ?, ?> extractor = getTextExtractor();
+        if(extractor instanceof NgramsExtractor) {
+            return ((NgramsExtractor)extractor).clearAndExtractHashed(text, parameters.getNumberOfBits(), parameters.isSigned());
+        }
+        return hashFeatures(extractor.clearAndExtract(text));
+    }
+    
+    /**
+     * Returns the 32bit hash of the feature. The lower bits are used as its id
+     * and the highest bit as its sign.
+     * 
+     * @param feature
+     * @return 
+     */
+    public static int hash(Object feature) {
+        return mix(feature.hashCode());
+    }
+    
+    /**
+     * Returns the id of the hash, which is in the range [0, 2^numberOfBits).
+     * 
+     * @param hash
+     * @param numberOfBits
+     * @return 
+     */
+    public static int featureId(int hash, int numberOfBits) {
+        return hash & ((1<<numberOfBits)-1);
+    }
+    
+    /**
+     * Returns the sign of the hash. It depends on the highest bit, which is not
+     * part of the id.
+     * 
+     * @param hash
+     * @return 
+     */
+    public static double sign(int hash) {
+        return (hash<0)?-1.0:1.0;
+    }
+    
+    /**
+     * Finalization step of MurmurHash3, which spreads the bits of the hashCode.
+     * 
+     * @param hashCode
+     * @return 
+     */
+    static int mix(int hashCode) {
+        int h = hashCode;
+        h ^= h>>>16;
+        h *= 0x85ebca6b;
+        h ^= h>>>13;
+        h *= 0xc2b2ae35;
+        h ^= h>>>16;
+        return h;
+    }
+    
+    private TextExtractor<?, ?, ?> getTextExtractor() {
+        if(textExtractor==null || textExtractor.getClass()!=parameters.getTextExtractorClass() || textExtractor.getParameters()!=parameters.getTextExtractorParameters()) {
+            TextExtractor<?, ?, ?> extractor = TextExtractor.newInstance(parameters.getTextExtractorClass());
+            setTextExtractorParameters(extractor, parameters.getTextExtractorParameters());
+            textExtractor = extractor;
+        }
+        return textExtractor;
+    }
+    
+    /**
+     * Sets the parameters of the wrapped TextExtractor. They are stored with
+     * their base type, so they must be of the type that its class expects.
+     * 
+     * @param <TP>
+     * @param extractor
+     * @param extractorParameters 
+     */
+    @SuppressWarnings("unchecked")
+    private static <TP extends TextExtractor.Parameters> void setTextExtractorParameters(TextExtractor<TP, ?, ?> extractor, TextExtractor.Parameters extractorParameters) {
+        extractor.setParameters((TP)extractorParameters);
+    }
+    
+    private Map<Object, Object> hashFeatures(Map<?, ?> features) {
+        int numberOfBits = parameters.getNumberOfBits();
+        boolean signed = parameters.isSigned();
+        
+        Map<Object, Object> hashedFeatures = new HashMap<>();
+        for(Map.Entry<?, ?> entry : features.entrySet()) {
+            Object value = entry.getValue();
+            if(value instanceof Number) {
+                int hash = hash(entry.getKey());
+                Integer featureId = featureId(hash, numberOfBits);
+                double score = ((Number)value).doubleValue();
+                if(signed) {
+                    score *= sign(hash);
+                }
+                
+                Double previousScore = (Double)hashedFeatures.get(featureId);
+                hashedFeatures.put(featureId, (previousScore==null)?score:previousScore+score);
+            }
+            else {
+                //word sequences: the positions are kept and the words are replaced by their ids
+                hashedFeatures.put(entry.getKey(), featureId(hash(value), numberOfBits));
+            }
+        }
+        
+        return hashedFeatures;
+    }
+}
@@ -16,10 +16,14 @@
  */
 package com.datumbox.framework.utilities.text.extractors;
 
-import com.datumbox.common.utilities.PHPfunctions;
+import com.datumbox.common.dataobjects.IntegerDictionary;
+import com.datumbox.common.dataobjects.LongIntHashMap;
+import com.datumbox.framework.utilities.text.cleaners.StringCleaner;
+import com.datumbox.framework.utilities.text.cleaners.TextNormalizer;
 import com.datumbox.framework.utilities.text.tokenizers.Tokenizer;
 import com.datumbox.framework.utilities.text.tokenizers.WhitespaceTokenizer;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
@@ -112,93 +116,452 @@ public class NgramsExtractor extends TextExtractor<NgramsExtractor.Parameters, S
         }
     }
     
-    protected static final String SEPARATOR = "_";
+    /**
+     * Per thread buffers which are reused by all the extract() calls of the 
+     * thread. The keyword combinations are the nodes of a trie: every node is
+     * a combination of word ids, identified by its parent node (the combination
+     * without its last word) and its last word. The children of the nodes are 
+     * found in a primitive map keyed by the packed (parent, word) pair, so 
+     * building and scoring the combinations does not create any objects.
+     */
+    private static final class Buffers {
+        //document: words are replaced by dense ids in order of appearance
+        private int[] wordTable = new int[512]; //open addressing table of id+1 (0 is empty), hashed as String.hashCode() so Strings and char ranges share it
+        private int[] ID2slot = new int[256];
+        private int[] ID2hash = new int[256];
+        private int nullID = -1;
+        private String[] ID2word = new String[256];
+        private int[] ID2occurrences = new int[256];
+        private boolean[] usableIDs = new boolean[256];
+        private boolean[] numericIDs = new boolean[256];
+        private int numberOfIDs;
         
-    
-    private Map<Integer, String> ID2word; //ID=>Kwd
-    private Map<Integer, Double> ID2occurrences; //ID=>counts/scores
-    private Map<Integer, Integer> position2ID; //word position=>ID
-
-    private Integer numberOfWordsInDoc;
+        private int[] position2ID = new int[1024];
+        private int numberOfWordsInDoc;
+        
+        //trie of the combinations
+        private final LongIntHashMap node2child = new LongIntHashMap(4096);
+        private int[] nodeParent = new int[4096];
+        private int[] nodeWord = new int[4096];
+        private int[] nodeWindow = new int[4096]; //the last window which contains the combination
+        private double[] nodeScore = new double[4096];
+        private int numberOfNodes;
+        
+        //combinations of the current window
+        private int[] windowNodes = new int[256];
+        private int[] windowNumberOfWords = new int[256];
+        private int[] windowWordsBetween = new int[256]; //words between the last word and the window start
+        private int windowSize;
+        
+        private int[] keywordIDs = new int[16];
+        private int[] ID2power = new int[0]; //31^length of the words, used by the feature hashing
+        
+        private Tokenizer tokenizer;
+        private TextNormalizer normalizer;
         
+        private void reset() {
+            for(int id=0;id<numberOfIDs;++id) {
+                if(id!=nullID) {
+                    wordTable[ID2slot[id]] = 0;
+                }
+            }
+            nullID = -1;
+            numberOfIDs = 0;
+            numberOfWordsInDoc = 0;
+            node2child.clear();
+            numberOfNodes = 0;
+            windowSize = 0;
+        }
+        
+        private Tokenizer getTokenizer(Class<? extends Tokenizer> tokenizerClass) {
+            if(tokenizer==null || tokenizer.getClass()!=tokenizerClass) {
+                try {
+                    tokenizer = tokenizerClass.newInstance();
+                } 
+                catch (InstantiationException | IllegalAccessException ex) {
+                    throw new RuntimeException(ex);
+                }
+            }
+            return tokenizer;
+        }
+        
+        private TextNormalizer getNormalizer() {
+            if(normalizer==null) {
+                normalizer = new TextNormalizer();
+            }
+            return normalizer;
+        }
+        
+        private int addWord(String word) {
+            int id;
+            if(word==null) {
+                if(nullID==-1) {
+                    nullID = newID(null, 0);
+                }
+                id = nullID;
+            }
+            else {
+                int hash = word.hashCode();
+                int mask = wordTable.length-1;
+                int slot = (hash^(hash>>>16))&mask;
+                while((id=wordTable[slot]-1)!=-1 && (ID2hash[id]!=hash || !word.equals(ID2word[id]))) {
+                    slot = (slot+1)&mask;
+                }
+                if(id==-1) {
+                    id = newWord(word, hash, slot);
+                }
+            }
+            ++ID2occurrences[id];
+            return id;
+        }
+        
+        private int addWord(char[] chars, int start, int end) {
+            int hash = 0;
+            for(int i=start;i<end;++i) {
+                hash = 31*hash + chars[i];
+            }
+            int mask = wordTable.length-1;
+            int slot = (hash^(hash>>>16))&mask;
+            int id;
+            while((id=wordTable[slot]-1)!=-1 && (ID2hash[id]!=hash || !regionEquals(ID2word[id], chars, start, end))) {
+                slot = (slot+1)&mask;
+            }
+            if(id==-1) {
+                id = newWord(new String(chars, start, end-start), hash, slot);
+            }
+            ++ID2occurrences[id];
+            return id;
+        }
+        
+        private static boolean regionEquals(String word, char[] chars, int start, int end) {
+            if(word==null || word.length()!=end-start) {
+                return false;
+            }
+            for(int i=start;i<end;++i) {
+                if(word.charAt(i-start)!=chars[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        
+        private int newWord(String word, int hash, int slot) {
+            int id = newID(word, hash);
+            wordTable[slot] = id+1;
+            ID2slot[id] = slot;
+            
+            if(numberOfIDs*2>wordTable.length) { //keep the load factor below 0.5
+                wordTable = new int[wordTable.length<<1];
+                int mask = wordTable.length-1;
+                for(int i=0;i<numberOfIDs;++i) {
+                    if(i!=nullID) {
+                        int s = (ID2hash[i]^(ID2hash[i]>>>16))&mask;
+                        while(wordTable[s]!=0) {
+                            s = (s+1)&mask;
+                        }
+                        wordTable[s] = i+1;
+                        ID2slot[i] = s;
+                    }
+                }
+            }
+            return id;
+        }
+        
+        private int newID(String word, int hash) {
+            int id = numberOfIDs++;
+            if(id==ID2word.length) {
+                int capacity = id<<1;
+                ID2word = Arrays.copyOf(ID2word, capacity);
+                ID2slot = Arrays.copyOf(ID2slot, capacity);
+                ID2hash = Arrays.copyOf(ID2hash, capacity);
+                ID2occurrences = Arrays.copyOf(ID2occurrences, capacity);
+                usableIDs = Arrays.copyOf(usableIDs, capacity);
+                numericIDs = Arrays.copyOf(numericIDs, capacity);
+            }
+            ID2word[id] = word;
+            ID2hash[id] = hash;
+            ID2occurrences[id] = 0;
+            return id;
+        }
+        
+        private void ensurePositions(int numberOfWordsInDoc) {
+            if(position2ID.length<numberOfWordsInDoc) {
+                position2ID = new int[Math.max(numberOfWordsInDoc, position2ID.length<<1)];
+            }
+            this.numberOfWordsInDoc = numberOfWordsInDoc;
+        }
+        
+        private int getOrCreateNode(int parent, int wordID) {
+            long key = IntegerDictionary.key(parent, wordID);
+            int node = node2child.get(key, -1);
+            if(node==-1) {
+                node = numberOfNodes++;
+                if(node==nodeParent.length) {
+                    int capacity = node<<1;
+                    nodeParent = Arrays.copyOf(nodeParent, capacity);
+                    nodeWord = Arrays.copyOf(nodeWord, capacity);
+                    nodeWindow = Arrays.copyOf(nodeWindow, capacity);
+                    nodeScore = Arrays.copyOf(nodeScore, capacity);
+                }
+                nodeParent[node] = parent;
+                nodeWord[node] = wordID;
+                nodeWindow[node] = -1;
+                nodeScore[node] = 0.0;
+                node2child.put(key, node);
+            }
+            return node;
+        }
+        
+        private boolean containsWord(int node, int wordID) {
+            while(node!=-1) {
+                if(nodeWord[node]==wordID) {
+                    return true;
+                }
+                node = nodeParent[node];
+            }
+            return false;
+        }
+        
+        private void addToWindow(int node, int numberOfWords, int wordsBetween, int windowStart) {
+            nodeWindow[node] = windowStart;
+            if(windowSize==windowNodes.length) {
+                int capacity = windowSize<<1;
+                windowNodes = Arrays.copyOf(windowNodes, capacity);
+                windowNumberOfWords = Arrays.copyOf(windowNumberOfWords, capacity);
+                windowWordsBetween = Arrays.copyOf(windowWordsBetween, capacity);
+            }
+            windowNodes[windowSize] = node;
+            windowNumberOfWords[windowSize] = numberOfWords;
+            windowWordsBetween[windowSize] = wordsBetween;
+            ++windowSize;
+        }
+    }
+    
+    private static final ThreadLocal<Buffers> threadBuffers = new ThreadLocal<Buffers>() {
+        @Override
+        protected Buffers initialValue() {
+            return new Buffers();
+        }
+    };
+    
+    /**
+     * Extracts the keyword combinations of the text and their proximity scores.
+     * The extractor keeps no state between the calls, so a single instance can
+     * be used by many threads.
+     * 
+     * @param text
+     * @return 
+     */
     @Override
     public Map<String, Double> extract(final String text) {
-        //initialize/reset the protected variables
-        ID2word = new HashMap<>();
-        ID2occurrences = new HashMap<>();
-        position2ID = new LinkedHashMap<>(); //maintain the order of insertation
-        numberOfWordsInDoc = 0;
+        Buffers buffers = threadBuffers.get();
+        loadWords(buffers, text);
+        scoreCombinations(buffers);
+        return buildKeywordsMap(buffers);
+    }
+    
+    /**
+     * Same as extract(StringCleaner.clear(text)). When the WhitespaceTokenizer
+     * is used, the words are read directly from the buffer of the 
+     * TextNormalizer and only the distinct words become Strings.
+     * 
+     * @param text
+     * @return 
+     */
+    @Override
+    public Map<String, Double> clearAndExtract(final String text) {
+        if(parameters.getTokenizer()!=WhitespaceTokenizer.class) {
+            return super.clearAndExtract(text);
+        }
+        
+        Buffers buffers = threadBuffers.get();
+        loadNormalizedWords(buffers, text);
+        scoreCombinations(buffers);
+        return buildKeywordsMap(buffers);
+    }
+    
+    /**
+     * Same as hashing the keywords of extract(text) with the 
+     * FeatureHashingExtractor, without building the Strings of the keywords.
+     * 
+     * @param text
+     * @param numberOfBits
+     * @param signed
+     * @return 
+     */
+    Map<Object, Object> extractHashed(final String text, int numberOfBits, boolean signed) {
+        Buffers buffers = threadBuffers.get();
+        loadWords(buffers, text);
+        scoreCombinations(buffers);
+        return buildHashedKeywordsMap(buffers, numberOfBits, signed);
+    }
+    
+    /**
+     * Same as extractHashed(StringCleaner.clear(text), numberOfBits, signed).
+     * 
+     * @param text
+     * @param numberOfBits
+     * @param signed
+     * @return 
+     */
+    Map<Object, Object> clearAndExtractHashed(final String text, int numberOfBits, boolean signed) {
+        Buffers buffers = threadBuffers.get();
+        if(parameters.getTokenizer()!=WhitespaceTokenizer.class) {
+            loadWords(buffers, StringCleaner.clear(text));
+        }
+        else {
+            loadNormalizedWords(buffers, text);
+        }
+        scoreCombinations(buffers);
+        return buildHashedKeywordsMap(buffers, numberOfBits, signed);
+    }
+    
+    private void loadWords(Buffers buffers, final String text) {
+        buffers.reset();
+        
+        List<String> keywordList = buffers.getTokenizer(parameters.getTokenizer()).tokenize(text);
         
+        int numberOfWordsInDoc = keywordList.size();
+        buffers.ensurePositions(numberOfWordsInDoc);
+        for(int position=0;position<numberOfWordsInDoc;++position) {
+            buffers.position2ID[position] = buffers.addWord(keywordList.get(position));
+        }
+    }
+    
+    private void loadNormalizedWords(Buffers buffers, final String text) {
+        buffers.reset();
         
-        buildInternalArrays(text);
+        TextNormalizer normalizer = buffers.getNormalizer();
+        normalizer.normalize(text);
         
-        Map<String, Double> keywordProximityScores = new HashMap<>();
+        char[] chars = normalizer.getBuffer();
+        int numberOfWordsInDoc = normalizer.getNumberOfTokens();
+        buffers.ensurePositions(numberOfWordsInDoc);
+        for(int position=0;position<numberOfWordsInDoc;++position) {
+            buffers.position2ID[position] = buffers.addWord(chars, normalizer.getTokenStart(position), normalizer.getTokenEnd(position));
+        }
+    }
+    
+    private void scoreCombinations(Buffers buffers) {
+        initializeWordProperties(buffers);
+        
+        int maxCombinations = parameters.getMaxCombinations();
         
         //move the "window" across the document by 1 word at each time
-        for(Map.Entry<Integer, Integer> entry : position2ID.entrySet()) {
-            Integer wordID = entry.getValue();
-            if(!useThisWord(wordID)) {
+        for(int position=0;position<buffers.numberOfWordsInDoc;++position) {
+            if(!buffers.usableIDs[buffers.position2ID[position]]) {
                 continue;
             }
             
-            Integer position = entry.getKey();
-            
-            Map<String, Integer> wordCombinations = getCombinationsWithinWindow(position, parameters.getMaxCombinations());
+            buildCombinationsWithinWindow(buffers, position, maxCombinations);
             
             //translate positions to proximity metrics
-            for(Map.Entry<String, Integer> entry2 : wordCombinations.entrySet()) {
-                String IDcombinationReverse = entry2.getKey();
-                Integer wordsBetween = entry2.getValue();
-                
-                int numberOfWords = PHPfunctions.substr_count(IDcombinationReverse, SEPARATOR)-1;//starts enumeration from 0. We need to subtract one because at the end each string has an extra SEPARATOR
-                
-                int extraWords = wordsBetween - numberOfWords;
-                
-                Double proximityScore = keywordProximityScores.get(IDcombinationReverse);
-                if(proximityScore==null) {
-                    proximityScore=0.0;
-                }
+            for(int j=0;j<buffers.windowSize;++j) {
+                int extraWords = buffers.windowWordsBetween[j] - (buffers.windowNumberOfWords[j]-1);
                 
                 if(extraWords<=0) {
-                    ++proximityScore;
+                    ++buffers.nodeScore[buffers.windowNodes[j]];
                 }
                 else {
-                    proximityScore+=0.5*extraWords;
+                    buffers.nodeScore[buffers.windowNodes[j]]+=0.5*extraWords;
                 }
-                
-                keywordProximityScores.put(IDcombinationReverse, proximityScore);
             }
-            
-            
-            wordCombinations = null;
         }
         
-        //initialize keyword map
+    }
+    
+    private Map<String, Double> buildKeywordsMap(Buffers buffers) {
         Map<String, Double> keywordsMap = new HashMap<>();
-        for(Map.Entry<String, Double> entry : keywordProximityScores.entrySet()) {
-            Double proximityScore = entry.getValue();
+        StringBuilder sb = new StringBuilder();
+        for(int node=0;node<buffers.numberOfNodes;++node) {
+            double proximityScore = buffers.nodeScore[node];
             if(proximityScore>=parameters.getMinWordOccurrence()) {
-                String IDcombinationReverse = entry.getKey();
-                
-                String[] listOfWordIDsReverse = IDcombinationReverse.split(SEPARATOR);
-                
-                StringBuilder sb = new StringBuilder();
-                for(int i=listOfWordIDsReverse.length-1;i>=0;--i) {
-                    Integer ID = Integer.valueOf(listOfWordIDsReverse[i]);
-                    sb.append(ID2word.get(ID)).append(" ");
+                keywordsMap.put(keyword(buffers, node, sb), proximityScore);
+            }
+        }
+        
+        return keywordsMap;
+    }
+    
+    private Map<Object, Object> buildHashedKeywordsMap(Buffers buffers, int numberOfBits, boolean signed) {
+        //the String.hashCode() of "a b" is a.hashCode()*31^(b.length()+1) + ' '*31^b.length() + b.hashCode()
+        if(buffers.ID2power.length<buffers.ID2word.length) {
+            buffers.ID2power = new int[buffers.ID2word.length];
+        }
+        for(int id=0;id<buffers.numberOfIDs;++id) {
+            String word = buffers.ID2word[id];
+            int power = 1;
+            if(word!=null) {
+                for(int i=0;i<word.length();++i) {
+                    power *= 31;
                 }
-                
-                if(sb.length()>0) {
-                    keywordsMap.put(sb.toString().trim(), proximityScore);
+            }
+            buffers.ID2power[id] = power;
+        }
+        
+        Map<Object, Object> keywordsMap = new HashMap<>();
+        StringBuilder sb = new StringBuilder();
+        for(int node=0;node<buffers.numberOfNodes;++node) {
+            double proximityScore = buffers.nodeScore[node];
+            if(proximityScore<parameters.getMinWordOccurrence()) {
+                continue;
+            }
+            
+            int numberOfWords = loadKeywordIDs(buffers, node);
+            boolean trimmed = false;
+            int hashCode = 0;
+            for(int i=numberOfWords-1;i>=0;--i) {
+                int id = buffers.keywordIDs[i];
+                String word = buffers.ID2word[id];
+                if(word.isEmpty() || word.charAt(0)<=' ' || word.charAt(word.length()-1)<=' ') {
+                    trimmed = true; //the keyword is trimmed, so its hash is calculated on the String
+                    break;
                 }
                 
-                sb=null;
+                if(i==numberOfWords-1) {
+                    hashCode = buffers.ID2hash[id];
+                }
+                else {
+                    hashCode = hashCode*31*buffers.ID2power[id] + ' '*buffers.ID2power[id] + buffers.ID2hash[id];
+                }
+            }
+            if(trimmed) {
+                hashCode = keyword(buffers, node, sb).hashCode();
             }
+            
+            int hash = FeatureHashingExtractor.mix(hashCode);
+            Integer featureId = FeatureHashingExtractor.featureId(hash, numberOfBits);
+            double value = signed?FeatureHashingExtractor.sign(hash)*proximityScore:proximityScore;
+            
+            Double previousValue = (Double)keywordsMap.get(featureId);
+            keywordsMap.put(featureId, (previousValue==null)?value:previousValue+value);
         }
-        keywordProximityScores=null;
         
         return keywordsMap;
     }
+    
+    private int loadKeywordIDs(Buffers buffers, int node) {
+        //the trie stores the words from the last to the first
+        int numberOfWords = 0;
+        for(int n=node;n!=-1;n=buffers.nodeParent[n]) {
+            if(numberOfWords==buffers.keywordIDs.length) {
+                buffers.keywordIDs = Arrays.copyOf(buffers.keywordIDs, numberOfWords<<1);
+            }
+            buffers.keywordIDs[numberOfWords++] = buffers.nodeWord[n];
+        }
+        return numberOfWords;
+    }
+    
+    private String keyword(Buffers buffers, int node, StringBuilder sb) {
+        int numberOfWords = loadKeywordIDs(buffers, node);
+        
+        sb.setLength(0);
+        for(int i=numberOfWords-1;i>=0;--i) {
+            sb.append(buffers.ID2word[buffers.keywordIDs[i]]).append(" ");
+        }
+        
+        return sb.toString().trim();
+    }
  
     public double numberOfOccurrences(String keyword, final String text) {
         if(parameters==null) {
@@ -294,122 +657,85 @@ public class NgramsExtractor extends TextExtractor<NgramsExtractor.Parameters, S
         return points;
     }
 
-    protected Map<String, Integer> getCombinationsWithinWindow(Integer windowStart, int maxCombinations) {
-        int windowLength=Math.min(windowStart+parameters.getExaminationWindowLength(), numberOfWordsInDoc);
+    private void buildCombinationsWithinWindow(Buffers buffers, int windowStart, int maxCombinations) {
+        int windowLength=Math.min(windowStart+parameters.getExaminationWindowLength(), buffers.numberOfWordsInDoc);
         
-        //stores IDn_...ID2_ID1_=>words Between last word and windowStart
-        Map<String, Integer> wordCombinations = new HashMap<>(); 
-        wordCombinations.put(position2ID.get(windowStart).toString()+SEPARATOR, 0);
+        int firstWordID = buffers.position2ID[windowStart];
         
-        boolean isfirstWordNumber = NumberUtils.isNumber(ID2word.get(position2ID.get(windowStart)));
+        buffers.windowSize = 0;
+        buffers.addToWindow(buffers.getOrCreateNode(-1, firstWordID), 1, 0, windowStart);
         
-        int maxDistanceBetweenKwds=parameters.getMaxDistanceBetweenKwds()+2; //the method below substracts the current minus the last occurence. As a result it counts also the first and last word and NOT the words between them. That is why we add 2 on the distance.
+        boolean isfirstWordNumber = buffers.numericIDs[firstWordID];
         
+        int maxDistanceBetweenKwds=parameters.getMaxDistanceBetweenKwds()+2; //the method below substracts the current minus the last occurence. As a result it counts also the first and last word and NOT the words between them. That is why we add 2 on the distance.
+        int keepFloatPointsUntilCombination = parameters.getKeepFloatPointsUntilCombination();
+        double keepFloatPointsAbove = parameters.getKeepFloatPointsAbove();
         
         for(int i=windowStart+1;i<windowLength;++i) {
-            Integer ID = position2ID.get(i);
-            if(ID==null || useThisWord(ID)==false || (isfirstWordNumber && NumberUtils.isNumber(ID2word.get(ID)))) {
+            int ID = buffers.position2ID[i];
+            if(!buffers.usableIDs[ID] || (isfirstWordNumber && buffers.numericIDs[ID])) {
                 continue;
             }
-
-            String tokenizedID = SEPARATOR + ID + SEPARATOR;
-
-            Map<String, Integer> newWordCombinations = new HashMap<>();
             
-            for(Map.Entry<String, Integer> entry : wordCombinations.entrySet()) {
-                String IDcombinationReverse = entry.getKey();
+            int wordsBetween=i-windowStart;
+            
+            //only the combinations of the previous positions are extended by the current word
+            int previousWindowSize = buffers.windowSize;
+            for(int j=0;j<previousWindowSize;++j) {
+                int numberOfWords = buffers.windowNumberOfWords[j];
+                if(numberOfWords>=maxCombinations) {
+                    continue;
+                }
                 
-                int numberOfWords=PHPfunctions.substr_count(IDcombinationReverse, SEPARATOR);
-                if(numberOfWords<maxCombinations) {
-                    int wordsBetween=i-windowStart;
-
-                    int extraWords=wordsBetween-numberOfWords;
-
-                    if(extraWords>0 && (numberOfWords>parameters.getKeepFloatPointsUntilCombination() || 0.5*extraWords>parameters.getKeepFloatPointsAbove())) {
-                        continue;
-                    }
-                    
-                    Integer previousWordsBetween = entry.getValue();
-
-                    if(wordsBetween-previousWordsBetween<maxDistanceBetweenKwds) {// the distance between the previous last word and the current last word.  
-                        String IDofFirstWord = IDcombinationReverse.substring(0, IDcombinationReverse.indexOf(SEPARATOR));
-                        if(i>(windowStart+previousWordsBetween+1) && ID2occurrences.get(Integer.valueOf(IDofFirstWord))==1) { //ignore keyword combinations that are not exactly next to the previous word and they occur only once in the text
-                            continue;
-                        }
-
-                        IDcombinationReverse=SEPARATOR+IDcombinationReverse;
-                        if(IDcombinationReverse.contains(tokenizedID)==false) {
-                            newWordCombinations.put(ID+IDcombinationReverse, wordsBetween);
-                        }
-                    }
+                int extraWords=wordsBetween-numberOfWords;
+                if(extraWords>0 && (numberOfWords>keepFloatPointsUntilCombination || 0.5*extraWords>keepFloatPointsAbove)) {
+                    continue;
+                }
+                
+                int previousWordsBetween = buffers.windowWordsBetween[j];
+                if(wordsBetween-previousWordsBetween>=maxDistanceBetweenKwds) {// the distance between the previous last word and the current last word.  
+                    continue;
+                }
+                
+                int node = buffers.windowNodes[j];
+                if(i>(windowStart+previousWordsBetween+1) && buffers.ID2occurrences[buffers.nodeWord[node]]==1) { //ignore keyword combinations that are not exactly next to the previous word and they occur only once in the text
+                    continue;
                 }
-            }
-            
-            //add the new combinations in the list if they don't exist already
-            for(Map.Entry<String, Integer> entry : newWordCombinations.entrySet()) {
-                String IDcombinationReverse = entry.getKey();
                 
-                if(!wordCombinations.containsKey(IDcombinationReverse)) {
-                    wordCombinations.put(IDcombinationReverse, entry.getValue());
+                if(buffers.containsWord(node, ID)) {
+                    continue;
+                }
+                
+                //add the new combination in the window if it does not exist already
+                int newNode = buffers.getOrCreateNode(node, ID);
+                if(buffers.nodeWindow[newNode]!=windowStart) {
+                    buffers.addToWindow(newNode, numberOfWords+1, wordsBetween, windowStart);
                 }
             }
-            
-            
-            newWordCombinations=null;
-        }
-        
-        
-        
-        return wordCombinations;
-    }
-    
-    protected boolean useThisWord(Integer wordID) {
-        String word = ID2word.get(wordID);
-        if(word==null) {
-            return false;
         }
-        if(parameters.getMinWordLength()>1 && word.length() <parameters.getMinWordLength() && !NumberUtils.isNumber(word)) {
-            return false;
-        }
-        if(parameters.getMinWordOccurrence()>1 && ID2occurrences.get(wordID)<parameters.getMinWordOccurrence()) {
-            return false;
-        }
-        return true;
     }
     
-    protected void buildInternalArrays(final String text) {
-        
-        Map<String, Integer> word2ID = new HashMap<>();
-        
-        Tokenizer tokenizer = null;
-        try {
-            tokenizer = parameters.getTokenizer().newInstance();
-        } 
-        catch (InstantiationException | IllegalAccessException ex) {
-            throw new RuntimeException(ex);
-        }
-        List<String> keywordList = tokenizer.tokenize(text);
-        
-        int lastId=-1;
-        numberOfWordsInDoc = keywordList.size();
-        for(int position=0;position<numberOfWordsInDoc;++position) {
-            String word = keywordList.get(position);
+    private void initializeWordProperties(Buffers buffers) {
+        int minWordLength = parameters.getMinWordLength();
+        int minWordOccurrence = parameters.getMinWordOccurrence();
+        for(int id=0;id<buffers.numberOfIDs;++id) {
+            String word = buffers.ID2word[id];
+            boolean isNumber = NumberUtils.isNumber(word);
             
-            Integer id = word2ID.get(word);
-            if(id==null) {
-                id=++lastId;
-                word2ID.put(word, id);
-                ID2word.put(id, word);
-                ID2occurrences.put(id, 0.0);
+            boolean usable = true;
+            if(word==null) {
+                usable = false;
+            }
+            else if(minWordLength>1 && word.length()<minWordLength && !isNumber) {
+                usable = false;
+            }
+            else if(minWordOccurrence>1 && buffers.ID2occurrences[id]<minWordOccurrence) {
+                usable = false;
             }
             
-            ID2occurrences.put(id, ID2occurrences.get(id)+1);
-            position2ID.put(position, id);
+            buffers.numericIDs[id] = isNumber;
+            buffers.usableIDs[id] = usable;
         }
-        
-        keywordList = null;
-
-        word2ID = null;
     }
    
 }
@@ -17,6 +17,7 @@
 package com.datumbox.framework.utilities.text.extractors;
 
 import com.datumbox.common.objecttypes.Parameterizable;
+import com.datumbox.framework.utilities.text.cleaners.StringCleaner;
 import java.lang.reflect.InvocationTargetException;
 import java.util.Map;
 
@@ -43,6 +44,18 @@ public abstract class TextExtractor<TP extends TextExtractor.Parameters, K, V> {
      
     public abstract Map<K, V> extract(final String text);
     
+    /**
+     * Clears the text with StringCleaner.clear() and extracts its features.
+     * Extractors which can work directly on the output of the TextNormalizer 
+     * override this method to avoid building the intermediate clean String.
+     * 
+     * @param text
+     * @return 
+     */
+    public Map<K, V> clearAndExtract(final String text) {
+        return extract(StringCleaner.clear(text));
+    }
+    
     /**
      * Generates a new instance of a TextExtractor by providing the Class of the
      * TextExtractor.
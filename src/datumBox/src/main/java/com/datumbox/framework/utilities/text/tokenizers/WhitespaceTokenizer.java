@@ -17,7 +17,6 @@
 package com.datumbox.framework.utilities.text.tokenizers;
 
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.List;
 
 /**
@@ -26,10 +25,64 @@ import java.util.List;
  */
 public class WhitespaceTokenizer implements Tokenizer {
 
+    /**
+     * Splits the text on the separator and other (control, format, private 
+     * use, surrogate and unassigned) code points. The result is the same as
+     * text.split("[\\p{Z}\\p{C}]+") without the overhead of the regex.
+     * 
+     * @param text
+     * @return 
+     */
     @Override
     public List<String> tokenize(String text) {
-        List<String> tokens = new ArrayList<>(Arrays.asList(text.split("[\\p{Z}\\p{C}]+")));
+        List<String> tokens = new ArrayList<>();
+        
+        int n = text.length();
+        int tokenStart = 0;
+        int i = 0;
+        while(i<n) {
+            int cp = text.codePointAt(i);
+            if(!isSeparator(cp)) {
+                i += Character.charCount(cp);
+                continue;
+            }
+            
+            tokens.add(text.substring(tokenStart, i));
+            do {
+                i += Character.charCount(cp);
+            } 
+            while(i<n && isSeparator(cp = text.codePointAt(i)));
+            tokenStart = i;
+        }
+        
+        if(tokenStart==0) { //no separators
+            tokens.add(text);
+            return tokens;
+        }
+        tokens.add(text.substring(tokenStart));
+        
+        //trailing empty tokens are removed
+        while(!tokens.isEmpty() && tokens.get(tokens.size()-1).isEmpty()) {
+            tokens.remove(tokens.size()-1);
+        }
+        
         return tokens;
     }
     
+    private static boolean isSeparator(int cp) {
+        switch(Character.getType(cp)) {
+            case Character.SPACE_SEPARATOR:
+            case Character.LINE_SEPARATOR:
+            case Character.PARAGRAPH_SEPARATOR:
+            case Character.CONTROL:
+            case Character.FORMAT:
+            case Character.PRIVATE_USE:
+            case Character.SURROGATE:
+            case Character.UNASSIGNED:
+                return true;
+            default:
+                return false;
+        }
+    }
+    
 }
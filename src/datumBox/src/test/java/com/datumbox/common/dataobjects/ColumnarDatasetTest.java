@@ -0,0 +1,177 @@
+/*
+ * Copyright (C) 2014 Vasilis Vryniotis <bbriniotis at datumbox.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.datumbox.common.dataobjects;
+
+import com.datumbox.configuration.TestConfiguration;
+import java.util.Iterator;
+import java.util.Map;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Vasilis Vryniotis <bbriniotis at datumbox.com>
+ */
+public class ColumnarDatasetTest {
+
+    public ColumnarDatasetTest() {
+    }
+
+    private Dataset generateDataset() {
+        Dataset dataset = new Dataset();
+
+        for(int i=0;i<20;++i) {
+            Record r = new Record();
+            r.getX().put("height", 1.5+i/10.0);
+            r.getX().put("age", 20+i);
+            r.getX().put("smoker", i%2==0);
+            r.getX().put("city", (i%3==0)?"London":"Athens");
+            if(i%5==0) {
+                r.getX().put("word_"+i, 1); //rare column, stored in CSR
+            }
+            if(i==7) {
+                r.getX().put("height", null);
+            }
+            r.setY((i%2==0)?"yes":"no");
+            dataset.add(r);
+        }
+
+        return dataset;
+    }
+
+    /**
+     * Test of iterator method, of class ColumnarDataset.
+     */
+    @Test
+    public void testIterator() {
+        System.out.println("iterator");
+        Dataset dataset = generateDataset();
+        ColumnarDataset instance = ColumnarDataset.newInstance(dataset);
+
+        assertEquals(dataset.size(), instance.size());
+
+        Iterator<Record> it = instance.iterator();
+        for(Record expResult : dataset) {
+            Record result = it.next();
+            assertEquals(expResult.getId(), result.getId());
+            assertEquals(expResult.getX(), result.getX());
+            assertEquals(expResult.getY(), result.getY());
+        }
+        assertFalse(it.hasNext());
+    }
+
+    /**
+     * Test of extractColumnValues method, of class ColumnarDataset.
+     */
+    @Test
+    public void testExtractColumnValues() {
+        System.out.println("extractColumnValues");
+        Dataset dataset = generateDataset();
+        ColumnarDataset instance = ColumnarDataset.newInstance(dataset);
+
+        for(Object column : dataset.getColumns().keySet()) {
+            assertEquals(dataset.extractColumnValues(column), instance.extractColumnValues(column));
+        }
+        assertEquals(dataset.extractYValues(), instance.extractYValues());
+        assertEquals(dataset.extractColumnValuesByY("age"), instance.extractColumnValuesByY("age"));
+    }
+
+    /**
+     * Test of getColumns method, of class ColumnarDataset.
+     */
+    @Test
+    public void testGetColumns() {
+        System.out.println("getColumns");
+        Dataset dataset = generateDataset();
+        ColumnarDataset instance = ColumnarDataset.newInstance(dataset);
+
+        Map<Object, Dataset.ColumnType> expResult = dataset.getColumns();
+        Map<Object, Dataset.ColumnType> result = instance.getColumns();
+        assertEquals(expResult, result);
+        assertEquals(dataset.isSparce(), instance.isSparce());
+
+        assertTrue(instance.isDenseColumn(instance.getColumnId("height")));
+        assertFalse(instance.isDenseColumn(instance.getColumnId("word_5")));
+    }
+
+    /**
+     * Test of getRow method, of class ColumnarDataset.
+     */
+    @Test
+    public void testGetRow() {
+        System.out.println("getRow");
+        Dataset dataset = generateDataset();
+        ColumnarDataset instance = ColumnarDataset.newInstance(dataset);
+
+        int[] columnIds = new int[instance.getColumnSize()];
+        double[] values = new double[instance.getColumnSize()];
+
+        int length = instance.getRow(5, columnIds, values);
+        assertEquals(5, length); //height, age, smoker, city and word_5
+
+        double sum = 0.0;
+        for(int i=0;i<length;++i) {
+            Object column = instance.getColumnName(columnIds[i]);
+            if(column.equals("height") || column.equals("age") || column.equals("word_5")) {
+                sum += values[i];
+            }
+        }
+        double expResult = 2.0+25+1;
+        assertEquals(expResult, sum, TestConfiguration.DOUBLE_ACCURACY_HIGH);
+
+        //row 7 has a null height which must be skipped
+        length = instance.getRow(7, columnIds, values);
+        assertEquals(3, length);
+
+        assertEquals(Double.NaN, instance.getDouble(7, instance.getColumnId("height"), Double.NaN), TestConfiguration.DOUBLE_ACCURACY_HIGH);
+        assertEquals(0.0, instance.getDouble(6, instance.getColumnId("word_5"), 0.0), TestConfiguration.DOUBLE_ACCURACY_HIGH);
+        assertEquals(1.0, instance.getDouble(5, instance.getColumnId("word_5"), 0.0), TestConfiguration.DOUBLE_ACCURACY_HIGH);
+    }
+
+    /**
+     * Test of add method, of class ColumnarDataset, with values of mixed types.
+     */
+    @Test
+    public void testAddMixedTypes() {
+        System.out.println("addMixedTypes");
+        ColumnarDataset instance = new ColumnarDataset();
+        instance.addColumn("mixed", true);
+
+        Record rec1 = new Record();
+        rec1.getX().put("mixed", 1.0);
+        rec1.getX().put("sparse", 2);
+        instance.add(rec1);
+
+        Record rec2 = new Record();
+        rec2.getX().put("mixed", "a");
+        rec2.getX().put("sparse", 3L);
+        instance.add(rec2);
+
+        assertEquals(1.0, instance.get(0).getX().get("mixed"));
+        assertEquals("a", instance.get(1).getX().get("mixed"));
+        assertEquals(2, instance.get(0).getX().get("sparse"));
+        assertEquals(3L, instance.get(1).getX().get("sparse"));
+
+        Dataset expResult = new Dataset();
+        expResult.add(rec1);
+        expResult.add(rec2);
+        Dataset result = instance.toDataset();
+        assertEquals(expResult.extractColumnValues("mixed"), result.extractColumnValues("mixed"));
+        assertEquals(expResult.extractColumnValues("sparse"), result.extractColumnValues("sparse"));
+    }
+
+}
@@ -93,6 +93,38 @@ public class DatasetTest {
         assertEquals(expResult, result);
     }
 
+    /**
+     * Test of generateNewSubsetView method, of class Dataset.
+     */
+    @Test
+    public void testGenerateNewSubsetView() {
+        System.out.println("generateNewSubsetView");
+        Dataset instance = new Dataset();
+        
+        Record rec1 = new Record();
+        rec1.getX().put("1", 1.0);
+        instance.add(rec1);
+        
+        Record rec2 = new Record();
+        rec2.getX().put("2", 1.0);
+        instance.add(rec2);
+        
+        Record rec3 = new Record();
+        rec3.getX().put("3", 1.0);
+        instance.add(rec3);
+        
+        Dataset result = instance.generateNewSubsetView(Arrays.asList(2, 0, 2));
+        assertEquals(3, result.size());
+        assertSame(instance.get(2), result.get(0));
+        assertSame(instance.get(0), result.get(1));
+        assertSame(instance.get(2), result.get(2));
+        
+        Map<Object, Dataset.ColumnType> expResult = new HashMap<>();
+        expResult.put("1", Dataset.ColumnType.NUMERICAL);
+        expResult.put("3", Dataset.ColumnType.NUMERICAL);
+        assertEquals(expResult, result.getColumns());
+    }
+    
     /**
      * Test of convert2Sparse method, of class Dataset.
      */
@@ -0,0 +1,83 @@
+/*
+ * Copyright (C) 2014 Vasilis Vryniotis <bbriniotis at datumbox.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.datumbox.common.dataobjects;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Vasilis Vryniotis <bbriniotis at datumbox.com>
+ */
+public class IntegerDictionaryTest {
+
+    public IntegerDictionaryTest() {
+    }
+
+    /**
+     * Test of intern method, of class IntegerDictionary.
+     */
+    @Test
+    public void testIntern() {
+        System.out.println("intern");
+        Map<Object, Integer> ids = new HashMap<>();
+        ids.put("a", 0);
+
+        IntegerDictionary instance = new IntegerDictionary(ids);
+        assertEquals(1, instance.size());
+        assertEquals(0, instance.intern("a"));
+        assertEquals(1, instance.intern("b"));
+        assertEquals(2, instance.intern(3));
+        assertEquals(1, instance.intern("b"));
+        assertEquals(3, instance.size());
+
+        assertEquals(Integer.valueOf(1), instance.getId("b"));
+        assertNull(instance.getId("c"));
+        assertEquals(3, ids.size());
+    }
+
+    /**
+     * Test of newInstance method, of class IntegerDictionary.
+     */
+    @Test
+    public void testNewInstance() {
+        System.out.println("newInstance");
+        IntegerDictionary instance = IntegerDictionary.newInstance(Arrays.asList("x", "y", "z"));
+        assertEquals(Integer.valueOf(0), instance.getId("x"));
+        assertEquals(Integer.valueOf(2), instance.getId("z"));
+        assertEquals(3, instance.size());
+    }
+
+    /**
+     * Test of key method, of class IntegerDictionary.
+     */
+    @Test
+    public void testKey() {
+        System.out.println("key");
+        int[][] pairs = {{0, 0}, {1, 2}, {Integer.MAX_VALUE, 7}, {5, Integer.MAX_VALUE}, {-1, -2}};
+        for(int[] pair : pairs) {
+            long key = IntegerDictionary.key(pair[0], pair[1]);
+            assertEquals(pair[0], IntegerDictionary.firstId(key));
+            assertEquals(pair[1], IntegerDictionary.secondId(key));
+        }
+        assertNotEquals(IntegerDictionary.key(1, 2), IntegerDictionary.key(2, 1));
+    }
+
+}
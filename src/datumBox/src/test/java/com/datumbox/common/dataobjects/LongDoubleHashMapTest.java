@@ -0,0 +1,121 @@
+/*
+ * Copyright (C) 2014 Vasilis Vryniotis <bbriniotis at datumbox.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.datumbox.common.dataobjects;
+
+import com.datumbox.configuration.TestConfiguration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Vasilis Vryniotis <bbriniotis at datumbox.com>
+ */
+public class LongDoubleHashMapTest {
+    
+    public LongDoubleHashMapTest() {
+    }
+
+    /**
+     * Test of put and get methods, of class LongDoubleHashMap.
+     */
+    @Test
+    public void testPutGet() {
+        System.out.println("putGet");
+        LongDoubleHashMap instance = new LongDoubleHashMap(2);
+        Map<Long, Double> expResult = new HashMap<>();
+        
+        Random rnd = new Random(42);
+        for(int i=0;i<10000;++i) {
+            long key = IntegerDictionary.key(rnd.nextInt(200)-1, rnd.nextInt(200));
+            double value = rnd.nextGaussian();
+            instance.put(key, value);
+            expResult.put(key, value);
+        }
+        
+        assertEquals(expResult.size(), instance.size());
+        for(Map.Entry<Long, Double> entry : expResult.entrySet()) {
+            assertEquals(entry.getValue(), instance.get(entry.getKey(), Double.NaN), TestConfiguration.DOUBLE_ACCURACY_HIGH);
+        }
+        assertTrue(Double.isNaN(instance.get(IntegerDictionary.key(500, 500), Double.NaN)));
+        assertTrue(Double.isNaN(instance.get(Long.MIN_VALUE, Double.NaN)));
+    }
+
+    /**
+     * Test of add and addTo methods, of class LongDoubleHashMap.
+     */
+    @Test
+    public void testAdd() {
+        System.out.println("add");
+        LongDoubleHashMap instance = new LongDoubleHashMap(2);
+        Map<Long, Double> expResult = new HashMap<>();
+        
+        Random rnd = new Random(42);
+        for(int i=0;i<10000;++i) {
+            long key = IntegerDictionary.key(rnd.nextInt(50), rnd.nextInt(50));
+            double value = rnd.nextInt(10);
+            instance.add(key, value);
+            
+            Double previousValue = expResult.get(key);
+            expResult.put(key, (previousValue!=null)?previousValue+value:value);
+        }
+        
+        assertEquals(expResult.size(), instance.size());
+        for(Map.Entry<Long, Double> entry : expResult.entrySet()) {
+            assertEquals(entry.getValue(), instance.get(entry.getKey(), Double.NaN), TestConfiguration.DOUBLE_ACCURACY_HIGH);
+        }
+        
+        //the values are added to the existing ones of the map and the missing keys are inserted
+        Map<Long, Double> result = new HashMap<>();
+        long firstKey = expResult.keySet().iterator().next();
+        result.put(firstKey, 1.0);
+        result.put(IntegerDictionary.key(100, 100), 2.0);
+        instance.addTo(result);
+        
+        assertEquals(expResult.size()+1, result.size());
+        assertEquals(expResult.get(firstKey)+1.0, result.get(firstKey), TestConfiguration.DOUBLE_ACCURACY_HIGH);
+        assertEquals(2.0, result.get(IntegerDictionary.key(100, 100)), TestConfiguration.DOUBLE_ACCURACY_HIGH);
+        
+        LongDoubleHashMap copy = LongDoubleHashMap.newInstance(result);
+        assertEquals(result.size(), copy.size());
+        for(Map.Entry<Long, Double> entry : result.entrySet()) {
+            assertEquals(entry.getValue(), copy.get(entry.getKey(), Double.NaN), TestConfiguration.DOUBLE_ACCURACY_HIGH);
+        }
+    }
+
+    /**
+     * Test of clear method, of class LongDoubleHashMap.
+     */
+    @Test
+    public void testClear() {
+        System.out.println("clear");
+        LongDoubleHashMap instance = new LongDoubleHashMap(16);
+        instance.put(0L, 1.0);
+        instance.put(-1L, 2.0);
+        instance.clear();
+        
+        assertEquals(0, instance.size());
+        assertEquals(-1.0, instance.get(0L, -1.0), TestConfiguration.DOUBLE_ACCURACY_HIGH);
+        
+        instance.add(-1L, 3.0);
+        assertEquals(3.0, instance.get(-1L, -1.0), TestConfiguration.DOUBLE_ACCURACY_HIGH);
+        assertEquals(1, instance.size());
+    }
+    
+}
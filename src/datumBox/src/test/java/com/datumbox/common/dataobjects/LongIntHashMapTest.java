@@ -0,0 +1,77 @@
+/*
+ * Copyright (C) 2014 Vasilis Vryniotis <bbriniotis at datumbox.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.datumbox.common.dataobjects;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Vasilis Vryniotis <bbriniotis at datumbox.com>
+ */
+public class LongIntHashMapTest {
+    
+    public LongIntHashMapTest() {
+    }
+
+    /**
+     * Test of put and get methods, of class LongIntHashMap.
+     */
+    @Test
+    public void testPutGet() {
+        System.out.println("putGet");
+        LongIntHashMap instance = new LongIntHashMap(2);
+        Map<Long, Integer> expResult = new HashMap<>();
+        
+        Random rnd = new Random(42);
+        for(int i=0;i<10000;++i) {
+            long key = IntegerDictionary.key(rnd.nextInt(200)-1, rnd.nextInt(200));
+            instance.put(key, i);
+            expResult.put(key, i);
+        }
+        
+        assertEquals(expResult.size(), instance.size());
+        for(Map.Entry<Long, Integer> entry : expResult.entrySet()) {
+            assertEquals(entry.getValue().intValue(), instance.get(entry.getKey(), -1));
+        }
+        assertEquals(-1, instance.get(IntegerDictionary.key(500, 500), -1));
+        assertEquals(-1, instance.get(Long.MIN_VALUE, -1));
+    }
+
+    /**
+     * Test of clear method, of class LongIntHashMap.
+     */
+    @Test
+    public void testClear() {
+        System.out.println("clear");
+        LongIntHashMap instance = new LongIntHashMap(16);
+        instance.put(0L, 1);
+        instance.put(-1L, 2);
+        instance.clear();
+        
+        assertEquals(0, instance.size());
+        assertEquals(-1, instance.get(0L, -1));
+        
+        instance.put(-1L, 3);
+        assertEquals(3, instance.get(-1L, -1));
+        assertEquals(1, instance.size());
+    }
+    
+}
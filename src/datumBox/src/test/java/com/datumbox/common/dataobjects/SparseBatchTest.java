@@ -0,0 +1,85 @@
+/*
+ * Copyright (C) 2014 Vasilis Vryniotis <bbriniotis at datumbox.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.datumbox.common.dataobjects;
+
+import com.datumbox.configuration.TestConfiguration;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Vasilis Vryniotis <bbriniotis at datumbox.com>
+ */
+public class SparseBatchTest {
+
+    public SparseBatchTest() {
+    }
+
+    /**
+     * Test of add and endRow methods, of class SparseBatch.
+     */
+    @Test
+    public void testAdd() {
+        System.out.println("add");
+        SparseBatch instance = new SparseBatch(1, 1); //forces the buffers to grow
+
+        instance.add(0, 1.0);
+        instance.add(3, 2.5);
+        assertEquals(0, instance.endRow());
+        assertEquals(1, instance.endRow()); //empty row
+        instance.add(2, -1.0);
+        assertEquals(2, instance.endRow());
+
+        assertEquals(3, instance.size());
+        assertEquals(0, instance.getRowStart(0));
+        assertEquals(2, instance.getRowEnd(0));
+        assertEquals(instance.getRowStart(1), instance.getRowEnd(1));
+        assertEquals(3, instance.getFeatureIds()[instance.getRowEnd(0)-1]);
+        assertEquals(2, instance.getFeatureIds()[instance.getRowStart(2)]);
+        assertEquals(-1.0, instance.getValues()[instance.getRowStart(2)], TestConfiguration.DOUBLE_ACCURACY_HIGH);
+        
+        instance.clear();
+        assertEquals(0, instance.size());
+        instance.add(5, 4.0);
+        instance.endRow();
+        assertEquals(1, instance.size());
+        assertEquals(5, instance.getFeatureIds()[instance.getRowStart(0)]);
+    }
+
+    /**
+     * Test of the constructor which wraps existing CSR arrays, of class SparseBatch.
+     */
+    @Test
+    public void testWrap() {
+        System.out.println("wrap");
+        SparseBatch instance = new SparseBatch(new int[] {0, 2, 3}, new int[] {1, 4, 0}, new double[] {1.0, 2.0, 3.0});
+        assertEquals(2, instance.size());
+        assertEquals(2, instance.getRowStart(1));
+        assertEquals(3, instance.getRowEnd(1));
+        assertEquals(3.0, instance.getValues()[instance.getRowStart(1)], TestConfiguration.DOUBLE_ACCURACY_HIGH);
+    }
+
+    /**
+     * Test of the constructor with inconsistent arrays, of class SparseBatch.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testWrapInvalid() {
+        System.out.println("wrapInvalid");
+        new SparseBatch(new int[] {0, 4}, new int[] {1, 2}, new double[] {1.0, 2.0});
+    }
+
+}
@@ -0,0 +1,201 @@
+/* 
+ * Copyright (C) 2014 Vasilis Vryniotis <bbriniotis at datumbox.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.datumbox.common.persistentstorage.factories;
+
+import com.datumbox.common.utilities.RandomValue;
+import com.datumbox.configuration.TestConfiguration;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Random;
+import java.util.Set;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Vasilis Vryniotis <bbriniotis at datumbox.com>
+ */
+public class MemoryMappedStructureFactoryTest {
+    
+    public MemoryMappedStructureFactoryTest() {
+    }
+
+    /**
+     * Test of getMap method, of class MemoryMappedStructureFactory.
+     */
+    @Test
+    public void testGetMap() {
+        System.out.println("getMap");
+        RandomValue.randomGenerator = new Random(42);
+        
+        String dbName = "JUnitTestingDB";
+        int maxIterations=5000;
+        MemoryMappedStructureFactory bdsf = new MemoryMappedStructureFactory(dbName);
+        
+        Map<Object, Double> expResult = new HashMap<>();
+        Map<Object, Double> map = bdsf.getMap("object2DoubleMap", MemoryMappedStructureFactory.MapType.MEMORY_MAPPED_MAP, 0);
+        
+        for(int i =0;i<maxIterations;++i) { //enough to force a few rehashes
+            Double value = RandomValue.randomGenerator.nextDouble();
+            Object key = (i%3==0)?Arrays.<Object>asList("key", i):((i%3==1)?"key"+i:(Object)(long)i);
+            expResult.put(key, value);
+            map.put(key, value);
+        }
+        map.put("key1", 1.0); //update in place
+        expResult.put("key1", 1.0);
+        map.remove(2L);
+        expResult.remove(2L);
+        
+        assertEquals(expResult.size(), map.size());
+        assertEquals(expResult, map);
+        assertNull(map.get(2L));
+        assertFalse(map.containsKey(2)); //Integer and Long keys are different
+        
+        //the contents survive reopening the map
+        Map<Object, Double> reopened = new MemoryMappedStructureFactory(dbName).getMap("object2DoubleMap", MemoryMappedStructureFactory.MapType.MEMORY_MAPPED_MAP, 0);
+        assertEquals(expResult.get(Arrays.<Object>asList("key", 3)), reopened.get(Arrays.<Object>asList("key", 3)));
+        
+        //the cleared map reuses its files
+        map.clear();
+        assertTrue(map.isEmpty());
+        for(Object key : expResult.keySet()) {
+            assertFalse(map.containsKey(key));
+        }
+        map.put("key1", 2.0);
+        assertEquals(1, map.size());
+        assertEquals(2.0, map.get("key1"), TestConfiguration.DOUBLE_ACCURACY_HIGH);
+        
+        bdsf.dropDatabase();
+        assertFalse(bdsf.existsDatabase());
+    }
+
+    /**
+     * Test of getMap method with the caching map, of class MemoryMappedStructureFactory.
+     */
+    @Test
+    public void testGetCachingMap() {
+        System.out.println("getCachingMap");
+        RandomValue.randomGenerator = new Random(42);
+        
+        String dbName = "JUnitTestingDB";
+        int maxIterations=5;
+        MemoryMappedStructureFactory bdsf = new MemoryMappedStructureFactory(dbName);
+        
+        Map<String, Double[]> cachingMap = bdsf.getMap("string2DoubleArrayMap", MemoryMappedStructureFactory.MapType.MEMORY_MAPPED_CACHING_MAP, 2);
+        
+        for(int i =0;i<maxIterations;++i) {
+            Double[] x = new Double[100];
+            for(int j=0;j<x.length;++j) {
+                x[j] = RandomValue.randomGenerator.nextDouble();
+            }
+            
+            cachingMap.put("key"+i, x);
+        }
+        
+        assertEquals(maxIterations, cachingMap.size());
+        assertEquals(100, cachingMap.get("key0").length);
+        
+        for(Map.Entry<String, Double[]> entry : cachingMap.entrySet()) {
+            entry.setValue(new Double[]{1.0});
+        }
+        assertEquals(1, cachingMap.get("key0").length);
+        assertEquals(1, cachingMap.get("key4").length);
+        
+        bdsf.dropDatabase();
+    }
+
+    /**
+     * Test of getCollection method, of class MemoryMappedStructureFactory.
+     */
+    @Test
+    public void testGetCollection() {
+        System.out.println("getCollection");
+        String dbName = "JUnitTestingDB";
+        int maxIterations=5;
+        MemoryMappedStructureFactory bdsf = new MemoryMappedStructureFactory(dbName);
+        
+        Collection<String> collection = bdsf.getCollection("StringCollection", MemoryMappedStructureFactory.CollectionType.MEMORY_MAPPED_COLLECTION);
+        
+        for(int i =0;i<maxIterations;++i) {
+            collection.add("value"+i);
+        }
+        collection.remove("value2");
+        
+        assertEquals(maxIterations-1, collection.size());
+        assertFalse(collection.contains("value2"));
+        
+        bdsf.dropDatabase();
+    }
+
+    /**
+     * Test of getSet method, of class MemoryMappedStructureFactory.
+     */
+    @Test
+    public void testGetSet() {
+        System.out.println("getSet");
+        String dbName = "JUnitTestingDB";
+        int maxIterations=5;
+        MemoryMappedStructureFactory bdsf = new MemoryMappedStructureFactory(dbName);
+        
+        Set<String> set = bdsf.getSet("StringSet", MemoryMappedStructureFactory.SetType.MEMORY_MAPPED_SET);
+        
+        for(int i =0;i<maxIterations;++i) {
+            set.add("value"+i);
+            set.add("value"+i);
+        }
+        
+        assertEquals(maxIterations, set.size());
+        assertTrue(set.contains("value3"));
+        
+        bdsf.dropDatabase();
+    }
+
+    /**
+     * Test of getQueue method, of class MemoryMappedStructureFactory.
+     */
+    @Test
+    public void testGetQueue() {
+        System.out.println("getQueue");
+        String dbName = "JUnitTestingDB";
+        int maxIterations=5;
+        MemoryMappedStructureFactory bdsf = new MemoryMappedStructureFactory(dbName);
+        
+        Queue<String> queue = bdsf.getQueue("StringQueue", MemoryMappedStructureFactory.QueueType.MEMORY_MAPPED_QUEUE);
+        
+        for(int i =0;i<maxIterations;++i) {
+            queue.add("value"+i);
+        }
+        
+        assertEquals(maxIterations, queue.size());
+        assertEquals("value0", queue.poll());
+        assertEquals("value1", queue.peek());
+        assertEquals(maxIterations-1, queue.size());
+        
+        List<String> expResult = Arrays.asList("value1", "value2", "value3", "value4");
+        assertEquals(expResult, Arrays.asList(queue.toArray(new String[0])));
+        
+        bdsf.dropTable("StringQueue", queue);
+        assertEquals(0, bdsf.getQueue("StringQueue", MemoryMappedStructureFactory.QueueType.MEMORY_MAPPED_QUEUE).size());
+        
+        bdsf.dropDatabase();
+    }
+    
+}
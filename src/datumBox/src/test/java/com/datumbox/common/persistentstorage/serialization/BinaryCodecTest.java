@@ -0,0 +1,109 @@
+/* 
+ * Copyright (C) 2014 Vasilis Vryniotis <bbriniotis at datumbox.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.datumbox.common.persistentstorage.serialization;
+
+import com.datumbox.common.dataobjects.AssociativeArray;
+import com.datumbox.common.utilities.DeepCopy;
+import com.datumbox.common.utilities.RandomValue;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Vasilis Vryniotis <bbriniotis at datumbox.com>
+ */
+public class BinaryCodecTest {
+    
+    public BinaryCodecTest() {
+    }
+
+    /**
+     * Test of serialize and deserialize methods, of class BinaryCodec.
+     */
+    @Test
+    public void testSerialize() {
+        System.out.println("serialize");
+        RandomValue.randomGenerator = new Random(42);
+        
+        Map<Long, Double> doubleParameters = new ConcurrentHashMap<>();
+        Map<Long, Integer> counts = new HashMap<>();
+        for(int i=0;i<1000;++i) {
+            doubleParameters.put((long)RandomValue.randomGenerator.nextInt(100000)<<32 | i%5, RandomValue.randomGenerator.nextDouble());
+            counts.put((long)-i, i*i);
+        }
+        
+        Map<Object, Object> linkedMap = new LinkedHashMap<>();
+        linkedMap.put(3L, 1.0); //the order of the keys must be preserved
+        linkedMap.put(1L, 2.0);
+        linkedMap.put("word", null);
+        linkedMap.put(true, Arrays.asList("word", 1, 2L));
+        
+        AssociativeArray associativeArray = new AssociativeArray();
+        associativeArray.put("word", 1.5);
+        
+        List<Object> expResult = new ArrayList<>();
+        expResult.add(doubleParameters);
+        expResult.add(counts);
+        expResult.add(linkedMap);
+        expResult.add(new TreeMap<>(counts));
+        expResult.add(new HashSet<>(Arrays.asList("a", "b", "word")));
+        expResult.add(associativeArray);
+        expResult.add(counts); //shared reference
+        
+        byte[] serialized = BinaryCodec.serialize(expResult);
+        assertTrue(BinaryCodec.isCompact(serialized));
+        assertFalse(BinaryCodec.isCompact(DeepCopy.serialize(expResult)));
+        assertTrue(serialized.length < DeepCopy.serialize(expResult).length/2);
+        
+        @SuppressWarnings("unchecked")
+        List<Object> result = (List<Object>)BinaryCodec.deserialize(serialized);
+        assertEquals(expResult, result);
+        assertEquals(ConcurrentHashMap.class, result.get(0).getClass());
+        assertEquals(new ArrayList<>(linkedMap.keySet()), new ArrayList<>(((Map<?, ?>)result.get(2)).keySet()));
+        assertEquals(TreeMap.class, result.get(3).getClass());
+        assertSame(result.get(1), result.get(6));
+    }
+
+    /**
+     * Test of cloneObject method, of class DeepCopy, which uses the BinaryCodec.
+     */
+    @Test
+    public void testCloneObject() {
+        System.out.println("cloneObject");
+        Map<Object, Object> expResult = new HashMap<>();
+        expResult.put(Long.MIN_VALUE, Long.MAX_VALUE);
+        expResult.put(Integer.MIN_VALUE, Integer.MAX_VALUE);
+        expResult.put("\u03b1\u03b2\u03b3", new double[]{1.0});
+        
+        Map<Object, Object> result = DeepCopy.cloneObject(expResult);
+        assertNotSame(expResult, result);
+        assertEquals(Long.MAX_VALUE, result.get(Long.MIN_VALUE));
+        assertEquals(Integer.MAX_VALUE, result.get(Integer.MIN_VALUE));
+        assertArrayEquals(new double[]{1.0}, (double[])result.get("\u03b1\u03b2\u03b3"), 0.0);
+    }
+    
+}
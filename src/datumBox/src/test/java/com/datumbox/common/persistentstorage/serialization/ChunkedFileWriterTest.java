@@ -0,0 +1,113 @@
+/* 
+ * Copyright (C) 2014 Vasilis Vryniotis <bbriniotis at datumbox.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.datumbox.common.persistentstorage.serialization;
+
+import com.datumbox.common.utilities.RandomValue;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Vasilis Vryniotis <bbriniotis at datumbox.com>
+ */
+public class ChunkedFileWriterTest {
+    
+    public ChunkedFileWriterTest() {
+    }
+    
+    private void writeAndRead(boolean compressed) throws IOException {
+        RandomValue.randomGenerator = new Random(42);
+        
+        Map<Long, Double> map = new ConcurrentHashMap<>();
+        for(long i=0;i<25000;++i) { //more than the reset interval of the streams
+            map.put(i, RandomValue.randomGenerator.nextDouble());
+        }
+        Map<Object, Object> emptyMap = new HashMap<>();
+        Collection<String> collection = new LinkedList<>(Arrays.asList("a", "b", "c"));
+        List<String> synchronizedList = Collections.synchronizedList(new LinkedList<>(Arrays.asList("d", "e")));
+        
+        Path path = Files.createTempFile("JUnitTestingChunkedFile", null);
+        try {
+            try(ChunkedFileWriter writer = new ChunkedFileWriter(path, compressed)) {
+                writer.writeMap("map", map);
+                writer.writeMap("emptyMap", emptyMap);
+                writer.writeCollection("collection", collection);
+                writer.writeCollection("synchronizedList", synchronizedList);
+                writer.writeObject("object", "value");
+            }
+            
+            assertTrue(ChunkedFileReader.isChunkedFile(path));
+            try(ChunkedFileReader reader = new ChunkedFileReader(path)) {
+                assertEquals(Arrays.asList("map", "emptyMap", "collection", "synchronizedList", "object"), reader.getChunkNames());
+                
+                //the chunks can be read in any order
+                assertEquals("value", reader.readObject("object"));
+                
+                Map<Long, Double> storedMap = reader.readMap("map");
+                assertEquals(map, storedMap);
+                assertTrue(storedMap instanceof ConcurrentHashMap);
+                
+                assertEquals(emptyMap, reader.readMap("emptyMap"));
+                
+                Collection<String> storedCollection = reader.readCollection("collection");
+                assertEquals(collection, storedCollection);
+                assertTrue(storedCollection instanceof LinkedList);
+                
+                //the wrapper can't be constructed and the elements are returned in a list
+                assertEquals(synchronizedList, reader.readCollection("synchronizedList"));
+            }
+        }
+        finally {
+            Files.delete(path);
+        }
+    }
+
+    /**
+     * Test of writeMap, writeCollection and writeObject methods, of class ChunkedFileWriter.
+     * 
+     * @throws java.io.IOException
+     */
+    @Test
+    public void testWrite() throws IOException {
+        System.out.println("write");
+        writeAndRead(false);
+    }
+
+    /**
+     * Test of writeMap, writeCollection and writeObject methods with compression, of class ChunkedFileWriter.
+     * 
+     * @throws java.io.IOException
+     */
+    @Test
+    public void testWriteCompressed() throws IOException {
+        System.out.println("writeCompressed");
+        writeAndRead(true);
+    }
+    
+}
@@ -0,0 +1,92 @@
+/* 
+ * Copyright (C) 2014 Vasilis Vryniotis <bbriniotis at datumbox.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.datumbox.common.persistentstorage.serialization;
+
+import com.datumbox.common.utilities.DeepCopy;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Vasilis Vryniotis <bbriniotis at datumbox.com>
+ */
+public class LazyLoadedMapTest {
+    
+    public LazyLoadedMapTest() {
+    }
+
+    /**
+     * Test of getMap method, of class LazyLoadedMap.
+     * 
+     * @throws java.io.IOException
+     */
+    @Test
+    public void testGetMap() throws IOException {
+        System.out.println("getMap");
+        Map<String, Integer> expResult = new HashMap<>();
+        expResult.put("a", 1);
+        expResult.put("b", 2);
+        
+        Path path = Files.createTempFile("JUnitTestingLazyLoadedMap", null);
+        try {
+            try(ChunkedFileWriter writer = new ChunkedFileWriter(path, false)) {
+                writer.writeMap("map", expResult);
+            }
+            
+            long fileId;
+            try(ChunkedFileReader reader = new ChunkedFileReader(path)) {
+                fileId = reader.getFileId();
+            }
+            
+            LazyLoadedMap<String, Integer> instance = new LazyLoadedMap<>(path, fileId, "map");
+            assertFalse(instance.isLoaded());
+            assertEquals(Integer.valueOf(2), instance.get("b"));
+            assertTrue(instance.isLoaded());
+            
+            instance.put("c", 3);
+            expResult.put("c", 3);
+            assertEquals(expResult, instance);
+            
+            //it is serialized as a plain map
+            Object copy = DeepCopy.cloneObject(instance);
+            assertEquals(HashMap.class, copy.getClass());
+            assertEquals(expResult, copy);
+            
+            //rewriting the file invalidates the maps which were not loaded yet
+            LazyLoadedMap<String, Integer> stale = new LazyLoadedMap<>(path, fileId, "map");
+            try(ChunkedFileWriter writer = new ChunkedFileWriter(path, false)) {
+                writer.writeMap("map", expResult);
+            }
+            try {
+                stale.size();
+                fail("The map should not be loaded from a modified file.");
+            }
+            catch(IllegalStateException ex) {
+                //expected
+            }
+        }
+        finally {
+            Files.delete(path);
+        }
+    }
+    
+}
@@ -22,6 +22,11 @@ import com.datumbox.common.dataobjects.Record;
 import com.datumbox.common.utilities.RandomValue;
 import com.datumbox.configuration.MemoryConfiguration;
 import com.datumbox.configuration.TestConfiguration;
+import com.datumbox.common.dataobjects.SparseBatch;
+import com.datumbox.framework.machinelearning.common.dataobjects.BatchPredictions;
+import com.datumbox.framework.machinelearning.common.dataobjects.BatchPredictor;
+import com.datumbox.framework.machinelearning.common.bases.mlmodels.FrozenMLmodel;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Random;
@@ -101,6 +106,92 @@ public class BernoulliNaiveBayesTest {
         
     }
 
+    /**
+     * Test of getBatchPredictor method, of class BernoulliNaiveBayes.
+     */
+    @Test
+    public void testGetBatchPredictor() {
+        System.out.println("getBatchPredictor");
+        
+        /*
+        Example from http://www.inf.u-szeged.hu/~ormandi/ai2/06-naiveBayes-example.pdf
+        FeatureList: 
+            - 0: red
+            - 1: yellow
+            - 2: sports
+            - 3: suv
+            - 4: domestic
+            - 5: imported
+            - c1: yes
+            - c2: no
+        */
+        Dataset trainingData = new Dataset();
+        trainingData.add(Record.newDataVector(new Double[] {1.0, 0.0, 1.0, 0.0, 1.0, 0.0}, 1));
+        trainingData.add(Record.newDataVector(new Double[] {1.0, 0.0, 1.0, 0.0, 1.0, 0.0}, 0));
+        trainingData.add(Record.newDataVector(new Double[] {1.0, 0.0, 1.0, 0.0, 1.0, 0.0}, 1));
+        trainingData.add(Record.newDataVector(new Double[] {0.0, 1.0, 1.0, 0.0, 1.0, 0.0}, 0));
+        trainingData.add(Record.newDataVector(new Double[] {0.0, 1.0, 1.0, 0.0, 0.0, 1.0}, 1));
+        trainingData.add(Record.newDataVector(new Double[] {0.0, 1.0, 0.0, 1.0, 0.0, 1.0}, 0));
+        trainingData.add(Record.newDataVector(new Double[] {0.0, 1.0, 0.0, 1.0, 0.0, 1.0}, 1));
+        trainingData.add(Record.newDataVector(new Double[] {0.0, 1.0, 0.0, 1.0, 1.0, 0.0}, 0));
+        trainingData.add(Record.newDataVector(new Double[] {1.0, 0.0, 0.0, 1.0, 0.0, 1.0}, 0));
+        trainingData.add(Record.newDataVector(new Double[] {1.0, 0.0, 1.0, 0.0, 0.0, 1.0}, 1));
+        
+        Dataset validationData = new Dataset();
+        validationData.add(Record.newDataVector(new Double[] {1.0, 0.0, 0.0, 1.0, 1.0, 0.0}, 0));
+        
+        
+        MemoryConfiguration memoryConfiguration = new MemoryConfiguration();
+        
+        String dbName = "JUnitClassifier";
+        BernoulliNaiveBayes instance = new BernoulliNaiveBayes(dbName);
+        
+        BernoulliNaiveBayes.TrainingParameters param = instance.getEmptyTrainingParametersObject();
+        
+        instance.initializeTrainingConfiguration(memoryConfiguration, param);
+        instance.train(trainingData, validationData);
+        
+        
+        instance = null;
+        instance = new BernoulliNaiveBayes(dbName);
+        instance.setMemoryConfiguration(memoryConfiguration);
+        
+        instance.predict(validationData);
+        
+        BatchPredictor predictor = instance.getBatchPredictor();
+        SparseBatch batch = predictor.parseDataset(validationData, new SparseBatch());
+        BatchPredictions predictions = new BatchPredictions();
+        predictor.predict(batch, predictions);
+        
+        assertEquals(validationData.size(), predictions.size());
+        for(Record r : validationData) {
+            int row = r.getId();
+            assertEquals(r.getYPredicted(), predictor.getClassValue(predictions.getPredictedClassId(row)));
+            for(int classId=0;classId<predictor.getNumberOfClasses();++classId) {
+                Object theClass = predictor.getClassValue(classId);
+                assertEquals(Dataset.toDouble(r.getYPredictedProbabilities().get(theClass)), predictions.getProbability(row, classId), TestConfiguration.DOUBLE_ACCURACY_HIGH);
+            }
+        }
+        
+        //the frozen copy estimates the Sum of log(1-prob) once and it must predict the same scores
+        FrozenMLmodel<BernoulliNaiveBayes.ValidationMetrics> frozenModel = instance.freeze();
+        Dataset newData = validationData.generateNewSubset(Arrays.asList(validationData.iterator().next().getId()));
+        for(Record r : newData) {
+            r.setYPredicted(null);
+            r.setYPredictedProbabilities(null);
+        }
+        frozenModel.predict(newData);
+        for(Record r : newData) {
+            Record expResult = validationData.get(r.getId());
+            assertEquals(expResult.getYPredicted(), r.getYPredicted());
+            assertEquals(expResult.getYPredictedProbabilities(), r.getYPredictedProbabilities());
+        }
+        
+        instance.erase(true);
+        
+    }
+
+
     /**
      * Test of kFoldCrossValidation method, of class BernoulliNaiveBayes.
      */
@@ -179,5 +270,84 @@ public class BernoulliNaiveBayesTest {
         assertEquals(expResult, result, TestConfiguration.DOUBLE_ACCURACY_HIGH);
         instance.erase(true);
     }
+
+    /**
+     * Test of update method, of class BernoulliNaiveBayes.
+     */
+    @Test
+    public void testUpdate() {
+        System.out.println("update");
+        
+        //the new data contain a new class and new features
+        Dataset trainingData = new Dataset();
+        addDocuments(trainingData, 1, 200, 3, 100);
+        Dataset newData = new Dataset();
+        addDocuments(newData, 2, 50, 4, 120);
+        
+        Dataset allData = new Dataset();
+        addDocuments(allData, 1, 200, 3, 100);
+        addDocuments(allData, 2, 50, 4, 120);
+        
+        Dataset expResult = new Dataset();
+        addDocuments(expResult, 3, 50, 4, 150);
+        Dataset result = new Dataset();
+        addDocuments(result, 3, 50, 4, 150);
+        
+        
+        MemoryConfiguration memoryConfiguration = new MemoryConfiguration();
+        
+        String dbName = "JUnitClassifier";
+        
+        BernoulliNaiveBayes expInstance = new BernoulliNaiveBayes(dbName+"All");
+        BernoulliNaiveBayes.TrainingParameters param = expInstance.getEmptyTrainingParametersObject();
+        expInstance.initializeTrainingConfiguration(memoryConfiguration, param);
+        expInstance.train(allData, new Dataset());
+        expInstance.predict(expResult);
+        
+        BernoulliNaiveBayes instance = new BernoulliNaiveBayes(dbName);
+        param = instance.getEmptyTrainingParametersObject();
+        instance.initializeTrainingConfiguration(memoryConfiguration, param);
+        instance.train(trainingData, new Dataset());
+        
+        instance = null;
+        instance = new BernoulliNaiveBayes(dbName);
+        instance.setMemoryConfiguration(memoryConfiguration);
+        instance.update(newData);
+        
+        instance = null;
+        instance = new BernoulliNaiveBayes(dbName);
+        instance.setMemoryConfiguration(memoryConfiguration);
+        instance.predict(result);
+        
+        for(Record r : result) {
+            Record expRecord = expResult.get(r.getId());
+            assertEquals(expRecord.getYPredicted(), r.getYPredicted());
+            for(Object theClass : expRecord.getYPredictedProbabilities().keySet()) {
+                assertEquals(expRecord.getYPredictedProbabilities().getDouble(theClass), r.getYPredictedProbabilities().getDouble(theClass), TestConfiguration.DOUBLE_ACCURACY_HIGH);
+            }
+        }
+        
+        expInstance.erase(true);
+        instance.erase(true);
+    }
     
+    private void addDocuments(Dataset data, long seed, int n, int numberOfClasses, int vocabularySize) {
+        Random rnd = new Random(seed);
+        for(int i=0;i<n;++i) {
+            int theClass = rnd.nextInt(numberOfClasses);
+            
+            //half of the words depend on the class and the features which are 0 are not active
+            Record r = new Record();
+            for(int j=0;j<10;++j) {
+                String word = (rnd.nextBoolean())?"word"+rnd.nextInt(vocabularySize):"class"+theClass+"word"+rnd.nextInt(vocabularySize/10);
+                Double previousValue = r.getX().getDouble(word);
+                r.getX().put(word, (previousValue==null)?1.0:previousValue+1.0);
+            }
+            r.getX().put("inactive"+rnd.nextInt(vocabularySize), 0.0);
+            r.setY("class"+theClass);
+            
+            data.add(r);
+        }
+    }
+
 }
@@ -177,5 +177,84 @@ public class BinarizedNaiveBayesTest {
         assertEquals(expResult, result, TestConfiguration.DOUBLE_ACCURACY_HIGH);
         instance.erase(true);
     }
+
+    /**
+     * Test of update method, of class BinarizedNaiveBayes.
+     */
+    @Test
+    public void testUpdate() {
+        System.out.println("update");
+        
+        //the new data contain a new class and new features
+        Dataset trainingData = new Dataset();
+        addDocuments(trainingData, 1, 200, 3, 100);
+        Dataset newData = new Dataset();
+        addDocuments(newData, 2, 50, 4, 120);
+        
+        Dataset allData = new Dataset();
+        addDocuments(allData, 1, 200, 3, 100);
+        addDocuments(allData, 2, 50, 4, 120);
+        
+        Dataset expResult = new Dataset();
+        addDocuments(expResult, 3, 50, 4, 150);
+        Dataset result = new Dataset();
+        addDocuments(result, 3, 50, 4, 150);
+        
+        
+        MemoryConfiguration memoryConfiguration = new MemoryConfiguration();
+        
+        String dbName = "JUnitClassifier";
+        
+        BinarizedNaiveBayes expInstance = new BinarizedNaiveBayes(dbName+"All");
+        BinarizedNaiveBayes.TrainingParameters param = expInstance.getEmptyTrainingParametersObject();
+        expInstance.initializeTrainingConfiguration(memoryConfiguration, param);
+        expInstance.train(allData, new Dataset());
+        expInstance.predict(expResult);
+        
+        BinarizedNaiveBayes instance = new BinarizedNaiveBayes(dbName);
+        param = instance.getEmptyTrainingParametersObject();
+        instance.initializeTrainingConfiguration(memoryConfiguration, param);
+        instance.train(trainingData, new Dataset());
+        
+        instance = null;
+        instance = new BinarizedNaiveBayes(dbName);
+        instance.setMemoryConfiguration(memoryConfiguration);
+        instance.update(newData);
+        
+        instance = null;
+        instance = new BinarizedNaiveBayes(dbName);
+        instance.setMemoryConfiguration(memoryConfiguration);
+        instance.predict(result);
+        
+        for(Record r : result) {
+            Record expRecord = expResult.get(r.getId());
+            assertEquals(expRecord.getYPredicted(), r.getYPredicted());
+            for(Object theClass : expRecord.getYPredictedProbabilities().keySet()) {
+                assertEquals(expRecord.getYPredictedProbabilities().getDouble(theClass), r.getYPredictedProbabilities().getDouble(theClass), TestConfiguration.DOUBLE_ACCURACY_HIGH);
+            }
+        }
+        
+        expInstance.erase(true);
+        instance.erase(true);
+    }
     
+    private void addDocuments(Dataset data, long seed, int n, int numberOfClasses, int vocabularySize) {
+        Random rnd = new Random(seed);
+        for(int i=0;i<n;++i) {
+            int theClass = rnd.nextInt(numberOfClasses);
+            
+            //half of the words depend on the class and the features which are 0 are not active
+            Record r = new Record();
+            for(int j=0;j<10;++j) {
+                String word = (rnd.nextBoolean())?"word"+rnd.nextInt(vocabularySize):"class"+theClass+"word"+rnd.nextInt(vocabularySize/10);
+                Double previousValue = r.getX().getDouble(word);
+                r.getX().put(word, (previousValue==null)?1.0:previousValue+1.0);
+            }
+            r.getX().put("inactive"+rnd.nextInt(vocabularySize), 0.0);
+            r.setY("class"+theClass);
+            
+            data.add(r);
+        }
+    }
+
 }
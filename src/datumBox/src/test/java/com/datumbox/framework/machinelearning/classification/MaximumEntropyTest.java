@@ -22,9 +22,14 @@ import com.datumbox.common.dataobjects.Record;
 import com.datumbox.common.utilities.RandomValue;
 import com.datumbox.configuration.MemoryConfiguration;
 import com.datumbox.configuration.TestConfiguration;
+import com.datumbox.common.dataobjects.SparseBatch;
+import com.datumbox.framework.machinelearning.common.dataobjects.BatchPredictions;
+import com.datumbox.framework.machinelearning.common.dataobjects.BatchPredictor;
+import com.datumbox.tests.utilities.TestUtils;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Random;
+import java.util.concurrent.Callable;
 import org.junit.Test;
 import static org.junit.Assert.*;
 
@@ -107,6 +112,198 @@ public class MaximumEntropyTest {
     }
 
 
+    /**
+     * Test of getBatchPredictor method, of class MaximumEntropy.
+     */
+    @Test
+    public void testGetBatchPredictor() {
+        System.out.println("getBatchPredictor");
+        
+        /*
+        Example from http://www.inf.u-szeged.hu/~ormandi/ai2/06-naiveBayes-example.pdf
+        this is an example about car stolen. we have six features for the type of car.
+        each feature is a 0/1, and yes/no means car was stolen or not.
+        FeatureList: 
+            - 0: red
+            - 1: yellow
+            - 2: sports
+            - 3: suv
+            - 4: domestic
+            - 5: imported
+            - c1: yes
+            - c2: no
+        */
+        Dataset trainingData = new Dataset();
+        trainingData.add(Record.newDataVector(new Double[] {1.0, 0.0, 1.0, 0.0, 1.0, 0.0}, 1));
+        trainingData.add(Record.newDataVector(new Double[] {1.0, 0.0, 1.0, 0.0, 1.0, 0.0}, 0));
+        trainingData.add(Record.newDataVector(new Double[] {1.0, 0.0, 1.0, 0.0, 1.0, 0.0}, 1));
+        trainingData.add(Record.newDataVector(new Double[] {0.0, 1.0, 1.0, 0.0, 1.0, 0.0}, 0));
+        trainingData.add(Record.newDataVector(new Double[] {0.0, 1.0, 1.0, 0.0, 0.0, 1.0}, 1));
+        trainingData.add(Record.newDataVector(new Double[] {0.0, 1.0, 0.0, 1.0, 0.0, 1.0}, 0));
+        trainingData.add(Record.newDataVector(new Double[] {0.0, 1.0, 0.0, 1.0, 0.0, 1.0}, 1));
+        trainingData.add(Record.newDataVector(new Double[] {0.0, 1.0, 0.0, 1.0, 1.0, 0.0}, 0));
+        trainingData.add(Record.newDataVector(new Double[] {1.0, 0.0, 0.0, 1.0, 0.0, 1.0}, 0));
+        trainingData.add(Record.newDataVector(new Double[] {1.0, 0.0, 1.0, 0.0, 0.0, 1.0}, 1));
+        
+        Dataset validationData = new Dataset();
+        validationData.add(Record.newDataVector(new Double[] {1.0, 0.0, 0.0, 1.0, 1.0, 0.0}, 0));
+        
+        
+        MemoryConfiguration memoryConfiguration = new MemoryConfiguration();
+        
+        String dbName = "JUnitClassifier";
+        MaximumEntropy instance = new MaximumEntropy(dbName);
+        
+        MaximumEntropy.TrainingParameters param = instance.getEmptyTrainingParametersObject();
+        param.setTotalIterations(10);
+        instance.initializeTrainingConfiguration(memoryConfiguration, param);
+        instance.train(trainingData, validationData);
+        
+        
+        instance = null;
+        instance = new MaximumEntropy(dbName);
+        instance.setMemoryConfiguration(memoryConfiguration);
+        instance.predict(validationData);
+        
+        BatchPredictor predictor = instance.getBatchPredictor();
+        SparseBatch batch = predictor.parseDataset(validationData, new SparseBatch());
+        BatchPredictions predictions = new BatchPredictions();
+        predictor.predict(batch, predictions);
+        
+        assertEquals(validationData.size(), predictions.size());
+        for(Record r : validationData) {
+            int row = r.getId();
+            assertEquals(r.getYPredicted(), predictor.getClassValue(predictions.getPredictedClassId(row)));
+            for(int classId=0;classId<predictor.getNumberOfClasses();++classId) {
+                Object theClass = predictor.getClassValue(classId);
+                assertEquals(Dataset.toDouble(r.getYPredictedProbabilities().get(theClass)), predictions.getProbability(row, classId), TestConfiguration.DOUBLE_ACCURACY_HIGH);
+            }
+        }
+        
+        instance.erase(true);
+    }
+
+
+    /**
+     * Test of the LBFGS optimizer, of class MaximumEntropy.
+     */
+    @Test
+    public void testLBFGS() {
+        System.out.println("LBFGS");
+        
+        Dataset trainingData = new Dataset();
+        trainingData.add(Record.newDataVector(new Double[] {1.0, 0.0, 1.0, 0.0, 1.0, 0.0}, 1));
+        trainingData.add(Record.newDataVector(new Double[] {1.0, 0.0, 1.0, 0.0, 1.0, 0.0}, 0));
+        trainingData.add(Record.newDataVector(new Double[] {1.0, 0.0, 1.0, 0.0, 1.0, 0.0}, 1));
+        trainingData.add(Record.newDataVector(new Double[] {0.0, 1.0, 1.0, 0.0, 1.0, 0.0}, 0));
+        trainingData.add(Record.newDataVector(new Double[] {0.0, 1.0, 1.0, 0.0, 0.0, 1.0}, 1));
+        trainingData.add(Record.newDataVector(new Double[] {0.0, 1.0, 0.0, 1.0, 0.0, 1.0}, 0));
+        trainingData.add(Record.newDataVector(new Double[] {0.0, 1.0, 0.0, 1.0, 0.0, 1.0}, 1));
+        trainingData.add(Record.newDataVector(new Double[] {0.0, 1.0, 0.0, 1.0, 1.0, 0.0}, 0));
+        trainingData.add(Record.newDataVector(new Double[] {1.0, 0.0, 0.0, 1.0, 0.0, 1.0}, 0));
+        trainingData.add(Record.newDataVector(new Double[] {1.0, 0.0, 1.0, 0.0, 0.0, 1.0}, 1));
+        
+        MemoryConfiguration memoryConfiguration = new MemoryConfiguration();
+        
+        String dbName = "JUnitClassifier";
+        
+        //both optimizers converge to the maximum likelihood model
+        Map<Integer, Double> expResult = new HashMap<>();
+        Map<Integer, Double> result = new HashMap<>();
+        for(MaximumEntropy.TrainingParameters.Optimizer optimizer : MaximumEntropy.TrainingParameters.Optimizer.values()) {
+            MaximumEntropy instance = new MaximumEntropy(dbName);
+            
+            MaximumEntropy.TrainingParameters param = instance.getEmptyTrainingParametersObject();
+            param.setOptimizer(optimizer);
+            param.setTotalIterations(optimizer==MaximumEntropy.TrainingParameters.Optimizer.IIS?5000:100);
+            instance.initializeTrainingConfiguration(memoryConfiguration, param);
+            instance.train(trainingData, new Dataset());
+            
+            instance.predict(trainingData);
+            for(Record r : trainingData) {
+                Map<Integer, Double> probabilities = (optimizer==MaximumEntropy.TrainingParameters.Optimizer.IIS)?expResult:result;
+                probabilities.put(r.getId(), r.getYPredictedProbabilities().getDouble(1));
+            }
+            
+            instance.erase(true);
+        }
+        
+        for(Map.Entry<Integer, Double> entry : expResult.entrySet()) {
+            assertEquals(entry.getValue(), result.get(entry.getKey()), TestConfiguration.DOUBLE_ACCURACY_MEDIUM);
+        }
+    }
+
+
+    /**
+     * Test that both optimizers give the same model when the expectations of
+     * the features are estimated in parallel.
+     */
+    @Test
+    public void testTrainParallel() {
+        System.out.println("trainParallel");
+        
+        Dataset trainingData = new Dataset();
+        trainingData.add(Record.newDataVector(new Double[] {1.0, 0.0, 1.0, 0.0, 1.0, 0.0}, 1));
+        trainingData.add(Record.newDataVector(new Double[] {1.0, 0.0, 1.0, 0.0, 1.0, 0.0}, 0));
+        trainingData.add(Record.newDataVector(new Double[] {1.0, 0.0, 1.0, 0.0, 1.0, 0.0}, 1));
+        trainingData.add(Record.newDataVector(new Double[] {0.0, 1.0, 1.0, 0.0, 1.0, 0.0}, 0));
+        trainingData.add(Record.newDataVector(new Double[] {0.0, 1.0, 1.0, 0.0, 0.0, 1.0}, 1));
+        trainingData.add(Record.newDataVector(new Double[] {0.0, 1.0, 0.0, 1.0, 0.0, 1.0}, 0));
+        trainingData.add(Record.newDataVector(new Double[] {0.0, 1.0, 0.0, 1.0, 0.0, 1.0}, 1));
+        trainingData.add(Record.newDataVector(new Double[] {0.0, 1.0, 0.0, 1.0, 1.0, 0.0}, 0));
+        trainingData.add(Record.newDataVector(new Double[] {1.0, 0.0, 0.0, 1.0, 0.0, 1.0}, 0));
+        trainingData.add(Record.newDataVector(new Double[] {1.0, 0.0, 1.0, 0.0, 0.0, 1.0}, 1));
+        
+        for(MaximumEntropy.TrainingParameters.Optimizer optimizer : MaximumEntropy.TrainingParameters.Optimizer.values()) {
+            //the records are split in 3 ranges whose expectations are added up at the end of every iteration
+            Map<Integer, Double> expResult = trainProbabilities(trainingData, optimizer, 1);
+            Map<Integer, Double> result = trainProbabilities(trainingData, optimizer, 3);
+            
+            for(Map.Entry<Integer, Double> entry : expResult.entrySet()) {
+                assertEquals(entry.getValue(), result.get(entry.getKey()), TestConfiguration.DOUBLE_ACCURACY_HIGH);
+            }
+        }
+    }
+    
+    /**
+     * Trains a MaximumEntropy with the provided number of threads and returns
+     * the probabilities of the class 1 for the records of the trainingData.
+     * 
+     * @param trainingData
+     * @param optimizer
+     * @param numberOfThreads
+     * @return 
+     */
+    private static Map<Integer, Double> trainProbabilities(final Dataset trainingData, final MaximumEntropy.TrainingParameters.Optimizer optimizer, int numberOfThreads) {
+        return TestUtils.withThreads(numberOfThreads, new Callable<Map<Integer, Double>>() {
+            @Override
+            public Map<Integer, Double> call() {
+                MemoryConfiguration memoryConfiguration = new MemoryConfiguration();
+                
+                String dbName = "JUnitClassifier";
+                
+                MaximumEntropy instance = new MaximumEntropy(dbName);
+                
+                MaximumEntropy.TrainingParameters param = instance.getEmptyTrainingParametersObject();
+                param.setOptimizer(optimizer);
+                param.setTotalIterations(optimizer==MaximumEntropy.TrainingParameters.Optimizer.IIS?500:100);
+                instance.initializeTrainingConfiguration(memoryConfiguration, param);
+                instance.train(trainingData, new Dataset());
+                
+                instance.predict(trainingData);
+                Map<Integer, Double> probabilities = new HashMap<>();
+                for(Record r : trainingData) {
+                    probabilities.put(r.getId(), r.getYPredictedProbabilities().getDouble(1));
+                }
+                
+                instance.erase(true);
+                
+                return probabilities;
+            }
+        });
+    }
+
+
     /**
      * Test of kFoldCrossValidation method, of class MaximumEntropy.
      */
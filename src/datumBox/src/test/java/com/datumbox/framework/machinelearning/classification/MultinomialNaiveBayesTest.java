@@ -22,9 +22,22 @@ import com.datumbox.common.utilities.RandomValue;
 import com.datumbox.configuration.MemoryConfiguration;
 import com.datumbox.framework.machinelearning.datatransformation.SimpleDummyVariableExtractor;
 import com.datumbox.configuration.TestConfiguration;
+import com.datumbox.common.dataobjects.SparseBatch;
+import com.datumbox.framework.machinelearning.common.dataobjects.BatchPredictions;
+import com.datumbox.framework.machinelearning.common.dataobjects.BatchPredictor;
+import com.datumbox.common.utilities.ParallelFunctions;
+import com.datumbox.framework.machinelearning.common.bases.mlmodels.FrozenMLmodel;
+import com.datumbox.tests.utilities.TestUtils;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import org.junit.Test;
 import static org.junit.Assert.*;
 
@@ -129,6 +142,229 @@ public class MultinomialNaiveBayesTest {
     }
 
 
+    /**
+     * Test of freeze method, of class MultinomialNaiveBayes.
+     */
+    @Test
+    public void testFreeze() {
+        System.out.println("freeze");
+        
+        /*
+        Example from http://www.inf.u-szeged.hu/~ormandi/ai2/06-naiveBayes-example.pdf
+        FeatureList: 
+            - 0: red
+            - 1: yellow
+            - 2: sports
+            - 3: suv
+            - 4: domestic
+            - 5: imported
+            - c1: yes
+            - c2: no
+        */
+        Dataset trainingData = new Dataset();
+        trainingData.add(Record.newDataVector(new String[] {"red", "sports", "domestic"}, "yes"));
+        trainingData.add(Record.newDataVector(new String[] {"red", "sports", "domestic"}, "no"));
+        trainingData.add(Record.newDataVector(new String[] {"red", "sports", "domestic"}, "yes"));
+        trainingData.add(Record.newDataVector(new String[] {"yellow", "sports", "domestic"}, "no"));
+        trainingData.add(Record.newDataVector(new String[] {"yellow", "sports", "imported"}, "yes"));
+        trainingData.add(Record.newDataVector(new String[] {"yellow", "suv", "imported"}, "no"));
+        trainingData.add(Record.newDataVector(new String[] {"yellow", "suv", "imported"}, "yes"));
+        trainingData.add(Record.newDataVector(new String[] {"yellow", "suv", "domestic"}, "no"));
+        trainingData.add(Record.newDataVector(new String[] {"red", "suv", "imported"}, "no"));
+        trainingData.add(Record.newDataVector(new String[] {"red", "sports", "imported"}, "yes"));
+        
+        Dataset validationData = new Dataset();
+        validationData.add(Record.newDataVector(new String[] {"red", "suv", "domestic"}, "no"));
+        
+        
+        MemoryConfiguration memoryConfiguration = new MemoryConfiguration();
+        
+        String dbName = "JUnitClassifier";
+        
+        SimpleDummyVariableExtractor df = new SimpleDummyVariableExtractor(dbName);
+        df.initializeTrainingConfiguration(memoryConfiguration, df.getEmptyTrainingParametersObject());
+        df.transform(trainingData, true);
+        df.normalize(trainingData);
+        df.transform(validationData, false);
+        df.normalize(validationData);
+        
+        MultinomialNaiveBayes instance = new MultinomialNaiveBayes(dbName);
+        
+        MultinomialNaiveBayes.TrainingParameters param = instance.getEmptyTrainingParametersObject();
+        param.setMultiProbabilityWeighted(true);
+        instance.initializeTrainingConfiguration(memoryConfiguration, param);
+        instance.train(trainingData, validationData);
+        
+        
+        instance = null;
+        instance = new MultinomialNaiveBayes(dbName);
+        instance.setMemoryConfiguration(memoryConfiguration);
+        instance.predict(validationData);
+        
+        final FrozenMLmodel<MultinomialNaiveBayes.ValidationMetrics> frozenModel = instance.freeze();
+        
+        //the frozen model does not depend on the storage of the model
+        instance.erase(true);
+        
+        //every thread predicts its own copy of the validation data by using the same frozen model
+        final List<Integer> ids = new ArrayList<>();
+        for(Record r : validationData) {
+            ids.add(r.getId());
+        }
+        int threads = 4;
+        List<Callable<Dataset>> tasks = new ArrayList<>();
+        for(int i=0;i<threads;++i) {
+            final Dataset newData = validationData.generateNewSubset(ids);
+            for(Record r : newData) {
+                r.setYPredicted(null);
+                r.setYPredictedProbabilities(null);
+            }
+            tasks.add(new Callable<Dataset>() {
+                @Override
+                public Dataset call() {
+                    frozenModel.predict(newData);
+                    return newData;
+                }
+            });
+        }
+        ExecutorService executorService = Executors.newFixedThreadPool(threads);
+        List<Dataset> predictedDatasets = ParallelFunctions.invokeAll(executorService, tasks);
+        executorService.shutdown();
+        
+        df.denormalize(trainingData);
+        df.denormalize(validationData);
+        df.erase(true);
+        
+        for(Dataset predictedData : predictedDatasets) {
+            for(Record r : predictedData) {
+                Record expResult = validationData.get(r.getId());
+                assertEquals(expResult.getYPredicted(), r.getYPredicted());
+                assertEquals(expResult.getYPredictedProbabilities(), r.getYPredictedProbabilities());
+            }
+        }
+    }
+
+
+    /**
+     * Test of getBatchPredictor method, of class MultinomialNaiveBayes.
+     */
+    @Test
+    public void testGetBatchPredictor() {
+        System.out.println("getBatchPredictor");
+        
+        /*
+        Example from http://www.inf.u-szeged.hu/~ormandi/ai2/06-naiveBayes-example.pdf
+        FeatureList: 
+            - 0: red
+            - 1: yellow
+            - 2: sports
+            - 3: suv
+            - 4: domestic
+            - 5: imported
+            - c1: yes
+            - c2: no
+        */
+        /*
+        Dataset trainingData = new Dataset();
+        trainingData.add(Record.newDataVector(new Double[] {1.0, 0.0, 1.0, 0.0, 1.0, 0.0}, 1));
+        trainingData.add(Record.newDataVector(new Double[] {1.0, 0.0, 1.0, 0.0, 1.0, 0.0}, 0));
+        trainingData.add(Record.newDataVector(new Double[] {1.0, 0.0, 1.0, 0.0, 1.0, 0.0}, 1));
+        trainingData.add(Record.newDataVector(new Double[] {0.0, 1.0, 1.0, 0.0, 1.0, 0.0}, 0));
+        trainingData.add(Record.newDataVector(new Double[] {0.0, 1.0, 1.0, 0.0, 0.0, 1.0}, 1));
+        trainingData.add(Record.newDataVector(new Double[] {0.0, 1.0, 0.0, 1.0, 0.0, 1.0}, 0));
+        trainingData.add(Record.newDataVector(new Double[] {0.0, 1.0, 0.0, 1.0, 0.0, 1.0}, 1));
+        trainingData.add(Record.newDataVector(new Double[] {0.0, 1.0, 0.0, 1.0, 1.0, 0.0}, 0));
+        trainingData.add(Record.newDataVector(new Double[] {1.0, 0.0, 0.0, 1.0, 0.0, 1.0}, 0));
+        trainingData.add(Record.newDataVector(new Double[] {1.0, 0.0, 1.0, 0.0, 0.0, 1.0}, 1));
+        Dataset validationData = new Dataset();
+        validationData.add(Record.newDataVector(new Double[] {1.0, 0.0, 0.0, 1.0, 1.0, 0.0}, 0));
+        */
+        Dataset trainingData = new Dataset();
+        trainingData.add(Record.newDataVector(new String[] {"red", "sports", "domestic"}, "yes"));
+        trainingData.add(Record.newDataVector(new String[] {"red", "sports", "domestic"}, "no"));
+        trainingData.add(Record.newDataVector(new String[] {"red", "sports", "domestic"}, "yes"));
+        trainingData.add(Record.newDataVector(new String[] {"yellow", "sports", "domestic"}, "no"));
+        trainingData.add(Record.newDataVector(new String[] {"yellow", "sports", "imported"}, "yes"));
+        trainingData.add(Record.newDataVector(new String[] {"yellow", "suv", "imported"}, "no"));
+        trainingData.add(Record.newDataVector(new String[] {"yellow", "suv", "imported"}, "yes"));
+        trainingData.add(Record.newDataVector(new String[] {"yellow", "suv", "domestic"}, "no"));
+        trainingData.add(Record.newDataVector(new String[] {"red", "suv", "imported"}, "no"));
+        trainingData.add(Record.newDataVector(new String[] {"red", "sports", "imported"}, "yes"));
+        
+        Dataset validationData = new Dataset();
+        validationData.add(Record.newDataVector(new String[] {"red", "suv", "domestic"}, "no"));
+        
+        
+        MemoryConfiguration memoryConfiguration = new MemoryConfiguration();
+        
+        String dbName = "JUnitClassifier";
+        
+        SimpleDummyVariableExtractor df = new SimpleDummyVariableExtractor(dbName);
+        df.initializeTrainingConfiguration(memoryConfiguration, df.getEmptyTrainingParametersObject());
+        df.transform(trainingData, true);
+        df.normalize(trainingData);
+        df.transform(validationData, false);
+        df.normalize(validationData);
+        
+        MultinomialNaiveBayes instance = new MultinomialNaiveBayes(dbName);
+        
+        MultinomialNaiveBayes.TrainingParameters param = instance.getEmptyTrainingParametersObject();
+        param.setMultiProbabilityWeighted(true);
+        instance.initializeTrainingConfiguration(memoryConfiguration, param);
+        instance.train(trainingData, validationData);
+        
+        
+        instance = null;
+        instance = new MultinomialNaiveBayes(dbName);
+        instance.setMemoryConfiguration(memoryConfiguration);
+        instance.predict(validationData);
+        
+        final BatchPredictor predictor = instance.getBatchPredictor();
+        SparseBatch batch = predictor.parseDataset(validationData, new SparseBatch());
+        final BatchPredictions predictions = new BatchPredictions();
+        predictor.predict(batch, predictions);
+        
+        assertEquals(validationData.size(), predictions.size());
+        for(Record r : validationData) {
+            int row = r.getId();
+            assertEquals(r.getYPredicted(), predictor.getClassValue(predictions.getPredictedClassId(row)));
+            for(int classId=0;classId<predictor.getNumberOfClasses();++classId) {
+                Object theClass = predictor.getClassValue(classId);
+                assertEquals(Dataset.toDouble(r.getYPredictedProbabilities().get(theClass)), predictions.getProbability(row, classId), TestConfiguration.DOUBLE_ACCURACY_HIGH);
+            }
+        }
+        
+        //a large batch is split across the threads and it must be scored exactly as the small one
+        int n = 2000;
+        int expClassId = predictions.getPredictedClassId(0);
+        final SparseBatch largeBatch = new SparseBatch();
+        for(int i=0;i<n;++i) {
+            for(int j=batch.getRowStart(0);j<batch.getRowEnd(0);++j) {
+                largeBatch.add(batch.getFeatureIds()[j], batch.getValues()[j]);
+            }
+            largeBatch.endRow();
+        }
+        TestUtils.withThreads(3, new Callable<Void>() {
+            @Override
+            public Void call() {
+                predictor.predict(largeBatch, predictions);
+                return null;
+            }
+        });
+        
+        assertEquals(n, predictions.size());
+        for(int row=0;row<n;++row) {
+            assertEquals(expClassId, predictions.getPredictedClassId(row));
+        }
+        
+        df.denormalize(trainingData);
+        df.denormalize(validationData);
+        df.erase(true);
+        
+        instance.erase(true);
+    }
+
+
     /**
      * Test of kFoldCrossValidation method, of class MultinomialNaiveBayes.
      */
@@ -209,4 +445,228 @@ public class MultinomialNaiveBayesTest {
         instance.erase(true);
     }
     
+    /**
+     * Test of kFoldCrossValidation method, of class MultinomialNaiveBayes, with
+     * the folds trained in parallel.
+     */
+    @Test
+    public void testKFoldCrossValidationParallel() {
+        System.out.println("kFoldCrossValidationParallel");
+        RandomValue.randomGenerator = new Random(42);
+        int k = 5;
+        
+        Dataset trainingData = new Dataset();
+        trainingData.add(Record.newDataVector(new Double[] {1.0, 0.0, 1.0, 0.0, 1.0, 0.0}, 1));
+        trainingData.add(Record.newDataVector(new Double[] {1.0, 0.0, 1.0, 0.0, 1.0, 0.0}, 0));
+        trainingData.add(Record.newDataVector(new Double[] {1.0, 0.0, 1.0, 0.0, 1.0, 0.0}, 1));
+        trainingData.add(Record.newDataVector(new Double[] {0.0, 1.0, 1.0, 0.0, 1.0, 0.0}, 0));
+        trainingData.add(Record.newDataVector(new Double[] {0.0, 1.0, 1.0, 0.0, 0.0, 1.0}, 1));
+        trainingData.add(Record.newDataVector(new Double[] {0.0, 1.0, 0.0, 1.0, 0.0, 1.0}, 0));
+        trainingData.add(Record.newDataVector(new Double[] {0.0, 1.0, 0.0, 1.0, 0.0, 1.0}, 1));
+        trainingData.add(Record.newDataVector(new Double[] {0.0, 1.0, 0.0, 1.0, 1.0, 0.0}, 0));
+        trainingData.add(Record.newDataVector(new Double[] {1.0, 0.0, 0.0, 1.0, 0.0, 1.0}, 0));
+        trainingData.add(Record.newDataVector(new Double[] {1.0, 0.0, 1.0, 0.0, 0.0, 1.0}, 1));
+        trainingData.add(Record.newDataVector(new Double[] {1.0, 0.0, 1.0, 0.0, 1.0, 0.0}, 1));
+        trainingData.add(Record.newDataVector(new Double[] {1.0, 0.0, 1.0, 0.0, 1.0, 0.0}, 0));
+        trainingData.add(Record.newDataVector(new Double[] {1.0, 0.0, 1.0, 0.0, 1.0, 0.0}, 1));
+        trainingData.add(Record.newDataVector(new Double[] {0.0, 1.0, 1.0, 0.0, 1.0, 0.0}, 0));
+        trainingData.add(Record.newDataVector(new Double[] {0.0, 1.0, 1.0, 0.0, 0.0, 1.0}, 1));
+        trainingData.add(Record.newDataVector(new Double[] {0.0, 1.0, 0.0, 1.0, 0.0, 1.0}, 0));
+        trainingData.add(Record.newDataVector(new Double[] {0.0, 1.0, 0.0, 1.0, 0.0, 1.0}, 1));
+        trainingData.add(Record.newDataVector(new Double[] {0.0, 1.0, 0.0, 1.0, 1.0, 0.0}, 0));
+        trainingData.add(Record.newDataVector(new Double[] {1.0, 0.0, 0.0, 1.0, 0.0, 1.0}, 0));
+        trainingData.add(Record.newDataVector(new Double[] {1.0, 0.0, 1.0, 0.0, 0.0, 1.0}, 1));
+        trainingData.add(Record.newDataVector(new Double[] {1.0, 0.0, 1.0, 0.0, 1.0, 0.0}, 1));
+        trainingData.add(Record.newDataVector(new Double[] {1.0, 0.0, 1.0, 0.0, 1.0, 0.0}, 0));
+        trainingData.add(Record.newDataVector(new Double[] {1.0, 0.0, 1.0, 0.0, 1.0, 0.0}, 1));
+        trainingData.add(Record.newDataVector(new Double[] {0.0, 1.0, 1.0, 0.0, 1.0, 0.0}, 0));
+        trainingData.add(Record.newDataVector(new Double[] {0.0, 1.0, 1.0, 0.0, 0.0, 1.0}, 1));
+        trainingData.add(Record.newDataVector(new Double[] {0.0, 1.0, 0.0, 1.0, 0.0, 1.0}, 0));
+        trainingData.add(Record.newDataVector(new Double[] {0.0, 1.0, 0.0, 1.0, 0.0, 1.0}, 1));
+        trainingData.add(Record.newDataVector(new Double[] {0.0, 1.0, 0.0, 1.0, 1.0, 0.0}, 0));
+        trainingData.add(Record.newDataVector(new Double[] {1.0, 0.0, 0.0, 1.0, 0.0, 1.0}, 0));
+        trainingData.add(Record.newDataVector(new Double[] {1.0, 0.0, 1.0, 0.0, 0.0, 1.0}, 1));
+        trainingData.add(Record.newDataVector(new Double[] {1.0, 0.0, 1.0, 0.0, 1.0, 0.0}, 1));
+        trainingData.add(Record.newDataVector(new Double[] {1.0, 0.0, 1.0, 0.0, 1.0, 0.0}, 0));
+        trainingData.add(Record.newDataVector(new Double[] {1.0, 0.0, 1.0, 0.0, 1.0, 0.0}, 1));
+        trainingData.add(Record.newDataVector(new Double[] {0.0, 1.0, 1.0, 0.0, 1.0, 0.0}, 0));
+        trainingData.add(Record.newDataVector(new Double[] {0.0, 1.0, 1.0, 0.0, 0.0, 1.0}, 1));
+        trainingData.add(Record.newDataVector(new Double[] {0.0, 1.0, 0.0, 1.0, 0.0, 1.0}, 0));
+        trainingData.add(Record.newDataVector(new Double[] {0.0, 1.0, 0.0, 1.0, 0.0, 1.0}, 1));
+        trainingData.add(Record.newDataVector(new Double[] {0.0, 1.0, 0.0, 1.0, 1.0, 0.0}, 0));
+        trainingData.add(Record.newDataVector(new Double[] {1.0, 0.0, 0.0, 1.0, 0.0, 1.0}, 0));
+        trainingData.add(Record.newDataVector(new Double[] {1.0, 0.0, 1.0, 0.0, 0.0, 1.0}, 1));
+        trainingData.add(Record.newDataVector(new Double[] {1.0, 0.0, 1.0, 0.0, 1.0, 0.0}, 1));
+        trainingData.add(Record.newDataVector(new Double[] {1.0, 0.0, 1.0, 0.0, 1.0, 0.0}, 0));
+        trainingData.add(Record.newDataVector(new Double[] {1.0, 0.0, 1.0, 0.0, 1.0, 0.0}, 1));
+        trainingData.add(Record.newDataVector(new Double[] {0.0, 1.0, 1.0, 0.0, 1.0, 0.0}, 0));
+        trainingData.add(Record.newDataVector(new Double[] {0.0, 1.0, 1.0, 0.0, 0.0, 1.0}, 1));
+        trainingData.add(Record.newDataVector(new Double[] {0.0, 1.0, 0.0, 1.0, 0.0, 1.0}, 0));
+        trainingData.add(Record.newDataVector(new Double[] {0.0, 1.0, 0.0, 1.0, 0.0, 1.0}, 1));
+        trainingData.add(Record.newDataVector(new Double[] {0.0, 1.0, 0.0, 1.0, 1.0, 0.0}, 0));
+        trainingData.add(Record.newDataVector(new Double[] {1.0, 0.0, 0.0, 1.0, 0.0, 1.0}, 0));
+        trainingData.add(Record.newDataVector(new Double[] {1.0, 0.0, 1.0, 0.0, 0.0, 1.0}, 1));
+        
+        
+        MemoryConfiguration memoryConfiguration = new MemoryConfiguration();
+        
+        
+        
+        String dbName = "JUnitClassifier";
+        MultinomialNaiveBayes instance = new MultinomialNaiveBayes(dbName);
+        
+        MultinomialNaiveBayes.TrainingParameters param = instance.getEmptyTrainingParametersObject();
+        param.setMultiProbabilityWeighted(true);
+        instance.initializeTrainingConfiguration(memoryConfiguration, param);
+        ExecutorService executorService = Executors.newFixedThreadPool(3);
+        MultinomialNaiveBayes.ValidationMetrics vm = instance.kFoldCrossValidation(trainingData, k, executorService);
+        executorService.shutdown();
+        
+        double expResult = 0.6631318681318682;
+        double result = vm.getMacroF1();
+        assertEquals(expResult, result, TestConfiguration.DOUBLE_ACCURACY_HIGH); //same as the sequential execution
+        instance.erase(true);
+    }
+
+    /**
+     * Test of update method, of class MultinomialNaiveBayes.
+     */
+    @Test
+    public void testUpdate() {
+        System.out.println("update");
+        
+        //the new data contain a new class and new features
+        Dataset trainingData = new Dataset();
+        addDocuments(trainingData, 1, 200, 3, 100);
+        Dataset newData = new Dataset();
+        addDocuments(newData, 2, 50, 4, 120);
+        
+        Dataset allData = new Dataset();
+        addDocuments(allData, 1, 200, 3, 100);
+        addDocuments(allData, 2, 50, 4, 120);
+        
+        Dataset expResult = new Dataset();
+        addDocuments(expResult, 3, 50, 4, 150);
+        Dataset result = new Dataset();
+        addDocuments(result, 3, 50, 4, 150);
+        
+        
+        MemoryConfiguration memoryConfiguration = new MemoryConfiguration();
+        
+        String dbName = "JUnitClassifier";
+        
+        MultinomialNaiveBayes expInstance = new MultinomialNaiveBayes(dbName+"All");
+        MultinomialNaiveBayes.TrainingParameters param = expInstance.getEmptyTrainingParametersObject();
+        param.setMultiProbabilityWeighted(true);
+        expInstance.initializeTrainingConfiguration(memoryConfiguration, param);
+        expInstance.train(allData, new Dataset());
+        expInstance.predict(expResult);
+        
+        MultinomialNaiveBayes instance = new MultinomialNaiveBayes(dbName);
+        param = instance.getEmptyTrainingParametersObject();
+        param.setMultiProbabilityWeighted(true);
+        instance.initializeTrainingConfiguration(memoryConfiguration, param);
+        instance.train(trainingData, new Dataset());
+        
+        instance = null;
+        instance = new MultinomialNaiveBayes(dbName);
+        instance.setMemoryConfiguration(memoryConfiguration);
+        instance.update(newData);
+        
+        instance = null;
+        instance = new MultinomialNaiveBayes(dbName);
+        instance.setMemoryConfiguration(memoryConfiguration);
+        instance.predict(result);
+        
+        for(Record r : result) {
+            Record expRecord = expResult.get(r.getId());
+            assertEquals(expRecord.getYPredicted(), r.getYPredicted());
+            for(Object theClass : expRecord.getYPredictedProbabilities().keySet()) {
+                assertEquals(expRecord.getYPredictedProbabilities().getDouble(theClass), r.getYPredictedProbabilities().getDouble(theClass), TestConfiguration.DOUBLE_ACCURACY_HIGH);
+            }
+        }
+        
+        expInstance.erase(true);
+        instance.erase(true);
+    }
+    
+    /**
+     * Test that the ids of the classes do not depend on the iteration order of
+     * the Set of the classes, which is not maintained by the storage engines.
+     */
+    @Test
+    public void testClassOrder() {
+        System.out.println("classOrder");
+        
+        Dataset trainingData = new Dataset();
+        addDocuments(trainingData, 1, 200, 3, 100);
+        Dataset newData = new Dataset();
+        addDocuments(newData, 2, 50, 4, 120);
+        
+        Dataset allData = new Dataset();
+        addDocuments(allData, 1, 200, 3, 100);
+        addDocuments(allData, 2, 50, 4, 120);
+        
+        Dataset expResult = new Dataset();
+        addDocuments(expResult, 3, 50, 4, 150);
+        Dataset result = new Dataset();
+        addDocuments(result, 3, 50, 4, 150);
+        
+        
+        MemoryConfiguration memoryConfiguration = new MemoryConfiguration();
+        
+        String dbName = "JUnitClassifier";
+        
+        MultinomialNaiveBayes expInstance = new MultinomialNaiveBayes(dbName+"All");
+        MultinomialNaiveBayes.TrainingParameters param = expInstance.getEmptyTrainingParametersObject();
+        param.setMultiProbabilityWeighted(true);
+        expInstance.initializeTrainingConfiguration(memoryConfiguration, param);
+        expInstance.train(allData, new Dataset());
+        expInstance.predict(expResult);
+        
+        MultinomialNaiveBayes instance = new MultinomialNaiveBayes(dbName);
+        param = instance.getEmptyTrainingParametersObject();
+        param.setMultiProbabilityWeighted(true);
+        instance.initializeTrainingConfiguration(memoryConfiguration, param);
+        instance.train(trainingData, new Dataset());
+        
+        //reverse the order of the classes in the Set, as a HashSet restored by the storage engine could do
+        List<Object> classes = new ArrayList<>(instance.getModelParameters().getClasses());
+        Collections.reverse(classes);
+        instance.getModelParameters().setClasses(new LinkedHashSet<>(classes));
+        
+        instance.update(newData);
+        instance.predict(result);
+        
+        for(Record r : result) {
+            Record expRecord = expResult.get(r.getId());
+            assertEquals(expRecord.getYPredicted(), r.getYPredicted());
+            for(Object theClass : expRecord.getYPredictedProbabilities().keySet()) {
+                assertEquals(expRecord.getYPredictedProbabilities().getDouble(theClass), r.getYPredictedProbabilities().getDouble(theClass), TestConfiguration.DOUBLE_ACCURACY_HIGH);
+            }
+        }
+        
+        expInstance.erase(true);
+        instance.erase(true);
+    }
+    
+    private void addDocuments(Dataset data, long seed, int n, int numberOfClasses, int vocabularySize) {
+        Random rnd = new Random(seed);
+        for(int i=0;i<n;++i) {
+            int theClass = rnd.nextInt(numberOfClasses);
+            
+            //half of the words depend on the class and the features which are 0 are not active
+            Record r = new Record();
+            for(int j=0;j<10;++j) {
+                String word = (rnd.nextBoolean())?"word"+rnd.nextInt(vocabularySize):"class"+theClass+"word"+rnd.nextInt(vocabularySize/10);
+                Double previousValue = r.getX().getDouble(word);
+                r.getX().put(word, (previousValue==null)?1.0:previousValue+1.0);
+            }
+            r.getX().put("inactive"+rnd.nextInt(vocabularySize), 0.0);
+            r.setY("class"+theClass);
+            
+            data.add(r);
+        }
+    }
+
 }
@@ -23,7 +23,13 @@ import com.datumbox.configuration.MemoryConfiguration;
 import com.datumbox.configuration.TestConfiguration;
 import com.datumbox.framework.machinelearning.datatransformation.DummyXMinMaxNormalizer;
 import com.datumbox.framework.machinelearning.datatransformation.SimpleDummyVariableExtractor;
+import com.datumbox.common.dataobjects.SparseBatch;
+import com.datumbox.framework.machinelearning.common.dataobjects.BatchPredictions;
+import com.datumbox.framework.machinelearning.common.dataobjects.BatchPredictor;
+import com.datumbox.framework.machinelearning.common.dataobjects.MiniBatchTrainer;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Random;
 import org.junit.Test;
@@ -701,6 +707,139 @@ public class OrdinalRegressionTest {
     }
 
 
+    /**
+     * Test of train method with a stream of records, of class OrdinalRegression.
+     */
+    @Test
+    public void testTrainStream() {
+        System.out.println("trainStream");
+        RandomValue.randomGenerator = new Random(42);
+        
+        Dataset trainingData = generateTrainingData();
+        
+        Dataset validationData = new Dataset();
+        validationData.add(Record.newDataVector(new Double[] {5.92085126899850,6.01037072456601,4.66307928268761}, 1));
+        validationData.add(Record.newDataVector(new Double[] {7.18606367787857,6.64194264491917,4.41233885708698}, 2));
+        validationData.add(Record.newDataVector(new Double[] {7.83232073356316,8.76007761528955,7.05235518409310}, 3));
+        
+        MemoryConfiguration memoryConfiguration = new MemoryConfiguration();
+        
+        String dbName = "JUnitClassifier";
+        
+
+        DummyXMinMaxNormalizer df = new DummyXMinMaxNormalizer(dbName);
+        df.initializeTrainingConfiguration(memoryConfiguration, df.getEmptyTrainingParametersObject());
+        df.transform(trainingData, true);
+        df.normalize(trainingData);
+        df.transform(validationData, false);
+        df.normalize(validationData);
+        
+        List<Record> trainingStream = new ArrayList<>();
+        for(Record r : trainingData) {
+            trainingStream.add(r);
+        }
+        List<Record> heldOutStream = new ArrayList<>();
+        for(Record r : validationData) {
+            heldOutStream.add(r);
+        }
+        
+        OrdinalRegression instance = new OrdinalRegression(dbName);
+        
+        OrdinalRegression.TrainingParameters param = instance.getEmptyTrainingParametersObject();
+        param.setTotalIterations(100);
+        param.setBatchSize(10);
+        param.setLearningRateSchedule(MiniBatchTrainer.LearningRateSchedule.INVERSE_SQRT);
+        param.setPatience(10);
+        instance.initializeTrainingConfiguration(memoryConfiguration, param);
+        instance.train(trainingStream, heldOutStream);
+        
+        
+        instance = null;
+        instance = new OrdinalRegression(dbName);
+        instance.setMemoryConfiguration(memoryConfiguration);
+        instance.predict(validationData);
+
+        
+        df.denormalize(trainingData);
+        df.denormalize(validationData);
+        df.erase(true);
+
+        Map<Integer, Object> expResult = new HashMap<>();
+        Map<Integer, Object> result = new HashMap<>();
+        for(Record r : validationData) {
+            expResult.put(r.getId(), r.getY());
+            result.put(r.getId(), r.getYPredicted());
+        }
+        assertEquals(expResult, result);
+        
+        instance.erase(true);
+    }
+
+
+    /**
+     * Test of getBatchPredictor method, of class OrdinalRegression.
+     */
+    @Test
+    public void testGetBatchPredictor() {
+        System.out.println("getBatchPredictor");
+        RandomValue.randomGenerator = new Random(42);
+        
+        Dataset trainingData = generateTrainingData();
+        
+        Dataset validationData = new Dataset();
+        validationData.add(Record.newDataVector(new Double[] {5.92085126899850,6.01037072456601,4.66307928268761}, 1));
+        validationData.add(Record.newDataVector(new Double[] {7.18606367787857,6.64194264491917,4.41233885708698}, 2));
+        validationData.add(Record.newDataVector(new Double[] {7.83232073356316,8.76007761528955,7.05235518409310}, 3));
+        
+        MemoryConfiguration memoryConfiguration = new MemoryConfiguration();
+        
+        String dbName = "JUnitClassifier";
+        
+
+        DummyXMinMaxNormalizer df = new DummyXMinMaxNormalizer(dbName);
+        df.initializeTrainingConfiguration(memoryConfiguration, df.getEmptyTrainingParametersObject());
+        df.transform(trainingData, true);
+        df.normalize(trainingData);
+        df.transform(validationData, false);
+        df.normalize(validationData);
+        
+        OrdinalRegression instance = new OrdinalRegression(dbName);
+        
+        OrdinalRegression.TrainingParameters param = instance.getEmptyTrainingParametersObject();
+        param.setTotalIterations(100);
+        instance.initializeTrainingConfiguration(memoryConfiguration, param);
+        instance.train(trainingData, validationData);
+        
+        
+        instance = null;
+        instance = new OrdinalRegression(dbName);
+        instance.setMemoryConfiguration(memoryConfiguration);
+        instance.predict(validationData);
+        
+        BatchPredictor predictor = instance.getBatchPredictor();
+        SparseBatch batch = predictor.parseDataset(validationData, new SparseBatch());
+        BatchPredictions predictions = new BatchPredictions();
+        predictor.predict(batch, predictions);
+        
+        assertEquals(validationData.size(), predictions.size());
+        for(Record r : validationData) {
+            int row = r.getId();
+            assertEquals(r.getYPredicted(), predictor.getClassValue(predictions.getPredictedClassId(row)));
+            for(int classId=0;classId<predictor.getNumberOfClasses();++classId) {
+                Object theClass = predictor.getClassValue(classId);
+                assertEquals(Dataset.toDouble(r.getYPredictedProbabilities().get(theClass)), predictions.getProbability(row, classId), TestConfiguration.DOUBLE_ACCURACY_HIGH);
+            }
+        }
+
+        
+        df.denormalize(trainingData);
+        df.denormalize(validationData);
+        df.erase(true);
+        
+        instance.erase(true);
+    }
+
+
     /**
      * Test of kFoldCrossValidation method, of class OrdinalRegression.
      */
@@ -24,7 +24,13 @@ import com.datumbox.configuration.MemoryConfiguration;
 import com.datumbox.framework.machinelearning.datatransformation.DummyXMinMaxNormalizer;
 import com.datumbox.framework.machinelearning.datatransformation.SimpleDummyVariableExtractor;
 import com.datumbox.configuration.TestConfiguration;
+import com.datumbox.common.dataobjects.SparseBatch;
+import com.datumbox.framework.machinelearning.common.dataobjects.BatchPredictions;
+import com.datumbox.framework.machinelearning.common.dataobjects.BatchPredictor;
+import com.datumbox.framework.machinelearning.common.dataobjects.MiniBatchTrainer;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Random;
 import org.junit.Test;
@@ -741,6 +747,213 @@ public class SoftMaxRegressionTest {
     }
 
 
+    /**
+     * Test of train method with a stream of records, of class SoftMaxRegression.
+     */
+    @Test
+    public void testTrainStream() {
+        System.out.println("trainStream");
+        
+        /*
+        Example from http://www.inf.u-szeged.hu/~ormandi/ai2/06-naiveBayes-example.pdf
+        FeatureList: 
+            - 0: red
+            - 1: yellow
+            - 2: sports
+            - 3: suv
+            - 4: domestic
+            - 5: imported
+            - c1: yes
+            - c2: no
+        */
+        Dataset trainingData = new Dataset();
+        trainingData.add(Record.newDataVector(new String[] {"red", "sports", "domestic"}, "yes"));
+        trainingData.add(Record.newDataVector(new String[] {"red", "sports", "domestic"}, "no"));
+        trainingData.add(Record.newDataVector(new String[] {"red", "sports", "domestic"}, "yes"));
+        trainingData.add(Record.newDataVector(new String[] {"yellow", "sports", "domestic"}, "no"));
+        trainingData.add(Record.newDataVector(new String[] {"yellow", "sports", "imported"}, "yes"));
+        trainingData.add(Record.newDataVector(new String[] {"yellow", "suv", "imported"}, "no"));
+        trainingData.add(Record.newDataVector(new String[] {"yellow", "suv", "imported"}, "yes"));
+        trainingData.add(Record.newDataVector(new String[] {"yellow", "suv", "domestic"}, "no"));
+        trainingData.add(Record.newDataVector(new String[] {"red", "suv", "imported"}, "no"));
+        trainingData.add(Record.newDataVector(new String[] {"red", "sports", "imported"}, "yes"));
+        
+        Dataset validationData = new Dataset();
+        validationData.add(Record.newDataVector(new String[] {"red", "suv", "domestic"}, "no"));
+        
+        MemoryConfiguration memoryConfiguration = new MemoryConfiguration();
+        
+        String dbName = "JUnitClassifier";
+        
+        SimpleDummyVariableExtractor df = new SimpleDummyVariableExtractor(dbName);
+        df.initializeTrainingConfiguration(memoryConfiguration, df.getEmptyTrainingParametersObject());
+        df.transform(trainingData, true);
+        df.normalize(trainingData);
+        df.transform(validationData, false);
+        df.normalize(validationData);
+
+        
+        List<Record> trainingStream = new ArrayList<>();
+        for(Record r : trainingData) {
+            trainingStream.add(r);
+        }
+        List<Record> heldOutStream = new ArrayList<>();
+        for(Record r : validationData) {
+            heldOutStream.add(r);
+        }
+        
+        SoftMaxRegression instance = new SoftMaxRegression(dbName);
+        
+        SoftMaxRegression.TrainingParameters param = instance.getEmptyTrainingParametersObject();
+        param.setTotalIterations(2000);
+        param.setBatchSize(1);
+        param.setLearningRateSchedule(MiniBatchTrainer.LearningRateSchedule.CONSTANT);
+        param.setPatience(50);
+        instance.initializeTrainingConfiguration(memoryConfiguration, param);
+        instance.train(trainingStream, heldOutStream);
+        
+        
+        instance = null;
+        instance = new SoftMaxRegression(dbName);
+        instance.setMemoryConfiguration(memoryConfiguration);
+        instance.predict(validationData);
+        	        
+        df.denormalize(trainingData);
+        df.denormalize(validationData);
+        df.erase(true);
+
+
+        Map<Integer, Object> expResult = new HashMap<>();
+        Map<Integer, Object> result = new HashMap<>();
+        for(Record r : validationData) {
+            expResult.put(r.getId(), r.getY());
+            result.put(r.getId(), r.getYPredicted());
+        }
+        assertEquals(expResult, result);
+        
+        instance.erase(true);
+    }
+
+
+    /**
+     * Test of getBatchPredictor method, of class SoftMaxRegression.
+     */
+    @Test
+    public void testGetBatchPredictor() {
+        System.out.println("getBatchPredictor");
+        RandomValue.randomGenerator = new Random(42);
+        
+        Dataset trainingData = new Dataset();
+        trainingData.add(Record.newDataVector(new Double[] {1.0, 0.0, 1.0, 0.0, 1.0, 0.0}, 1));
+        trainingData.add(Record.newDataVector(new Double[] {1.0, 0.0, 1.0, 0.0, 1.0, 0.0}, 0));
+        trainingData.add(Record.newDataVector(new Double[] {1.0, 0.0, 1.0, 0.0, 1.0, 0.0}, 1));
+        trainingData.add(Record.newDataVector(new Double[] {0.0, 1.0, 1.0, 0.0, 1.0, 0.0}, 0));
+        trainingData.add(Record.newDataVector(new Double[] {0.0, 1.0, 1.0, 0.0, 0.0, 1.0}, 1));
+        trainingData.add(Record.newDataVector(new Double[] {0.0, 1.0, 0.0, 1.0, 0.0, 1.0}, 0));
+        trainingData.add(Record.newDataVector(new Double[] {0.0, 1.0, 0.0, 1.0, 0.0, 1.0}, 1));
+        trainingData.add(Record.newDataVector(new Double[] {0.0, 1.0, 0.0, 1.0, 1.0, 0.0}, 0));
+        trainingData.add(Record.newDataVector(new Double[] {1.0, 0.0, 0.0, 1.0, 0.0, 1.0}, 0));
+        trainingData.add(Record.newDataVector(new Double[] {1.0, 0.0, 1.0, 0.0, 0.0, 1.0}, 1));
+        trainingData.add(Record.newDataVector(new Double[] {1.0, 0.0, 1.0, 0.0, 1.0, 0.0}, 1));
+        trainingData.add(Record.newDataVector(new Double[] {1.0, 0.0, 1.0, 0.0, 1.0, 0.0}, 0));
+        trainingData.add(Record.newDataVector(new Double[] {1.0, 0.0, 1.0, 0.0, 1.0, 0.0}, 1));
+        trainingData.add(Record.newDataVector(new Double[] {0.0, 1.0, 1.0, 0.0, 1.0, 0.0}, 0));
+        trainingData.add(Record.newDataVector(new Double[] {0.0, 1.0, 1.0, 0.0, 0.0, 1.0}, 1));
+        trainingData.add(Record.newDataVector(new Double[] {0.0, 1.0, 0.0, 1.0, 0.0, 1.0}, 0));
+        trainingData.add(Record.newDataVector(new Double[] {0.0, 1.0, 0.0, 1.0, 0.0, 1.0}, 1));
+        trainingData.add(Record.newDataVector(new Double[] {0.0, 1.0, 0.0, 1.0, 1.0, 0.0}, 0));
+        trainingData.add(Record.newDataVector(new Double[] {1.0, 0.0, 0.0, 1.0, 0.0, 1.0}, 0));
+        trainingData.add(Record.newDataVector(new Double[] {1.0, 0.0, 1.0, 0.0, 0.0, 1.0}, 1));
+        trainingData.add(Record.newDataVector(new Double[] {1.0, 0.0, 1.0, 0.0, 1.0, 0.0}, 1));
+        trainingData.add(Record.newDataVector(new Double[] {1.0, 0.0, 1.0, 0.0, 1.0, 0.0}, 0));
+        trainingData.add(Record.newDataVector(new Double[] {1.0, 0.0, 1.0, 0.0, 1.0, 0.0}, 1));
+        trainingData.add(Record.newDataVector(new Double[] {0.0, 1.0, 1.0, 0.0, 1.0, 0.0}, 0));
+        trainingData.add(Record.newDataVector(new Double[] {0.0, 1.0, 1.0, 0.0, 0.0, 1.0}, 1));
+        trainingData.add(Record.newDataVector(new Double[] {0.0, 1.0, 0.0, 1.0, 0.0, 1.0}, 0));
+        trainingData.add(Record.newDataVector(new Double[] {0.0, 1.0, 0.0, 1.0, 0.0, 1.0}, 1));
+        trainingData.add(Record.newDataVector(new Double[] {0.0, 1.0, 0.0, 1.0, 1.0, 0.0}, 0));
+        trainingData.add(Record.newDataVector(new Double[] {1.0, 0.0, 0.0, 1.0, 0.0, 1.0}, 0));
+        trainingData.add(Record.newDataVector(new Double[] {1.0, 0.0, 1.0, 0.0, 0.0, 1.0}, 1));
+        trainingData.add(Record.newDataVector(new Double[] {1.0, 0.0, 1.0, 0.0, 1.0, 0.0}, 1));
+        trainingData.add(Record.newDataVector(new Double[] {1.0, 0.0, 1.0, 0.0, 1.0, 0.0}, 0));
+        trainingData.add(Record.newDataVector(new Double[] {1.0, 0.0, 1.0, 0.0, 1.0, 0.0}, 1));
+        trainingData.add(Record.newDataVector(new Double[] {0.0, 1.0, 1.0, 0.0, 1.0, 0.0}, 0));
+        trainingData.add(Record.newDataVector(new Double[] {0.0, 1.0, 1.0, 0.0, 0.0, 1.0}, 1));
+        trainingData.add(Record.newDataVector(new Double[] {0.0, 1.0, 0.0, 1.0, 0.0, 1.0}, 0));
+        trainingData.add(Record.newDataVector(new Double[] {0.0, 1.0, 0.0, 1.0, 0.0, 1.0}, 1));
+        trainingData.add(Record.newDataVector(new Double[] {0.0, 1.0, 0.0, 1.0, 1.0, 0.0}, 0));
+        trainingData.add(Record.newDataVector(new Double[] {1.0, 0.0, 0.0, 1.0, 0.0, 1.0}, 0));
+        trainingData.add(Record.newDataVector(new Double[] {1.0, 0.0, 1.0, 0.0, 0.0, 1.0}, 1));
+        trainingData.add(Record.newDataVector(new Double[] {1.0, 0.0, 1.0, 0.0, 1.0, 0.0}, 1));
+        trainingData.add(Record.newDataVector(new Double[] {1.0, 0.0, 1.0, 0.0, 1.0, 0.0}, 0));
+        trainingData.add(Record.newDataVector(new Double[] {1.0, 0.0, 1.0, 0.0, 1.0, 0.0}, 1));
+        trainingData.add(Record.newDataVector(new Double[] {0.0, 1.0, 1.0, 0.0, 1.0, 0.0}, 0));
+        trainingData.add(Record.newDataVector(new Double[] {0.0, 1.0, 1.0, 0.0, 0.0, 1.0}, 1));
+        trainingData.add(Record.newDataVector(new Double[] {0.0, 1.0, 0.0, 1.0, 0.0, 1.0}, 0));
+        trainingData.add(Record.newDataVector(new Double[] {0.0, 1.0, 0.0, 1.0, 0.0, 1.0}, 1));
+        trainingData.add(Record.newDataVector(new Double[] {0.0, 1.0, 0.0, 1.0, 1.0, 0.0}, 0));
+        trainingData.add(Record.newDataVector(new Double[] {1.0, 0.0, 0.0, 1.0, 0.0, 1.0}, 0));
+        trainingData.add(Record.newDataVector(new Double[] {1.0, 0.0, 1.0, 0.0, 0.0, 1.0}, 1));
+        
+        Dataset validationData = new Dataset();
+        validationData.add(Record.newDataVector(new Double[] {1.0, 0.0, 1.0, 0.0, 1.0, 0.0}, 1));
+        validationData.add(Record.newDataVector(new Double[] {1.0, 0.0, 1.0, 0.0, 1.0, 0.0}, 0));
+        validationData.add(Record.newDataVector(new Double[] {1.0, 0.0, 1.0, 0.0, 1.0, 0.0}, 1));
+        validationData.add(Record.newDataVector(new Double[] {0.0, 1.0, 1.0, 0.0, 1.0, 0.0}, 0));
+        validationData.add(Record.newDataVector(new Double[] {0.0, 1.0, 1.0, 0.0, 0.0, 1.0}, 1));
+        validationData.add(Record.newDataVector(new Double[] {0.0, 1.0, 0.0, 1.0, 0.0, 1.0}, 0));
+        validationData.add(Record.newDataVector(new Double[] {0.0, 1.0, 0.0, 1.0, 0.0, 1.0}, 1));
+        validationData.add(Record.newDataVector(new Double[] {0.0, 1.0, 0.0, 1.0, 1.0, 0.0}, 0));
+        validationData.add(Record.newDataVector(new Double[] {1.0, 0.0, 0.0, 1.0, 0.0, 1.0}, 0));
+        validationData.add(Record.newDataVector(new Double[] {1.0, 0.0, 1.0, 0.0, 0.0, 1.0}, 1));
+        
+        MemoryConfiguration memoryConfiguration = new MemoryConfiguration();
+        
+        String dbName = "JUnitClassifier";
+        
+        DummyXMinMaxNormalizer df = new DummyXMinMaxNormalizer(dbName);
+        df.initializeTrainingConfiguration(memoryConfiguration, df.getEmptyTrainingParametersObject());
+        df.transform(trainingData, true);
+        df.normalize(trainingData);
+        df.transform(validationData, false);
+        df.normalize(validationData);
+        
+        SoftMaxRegression instance = new SoftMaxRegression(dbName);
+        
+        SoftMaxRegression.TrainingParameters param = instance.getEmptyTrainingParametersObject();
+        param.setTotalIterations(30);
+        instance.initializeTrainingConfiguration(memoryConfiguration, param);
+        instance.train(trainingData, validationData);
+        
+        
+        instance = null;
+        instance = new SoftMaxRegression(dbName);
+        instance.setMemoryConfiguration(memoryConfiguration);
+        instance.predict(validationData);
+        
+        BatchPredictor predictor = instance.getBatchPredictor();
+        SparseBatch batch = predictor.parseDataset(validationData, new SparseBatch());
+        BatchPredictions predictions = new BatchPredictions();
+        predictor.predict(batch, predictions);
+        
+        assertEquals(validationData.size(), predictions.size());
+        for(Record r : validationData) {
+            int row = r.getId();
+            assertEquals(r.getYPredicted(), predictor.getClassValue(predictions.getPredictedClassId(row)));
+            for(int classId=0;classId<predictor.getNumberOfClasses();++classId) {
+                Object theClass = predictor.getClassValue(classId);
+                assertEquals(Dataset.toDouble(r.getYPredictedProbabilities().get(theClass)), predictions.getProbability(row, classId), TestConfiguration.DOUBLE_ACCURACY_HIGH);
+            }
+        }
+        
+        df.denormalize(trainingData);
+        df.denormalize(validationData);
+        df.erase(true);
+        
+        instance.erase(true);
+    }
+    
+
     /**
      * Test of kFoldCrossValidation method, of class SoftMaxRegression.
      */
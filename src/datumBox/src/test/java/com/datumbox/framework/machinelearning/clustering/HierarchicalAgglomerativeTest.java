@@ -16,15 +16,21 @@
  */
 package com.datumbox.framework.machinelearning.clustering;
 
+import com.datumbox.common.dataobjects.AssociativeArray;
 import com.datumbox.common.dataobjects.Dataset;
 import com.datumbox.common.dataobjects.Record;
 import com.datumbox.common.utilities.RandomValue;
 import com.datumbox.configuration.MemoryConfiguration;
 import com.datumbox.configuration.TestConfiguration;
 import com.datumbox.framework.machinelearning.datatransformation.DummyXYMinMaxNormalizer;
+import com.datumbox.framework.mathematics.distances.Distance;
+import com.datumbox.tests.utilities.TestUtils;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Random;
+import java.util.concurrent.Callable;
 import org.junit.Test;
 import static org.junit.Assert.*;
 
@@ -101,6 +107,234 @@ public class HierarchicalAgglomerativeTest {
     }
 
     
+    /**
+     * Returns the centroids of a naive greedy agglomeration, keyed by the
+     * smallest row of every cluster.
+     * 
+     * @param records
+     * @param param
+     * @return 
+     */
+    private static Map<Integer, double[]> naiveClusters(List<Record> records, HierarchicalAgglomerative.TrainingParameters param) {
+        int n = records.size();
+        double[][] distances = new double[n][n];
+        for(int i=0;i<n;++i) {
+            for(int j=0;j<n;++j) {
+                AssociativeArray x1 = records.get(i).getX();
+                AssociativeArray x2 = records.get(j).getX();
+                if(param.getDistanceMethod()==HierarchicalAgglomerative.TrainingParameters.Distance.EUCLIDIAN) {
+                    distances[i][j] = Distance.euclidean(x1, x2);
+                }
+                else if(param.getDistanceMethod()==HierarchicalAgglomerative.TrainingParameters.Distance.MANHATTAN) {
+                    distances[i][j] = Distance.manhattan(x1, x2);
+                }
+                else {
+                    distances[i][j] = Distance.maximum(x1, x2);
+                }
+            }
+        }
+        
+        Map<Integer, List<Integer>> members = new HashMap<>();
+        for(int i=0;i<n;++i) {
+            List<Integer> rows = new ArrayList<>();
+            rows.add(i);
+            members.put(i, rows);
+        }
+        
+        while(true) {
+            int minId1 = -1;
+            int minId2 = -1;
+            double minDistance = Double.MAX_VALUE;
+            for(int id1 : members.keySet()) {
+                for(int id2 : members.keySet()) {
+                    if(id1<id2 && distances[id1][id2]<minDistance) {
+                        minDistance = distances[id1][id2];
+                        minId1 = id1;
+                        minId2 = id2;
+                    }
+                }
+            }
+            if(minDistance>=param.getMaxDistanceThreshold()) {
+                break;
+            }
+            
+            double size1 = members.get(minId1).size();
+            double size2 = members.get(minId2).size();
+            for(int id : members.keySet()) {
+                double distance;
+                if(param.getLinkageMethod()==HierarchicalAgglomerative.TrainingParameters.Linkage.SINGLE) {
+                    distance = Math.min(distances[minId1][id], distances[minId2][id]);
+                }
+                else if(param.getLinkageMethod()==HierarchicalAgglomerative.TrainingParameters.Linkage.COMPLETE) {
+                    distance = Math.max(distances[minId1][id], distances[minId2][id]);
+                }
+                else {
+                    distance = (distances[minId1][id]*size1 + distances[minId2][id]*size2)/(size1+size2);
+                }
+                distances[minId1][id] = distance;
+                distances[id][minId1] = distance;
+            }
+            members.get(minId1).addAll(members.remove(minId2));
+            
+            if(members.size()<=param.getMinClustersThreshold()) {
+                break;
+            }
+        }
+        
+        Map<Integer, double[]> centroids = new HashMap<>();
+        for(Map.Entry<Integer, List<Integer>> entry : members.entrySet()) {
+            double[] centroid = new double[3];
+            for(int row : entry.getValue()) {
+                for(int f=0;f<3;++f) {
+                    centroid[f] += Dataset.toDouble(records.get(row).getX().get("x"+f))/entry.getValue().size();
+                }
+            }
+            centroids.put(entry.getKey(), centroid);
+        }
+        return centroids;
+    }
+    
+    /**
+     * Test of the nearest-neighbor chain agglomeration, of class HierarchicalAgglomerative.
+     */
+    @Test
+    public void testCalculateClusters() {
+        System.out.println("calculateClusters");
+        
+        Random rnd = new Random(42);
+        Dataset trainingData = new Dataset();
+        List<Record> records = new ArrayList<>();
+        for(int i=0;i<60;++i) {
+            AssociativeArray x = new AssociativeArray();
+            for(int f=0;f<3;++f) {
+                x.put("x"+f, rnd.nextDouble());
+            }
+            Record r = new Record();
+            r.setX(x);
+            trainingData.add(r);
+            records.add(r);
+        }
+        
+        MemoryConfiguration memoryConfiguration = new MemoryConfiguration();
+        
+        String dbName = "JUnitClusterer";
+        
+        for(HierarchicalAgglomerative.TrainingParameters.Linkage linkageMethod : HierarchicalAgglomerative.TrainingParameters.Linkage.values()) {
+            for(HierarchicalAgglomerative.TrainingParameters.Distance distanceMethod : HierarchicalAgglomerative.TrainingParameters.Distance.values()) {
+                for(double maxDistanceThreshold : new double[] {Double.MAX_VALUE, 0.4}) {
+                    HierarchicalAgglomerative instance = new HierarchicalAgglomerative(dbName);
+                    
+                    HierarchicalAgglomerative.TrainingParameters param = instance.getEmptyTrainingParametersObject();
+                    param.setDistanceMethod(distanceMethod);
+                    param.setLinkageMethod(linkageMethod);
+                    param.setMinClustersThreshold(4);
+                    param.setMaxDistanceThreshold(maxDistanceThreshold);
+                    instance.initializeTrainingConfiguration(memoryConfiguration, param);
+                    instance.train(trainingData, new Dataset());
+                    
+                    Map<Integer, double[]> expResult = naiveClusters(records, param);
+                    Map<Integer, HierarchicalAgglomerative.Cluster> clusters = instance.getClusters();
+                    
+                    assertEquals(expResult.keySet(), clusters.keySet());
+                    for(Map.Entry<Integer, double[]> entry : expResult.entrySet()) {
+                        AssociativeArray centroid = clusters.get(entry.getKey()).getCentroid().getX();
+                        for(int f=0;f<3;++f) {
+                            assertEquals(entry.getValue()[f], Dataset.toDouble(centroid.get("x"+f)), TestConfiguration.DOUBLE_ACCURACY_HIGH);
+                        }
+                    }
+                    
+                    instance.erase(true);
+                }
+            }
+        }
+    }
+    
+    /**
+     * Trains a HierarchicalAgglomerative with the provided number of threads 
+     * and returns the clusters.
+     * 
+     * @param trainingData
+     * @param param
+     * @param numberOfThreads
+     * @return 
+     */
+    private static Map<Integer, HierarchicalAgglomerative.Cluster> trainClusters(final Dataset trainingData, final HierarchicalAgglomerative.TrainingParameters param, int numberOfThreads) {
+        return TestUtils.withThreads(numberOfThreads, new Callable<Map<Integer, HierarchicalAgglomerative.Cluster>>() {
+            @Override
+            public Map<Integer, HierarchicalAgglomerative.Cluster> call() {
+                MemoryConfiguration memoryConfiguration = new MemoryConfiguration();
+                
+                String dbName = "JUnitClusterer";
+                
+                HierarchicalAgglomerative instance = new HierarchicalAgglomerative(dbName);
+                instance.initializeTrainingConfiguration(memoryConfiguration, param);
+                instance.train(trainingData, new Dataset());
+                
+                Map<Integer, HierarchicalAgglomerative.Cluster> clusters = instance.getClusters();
+                
+                instance.erase(true);
+                
+                return clusters;
+            }
+        });
+    }
+    
+    /**
+     * Test of the parallel estimation of the distance matrix, of class 
+     * HierarchicalAgglomerative. The numeric records and the records with an 
+     * ordinal column are clustered with 1 and 4 threads.
+     */
+    @Test
+    public void testCalculateClustersParallel() {
+        System.out.println("calculateClustersParallel");
+        
+        Random rnd = new Random(42);
+        Dataset numericData = new Dataset();
+        Dataset ordinalData = new Dataset();
+        for(int i=0;i<60;++i) {
+            AssociativeArray x = new AssociativeArray();
+            AssociativeArray xOrdinal = new AssociativeArray();
+            for(int f=0;f<3;++f) {
+                double value = rnd.nextDouble();
+                x.put("x"+f, value);
+                xOrdinal.put("x"+f, value);
+            }
+            xOrdinal.put("o", (short)rnd.nextInt(3));
+            
+            Record r = new Record();
+            r.setX(x);
+            numericData.add(r);
+            
+            r = new Record();
+            r.setX(xOrdinal);
+            ordinalData.add(r);
+        }
+        
+        for(Dataset trainingData : new Dataset[] {numericData, ordinalData}) {
+            for(HierarchicalAgglomerative.TrainingParameters.Linkage linkageMethod : HierarchicalAgglomerative.TrainingParameters.Linkage.values()) {
+                for(HierarchicalAgglomerative.TrainingParameters.Distance distanceMethod : HierarchicalAgglomerative.TrainingParameters.Distance.values()) {
+                    HierarchicalAgglomerative.TrainingParameters param = new HierarchicalAgglomerative.TrainingParameters();
+                    param.setDistanceMethod(distanceMethod);
+                    param.setLinkageMethod(linkageMethod);
+                    param.setMinClustersThreshold(4);
+                    
+                    Map<Integer, HierarchicalAgglomerative.Cluster> expResult = trainClusters(trainingData, param, 1);
+                    Map<Integer, HierarchicalAgglomerative.Cluster> result = trainClusters(trainingData, param, 4);
+                    
+                    assertEquals(expResult.keySet(), result.keySet());
+                    for(Map.Entry<Integer, HierarchicalAgglomerative.Cluster> entry : expResult.entrySet()) {
+                        AssociativeArray expCentroid = entry.getValue().getCentroid().getX();
+                        AssociativeArray centroid = result.get(entry.getKey()).getCentroid().getX();
+                        assertEquals(expCentroid.keySet(), centroid.keySet());
+                        for(Object column : expCentroid.keySet()) {
+                            assertEquals(Dataset.toDouble(expCentroid.get(column)), Dataset.toDouble(centroid.get(column)), TestConfiguration.DOUBLE_ACCURACY_HIGH);
+                        }
+                    }
+                }
+            }
+        }
+    }
+    
     /**
      * Test of kFoldCrossValidation method, of class HierarchicalAgglomerative.
      */
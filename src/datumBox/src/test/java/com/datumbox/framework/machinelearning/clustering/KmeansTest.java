@@ -16,15 +16,22 @@
  */
 package com.datumbox.framework.machinelearning.clustering;
 
+import com.datumbox.common.dataobjects.AssociativeArray;
 import com.datumbox.common.dataobjects.Dataset;
 import com.datumbox.common.dataobjects.Record;
 import com.datumbox.common.utilities.RandomValue;
 import com.datumbox.configuration.MemoryConfiguration;
 import com.datumbox.configuration.TestConfiguration;
 import com.datumbox.framework.machinelearning.datatransformation.DummyXYMinMaxNormalizer;
+import com.datumbox.tests.utilities.TestUtils;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.Callable;
 import org.junit.Test;
 import static org.junit.Assert.*;
 
@@ -226,6 +233,133 @@ public class KmeansTest {
         return trainingData;
     }
 
+    /**
+     * Generates records of three groups. The records of the group g have values
+     * around 3 on the features f(2g) and f(2g+1) and sparse noise on the rest.
+     * 
+     * @param rnd
+     * @param n
+     * @return 
+     */
+    private static Dataset generateSparseGroups(Random rnd, int n) {
+        Dataset data = new Dataset();
+        for(int i=0;i<n;++i) {
+            int group = i%3;
+            AssociativeArray x = new AssociativeArray();
+            for(int f=0;f<6;++f) {
+                if(f/2==group || rnd.nextDouble()<0.2) {
+                    x.put("f"+f, (f/2==group?3.0:0.0)+rnd.nextGaussian());
+                }
+            }
+            Record r = new Record();
+            r.setX(x);
+            data.add(r);
+        }
+        return data;
+    }
+    
+    /**
+     * Returns the group of the closest pattern of the centroid, checking that
+     * the centroid is close to it.
+     * 
+     * @param centroid
+     * @return 
+     */
+    private static int getPatternGroup(AssociativeArray centroid) {
+        int group = -1;
+        for(int f=0;f<6;++f) {
+            double value = Dataset.toDouble(centroid.get("f"+f));
+            if(value>1.5) {
+                group = f/2;
+            }
+        }
+        for(int f=0;f<6;++f) {
+            assertEquals((f/2==group)?3.0:0.0, Dataset.toDouble(centroid.get("f"+f)), TestConfiguration.DOUBLE_ACCURACY_LOW);
+        }
+        return group;
+    }
+    
+    /**
+     * Trains a Kmeans with the provided initialization method and number of
+     * threads, stores the assignments of the records in the YPredicted and
+     * returns the centroids of the clusters.
+     * 
+     * @param trainingData
+     * @param initMethod
+     * @param numberOfThreads
+     * @return 
+     */
+    private static Map<Integer, AssociativeArray> trainCentroids(final Dataset trainingData, final Kmeans.TrainingParameters.Initialization initMethod, int numberOfThreads) {
+        return TestUtils.withThreads(numberOfThreads, new Callable<Map<Integer, AssociativeArray>>() {
+            @Override
+            public Map<Integer, AssociativeArray> call() {
+                RandomValue.randomGenerator = new Random(42); 
+                
+                MemoryConfiguration memoryConfiguration = new MemoryConfiguration();
+                
+                String dbName = "JUnitClusterer";
+                
+                Kmeans instance = new Kmeans(dbName);
+                
+                Kmeans.TrainingParameters param = instance.getEmptyTrainingParametersObject();
+                param.setK(3);
+                param.setMaxIterations(200);
+                param.setInitMethod(initMethod);
+                param.setScalablePlusPlusOversampling(2.0);
+                param.setScalablePlusPlusRounds(3);
+                param.setDistanceMethod(Kmeans.TrainingParameters.Distance.EUCLIDIAN);
+                param.setWeighted(false);
+                instance.initializeTrainingConfiguration(memoryConfiguration, param);
+                instance.train(trainingData, new Dataset());
+                
+                instance = null;
+                instance = new Kmeans(dbName);
+                instance.setMemoryConfiguration(memoryConfiguration);
+                instance.predict(trainingData);
+                
+                Map<Integer, AssociativeArray> centroids = new HashMap<>();
+                for(Map.Entry<Integer, Kmeans.Cluster> entry : instance.getClusters().entrySet()) {
+                    centroids.put(entry.getKey(), entry.getValue().getCentroid().getX());
+                }
+                
+                instance.erase(true);
+                
+                return centroids;
+            }
+        });
+    }
+    
+    /**
+     * Compares the clusters which are estimated by a single thread and by many
+     * threads with the provided initialization method.
+     * 
+     * @param initMethod 
+     */
+    private static void assertSameClusters(Kmeans.TrainingParameters.Initialization initMethod) {
+        Dataset trainingData = generateSparseGroups(new Random(42), 600);
+        
+        Map<Integer, AssociativeArray> expCentroids = trainCentroids(trainingData, initMethod, 1);
+        Map<Integer, Object> expResult = new HashMap<>();
+        for(Record r : trainingData) {
+            expResult.put(r.getId(), r.getYPredicted());
+        }
+        
+        Map<Integer, AssociativeArray> centroids = trainCentroids(trainingData, initMethod, 4);
+        Map<Integer, Object> result = new HashMap<>();
+        for(Record r : trainingData) {
+            result.put(r.getId(), r.getYPredicted());
+        }
+        
+        assertEquals(expResult, result);
+        assertEquals(expCentroids.keySet(), centroids.keySet());
+        for(Map.Entry<Integer, AssociativeArray> entry : expCentroids.entrySet()) {
+            AssociativeArray centroid = centroids.get(entry.getKey());
+            for(int f=0;f<6;++f) {
+                assertEquals(Dataset.toDouble(entry.getValue().get("f"+f)), Dataset.toDouble(centroid.get("f"+f)), TestConfiguration.DOUBLE_ACCURACY_HIGH);
+            }
+        }
+    }
+    
     /**
      * Test of predict method, of class MaximumEntropy.
      */
@@ -292,6 +426,339 @@ public class KmeansTest {
         instance.erase(true);
     }
 
+
+    /**
+     * Test of the assignment of the records, of class Kmeans. After the 
+     * convergence every centroid must be the average of the records which are
+     * closest to it.
+     */
+    @Test
+    public void testCalculateClusters() {
+        System.out.println("calculateClusters");
+        
+        for(Kmeans.TrainingParameters.Distance distanceMethod : Kmeans.TrainingParameters.Distance.values()) {
+            RandomValue.randomGenerator = new Random(42); 
+            
+            Dataset trainingData = generateSparseGroups(new Random(42), 300);
+            
+            MemoryConfiguration memoryConfiguration = new MemoryConfiguration();
+            
+            String dbName = "JUnitClusterer";
+            
+            Kmeans instance = new Kmeans(dbName);
+            
+            Kmeans.TrainingParameters param = instance.getEmptyTrainingParametersObject();
+            param.setK(3);
+            param.setMaxIterations(200);
+            param.setInitMethod(Kmeans.TrainingParameters.Initialization.PLUS_PLUS);
+            param.setDistanceMethod(distanceMethod);
+            param.setWeighted(false);
+            instance.initializeTrainingConfiguration(memoryConfiguration, param);
+            instance.train(trainingData, trainingData);
+            
+            instance = null;
+            instance = new Kmeans(dbName);
+            instance.setMemoryConfiguration(memoryConfiguration);
+            instance.predict(trainingData);
+            
+            Map<Integer, Kmeans.Cluster> clusters = instance.getClusters();
+            Map<Object, AssociativeArray> sums = new HashMap<>();
+            Map<Object, Integer> counts = new HashMap<>();
+            for(Record r : trainingData) {
+                Object clusterId = r.getYPredicted();
+                if(!sums.containsKey(clusterId)) {
+                    sums.put(clusterId, new AssociativeArray());
+                    counts.put(clusterId, 0);
+                }
+                sums.get(clusterId).addValues(r.getX());
+                counts.put(clusterId, counts.get(clusterId)+1);
+            }
+            
+            assertEquals(3, sums.size());
+            for(Map.Entry<Object, AssociativeArray> entry : sums.entrySet()) {
+                AssociativeArray centroid = clusters.get((Integer)entry.getKey()).getCentroid().getX();
+                int count = counts.get(entry.getKey());
+                for(int f=0;f<6;++f) {
+                    Double sum = Dataset.toDouble(entry.getValue().get("f"+f));
+                    double expResult = (sum!=null)?sum/count:0.0;
+                    double result = Dataset.toDouble(centroid.get("f"+f));
+                    assertEquals(expResult, result, TestConfiguration.DOUBLE_ACCURACY_HIGH);
+                }
+            }
+            
+            instance.erase(true);
+        }
+    }
+
+    /**
+     * Test of the parallel assignment of the records with the bounds of 
+     * Hamerly, of class Kmeans.
+     */
+    @Test
+    public void testCalculateClustersParallel() {
+        System.out.println("calculateClustersParallel");
+        
+        assertSameClusters(Kmeans.TrainingParameters.Initialization.PLUS_PLUS);
+    }
+
+    /**
+     * Test of the Kmeans|| initialization, of class Kmeans.
+     */
+    @Test
+    public void testScalablePlusPlus() {
+        System.out.println("scalablePlusPlus");
+        RandomValue.randomGenerator = new Random(42); 
+        
+        Dataset trainingData = generateSparseGroups(new Random(42), 300);
+        
+        MemoryConfiguration memoryConfiguration = new MemoryConfiguration();
+        
+        String dbName = "JUnitClusterer";
+        
+        Kmeans instance = new Kmeans(dbName);
+        
+        Kmeans.TrainingParameters param = instance.getEmptyTrainingParametersObject();
+        param.setK(3);
+        param.setMaxIterations(200);
+        param.setInitMethod(Kmeans.TrainingParameters.Initialization.SCALABLE_PLUS_PLUS);
+        param.setScalablePlusPlusOversampling(2.0);
+        param.setScalablePlusPlusRounds(3);
+        param.setDistanceMethod(Kmeans.TrainingParameters.Distance.EUCLIDIAN);
+        instance.initializeTrainingConfiguration(memoryConfiguration, param);
+        instance.train(trainingData, new Dataset());
+        
+        instance = null;
+        instance = new Kmeans(dbName);
+        instance.setMemoryConfiguration(memoryConfiguration);
+        instance.predict(trainingData);
+        
+        //every group has its own centroid
+        Set<Integer> groups = new HashSet<>();
+        for(Kmeans.Cluster c : instance.getClusters().values()) {
+            groups.add(getPatternGroup(c.getCentroid().getX()));
+        }
+        assertEquals(3, groups.size());
+        
+        instance.erase(true);
+    }
+
+    /**
+     * Test of the parallel estimation of the costs of the Kmeans|| 
+     * initialization, of class Kmeans.
+     */
+    @Test
+    public void testScalablePlusPlusParallel() {
+        System.out.println("scalablePlusPlusParallel");
+        
+        assertSameClusters(Kmeans.TrainingParameters.Initialization.SCALABLE_PLUS_PLUS);
+    }
+
+    /**
+     * Test of train method with a stream of records, of class Kmeans.
+     */
+    @Test
+    public void testTrainStream() {
+        System.out.println("trainStream");
+        RandomValue.randomGenerator = new Random(42); 
+        
+        List<Record> trainingStream = new ArrayList<>();
+        for(Record r : generateSparseGroups(new Random(42), 600)) {
+            trainingStream.add(r);
+        }
+        List<Record> heldOutStream = new ArrayList<>();
+        for(Record r : generateSparseGroups(new Random(43), 60)) {
+            heldOutStream.add(r);
+        }
+        
+        MemoryConfiguration memoryConfiguration = new MemoryConfiguration();
+        
+        String dbName = "JUnitClusterer";
+        
+        Kmeans instance = new Kmeans(dbName);
+        
+        Kmeans.TrainingParameters param = instance.getEmptyTrainingParametersObject();
+        param.setK(3);
+        param.setMaxIterations(10);
+        param.setInitMethod(Kmeans.TrainingParameters.Initialization.PLUS_PLUS);
+        param.setDistanceMethod(Kmeans.TrainingParameters.Distance.EUCLIDIAN);
+        param.setBatchSize(20);
+        param.setPatience(2);
+        instance.initializeTrainingConfiguration(memoryConfiguration, param);
+        instance.train(trainingStream, heldOutStream);
+        
+        instance = null;
+        instance = new Kmeans(dbName);
+        instance.setMemoryConfiguration(memoryConfiguration);
+        
+        Dataset validationData = generateSparseGroups(new Random(44), 30);
+        instance.predict(validationData);
+        
+        //every group has its own centroid
+        Map<Integer, Kmeans.Cluster> clusters = instance.getClusters();
+        Map<Integer, Integer> expResult = new HashMap<>();
+        Map<Integer, Integer> result = new HashMap<>();
+        double totalWeight = 0.0;
+        for(Kmeans.Cluster c : clusters.values()) {
+            int group = getPatternGroup(c.getCentroid().getX());
+            expResult.put(group, group);
+            result.put(group, c.getClusterId());
+            totalWeight += c.getWeight();
+        }
+        assertEquals(3, result.size());
+        assertEquals(600.0, totalWeight, TestConfiguration.DOUBLE_ACCURACY_HIGH);
+        
+        int i = 0;
+        for(Record r : validationData) {
+            assertEquals(result.get(i%3), r.getYPredicted());
+            ++i;
+        }
+        
+        instance.erase(true);
+    }
+    
+    /**
+     * Test of update method, of class Kmeans.
+     */
+    @Test
+    public void testUpdate() {
+        System.out.println("update");
+        RandomValue.randomGenerator = new Random(42); 
+        
+        Dataset trainingData = generateSparseGroups(new Random(42), 300);
+        Dataset newData = generateSparseGroups(new Random(43), 90);
+        
+        MemoryConfiguration memoryConfiguration = new MemoryConfiguration();
+        
+        String dbName = "JUnitClusterer";
+        
+        Kmeans instance = new Kmeans(dbName);
+        
+        Kmeans.TrainingParameters param = instance.getEmptyTrainingParametersObject();
+        param.setK(3);
+        param.setMaxIterations(200);
+        param.setInitMethod(Kmeans.TrainingParameters.Initialization.PLUS_PLUS);
+        param.setDistanceMethod(Kmeans.TrainingParameters.Distance.MANHATTAN);
+        instance.initializeTrainingConfiguration(memoryConfiguration, param);
+        instance.train(trainingData, new Dataset());
+        
+        instance = null;
+        instance = new Kmeans(dbName);
+        instance.setMemoryConfiguration(memoryConfiguration);
+        
+        //the centroids must become the averages of their previous records and the new records which are closest to them
+        instance.predict(newData);
+        Map<Integer, AssociativeArray> expResult = new HashMap<>();
+        Map<Integer, Double> expWeights = new HashMap<>();
+        for(Kmeans.Cluster c : instance.getClusters().values()) {
+            AssociativeArray sums = new AssociativeArray();
+            for(Map.Entry<Object, Object> entry : c.getCentroid().getX().entrySet()) {
+                sums.put(entry.getKey(), Dataset.toDouble(entry.getValue())*c.getWeight());
+            }
+            expResult.put(c.getClusterId(), sums);
+            expWeights.put(c.getClusterId(), c.getWeight());
+        }
+        for(Record r : newData) {
+            Integer clusterId = (Integer)r.getYPredicted();
+            expResult.get(clusterId).addValues(r.getX());
+            expWeights.put(clusterId, expWeights.get(clusterId)+1.0);
+        }
+        
+        instance.update(newData);
+        
+        instance = null;
+        instance = new Kmeans(dbName);
+        instance.setMemoryConfiguration(memoryConfiguration);
+        instance.predict(new Dataset());
+        
+        for(Kmeans.Cluster c : instance.getClusters().values()) {
+            double weight = expWeights.get(c.getClusterId());
+            assertEquals(weight, c.getWeight(), TestConfiguration.DOUBLE_ACCURACY_HIGH);
+            
+            AssociativeArray centroid = c.getCentroid().getX();
+            for(Map.Entry<Object, Object> entry : expResult.get(c.getClusterId()).entrySet()) {
+                assertEquals(Dataset.toDouble(entry.getValue())/weight, Dataset.toDouble(centroid.get(entry.getKey())), TestConfiguration.DOUBLE_ACCURACY_HIGH);
+            }
+            getPatternGroup(centroid);
+        }
+        
+        instance.erase(true);
+    }
+    
+    /**
+     * Test of update method, of class Kmeans, when it is called repeatedly.
+     */
+    @Test
+    public void testUpdateRepeated() {
+        System.out.println("updateRepeated");
+        
+        Dataset trainingData = generateSparseGroups(new Random(42), 300);
+        Dataset firstData = generateSparseGroups(new Random(43), 60);
+        Dataset secondData = generateSparseGroups(new Random(44), 60);
+        Dataset mergedData = new Dataset();
+        mergedData.merge(firstData);
+        mergedData.merge(secondData);
+        
+        String dbName = "JUnitClusterer";
+        
+        //the batches of 60 records make the two updates equivalent to a single update with the merged data
+        Map<Integer, Kmeans.Cluster> expResult = trainAndUpdate(dbName, trainingData, new Dataset[]{mergedData}, false);
+        for(boolean reload : new boolean[]{true, false}) {
+            Map<Integer, Kmeans.Cluster> result = trainAndUpdate(dbName, trainingData, new Dataset[]{firstData, secondData}, reload);
+            
+            assertEquals(expResult.size(), result.size());
+            for(Kmeans.Cluster c : result.values()) {
+                Kmeans.Cluster expCluster = expResult.get(c.getClusterId());
+                assertEquals(expCluster.getWeight(), c.getWeight(), TestConfiguration.DOUBLE_ACCURACY_HIGH);
+                
+                AssociativeArray expCentroid = expCluster.getCentroid().getX();
+                for(Map.Entry<Object, Object> entry : c.getCentroid().getX().entrySet()) {
+                    assertEquals(Dataset.toDouble(expCentroid.get(entry.getKey())), Dataset.toDouble(entry.getValue()), TestConfiguration.DOUBLE_ACCURACY_HIGH);
+                }
+            }
+        }
+    }
+    
+    /**
+     * Trains a Kmeans with batches of 60 records and updates it with every 
+     * one of the newDatasets. If reload is true, the model is loaded again 
+     * before every update. Returns the clusters of the updated model.
+     * 
+     * @param dbName
+     * @param trainingData
+     * @param newDatasets
+     * @param reload
+     * @return 
+     */
+    private Map<Integer, Kmeans.Cluster> trainAndUpdate(String dbName, Dataset trainingData, Dataset[] newDatasets, boolean reload) {
+        RandomValue.randomGenerator = new Random(42);
+        
+        MemoryConfiguration memoryConfiguration = new MemoryConfiguration();
+        
+        Kmeans instance = new Kmeans(dbName);
+        
+        Kmeans.TrainingParameters param = instance.getEmptyTrainingParametersObject();
+        param.setK(3);
+        param.setMaxIterations(200);
+        param.setInitMethod(Kmeans.TrainingParameters.Initialization.FORGY);
+        param.setDistanceMethod(Kmeans.TrainingParameters.Distance.EUCLIDIAN);
+        param.setBatchSize(60);
+        instance.initializeTrainingConfiguration(memoryConfiguration, param);
+        instance.train(trainingData, new Dataset());
+        
+        for(Dataset newData : newDatasets) {
+            if(reload) {
+                instance = null;
+                instance = new Kmeans(dbName);
+                instance.setMemoryConfiguration(memoryConfiguration);
+            }
+            instance.update(newData);
+        }
+        
+        Map<Integer, Kmeans.Cluster> clusters = instance.getClusters();
+        instance.erase(true);
+        
+        return clusters;
+    }
     
     /**
      * Test of kFoldCrossValidation method, of class Kmeans.
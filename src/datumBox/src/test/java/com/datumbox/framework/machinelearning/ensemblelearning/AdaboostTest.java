@@ -23,9 +23,13 @@ import com.datumbox.configuration.MemoryConfiguration;
 import com.datumbox.framework.machinelearning.datatransformation.SimpleDummyVariableExtractor;
 import com.datumbox.framework.machinelearning.classification.MultinomialNaiveBayes;
 import com.datumbox.configuration.TestConfiguration;
+import com.datumbox.tests.utilities.TestUtils;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Random;
+import java.util.concurrent.Callable;
 import org.junit.Test;
 import static org.junit.Assert.*;
 
@@ -230,4 +234,141 @@ public class AdaboostTest {
         instance.erase(true);
     }
     
+    /**
+     * Test that the weak classifiers give the same predictions when they are 
+     * scored in parallel.
+     */
+    @Test
+    public void testPredictParallel() {
+        System.out.println("predictParallel");
+        RandomValue.randomGenerator = new Random(42);
+        
+        Dataset trainingData = new Dataset();
+        for(int i=0;i<5;++i) {
+            trainingData.add(Record.newDataVector(new Double[] {1.0, 0.0, 1.0, 0.0, 1.0, 0.0}, 1));
+            trainingData.add(Record.newDataVector(new Double[] {1.0, 0.0, 1.0, 0.0, 1.0, 0.0}, 0));
+            trainingData.add(Record.newDataVector(new Double[] {1.0, 0.0, 1.0, 0.0, 1.0, 0.0}, 1));
+            trainingData.add(Record.newDataVector(new Double[] {0.0, 1.0, 1.0, 0.0, 1.0, 0.0}, 0));
+            trainingData.add(Record.newDataVector(new Double[] {0.0, 1.0, 1.0, 0.0, 0.0, 1.0}, 1));
+            trainingData.add(Record.newDataVector(new Double[] {0.0, 1.0, 0.0, 1.0, 0.0, 1.0}, 0));
+            trainingData.add(Record.newDataVector(new Double[] {0.0, 1.0, 0.0, 1.0, 0.0, 1.0}, 1));
+            trainingData.add(Record.newDataVector(new Double[] {0.0, 1.0, 0.0, 1.0, 1.0, 0.0}, 0));
+            trainingData.add(Record.newDataVector(new Double[] {1.0, 0.0, 0.0, 1.0, 0.0, 1.0}, 0));
+            trainingData.add(Record.newDataVector(new Double[] {1.0, 0.0, 1.0, 0.0, 0.0, 1.0}, 1));
+        }
+        
+        List<Integer> ids = new ArrayList<>();
+        for(Record r : trainingData) {
+            ids.add(r.getId());
+        }
+        Dataset expResult = trainingData.generateNewSubset(ids);
+        final Dataset result = trainingData.generateNewSubset(ids);
+        
+        
+        MemoryConfiguration memoryConfiguration = new MemoryConfiguration();
+        
+        String dbName = "JUnitClassifier";
+        final Adaboost instance = new Adaboost(dbName);
+        
+        Adaboost.TrainingParameters param = instance.getEmptyTrainingParametersObject();
+        param.setMaxWeakClassifiers(5);
+        param.setWeakClassifierClass(MultinomialNaiveBayes.class);
+        
+        MultinomialNaiveBayes.TrainingParameters trainingParameters = new MultinomialNaiveBayes.TrainingParameters();
+        trainingParameters.setMultiProbabilityWeighted(true);
+        
+        param.setWeakClassifierTrainingParameters(trainingParameters);
+        
+        instance.initializeTrainingConfiguration(memoryConfiguration, param);
+        instance.train(trainingData, new Dataset());
+        assertTrue(instance.getModelParameters().getWeakClassifierWeights().size()>1);
+        
+        instance.predict(expResult);
+        
+        //the weak classifiers are scored in batches of 2 threads
+        TestUtils.withThreads(2, new Callable<Void>() {
+            @Override
+            public Void call() {
+                instance.predict(result);
+                return null;
+            }
+        });
+        
+        for(Record r : result) {
+            Record expRecord = expResult.get(r.getId());
+            assertEquals(expRecord.getYPredicted(), r.getYPredicted());
+            for(Object theClass : expRecord.getYPredictedProbabilities().keySet()) {
+                assertEquals(expRecord.getYPredictedProbabilities().getDouble(theClass), r.getYPredictedProbabilities().getDouble(theClass), TestConfiguration.DOUBLE_ACCURACY_HIGH);
+            }
+        }
+        
+        instance.erase(true);
+    }
+    
+    /**
+     * Test that the weighted errors of the boosting rounds are the same when 
+     * they are estimated in parallel.
+     */
+    @Test
+    public void testTrainParallel() {
+        System.out.println("trainParallel");
+        
+        Dataset trainingData = new Dataset();
+        for(int i=0;i<5;++i) {
+            trainingData.add(Record.newDataVector(new Double[] {1.0, 0.0, 1.0, 0.0, 1.0, 0.0}, 1));
+            trainingData.add(Record.newDataVector(new Double[] {1.0, 0.0, 1.0, 0.0, 1.0, 0.0}, 0));
+            trainingData.add(Record.newDataVector(new Double[] {1.0, 0.0, 1.0, 0.0, 1.0, 0.0}, 1));
+            trainingData.add(Record.newDataVector(new Double[] {0.0, 1.0, 1.0, 0.0, 1.0, 0.0}, 0));
+            trainingData.add(Record.newDataVector(new Double[] {0.0, 1.0, 1.0, 0.0, 0.0, 1.0}, 1));
+            trainingData.add(Record.newDataVector(new Double[] {0.0, 1.0, 0.0, 1.0, 0.0, 1.0}, 0));
+            trainingData.add(Record.newDataVector(new Double[] {0.0, 1.0, 0.0, 1.0, 0.0, 1.0}, 1));
+            trainingData.add(Record.newDataVector(new Double[] {0.0, 1.0, 0.0, 1.0, 1.0, 0.0}, 0));
+            trainingData.add(Record.newDataVector(new Double[] {1.0, 0.0, 0.0, 1.0, 0.0, 1.0}, 0));
+            trainingData.add(Record.newDataVector(new Double[] {1.0, 0.0, 1.0, 0.0, 0.0, 1.0}, 1));
+        }
+        
+        List<Double> expResult = trainWeakClassifierWeights(trainingData, 1);
+        List<Double> result = trainWeakClassifierWeights(trainingData, 4);
+        
+        assertTrue(expResult.size()>1);
+        assertEquals(expResult.size(), result.size());
+        for(int t=0;t<expResult.size();++t) {
+            assertEquals(expResult.get(t), result.get(t), TestConfiguration.DOUBLE_ACCURACY_HIGH);
+        }
+    }
+    
+    private List<Double> trainWeakClassifierWeights(final Dataset trainingData, int threads) {
+        RandomValue.randomGenerator = new Random(42);
+        
+        MemoryConfiguration memoryConfiguration = new MemoryConfiguration();
+        
+        String dbName = "JUnitClassifier";
+        final Adaboost instance = new Adaboost(dbName);
+        
+        Adaboost.TrainingParameters param = instance.getEmptyTrainingParametersObject();
+        param.setMaxWeakClassifiers(5);
+        param.setWeakClassifierClass(MultinomialNaiveBayes.class);
+        
+        MultinomialNaiveBayes.TrainingParameters trainingParameters = new MultinomialNaiveBayes.TrainingParameters();
+        trainingParameters.setMultiProbabilityWeighted(true);
+        
+        param.setWeakClassifierTrainingParameters(trainingParameters);
+        
+        instance.initializeTrainingConfiguration(memoryConfiguration, param);
+        
+        TestUtils.withThreads(threads, new Callable<Void>() {
+            @Override
+            public Void call() {
+                instance.train(trainingData, new Dataset());
+                return null;
+            }
+        });
+        
+        List<Double> weakClassifierWeights = new ArrayList<>(instance.getModelParameters().getWeakClassifierWeights());
+        
+        instance.erase(true);
+        
+        return weakClassifierWeights;
+    }
+    
 }
@@ -24,9 +24,17 @@ import com.datumbox.configuration.MemoryConfiguration;
 import com.datumbox.framework.machinelearning.datatransformation.SimpleDummyVariableExtractor;
 import com.datumbox.framework.machinelearning.classification.MultinomialNaiveBayes;
 import com.datumbox.configuration.TestConfiguration;
+import com.datumbox.common.utilities.ParallelFunctions;
+import com.datumbox.framework.machinelearning.common.bases.mlmodels.FrozenMLmodel;
+import com.datumbox.tests.utilities.TestUtils;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import org.junit.Test;
 import static org.junit.Assert.*;
 
@@ -142,14 +150,121 @@ public class BootstrapAggregatingTest {
     
 
     /**
-     * Test of kFoldCrossValidation method, of class MultinomialNaiveBayes.
+     * Test of freeze method, of class BootstrapAggregating.
      */
     @Test
-    public void testKFoldCrossValidation() {
-        System.out.println("kFoldCrossValidation");
+    public void testFreeze() {
+        System.out.println("freeze");
         RandomValue.randomGenerator = new Random(42);
-        int k = 5;
         
+        /*
+        Example from http://www.inf.u-szeged.hu/~ormandi/ai2/06-naiveBayes-example.pdf
+        FeatureList: 
+            - 0: red
+            - 1: yellow
+            - 2: sports
+            - 3: suv
+            - 4: domestic
+            - 5: imported
+            - c1: yes
+            - c2: no
+        */
+        Dataset trainingData = new Dataset();
+        trainingData.add(Record.newDataVector(new String[] {"red", "sports", "domestic"}, "yes"));
+        trainingData.add(Record.newDataVector(new String[] {"red", "sports", "domestic"}, "no"));
+        trainingData.add(Record.newDataVector(new String[] {"red", "sports", "domestic"}, "yes"));
+        trainingData.add(Record.newDataVector(new String[] {"yellow", "sports", "domestic"}, "no"));
+        trainingData.add(Record.newDataVector(new String[] {"yellow", "sports", "imported"}, "yes"));
+        trainingData.add(Record.newDataVector(new String[] {"yellow", "suv", "imported"}, "no"));
+        trainingData.add(Record.newDataVector(new String[] {"yellow", "suv", "imported"}, "yes"));
+        trainingData.add(Record.newDataVector(new String[] {"yellow", "suv", "domestic"}, "no"));
+        trainingData.add(Record.newDataVector(new String[] {"red", "suv", "imported"}, "no"));
+        trainingData.add(Record.newDataVector(new String[] {"red", "sports", "imported"}, "yes"));
+        
+        Dataset validationData = new Dataset();
+        validationData.add(Record.newDataVector(new String[] {"red", "suv", "domestic"}, "no"));
+        
+        
+        MemoryConfiguration memoryConfiguration = new MemoryConfiguration();
+        
+        String dbName = "JUnitClassifier";
+        
+        
+
+        SimpleDummyVariableExtractor df = new SimpleDummyVariableExtractor(dbName);
+        df.initializeTrainingConfiguration(memoryConfiguration, df.getEmptyTrainingParametersObject());
+        df.transform(trainingData, true);
+        df.normalize(trainingData);
+        df.transform(validationData, false);
+        df.normalize(validationData);
+        
+        BootstrapAggregating instance = new BootstrapAggregating(dbName);
+        
+        BootstrapAggregating.TrainingParameters param = instance.getEmptyTrainingParametersObject();
+        param.setMaxWeakClassifiers(5);
+        param.setWeakClassifierClass(MultinomialNaiveBayes.class);
+        
+        
+        MultinomialNaiveBayes.TrainingParameters trainingParameters = new MultinomialNaiveBayes.TrainingParameters();
+        trainingParameters.setMultiProbabilityWeighted(true);
+        
+        
+        param.setWeakClassifierTrainingParameters(trainingParameters);
+        
+        instance.initializeTrainingConfiguration(memoryConfiguration, param);
+        instance.train(trainingData, validationData);
+        
+        
+        instance = null;
+        instance = new BootstrapAggregating(dbName);
+        instance.setMemoryConfiguration(memoryConfiguration);
+        instance.predict(validationData);
+        
+        final FrozenMLmodel<BootstrapAggregating.ValidationMetrics> frozenModel = instance.freeze();
+        
+        //the frozen model does not depend on the storage of the model
+        instance.erase(true);
+        
+        //every thread predicts its own copy of the validation data by using the same frozen model
+        final List<Integer> ids = new ArrayList<>();
+        for(Record r : validationData) {
+            ids.add(r.getId());
+        }
+        int threads = 4;
+        List<Callable<Dataset>> tasks = new ArrayList<>();
+        for(int i=0;i<threads;++i) {
+            final Dataset newData = validationData.generateNewSubset(ids);
+            for(Record r : newData) {
+                r.setYPredicted(null);
+                r.setYPredictedProbabilities(null);
+            }
+            tasks.add(new Callable<Dataset>() {
+                @Override
+                public Dataset call() {
+                    frozenModel.predict(newData);
+                    return newData;
+                }
+            });
+        }
+        ExecutorService executorService = Executors.newFixedThreadPool(threads);
+        List<Dataset> predictedDatasets = ParallelFunctions.invokeAll(executorService, tasks);
+        executorService.shutdown();
+        
+        df.denormalize(trainingData);
+        df.denormalize(validationData);
+        df.erase(true);
+        
+        for(Dataset predictedData : predictedDatasets) {
+            for(Record r : predictedData) {
+                Record expResult = validationData.get(r.getId());
+                assertEquals(expResult.getYPredicted(), r.getYPredicted());
+                assertEquals(expResult.getYPredictedProbabilities(), r.getYPredictedProbabilities());
+            }
+        }
+    }
+
+
+    private static Dataset generateKFoldDataset() {
         Dataset trainingData = new Dataset();
         trainingData.add(Record.newDataVector(new Double[] {1.0, 0.0, 1.0, 0.0, 1.0, 0.0}, 1));
         trainingData.add(Record.newDataVector(new Double[] {1.0, 0.0, 1.0, 0.0, 1.0, 0.0}, 0));
@@ -201,6 +316,19 @@ public class BootstrapAggregatingTest {
         trainingData.add(Record.newDataVector(new Double[] {0.0, 1.0, 0.0, 1.0, 1.0, 0.0}, 0));
         trainingData.add(Record.newDataVector(new Double[] {1.0, 0.0, 0.0, 1.0, 0.0, 1.0}, 0));
         trainingData.add(Record.newDataVector(new Double[] {1.0, 0.0, 1.0, 0.0, 0.0, 1.0}, 1));
+        return trainingData;
+    }
+    
+    /**
+     * Test of kFoldCrossValidation method, of class MultinomialNaiveBayes.
+     */
+    @Test
+    public void testKFoldCrossValidation() {
+        System.out.println("kFoldCrossValidation");
+        RandomValue.randomGenerator = new Random(42);
+        int k = 5;
+        
+        Dataset trainingData = generateKFoldDataset();
         
         
         MemoryConfiguration memoryConfiguration = new MemoryConfiguration();
@@ -229,4 +357,101 @@ public class BootstrapAggregatingTest {
         instance.erase(true);
     }
     
+    /**
+     * Test of kFoldCrossValidation method, of class BootstrapAggregating, with
+     * the folds trained in parallel by different numbers of threads.
+     */
+    @Test
+    public void testKFoldCrossValidationParallel() {
+        System.out.println("kFoldCrossValidationParallel");
+        int k = 5;
+        
+        Dataset trainingData = generateKFoldDataset();
+        
+        MemoryConfiguration memoryConfiguration = new MemoryConfiguration();
+        
+        String dbName = "JUnitClassifier";
+        BootstrapAggregating instance = new BootstrapAggregating(dbName);
+        
+        BootstrapAggregating.TrainingParameters param = instance.getEmptyTrainingParametersObject();
+        param.setMaxWeakClassifiers(5);
+        param.setWeakClassifierClass(MultinomialNaiveBayes.class);
+        
+        MultinomialNaiveBayes.TrainingParameters trainingParameters = new MultinomialNaiveBayes.TrainingParameters();
+        trainingParameters.setMultiProbabilityWeighted(true);
+        
+        param.setWeakClassifierTrainingParameters(trainingParameters);
+        
+        instance.initializeTrainingConfiguration(memoryConfiguration, param);
+        
+        RandomValue.randomGenerator = new Random(42);
+        ExecutorService executorService = Executors.newFixedThreadPool(2);
+        BootstrapAggregating.ValidationMetrics expResult = instance.kFoldCrossValidation(trainingData, k, executorService);
+        executorService.shutdown();
+        
+        RandomValue.randomGenerator = new Random(42);
+        executorService = Executors.newFixedThreadPool(3);
+        BootstrapAggregating.ValidationMetrics result = instance.kFoldCrossValidation(trainingData, k, executorService);
+        executorService.shutdown();
+        
+        assertEquals(expResult.getMacroF1(), result.getMacroF1(), TestConfiguration.DOUBLE_ACCURACY_HIGH);
+        assertEquals(expResult.getAccuracy(), result.getAccuracy(), TestConfiguration.DOUBLE_ACCURACY_HIGH);
+        instance.erase(true);
+    }
+    
+    /**
+     * Test that the weak classifiers give the same predictions when they are 
+     * trained and scored in parallel by different numbers of threads.
+     */
+    @Test
+    public void testTrainParallel() {
+        System.out.println("trainParallel");
+        
+        MemoryConfiguration memoryConfiguration = new MemoryConfiguration();
+        
+        String dbName = "JUnitClassifier";
+        
+        BootstrapAggregating.TrainingParameters param = new BootstrapAggregating.TrainingParameters();
+        param.setMaxWeakClassifiers(5);
+        param.setWeakClassifierClass(MultinomialNaiveBayes.class);
+        
+        MultinomialNaiveBayes.TrainingParameters trainingParameters = new MultinomialNaiveBayes.TrainingParameters();
+        trainingParameters.setMultiProbabilityWeighted(true);
+        
+        param.setWeakClassifierTrainingParameters(trainingParameters);
+        
+        //the 5 weak classifiers are trained and scored in rounds of 2 and of 4 threads
+        Dataset expResult = generateKFoldDataset();
+        BootstrapAggregating expInstance = new BootstrapAggregating(dbName+"TwoThreads");
+        Dataset result = generateKFoldDataset();
+        BootstrapAggregating instance = new BootstrapAggregating(dbName+"FourThreads");
+        
+        trainAndPredict(expInstance, memoryConfiguration, param, expResult, 2);
+        trainAndPredict(instance, memoryConfiguration, param, result, 4);
+        
+        for(Record r : result) {
+            Record expRecord = expResult.get(r.getId());
+            assertEquals(expRecord.getYPredicted(), r.getYPredicted());
+            for(Object theClass : expRecord.getYPredictedProbabilities().keySet()) {
+                assertEquals(expRecord.getYPredictedProbabilities().getDouble(theClass), r.getYPredictedProbabilities().getDouble(theClass), TestConfiguration.DOUBLE_ACCURACY_HIGH);
+            }
+        }
+        
+        expInstance.erase(true);
+        instance.erase(true);
+    }
+    
+    private void trainAndPredict(final BootstrapAggregating instance, final MemoryConfiguration memoryConfiguration, final BootstrapAggregating.TrainingParameters param, final Dataset result, int threads) {
+        TestUtils.withThreads(threads, new Callable<Void>() {
+            @Override
+            public Void call() {
+                RandomValue.randomGenerator = new Random(42);
+                instance.initializeTrainingConfiguration(memoryConfiguration, param);
+                instance.train(generateKFoldDataset(), new Dataset());
+                instance.predict(result);
+                return null;
+            }
+        });
+    }
+    
 }
@@ -19,10 +19,17 @@ package com.datumbox.framework.machinelearning.recommendersystem;
 import com.datumbox.common.dataobjects.AssociativeArray;
 import com.datumbox.common.dataobjects.Dataset;
 import com.datumbox.common.dataobjects.Record;
+import com.datumbox.common.utilities.RandomValue;
 import com.datumbox.configuration.MemoryConfiguration;
 import com.datumbox.configuration.TestConfiguration;
+import com.datumbox.framework.mathematics.distances.Distance;
+import com.datumbox.tests.utilities.TestUtils;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.Callable;
 import org.junit.Test;
 import static org.junit.Assert.*;
 
@@ -35,13 +42,7 @@ public class CollaborativeFilteringTest {
     public CollaborativeFilteringTest() {
     }
 
-    /**
-     * Test of predict method, of class MaximumEntropy.
-     */
-    @Test
-    public void testPredict() {
-        System.out.println("predict");
-        
+    private Dataset generateTrainingData() {
         Dataset trainingData = new Dataset();
         Record r1 = new Record();
         r1.getX().put("ml1", 5.0);
@@ -143,6 +144,18 @@ public class CollaborativeFilteringTest {
         r11.setY("pitta");
         trainingData.add(r11);
         
+        return trainingData;
+    }
+    
+    /**
+     * Test of predict method, of class CollaborativeFiltering.
+     */
+    @Test
+    public void testPredict() {
+        System.out.println("predict");
+        
+        Dataset trainingData = generateTrainingData();
+        
         Dataset newData = new Dataset();
         Record profileData = new Record();
         profileData.getX().put("pizza", 4.5);
@@ -187,5 +200,192 @@ public class CollaborativeFilteringTest {
         instance.erase(true);
     }
 
+    /**
+     * Test of the maxNeighbours training parameter, of class CollaborativeFiltering.
+     */
+    @Test
+    public void testMaxNeighbours() {
+        System.out.println("maxNeighbours");
+        
+        Dataset trainingData = generateTrainingData();
+        
+        MemoryConfiguration memoryConfiguration = new MemoryConfiguration();
+        
+        String dbName = "JUnitRecommender";
+        CollaborativeFiltering instance = new CollaborativeFiltering(dbName);
+        
+        CollaborativeFiltering.TrainingParameters param = instance.getEmptyTrainingParametersObject();
+        param.setSimilarityMethod(CollaborativeFiltering.TrainingParameters.SimilarityMeasure.PEARSONS_CORRELATION);
+        instance.initializeTrainingConfiguration(memoryConfiguration, param);
+        instance.train(trainingData);
+        
+        Map<Object, int[]> expIds = new HashMap<>(instance.getModelParameters().getNeighbourIds());
+        Map<Object, double[]> expSimilarities = new HashMap<>(instance.getModelParameters().getNeighbourSimilarities());
+        instance.erase(true);
+        
+        int maxNeighbours = 2;
+        instance = new CollaborativeFiltering(dbName);
+        param = instance.getEmptyTrainingParametersObject();
+        param.setSimilarityMethod(CollaborativeFiltering.TrainingParameters.SimilarityMeasure.PEARSONS_CORRELATION);
+        param.setMaxNeighbours(maxNeighbours);
+        instance.initializeTrainingConfiguration(memoryConfiguration, param);
+        instance.train(trainingData);
+        
+        instance = null;
+        instance = new CollaborativeFiltering(dbName);
+        instance.setMemoryConfiguration(memoryConfiguration);
+        instance.predict(new Dataset());
+        
+        Map<Object, int[]> resultIds = instance.getModelParameters().getNeighbourIds();
+        Map<Object, double[]> resultSimilarities = instance.getModelParameters().getNeighbourSimilarities();
+        assertEquals(expIds.keySet(), resultIds.keySet());
+        for(Map.Entry<Object, int[]> entry : expIds.entrySet()) {
+            Object item = entry.getKey();
+            double[] similarities = expSimilarities.get(item);
+            for(int i=1;i<similarities.length;++i) {
+                assertTrue(similarities[i-1]>=similarities[i]);
+            }
+            
+            int k = Math.min(maxNeighbours, similarities.length);
+            assertArrayEquals(Arrays.copyOf(entry.getValue(), k), resultIds.get(item));
+            assertArrayEquals(Arrays.copyOf(similarities, k), resultSimilarities.get(item), TestConfiguration.DOUBLE_ACCURACY_HIGH);
+        }
+        
+        instance.erase(true);
+    }
+
+    /**
+     * Test of the similarities of sparse ratings, of class CollaborativeFiltering.
+     */
+    @Test
+    public void testSparseSimilarities() {
+        System.out.println("sparseSimilarities");
+        RandomValue.randomGenerator = new Random(42);
+        
+        //every item is rated by a few random users
+        Dataset trainingData = new Dataset();
+        for(int itemId=0;itemId<60;++itemId) {
+            Record r = new Record();
+            for(int userId=0;userId<40;++userId) {
+                if(RandomValue.randomGenerator.nextDouble()<0.15) {
+                    r.getX().put("user"+userId, (double)(1+RandomValue.randomGenerator.nextInt(5)));
+                }
+            }
+            r.setY("item"+itemId);
+            trainingData.add(r);
+        }
+        
+        MemoryConfiguration memoryConfiguration = new MemoryConfiguration();
+        
+        String dbName = "JUnitRecommender";
+        
+        double similarityThreshold = 0.08;
+        for(CollaborativeFiltering.TrainingParameters.SimilarityMeasure similarityMethod : new CollaborativeFiltering.TrainingParameters.SimilarityMeasure[]{CollaborativeFiltering.TrainingParameters.SimilarityMeasure.EUCLIDIAN, CollaborativeFiltering.TrainingParameters.SimilarityMeasure.MANHATTAN}) {
+            CollaborativeFiltering instance = new CollaborativeFiltering(dbName);
+            
+            CollaborativeFiltering.TrainingParameters param = instance.getEmptyTrainingParametersObject();
+            param.setSimilarityMethod(similarityMethod);
+            param.setSimilarityThreshold(similarityThreshold);
+            instance.initializeTrainingConfiguration(memoryConfiguration, param);
+            instance.train(trainingData);
+            
+            Map<Integer, Object> items = instance.getModelParameters().getItems();
+            Map<Object, int[]> neighbourIds = instance.getModelParameters().getNeighbourIds();
+            Map<Object, double[]> neighbourSimilarities = instance.getModelParameters().getNeighbourSimilarities();
+            
+            for(Record r1 : trainingData) {
+                int[] ids = neighbourIds.get(r1.getY());
+                double[] similarities = neighbourSimilarities.get(r1.getY());
+                
+                Map<Object, Double> expResult = new HashMap<>();
+                for(Record r2 : trainingData) {
+                    if(r1.getId()==r2.getId() || Collections.disjoint(r1.getX().keySet(), r2.getX().keySet())) {
+                        continue; //only the items with common users are compared
+                    }
+                    double distance = (similarityMethod==CollaborativeFiltering.TrainingParameters.SimilarityMeasure.EUCLIDIAN)?Distance.euclidean(r1.getX(), r2.getX()):Distance.manhattan(r1.getX(), r2.getX());
+                    double similarity = 1.0/(1.0+distance);
+                    if(similarity>similarityThreshold) {
+                        expResult.put(r2.getY(), similarity);
+                    }
+                }
+                
+                Map<Object, Double> result = new HashMap<>();
+                if(ids!=null) {
+                    for(int i=0;i<ids.length;++i) {
+                        result.put(items.get(ids[i]), similarities[i]);
+                    }
+                }
+                
+                assertEquals(expResult.keySet(), result.keySet());
+                for(Map.Entry<Object, Double> entry : expResult.entrySet()) {
+                    assertEquals(entry.getValue(), result.get(entry.getKey()), TestConfiguration.DOUBLE_ACCURACY_HIGH);
+                }
+            }
+            
+            instance.erase(true);
+        }
+    }
+
+    /**
+     * Test that the neighbours of the items are the same when the blocks of 
+     * the similarity matrix are calculated in parallel.
+     */
+    @Test
+    public void testTrainParallel() {
+        System.out.println("trainParallel");
+        RandomValue.randomGenerator = new Random(42);
+        
+        final Dataset trainingData = new Dataset();
+        for(int itemId=0;itemId<60;++itemId) {
+            Record r = new Record();
+            for(int userId=0;userId<40;++userId) {
+                if(RandomValue.randomGenerator.nextDouble()<0.3) {
+                    r.getX().put("user"+userId, (double)(1+RandomValue.randomGenerator.nextInt(5)));
+                }
+            }
+            r.setY("item"+itemId);
+            trainingData.add(r);
+        }
+        
+        final MemoryConfiguration memoryConfiguration = new MemoryConfiguration();
+        
+        final String dbName = "JUnitRecommender";
+        
+        for(final CollaborativeFiltering.TrainingParameters.SimilarityMeasure similarityMethod : CollaborativeFiltering.TrainingParameters.SimilarityMeasure.values()) {
+            Map<Object, int[]> expIds = null;
+            Map<Object, double[]> expSimilarities = null;
+            for(int threads : new int[]{1, 4}) {
+                CollaborativeFiltering instance = TestUtils.withThreads(threads, new Callable<CollaborativeFiltering>() {
+                    @Override
+                    public CollaborativeFiltering call() {
+                        CollaborativeFiltering instance = new CollaborativeFiltering(dbName);
+                        
+                        CollaborativeFiltering.TrainingParameters param = instance.getEmptyTrainingParametersObject();
+                        param.setSimilarityMethod(similarityMethod);
+                        instance.initializeTrainingConfiguration(memoryConfiguration, param);
+                        instance.train(trainingData);
+                        return instance;
+                    }
+                });
+                
+                Map<Object, int[]> resultIds = new HashMap<>(instance.getModelParameters().getNeighbourIds());
+                Map<Object, double[]> resultSimilarities = new HashMap<>(instance.getModelParameters().getNeighbourSimilarities());
+                instance.erase(true);
+                
+                if(expIds==null) {
+                    expIds = resultIds;
+                    expSimilarities = resultSimilarities;
+                    continue;
+                }
+                
+                assertEquals(expIds.keySet(), resultIds.keySet());
+                for(Map.Entry<Object, int[]> entry : expIds.entrySet()) {
+                    assertArrayEquals(entry.getValue(), resultIds.get(entry.getKey()));
+                    assertArrayEquals(expSimilarities.get(entry.getKey()), resultSimilarities.get(entry.getKey()), TestConfiguration.DOUBLE_ACCURACY_HIGH);
+                }
+            }
+        }
+    }
+
     
 }
@@ -16,6 +16,8 @@
  */
 package com.datumbox.framework.machinelearning.topicmodeling;
 
+import com.datumbox.common.dataobjects.AssociativeArray;
+import com.datumbox.common.dataobjects.AssociativeArray2D;
 import com.datumbox.common.dataobjects.Dataset;
 import com.datumbox.common.dataobjects.Record;
 import com.datumbox.common.persistentstorage.factories.InMemoryStructureFactory;
@@ -26,11 +28,13 @@ import com.datumbox.framework.machinelearning.classification.SoftMaxRegression;
 import com.datumbox.framework.machinelearning.common.bases.mlmodels.BaseMLclassifier;
 import com.datumbox.framework.utilities.dataset.DatasetBuilder;
 import com.datumbox.framework.utilities.text.extractors.UniqueWordSequenceExtractor;
+import com.datumbox.tests.utilities.TestUtils;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Random;
+import java.util.concurrent.Callable;
 import org.junit.Test;
 import static org.junit.Assert.*;
 
@@ -111,5 +115,96 @@ public class LatentDirichletAllocationTest {
         */
     }
 
+    /**
+     * Test of the Gibbs sampler on a corpus with two disjoint vocabularies, of class LatentDirichletAllocation.
+     */
+    @Test
+    public void testTrain() {
+        System.out.println("train");
+        
+        assertVocabularyTopics(1);
+    }
+    
+    /**
+     * Test of the Gibbs sampler with many shards of documents (AD-LDA), of class LatentDirichletAllocation.
+     * The sampling is approximate, so instead of the counts of the single 
+     * thread it must recover the same vocabularies.
+     */
+    @Test
+    public void testTrainParallel() {
+        System.out.println("trainParallel");
+        
+        assertVocabularyTopics(4);
+    }
+    
+    /**
+     * Trains the LatentDirichletAllocation with the provided number of threads 
+     * on a corpus with two disjoint vocabularies and checks that every topic 
+     * and every document corresponds to one of them.
+     * 
+     * @param numberOfThreads 
+     */
+    private static void assertVocabularyTopics(int numberOfThreads) {
+        TestUtils.withThreads(numberOfThreads, new Callable<Void>() {
+            @Override
+            public Void call() {
+                RandomValue.randomGenerator = new Random(42);
+                
+                Random rnd = new Random(42);
+                Dataset trainingData = new Dataset();
+                for(int i=0;i<80;++i) {
+                    String vocabulary = (i%2==0)?"a":"b";
+                    AssociativeArray x = new AssociativeArray();
+                    for(int position=0;position<20;++position) {
+                        x.put(position, vocabulary+rnd.nextInt(10));
+                    }
+                    Record r = new Record();
+                    r.setX(x);
+                    trainingData.add(r);
+                }
+                
+                MemoryConfiguration memoryConfiguration = new MemoryConfiguration();
+                
+                String dbName = "JUnitTopicSelection";
+                
+                LatentDirichletAllocation lda = new LatentDirichletAllocation(dbName);
+                
+                LatentDirichletAllocation.TrainingParameters trainingParameters = lda.getEmptyTrainingParametersObject();
+                trainingParameters.setMaxIterations(50);
+                trainingParameters.setAlpha(0.1);
+                trainingParameters.setBeta(0.1);
+                trainingParameters.setK(2);
+                
+                lda.initializeTrainingConfiguration(memoryConfiguration, trainingParameters);
+                lda.train(trainingData, new Dataset());
+                
+                //every topic must contain the words of only one of the vocabularies
+                AssociativeArray2D wordProbabilitiesPerTopic = lda.getWordProbabilitiesPerTopic();
+                assertEquals(2, wordProbabilitiesPerTopic.size());
+                Map<Object, String> topicVocabularies = new HashMap<>();
+                for(Map.Entry<Object, AssociativeArray> entry : wordProbabilitiesPerTopic.entrySet()) {
+                    String vocabulary = null;
+                    for(Object word : entry.getValue().keySet()) {
+                        if(vocabulary==null) {
+                            vocabulary = ((String)word).substring(0, 1);
+                        }
+                        assertEquals(vocabulary, ((String)word).substring(0, 1));
+                    }
+                    topicVocabularies.put(entry.getKey(), vocabulary);
+                }
+                assertNotEquals(topicVocabularies.get(0), topicVocabularies.get(1));
+                
+                lda.predict(trainingData);
+                
+                for(Record r : trainingData) {
+                    String vocabulary = ((String)r.getX().get(0)).substring(0, 1);
+                    assertEquals(vocabulary, topicVocabularies.get(r.getYPredicted()));
+                }
+                
+                lda.erase(true);
+                return null;
+            }
+        });
+    }
     
 }
@@ -0,0 +1,60 @@
+/*
+ * Copyright (C) 2014 Vasilis Vryniotis <bbriniotis at datumbox.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.datumbox.framework.mathematics.optimization;
+
+import com.datumbox.configuration.TestConfiguration;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Vasilis Vryniotis <bbriniotis at datumbox.com>
+ */
+public class LBFGSTest {
+    
+    public LBFGSTest() {
+    }
+
+    /**
+     * Test of minimize method, of class LBFGS.
+     */
+    @Test
+    public void testMinimize() {
+        System.out.println("minimize");
+        
+        //Rosenbrock function with minimum 0 at (1, 1)
+        LBFGS.DifferentiableFunction function = new LBFGS.DifferentiableFunction() {
+            @Override
+            public double evaluate(double[] x, double[] gradient) {
+                double a = 1.0-x[0];
+                double b = x[1]-x[0]*x[0];
+                gradient[0] = -2.0*a-400.0*x[0]*b;
+                gradient[1] = 200.0*b;
+                return a*a+100.0*b*b;
+            }
+        };
+        
+        LBFGS instance = new LBFGS(5, 1000, 1e-12);
+        double[] x = new double[] {-1.2, 1.0};
+        double result = instance.minimize(function, x);
+        
+        assertEquals(0.0, result, TestConfiguration.DOUBLE_ACCURACY_HIGH);
+        assertEquals(1.0, x[0], TestConfiguration.DOUBLE_ACCURACY_MEDIUM);
+        assertEquals(1.0, x[1], TestConfiguration.DOUBLE_ACCURACY_MEDIUM);
+    }
+    
+}
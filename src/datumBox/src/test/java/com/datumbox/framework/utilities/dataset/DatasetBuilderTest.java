@@ -0,0 +1,186 @@
+/*
+ * Copyright (C) 2014 Vasilis Vryniotis <bbriniotis at datumbox.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.datumbox.framework.utilities.dataset;
+
+import com.datumbox.common.dataobjects.AssociativeArray;
+import com.datumbox.common.dataobjects.Dataset;
+import com.datumbox.common.dataobjects.Record;
+import com.datumbox.framework.utilities.text.cleaners.StringCleaner;
+import com.datumbox.framework.utilities.text.extractors.NgramsExtractor;
+import com.datumbox.tests.utilities.TestUtils;
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Vasilis Vryniotis <bbriniotis at datumbox.com>
+ */
+public class DatasetBuilderTest {
+    
+    public DatasetBuilderTest() {
+    }
+    
+    private Map<Object, List<String>> generateTextLists() {
+        Map<Object, List<String>> dataset = new LinkedHashMap<>();
+        for(String theClass : new String[]{"positive", "negative"}) {
+            List<String> texts = new ArrayList<>();
+            for(int i=0;i<600;++i) {
+                texts.add("Document "+i+" of the "+theClass+" class: lorem ipsum dolor sit amet :) word"+(i%7));
+            }
+            dataset.put(theClass, texts);
+        }
+        return dataset;
+    }
+    
+    private Map<Object, URI> writeTextFiles(Map<Object, List<String>> dataset) throws IOException {
+        Map<Object, URI> files = new LinkedHashMap<>();
+        for(Map.Entry<Object, List<String>> entry : dataset.entrySet()) {
+            File file = File.createTempFile("datasetbuilder", ".txt");
+            file.deleteOnExit();
+            Files.write(file.toPath(), entry.getValue(), StandardCharsets.UTF_8);
+            files.put(entry.getKey(), file.toURI());
+        }
+        return files;
+    }
+    
+    private void assertRecords(Map<Object, List<String>> dataset, NgramsExtractor textExtractor, Dataset result) {
+        int size = 0;
+        for(List<String> texts : dataset.values()) {
+            size += texts.size();
+        }
+        assertEquals(size, result.size());
+        
+        //the records are stored in the order of the classes and the documents
+        Iterator<Record> it = result.iterator();
+        for(Map.Entry<Object, List<String>> entry : dataset.entrySet()) {
+            for(String text : entry.getValue()) {
+                Record r = it.next();
+                assertEquals(entry.getKey(), r.getY());
+                assertEquals(new AssociativeArray(new HashMap<>(textExtractor.extract(StringCleaner.clear(text)))), r.getX());
+            }
+        }
+    }
+
+    /**
+     * Test of parseFromTextLists method, of class DatasetBuilder.
+     */
+    @Test
+    public void testParseFromTextLists() {
+        System.out.println("parseFromTextLists");
+        Map<Object, List<String>> dataset = generateTextLists();
+        NgramsExtractor textExtractor = new NgramsExtractor();
+        textExtractor.setParameters(new NgramsExtractor.Parameters());
+        
+        Dataset result = DatasetBuilder.parseFromTextLists(dataset, textExtractor);
+        assertRecords(dataset, textExtractor, result);
+    }
+
+    /**
+     * Test of parseFromTextFiles method, of class DatasetBuilder.
+     */
+    @Test
+    public void testParseFromTextFiles() throws IOException {
+        System.out.println("parseFromTextFiles");
+        Map<Object, List<String>> dataset = generateTextLists();
+        NgramsExtractor textExtractor = new NgramsExtractor();
+        textExtractor.setParameters(new NgramsExtractor.Parameters());
+        
+        Map<Object, URI> files = writeTextFiles(dataset);
+        
+        Dataset result = DatasetBuilder.parseFromTextFiles(files, textExtractor);
+        assertRecords(dataset, textExtractor, result);
+    }
+    
+    /**
+     * Test of parseFromTextLists and parseFromTextFiles methods, of class 
+     * DatasetBuilder, with the documents processed by many threads.
+     */
+    @Test
+    public void testParseParallel() throws IOException {
+        System.out.println("parseParallel");
+        final Map<Object, List<String>> dataset = generateTextLists();
+        final NgramsExtractor textExtractor = new NgramsExtractor();
+        textExtractor.setParameters(new NgramsExtractor.Parameters());
+        
+        final Map<Object, URI> files = writeTextFiles(dataset);
+        
+        //the batches of the documents are processed by 4 threads and the records must be stored in the same order
+        TestUtils.withThreads(4, new Callable<Void>() {
+            @Override
+            public Void call() {
+                assertRecords(dataset, textExtractor, DatasetBuilder.parseFromTextLists(dataset, textExtractor));
+                assertRecords(dataset, textExtractor, DatasetBuilder.parseFromTextFiles(files, textExtractor));
+                return null;
+            }
+        });
+    }
+    
+    /**
+     * Test of streamFromTextFiles method, of class DatasetBuilder.
+     */
+    @Test
+    public void testStreamFromTextFiles() throws IOException {
+        System.out.println("streamFromTextFiles");
+        Map<Object, List<String>> dataset = generateTextLists();
+        dataset.get("negative").subList(100, 600).clear(); //the files have different sizes
+        NgramsExtractor textExtractor = new NgramsExtractor();
+        textExtractor.setParameters(new NgramsExtractor.Parameters());
+        
+        Map<Object, URI> files = writeTextFiles(dataset);
+        
+        Iterable<Record> result = DatasetBuilder.streamFromTextFiles(files, textExtractor);
+        
+        //the stream can be iterated many times and the rows of the classes are interleaved
+        for(int iteration=0;iteration<2;++iteration) {
+            Map<Object, Integer> positions = new HashMap<>();
+            Object previousClass = null;
+            int alternations = 0;
+            for(Record r : result) {
+                Object theClass = r.getY();
+                Integer position = positions.get(theClass);
+                position = (position==null)?0:position;
+                positions.put(theClass, position+1);
+                
+                String text = dataset.get(theClass).get(position);
+                assertEquals(new AssociativeArray(new HashMap<>(textExtractor.extract(StringCleaner.clear(text)))), r.getX());
+                
+                if(previousClass!=null && !previousClass.equals(theClass)) {
+                    ++alternations;
+                }
+                previousClass = theClass;
+            }
+            
+            for(Map.Entry<Object, List<String>> entry : dataset.entrySet()) {
+                assertEquals((Integer)entry.getValue().size(), positions.get(entry.getKey()));
+            }
+            assertEquals(2*100, alternations);
+        }
+    }
+    
+}
@@ -100,4 +100,25 @@ public class StringCleanerTest {
         assertEquals(expResult, result);
     }
     
+    /**
+     * Test of clear method, of class StringCleaner.
+     */
+    @Test
+    public void testClear() {
+        System.out.println("clear");
+        String text = "  Test, test δοκιμή http://wWw.Google.com/page?query=1#hash :) Ünïcode   téxt 8-) ΤΕΛΟΣ. ";
+        String expResult = "test test δοκιμη preprocessdoc_url preprocessdoc_em unicode text preprocessdoc_em τελος";
+        String result = StringCleaner.clear(text);
+        assertEquals(expResult, result);
+        
+        //the single pass implementation must be identical to the chain of the individual methods
+        String chainResult = StringCleaner.tokenizeURLs(text);
+        chainResult = StringCleaner.tokenizeSmileys(chainResult);
+        chainResult = StringCleaner.removeAccents(chainResult);
+        chainResult = StringCleaner.removeSymbols(chainResult);
+        chainResult = StringCleaner.removeExtraSpaces(chainResult);
+        chainResult = chainResult.toLowerCase();
+        assertEquals(chainResult, result);
+    }
+    
 }
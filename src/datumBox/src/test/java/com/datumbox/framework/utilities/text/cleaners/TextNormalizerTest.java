@@ -0,0 +1,61 @@
+/*
+ * Copyright (C) 2014 Vasilis Vryniotis <bbriniotis at datumbox.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.datumbox.framework.utilities.text.cleaners;
+
+import com.datumbox.framework.utilities.text.tokenizers.WhitespaceTokenizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Vasilis Vryniotis <bbriniotis at datumbox.com>
+ */
+public class TextNormalizerTest {
+    
+    public TextNormalizerTest() {
+    }
+
+    /**
+     * Test of normalize method, of class TextNormalizer.
+     */
+    @Test
+    public void testNormalize() {
+        System.out.println("normalize");
+        TextNormalizer instance = new TextNormalizer();
+        
+        instance.normalize("  Test, test δοκιμή http://wWw.Google.com/page?query=1#hash :) Ünïcode   téxt ΤΕΛΟΣ. ");
+        assertEquals("test test δοκιμη preprocessdoc_url preprocessdoc_em unicode text τελος", instance.getText());
+        List<String> expResult = new ArrayList<>(Arrays.asList("test", "test", "δοκιμη", "preprocessdoc_url", "preprocessdoc_em", "unicode", "text", "τελος"));
+        assertEquals(expResult, instance.getTokens());
+        assertEquals(8, instance.getNumberOfTokens());
+        assertEquals("preprocessdoc_url", new String(instance.getBuffer(), instance.getTokenStart(3), instance.getTokenEnd(3)-instance.getTokenStart(3)));
+        
+        //the tokens must be identical to the ones of the WhitespaceTokenizer, including the corner cases of String.split()
+        WhitespaceTokenizer tokenizer = new WhitespaceTokenizer();
+        String[] texts = {"", "!!", " ", "\u00A0", "\u00A0lorem ipsum\u00A0", "8-):p:-pFTP://x.org,. ΣΑΣ", "http://", "\uD800\u0301\uDC00"};
+        for(String text : texts) {
+            instance.normalize(text);
+            String cleanText = StringCleaner.removeExtraSpaces(StringCleaner.removeSymbols(StringCleaner.removeAccents(StringCleaner.tokenizeSmileys(StringCleaner.tokenizeURLs(text))))).toLowerCase();
+            assertEquals(cleanText, instance.getText());
+            assertEquals(tokenizer.tokenize(cleanText), instance.getTokens());
+        }
+    }
+    
+}
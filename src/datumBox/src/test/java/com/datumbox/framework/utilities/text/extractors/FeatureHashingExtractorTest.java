@@ -0,0 +1,109 @@
+/*
+ * Copyright (C) 2014 Vasilis Vryniotis <bbriniotis at datumbox.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.datumbox.framework.utilities.text.extractors;
+
+import com.datumbox.configuration.TestConfiguration;
+import com.datumbox.framework.utilities.text.cleaners.StringCleaner;
+import java.util.HashMap;
+import java.util.Map;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Vasilis Vryniotis <bbriniotis at datumbox.com>
+ */
+public class FeatureHashingExtractorTest {
+    
+    public FeatureHashingExtractorTest() {
+    }
+    
+    private Map<Object, Double> hashKeywords(Map<String, Double> keywords, int numberOfBits, boolean signed) {
+        Map<Object, Double> expResult = new HashMap<>();
+        for(Map.Entry<String, Double> entry : keywords.entrySet()) {
+            int hash = FeatureHashingExtractor.hash(entry.getKey());
+            Integer featureId = FeatureHashingExtractor.featureId(hash, numberOfBits);
+            double value = signed?FeatureHashingExtractor.sign(hash)*entry.getValue():entry.getValue();
+            Double previousValue = expResult.get(featureId);
+            expResult.put(featureId, (previousValue==null)?value:previousValue+value);
+        }
+        return expResult;
+    }
+    
+    private void assertFeatures(Map<Object, Double> expResult, Map<Object, Object> result) {
+        assertEquals(expResult.keySet(), result.keySet());
+        for(Map.Entry<Object, Double> entry : expResult.entrySet()) {
+            assertEquals(entry.getValue(), (Double)result.get(entry.getKey()), TestConfiguration.DOUBLE_ACCURACY_HIGH);
+        }
+    }
+
+    /**
+     * Test of extract method, of class FeatureHashingExtractor, with the 
+     * NgramsExtractor.
+     */
+    @Test
+    public void testExtract() {
+        System.out.println("extract");
+        String text = "Lorem Ipsum is a placeholder text! Lörem ipsum is used in publishing :) http://www.datumbox.com/ and graphic design 2014.";
+        
+        NgramsExtractor ngramsExtractor = new NgramsExtractor();
+        ngramsExtractor.setParameters(new NgramsExtractor.Parameters());
+        Map<String, Double> keywords = ngramsExtractor.extract(StringCleaner.clear(text));
+        
+        FeatureHashingExtractor instance = new FeatureHashingExtractor();
+        FeatureHashingExtractor.Parameters parameters = new FeatureHashingExtractor.Parameters();
+        instance.setParameters(parameters);
+        for(int numberOfBits : new int[]{4, 18}) {
+            parameters.setNumberOfBits(numberOfBits);
+            for(boolean signed : new boolean[]{true, false}) {
+                parameters.setSigned(signed);
+                
+                Map<Object, Double> expResult = hashKeywords(keywords, numberOfBits, signed);
+                assertFeatures(expResult, instance.extract(StringCleaner.clear(text)));
+                assertFeatures(expResult, instance.clearAndExtract(text));
+                
+                for(Object featureId : expResult.keySet()) {
+                    assertTrue((Integer)featureId>=0 && (Integer)featureId<(1<<numberOfBits));
+                }
+            }
+        }
+    }
+
+    /**
+     * Test of extract method, of class FeatureHashingExtractor, with the 
+     * WordSequenceExtractor.
+     */
+    @Test
+    public void testExtractWordSequence() {
+        System.out.println("extractWordSequence");
+        String text = "lorem ipsum dolor lorem";
+        
+        FeatureHashingExtractor instance = new FeatureHashingExtractor();
+        FeatureHashingExtractor.Parameters parameters = new FeatureHashingExtractor.Parameters();
+        parameters.setTextExtractorClass(WordSequenceExtractor.class);
+        parameters.setTextExtractorParameters(new WordSequenceExtractor.Parameters());
+        parameters.setNumberOfBits(10);
+        instance.setParameters(parameters);
+        
+        Map<Object, Object> result = instance.extract(text);
+        assertEquals(4, result.size());
+        assertEquals(FeatureHashingExtractor.featureId(FeatureHashingExtractor.hash("lorem"), 10), result.get(0));
+        assertEquals(FeatureHashingExtractor.featureId(FeatureHashingExtractor.hash("ipsum"), 10), result.get(1));
+        assertEquals(result.get(0), result.get(3));
+    }
+    
+}
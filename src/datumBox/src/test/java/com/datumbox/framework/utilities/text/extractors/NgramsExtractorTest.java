@@ -18,6 +18,7 @@ package com.datumbox.framework.utilities.text.extractors;
 
 import com.datumbox.framework.utilities.text.extractors.NgramsExtractor;
 import com.datumbox.configuration.TestConfiguration;
+import com.datumbox.framework.utilities.text.cleaners.StringCleaner;
 import java.util.HashMap;
 import java.util.Map;
 import org.junit.Test;
@@ -237,6 +238,45 @@ public class NgramsExtractorTest {
         assertEquals(expResult, result);
     }
 
+    /**
+     * Test of extract method, of class NgramsExtractor, on consecutive calls 
+     * which reuse the same buffers.
+     */
+    @Test
+    public void testExtractConsecutiveCalls() {
+        System.out.println("extractConsecutiveCalls");
+        String text1 = "lorem ipsum is a placeholder text. lorem ipsum is used in publishing and graphic design 2014";
+        String text2 = "the quick brown fox jumps over the lazy dog and the quick brown fox sleeps 42 times";
+        NgramsExtractor instance = new NgramsExtractor();
+        instance.setParameters(new NgramsExtractor.Parameters());
+        
+        Map<String, Double> expResult = instance.extract(text1);
+        assertEquals(2.0, expResult.get("lorem ipsum is"), TestConfiguration.DOUBLE_ACCURACY_HIGH);
+        
+        Map<String, Double> result2 = instance.extract(text2);
+        assertEquals(2.0, result2.get("the quick brown"), TestConfiguration.DOUBLE_ACCURACY_HIGH);
+        assertNull(result2.get("lorem"));
+        
+        Map<String, Double> result = instance.extract(text1);
+        assertEquals(expResult, result);
+    }
+
+    /**
+     * Test of clearAndExtract method, of class NgramsExtractor.
+     */
+    @Test
+    public void testClearAndExtract() {
+        System.out.println("clearAndExtract");
+        String text = "Lorem Ipsum is a placeholder text! Lörem ipsum is used in publishing :) http://www.datumbox.com/ and graphic design.";
+        NgramsExtractor instance = new NgramsExtractor();
+        instance.setParameters(new NgramsExtractor.Parameters());
+        
+        Map<String, Double> expResult = instance.extract(StringCleaner.clear(text));
+        Map<String, Double> result = instance.clearAndExtract(text);
+        assertEquals(expResult, result);
+        assertEquals(2.0, result.get("lorem ipsum is"), TestConfiguration.DOUBLE_ACCURACY_HIGH);
+    }
+
     /**
      * Test of numberOfOccurrences method, of class NgramsExtractor.
      */
@@ -45,4 +45,20 @@ public class WhitespaceTokenizerTest {
         assertEquals(expResult, result);
     }
     
+    /**
+     * Test of tokenize method, of class WhitespaceTokenizer, with leading, 
+     * trailing and non ASCII separators.
+     */
+    @Test
+    public void testTokenizeSeparators() {
+        System.out.println("tokenizeSeparators");
+        WhitespaceTokenizer instance = new WhitespaceTokenizer();
+        String[] texts = {"", " ", "word", " lorem\u00A0ipsum\t\n", "lorem \u2028\u200B ipsum  ", "\u0001lorem"};
+        for(String text : texts) {
+            List<String> expResult = new ArrayList<>(Arrays.asList(text.split("[\\p{Z}\\p{C}]+")));
+            List<String> result = instance.tokenize(text);
+            assertEquals(expResult, result);
+        }
+    }
+    
 }
@@ -19,7 +19,9 @@ package com.datumbox.tests.utilities;
 import com.datumbox.common.dataobjects.AssociativeArray;
 import com.datumbox.common.dataobjects.DataTable2D;
 import com.datumbox.common.dataobjects.Dataset;
+import com.datumbox.configuration.ConcurrencyConfiguration;
 import com.datumbox.configuration.TestConfiguration;
+import java.util.concurrent.Callable;
 import static org.junit.Assert.assertEquals;
 
 /**
@@ -49,4 +51,30 @@ public class TestUtils {
             assertEquals(v1, v2, TestConfiguration.DOUBLE_ACCURACY_HIGH);
         }
     }
+    
+    /**
+     * Runs the task with the provided maximum number of threads and restores
+     * the previous value of the ConcurrencyConfiguration afterwards.
+     * 
+     * @param <T>
+     * @param maxNumberOfThreads
+     * @param task
+     * @return 
+     */
+    public static <T> T withThreads(int maxNumberOfThreads, Callable<T> task) {
+        int previousMaxNumberOfThreads = ConcurrencyConfiguration.getMaxNumberOfThreads();
+        ConcurrencyConfiguration.setMaxNumberOfThreads(maxNumberOfThreads);
+        try {
+            return task.call();
+        }
+        catch(RuntimeException ex) {
+            throw ex;
+        }
+        catch(Exception ex) {
+            throw new RuntimeException(ex);
+        }
+        finally {
+            ConcurrencyConfiguration.setMaxNumberOfThreads(previousMaxNumberOfThreads);
+        }
+    }
 }
@@ -0,0 +1,41 @@
+#!/bin/sh
+#
+# Compiles the benchmarks with the JMH annotation processor and runs them
+# through the BenchmarkRunner.
+#
+# Usage: DATUMBOX_CLASSPATH=<classpath> ./run-benchmarks.sh [regexp of the benchmarks] [result file]
+#
+# The DATUMBOX_CLASSPATH must contain the compiled datumBox classes and their
+# libraries. The JMH jars are copied with Maven in the lib directory on the
+# first run and the benchmarks are compiled in the target directory.
+#
+
+set -e
+
+JMH_VERSION=1.37
+
+DIR=$(cd "$(dirname "$0")" && pwd)
+LIB="$DIR/lib"
+CLASSES="$DIR/target/classes"
+
+if [ -z "$DATUMBOX_CLASSPATH" ]; then
+    echo "The DATUMBOX_CLASSPATH is not set." >&2
+    exit 1
+fi
+
+for ARTIFACT in org.openjdk.jmh:jmh-core:$JMH_VERSION org.openjdk.jmh:jmh-generator-annprocess:$JMH_VERSION net.sf.jopt-simple:jopt-simple:5.0.4 org.apache.commons:commons-math3:3.6.1; do
+    JAR=$(echo "$ARTIFACT" | cut -d: -f2,3 | tr : -).jar
+    if [ ! -f "$LIB/$JAR" ]; then
+        mvn -B -q dependency:copy -Dartifact="$ARTIFACT" -DoutputDirectory="$LIB"
+    fi
+done
+
+#the datumBox libraries come first, so that their versions are used
+CLASSPATH="$DATUMBOX_CLASSPATH:$LIB/*"
+
+rm -rf "$CLASSES"
+mkdir -p "$CLASSES"
+find "$DIR/src/main/java" -name "*.java" > "$DIR/target/sources.txt"
+javac -encoding UTF-8 -cp "$CLASSPATH" -d "$CLASSES" @"$DIR/target/sources.txt"
+
+java -cp "$CLASSES:$CLASSPATH" com.datumbox.benchmarks.BenchmarkRunner "$@"
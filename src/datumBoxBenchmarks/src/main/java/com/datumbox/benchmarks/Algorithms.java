@@ -0,0 +1,187 @@
+/*
+ * Copyright (C) 2014 Vasilis Vryniotis <bbriniotis at datumbox.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.datumbox.benchmarks;
+
+import com.datumbox.common.dataobjects.Dataset;
+import com.datumbox.configuration.MemoryConfiguration;
+import com.datumbox.framework.machinelearning.classification.MaximumEntropy;
+import com.datumbox.framework.machinelearning.classification.OrdinalRegression;
+import com.datumbox.framework.machinelearning.classification.SoftMaxRegression;
+import com.datumbox.framework.machinelearning.clustering.GaussianDPMM;
+import com.datumbox.framework.machinelearning.clustering.HierarchicalAgglomerative;
+import com.datumbox.framework.machinelearning.clustering.Kmeans;
+import com.datumbox.framework.machinelearning.clustering.MultinomialDPMM;
+import com.datumbox.framework.machinelearning.common.bases.basemodels.BaseDPMM;
+import com.datumbox.framework.machinelearning.common.bases.featureselection.CategoricalFeatureSelection;
+import com.datumbox.framework.machinelearning.common.bases.featureselection.FeatureSelection;
+import com.datumbox.framework.machinelearning.common.bases.mlmodels.BaseMLmodel;
+import com.datumbox.framework.machinelearning.featureselection.categorical.ChisquareSelect;
+import com.datumbox.framework.machinelearning.featureselection.continuous.PCA;
+import com.datumbox.framework.machinelearning.featureselection.scorebased.TFIDF;
+import com.datumbox.framework.machinelearning.regression.MatrixLinearRegression;
+import com.datumbox.framework.machinelearning.regression.NLMS;
+import com.datumbox.framework.machinelearning.regression.StepwiseRegression;
+
+/**
+ * Resolves the algorithms of the benchmarks by their short class names and 
+ * configures them with fixed training parameters, so that every benchmark 
+ * measures the same amount of work in every run.
+ * 
+ * @author Vasilis Vryniotis <bbriniotis at datumbox.com>
+ */
+public class Algorithms {
+    
+    private static final String[] PACKAGES = {
+        "com.datumbox.framework.machinelearning.classification.",
+        "com.datumbox.framework.machinelearning.regression.",
+        "com.datumbox.framework.machinelearning.clustering.",
+        "com.datumbox.framework.machinelearning.featureselection.categorical.",
+        "com.datumbox.framework.machinelearning.featureselection.continuous.",
+        "com.datumbox.framework.machinelearning.featureselection.scorebased."
+    };
+    
+    /**
+     * Returns the class of the framework with the provided short name.
+     * 
+     * @param <T>
+     * @param algorithm
+     * @return 
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> Class<T> forName(String algorithm) {
+        for(String pkg : PACKAGES) {
+            try {
+                return (Class<T>) Class.forName(pkg+algorithm);
+            } 
+            catch (ClassNotFoundException ex) {
+                //try the next package
+            }
+        }
+        throw new IllegalArgumentException("Unsupported algorithm.");
+    }
+    
+    /**
+     * Creates and configures a new model for the algorithm. The trainingData 
+     * are used only to size the parameters which depend on the dimensions.
+     * 
+     * @param algorithm
+     * @param dbName
+     * @param trainingData
+     * @return 
+     */
+    public static BaseMLmodel<?, ?, ?> newMLmodel(String algorithm, String dbName, Dataset trainingData) {
+        BaseMLmodel<?, ?, ?> mlmodel = BaseMLmodel.newInstance(Algorithms.<BaseMLmodel<?, ?, ?>>forName(algorithm), dbName);
+        initializeTrainingConfiguration(mlmodel, trainingData);
+        return mlmodel;
+    }
+    
+    private static <TP extends BaseMLmodel.TrainingParameters> void initializeTrainingConfiguration(BaseMLmodel<?, TP, ?> mlmodel, Dataset trainingData) {
+        TP param = mlmodel.getEmptyTrainingParametersObject();
+        if(param instanceof MaximumEntropy.TrainingParameters) {
+            ((MaximumEntropy.TrainingParameters)param).setTotalIterations(10);
+        }
+        else if(param instanceof SoftMaxRegression.TrainingParameters) {
+            ((SoftMaxRegression.TrainingParameters)param).setTotalIterations(100);
+        }
+        else if(param instanceof OrdinalRegression.TrainingParameters) {
+            ((OrdinalRegression.TrainingParameters)param).setTotalIterations(100);
+        }
+        else if(param instanceof NLMS.TrainingParameters) {
+            ((NLMS.TrainingParameters)param).setTotalIterations(100);
+        }
+        else if(param instanceof StepwiseRegression.TrainingParameters) {
+            StepwiseRegression.TrainingParameters stepwiseParam = (StepwiseRegression.TrainingParameters)param;
+            stepwiseParam.setAout(0.05);
+            stepwiseParam.setRegressionClass(MatrixLinearRegression.class);
+            stepwiseParam.setRegressionTrainingParameters(new MatrixLinearRegression.TrainingParameters());
+        }
+        else if(param instanceof Kmeans.TrainingParameters) {
+            Kmeans.TrainingParameters kmeansParam = (Kmeans.TrainingParameters)param;
+            kmeansParam.setK(4);
+            kmeansParam.setMaxIterations(200);
+            kmeansParam.setInitMethod(Kmeans.TrainingParameters.Initialization.FORGY);
+        }
+        else if(param instanceof HierarchicalAgglomerative.TrainingParameters) {
+            HierarchicalAgglomerative.TrainingParameters hcaParam = (HierarchicalAgglomerative.TrainingParameters)param;
+            hcaParam.setLinkageMethod(HierarchicalAgglomerative.TrainingParameters.Linkage.COMPLETE);
+            hcaParam.setMinClustersThreshold(4);
+        }
+        else if(param instanceof GaussianDPMM.TrainingParameters) {
+            GaussianDPMM.TrainingParameters gaussianParam = (GaussianDPMM.TrainingParameters)param;
+            int d = trainingData.getColumnSize();
+            double[][] psi0 = new double[d][d];
+            for(int j=0;j<d;++j) {
+                psi0[j][j] = 1.0;
+            }
+            gaussianParam.setAlpha(0.01);
+            gaussianParam.setMaxIterations(20);
+            gaussianParam.setInitializationMethod(BaseDPMM.TrainingParameters.Initialization.RANDOM_ASSIGNMENT);
+            gaussianParam.setKappa0(0);
+            gaussianParam.setNu0(1);
+            gaussianParam.setMu0(new double[d]);
+            gaussianParam.setPsi0(psi0);
+        }
+        else if(param instanceof MultinomialDPMM.TrainingParameters) {
+            MultinomialDPMM.TrainingParameters multinomialParam = (MultinomialDPMM.TrainingParameters)param;
+            multinomialParam.setAlpha(0.01);
+            multinomialParam.setAlphaWords(1);
+            multinomialParam.setMaxIterations(20);
+            multinomialParam.setInitializationMethod(BaseDPMM.TrainingParameters.Initialization.RANDOM_ASSIGNMENT);
+        }
+        
+        mlmodel.initializeTrainingConfiguration(new MemoryConfiguration(), param);
+    }
+    
+    /**
+     * Creates and configures a new feature selector for the algorithm.
+     * 
+     * @param algorithm
+     * @param dbName
+     * @return 
+     */
+    public static FeatureSelection<?, ?> newFeatureSelection(String algorithm, String dbName) {
+        FeatureSelection<?, ?> featureSelection = FeatureSelection.newInstance(Algorithms.<FeatureSelection<?, ?>>forName(algorithm), dbName);
+        initializeTrainingConfiguration(featureSelection);
+        return featureSelection;
+    }
+    
+    private static <TP extends FeatureSelection.TrainingParameters> void initializeTrainingConfiguration(FeatureSelection<?, TP> featureSelection) {
+        TP param = featureSelection.getEmptyTrainingParametersObject();
+        if(param instanceof CategoricalFeatureSelection.TrainingParameters) {
+            CategoricalFeatureSelection.TrainingParameters categoricalParam = (CategoricalFeatureSelection.TrainingParameters)param;
+            categoricalParam.setIgnoringNumericalFeatures(false);
+            categoricalParam.setRareFeatureThreshold(3);
+            categoricalParam.setMaxFeatures(500);
+            if(param instanceof ChisquareSelect.TrainingParameters) {
+                ((ChisquareSelect.TrainingParameters)param).setALevel(0.05);
+            }
+        }
+        else if(param instanceof TFIDF.TrainingParameters) {
+            TFIDF.TrainingParameters tfidfParam = (TFIDF.TrainingParameters)param;
+            tfidfParam.setBinarized(false);
+            tfidfParam.setMaxFeatures(500);
+        }
+        else if(param instanceof PCA.TrainingParameters) {
+            PCA.TrainingParameters pcaParam = (PCA.TrainingParameters)param;
+            pcaParam.setMaxDimensions(null);
+            pcaParam.setVarianceThreshold(0.95);
+        }
+        
+        featureSelection.initializeTrainingConfiguration(new MemoryConfiguration(), param);
+    }
+    
+}
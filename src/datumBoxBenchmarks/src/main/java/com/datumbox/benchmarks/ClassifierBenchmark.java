@@ -0,0 +1,54 @@
+/*
+ * Copyright (C) 2014 Vasilis Vryniotis <bbriniotis at datumbox.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.datumbox.benchmarks;
+
+import com.datumbox.common.dataobjects.Dataset;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Training and prediction benchmarks of the classifiers on a sparse word-count
+ * dataset of 4 classes.
+ * 
+ * @author Vasilis Vryniotis <bbriniotis at datumbox.com>
+ */
+@Fork(1)
+@State(Scope.Benchmark)
+public class ClassifierBenchmark extends MLmodelBenchmark {
+    
+    @Param({"BernoulliNaiveBayes", "BinarizedNaiveBayes", "MultinomialNaiveBayes", "MaximumEntropy", "SoftMaxRegression", "OrdinalRegression", "SupportVectorMachine"})
+    public String algorithm;
+    
+    @Param({"1000"})
+    public int n;
+    
+    @Param({"1000"})
+    public int d;
+    
+    @Override
+    protected String algorithm() {
+        return algorithm;
+    }
+    
+    @Override
+    protected Dataset generateData(long seed) {
+        return SyntheticData.sparseCounts(n, d, 4, 30, seed);
+    }
+    
+}
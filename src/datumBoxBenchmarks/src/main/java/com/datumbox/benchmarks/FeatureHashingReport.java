@@ -0,0 +1,140 @@
+/*
+ * Copyright (C) 2014 Vasilis Vryniotis <bbriniotis at datumbox.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.datumbox.benchmarks;
+
+import com.datumbox.applications.nlp.TextClassifier;
+import com.datumbox.common.dataobjects.Dataset;
+import com.datumbox.common.utilities.RandomValue;
+import com.datumbox.configuration.MemoryConfiguration;
+import com.datumbox.framework.machinelearning.classification.MultinomialNaiveBayes;
+import com.datumbox.framework.machinelearning.classification.SoftMaxRegression;
+import com.datumbox.framework.machinelearning.common.bases.mlmodels.BaseMLclassifier;
+import com.datumbox.framework.machinelearning.common.bases.mlmodels.BaseMLmodel;
+import com.datumbox.framework.utilities.dataset.DatasetBuilder;
+import com.datumbox.framework.utilities.text.extractors.FeatureHashingExtractor;
+import com.datumbox.framework.utilities.text.extractors.NgramsExtractor;
+import com.datumbox.framework.utilities.text.extractors.TextExtractor;
+import java.net.URI;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Accuracy and memory tradeoff of the feature hashing. The TextClassifier is 
+ * trained on a synthetic corpus with the String keywords of the NgramsExtractor
+ * and with the FeatureHashingExtractor for several numbers of bits, and it is 
+ * evaluated on a separate corpus of the same classes. For every configuration
+ * the report prints the number of features of the training Dataset, the heap 
+ * retained by the parsed training Dataset and the accuracy and macro F1 of the
+ * MultinomialNaiveBayes (unsigned hashing, since it needs non negative counts)
+ * and of the SoftMaxRegression (signed hashing).
+ * 
+ * Usage: java -cp ... com.datumbox.benchmarks.FeatureHashingReport [documentsPerClass] [classes] [wordsPerDocument]
+ * 
+ * @author Vasilis Vryniotis <bbriniotis at datumbox.com>
+ */
+public class FeatureHashingReport {
+    
+    private static final int[] NUMBER_OF_BITS = {10, 12, 14, 16, 18, 20};
+    
+    public static void main(String[] args) {
+        int documentsPerClass = (args.length>0)?Integer.parseInt(args[0]):1000;
+        int classes = (args.length>1)?Integer.parseInt(args[1]):4;
+        int wordsPerDocument = (args.length>2)?Integer.parseInt(args[2]):100;
+        
+        //the vocabulary depends on the seed, so the testing documents are the last quarter of a single corpus
+        Map<Object, List<String>> trainingDocuments = new LinkedHashMap<>();
+        Map<Object, List<String>> testingDocuments = new LinkedHashMap<>();
+        for(Map.Entry<Object, List<String>> entry : TextData.documents(documentsPerClass+documentsPerClass/4, classes, wordsPerDocument, 42).entrySet()) {
+            trainingDocuments.put(entry.getKey(), entry.getValue().subList(0, documentsPerClass));
+            testingDocuments.put(entry.getKey(), entry.getValue().subList(documentsPerClass, entry.getValue().size()));
+        }
+        Map<Object, URI> trainingDataset = TextData.writeToTempFiles(trainingDocuments);
+        Map<Object, URI> testingDataset = TextData.writeToTempFiles(testingDocuments);
+        
+        System.out.println(String.format(Locale.ENGLISH, "%d classes, %d training and %d testing documents of %d words", classes, classes*documentsPerClass, classes*(documentsPerClass/4), wordsPerDocument));
+        System.out.println(String.format(Locale.ENGLISH, "%-12s %-8s %10s %12s %12s %12s %12s %12s", "features", "signed", "columns", "dataset MB", "NB accuracy", "NB macroF1", "SMR accuracy", "SMR macroF1"));
+        
+        report("strings", "-", NgramsExtractor.class, new NgramsExtractor.Parameters(), null, trainingDocuments, trainingDataset, testingDataset);
+        for(int numberOfBits : NUMBER_OF_BITS) {
+            FeatureHashingExtractor.Parameters unsigned = hashingParameters(numberOfBits, false);
+            FeatureHashingExtractor.Parameters signed = hashingParameters(numberOfBits, true);
+            report("2^"+numberOfBits, "no/yes", FeatureHashingExtractor.class, unsigned, signed, trainingDocuments, trainingDataset, testingDataset);
+        }
+    }
+    
+    private static FeatureHashingExtractor.Parameters hashingParameters(int numberOfBits, boolean signed) {
+        FeatureHashingExtractor.Parameters parameters = new FeatureHashingExtractor.Parameters();
+        parameters.setNumberOfBits(numberOfBits);
+        parameters.setSigned(signed);
+        return parameters;
+    }
+    
+    private static <TP extends TextExtractor.Parameters> void report(String features, String signed, Class<? extends TextExtractor<TP, ?, ?>> textExtractorClass, TP nbParameters, TP smrParameters, Map<Object, List<String>> trainingDocuments, Map<Object, URI> trainingDataset, Map<Object, URI> testingDataset) {
+        //memory of the parsed training Dataset
+        TextExtractor<TP, ?, ?> textExtractor = TextExtractor.newInstance(textExtractorClass);
+        textExtractor.setParameters(nbParameters);
+        long before = usedMemory();
+        Dataset dataset = DatasetBuilder.parseFromTextLists(trainingDocuments, textExtractor);
+        long after = usedMemory();
+        int columns = dataset.getColumnSize();
+        dataset = null;
+        
+        BaseMLclassifier.ValidationMetrics nbMetrics = evaluate(MultinomialNaiveBayes.class, new MultinomialNaiveBayes.TrainingParameters(), textExtractorClass, nbParameters, trainingDataset, testingDataset);
+        
+        SoftMaxRegression.TrainingParameters smrTrainingParameters = new SoftMaxRegression.TrainingParameters();
+        smrTrainingParameters.setTotalIterations(30);
+        smrTrainingParameters.setLearningRate(0.5);
+        BaseMLclassifier.ValidationMetrics smrMetrics = evaluate(SoftMaxRegression.class, smrTrainingParameters, textExtractorClass, (smrParameters!=null)?smrParameters:nbParameters, trainingDataset, testingDataset);
+        
+        System.out.println(String.format(Locale.ENGLISH, "%-12s %-8s %10d %12.1f %12.4f %12.4f %12.4f %12.4f", features, signed, columns, (after-before)/1048576.0, nbMetrics.getAccuracy(), nbMetrics.getMacroF1(), smrMetrics.getAccuracy(), smrMetrics.getMacroF1()));
+    }
+    
+    private static BaseMLclassifier.ValidationMetrics evaluate(Class<? extends BaseMLmodel<?, ?, ?>> mlmodelClass, BaseMLclassifier.TrainingParameters mlmodelTrainingParameters, Class<? extends TextExtractor<?, ?, ?>> textExtractorClass, TextExtractor.Parameters textExtractorParameters, Map<Object, URI> trainingDataset, Map<Object, URI> testingDataset) {
+        RandomValue.randomGenerator = new Random(42);
+        
+        TextClassifier instance = new TextClassifier("HashingReport");
+        TextClassifier.TrainingParameters trainingParameters = instance.getEmptyTrainingParametersObject();
+        trainingParameters.setkFolds(1);
+        trainingParameters.setMLmodelClass(mlmodelClass);
+        trainingParameters.setMLmodelTrainingParameters(mlmodelTrainingParameters);
+        trainingParameters.setDataTransformerClass(null);
+        trainingParameters.setDataTransformerTrainingParameters(null);
+        trainingParameters.setFeatureSelectionClass(null);
+        trainingParameters.setFeatureSelectionTrainingParameters(null);
+        trainingParameters.setTextExtractorClass(textExtractorClass);
+        trainingParameters.setTextExtractorTrainingParameters(textExtractorParameters);
+        
+        instance.initializeTrainingConfiguration(new MemoryConfiguration(), trainingParameters);
+        instance.train(trainingDataset);
+        BaseMLclassifier.ValidationMetrics metrics = (BaseMLclassifier.ValidationMetrics) instance.test(testingDataset);
+        instance.erase(true);
+        
+        return metrics;
+    }
+    
+    private static long usedMemory() {
+        Runtime runtime = Runtime.getRuntime();
+        for(int i=0;i<3;++i) {
+            System.gc();
+        }
+        return runtime.totalMemory()-runtime.freeMemory();
+    }
+    
+}
@@ -0,0 +1,119 @@
+/*
+ * Copyright (C) 2014 Vasilis Vryniotis <bbriniotis at datumbox.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.datumbox.benchmarks;
+
+import com.datumbox.common.dataobjects.Dataset;
+import com.datumbox.common.utilities.RandomValue;
+import com.datumbox.framework.machinelearning.common.bases.featureselection.FeatureSelection;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks of the feature selectors. The categorical and score based ones use
+ * a sparse word-count dataset and PCA a dense one. Both the evaluation of the 
+ * features and their removal modify the data, so every iteration works on a 
+ * fresh copy.
+ * 
+ * @author Vasilis Vryniotis <bbriniotis at datumbox.com>
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, batchSize = 1)
+@Measurement(iterations = 5, batchSize = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class FeatureSelectionBenchmark {
+    
+    @Param({"ChisquareSelect", "MutualInformation", "TFIDF", "PCA"})
+    public String algorithm;
+    
+    @Param({"2000"})
+    public int n;
+    
+    private Dataset trainingData;
+    
+    private Dataset trainingCopy;
+    
+    private Dataset newData;
+    
+    private FeatureSelection<?, ?> featureSelection;
+    
+    private FeatureSelection<?, ?> evaluatedSelection;
+    
+    private Dataset generateData(long seed) {
+        if(algorithm.equals("PCA")) {
+            return SyntheticData.gaussianClusters(n, 50, 4, seed);
+        }
+        return SyntheticData.sparseCounts(n, 1000, 4, 30, seed);
+    }
+    
+    @Setup(Level.Trial)
+    public void setupTrial() {
+        RandomValue.randomGenerator = new Random(42);
+        
+        trainingData = generateData(42);
+        
+        featureSelection = Algorithms.newFeatureSelection(algorithm, "JMHClear"+algorithm);
+        featureSelection.evaluateFeatures(SyntheticData.copy(trainingData));
+    }
+    
+    @Setup(Level.Iteration)
+    public void setupIteration() {
+        trainingCopy = SyntheticData.copy(trainingData);
+        newData = SyntheticData.copy(trainingData);
+    }
+    
+    @TearDown(Level.Iteration)
+    public void tearDownIteration() {
+        if(evaluatedSelection!=null) {
+            evaluatedSelection.erase(true);
+            evaluatedSelection = null;
+        }
+    }
+    
+    @TearDown(Level.Trial)
+    public void tearDownTrial() {
+        featureSelection.erase(true);
+    }
+    
+    @Benchmark
+    public FeatureSelection<?, ?> evaluateFeatures() {
+        evaluatedSelection = Algorithms.newFeatureSelection(algorithm, "JMHEvaluate"+algorithm);
+        evaluatedSelection.evaluateFeatures(trainingCopy);
+        return evaluatedSelection;
+    }
+    
+    @Benchmark
+    public Dataset clearFeatures() {
+        featureSelection.clearFeatures(newData);
+        return newData;
+    }
+    
+}
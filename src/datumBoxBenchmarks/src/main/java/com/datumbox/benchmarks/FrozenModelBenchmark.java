@@ -0,0 +1,144 @@
+/*
+ * Copyright (C) 2014 Vasilis Vryniotis <bbriniotis at datumbox.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.datumbox.benchmarks;
+
+import com.datumbox.common.dataobjects.Dataset;
+import com.datumbox.common.utilities.RandomValue;
+import com.datumbox.framework.machinelearning.common.bases.mlmodels.BaseMLmodel;
+import com.datumbox.framework.machinelearning.common.bases.mlmodels.FrozenMLmodel;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the prediction throughput of a single frozen model which is shared
+ * by 1 to 32 threads. Every thread predicts its own copy of the data, so with 
+ * perfect scaling the total throughput grows linearly with the threads.
+ * 
+ * @author Vasilis Vryniotis <bbriniotis at datumbox.com>
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class FrozenModelBenchmark {
+    
+    @Param({"MultinomialNaiveBayes", "SoftMaxRegression", "MaximumEntropy"})
+    public String algorithm;
+    
+    @Param({"1000"})
+    public int n;
+    
+    @Param({"2000"})
+    public int d;
+    
+    private BaseMLmodel<?, ?, ?> mlmodel;
+    
+    private FrozenMLmodel<?> frozenModel;
+    
+    private Dataset testData;
+    
+    @Setup(Level.Trial)
+    public void setup() {
+        RandomValue.randomGenerator = new Random(42);
+        
+        Dataset trainingData = SyntheticData.sparseCounts(5*n, d, 4, 30, 42);
+        testData = SyntheticData.unlabeledCopy(SyntheticData.sparseCounts(n, d, 4, 30, 4242));
+        
+        mlmodel = Algorithms.newMLmodel(algorithm, "JMHFrozenModel"+algorithm, trainingData);
+        mlmodel.train(trainingData, trainingData);
+        
+        frozenModel = mlmodel.freeze();
+    }
+    
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        mlmodel.erase(true);
+    }
+    
+    /**
+     * The per thread copy of the data which is predicted in every invocation.
+     */
+    @State(Scope.Thread)
+    public static class ThreadData {
+        
+        private Dataset newData;
+        
+        @Setup(Level.Trial)
+        public void setup(FrozenModelBenchmark benchmark) {
+            newData = SyntheticData.unlabeledCopy(benchmark.testData);
+        }
+    }
+    
+    @Benchmark
+    @Threads(1)
+    public Dataset predictThreads01(ThreadData data) {
+        frozenModel.predict(data.newData);
+        return data.newData;
+    }
+    
+    @Benchmark
+    @Threads(2)
+    public Dataset predictThreads02(ThreadData data) {
+        frozenModel.predict(data.newData);
+        return data.newData;
+    }
+    
+    @Benchmark
+    @Threads(4)
+    public Dataset predictThreads04(ThreadData data) {
+        frozenModel.predict(data.newData);
+        return data.newData;
+    }
+    
+    @Benchmark
+    @Threads(8)
+    public Dataset predictThreads08(ThreadData data) {
+        frozenModel.predict(data.newData);
+        return data.newData;
+    }
+    
+    @Benchmark
+    @Threads(16)
+    public Dataset predictThreads16(ThreadData data) {
+        frozenModel.predict(data.newData);
+        return data.newData;
+    }
+    
+    @Benchmark
+    @Threads(32)
+    public Dataset predictThreads32(ThreadData data) {
+        frozenModel.predict(data.newData);
+        return data.newData;
+    }
+    
+}
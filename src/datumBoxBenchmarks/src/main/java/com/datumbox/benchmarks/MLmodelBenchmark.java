@@ -0,0 +1,126 @@
+/*
+ * Copyright (C) 2014 Vasilis Vryniotis <bbriniotis at datumbox.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.datumbox.benchmarks;
+
+import com.datumbox.common.dataobjects.Dataset;
+import com.datumbox.common.utilities.RandomValue;
+import com.datumbox.framework.machinelearning.common.bases.mlmodels.BaseMLmodel;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Base class of the benchmarks of the machine learning models. It measures the
+ * training time of the algorithm (a full training per iteration, on a fresh 
+ * copy of the data) and the throughput and latency distribution of predicting
+ * a dataset with an already trained model. The allocation rate is reported by
+ * running the benchmarks with the GC profiler (see BenchmarkRunner).
+ * 
+ * @author Vasilis Vryniotis <bbriniotis at datumbox.com>
+ */
+public abstract class MLmodelBenchmark {
+    
+    private Dataset trainingData;
+    
+    private Dataset testData;
+    
+    private Dataset trainingCopy;
+    
+    private Dataset validationCopy;
+    
+    private BaseMLmodel<?, ?, ?> mlmodel;
+    
+    private BaseMLmodel<?, ?, ?> trainedModel;
+    
+    /**
+     * Returns the short class name of the algorithm under test.
+     * 
+     * @return 
+     */
+    protected abstract String algorithm();
+    
+    /**
+     * Generates the dataset of the benchmark. Different seeds are used for the
+     * training and the test data.
+     * 
+     * @param seed
+     * @return 
+     */
+    protected abstract Dataset generateData(long seed);
+    
+    @Setup(Level.Trial)
+    public void setupTrial() {
+        RandomValue.randomGenerator = new Random(42);
+        
+        trainingData = generateData(42);
+        testData = SyntheticData.unlabeledCopy(generateData(4242));
+        
+        mlmodel = Algorithms.newMLmodel(algorithm(), "JMHPredict"+algorithm(), trainingData);
+        mlmodel.train(SyntheticData.copy(trainingData), SyntheticData.copy(trainingData));
+    }
+    
+    @Setup(Level.Iteration)
+    public void setupIteration() {
+        RandomValue.randomGenerator = new Random(42);
+        
+        trainingCopy = SyntheticData.copy(trainingData);
+        validationCopy = SyntheticData.copy(trainingData);
+    }
+    
+    @TearDown(Level.Iteration)
+    public void tearDownIteration() {
+        if(trainedModel!=null) {
+            trainedModel.erase(true);
+            trainedModel = null;
+        }
+    }
+    
+    @TearDown(Level.Trial)
+    public void tearDownTrial() {
+        mlmodel.erase(true);
+    }
+    
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 2, batchSize = 1)
+    @Measurement(iterations = 5, batchSize = 1)
+    public BaseMLmodel<?, ?, ?> train() {
+        trainedModel = Algorithms.newMLmodel(algorithm(), "JMHTrain"+algorithm(), trainingCopy);
+        trainedModel.train(trainingCopy, validationCopy);
+        return trainedModel;
+    }
+    
+    @Benchmark
+    @BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 3, time = 2)
+    @Measurement(iterations = 5, time = 2)
+    public Dataset predict() {
+        mlmodel.predict(testData);
+        return testData;
+    }
+    
+}
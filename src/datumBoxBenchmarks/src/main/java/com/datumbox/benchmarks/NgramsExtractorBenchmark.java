@@ -0,0 +1,113 @@
+/*
+ * Copyright (C) 2014 Vasilis Vryniotis <bbriniotis at datumbox.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.datumbox.benchmarks;
+
+import com.datumbox.framework.utilities.text.cleaners.StringCleaner;
+import com.datumbox.framework.utilities.text.extractors.NgramsExtractor;
+import com.datumbox.framework.utilities.text.extractors.TextExtractor;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Compares the NgramsExtractor with the original String based implementation
+ * (BaselineNgramsExtractor). Before measuring, the setup verifies that both 
+ * produce identical keyword scores on all the documents. The scores are per 
+ * document; run with the GC profiler to compare the allocations.
+ * 
+ * @author Vasilis Vryniotis <bbriniotis at datumbox.com>
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class NgramsExtractorBenchmark {
+    
+    private static final int DOCUMENTS = 100;
+    
+    @Param({"NgramsExtractor", "BaselineNgramsExtractor"})
+    public String implementation;
+    
+    @Param({"100", "1000"})
+    public int wordsPerDocument;
+    
+    @Param({"3"})
+    public int maxCombinations;
+    
+    private List<String> documents;
+    
+    private TextExtractor<NgramsExtractor.Parameters, String, Double> extractor;
+    
+    @Setup(Level.Trial)
+    public void setup() {
+        documents = new ArrayList<>();
+        for(List<String> classDocuments : TextData.documents(DOCUMENTS/2, 2, wordsPerDocument, 42).values()) {
+            for(String document : classDocuments) {
+                documents.add(StringCleaner.clear(document));
+            }
+        }
+        
+        NgramsExtractor.Parameters parameters = new NgramsExtractor.Parameters();
+        parameters.setMaxCombinations(maxCombinations);
+        
+        NgramsExtractor ngramsExtractor = new NgramsExtractor();
+        ngramsExtractor.setParameters(parameters);
+        BaselineNgramsExtractor baselineExtractor = new BaselineNgramsExtractor();
+        baselineExtractor.setParameters(parameters);
+        
+        for(String document : documents) {
+            if(!ngramsExtractor.extract(document).equals(baselineExtractor.extract(document))) {
+                throw new IllegalStateException("The NgramsExtractor and the BaselineNgramsExtractor produce different keywords.");
+            }
+        }
+        
+        if(implementation.equals("NgramsExtractor")) {
+            extractor = ngramsExtractor;
+        }
+        else if(implementation.equals("BaselineNgramsExtractor")) {
+            extractor = baselineExtractor;
+        }
+        else {
+            throw new IllegalArgumentException("Unsupported implementation.");
+        }
+    }
+    
+    @Benchmark
+    @OperationsPerInvocation(DOCUMENTS)
+    public void extract(Blackhole bh) {
+        for(String document : documents) {
+            bh.consume(extractor.extract(document));
+        }
+    }
+    
+}
@@ -0,0 +1,142 @@
+/*
+ * Copyright (C) 2014 Vasilis Vryniotis <bbriniotis at datumbox.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.datumbox.benchmarks;
+
+import com.datumbox.framework.utilities.text.cleaners.StringCleaner;
+import com.datumbox.framework.utilities.text.cleaners.TextNormalizer;
+import com.datumbox.framework.utilities.text.tokenizers.WhitespaceTokenizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Compares the single pass StringCleaner.clear() (TextNormalizer) with the 
+ * original chain of regex replacements followed by the regex split of the 
+ * WhitespaceTokenizer. Before measuring, the setup verifies that both produce
+ * identical texts and tokens on all the documents. The scores are per document.
+ * 
+ * @author Vasilis Vryniotis <bbriniotis at datumbox.com>
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class StringCleanerBenchmark {
+    
+    private static final int DOCUMENTS = 100;
+    
+    @Param({"TextNormalizer", "Baseline"})
+    public String implementation;
+    
+    @Param({"100", "1000"})
+    public int wordsPerDocument;
+    
+    private List<String> documents;
+    
+    private TextNormalizer normalizer;
+    
+    private static String baselineClear(String text) {
+        text = StringCleaner.tokenizeURLs(text);
+        text = StringCleaner.tokenizeSmileys(text);
+        text = StringCleaner.removeAccents(text);
+        text = StringCleaner.removeSymbols(text);
+        text = StringCleaner.removeExtraSpaces(text);
+        return text.toLowerCase();
+    }
+    
+    private static List<String> baselineTokenize(String text) {
+        return new ArrayList<>(Arrays.asList(text.split("[\\p{Z}\\p{C}]+")));
+    }
+    
+    @Setup(Level.Trial)
+    public void setup() {
+        documents = new ArrayList<>();
+        for(List<String> classDocuments : TextData.documents(DOCUMENTS/2, 2, wordsPerDocument, 42).values()) {
+            documents.addAll(classDocuments);
+        }
+        
+        normalizer = new TextNormalizer();
+        WhitespaceTokenizer tokenizer = new WhitespaceTokenizer();
+        
+        for(String document : documents) {
+            String cleanDocument = baselineClear(document);
+            List<String> tokens = baselineTokenize(cleanDocument);
+            
+            normalizer.normalize(document);
+            if(!cleanDocument.equals(normalizer.getText()) || !cleanDocument.equals(StringCleaner.clear(document))) {
+                throw new IllegalStateException("The TextNormalizer and the Baseline produce different texts.");
+            }
+            if(!tokens.equals(normalizer.getTokens()) || !tokens.equals(tokenizer.tokenize(cleanDocument))) {
+                throw new IllegalStateException("The TextNormalizer and the Baseline produce different tokens.");
+            }
+        }
+        
+        if(!implementation.equals("TextNormalizer") && !implementation.equals("Baseline")) {
+            throw new IllegalArgumentException("Unsupported implementation.");
+        }
+    }
+    
+    @Benchmark
+    @OperationsPerInvocation(DOCUMENTS)
+    public void clear(Blackhole bh) {
+        if(implementation.equals("TextNormalizer")) {
+            for(String document : documents) {
+                bh.consume(StringCleaner.clear(document));
+            }
+        }
+        else {
+            for(String document : documents) {
+                bh.consume(baselineClear(document));
+            }
+        }
+    }
+    
+    @Benchmark
+    @OperationsPerInvocation(DOCUMENTS)
+    public void clearAndTokenize(Blackhole bh) {
+        if(implementation.equals("TextNormalizer")) {
+            for(String document : documents) {
+                normalizer.normalize(document);
+                bh.consume(normalizer.getBuffer());
+                bh.consume(normalizer.getNumberOfTokens());
+            }
+        }
+        else {
+            for(String document : documents) {
+                bh.consume(baselineTokenize(baselineClear(document)));
+            }
+        }
+    }
+    
+}
@@ -0,0 +1,179 @@
+/*
+ * Copyright (C) 2014 Vasilis Vryniotis <bbriniotis at datumbox.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.datumbox.benchmarks;
+
+import com.datumbox.common.dataobjects.Dataset;
+import com.datumbox.common.dataobjects.Record;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Generates reproducible synthetic datasets for the benchmarks. The same seed
+ * always produces the same records, so the results of different runs and 
+ * different versions of the framework are comparable.
+ * 
+ * @author Vasilis Vryniotis <bbriniotis at datumbox.com>
+ */
+public class SyntheticData {
+    
+    /**
+     * Generates a sparse word-count dataset. Every class prefers a different
+     * block of the features, so the classes are learnable but overlapping.
+     * 
+     * @param n
+     * @param d
+     * @param k
+     * @param wordsPerRecord
+     * @param seed
+     * @return 
+     */
+    public static Dataset sparseCounts(int n, int d, int k, int wordsPerRecord, long seed) {
+        Random rnd = new Random(seed);
+        int blockSize = Math.max(d/k, 1);
+        
+        Dataset dataset = new Dataset();
+        for(int i=0;i<n;++i) {
+            int y = rnd.nextInt(k);
+            
+            Record r = new Record();
+            for(int j=0;j<wordsPerRecord;++j) {
+                int feature;
+                if(rnd.nextDouble()<0.7) {
+                    feature = (y*blockSize + rnd.nextInt(blockSize))%d;
+                }
+                else {
+                    feature = rnd.nextInt(d);
+                }
+                
+                Object key = "w"+feature;
+                Object count = r.getX().get(key);
+                r.getX().put(key, (count==null)?1.0:(Double)count+1.0);
+            }
+            r.setY(y);
+            dataset.add(r);
+        }
+        
+        return dataset;
+    }
+    
+    /**
+     * Generates a dense dataset of k gaussian clusters. The response of every 
+     * record is the id of the cluster it was sampled from.
+     * 
+     * @param n
+     * @param d
+     * @param k
+     * @param seed
+     * @return 
+     */
+    public static Dataset gaussianClusters(int n, int d, int k, long seed) {
+        Random rnd = new Random(seed);
+        
+        double[][] centers = new double[k][d];
+        for(int c=0;c<k;++c) {
+            for(int j=0;j<d;++j) {
+                centers[c][j] = rnd.nextDouble()*10.0;
+            }
+        }
+        
+        Dataset dataset = new Dataset();
+        for(int i=0;i<n;++i) {
+            int y = rnd.nextInt(k);
+            
+            Record r = new Record();
+            for(int j=0;j<d;++j) {
+                r.getX().put("x"+j, centers[y][j]+rnd.nextGaussian());
+            }
+            r.setY(y);
+            dataset.add(r);
+        }
+        
+        return dataset;
+    }
+    
+    /**
+     * Generates a dense linear regression dataset with gaussian noise.
+     * 
+     * @param n
+     * @param d
+     * @param noise
+     * @param seed
+     * @return 
+     */
+    public static Dataset linearRegression(int n, int d, double noise, long seed) {
+        Random rnd = new Random(seed);
+        
+        double[] thitas = new double[d];
+        for(int j=0;j<d;++j) {
+            thitas[j] = rnd.nextDouble()*4.0-2.0;
+        }
+        
+        Dataset dataset = new Dataset();
+        for(int i=0;i<n;++i) {
+            Record r = new Record();
+            double y = 1.0;
+            for(int j=0;j<d;++j) {
+                double x = rnd.nextDouble()*10.0;
+                r.getX().put("x"+j, x);
+                y += thitas[j]*x;
+            }
+            r.setY(y+rnd.nextGaussian()*noise);
+            dataset.add(r);
+        }
+        
+        return dataset;
+    }
+    
+    /**
+     * Returns a copy of the dataset which has its own Records and X maps, so 
+     * that algorithms which modify the data do not affect the original.
+     * 
+     * @param dataset
+     * @return 
+     */
+    public static Dataset copy(Dataset dataset) {
+        Dataset copy = new Dataset();
+        for(Record r : dataset) {
+            Record newRecord = new Record();
+            for(Map.Entry<Object, Object> entry : r.getX().entrySet()) {
+                newRecord.getX().put(entry.getKey(), entry.getValue());
+            }
+            newRecord.setY(r.getY());
+            copy.add(newRecord);
+        }
+        return copy;
+    }
+    
+    /**
+     * Returns a copy of the dataset without its responses and predictions.
+     * 
+     * @param dataset
+     * @return 
+     */
+    public static Dataset unlabeledCopy(Dataset dataset) {
+        Dataset copy = new Dataset();
+        for(Record r : dataset) {
+            Record newRecord = new Record();
+            for(Map.Entry<Object, Object> entry : r.getX().entrySet()) {
+                newRecord.getX().put(entry.getKey(), entry.getValue());
+            }
+            copy.add(newRecord);
+        }
+        return copy;
+    }
+    
+}
@@ -0,0 +1,150 @@
+/*
+ * Copyright (C) 2014 Vasilis Vryniotis <bbriniotis at datumbox.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.datumbox.benchmarks;
+
+import com.datumbox.applications.nlp.TextClassifier;
+import com.datumbox.common.utilities.RandomValue;
+import com.datumbox.configuration.MemoryConfiguration;
+import com.datumbox.framework.machinelearning.classification.MultinomialNaiveBayes;
+import com.datumbox.framework.machinelearning.featureselection.categorical.ChisquareSelect;
+import com.datumbox.framework.utilities.text.extractors.NgramsExtractor;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * End to end benchmarks of the TextClassifier: text cleaning, n-gram 
+ * extraction, feature selection and MultinomialNaiveBayes on a synthetic 
+ * corpus of 2 classes.
+ * 
+ * @author Vasilis Vryniotis <bbriniotis at datumbox.com>
+ */
+@Fork(1)
+@State(Scope.Benchmark)
+public class TextClassifierBenchmark {
+    
+    @Param({"500"})
+    public int documentsPerClass;
+    
+    @Param({"100"})
+    public int wordsPerDocument;
+    
+    private Map<Object, URI> dataset;
+    
+    private List<String> newDocuments;
+    
+    private TextClassifier textClassifier;
+    
+    private TextClassifier trainedClassifier;
+    
+    private TextClassifier newTextClassifier(String dbName) {
+        TextClassifier instance = new TextClassifier(dbName);
+        TextClassifier.TrainingParameters trainingParameters = instance.getEmptyTrainingParametersObject();
+        
+        trainingParameters.setkFolds(1);
+        
+        trainingParameters.setMLmodelClass(MultinomialNaiveBayes.class);
+        trainingParameters.setMLmodelTrainingParameters(new MultinomialNaiveBayes.TrainingParameters());
+        
+        trainingParameters.setDataTransformerClass(null);
+        trainingParameters.setDataTransformerTrainingParameters(null);
+        
+        trainingParameters.setFeatureSelectionClass(ChisquareSelect.class);
+        ChisquareSelect.TrainingParameters fsParams = new ChisquareSelect.TrainingParameters();
+        fsParams.setALevel(0.05);
+        fsParams.setIgnoringNumericalFeatures(false);
+        fsParams.setMaxFeatures(10000);
+        fsParams.setRareFeatureThreshold(3);
+        trainingParameters.setFeatureSelectionTrainingParameters(fsParams);
+        
+        trainingParameters.setTextExtractorClass(NgramsExtractor.class);
+        trainingParameters.setTextExtractorTrainingParameters(new NgramsExtractor.Parameters());
+        
+        instance.initializeTrainingConfiguration(new MemoryConfiguration(), trainingParameters);
+        return instance;
+    }
+    
+    @Setup(Level.Trial)
+    public void setupTrial() {
+        RandomValue.randomGenerator = new Random(42);
+        
+        dataset = TextData.writeToTempFiles(TextData.documents(documentsPerClass, 2, wordsPerDocument, 42));
+        
+        newDocuments = new ArrayList<>();
+        for(List<String> documents : TextData.documents(50, 2, wordsPerDocument, 4242).values()) {
+            newDocuments.addAll(documents);
+        }
+        
+        textClassifier = newTextClassifier("JMHPredictTxtCl");
+        textClassifier.train(dataset);
+    }
+    
+    @Setup(Level.Iteration)
+    public void setupIteration() {
+        RandomValue.randomGenerator = new Random(42);
+    }
+    
+    @TearDown(Level.Iteration)
+    public void tearDownIteration() {
+        if(trainedClassifier!=null) {
+            trainedClassifier.erase(true);
+            trainedClassifier = null;
+        }
+    }
+    
+    @TearDown(Level.Trial)
+    public void tearDownTrial() {
+        textClassifier.erase(true);
+    }
+    
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 2, batchSize = 1)
+    @Measurement(iterations = 5, batchSize = 1)
+    public TextClassifier train() {
+        trainedClassifier = newTextClassifier("JMHTrainTxtCl");
+        trainedClassifier.train(dataset);
+        return trainedClassifier;
+    }
+    
+    @Benchmark
+    @BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 3, time = 2)
+    @Measurement(iterations = 5, time = 2)
+    public List<Object> predict() {
+        return textClassifier.predict(newDocuments);
+    }
+    
+}
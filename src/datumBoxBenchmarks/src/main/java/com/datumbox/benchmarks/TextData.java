@@ -0,0 +1,129 @@
+/*
+ * Copyright (C) 2014 Vasilis Vryniotis <bbriniotis at datumbox.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.datumbox.benchmarks;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Generates reproducible synthetic text corpora for the text benchmarks. The
+ * documents are built from a random vocabulary in which every class has its own
+ * topic words, and they contain the URLs, smileys, accents, symbols and extra 
+ * spaces that the StringCleaner has to handle in real texts.
+ * 
+ * @author Vasilis Vryniotis <bbriniotis at datumbox.com>
+ */
+public class TextData {
+    
+    private static final String[] NOISE = {"http://www.example.com/page?id=42", ":)", ":(", "café", "naïve", "!!!", "...", "#1", "$100", "   ", "?"};
+    
+    /**
+     * Generates n documents per class for k classes.
+     * 
+     * @param n
+     * @param k
+     * @param wordsPerDocument
+     * @param seed
+     * @return 
+     */
+    public static Map<Object, List<String>> documents(int n, int k, int wordsPerDocument, long seed) {
+        Random rnd = new Random(seed);
+        
+        String[] commonWords = vocabulary(rnd, 2000);
+        String[][] topicWords = new String[k][];
+        for(int c=0;c<k;++c) {
+            topicWords[c] = vocabulary(rnd, 200);
+        }
+        
+        Map<Object, List<String>> documents = new LinkedHashMap<>();
+        for(int c=0;c<k;++c) {
+            List<String> classDocuments = new ArrayList<>(n);
+            for(int i=0;i<n;++i) {
+                StringBuilder sb = new StringBuilder();
+                for(int j=0;j<wordsPerDocument;++j) {
+                    double u = rnd.nextDouble();
+                    if(u<0.25) {
+                        sb.append(topicWords[c][rnd.nextInt(topicWords[c].length)]);
+                    }
+                    else if(u<0.95) {
+                        sb.append(commonWords[rnd.nextInt(commonWords.length)]);
+                    }
+                    else {
+                        sb.append(NOISE[rnd.nextInt(NOISE.length)]);
+                    }
+                    sb.append((rnd.nextDouble()<0.08)?". ":" ");
+                }
+                classDocuments.add(sb.toString());
+            }
+            documents.put("class"+c, classDocuments);
+        }
+        
+        return documents;
+    }
+    
+    /**
+     * Writes every class in a separate temporary file, one document per line, 
+     * in the format that TextClassifier expects.
+     * 
+     * @param documents
+     * @return 
+     */
+    public static Map<Object, URI> writeToTempFiles(Map<Object, List<String>> documents) {
+        Map<Object, URI> dataset = new HashMap<>();
+        try {
+            for(Map.Entry<Object, List<String>> entry : documents.entrySet()) {
+                File file = File.createTempFile("datumbox-benchmark-"+entry.getKey(), ".txt");
+                file.deleteOnExit();
+                try(BufferedWriter bw = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), "UTF8"))) {
+                    for(String document : entry.getValue()) {
+                        bw.write(document);
+                        bw.newLine();
+                    }
+                }
+                dataset.put(entry.getKey(), file.toURI());
+            }
+        }
+        catch(IOException ex) {
+            throw new RuntimeException(ex);
+        }
+        return dataset;
+    }
+    
+    private static String[] vocabulary(Random rnd, int size) {
+        String[] words = new String[size];
+        for(int i=0;i<size;++i) {
+            int length = 3+rnd.nextInt(8);
+            char[] chars = new char[length];
+            for(int j=0;j<length;++j) {
+                chars[j] = (char)('a'+rnd.nextInt(26));
+            }
+            words[i] = new String(chars);
+        }
+        return words;
+    }
+    
+}
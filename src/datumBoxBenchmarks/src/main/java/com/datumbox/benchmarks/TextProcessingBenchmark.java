@@ -0,0 +1,119 @@
+/*
+ * Copyright (C) 2014 Vasilis Vryniotis <bbriniotis at datumbox.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.datumbox.benchmarks;
+
+import com.datumbox.framework.utilities.text.cleaners.StringCleaner;
+import com.datumbox.framework.utilities.text.extractors.NgramsExtractor;
+import com.datumbox.framework.utilities.text.tokenizers.Tokenizer;
+import com.datumbox.framework.utilities.text.tokenizers.WhitespaceTokenizer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Benchmarks of the text processing pipeline: the StringCleaner, the tokenizer
+ * and the NgramsExtractor, separately and combined as they are used by the
+ * DatasetBuilder and the TextClassifier. The scores are per document.
+ * 
+ * @author Vasilis Vryniotis <bbriniotis at datumbox.com>
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TextProcessingBenchmark {
+    
+    private static final int DOCUMENTS = 100;
+    
+    @Param({"100", "1000"})
+    public int wordsPerDocument;
+    
+    private List<String> documents;
+    
+    private List<String> cleanDocuments;
+    
+    private Tokenizer tokenizer;
+    
+    private NgramsExtractor ngramsExtractor;
+    
+    @Setup(Level.Trial)
+    public void setup() {
+        documents = new ArrayList<>();
+        for(List<String> classDocuments : TextData.documents(DOCUMENTS/2, 2, wordsPerDocument, 42).values()) {
+            documents.addAll(classDocuments);
+        }
+        
+        cleanDocuments = new ArrayList<>();
+        for(String document : documents) {
+            cleanDocuments.add(StringCleaner.clear(document));
+        }
+        
+        tokenizer = new WhitespaceTokenizer();
+        
+        ngramsExtractor = new NgramsExtractor();
+        ngramsExtractor.setParameters(new NgramsExtractor.Parameters());
+    }
+    
+    @Benchmark
+    @OperationsPerInvocation(DOCUMENTS)
+    public void clear(Blackhole bh) {
+        for(String document : documents) {
+            bh.consume(StringCleaner.clear(document));
+        }
+    }
+    
+    @Benchmark
+    @OperationsPerInvocation(DOCUMENTS)
+    public void tokenize(Blackhole bh) {
+        for(String document : cleanDocuments) {
+            bh.consume(tokenizer.tokenize(document));
+        }
+    }
+    
+    @Benchmark
+    @OperationsPerInvocation(DOCUMENTS)
+    public void extractNgrams(Blackhole bh) {
+        for(String document : cleanDocuments) {
+            bh.consume(ngramsExtractor.extract(document));
+        }
+    }
+    
+    @Benchmark
+    @OperationsPerInvocation(DOCUMENTS)
+    public void clearAndExtractNgrams(Blackhole bh) {
+        for(String document : documents) {
+            bh.consume(ngramsExtractor.clearAndExtract(document));
+        }
+    }
+    
+}